@@ -0,0 +1,290 @@
+/*
+ AWSIotMessagePipeline.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MQTTへ送信するメッセージをまとめて送信するパイプライン.
+ * <p>
+ * 短時間に送信されたメッセージを1つのMQTTメッセージにまとめて送信する。
+ * 同時に応答待ちにできるメッセージ数を制限し、超えた分は応答が返ってくるまで待機させる。
+ * </p>
+ */
+public class AWSIotMessagePipeline {
+
+    /** メッセージをまとめるために待機する時間(ms). */
+    public static final long DEFAULT_BATCH_DELAY = 10;
+
+    /** 1つのMQTTメッセージにまとめる最大メッセージ数. */
+    private static final int MAX_BATCH_COUNT = 16;
+
+    /** 1つのMQTTメッセージの最大サイズ. AWS IoTの上限(128KB)より小さくしておく. */
+    private static final int MAX_BATCH_LENGTH = 96 * 1024;
+
+    /** まとめたメッセージを格納するキー. */
+    private final String mBatchKey;
+    /** 同時に応答待ちにできる最大数. 0の場合は制限しない. */
+    private final int mMaxInFlight;
+    /** メッセージをまとめるために待機する時間(ms). */
+    private final long mBatchDelay;
+
+    private final Callback mCallback;
+    private final ScheduledExecutorService mExecutor;
+
+    /** 送信待ちのメッセージ. */
+    private final LinkedList<Message> mQueue = new LinkedList<>();
+    /** 応答待ちのリクエストコード. */
+    private final Set<Long> mInFlight = new HashSet<>();
+
+    private ScheduledFuture mFlushFuture;
+    private boolean mDestroyed;
+    /** メッセージをまとめて送信するフラグ. */
+    private boolean mBatchEnabled = true;
+
+    /**
+     * コンストラクタ.
+     * @param batchKey まとめたメッセージを格納するキー
+     * @param maxInFlight 同時に応答待ちにできる最大数. 0の場合は制限しない
+     * @param batchDelay メッセージをまとめるために待機する時間(ms)
+     * @param executor 送信に使用するExecutor
+     * @param callback コールバック
+     */
+    public AWSIotMessagePipeline(final String batchKey, final int maxInFlight, final long batchDelay,
+                                 final ScheduledExecutorService executor, final Callback callback) {
+        mBatchKey = batchKey;
+        mMaxInFlight = maxInFlight;
+        mBatchDelay = batchDelay;
+        mExecutor = executor;
+        mCallback = callback;
+    }
+
+    /**
+     * メッセージをまとめて送信するか設定する.
+     * <p>
+     * まとめたメッセージを解釈できない相手には、falseを設定して1つずつ送信すること。
+     * </p>
+     * @param enabled まとめて送信する場合はtrue、それ以外はfalse
+     */
+    public synchronized void setBatchEnabled(final boolean enabled) {
+        mBatchEnabled = enabled;
+    }
+
+    /**
+     * メッセージをまとめて送信するか確認する.
+     * @return まとめて送信する場合はtrue、それ以外はfalse
+     */
+    public synchronized boolean isBatchEnabled() {
+        return mBatchEnabled;
+    }
+
+    /**
+     * メッセージを送信キューに追加する.
+     * @param requestCode リクエストコード
+     * @param message メッセージ
+     */
+    public void send(final long requestCode, final String message) {
+        synchronized (this) {
+            if (mDestroyed) {
+                return;
+            }
+            mQueue.add(new Message(requestCode, message));
+            if (mBatchEnabled && getSendableCount() < MAX_BATCH_COUNT) {
+                if (mFlushFuture == null) {
+                    mFlushFuture = mExecutor.schedule(mFlushTask, mBatchDelay, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * 応答を受信したリクエストを完了させて、待機しているメッセージを送信する.
+     * <p>
+     * 1つのメッセージでまとめて応答が返ってくるので、空いた枠はまとめて送信に使用する。<br>
+     * タイムアウトしたリクエストもこのメソッドで完了させること。
+     * </p>
+     * @param requestCode リクエストコード
+     */
+    public void complete(final long requestCode) {
+        boolean flush = false;
+        synchronized (this) {
+            if (!mInFlight.remove(requestCode)) {
+                removeFromQueue(requestCode);
+                return;
+            }
+
+            int count = getSendableCount();
+            if (count >= getMaxBatchCount()) {
+                flush = true;
+            } else if (count > 0 && mFlushFuture == null) {
+                mFlushFuture = mExecutor.schedule(mFlushTask, mBatchDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flush) {
+            flush();
+        }
+    }
+
+    /**
+     * 応答待ちのリクエスト数を取得する.
+     * @return 応答待ちのリクエスト数
+     */
+    public synchronized int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * 送信待ちのメッセージ数を取得する.
+     * @return 送信待ちのメッセージ数
+     */
+    public synchronized int getQueuedCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * パイプラインを破棄する.
+     * <p>
+     * 送信待ちのメッセージは破棄される。
+     * </p>
+     */
+    public void destroy() {
+        synchronized (this) {
+            mDestroyed = true;
+            if (mFlushFuture != null) {
+                mFlushFuture.cancel(false);
+                mFlushFuture = null;
+            }
+            mQueue.clear();
+            mInFlight.clear();
+        }
+    }
+
+    private int getSendableCount() {
+        if (mMaxInFlight <= 0) {
+            return mQueue.size();
+        }
+        return Math.min(mQueue.size(), mMaxInFlight - mInFlight.size());
+    }
+
+    private int getMaxBatchCount() {
+        return mBatchEnabled ? MAX_BATCH_COUNT : 1;
+    }
+
+    private void removeFromQueue(final long requestCode) {
+        Iterator<Message> it = mQueue.iterator();
+        while (it.hasNext()) {
+            if (it.next().mRequestCode == requestCode) {
+                it.remove();
+            }
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            List<Message> batch = new ArrayList<>();
+            synchronized (this) {
+                if (mFlushFuture != null) {
+                    mFlushFuture.cancel(false);
+                    mFlushFuture = null;
+                }
+
+                int count = Math.min(getSendableCount(), getMaxBatchCount());
+                int length = 0;
+                while (batch.size() < count) {
+                    Message message = mQueue.getFirst();
+                    if (!batch.isEmpty() && length + message.mMessage.length() > MAX_BATCH_LENGTH) {
+                        break;
+                    }
+                    mQueue.removeFirst();
+                    length += message.mMessage.length();
+                    batch.add(message);
+                    if (mMaxInFlight > 0) {
+                        mInFlight.add(message.mRequestCode);
+                    }
+                }
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            if (!mCallback.onPublish(createBatch(batch))) {
+                for (Message message : batch) {
+                    synchronized (this) {
+                        mInFlight.remove(message.mRequestCode);
+                    }
+                    mCallback.onFailed(message.mRequestCode);
+                }
+            }
+        }
+    }
+
+    private String createBatch(final List<Message> batch) {
+        if (batch.size() == 1) {
+            return batch.get(0).mMessage;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"").append(mBatchKey).append("\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(batch.get(i).mMessage);
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (AWSIotMessagePipeline.this) {
+                mFlushFuture = null;
+            }
+            flush();
+        }
+    };
+
+    private static class Message {
+        private final long mRequestCode;
+        private final String mMessage;
+
+        Message(final long requestCode, final String message) {
+            mRequestCode = requestCode;
+            mMessage = message;
+        }
+    }
+
+    /**
+     * パイプラインからの通知を受け取るコールバック.
+     */
+    public interface Callback {
+        /**
+         * MQTTへメッセージを送信する.
+         * @param message 送信するメッセージ
+         * @return 送信に成功した場合はtrue、それ以外はfalse
+         */
+        boolean onPublish(String message);
+
+        /**
+         * メッセージの送信に失敗したことを通知する.
+         * @param requestCode 送信に失敗したリクエストコード
+         */
+        void onFailed(long requestCode);
+    }
+}
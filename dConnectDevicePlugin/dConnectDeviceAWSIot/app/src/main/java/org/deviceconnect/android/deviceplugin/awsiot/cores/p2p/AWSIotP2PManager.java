@@ -11,15 +11,20 @@ import android.net.wifi.WifiManager;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
-import org.deviceconnect.android.deviceplugin.awsiot.udt.P2PConnection;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.BufferPool;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.P2PLink;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.SelectorLoop;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.channels.spi.SelectorProvider;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AWSIotP2PManager {
 
@@ -32,19 +37,45 @@ public class AWSIotP2PManager {
     public static final String KEY_ADDRESS = "address";
     public static final String KEY_PORT = "port";
 
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
+    private static SelectorLoop sLinkLoop;
+    private static SelectorLoop sLocalLoop;
+    private static BufferPool sBufferPool;
+
     public void onReceivedSignaling(final String signaling) {
     }
 
     public void onNotifySignaling(final String signaling) {
     }
 
-    protected P2PConnection createP2PConnection() {
-        return new P2PConnection();
+    protected static synchronized SelectorLoop getLinkLoop() throws IOException {
+        if (sLinkLoop == null || sLinkLoop.isClosed()) {
+            sLinkLoop = P2PLink.openSelectorLoop();
+        }
+        return sLinkLoop;
+    }
+
+    protected static synchronized SelectorLoop getLocalLoop() throws IOException {
+        if (sLocalLoop == null || sLocalLoop.isClosed()) {
+            sLocalLoop = new SelectorLoop(SelectorProvider.provider(), "AWS");
+        }
+        return sLocalLoop;
     }
 
-    protected P2PConnection createP2PConnection(final String signal, final P2PConnection.OnP2PConnectionListener listener) {
+    protected static synchronized BufferPool getBufferPool() {
+        if (sBufferPool == null) {
+            sBufferPool = P2PLink.createBufferPool();
+        }
+        return sBufferPool;
+    }
+
+    protected static ExecutorService getExecutor() {
+        return EXECUTOR;
+    }
+
+    protected boolean connect(final P2PLink link, final String signal) {
         if (DEBUG) {
-            Log.i(TAG, "createP2PConnection: " + signal);
+            Log.i(TAG, "connect: " + signal);
         }
 
         try {
@@ -52,40 +83,33 @@ public class AWSIotP2PManager {
             JSONObject global = json.getJSONObject(AWSIotP2PManager.KEY_GLOBAL);
             JSONObject local = json.getJSONObject(AWSIotP2PManager.KEY_LOCAL);
 
-            P2PConnection connection = createP2PConnection();
-            connection.setOnP2PConnectionListener(listener);
-
             for (int i = 0; i < 3; i++) {
-                if (connect(connection, global, local)) {
-                    return connection;
+                if (connect(link, global, local)) {
+                    return true;
                 }
             }
-            return null;
+            return false;
         } catch (JSONException e) {
             if (DEBUG) {
                 Log.e(TAG, "Invalid the json.", e);
             }
-            return null;
+            return false;
         }
     }
 
-    private boolean connect(final P2PConnection connection, final JSONObject global, final JSONObject local) throws JSONException {
+    private boolean connect(final P2PLink link, final JSONObject global, final JSONObject local) throws JSONException {
         String address = global.getString(AWSIotP2PManager.KEY_ADDRESS);
         int port = global.getInt(AWSIotP2PManager.KEY_PORT);
         try {
-            connection.connect(address, port);
+            link.connect(address, port);
         } catch (IOException e) {
             address = local.getString(AWSIotP2PManager.KEY_ADDRESS);
             port = local.getInt(AWSIotP2PManager.KEY_PORT);
             try {
-                connection.connect(address, port);
+                link.connect(address, port);
             } catch (IOException e1) {
-                try {
-                    connection.close();
-                } catch (IOException e2) {
-                    if (DEBUG) {
-                        Log.w(TAG, "", e2);
-                    }
+                if (DEBUG) {
+                    Log.w(TAG, "", e1);
                 }
                 return false;
             }
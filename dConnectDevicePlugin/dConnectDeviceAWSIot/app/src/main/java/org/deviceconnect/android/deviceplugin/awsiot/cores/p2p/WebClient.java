@@ -11,27 +11,28 @@ import android.content.Context;
 import android.net.Uri;
 import android.util.Log;
 
-import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
-import org.deviceconnect.android.deviceplugin.awsiot.udt.P2PConnection;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
+import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.MultiplexConnection;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.P2PLink;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.StreamBridge;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
-import java.util.concurrent.Executors;
 
 public class WebClient extends AWSIotP2PManager {
 
@@ -42,10 +43,9 @@ public class WebClient extends AWSIotP2PManager {
 
     public static final String PATH_CONTENT_PROVIDER = "/contentProvider";
 
-    private P2PConnection mP2PConnection;
-    private ISocketAdapter mSocket;
     private Context mContext;
-    private ByteArrayOutputStream mHttpHeaderData = new ByteArrayOutputStream();
+    private P2PLink mLink;
+    private boolean mClosed;
 
     public WebClient(final Context context) {
         mContext = context;
@@ -56,81 +56,177 @@ public class WebClient extends AWSIotP2PManager {
 
     @Override
     public void onReceivedSignaling(final String signaling) {
-        mP2PConnection = createP2PConnection(signaling, mOnP2PConnectionListener);
-        if (mP2PConnection == null) {
-            Executors.newSingleThreadExecutor().submit(new Runnable() {
-                @Override
-                public void run() {
-                    mP2PConnection = new P2PConnection();
-                    mP2PConnection.setOnP2PConnectionListener(mOnP2PConnectionListener);
-                    mP2PConnection.setConnectionId(getConnectionId(signaling));
-                    try {
-                        mP2PConnection.open();
-                    } catch (IOException e) {
-                        if (DEBUG) {
-                            Log.w(TAG, "WebClient#onReceivedSignaling", e);
-                        }
+        final P2PLink link;
+        try {
+            link = createLink(getConnectionId(signaling));
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebClient#onReceivedSignaling", e);
+            }
+            return;
+        }
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (connect(link, signaling)) {
+                    return;
+                }
+
+                // 直接接続できない場合は、こちらから待ち受けて相手からの接続を待つ
+                try {
+                    P2PLink server = createLink(link.getConnectionId());
+                    server.open();
+                } catch (IOException e) {
+                    if (DEBUG) {
+                        Log.w(TAG, "WebClient#onReceivedSignaling", e);
                     }
+                    WebClient.this.onDisconnected(WebClient.this);
                 }
-            });
-        }
+            }
+        });
     }
 
     public void close() {
-        if (mSocket != null) {
-            try {
-                mSocket.close();
-            } catch (IOException e) {
+        P2PLink link;
+        synchronized (this) {
+            mClosed = true;
+            link = mLink;
+            mLink = null;
+        }
+        if (link != null) {
+            link.close();
+        }
+    }
+
+    private synchronized P2PLink createLink(final int connectionId) throws IOException {
+        if (mClosed) {
+            throw new IOException("WebClient is already closed.");
+        }
+        if (mLink != null) {
+            mLink.close();
+        }
+
+        final P2PLink link = new P2PLink(getLinkLoop(), getBufferPool(), connectionId, false);
+        link.setOnP2PLinkListener(new P2PLink.OnP2PLinkListener() {
+            @Override
+            public void onRetrievedAddress(final String address, final int port) {
                 if (DEBUG) {
-                    Log.e(TAG, "", e);
+                    Log.d(TAG, "WebClient#onRetrievedAddress=" + address + ":" + port);
                 }
+                onNotifySignaling(createSignaling(mContext, link.getConnectionId(), address, port));
             }
-        }
 
-        if (mP2PConnection != null) {
-            try {
-                mP2PConnection.close();
-            } catch (IOException e) {
+            @Override
+            public void onConnected(final MultiplexConnection connection) {
                 if (DEBUG) {
-                    Log.e(TAG, "", e);
+                    Log.d(TAG, "WebClient#onConnected: connectionId=" + link.getConnectionId());
                 }
             }
-        }
-    }
 
-    private void sendFailedToConnect() {
-        if (mP2PConnection != null) {
-            try {
-                mP2PConnection.sendData(generateInternalServerError().getBytes());
-            } catch (IOException e) {
+            @Override
+            public void onStreamOpened(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+                openStream(stream, data);
+            }
+
+            @Override
+            public void onDisconnected() {
+                if (DEBUG) {
+                    Log.i(TAG, "WebClient#onDisconnected: connectionId=" + link.getConnectionId());
+                }
+                onLinkClosed(link);
+            }
+
+            @Override
+            public void onTimeout() {
                 if (DEBUG) {
-                    Log.w(TAG, "WebClient#sendFailedToConnect", e);
+                    Log.e(TAG, "WebClient#onTimeout: connectionId=" + link.getConnectionId());
                 }
+                onLinkClosed(link);
             }
+        });
+        mLink = link;
+        return link;
+    }
+
+    private void onLinkClosed(final P2PLink link) {
+        synchronized (this) {
+            if (mLink != link) {
+                return;
+            }
+            mLink = null;
         }
+        onDisconnected(this);
     }
 
-    private ISocketAdapter openSocket(final byte[] data) throws IOException {
+    private void openStream(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+        final byte[] request = new byte[data.remaining()];
+        data.get(request);
+
         if (DEBUG) {
-            Log.i(TAG, "WebClient#readHttpHeader: " + data.length);
-            Log.i(TAG, "WebClient#readHttpHeader: " + new String(data).replace("\r\n", " "));
+            Log.i(TAG, "WebClient#openStream: " + new String(request).replace("\r\n", " "));
+        }
+
+        final String uri;
+        try {
+            uri = getRequestUri(request);
+        } catch (IOException e) {
+            sendFailedToConnect(stream);
+            return;
+        }
+
+        // TODO 他のパターンがあれば検討すること。
+        if (uri.startsWith(PATH_CONTENT_PROVIDER)) {
+            int qmi = uri.indexOf('?');
+            if (qmi >= 0) {
+                sendContentProvider(stream, uri.substring(qmi + 1));
+                return;
+            }
+        }
+
+        final StreamBridge bridge;
+        final SocketChannel channel;
+        try {
+            channel = SocketChannel.open();
+            bridge = new StreamBridge(getLocalLoop(), channel, getBufferPool());
+        } catch (IOException e) {
+            sendFailedToConnect(stream);
+            return;
         }
+        bridge.attach(stream, ByteBuffer.wrap(request));
 
-        final ISocketAdapter socket = openSocketFromHttpHeader(data, data.length);
-        Executors.newSingleThreadExecutor().submit(new Runnable() {
+        getExecutor().execute(new Runnable() {
             @Override
             public void run() {
-                socket.r();
+                try {
+                    channel.configureBlocking(false);
+                    channel.connect(getHostAddress(request));
+                    bridge.start();
+                } catch (IOException e) {
+                    if (DEBUG) {
+                        Log.w(TAG, "WebClient#openStream", e);
+                    }
+                    sendFailedToConnect(stream);
+                    bridge.close();
+                }
             }
         });
-        return socket;
     }
 
-    private ISocketAdapter openSocketFromHttpHeader(final byte[] buf, final int len) throws IOException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(buf, 0, len)));
+    private void sendFailedToConnect(final MultiplexConnection.Stream stream) {
+        try {
+            byte[] data = generateInternalServerError().getBytes();
+            stream.write(data, 0, data.length);
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebClient#sendFailedToConnect", e);
+            }
+        }
+        stream.close();
+    }
 
-        String address = null;
-        int port = 0;
+    private String getRequestUri(final byte[] buf) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(buf)));
 
         String inLine = in.readLine();
         if (inLine == null) {
@@ -147,16 +243,14 @@ public class WebClient extends AWSIotP2PManager {
         if (!st.hasMoreTokens()) {
             throw new IOException("Cannot open socket.");
         }
+        return st.nextToken();
+    }
 
-        String uri = st.nextToken();
+    private InetSocketAddress getHostAddress(final byte[] buf) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(buf)));
 
-        // TODO 他のパターンがあれば検討すること。
-        if (uri.startsWith(PATH_CONTENT_PROVIDER)) {
-            int qmi = uri.indexOf('?');
-            if (qmi >= 0) {
-                return new ContentProviderSocketAdapter(mContext, uri.substring(qmi + 1));
-            }
-        }
+        String address = null;
+        int port = 0;
 
         String line;
         while ((line = in.readLine()) != null) {
@@ -177,246 +271,129 @@ public class WebClient extends AWSIotP2PManager {
                     throw new IOException("Cannot open socket. host=" + line);
                 }
 
-                return new SocketAdapter(new Socket(address, port));
+                return new InetSocketAddress(address, port);
             }
         }
 
         throw new IOException("Cannot open socket.");
     }
 
-    private P2PConnection.OnP2PConnectionListener mOnP2PConnectionListener = new P2PConnection.OnP2PConnectionListener() {
-        @Override
-        public void onRetrievedAddress(final String address, final int port) {
-            if (DEBUG) {
-                Log.d(TAG, "WebClient#onRetrievedAddress=" + address + ":" + port);
-            }
-
-            onNotifySignaling(createSignaling(mContext, mP2PConnection.getConnectionId(), address, port));
-        }
-
-        @Override
-        public void onConnected(final String address, final int port) {
-            if (DEBUG) {
-                Log.d(TAG, "WebClient#onConnected=" + address + ":" + port);
-            }
-        }
-
-        @Override
-        public void onReceivedData(final byte[] data, final String address, final int port) {
-            if (DEBUG) {
-                Log.d(TAG, "WebClient#onReceivedData=" + data.length);
-                Log.d(TAG, "" + new String(data).replace("\r\n", " "));
+    private void sendContentProvider(final MultiplexConnection.Stream stream, final String uri) {
+        // リクエストの残りは使用しないので、受信したら読み捨てる
+        stream.setOnStreamListener(new MultiplexConnection.OnStreamListener() {
+            @Override
+            public void onData(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+                stream.consumed(data.remaining());
             }
 
-            try {
-                if (mSocket == null) {
-                    mHttpHeaderData.write(data);
-                    if (findHeaderEnd(mHttpHeaderData.toByteArray(), mHttpHeaderData.size()) > 0) {
-                        mSocket = openSocket(mHttpHeaderData.toByteArray());
-                        mSocket.w(mHttpHeaderData.toByteArray());
-                        mHttpHeaderData = null;
-                    }
-                } else {
-                    mSocket.w(data);
-                }
-            } catch (Exception e) {
-                sendFailedToConnect();
-                close();
+            @Override
+            public void onWritable(final MultiplexConnection.Stream stream) {
             }
-        }
 
-        @Override
-        public void onDisconnected(final String address, final int port) {
-            if (DEBUG) {
-                Log.e(TAG, "WebClient#onDisconnect: " + address + ":" + port);
+            @Override
+            public void onClosed(final MultiplexConnection.Stream stream) {
             }
-            WebClient.this.onDisconnected(WebClient.this);
-        }
-
-        @Override
-        public void onTimeout() {
-            Log.e(TAG, "WebClient#onTimeout: ");
-        }
-    };
-
-    private interface ISocketAdapter {
-        void r();
-        void w(byte[] data) throws IOException;
-        void close() throws IOException;
-    }
-
-    private class SocketAdapter implements ISocketAdapter {
-        private Socket mSocket;
-        private OutputStream mOutputStream;
-
-        public SocketAdapter(final Socket socket) throws IOException {
-            mSocket = socket;
-            mOutputStream = socket.getOutputStream();
-        }
+        });
 
-        @Override
-        public void r() {
-            try {
-                InputStream is = mSocket.getInputStream();
-                int len;
-                byte[] buf = new byte[BUF_SIZE];
-                while ((len = is.read(buf)) > 0) {
-                    mP2PConnection.sendData(buf, 0, len);
-                }
-            } catch (IOException e) {
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
                 if (DEBUG) {
-                    Log.w(TAG, "WebClient#relayHttpResponse", e);
-                }
-            } finally {
-                try {
-                    mSocket.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    Log.i(TAG, "WebClient#sendContentProvider: uri=" + uri);
                 }
-            }
-        }
 
-        @Override
-        public void w(final byte[] data) throws IOException {
-            mOutputStream.write(data);
-            mOutputStream.flush();
-        }
-
-        @Override
-        public void close() throws IOException {
-            if (mSocket != null) {
+                File file = null;
+                InputStream in = null;
                 try {
-                    mSocket.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-    }
-
-    private class ContentProviderSocketAdapter implements ISocketAdapter {
-
-        private Context mContext;
-        private File mFile;
-        private String mUri;
-        private InputStream mInputStream;
-
-        public ContentProviderSocketAdapter(final Context context, final String uri) throws IOException {
-            mContext = context;
-            mUri = uri;
-        }
+                    file = load(uri);
 
-        public Context getContext() {
-            return mContext;
-        }
-
-        private File load(final String uri) throws IOException {
-            String fileName = AWSIotUtil.md5(uri);
-            if (fileName == null) {
-                throw new IOException("");
-            }
+                    byte[] header = generateHttpHeader(file.length()).getBytes();
+                    stream.write(header, 0, header.length);
 
-            File file = File.createTempFile(fileName, null, getContext().getCacheDir());
-            FileOutputStream out = null;
-            InputStream in = null;
-            byte[] buf = new byte[BUF_SIZE];
-            int len;
-            try {
-                out = new FileOutputStream(file);
-
-                ContentResolver r = getContext().getContentResolver();
-                in = r.openInputStream(Uri.parse(uri));
-                if (in != null) {
+                    in = new FileInputStream(file);
+                    int len;
+                    byte[] buf = new byte[BUF_SIZE];
                     while ((len = in.read(buf)) > 0) {
-                        out.write(buf, 0, len);
+                        stream.write(buf, 0, len);
                     }
-                    out.flush();
-                }
-                return file;
-            } finally {
-                if (out != null) {
-                    try {
-                        out.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+                } catch (Exception e) {
+                    if (DEBUG) {
+                        Log.e(TAG, "", e);
+                    }
+                } finally {
+                    stream.close();
+
+                    if (in != null) {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
                     }
-                }
 
-                if (in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+                    if (file != null && !file.delete()) {
+                        if (DEBUG) {
+                            Log.w(TAG, "Failed to delete file. file=" + file.getAbsolutePath());
+                        }
                     }
                 }
             }
-        }
-
-        private void createHeader() throws IOException {
-            String a = generateHttpHeader(mFile.length());
-            byte[] data = a.getBytes();
-            mP2PConnection.sendData(data, 0, data.length);
-        }
+        });
+    }
 
-        private String generateHttpHeader(final long fileSize) {
-            SimpleDateFormat gmtFrmt = new SimpleDateFormat("E, d MMM yyyy HH:mm:ss 'GMT'", Locale.US);
-            gmtFrmt.setTimeZone(TimeZone.getTimeZone("GMT"));
-
-            StringBuilder sb = new StringBuilder();
-            sb.append("HTTP/1.1 200 OK\r\n");
-            sb.append("Date: ").append(gmtFrmt.format(new Date())).append("\r\n");
-            sb.append("Server: AWSIot-Remote-Server(Android)\r\n");
-            sb.append("Content-Length: ").append(fileSize).append("\r\n");
-            sb.append("Connection: close\r\n");
-            sb.append("\r\n");
-            return sb.toString();
+    private File load(final String uri) throws IOException {
+        String fileName = AWSIotUtil.md5(uri);
+        if (fileName == null) {
+            throw new IOException("");
         }
 
-        @Override
-        public void r() {
-            try {
-                if (DEBUG) {
-                    Log.i(TAG, "WebClient#r: uri=" + mUri);
-                }
-
-                mFile = load(mUri);
-
-                createHeader();
-
-                mInputStream = new FileInputStream(mFile);
-                int len;
-                byte[] buf = new byte[BUF_SIZE];
-                while ((len = mInputStream.read(buf)) > 0) {
-                    mP2PConnection.sendData(buf, 0, len);
+        File file = File.createTempFile(fileName, null, mContext.getCacheDir());
+        FileOutputStream out = null;
+        InputStream in = null;
+        byte[] buf = new byte[BUF_SIZE];
+        int len;
+        try {
+            out = new FileOutputStream(file);
+
+            ContentResolver r = mContext.getContentResolver();
+            in = r.openInputStream(Uri.parse(uri));
+            if (in != null) {
+                while ((len = in.read(buf)) > 0) {
+                    out.write(buf, 0, len);
                 }
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.e(TAG, "", e);
-                }
-            } finally {
-                WebClient.this.close();
-
-                if (mFile != null && !mFile.delete()) {
-                    if (DEBUG) {
-                        Log.w(TAG, "Failed to delete file. mFile=" + mFile.getAbsolutePath());
-                    }
+                out.flush();
+            }
+            return file;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
             }
-        }
 
-        @Override
-        public void w(final byte[] data) {
-        }
-
-        @Override
-        public void close() throws IOException {
-            if (mInputStream != null) {
+            if (in != null) {
                 try {
-                    mInputStream.close();
+                    in.close();
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             }
         }
     }
+
+    private String generateHttpHeader(final long fileSize) {
+        SimpleDateFormat gmtFrmt = new SimpleDateFormat("E, d MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        gmtFrmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.1 200 OK\r\n");
+        sb.append("Date: ").append(gmtFrmt.format(new Date())).append("\r\n");
+        sb.append("Server: AWSIot-Remote-Server(Android)\r\n");
+        sb.append("Content-Length: ").append(fileSize).append("\r\n");
+        sb.append("Connection: close\r\n");
+        sb.append("\r\n");
+        return sb.toString();
+    }
 }
@@ -0,0 +1,283 @@
+/*
+ WebLink.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.p2p;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.MultiplexConnection;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.P2PLink;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.StreamBridge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class WebLink extends AWSIotP2PManager {
+
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+    private static final String TAG = "AWS";
+
+    private final Map<String, WebServer> mWebServerList = new ConcurrentHashMap<>();
+    private final List<PendingRequest> mPendingRequests = new ArrayList<>();
+
+    private Context mContext;
+    private P2PLink mLink;
+    private boolean mClosed;
+
+    public WebLink(final Context context) {
+        mContext = context;
+    }
+
+    public synchronized String createUrl(final String address, final String path) {
+        if (mClosed) {
+            return null;
+        }
+
+        WebServer webServer = mWebServerList.get(address);
+        if (webServer == null) {
+            webServer = new WebServer(address, this);
+            if (webServer.start() == null) {
+                return null;
+            }
+            mWebServerList.put(address, webServer);
+        }
+        return webServer.getUrl(path);
+    }
+
+    public void close() {
+        P2PLink link;
+        synchronized (this) {
+            mClosed = true;
+            link = mLink;
+            mLink = null;
+        }
+
+        for (WebServer webServer : mWebServerList.values()) {
+            webServer.stop();
+        }
+        mWebServerList.clear();
+
+        if (link != null) {
+            link.close();
+        }
+        failPendingRequests();
+    }
+
+    @Override
+    public void onReceivedSignaling(final String signaling) {
+        if (DEBUG) {
+            Log.i(TAG, "WebLink#onReceivedSignaling:" + signaling);
+        }
+
+        final P2PLink link;
+        synchronized (this) {
+            link = mLink;
+        }
+        if (link == null || link.getConnectionId() != getConnectionId(signaling)) {
+            return;
+        }
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!connect(link, signaling)) {
+                    onLinkFailed(link);
+                }
+            }
+        });
+    }
+
+    public boolean hasConnectionId(final String signaling) {
+        synchronized (this) {
+            return mLink != null && mLink.getConnectionId() == getConnectionId(signaling);
+        }
+    }
+
+    void openStream(final SelectionKey key, final byte[] request) {
+        MultiplexConnection connection;
+        synchronized (this) {
+            if (mLink == null || !mLink.isConnected()) {
+                key.interestOps(0);
+                mPendingRequests.add(new PendingRequest(key, request));
+                if (mLink == null && !mClosed) {
+                    openLink();
+                }
+                return;
+            }
+            connection = mLink.getConnection();
+        }
+        startBridge(connection, key, request);
+    }
+
+    private void startBridge(final MultiplexConnection connection, final SelectionKey key, final byte[] request) {
+        try {
+            StreamBridge bridge = new StreamBridge(getLocalLoop(), (SocketChannel) key.channel(), getBufferPool());
+            bridge.attach(connection.openStream(ByteBuffer.wrap(request), bridge), null);
+            bridge.start(key);
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebLink#startBridge", e);
+            }
+            sendFailedToConnect(key);
+        }
+    }
+
+    private void openLink() {
+        final P2PLink link;
+        try {
+            link = new P2PLink(getLinkLoop(), getBufferPool(), P2PLink.generateConnectionId(), true);
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebLink#openLink", e);
+            }
+            failPendingRequests();
+            return;
+        }
+        link.setOnP2PLinkListener(new P2PLink.OnP2PLinkListener() {
+            @Override
+            public void onRetrievedAddress(final String address, final int port) {
+                if (DEBUG) {
+                    Log.d(TAG, "WebLink#onRetrievedAddress=" + address + ":" + port);
+                }
+                onNotifySignaling(createSignaling(mContext, link.getConnectionId(), address, port));
+            }
+
+            @Override
+            public void onConnected(final MultiplexConnection connection) {
+                if (DEBUG) {
+                    Log.i(TAG, "WebLink#onConnected: connectionId=" + link.getConnectionId());
+                }
+                startPendingRequests(connection);
+            }
+
+            @Override
+            public void onStreamOpened(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+                stream.close();
+            }
+
+            @Override
+            public void onDisconnected() {
+                if (DEBUG) {
+                    Log.i(TAG, "WebLink#onDisconnected: connectionId=" + link.getConnectionId());
+                }
+                onLinkFailed(link);
+            }
+
+            @Override
+            public void onTimeout() {
+                if (DEBUG) {
+                    Log.i(TAG, "WebLink#onTimeout: connectionId=" + link.getConnectionId());
+                }
+                onLinkFailed(link);
+            }
+        });
+        mLink = link;
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    link.open();
+                } catch (IOException e) {
+                    if (DEBUG) {
+                        Log.w(TAG, "WebLink#openLink", e);
+                    }
+                    onLinkFailed(link);
+                }
+            }
+        });
+    }
+
+    private void onLinkFailed(final P2PLink link) {
+        synchronized (this) {
+            if (mLink != link) {
+                return;
+            }
+            mLink = null;
+        }
+        link.close();
+        failPendingRequests();
+    }
+
+    private void startPendingRequests(final MultiplexConnection connection) {
+        final List<PendingRequest> requests;
+        synchronized (this) {
+            requests = new ArrayList<>(mPendingRequests);
+            mPendingRequests.clear();
+        }
+        runOnLocalLoop(new Runnable() {
+            @Override
+            public void run() {
+                for (PendingRequest request : requests) {
+                    startBridge(connection, request.mKey, request.mRequest);
+                }
+            }
+        });
+    }
+
+    private void failPendingRequests() {
+        final List<PendingRequest> requests;
+        synchronized (this) {
+            requests = new ArrayList<>(mPendingRequests);
+            mPendingRequests.clear();
+        }
+        runOnLocalLoop(new Runnable() {
+            @Override
+            public void run() {
+                for (PendingRequest request : requests) {
+                    sendFailedToConnect(request.mKey);
+                }
+            }
+        });
+    }
+
+    private void runOnLocalLoop(final Runnable task) {
+        try {
+            getLocalLoop().execute(task);
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebLink#runOnLocalLoop", e);
+            }
+        }
+    }
+
+    private void sendFailedToConnect(final SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        key.cancel();
+        try {
+            channel.write(ByteBuffer.wrap(generateInternalServerError().getBytes()));
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebLink#sendFailedToConnect", e);
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebLink#sendFailedToConnect", e);
+            }
+        }
+    }
+
+    private static class PendingRequest {
+        private final SelectionKey mKey;
+        private final byte[] mRequest;
+
+        PendingRequest(final SelectionKey key, final byte[] request) {
+            mKey = key;
+            mRequest = request;
+        }
+    }
+}
@@ -6,146 +6,134 @@
  */
 package org.deviceconnect.android.deviceplugin.awsiot.cores.p2p;
 
-import android.content.Context;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
-import org.deviceconnect.android.deviceplugin.awsiot.udt.P2PConnection;
+import org.deviceconnect.android.deviceplugin.awsiot.udt.SelectorLoop;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 public class WebServer extends AWSIotP2PManager {
 
     private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final String TAG = "AWS";
 
-    private static final int MAX_CLIENT_SIZE = 8;
-    private String mPath = "/" + UUID.randomUUID().toString();
-    private boolean mStopFlag;
-    private ServerSocket mServerSocket;
-    private Map<Integer, ServerRunnable> mServerRunnableMap = new ConcurrentHashMap<>();
+    private static final int BUF_SIZE = 1024 * 8;
 
-    private final ExecutorService mExecutor = Executors.newFixedThreadPool(MAX_CLIENT_SIZE);
+    private ServerSocketChannel mServerChannel;
+    private SelectorLoop mLoop;
 
     private String mDestAddress;
-    private Context mContext;
+    private WebLink mLink;
 
-    public WebServer(final Context context, final String address) {
-        mContext = context;
+    public WebServer(final String address, final WebLink link) {
         mDestAddress = address;
+        mLink = link;
     }
 
-    public void setPath(String path) {
-        mPath = path;
-    }
-
-    public String getUrl() {
-        if (mServerSocket == null || mPath == null) {
+    public String getUrl(final String path) {
+        if (mServerChannel == null || path == null) {
             return null;
         }
-        return "http://localhost:" + mServerSocket.getLocalPort() + mPath;
+        return "http://localhost:" + mServerChannel.socket().getLocalPort() + path;
     }
 
     public synchronized String start() {
-        if (mServerSocket != null) {
+        if (mServerChannel != null) {
             throw new RuntimeException("WebServer is already running.");
         }
 
         try {
-            mServerSocket = openServerSocket();
+            mLoop = getLocalLoop();
+            mServerChannel = openServerSocket();
         } catch (IOException e) {
             // Failed to open server socket
-            mStopFlag = true;
             return null;
         }
 
-        Executors.newSingleThreadExecutor().submit(new Runnable() {
+        mLoop.register(mServerChannel, SelectionKey.OP_ACCEPT, new SelectorLoop.Handler() {
             @Override
-            public void run() {
-                mStopFlag = false;
-                try {
-                    while (!mStopFlag) {
-                        mExecutor.execute(new ServerRunnable(mServerSocket.accept()));
-                    }
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.w(TAG, "WebServer#start: " + e.getMessage());
-                    }
-                } finally {
-                    stop();
-                }
+            public void onRegistered(final SelectionKey key) {
+            }
+
+            @Override
+            public void onReady(final SelectionKey key) {
+                accept();
+            }
+
+            @Override
+            public void onClose() {
+                stop();
             }
         });
-        return getUrl();
+        return getUrl("/");
     }
 
-    public void stop() {
-        if (mStopFlag) {
+    public synchronized void stop() {
+        if (mServerChannel == null) {
             return;
         }
-        mStopFlag = true;
 
-        mExecutor.shutdown();
-        if (mServerSocket != null) {
+        try {
+            mServerChannel.close();
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "", e);
+            }
+        }
+        mServerChannel = null;
+    }
+
+    private ServerSocketChannel openServerSocket() throws IOException {
+        for (int i = 9000; i < 10000; i++) {
+            ServerSocketChannel channel = ServerSocketChannel.open();
             try {
-                mServerSocket.close();
-                mServerSocket = null;
+                channel.socket().bind(new InetSocketAddress(i));
+                return channel;
             } catch (IOException e) {
+                channel.close();
                 if (DEBUG) {
-                    Log.w(TAG, "", e);
+                    Log.w(TAG, "already use port=" + i);
                 }
             }
         }
-        mPath = null;
+        throw new IOException("Cannot open server socket.");
     }
 
-    @Override
-    public void onReceivedSignaling(final String signaling) {
-        if (DEBUG) {
-            Log.i(TAG, "WebServer#onReceivedSignaling:" + signaling);
+    private void accept() {
+        ServerSocketChannel server;
+        synchronized (this) {
+            server = mServerChannel;
         }
-
-        ServerRunnable run = mServerRunnableMap.get(getConnectionId(signaling));
-        if (run != null) {
-            run.onReceivedSignaling(signaling);
+        if (server == null) {
+            return;
         }
-    }
 
-    public boolean hasConnectionId(final String signaling) {
-        return mServerRunnableMap.get(getConnectionId(signaling))  != null;
-    }
-
-    protected void onConnected() {
-    }
-
-    protected void onDisconnected() {
-    }
-
-    private ServerSocket openServerSocket() throws IOException {
-        for (int i = 9000; i < 10000; i++) {
-            try {
-                return new ServerSocket(i);
-            } catch (IOException e) {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
                 if (DEBUG) {
-                    Log.w(TAG, "already use port=" + i);
+                    Log.i(TAG, "WebServer#accept: " + channel);
                 }
+                mLoop.register(channel, SelectionKey.OP_READ, new HeaderReader(channel));
             }
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebServer#accept: " + e.getMessage());
+            }
+            stop();
         }
-        throw new IOException("Cannot open server socket.");
     }
 
     private byte[] decodeHeader(final byte[] buf, final int len) throws IOException {
@@ -167,222 +155,53 @@ public class WebServer extends AWSIotP2PManager {
         return out.toByteArray();
     }
 
-    private class ServerRunnable implements Runnable {
-        private static final int BUF_SIZE = 1024 * 8;
-        private Socket mSocket;
-        private boolean mStopFlag;
-        private P2PConnection mP2PConnection;
-        private int mConnectionId;
+    private class HeaderReader implements SelectorLoop.Handler {
+        private final SocketChannel mChannel;
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(BUF_SIZE);
 
-        public ServerRunnable(final Socket socket) {
-            mConnectionId = P2PConnection.generateConnectionId();
-            mSocket = socket;
-        }
-
-        private void connectP2P() {
-            try {
-                mP2PConnection = new P2PConnection(mConnectionId);
-                mP2PConnection.setOnP2PConnectionListener(mOnP2PConnectionListener);
-                mP2PConnection.open();
-            } catch (IOException e) {
-                if (DEBUG) {
-                    Log.w(TAG, "ServerRunnable#connectP2P");
-                }
-            }
+        HeaderReader(final SocketChannel channel) {
+            mChannel = channel;
         }
 
-        private void onReceivedSignaling(final String signaling) {
-            if (DEBUG) {
-                Log.i(TAG, "ServerRunnable#onReceivedSignaling");
-            }
-
-            if (mP2PConnection != null) {
-                try {
-                    mP2PConnection.close();
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.w(TAG, "ServerRunnable#onReceivedSignaling", e);
-                    }
-                }
-            }
-
-            mP2PConnection = createP2PConnection(signaling, mOnP2PConnectionListener);
-            if (mP2PConnection == null) {
-                sendFailedToConnect();
-                mStopFlag = true;
-            }
+        @Override
+        public void onRegistered(final SelectionKey key) {
         }
 
-        private void relayHttpRequest() {
-            final byte[] buf = new byte[BUF_SIZE];
-            int headerSize = 0;
-            int readLength = 0;
-            int read;
-
-            if (DEBUG) {
-                Log.e(TAG, "WebServer#relayHttpRequest");
-            }
-
+        @Override
+        public void onReady(final SelectionKey key) {
             try {
-                InputStream in = mSocket.getInputStream();
-                read = in.read(buf, 0, BUF_SIZE);
-                if (read == -1) {
-                    // error
+                if (mChannel.read(mBuffer) < 0) {
+                    onClose();
                     return;
                 }
 
-                while (read > 0) {
-                    readLength += read;
-                    headerSize = findHeaderEnd(buf, readLength);
-                    if (headerSize > 0) {
-                        break;
-                    }
-                    read = in.read(buf, readLength, BUF_SIZE - readLength);
+                int headerSize = findHeaderEnd(mBuffer.array(), mBuffer.position());
+                if (headerSize > 0) {
+                    ByteArrayOutputStream request = new ByteArrayOutputStream();
+                    request.write(decodeHeader(mBuffer.array(), headerSize));
+                    request.write(mBuffer.array(), headerSize, mBuffer.position() - headerSize);
+                    mLink.openStream(key, request.toByteArray());
+                } else if (!mBuffer.hasRemaining()) {
+                    mChannel.write(ByteBuffer.wrap(generateInternalServerError().getBytes()));
+                    onClose();
                 }
-
-                mP2PConnection.sendData(decodeHeader(buf, headerSize));
-                mP2PConnection.sendData(buf, headerSize, readLength - headerSize);
-
-                while (!mStopFlag && (read = in.read(buf)) != -1) {
-                    mP2PConnection.sendData(buf, 0, read);
-                }
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.w(TAG, "ServerRunnable#relayHttpRequest", e);
-                }
-            }
-        }
-
-        private void sendFailedToConnect() {
-            try {
-                mSocket.getOutputStream().write(generateInternalServerError().getBytes());
-                mSocket.getOutputStream().flush();
             } catch (IOException e) {
                 if (DEBUG) {
-                    Log.w(TAG, "", e);
+                    Log.w(TAG, "HeaderReader#onReady", e);
                 }
+                onClose();
             }
         }
 
         @Override
-        public void run() {
-            if (DEBUG) {
-                Log.i(TAG, "ServerRunnable Start. Socket=" + mSocket);
-            }
-            mServerRunnableMap.put(mConnectionId, this);
-
-            onConnected();
-
+        public void onClose() {
             try {
-                connectP2P();
-
-                while (!mStopFlag && !mSocket.isClosed()) {
-                    Thread.sleep(1000);
-                }
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.w(TAG, "ServerRunnable#run", e);
-                }
-                sendFailedToConnect();
-            } finally {
+                mChannel.close();
+            } catch (IOException e) {
                 if (DEBUG) {
-                    Log.i(TAG, "ServerRunnable End. Socket=" + mSocket);
-                }
-
-                mServerRunnableMap.remove(mConnectionId);
-
-                if (mP2PConnection != null) {
-                    try {
-                        mP2PConnection.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-
-                if (mSocket != null) {
-                    try {
-                        mSocket.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                    Log.w(TAG, "HeaderReader#onClose", e);
                 }
-
-                onDisconnected();
             }
         }
-
-        private P2PConnection.OnP2PConnectionListener mOnP2PConnectionListener = new P2PConnection.OnP2PConnectionListener() {
-            @Override
-            public void onRetrievedAddress(final String address, final int port) {
-                if (DEBUG) {
-                    Log.d(TAG, "WebServer#onRetrievedAddress=" + address + ":" + port);
-                }
-
-                onNotifySignaling(createSignaling(mContext, mP2PConnection.getConnectionId(), address, port));
-            }
-
-            @Override
-            public void onConnected(final String address, final int port) {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onConnected: " + address + ":" +  port);
-                }
-
-                Executors.newSingleThreadExecutor().submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        relayHttpRequest();
-                    }
-                });
-            }
-
-            @Override
-            public void onReceivedData(final byte[] data, final String address, final int port) {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onReceivedData: " + address + ":" + port + " " + data.length);
-                }
-
-                try {
-                    mSocket.getOutputStream().write(data);
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "WebServer#onReceivedData:", e);
-                    }
-                }
-            }
-
-            @Override
-            public void onDisconnected(final String address, final int port) {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onDisconnected: " + address + ":" +  port);
-                }
-
-                try {
-                    mSocket.close();
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "WebServer#onDisconnected:", e);
-                    }
-                }
-                mStopFlag = true;
-            }
-
-            @Override
-            public void onTimeout() {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onTimeout:");
-                }
-
-                sendFailedToConnect();
-
-                try {
-                    mSocket.close();
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "WebServer#onTimeout:", e);
-                    }
-                }
-                mStopFlag = true;
-            }
-        };
     }
 }
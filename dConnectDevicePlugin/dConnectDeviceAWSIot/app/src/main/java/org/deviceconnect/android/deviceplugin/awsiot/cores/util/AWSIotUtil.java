@@ -31,6 +31,10 @@ public final class AWSIotUtil {
     public static final String KEY_REQUEST_CODE = "requestCode";
     public static final String KEY_REQUEST = "request";
     public static final String KEY_RESPONSE = "response";
+    public static final String KEY_REQUESTS = "requests";
+    public static final String KEY_RESPONSES = "responses";
+    /** まとめたメッセージを解釈できることを相手に通知するキー. */
+    public static final String KEY_BATCH = "batch";
     public static final String KEY_P2P_REMOTE = "p2p_remote";
     public static final String KEY_P2P_LOCAL = "p2p_local";
 
@@ -112,10 +116,26 @@ public final class AWSIotUtil {
         return "{\"" + KEY_REQUEST + "\":" + request + ",\"" + KEY_REQUEST_CODE + "\":" + requestCode + "}";
     }
 
+    public static String createRequest(final long requestCode, final String request, final boolean batch) {
+        if (!batch) {
+            return createRequest(requestCode, request);
+        }
+        return "{\"" + KEY_REQUEST + "\":" + request + ",\"" + KEY_REQUEST_CODE + "\":" + requestCode
+                + ",\"" + KEY_BATCH + "\":true}";
+    }
+
     public static String createResponse(final long requestCode, final String response) {
         return "{\"" + KEY_RESPONSE + "\":" + response + ",\"" + KEY_REQUEST_CODE + "\":" + requestCode + "}";
     }
 
+    public static String createResponse(final long requestCode, final String response, final boolean batch) {
+        if (!batch) {
+            return createResponse(requestCode, response);
+        }
+        return "{\"" + KEY_RESPONSE + "\":" + response + ",\"" + KEY_REQUEST_CODE + "\":" + requestCode
+                + ",\"" + KEY_BATCH + "\":true}";
+    }
+
     public static String createRemoteP2P(final String p2p) {
         return createRemoteP2P(generateRequestCode(), p2p);
     }
@@ -12,16 +12,19 @@ import android.os.Handler;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotController;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotMessagePipeline;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotPrefUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RemoteDeviceConnectManager;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class AWSIotLocalManager {
 
@@ -33,6 +36,8 @@ public class AWSIotLocalManager {
     private AWSIotWebLocalServerManager mAWSIotWebServerManager;
     private Context mContext;
     private ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private ScheduledExecutorService mPipelineExecutor = Executors.newSingleThreadScheduledExecutor();
+    private AWSIotMessagePipeline mResponsePipeline;
 
     private String mSessionKey = UUID.randomUUID().toString();
 
@@ -51,6 +56,23 @@ public class AWSIotLocalManager {
         mRemoteManager = remote;
         mPrefUtil = new AWSIotPrefUtil(mContext);
         mIot.addOnAWSIotEventListener(mOnAWSIotEventListener);
+
+        // 短時間に返却するレスポンスは1つのメッセージにまとめて送信する
+        // まとめたメッセージを解釈できないリモートには、従来通り1つずつ送信する
+        mResponsePipeline = new AWSIotMessagePipeline(AWSIotUtil.KEY_RESPONSES, 0,
+                AWSIotMessagePipeline.DEFAULT_BATCH_DELAY, mPipelineExecutor, new AWSIotMessagePipeline.Callback() {
+            @Override
+            public boolean onPublish(final String message) {
+                return mIot.publish(mRemoteManager.getResponseTopic(), message);
+            }
+
+            @Override
+            public void onFailed(final long requestCode) {
+                if (DEBUG) {
+                    Log.w(TAG, "Failed to publish the response. requestCode=" + requestCode);
+                }
+            }
+        });
     }
 
     public AWSIotController getAWSIotController() {
@@ -143,7 +165,16 @@ public class AWSIotLocalManager {
             long requestCode = json.optLong("requestCode");
             JSONObject request = json.optJSONObject(AWSIotUtil.KEY_REQUEST);
             if (request != null) {
-                onReceivedDeviceConnectRequest(requestCode, request.toString());
+                onReceivedDeviceConnectRequest(requestCode, request.toString(),
+                        json.optBoolean(AWSIotUtil.KEY_BATCH));
+            }
+            JSONArray requests = json.optJSONArray(AWSIotUtil.KEY_REQUESTS);
+            if (requests != null) {
+                for (int i = 0; i < requests.length(); i++) {
+                    JSONObject obj = requests.getJSONObject(i);
+                    onReceivedDeviceConnectRequest(obj.optLong(AWSIotUtil.KEY_REQUEST_CODE),
+                            obj.getJSONObject(AWSIotUtil.KEY_REQUEST).toString(), true);
+                }
             }
             JSONObject p2p = json.optJSONObject(AWSIotUtil.KEY_P2P_REMOTE);
             if (p2p != null) {
@@ -160,7 +191,7 @@ public class AWSIotLocalManager {
         }
     }
 
-    private void onReceivedDeviceConnectRequest(final long requestCode, final String request) {
+    private void onReceivedDeviceConnectRequest(final long requestCode, final String request, final boolean batch) {
         if (DEBUG) {
             Log.i(TAG, "onReceivedDeviceConnectRequest: request=" + request);
         }
@@ -185,7 +216,11 @@ public class AWSIotLocalManager {
                 if (DEBUG) {
                     Log.d(TAG, "onReceivedDeviceConnectRequest: requestCode=" + requestCode + " response=" + response);
                 }
-                publish(AWSIotUtil.createResponse(requestCode, response));
+                if (batch) {
+                    mResponsePipeline.send(requestCode, AWSIotUtil.createResponse(requestCode, response, true));
+                } else {
+                    publish(AWSIotUtil.createResponse(requestCode, response));
+                }
             }
         });
     }
@@ -9,22 +9,17 @@ package org.deviceconnect.android.deviceplugin.awsiot.local;
 import android.content.Context;
 import android.util.Log;
 
-import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebServer;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebLink;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 public class AWSIotWebLocalServerManager {
     private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final String TAG = "AWS-Local";
 
-    private final List<WebServer> mWebServerList = Collections.synchronizedList(new ArrayList<WebServer>());
-
     private AWSIotLocalManager mIot;
     private Context mContext;
+    private WebLink mWebLink;
 
     public AWSIotWebLocalServerManager(final Context context, final AWSIotLocalManager ctl) {
         mContext = context;
@@ -32,12 +27,14 @@ public class AWSIotWebLocalServerManager {
     }
 
     public void destroy() {
-        synchronized (mWebServerList) {
-            for (WebServer server : mWebServerList) {
-                server.stop();
-            }
+        WebLink webLink;
+        synchronized (this) {
+            webLink = mWebLink;
+            mWebLink = null;
+        }
+        if (webLink != null) {
+            webLink.close();
         }
-        mWebServerList.clear();
     }
 
     public String createWebServer(final String address, final String path) {
@@ -45,31 +42,20 @@ public class AWSIotWebLocalServerManager {
             Log.i(TAG, "createWebServer: address=" + address + " path=" + path);
         }
 
-        // TODO WebServerをどのタイミングで止めるか検討
-        WebServer webServer = new WebServer(mContext, address) {
-            @Override
-            public void onNotifySignaling(final String signaling) {
-                mIot.publish(AWSIotUtil.createLocalP2P(signaling));
+        // 1本のP2P接続を共有して、全てのWebServerのリクエストを多重化する
+        WebLink webLink;
+        synchronized (this) {
+            if (mWebLink == null) {
+                mWebLink = new WebLink(mContext) {
+                    @Override
+                    public void onNotifySignaling(final String signaling) {
+                        mIot.publish(AWSIotUtil.createLocalP2P(signaling));
+                    }
+                };
             }
-            @Override
-            protected void onConnected() {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onConnected");
-                }
-            }
-            @Override
-            protected void onDisconnected() {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onDisconnected");
-                }
-                mWebServerList.remove(this);
-            }
-        };
-        webServer.setPath(path);
-        String url = webServer.start();
-        if (url != null) {
-            mWebServerList.add(webServer);
+            webLink = mWebLink;
         }
+        String url = webLink.createUrl(address, path);
 
         if (DEBUG) {
             Log.i(TAG, "url=" + url);
@@ -79,12 +65,12 @@ public class AWSIotWebLocalServerManager {
     }
 
     public void onReceivedSignaling(final String message) {
-        synchronized (mWebServerList) {
-            for (WebServer server : mWebServerList) {
-                if (server.hasConnectionId(message)) {
-                    server.onReceivedSignaling(message);
-                }
-            }
+        WebLink webLink;
+        synchronized (this) {
+            webLink = mWebLink;
+        }
+        if (webLink != null && webLink.hasConnectionId(message)) {
+            webLink.onReceivedSignaling(message);
         }
     }
 }
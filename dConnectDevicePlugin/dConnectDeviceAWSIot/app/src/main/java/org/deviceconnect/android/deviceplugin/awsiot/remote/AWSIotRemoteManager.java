@@ -15,6 +15,7 @@ import android.util.Log;
 import org.deviceconnect.android.deviceplugin.awsiot.AWSIotDeviceManager;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotController;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotDeviceApplication;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotMessagePipeline;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RDCMListManager;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RemoteDeviceConnectManager;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebClient;
@@ -32,9 +33,12 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -46,6 +50,12 @@ public class AWSIotRemoteManager {
     private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final String TAG = "AWS-Remote";
 
+    /** リモートごとに同時に応答待ちにできるリクエスト数. */
+    private static final int MAX_IN_FLIGHT = 32;
+
+    /** サービス一覧のキャッシュの有効期限(ms). */
+    private static final long SERVICE_CACHE_EXPIRE = 5 * 60 * 1000;
+
     private Context mContext;
 
     private AWSIotWebServerManager mAWSIotWebServerManager;
@@ -54,6 +64,13 @@ public class AWSIotRemoteManager {
     private AWSIotRequestManager mRequestManager;
 
     private ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private ScheduledExecutorService mPipelineExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private final Map<RemoteDeviceConnectManager, AWSIotMessagePipeline> mPipelines = new ConcurrentHashMap<>();
+    private final Map<RemoteDeviceConnectManager, ServiceCache> mServiceCache = new ConcurrentHashMap<>();
+    /** onServiceChangeイベントを登録したリモート. */
+    private final Set<RemoteDeviceConnectManager> mServiceChangeRemotes =
+            Collections.newSetFromMap(new ConcurrentHashMap<RemoteDeviceConnectManager, Boolean>());
 
     private AWSIotController mIot;
 
@@ -109,6 +126,13 @@ public class AWSIotRemoteManager {
             mRequestManager.destroy();
             mRequestManager = null;
         }
+
+        for (AWSIotMessagePipeline pipeline : mPipelines.values()) {
+            pipeline.destroy();
+        }
+        mPipelines.clear();
+        mServiceCache.clear();
+        mServiceChangeRemotes.clear();
     }
 
     public boolean sendRequest(final Intent request, final Intent response) {
@@ -132,6 +156,12 @@ public class AWSIotRemoteManager {
             EventManager.INSTANCE.addEvent(request);
         } else if (IntentDConnectMessage.ACTION_DELETE.equals(action)) {
             EventManager.INSTANCE.removeEvent(request);
+
+            // キャッシュ用に登録したonServiceChangeも解除されるので、キャッシュを破棄する
+            if (isServiceChangeEvent(DConnectProfile.getProfile(request), DConnectProfile.getAttribute(request))) {
+                mServiceChangeRemotes.remove(remote);
+                mServiceCache.remove(remote);
+            }
         }
 
         String message = AWSIotRemoteUtil.intentToJson(request, new AWSIotRemoteUtil.ConversionIntentCallback() {
@@ -152,10 +182,6 @@ public class AWSIotRemoteManager {
         });
 
         int requestCode = AWSIotUtil.generateRequestCode();
-        if (!publish(remote, AWSIotUtil.createRequest(requestCode, message))) {
-            MessageUtils.setIllegalDeviceStateError(response, "Not publish to the mqtt.");
-            return true;
-        }
 
         AWSIotRequest aws = new AWSIotRequest() {
             @Override
@@ -193,6 +219,16 @@ public class AWSIotRemoteManager {
                 }
                 sendResponse(mResponse);
             }
+
+            @Override
+            public void onPublishFailed(final RemoteDeviceConnectManager remote) {
+                if (!mRequestManager.pop(mRequestCode)) {
+                    return;
+                }
+
+                MessageUtils.setIllegalDeviceStateError(mResponse, "Not publish to the mqtt.");
+                sendResponse(mResponse);
+            }
         };
         aws.mRequest = request;
         aws.mResponse = response;
@@ -200,6 +236,8 @@ public class AWSIotRemoteManager {
         aws.mRequestCount = 1;
         mRequestManager.put(requestCode, aws);
 
+        getPipeline(remote).send(requestCode, AWSIotUtil.createRequest(requestCode, message, true));
+
         return false;
     }
 
@@ -226,25 +264,40 @@ public class AWSIotRemoteManager {
 
         String message = AWSIotRemoteUtil.intentToJson(request, null);
 
-        int count = 0;
-        int requestCode = AWSIotUtil.generateRequestCode();
+        // キャッシュが有効なリモートには問い合わせない
+        boolean online = false;
+        List<Bundle> cachedServices = new ArrayList<>();
+        List<RemoteDeviceConnectManager> targets = new ArrayList<>();
         for (RemoteDeviceConnectManager remote : managers) {
             if (isOnlineManager(remote)) {
-                if (publish(remote, AWSIotUtil.createRequest(requestCode, message))) {
-                    count++;
+                online = true;
+                List<Bundle> services = getServiceCache(remote);
+                if (services != null) {
+                    cachedServices.addAll(services);
+                } else {
+                    targets.add(remote);
                 }
             }
         }
 
-        if (count == 0) {
+        if (!online) {
             MessageUtils.setUnknownError(response, "There is no managers.");
             return true;
         }
 
+        if (targets.isEmpty()) {
+            DConnectProfile.setResult(response, DConnectMessage.RESULT_OK);
+            ServiceDiscoveryProfile.setServices(response, cachedServices);
+            return true;
+        }
+
+        int requestCode = AWSIotUtil.generateRequestCode();
+
         AWSIotRequest aws = new AWSIotRequest() {
             @Override
             public void onReceivedMessage(final RemoteDeviceConnectManager remote, final JSONObject responseObj) throws JSONException {
                 if (responseObj != null && responseObj.has(ServiceDiscoveryProfile.PARAM_SERVICES)) {
+                    List<Bundle> services = new ArrayList<>();
                     JSONArray array = responseObj.getJSONArray("services");
                     for (int i = 0; i < array.length(); i++) {
                         Bundle service = new Bundle();
@@ -270,10 +323,21 @@ public class AWSIotRemoteManager {
                                 return createWebServer(remote, u.getAuthority(), path);
                             }
                         });
-                        mServices.add(service);
+                        services.add(service);
                     }
+                    putServiceCache(remote, services);
+                    mServices.addAll(services);
+                }
+
+                if (!mRequestManager.pop(mRequestCode)) {
+                    return;
                 }
 
+                send();
+            }
+
+            @Override
+            public void onPublishFailed(final RemoteDeviceConnectManager remote) {
                 if (!mRequestManager.pop(mRequestCode)) {
                     return;
                 }
@@ -295,9 +359,14 @@ public class AWSIotRemoteManager {
         aws.mRequest = request;
         aws.mResponse = response;
         aws.mRequestCode = requestCode;
-        aws.mRequestCount = count;
+        aws.mRequestCount = targets.size();
+        aws.mServices.addAll(cachedServices);
         mRequestManager.put(requestCode, aws, 6);
 
+        for (RemoteDeviceConnectManager remote : targets) {
+            getPipeline(remote).send(requestCode, AWSIotUtil.createRequest(requestCode, message, true));
+        }
+
         return false;
     }
 
@@ -305,6 +374,122 @@ public class AWSIotRemoteManager {
         return mIot.publish(remote.getRequestTopic(), message);
     }
 
+    private AWSIotMessagePipeline getPipeline(final RemoteDeviceConnectManager remote) {
+        synchronized (mPipelines) {
+            AWSIotMessagePipeline pipeline = mPipelines.get(remote);
+            if (pipeline == null) {
+                pipeline = new AWSIotMessagePipeline(AWSIotUtil.KEY_REQUESTS, MAX_IN_FLIGHT,
+                        AWSIotMessagePipeline.DEFAULT_BATCH_DELAY, mPipelineExecutor, new AWSIotMessagePipeline.Callback() {
+                    @Override
+                    public boolean onPublish(final String message) {
+                        return publish(remote, message);
+                    }
+
+                    @Override
+                    public void onFailed(final long requestCode) {
+                        AWSIotRequest request = mRequestManager.get((int) requestCode);
+                        if (request != null) {
+                            request.onPublishFailed(remote);
+                        }
+                    }
+                });
+                // まとめたメッセージを解釈できるリモートか分かるまでは、1つずつ送信する
+                pipeline.setBatchEnabled(false);
+                mPipelines.put(remote, pipeline);
+            }
+            return pipeline;
+        }
+    }
+
+    private List<Bundle> getServiceCache(final RemoteDeviceConnectManager remote) {
+        ServiceCache cache = mServiceCache.get(remote);
+        if (cache == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cache.mTimeStamp > SERVICE_CACHE_EXPIRE) {
+            mServiceCache.remove(remote);
+            return null;
+        }
+        return cache.mServices;
+    }
+
+    private void putServiceCache(final RemoteDeviceConnectManager remote, final List<Bundle> services) {
+        ServiceCache cache = new ServiceCache();
+        cache.mServices = services;
+        cache.mTimeStamp = System.currentTimeMillis();
+        mServiceCache.put(remote, cache);
+
+        if (mServiceChangeRemotes.add(remote)) {
+            subscribeServiceChange(remote);
+        }
+    }
+
+    /**
+     * リモートにonServiceChangeイベントを登録する.
+     * <p>
+     * イベントを受信した時にサービス一覧のキャッシュを破棄する。<br>
+     * 登録に失敗した場合には、キャッシュを破棄して次回のサービス検索で登録し直す。
+     * </p>
+     * @param remote 登録するリモート
+     */
+    private void subscribeServiceChange(final RemoteDeviceConnectManager remote) {
+        Intent request = new Intent(IntentDConnectMessage.ACTION_PUT);
+        request.putExtra(DConnectMessage.EXTRA_PROFILE, ServiceDiscoveryProfile.PROFILE_NAME);
+        request.putExtra(DConnectMessage.EXTRA_ATTRIBUTE, ServiceDiscoveryProfile.ATTRIBUTE_ON_SERVICE_CHANGE);
+        // セッションキーはローカル側で置き換えられる
+        request.putExtra(DConnectMessage.EXTRA_SESSION_KEY, TAG);
+        String message = AWSIotRemoteUtil.intentToJson(request, null);
+
+        int requestCode = AWSIotUtil.generateRequestCode();
+
+        AWSIotRequest aws = new AWSIotRequest() {
+            @Override
+            public void onReceivedMessage(final RemoteDeviceConnectManager remote, final JSONObject responseObj) throws JSONException {
+                if (!mRequestManager.pop(mRequestCode)) {
+                    return;
+                }
+
+                if (responseObj == null || responseObj.optInt(DConnectMessage.EXTRA_RESULT,
+                        DConnectMessage.RESULT_ERROR) != DConnectMessage.RESULT_OK) {
+                    onFailed(remote);
+                }
+            }
+
+            @Override
+            public void onPublishFailed(final RemoteDeviceConnectManager remote) {
+                if (!mRequestManager.pop(mRequestCode)) {
+                    return;
+                }
+
+                onFailed(remote);
+            }
+
+            @Override
+            public void onTimeout() {
+                onFailed(remote);
+            }
+
+            private void onFailed(final RemoteDeviceConnectManager remote) {
+                if (DEBUG) {
+                    Log.w(TAG, "Failed to register onServiceChange. remote=" + remote.getName());
+                }
+                mServiceChangeRemotes.remove(remote);
+                mServiceCache.remove(remote);
+            }
+        };
+        aws.mRequest = request;
+        aws.mRequestCode = requestCode;
+        aws.mRequestCount = 1;
+        mRequestManager.put(requestCode, aws);
+
+        getPipeline(remote).send(requestCode, AWSIotUtil.createRequest(requestCode, message, true));
+    }
+
+    private boolean isServiceChangeEvent(final String profile, final String attribute) {
+        return ServiceDiscoveryProfile.PROFILE_NAME.equalsIgnoreCase(profile)
+                && ServiceDiscoveryProfile.ATTRIBUTE_ON_SERVICE_CHANGE.equalsIgnoreCase(attribute);
+    }
+
     private String createWebServer(final RemoteDeviceConnectManager remote, final String address, final String path) {
         return mAWSIotWebServerManager.createWebServer(remote, address, path);
     }
@@ -348,7 +533,13 @@ public class AWSIotRemoteManager {
             JSONObject json = new JSONObject(message);
             JSONObject response = json.optJSONObject(AWSIotUtil.KEY_RESPONSE);
             if (response != null) {
-                onReceivedDeviceConnectResponse(remote, message);
+                onReceivedDeviceConnectResponse(remote, json);
+            }
+            JSONArray responses = json.optJSONArray(AWSIotUtil.KEY_RESPONSES);
+            if (responses != null) {
+                for (int i = 0; i < responses.length(); i++) {
+                    onReceivedDeviceConnectResponse(remote, responses.getJSONObject(i));
+                }
             }
             JSONObject p2p = json.optJSONObject(AWSIotUtil.KEY_P2P_REMOTE);
             if (p2p != null) {
@@ -365,10 +556,17 @@ public class AWSIotRemoteManager {
         }
     }
 
-    private void onReceivedDeviceConnectResponse(final RemoteDeviceConnectManager remote, final String message) {
+    private void onReceivedDeviceConnectResponse(final RemoteDeviceConnectManager remote, final JSONObject jsonObject) {
         try {
-            JSONObject jsonObject = new JSONObject(message);
-            AWSIotRequest request = mRequestManager.get(jsonObject.getInt("requestCode"));
+            int requestCode = jsonObject.getInt(AWSIotUtil.KEY_REQUEST_CODE);
+            AWSIotMessagePipeline pipeline = getPipeline(remote);
+            if (jsonObject.optBoolean(AWSIotUtil.KEY_BATCH)) {
+                // まとめたメッセージを解釈できるリモートなので、まとめて送信する
+                pipeline.setBatchEnabled(true);
+            }
+            pipeline.complete(requestCode);
+
+            AWSIotRequest request = mRequestManager.get(requestCode);
             if (request == null) {
                 return;
             }
@@ -394,6 +592,11 @@ public class AWSIotRemoteManager {
             String attribute = jsonObject.optString("attribute");
             String serviceId = mAWSIotDeviceManager.generateServiceId(remote, jsonObject.optString("serviceId"));
 
+            // サービスの状態が変わった場合にはキャッシュを破棄する
+            if (isServiceChangeEvent(profile, attribute)) {
+                mServiceCache.remove(remote);
+            }
+
             List<Event> events = EventManager.INSTANCE.getEventList(serviceId, profile, inter, attribute);
             for (Event event : events) {
                 Intent intent = EventManager.createEventMessage(event);
@@ -441,6 +644,14 @@ public class AWSIotRemoteManager {
             } else {
                 mIot.unsubscribe(manager.getResponseTopic());
                 mIot.unsubscribe(manager.getEventTopic());
+                mServiceCache.remove(manager);
+                mServiceChangeRemotes.remove(manager);
+
+                // 次にオンラインになった時のリモートがまとめたメッセージを解釈できるとは限らない
+                AWSIotMessagePipeline pipeline = mPipelines.get(manager);
+                if (pipeline != null) {
+                    pipeline.setBatchEnabled(false);
+                }
             }
         }
     };
@@ -495,7 +706,7 @@ public class AWSIotRemoteManager {
             mExecutorService.shutdown();
         }
 
-        public void put(final int requestCode, final AWSIotRequest request, final int timeout, final TimeUnit timeUnit) {
+        public synchronized void put(final int requestCode, final AWSIotRequest request, final int timeout, final TimeUnit timeUnit) {
             mMap.put(requestCode, request);
             request.mFuture = mExecutorService.schedule(request, timeout, timeUnit);
         }
@@ -508,15 +719,15 @@ public class AWSIotRemoteManager {
             put(requestCode, request, 30, TimeUnit.SECONDS);
         }
 
-        public AWSIotRequest get(int key) {
+        public synchronized AWSIotRequest get(int key) {
             return mMap.get(key);
         }
 
-        public void remove(int key) {
+        public synchronized void remove(int key) {
             mMap.remove(key);
         }
 
-        public boolean pop(int key) {
+        public synchronized boolean pop(int key) {
             AWSIotRequest request = mMap.get(key);
             if (request == null) {
                 return false;
@@ -546,6 +757,11 @@ public class AWSIotRemoteManager {
                 Log.w(TAG, "timeout " + mRequestCode + " " + DConnectProfile.getProfile(mRequest));
             }
             mRequestManager.remove(mRequestCode);
+
+            // 応答待ちの枠を解放する
+            for (AWSIotMessagePipeline pipeline : mPipelines.values()) {
+                pipeline.complete(mRequestCode);
+            }
             onTimeout();
         }
 
@@ -557,8 +773,17 @@ public class AWSIotRemoteManager {
             // do nothing.
         }
 
+        public void onPublishFailed(RemoteDeviceConnectManager remote) {
+            // do nothing.
+        }
+
         public void onTimeout() {
             // do nothing.
         }
     }
+
+    private static class ServiceCache {
+        private List<Bundle> mServices;
+        private long mTimeStamp;
+    }
 }
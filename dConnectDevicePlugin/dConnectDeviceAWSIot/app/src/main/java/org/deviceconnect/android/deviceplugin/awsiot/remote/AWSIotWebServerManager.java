@@ -10,7 +10,7 @@ import android.content.Context;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RemoteDeviceConnectManager;
-import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebServer;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebLink;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 
 import java.util.Map;
@@ -20,7 +20,7 @@ public class AWSIotWebServerManager {
     private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final String TAG = "AWS-Remote";
 
-    private final Map<RemoteDeviceConnectManager, WebServer> mWebServerList = new ConcurrentHashMap<>();
+    private final Map<RemoteDeviceConnectManager, WebLink> mWebLinkList = new ConcurrentHashMap<>();
 
     private AWSIotRemoteManager mIot;
     private Context mContext;
@@ -31,12 +31,12 @@ public class AWSIotWebServerManager {
     }
 
     public void destroy() {
-        synchronized (mWebServerList) {
-            for (Map.Entry<RemoteDeviceConnectManager, WebServer> e : mWebServerList.entrySet()) {
-                e.getValue().stop();
+        synchronized (mWebLinkList) {
+            for (Map.Entry<RemoteDeviceConnectManager, WebLink> e : mWebLinkList.entrySet()) {
+                e.getValue().close();
             }
         }
-        mWebServerList.clear();
+        mWebLinkList.clear();
     }
 
     public String createWebServer(final RemoteDeviceConnectManager remote, final String address, final String path) {
@@ -44,31 +44,21 @@ public class AWSIotWebServerManager {
             Log.i(TAG, "createWebServer: " + remote);
         }
 
-        // TODO WebServerをどのタイミングで止めるか検討
-        WebServer webServer = new WebServer(mContext, address) {
-            @Override
-            public void onNotifySignaling(final String signaling) {
-                mIot.publish(remote, AWSIotUtil.createRemoteP2P(signaling));
+        // リモートごとに1本のP2P接続を共有して、全てのWebServerのリクエストを多重化する
+        WebLink webLink;
+        synchronized (mWebLinkList) {
+            webLink = mWebLinkList.get(remote);
+            if (webLink == null) {
+                webLink = new WebLink(mContext) {
+                    @Override
+                    public void onNotifySignaling(final String signaling) {
+                        mIot.publish(remote, AWSIotUtil.createRemoteP2P(signaling));
+                    }
+                };
+                mWebLinkList.put(remote, webLink);
             }
-            @Override
-            protected void onConnected() {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onConnected");
-                }
-            }
-            @Override
-            protected void onDisconnected() {
-                if (DEBUG) {
-                    Log.i(TAG, "WebServer#onDisconnected");
-                }
-                mWebServerList.remove(remote);
-            }
-        };
-        webServer.setPath(path);
-        String url = webServer.start();
-        if (url != null) {
-            mWebServerList.put(remote, webServer);
         }
+        String url = webLink.createUrl(address, path);
 
         if (DEBUG) {
             Log.i(TAG, "url=" + url);
@@ -78,9 +68,9 @@ public class AWSIotWebServerManager {
     }
 
     public void onReceivedSignaling(final RemoteDeviceConnectManager remote, final String message) {
-        WebServer webServer = mWebServerList.get(remote);
-        if (webServer != null) {
-            webServer.onReceivedSignaling(message);
+        WebLink webLink = mWebLinkList.get(remote);
+        if (webLink != null) {
+            webLink.onReceivedSignaling(message);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+package org.deviceconnect.android.deviceplugin.awsiot.cores.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 遅延のある MQTT ブローカーの代わりを使用して、リモート呼び出しのパイプラインを確認する.
+ */
+public class AWSIotMessagePipelineTest {
+
+    private static final String REQUEST_TOPIC = "request";
+    private static final String RESPONSE_TOPIC = "response";
+    private static final Pattern REQUEST_CODE = Pattern.compile("\"requestCode\":(\\d+)");
+
+    private static final int CALL_COUNT = 100;
+    private static final int MAX_IN_FLIGHT = 32;
+    private static final long LATENCY = 50;
+    private static final long MESSAGE_COST = 5;
+
+    private StubMqttBroker mBroker;
+    private ScheduledExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mBroker = new StubMqttBroker(LATENCY, MESSAGE_COST);
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mBroker.close();
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testPipelinedCalls() throws Exception {
+        final AWSIotMessagePipeline responses = createPipeline("responses", 0, RESPONSE_TOPIC);
+        mBroker.subscribe(REQUEST_TOPIC, new StubMqttBroker.Subscriber() {
+            @Override
+            public void onMessage(final String topic, final String message) {
+                for (long requestCode : parseRequestCodes(message)) {
+                    responses.send(requestCode, createResponse(requestCode));
+                }
+            }
+        });
+
+        final AWSIotMessagePipeline requests = createPipeline("requests", MAX_IN_FLIGHT, REQUEST_TOPIC);
+        final CountDownLatch latch = new CountDownLatch(CALL_COUNT);
+        final List<Integer> inFlight = Collections.synchronizedList(new ArrayList<Integer>());
+        mBroker.subscribe(RESPONSE_TOPIC, new StubMqttBroker.Subscriber() {
+            @Override
+            public void onMessage(final String topic, final String message) {
+                inFlight.add(requests.getInFlightCount());
+                for (long requestCode : parseRequestCodes(message)) {
+                    requests.complete(requestCode);
+                    latch.countDown();
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= CALL_COUNT; i++) {
+            requests.send(i, createRequest(i));
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        long pipelined = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int pipelinedMessages = mBroker.getMessageCount();
+
+        Assert.assertEquals(0, requests.getInFlightCount());
+        Assert.assertEquals(0, requests.getQueuedCount());
+        for (int count : inFlight) {
+            Assert.assertTrue(count <= MAX_IN_FLIGHT);
+        }
+
+        long unbatched = measureUnbatchedCalls();
+
+        System.out.println(CALL_COUNT + " remote calls: pipelined " + pipelined + "ms in "
+                + pipelinedMessages + " messages, one message per call " + unbatched + "ms");
+        Assert.assertTrue(pipelinedMessages < CALL_COUNT);
+    }
+
+    @Test
+    public void testInFlightWindow() throws Exception {
+        final List<String> published = Collections.synchronizedList(new ArrayList<String>());
+        AWSIotMessagePipeline pipeline = new AWSIotMessagePipeline("requests", 4, 1, mExecutor,
+                new AWSIotMessagePipeline.Callback() {
+            @Override
+            public boolean onPublish(final String message) {
+                published.add(message);
+                return true;
+            }
+
+            @Override
+            public void onFailed(final long requestCode) {
+            }
+        });
+
+        for (int i = 1; i <= 10; i++) {
+            pipeline.send(i, createRequest(i));
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(4, pipeline.getInFlightCount());
+        Assert.assertEquals(6, pipeline.getQueuedCount());
+        Assert.assertEquals(1, published.size());
+
+        pipeline.complete(1);
+        pipeline.complete(2);
+        Thread.sleep(100);
+        Assert.assertEquals(4, pipeline.getInFlightCount());
+        Assert.assertEquals(4, pipeline.getQueuedCount());
+        Assert.assertEquals(2, published.size());
+
+        pipeline.complete(10);
+        Assert.assertEquals(3, pipeline.getQueuedCount());
+
+        List<Long> codes = new ArrayList<>();
+        for (String message : published) {
+            codes.addAll(parseRequestCodes(message));
+        }
+        Assert.assertEquals(6, codes.size());
+        Assert.assertFalse(codes.contains(10L));
+    }
+
+    @Test
+    public void testBatchDisabled() throws Exception {
+        final List<String> published = Collections.synchronizedList(new ArrayList<String>());
+        AWSIotMessagePipeline pipeline = new AWSIotMessagePipeline("requests", 4, 1, mExecutor,
+                new AWSIotMessagePipeline.Callback() {
+            @Override
+            public boolean onPublish(final String message) {
+                published.add(message);
+                return true;
+            }
+
+            @Override
+            public void onFailed(final long requestCode) {
+            }
+        });
+        pipeline.setBatchEnabled(false);
+
+        for (int i = 1; i <= 6; i++) {
+            pipeline.send(i, createRequest(i));
+        }
+        Assert.assertEquals(4, pipeline.getInFlightCount());
+        Assert.assertEquals(2, pipeline.getQueuedCount());
+        Assert.assertEquals(4, published.size());
+        for (int i = 0; i < published.size(); i++) {
+            Assert.assertEquals(createRequest(i + 1), published.get(i));
+        }
+
+        pipeline.complete(1);
+        Assert.assertEquals(5, published.size());
+
+        // まとめて送信できることが分かった後は、待機しているメッセージをまとめる
+        pipeline.setBatchEnabled(true);
+        pipeline.send(7, createRequest(7));
+        pipeline.complete(2);
+        pipeline.complete(3);
+        Thread.sleep(100);
+        Assert.assertEquals(6, published.size());
+        Assert.assertTrue(published.get(5).startsWith("{\"requests\":["));
+        Assert.assertEquals(2, parseRequestCodes(published.get(5)).size());
+    }
+
+    @Test
+    public void testPublishFailed() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        AWSIotMessagePipeline pipeline = new AWSIotMessagePipeline("requests", 8, 1, mExecutor,
+                new AWSIotMessagePipeline.Callback() {
+            @Override
+            public boolean onPublish(final String message) {
+                return false;
+            }
+
+            @Override
+            public void onFailed(final long requestCode) {
+                latch.countDown();
+            }
+        });
+
+        for (int i = 1; i <= 3; i++) {
+            pipeline.send(i, createRequest(i));
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, pipeline.getInFlightCount());
+    }
+
+    private long measureUnbatchedCalls() throws Exception {
+        final StubMqttBroker broker = new StubMqttBroker(LATENCY, MESSAGE_COST);
+        try {
+            final CountDownLatch latch = new CountDownLatch(CALL_COUNT);
+            broker.subscribe(REQUEST_TOPIC, new StubMqttBroker.Subscriber() {
+                @Override
+                public void onMessage(final String topic, final String message) {
+                    for (long requestCode : parseRequestCodes(message)) {
+                        broker.publish(RESPONSE_TOPIC, createResponse(requestCode));
+                    }
+                }
+            });
+            broker.subscribe(RESPONSE_TOPIC, new StubMqttBroker.Subscriber() {
+                @Override
+                public void onMessage(final String topic, final String message) {
+                    latch.countDown();
+                }
+            });
+
+            long start = System.nanoTime();
+            for (int i = 1; i <= CALL_COUNT; i++) {
+                broker.publish(REQUEST_TOPIC, createRequest(i));
+            }
+            Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            broker.close();
+        }
+    }
+
+    private AWSIotMessagePipeline createPipeline(final String key, final int maxInFlight, final String topic) {
+        return new AWSIotMessagePipeline(key, maxInFlight, AWSIotMessagePipeline.DEFAULT_BATCH_DELAY, mExecutor,
+                new AWSIotMessagePipeline.Callback() {
+            @Override
+            public boolean onPublish(final String message) {
+                return mBroker.publish(topic, message);
+            }
+
+            @Override
+            public void onFailed(final long requestCode) {
+                Assert.fail("Failed to publish. requestCode=" + requestCode);
+            }
+        });
+    }
+
+    private static String createRequest(final long requestCode) {
+        return "{\"request\":{\"profile\":\"battery\",\"action\":\"get\"},\"requestCode\":" + requestCode + "}";
+    }
+
+    private static String createResponse(final long requestCode) {
+        return "{\"response\":{\"result\":0,\"level\":0.5},\"requestCode\":" + requestCode + "}";
+    }
+
+    private static List<Long> parseRequestCodes(final String message) {
+        List<Long> codes = new ArrayList<>();
+        Matcher m = REQUEST_CODE.matcher(message);
+        while (m.find()) {
+            codes.add(Long.parseLong(m.group(1)));
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,72 @@
+package org.deviceconnect.android.deviceplugin.awsiot.cores.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AWS IoT の MQTT ブローカーの代わりに、遅延を付けてメッセージを配送する.
+ * <p>
+ * トピックごとにメッセージを1つずつ配送するので、メッセージ数が多いほど後のメッセージが遅れる。
+ * </p>
+ */
+class StubMqttBroker {
+
+    interface Subscriber {
+        void onMessage(String topic, String message);
+    }
+
+    private final long mLatency;
+    private final long mMessageCost;
+    private final ScheduledExecutorService mExecutor = Executors.newScheduledThreadPool(4);
+    private final Map<String, Subscriber> mSubscribers = new HashMap<>();
+    private final Map<String, Long> mNextDeliveryTime = new HashMap<>();
+    private final AtomicInteger mMessageCount = new AtomicInteger();
+
+    StubMqttBroker(final long latency, final long messageCost) {
+        mLatency = latency;
+        mMessageCost = messageCost;
+    }
+
+    synchronized void subscribe(final String topic, final Subscriber subscriber) {
+        mSubscribers.put(topic, subscriber);
+    }
+
+    boolean publish(final String topic, final String message) {
+        final Subscriber subscriber;
+        long delay;
+        synchronized (this) {
+            subscriber = mSubscribers.get(topic);
+            if (subscriber == null) {
+                return false;
+            }
+
+            long now = System.nanoTime();
+            Long next = mNextDeliveryTime.get(topic);
+            long start = next == null ? now : Math.max(now, next);
+            long deliveryTime = start + TimeUnit.MILLISECONDS.toNanos(mMessageCost);
+            mNextDeliveryTime.put(topic, deliveryTime);
+            delay = deliveryTime - now + TimeUnit.MILLISECONDS.toNanos(mLatency);
+        }
+
+        mMessageCount.incrementAndGet();
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                subscriber.onMessage(topic, message);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    int getMessageCount() {
+        return mMessageCount.get();
+    }
+
+    void close() {
+        mExecutor.shutdownNow();
+    }
+}
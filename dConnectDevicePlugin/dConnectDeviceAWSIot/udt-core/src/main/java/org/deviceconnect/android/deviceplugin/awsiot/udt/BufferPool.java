@@ -0,0 +1,45 @@
+package org.deviceconnect.android.deviceplugin.awsiot.udt;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BufferPool {
+
+    private final Queue<ByteBuffer> mBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mPooled = new AtomicInteger();
+    private final int mBufferSize;
+    private final int mMaxPooled;
+
+    public BufferPool(final int bufferSize, final int maxPooled) {
+        mBufferSize = bufferSize;
+        mMaxPooled = maxPooled;
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = mBuffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(mBufferSize);
+        }
+        mPooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != mBufferSize || !buffer.isDirect()) {
+            return;
+        }
+        if (mPooled.incrementAndGet() > mMaxPooled) {
+            mPooled.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        mBuffers.offer(buffer);
+    }
+}
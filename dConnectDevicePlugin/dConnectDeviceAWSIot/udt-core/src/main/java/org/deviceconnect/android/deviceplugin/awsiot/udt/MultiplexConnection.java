@@ -0,0 +1,471 @@
+package org.deviceconnect.android.deviceplugin.awsiot.udt;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MultiplexConnection implements SelectorLoop.Handler {
+
+    private static final byte TYPE_OPEN = 1;
+    private static final byte TYPE_DATA = 2;
+    private static final byte TYPE_WINDOW = 3;
+    private static final byte TYPE_CLOSE = 4;
+
+    public static final int HEADER_SIZE = 9;
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024;
+    public static final int FRAME_SIZE = HEADER_SIZE + MAX_PAYLOAD_SIZE;
+    public static final int INITIAL_WINDOW = 256 * 1024;
+
+    private static final int WINDOW_UPDATE_THRESHOLD = INITIAL_WINDOW / 4;
+
+    private final SelectorLoop mLoop;
+    private final SocketChannel mChannel;
+    private final BufferPool mPool;
+    private final Map<Integer, Stream> mStreams = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> mWriteQueue = new ArrayDeque<>();
+    private final AtomicInteger mNextStreamId;
+
+    private SelectionKey mKey;
+    private ByteBuffer mReadBuffer;
+    private boolean mWriteRequested;
+    private volatile boolean mClosed;
+
+    private OnMultiplexListener mListener;
+
+    public MultiplexConnection(final SelectorLoop loop, final SocketChannel channel, final BufferPool pool, final boolean initiator) {
+        if (pool.getBufferSize() < FRAME_SIZE) {
+            throw new IllegalArgumentException("Buffer size is too small. size=" + pool.getBufferSize());
+        }
+        mLoop = loop;
+        mChannel = channel;
+        mPool = pool;
+        mNextStreamId = new AtomicInteger(initiator ? 1 : 2);
+    }
+
+    public void start(final OnMultiplexListener listener) {
+        mListener = listener;
+        mLoop.register(mChannel, SelectionKey.OP_READ, this);
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    public int getStreamCount() {
+        return mStreams.size();
+    }
+
+    public Stream openStream(final ByteBuffer data, final OnStreamListener listener) throws IOException {
+        if (data.remaining() > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("data is too large. size=" + data.remaining());
+        }
+
+        Stream stream = new Stream(mNextStreamId.getAndAdd(2));
+        stream.mListener = listener;
+        mStreams.put(stream.mId, stream);
+        try {
+            enqueue(createFrame(TYPE_OPEN, stream.mId, data, data.remaining()));
+        } catch (IOException e) {
+            mStreams.remove(stream.mId);
+            throw e;
+        }
+        return stream;
+    }
+
+    public void close() {
+        if (mLoop.isClosed()) {
+            onClose();
+            return;
+        }
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                onClose();
+            }
+        });
+    }
+
+    @Override
+    public void onRegistered(final SelectionKey key) {
+        mKey = key;
+        flush();
+    }
+
+    @Override
+    public void onReady(final SelectionKey key) {
+        if (key.isReadable()) {
+            read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onClose() {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            for (ByteBuffer buffer : mWriteQueue) {
+                mPool.release(buffer);
+            }
+            mWriteQueue.clear();
+            notifyAll();
+        }
+
+        if (mKey != null) {
+            mKey.cancel();
+        }
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+        if (mReadBuffer != null) {
+            mPool.release(mReadBuffer);
+            mReadBuffer = null;
+        }
+
+        List<Stream> streams = new ArrayList<>(mStreams.values());
+        mStreams.clear();
+        for (Stream stream : streams) {
+            stream.onRemoteClosed();
+        }
+
+        if (mListener != null) {
+            mListener.onClosed(this);
+        }
+    }
+
+    private void read() {
+        if (mReadBuffer == null) {
+            mReadBuffer = mPool.acquire();
+        }
+
+        try {
+            if (mChannel.read(mReadBuffer) < 0) {
+                onClose();
+                return;
+            }
+        } catch (IOException e) {
+            onClose();
+            return;
+        }
+
+        ByteBuffer buffer = mReadBuffer;
+        buffer.flip();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int pos = buffer.position();
+            byte type = buffer.get(pos);
+            int id = buffer.getInt(pos + 1);
+            int length = buffer.getInt(pos + 5);
+            if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+                onClose();
+                return;
+            }
+            if (buffer.remaining() < HEADER_SIZE + length) {
+                break;
+            }
+
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(pos + HEADER_SIZE + length);
+            payload.position(pos + HEADER_SIZE);
+            buffer.position(pos + HEADER_SIZE + length);
+
+            if (!onFrame(type, id, payload.slice())) {
+                onClose();
+                return;
+            }
+            if (mClosed) {
+                return;
+            }
+        }
+        buffer.compact();
+    }
+
+    private boolean onFrame(final byte type, final int id, final ByteBuffer payload) {
+        Stream stream;
+        switch (type) {
+            case TYPE_OPEN:
+                if (mStreams.containsKey(id)) {
+                    return false;
+                }
+                stream = new Stream(id);
+                mStreams.put(id, stream);
+                if (mListener != null) {
+                    mListener.onStreamOpened(stream, payload);
+                } else {
+                    stream.close();
+                }
+                return true;
+
+            case TYPE_DATA:
+                stream = mStreams.get(id);
+                return stream == null || stream.onData(payload);
+
+            case TYPE_WINDOW:
+                stream = mStreams.get(id);
+                if (stream != null && payload.remaining() >= 4) {
+                    stream.onWindowUpdate(payload.getInt(0));
+                }
+                return true;
+
+            case TYPE_CLOSE:
+                stream = mStreams.remove(id);
+                if (stream != null) {
+                    stream.onRemoteClosed();
+                }
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private void flush() {
+        if (mKey == null || !mKey.isValid()) {
+            return;
+        }
+
+        try {
+            synchronized (this) {
+                mWriteRequested = !drain(mChannel, mWriteQueue, mPool);
+                int ops = mKey.interestOps();
+                mKey.interestOps(mWriteRequested ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            onClose();
+        }
+    }
+
+    // SocketChannelUDT fails a partially written gathering write, so write the buffers one by one.
+    static boolean drain(final WritableByteChannel channel, final Queue<ByteBuffer> queue, final BufferPool pool) throws IOException {
+        ByteBuffer head;
+        while ((head = queue.peek()) != null) {
+            channel.write(head);
+            if (head.hasRemaining()) {
+                // socket buffer is full.
+                return false;
+            }
+            queue.poll();
+            pool.release(head);
+        }
+        return true;
+    }
+
+    private void enqueue(final ByteBuffer frame) throws IOException {
+        boolean request;
+        synchronized (this) {
+            if (mClosed) {
+                mPool.release(frame);
+                throw new IOException("Connection is closed.");
+            }
+            mWriteQueue.offer(frame);
+            request = !mWriteRequested;
+            mWriteRequested = true;
+        }
+        if (request) {
+            mLoop.execute(mFlushTask);
+        }
+    }
+
+    private ByteBuffer createFrame(final byte type, final int id, final ByteBuffer src, final int length) {
+        ByteBuffer frame = mPool.acquire();
+        frame.put(type).putInt(id).putInt(length);
+        int limit = src.limit();
+        src.limit(src.position() + length);
+        frame.put(src);
+        src.limit(limit);
+        frame.flip();
+        return frame;
+    }
+
+    private ByteBuffer createFrame(final byte type, final int id, final int value) {
+        ByteBuffer frame = mPool.acquire();
+        frame.put(type).putInt(id).putInt(4).putInt(value);
+        frame.flip();
+        return frame;
+    }
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public class Stream {
+        private final int mId;
+        private int mSendWindow = INITIAL_WINDOW;
+        private int mReceiveWindow = INITIAL_WINDOW;
+        private int mUnacknowledged;
+        private boolean mWantWritable;
+        private volatile boolean mClosed;
+        private volatile OnStreamListener mListener;
+
+        private Stream(final int id) {
+            mId = id;
+        }
+
+        public int getId() {
+            return mId;
+        }
+
+        public boolean isClosed() {
+            return mClosed;
+        }
+
+        public void setOnStreamListener(final OnStreamListener listener) {
+            mListener = listener;
+        }
+
+        public int write(final ByteBuffer src) throws IOException {
+            int total = 0;
+            while (src.hasRemaining()) {
+                int length;
+                synchronized (MultiplexConnection.this) {
+                    if (mClosed || MultiplexConnection.this.mClosed) {
+                        throw new IOException("Stream is closed.");
+                    }
+                    length = Math.min(Math.min(src.remaining(), MAX_PAYLOAD_SIZE), mSendWindow);
+                    if (length <= 0) {
+                        mWantWritable = true;
+                        break;
+                    }
+                    mSendWindow -= length;
+                }
+                enqueue(createFrame(TYPE_DATA, mId, src, length));
+                total += length;
+            }
+            return total;
+        }
+
+        public void write(final byte[] data, final int offset, final int length) throws IOException {
+            ByteBuffer src = ByteBuffer.wrap(data, offset, length);
+            while (src.hasRemaining()) {
+                write(src);
+                if (!src.hasRemaining()) {
+                    break;
+                }
+                synchronized (MultiplexConnection.this) {
+                    while (mSendWindow <= 0 && !mClosed && !MultiplexConnection.this.mClosed) {
+                        try {
+                            MultiplexConnection.this.wait();
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                    }
+                }
+            }
+        }
+
+        public void consumed(final int length) {
+            int update = 0;
+            synchronized (MultiplexConnection.this) {
+                if (mClosed) {
+                    return;
+                }
+                mUnacknowledged += length;
+                if (mUnacknowledged >= WINDOW_UPDATE_THRESHOLD) {
+                    update = mUnacknowledged;
+                    mReceiveWindow += update;
+                    mUnacknowledged = 0;
+                }
+            }
+            if (update > 0) {
+                try {
+                    enqueue(createFrame(TYPE_WINDOW, mId, update));
+                } catch (IOException e) {
+                    // connection is closed.
+                }
+            }
+        }
+
+        public void close() {
+            synchronized (MultiplexConnection.this) {
+                if (mClosed) {
+                    return;
+                }
+                mClosed = true;
+                MultiplexConnection.this.notifyAll();
+            }
+            mStreams.remove(mId);
+            try {
+                enqueue(createFrame(TYPE_CLOSE, mId, ByteBuffer.allocate(0), 0));
+            } catch (IOException e) {
+                // connection is closed.
+            }
+        }
+
+        private boolean onData(final ByteBuffer payload) {
+            int length = payload.remaining();
+            synchronized (MultiplexConnection.this) {
+                mReceiveWindow -= length;
+                if (mReceiveWindow < 0) {
+                    return false;
+                }
+            }
+
+            OnStreamListener listener = mListener;
+            if (listener != null) {
+                listener.onData(this, payload);
+            } else {
+                consumed(length);
+            }
+            return true;
+        }
+
+        private void onWindowUpdate(final int delta) {
+            boolean notify;
+            synchronized (MultiplexConnection.this) {
+                mSendWindow += delta;
+                notify = mWantWritable;
+                mWantWritable = false;
+                MultiplexConnection.this.notifyAll();
+            }
+
+            OnStreamListener listener = mListener;
+            if (notify && listener != null) {
+                listener.onWritable(this);
+            }
+        }
+
+        private void onRemoteClosed() {
+            synchronized (MultiplexConnection.this) {
+                if (mClosed) {
+                    return;
+                }
+                mClosed = true;
+                MultiplexConnection.this.notifyAll();
+            }
+
+            OnStreamListener listener = mListener;
+            if (listener != null) {
+                listener.onClosed(this);
+            }
+        }
+    }
+
+    public interface OnMultiplexListener {
+        void onStreamOpened(Stream stream, ByteBuffer data);
+        void onClosed(MultiplexConnection connection);
+    }
+
+    public interface OnStreamListener {
+        void onData(Stream stream, ByteBuffer data);
+        void onWritable(Stream stream);
+        void onClosed(Stream stream);
+    }
+}
@@ -0,0 +1,235 @@
+package org.deviceconnect.android.deviceplugin.awsiot.udt;
+
+import com.barchart.udt.lib.AndroidLoaderUDT;
+import com.barchart.udt.nio.SelectorProviderUDT;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+
+public class P2PLink {
+
+    private static final int TIMEOUT = 30 * 1000;
+
+    private final SelectorLoop mLoop;
+    private final BufferPool mPool;
+    private final boolean mInitiator;
+
+    private int mConnectionId;
+    private String mStunServer;
+    private int mStunPort;
+
+    private ServerSocketChannel mServerChannel;
+    private MultiplexConnection mConnection;
+    private SelectorLoop.Cancellable mTimeout;
+    private boolean mClosed;
+
+    private OnP2PLinkListener mListener;
+
+    public P2PLink(final SelectorLoop loop, final BufferPool pool, final int connectionId, final boolean initiator) {
+        mLoop = loop;
+        mPool = pool;
+        mConnectionId = connectionId;
+        mInitiator = initiator;
+    }
+
+    public static SelectorLoop openSelectorLoop() throws IOException {
+        AndroidLoaderUDT.load();
+        return new SelectorLoop(SelectorProviderUDT.STREAM, "UDT");
+    }
+
+    public static BufferPool createBufferPool() {
+        return new BufferPool(MultiplexConnection.FRAME_SIZE, 64);
+    }
+
+    public static int generateConnectionId() {
+        return (int) UUID.randomUUID().getLeastSignificantBits();
+    }
+
+    public int getConnectionId() {
+        return mConnectionId;
+    }
+
+    public void setStunServer(final String server, final int port) {
+        mStunServer = server;
+        mStunPort = port;
+    }
+
+    public void setOnP2PLinkListener(final OnP2PLinkListener listener) {
+        mListener = listener;
+    }
+
+    public synchronized boolean isConnected() {
+        return mConnection != null && !mConnection.isClosed();
+    }
+
+    public synchronized MultiplexConnection getConnection() {
+        return mConnection;
+    }
+
+    public void open() throws IOException {
+        synchronized (this) {
+            if (mServerChannel != null || mConnection != null) {
+                throw new IOException("P2PLink is already opened.");
+            }
+        }
+
+        StunClient client = new StunClient();
+        if (mStunServer != null) {
+            client.setStunServer(mStunServer, mStunPort);
+        }
+        if (!client.bindingRequest()) {
+            throw new IOException("Failed to retrieved address from STUN server.");
+        }
+
+        final ServerSocketChannel server = mLoop.getProvider().openServerSocketChannel();
+        try {
+            server.socket().bind(new InetSocketAddress("0.0.0.0", client.getMappedPort()), 1);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+
+        synchronized (this) {
+            if (mClosed) {
+                server.close();
+                throw new IOException("P2PLink is already closed.");
+            }
+            mServerChannel = server;
+            mTimeout = mLoop.schedule(mTimeoutTask, TIMEOUT);
+        }
+
+        mLoop.register(server, SelectionKey.OP_ACCEPT, new SelectorLoop.Handler() {
+            @Override
+            public void onRegistered(final SelectionKey key) {
+            }
+
+            @Override
+            public void onReady(final SelectionKey key) {
+                try {
+                    SocketChannel channel = server.accept();
+                    if (channel != null) {
+                        onConnected(channel);
+                    }
+                } catch (IOException e) {
+                    close();
+                }
+            }
+
+            @Override
+            public void onClose() {
+                closeServer();
+            }
+        });
+
+        if (mListener != null) {
+            mListener.onRetrievedAddress(client.getMappedAddress(), client.getMappedPort());
+        }
+    }
+
+    public void connect(final String address, final int port) throws IOException {
+        SocketChannel channel = mLoop.getProvider().openSocketChannel();
+        try {
+            channel.connect(new InetSocketAddress(address, port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        onConnected(channel);
+    }
+
+    public void close() {
+        MultiplexConnection connection;
+        synchronized (this) {
+            mClosed = true;
+            connection = mConnection;
+            if (mTimeout != null) {
+                mTimeout.cancel();
+            }
+        }
+        closeServer();
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private void onConnected(final SocketChannel channel) throws IOException {
+        MultiplexConnection connection;
+        synchronized (this) {
+            if (mClosed || mConnection != null) {
+                channel.close();
+                throw new IOException("P2PLink is already connected.");
+            }
+            if (mTimeout != null) {
+                mTimeout.cancel();
+            }
+            connection = new MultiplexConnection(mLoop, channel, mPool, mInitiator);
+            mConnection = connection;
+        }
+        closeServer();
+
+        connection.start(new MultiplexConnection.OnMultiplexListener() {
+            @Override
+            public void onStreamOpened(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+                if (mListener != null) {
+                    mListener.onStreamOpened(stream, data);
+                } else {
+                    stream.close();
+                }
+            }
+
+            @Override
+            public void onClosed(final MultiplexConnection connection) {
+                if (mListener != null) {
+                    mListener.onDisconnected();
+                }
+            }
+        });
+
+        if (mListener != null) {
+            mListener.onConnected(connection);
+        }
+    }
+
+    private void closeServer() {
+        ServerSocketChannel server;
+        synchronized (this) {
+            server = mServerChannel;
+            mServerChannel = null;
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+
+    private final Runnable mTimeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (P2PLink.this) {
+                if (mConnection != null || mClosed) {
+                    return;
+                }
+            }
+            close();
+            if (mListener != null) {
+                mListener.onTimeout();
+            }
+        }
+    };
+
+    public interface OnP2PLinkListener {
+        void onRetrievedAddress(String address, int port);
+        void onConnected(MultiplexConnection connection);
+        void onStreamOpened(MultiplexConnection.Stream stream, ByteBuffer data);
+        void onDisconnected();
+        void onTimeout();
+    }
+}
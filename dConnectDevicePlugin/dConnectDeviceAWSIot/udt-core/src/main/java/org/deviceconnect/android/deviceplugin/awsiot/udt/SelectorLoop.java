@@ -0,0 +1,212 @@
+package org.deviceconnect.android.deviceplugin.awsiot.udt;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SelectorLoop implements Runnable {
+
+    private final Selector mSelector;
+    private final Queue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timer> mTimers = new PriorityQueue<>();
+    private final Thread mThread;
+    private volatile boolean mClosed;
+
+    public SelectorLoop(final SelectorProvider provider, final String name) throws IOException {
+        mSelector = provider.openSelector();
+        mThread = new Thread(this, name);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    public SelectorProvider getProvider() {
+        return mSelector.provider();
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == mThread;
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    public void execute(final Runnable task) {
+        if (inLoop()) {
+            task.run();
+        } else {
+            mTasks.offer(task);
+            mSelector.wakeup();
+        }
+    }
+
+    public void register(final SelectableChannel channel, final int ops, final Handler handler) {
+        if (mClosed) {
+            handler.onClose();
+            return;
+        }
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.configureBlocking(false);
+                    handler.onRegistered(channel.register(mSelector, ops, handler));
+                } catch (IOException e) {
+                    handler.onClose();
+                }
+            }
+        });
+    }
+
+    public void interestOps(final SelectionKey key, final int ops, final boolean enable) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (key.isValid()) {
+                    key.interestOps(enable ? key.interestOps() | ops : key.interestOps() & ~ops);
+                }
+            }
+        });
+    }
+
+    public Cancellable schedule(final Runnable task, final long delay) {
+        final Timer timer = new Timer(task, System.currentTimeMillis() + delay);
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!timer.mCancelled) {
+                    mTimers.offer(timer);
+                }
+            }
+        });
+        return timer;
+    }
+
+    public void close() {
+        mClosed = true;
+        mSelector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!mClosed) {
+                runTasks();
+                long timeout = runTimers();
+                if (mClosed) {
+                    break;
+                }
+                if (timeout < 0) {
+                    mSelector.select();
+                } else {
+                    mSelector.select(timeout);
+                }
+
+                Iterator<SelectionKey> it = mSelector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (key.isValid()) {
+                            ((Handler) key.attachment()).onReady(key);
+                        }
+                    } catch (CancelledKeyException e) {
+                        // closed by the handler.
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // selector is broken.
+        } finally {
+            mClosed = true;
+            shutdown();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = mTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private long runTimers() {
+        long now = System.currentTimeMillis();
+        Timer timer;
+        while ((timer = mTimers.peek()) != null) {
+            if (timer.mCancelled) {
+                mTimers.poll();
+            } else if (timer.mTime <= now) {
+                mTimers.poll();
+                timer.mTask.run();
+            } else {
+                return Math.max(1, timer.mTime - now);
+            }
+        }
+        return -1;
+    }
+
+    private void shutdown() {
+        List<SelectionKey> keys = new ArrayList<>();
+        try {
+            keys.addAll(mSelector.keys());
+        } catch (RuntimeException e) {
+            // selector is already closed.
+        }
+        for (SelectionKey key : keys) {
+            ((Handler) key.attachment()).onClose();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+        try {
+            mSelector.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+        mTasks.clear();
+        mTimers.clear();
+    }
+
+    public interface Handler {
+        void onRegistered(SelectionKey key);
+        void onReady(SelectionKey key);
+        void onClose();
+    }
+
+    public interface Cancellable {
+        void cancel();
+    }
+
+    private static class Timer implements Comparable<Timer>, Cancellable {
+        private final Runnable mTask;
+        private final long mTime;
+        private volatile boolean mCancelled;
+
+        Timer(final Runnable task, final long time) {
+            mTask = task;
+            mTime = time;
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+        }
+
+        @Override
+        public int compareTo(final Timer another) {
+            return mTime < another.mTime ? -1 : (mTime == another.mTime ? 0 : 1);
+        }
+    }
+}
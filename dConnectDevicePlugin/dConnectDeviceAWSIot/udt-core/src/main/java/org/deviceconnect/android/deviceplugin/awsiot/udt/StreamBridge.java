@@ -0,0 +1,290 @@
+package org.deviceconnect.android.deviceplugin.awsiot.udt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+public class StreamBridge implements SelectorLoop.Handler, MultiplexConnection.OnStreamListener {
+
+    private final SelectorLoop mLoop;
+    private final SocketChannel mChannel;
+    private final BufferPool mPool;
+    private final Queue<ByteBuffer> mToChannel = new ArrayDeque<>();
+
+    private MultiplexConnection.Stream mStream;
+    private SelectionKey mKey;
+    private ByteBuffer mToStream;
+    private int mInitialLength;
+    private boolean mConnected;
+    private boolean mRemoteClosed;
+    private boolean mClosed;
+
+    private OnStreamBridgeListener mListener;
+
+    public StreamBridge(final SelectorLoop loop, final SocketChannel channel, final BufferPool pool) {
+        mLoop = loop;
+        mChannel = channel;
+        mPool = pool;
+    }
+
+    public void setOnStreamBridgeListener(final OnStreamBridgeListener listener) {
+        mListener = listener;
+    }
+
+    public void attach(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+        if (data != null && data.hasRemaining()) {
+            synchronized (this) {
+                mInitialLength += data.remaining();
+                enqueue(data);
+            }
+        }
+        mStream = stream;
+        stream.setOnStreamListener(this);
+    }
+
+    public void start() {
+        mLoop.register(mChannel, mChannel.isConnected() ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+    }
+
+    public void start(final SelectionKey key) {
+        key.attach(this);
+        key.interestOps(SelectionKey.OP_READ);
+        onRegistered(key);
+    }
+
+    public void close() {
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                onClose();
+            }
+        });
+    }
+
+    @Override
+    public void onRegistered(final SelectionKey key) {
+        boolean pending;
+        synchronized (this) {
+            mKey = key;
+            mConnected = mChannel.isConnected();
+            pending = !mToChannel.isEmpty();
+        }
+        if (mConnected && pending) {
+            writeToChannel();
+        }
+    }
+
+    @Override
+    public void onReady(final SelectionKey key) {
+        if (key.isConnectable()) {
+            try {
+                if (!mChannel.finishConnect()) {
+                    return;
+                }
+            } catch (IOException e) {
+                onClose();
+                return;
+            }
+            synchronized (this) {
+                mConnected = true;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            writeToChannel();
+        }
+        if (key.isValid() && key.isWritable()) {
+            writeToChannel();
+        }
+        if (key.isValid() && key.isReadable()) {
+            readFromChannel();
+        }
+    }
+
+    @Override
+    public void onClose() {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            for (ByteBuffer buffer : mToChannel) {
+                mPool.release(buffer);
+            }
+            mToChannel.clear();
+        }
+
+        if (mKey != null) {
+            mKey.cancel();
+        }
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+        if (mToStream != null) {
+            mPool.release(mToStream);
+            mToStream = null;
+        }
+        if (mStream != null) {
+            mStream.close();
+        }
+        if (mListener != null) {
+            mListener.onClosed(this);
+        }
+    }
+
+    @Override
+    public void onData(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+        int written = 0;
+        boolean request = false;
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            if (mStream == null) {
+                mStream = stream;
+            }
+            if (mConnected && mToChannel.isEmpty()) {
+                try {
+                    written = mChannel.write(data);
+                } catch (IOException e) {
+                    close();
+                    return;
+                }
+            }
+            if (data.hasRemaining()) {
+                request = mConnected && mToChannel.isEmpty();
+                enqueue(data);
+            }
+        }
+        if (written > 0) {
+            stream.consumed(written);
+        }
+        if (request && mKey != null) {
+            mLoop.interestOps(mKey, SelectionKey.OP_WRITE, true);
+        }
+    }
+
+    @Override
+    public void onWritable(final MultiplexConnection.Stream stream) {
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mToStream != null && mToStream.hasRemaining()) {
+                    writeToStream();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onClosed(final MultiplexConnection.Stream stream) {
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean empty;
+                synchronized (StreamBridge.this) {
+                    mRemoteClosed = true;
+                    empty = mToChannel.isEmpty();
+                }
+                if (empty) {
+                    onClose();
+                }
+            }
+        });
+    }
+
+    private void enqueue(final ByteBuffer data) {
+        while (data.hasRemaining()) {
+            ByteBuffer buffer = mPool.acquire();
+            int limit = data.limit();
+            data.limit(data.position() + Math.min(data.remaining(), buffer.remaining()));
+            buffer.put(data);
+            data.limit(limit);
+            buffer.flip();
+            mToChannel.offer(buffer);
+        }
+    }
+
+    private void writeToChannel() {
+        int written = 0;
+        boolean empty;
+        boolean close;
+        synchronized (this) {
+            if (mClosed || !mConnected) {
+                return;
+            }
+            try {
+                ByteBuffer buffer;
+                while ((buffer = mToChannel.peek()) != null) {
+                    written += mChannel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        break;
+                    }
+                    mToChannel.poll();
+                    mPool.release(buffer);
+                }
+                empty = mToChannel.isEmpty();
+                close = empty && mRemoteClosed;
+            } catch (IOException e) {
+                empty = true;
+                close = true;
+            }
+
+            int initial = Math.min(written, mInitialLength);
+            mInitialLength -= initial;
+            written -= initial;
+        }
+
+        if (written > 0 && mStream != null) {
+            mStream.consumed(written);
+        }
+        if (close) {
+            onClose();
+        } else if (mKey.isValid()) {
+            int ops = mKey.interestOps();
+            mKey.interestOps(empty ? ops & ~SelectionKey.OP_WRITE : ops | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void readFromChannel() {
+        if (mToStream == null) {
+            mToStream = mPool.acquire();
+        }
+        mToStream.clear();
+
+        try {
+            if (mChannel.read(mToStream) < 0) {
+                onClose();
+                return;
+            }
+        } catch (IOException e) {
+            onClose();
+            return;
+        }
+        mToStream.flip();
+        writeToStream();
+    }
+
+    private void writeToStream() {
+        if (mStream == null) {
+            return;
+        }
+        try {
+            mStream.write(mToStream);
+        } catch (IOException e) {
+            onClose();
+            return;
+        }
+        if (mKey.isValid()) {
+            int ops = mKey.interestOps();
+            mKey.interestOps(mToStream.hasRemaining() ? ops & ~SelectionKey.OP_READ : ops | SelectionKey.OP_READ);
+        }
+    }
+
+    public interface OnStreamBridgeListener {
+        void onClosed(StreamBridge bridge);
+    }
+}
@@ -0,0 +1,481 @@
+package org.deviceconnect.android.deviceplugin.awsiot.udt;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UDT の代わりにループバックの TCP を使用して、多重化した P2P 接続を確認する.
+ */
+public class MultiplexConnectionTest {
+
+    private static final int STREAM_COUNT = 20;
+    private static final int ROUND_TRIP_COUNT = 50;
+    private static final int BULK_SIZE = 1024 * 1024;
+    private static final byte[] REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes();
+
+    private SelectorLoop mRemoteLoop;
+    private SelectorLoop mLocalLoop;
+    private SelectorLoop mLinkLoop;
+    private BufferPool mPool;
+    private StubStunServer mStunServer;
+    private EchoServer mEchoServer;
+    private P2PLink mServerLink;
+    private P2PLink mClientLink;
+    private ServerSocketChannel mBrowserChannel;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        SelectorProvider provider = SelectorProvider.provider();
+        mRemoteLoop = new SelectorLoop(provider, "remote");
+        mLocalLoop = new SelectorLoop(provider, "local");
+        mLinkLoop = new SelectorLoop(provider, "link");
+        mPool = P2PLink.createBufferPool();
+        mStunServer = new StubStunServer();
+        mEchoServer = new EchoServer();
+        mExecutor = Executors.newCachedThreadPool();
+
+        mBrowserChannel = ServerSocketChannel.open();
+        mBrowserChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mServerLink != null) {
+            mServerLink.close();
+        }
+        if (mClientLink != null) {
+            mClientLink.close();
+        }
+        mBrowserChannel.close();
+        mEchoServer.close();
+        mStunServer.close();
+        mRemoteLoop.close();
+        mLocalLoop.close();
+        mLinkLoop.close();
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelStreams() throws Exception {
+        connect();
+
+        long start = System.nanoTime();
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            final int index = i;
+            futures.add(mExecutor.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() throws Exception {
+                    return runBrowser(index);
+                }
+            }));
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            for (long latency : future.get(60, TimeUnit.SECONDS)) {
+                latencies.add(latency);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Collections.sort(latencies);
+        long p50 = latencies.get(latencies.size() / 2);
+        long p99 = latencies.get(latencies.size() * 99 / 100);
+        double megaBytes = 2.0 * STREAM_COUNT * BULK_SIZE / (1024 * 1024);
+        System.out.println(STREAM_COUNT + " streams over 1 link: round trip p50 " + p50 / 1000
+                + "us, p99 " + p99 / 1000 + "us, bulk " + String.format("%.1f", megaBytes * 1e9 / elapsed) + "MB/s");
+
+        Assert.assertEquals(STREAM_COUNT, mEchoServer.getConnectionCount());
+    }
+
+    @Test
+    public void testFlowControl() throws Exception {
+        connect();
+
+        final CountDownLatch writable = new CountDownLatch(1);
+        final CountDownLatch filled = new CountDownLatch(1);
+        final AtomicInteger received = new AtomicInteger();
+        final List<MultiplexConnection.Stream> remote = Collections.synchronizedList(new ArrayList<MultiplexConnection.Stream>());
+        mClientLink.setOnP2PLinkListener(new LinkListener() {
+            @Override
+            public void onStreamOpened(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+                remote.add(stream);
+                stream.setOnStreamListener(new StreamListener() {
+                    @Override
+                    public void onData(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+                        if (received.addAndGet(data.remaining()) >= MultiplexConnection.INITIAL_WINDOW) {
+                            filled.countDown();
+                        }
+                    }
+                });
+            }
+        });
+
+        MultiplexConnection.Stream stream = mServerLink.getConnection().openStream(ByteBuffer.wrap(REQUEST), new StreamListener() {
+            @Override
+            public void onWritable(final MultiplexConnection.Stream stream) {
+                writable.countDown();
+            }
+        });
+
+        ByteBuffer data = ByteBuffer.allocate(MultiplexConnection.INITIAL_WINDOW * 2);
+        Assert.assertEquals(MultiplexConnection.INITIAL_WINDOW, stream.write(data));
+        Assert.assertEquals(0, stream.write(data));
+
+        Assert.assertTrue(filled.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(MultiplexConnection.INITIAL_WINDOW, received.get());
+        Assert.assertEquals(1, writable.getCount());
+        remote.get(0).consumed(MultiplexConnection.INITIAL_WINDOW);
+        Assert.assertTrue(writable.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(MultiplexConnection.INITIAL_WINDOW, stream.write(data));
+    }
+
+    @Test
+    public void testDisconnect() throws Exception {
+        connect();
+
+        Socket browser = new Socket("127.0.0.1", mBrowserChannel.socket().getLocalPort());
+        bridge(mBrowserChannel.accept());
+        browser.setSoTimeout(5000);
+        InputStream in = browser.getInputStream();
+        Assert.assertEquals(REQUEST.length, readFully(in, new byte[REQUEST.length]));
+
+        mClientLink.close();
+        Assert.assertEquals(-1, in.read());
+        browser.close();
+    }
+
+    @Test
+    public void testDrainPartialWrite() throws Exception {
+        PartialChannel channel = new PartialChannel(1000);
+        ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            byte[] frame = new byte[2500];
+            Arrays.fill(frame, (byte) i);
+            expected.write(frame);
+            queue.offer(ByteBuffer.wrap(frame));
+        }
+
+        // the first write is partial, so the rest must wait for OP_WRITE.
+        Assert.assertFalse(MultiplexConnection.drain(channel, queue, mPool));
+        Assert.assertEquals(1, channel.mWriteCount);
+        Assert.assertEquals(3, queue.size());
+
+        int rounds = 1;
+        while (!MultiplexConnection.drain(channel, queue, mPool)) {
+            rounds++;
+        }
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertArrayEquals(expected.toByteArray(), channel.mWritten.toByteArray());
+    }
+
+    @Test
+    public void testDrainFullBuffer() throws Exception {
+        PartialChannel channel = new PartialChannel(0);
+        ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        queue.offer(ByteBuffer.wrap(new byte[100]));
+
+        Assert.assertFalse(MultiplexConnection.drain(channel, queue, mPool));
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(100, queue.peek().remaining());
+    }
+
+    @Test(expected = IOException.class)
+    public void testConnectRefused() throws Exception {
+        ServerSocketChannel closed = ServerSocketChannel.open();
+        closed.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        int port = closed.socket().getLocalPort();
+        closed.close();
+
+        mClientLink = new P2PLink(mRemoteLoop, mPool, 1, false);
+        mClientLink.connect("127.0.0.1", port);
+    }
+
+    private void connect() throws Exception {
+        final CountDownLatch connected = new CountDownLatch(2);
+
+        mClientLink = new P2PLink(mRemoteLoop, mPool, 1, false);
+        mClientLink.setOnP2PLinkListener(new LinkListener() {
+            @Override
+            public void onConnected(final MultiplexConnection connection) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onStreamOpened(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+                try {
+                    SocketChannel channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.connect(mEchoServer.getAddress());
+                    StreamBridge bridge = new StreamBridge(mRemoteLoop, channel, mPool);
+                    bridge.attach(stream, data);
+                    bridge.start();
+                } catch (IOException e) {
+                    stream.close();
+                }
+            }
+        });
+
+        mServerLink = new P2PLink(mLinkLoop, mPool, 1, true);
+        mServerLink.setStunServer(mStunServer.getAddress(), mStunServer.getPort());
+        mServerLink.setOnP2PLinkListener(new LinkListener() {
+            @Override
+            public void onRetrievedAddress(final String address, final int port) {
+                mExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        mClientLink.connect(address, port);
+                        return null;
+                    }
+                });
+            }
+
+            @Override
+            public void onConnected(final MultiplexConnection connection) {
+                connected.countDown();
+            }
+        });
+        mServerLink.open();
+
+        Assert.assertTrue(connected.await(10, TimeUnit.SECONDS));
+    }
+
+    private void bridge(final SocketChannel channel) throws IOException {
+        StreamBridge bridge = new StreamBridge(mLocalLoop, channel, mPool);
+        bridge.attach(mServerLink.getConnection().openStream(ByteBuffer.wrap(REQUEST), bridge), null);
+        bridge.start();
+    }
+
+    private long[] runBrowser(final int index) throws Exception {
+        Socket browser = new Socket();
+        try {
+            synchronized (mBrowserChannel) {
+                browser.connect(mBrowserChannel.socket().getLocalSocketAddress());
+                bridge(mBrowserChannel.accept());
+            }
+            browser.setSoTimeout(30000);
+            browser.setTcpNoDelay(true);
+            final InputStream in = browser.getInputStream();
+            final OutputStream out = browser.getOutputStream();
+
+            byte[] request = new byte[REQUEST.length];
+            readFully(in, request);
+            Assert.assertArrayEquals(REQUEST, request);
+
+            long[] latencies = new long[ROUND_TRIP_COUNT];
+            byte[] ping = new byte[64];
+            byte[] pong = new byte[64];
+            for (int i = 0; i < ROUND_TRIP_COUNT; i++) {
+                Arrays.fill(ping, (byte) (index + i));
+                long start = System.nanoTime();
+                out.write(ping);
+                out.flush();
+                readFully(in, pong);
+                latencies[i] = System.nanoTime() - start;
+                Assert.assertArrayEquals(ping, pong);
+            }
+
+            Future<?> writer = mExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    byte[] buf = new byte[8192];
+                    for (int sent = 0; sent < BULK_SIZE; sent += buf.length) {
+                        for (int i = 0; i < buf.length; i++) {
+                            buf[i] = (byte) (sent + i + index);
+                        }
+                        out.write(buf);
+                    }
+                    out.flush();
+                    return null;
+                }
+            });
+            byte[] buf = new byte[8192];
+            for (int received = 0; received < BULK_SIZE; received += buf.length) {
+                readFully(in, buf);
+                for (int i = 0; i < buf.length; i++) {
+                    if (buf[i] != (byte) (received + i + index)) {
+                        Assert.fail("stream " + index + " is broken at " + (received + i));
+                    }
+                }
+            }
+            writer.get();
+            return latencies;
+        } finally {
+            browser.close();
+        }
+    }
+
+    private static int readFully(final InputStream in, final byte[] buf) throws IOException {
+        int offset = 0;
+        while (offset < buf.length) {
+            int len = in.read(buf, offset, buf.length - offset);
+            if (len < 0) {
+                throw new IOException("EOF");
+            }
+            offset += len;
+        }
+        return offset;
+    }
+
+    /**
+     * 1回の書き込みで一部のデータしか受け付けないチャンネル.
+     */
+    private static class PartialChannel implements WritableByteChannel {
+        private final int mMaxWrite;
+        private final ByteArrayOutputStream mWritten = new ByteArrayOutputStream();
+        private int mWriteCount;
+
+        PartialChannel(final int maxWrite) {
+            mMaxWrite = maxWrite;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            mWriteCount++;
+            int length = Math.min(src.remaining(), mMaxWrite);
+            for (int i = 0; i < length; i++) {
+                mWritten.write(src.get());
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class LinkListener implements P2PLink.OnP2PLinkListener {
+        @Override
+        public void onRetrievedAddress(final String address, final int port) {
+        }
+
+        @Override
+        public void onConnected(final MultiplexConnection connection) {
+        }
+
+        @Override
+        public void onStreamOpened(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+            stream.close();
+        }
+
+        @Override
+        public void onDisconnected() {
+        }
+
+        @Override
+        public void onTimeout() {
+        }
+    }
+
+    private static class StreamListener implements MultiplexConnection.OnStreamListener {
+        @Override
+        public void onData(final MultiplexConnection.Stream stream, final ByteBuffer data) {
+            stream.consumed(data.remaining());
+        }
+
+        @Override
+        public void onWritable(final MultiplexConnection.Stream stream) {
+        }
+
+        @Override
+        public void onClosed(final MultiplexConnection.Stream stream) {
+        }
+    }
+
+    private static class EchoServer implements Runnable {
+        private final ServerSocket mServerSocket;
+        private final AtomicInteger mConnectionCount = new AtomicInteger();
+
+        EchoServer() throws IOException {
+            mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            Thread thread = new Thread(this, "EchoServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        InetSocketAddress getAddress() {
+            return new InetSocketAddress("127.0.0.1", mServerSocket.getLocalPort());
+        }
+
+        int getConnectionCount() {
+            return mConnectionCount.get();
+        }
+
+        void close() throws IOException {
+            mServerSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!mServerSocket.isClosed()) {
+                try {
+                    final Socket socket = mServerSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    mConnectionCount.incrementAndGet();
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            byte[] buf = new byte[8192];
+                            try {
+                                InputStream in = socket.getInputStream();
+                                OutputStream out = socket.getOutputStream();
+                                int len;
+                                while ((len = in.read(buf)) > 0) {
+                                    out.write(buf, 0, len);
+                                }
+                            } catch (IOException e) {
+                                // closed.
+                            } finally {
+                                try {
+                                    socket.close();
+                                } catch (IOException e) {
+                                    // ignore.
+                                }
+                            }
+                        }
+                    });
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.deviceconnect.android.deviceplugin.awsiot.udt;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+
+import de.javawi.jstun.attribute.MappedAddress;
+import de.javawi.jstun.header.MessageHeader;
+import de.javawi.jstun.util.Address;
+
+class StubStunServer implements Runnable {
+
+    private final DatagramSocket mSocket;
+
+    StubStunServer() throws IOException {
+        mSocket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(this, "StubStunServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    String getAddress() {
+        return "127.0.0.1";
+    }
+
+    int getPort() {
+        return mSocket.getLocalPort();
+    }
+
+    void close() {
+        mSocket.close();
+    }
+
+    @Override
+    public void run() {
+        byte[] buf = new byte[256];
+        while (!mSocket.isClosed()) {
+            try {
+                DatagramPacket receive = new DatagramPacket(buf, buf.length);
+                mSocket.receive(receive);
+                byte[] transactionId = new byte[16];
+                System.arraycopy(receive.getData(), 4, transactionId, 0, transactionId.length);
+
+                MappedAddress mappedAddress = new MappedAddress();
+                mappedAddress.setAddress(new Address(receive.getAddress().getAddress()));
+                mappedAddress.setPort(receive.getPort());
+
+                MessageHeader response = new MessageHeader(MessageHeader.MessageHeaderType.BindingResponse);
+                response.setTransactionID(transactionId);
+                response.addMessageAttribute(mappedAddress);
+                byte[] data = response.getBytes();
+                mSocket.send(new DatagramPacket(data, data.length, receive.getSocketAddress()));
+            } catch (Exception e) {
+                // closed.
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.deviceconnect.android.deviceplugin.alljoyn.util.ColorUtil;
 import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.LightProfile;
 import org.deviceconnect.android.profile.api.DConnectApi;
+import org.deviceconnect.android.profile.util.FlashingExecutor;
 import org.deviceconnect.message.DConnectMessage;
 
 import java.math.BigDecimal;
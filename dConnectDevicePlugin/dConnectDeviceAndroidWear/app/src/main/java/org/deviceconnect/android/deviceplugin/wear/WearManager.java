@@ -61,6 +61,12 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
     private final Map<String, OnMessageEventListener> mOnMessageEventListeners
             = new HashMap<String, OnMessageEventListener>();
 
+    /**
+     * バイナリメッセージイベントリスナー一覧.
+     */
+    private final Map<String, OnBinaryMessageEventListener> mOnBinaryMessageEventListeners
+            = new HashMap<String, OnBinaryMessageEventListener>();
+
     /**
      * ノード検知リスナー一覧.
      */
@@ -68,6 +74,9 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
 
     /**
      * ノード情報のキャッシュ.
+     * <p>
+     * NodeApi.NodeListener で接続・切断を検知して更新する。
+     * </p>
      */
     private final Map<String, Node> mNodeCache = new HashMap<String, Node>();
 
@@ -148,7 +157,10 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
         }
         mNodeEventListeners.clear();
         mOnMessageEventListeners.clear();
-        mNodeCache.clear();
+        mOnBinaryMessageEventListeners.clear();
+        synchronized (mNodeCache) {
+            mNodeCache.clear();
+        }
     }
 
     /**
@@ -173,6 +185,16 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
         mOnMessageEventListeners.put(path, listener);
     }
 
+    /**
+     * バイナリメッセージイベントリスナーを追加する.
+     *
+     * @param path     パス
+     * @param listener リスナー
+     */
+    public void addBinaryMessageEventListener(final String path, final OnBinaryMessageEventListener listener) {
+        mOnBinaryMessageEventListeners.put(path, listener);
+    }
+
     /**
      * ノード検知リスナーを追加する.
      */
@@ -188,7 +210,9 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
             public void onPeerConnected(final Node node) {
                 mLogger.info("onPeerConnected: name = " + node.getDisplayName()
                     + ", id = " + node.getId());
-                mNodeCache.put(node.getId(), node);
+                synchronized (mNodeCache) {
+                    mNodeCache.put(node.getId(), node);
+                }
                 notifyOnNodeConnected(node);
             }
 
@@ -196,7 +220,9 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
             public void onPeerDisconnected(final Node node) {
                 mLogger.info("onPeerDisconnected: name = " + node.getDisplayName()
                     + ", id = " + node.getId());
-                mNodeCache.remove(node.getId());
+                synchronized (mNodeCache) {
+                    mNodeCache.remove(node.getId());
+                }
                 notifyOnNodeDisconnected(node);
             }
         });
@@ -225,10 +251,15 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
         Wearable.MessageApi.addListener(mGoogleApiClient, new MessageApi.MessageListener() {
             @Override
             public void onMessageReceived(final MessageEvent messageEvent) {
-                final String data = new String(messageEvent.getData());
                 final String path = messageEvent.getPath();
                 final String nodeId = messageEvent.getSourceNodeId();
                 mLogger.info("onMessageReceived: path = " + path + ":node:" + nodeId);
+                OnBinaryMessageEventListener binaryListener = mOnBinaryMessageEventListeners.get(path);
+                if (binaryListener != null) {
+                    binaryListener.onEvent(nodeId, messageEvent.getData());
+                    return;
+                }
+                final String data = new String(messageEvent.getData());
                 OnMessageEventListener listener = mOnMessageEventListeners.get(path);
                 if (listener != null) {
                     listener.onEvent(nodeId, data);
@@ -267,9 +298,8 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
         sendMessageToWear(new Runnable() {
             @Override
             public void run() {
-                NodeApi.GetConnectedNodesResult nodes = Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).await();
                 MessageApi.SendMessageResult result = null;
-                for (Node node : nodes.getNodes()) {
+                for (Node node : getConnectedNodes()) {
                     if (node.getId().indexOf(dest) != -1) {
                         result = Wearable.MessageApi.sendMessage(
                                 mGoogleApiClient, node.getId(), action, message.getBytes()).await();
@@ -288,6 +318,28 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
         });
     }
 
+    /**
+     * 接続中のノード一覧を取得する.
+     * <p>
+     * キャッシュしているノード一覧を返却する。キャッシュが空の場合のみ、Google Play Serviceに問い合わせる。
+     * </p>
+     * @return ノード一覧
+     */
+    private List<Node> getConnectedNodes() {
+        synchronized (mNodeCache) {
+            if (!mNodeCache.isEmpty()) {
+                return new ArrayList<Node>(mNodeCache.values());
+            }
+        }
+        // キャッシュへの追加と接続通知は onConnected と NodeListener で行う
+        NodeApi.GetConnectedNodesResult result = Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).await();
+        List<Node> nodes = result.getNodes();
+        if (nodes == null) {
+            return new ArrayList<Node>();
+        }
+        return nodes;
+    }
+
     /**
      * PutDataRequestを作成する.
      *
@@ -470,4 +522,17 @@ public class WearManager implements ConnectionCallbacks, OnConnectionFailedListe
          */
         void onEvent(String nodeId, String message);
     }
+
+    /**
+     * バイナリのイベント受信を通知するリスナー.
+     */
+    public interface OnBinaryMessageEventListener {
+        /**
+         * 受信したイベントを通知する.
+         *
+         * @param nodeId ノートID
+         * @param data   イベントデータ
+         */
+        void onEvent(String nodeId, byte[] data);
+    }
 }
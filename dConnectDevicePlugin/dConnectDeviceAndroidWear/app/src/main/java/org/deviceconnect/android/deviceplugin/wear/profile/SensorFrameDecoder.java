@@ -0,0 +1,149 @@
+/*
+ SensorFrameDecoder.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.wear.profile;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Android Wear から送信されたセンサーのフレームを解析するクラス.
+ * <p>
+ * フレームのレイアウトは Wear 側の SensorFrameEncoder と同じ。
+ * </p>
+ * <pre>
+ * ヘッダ (12byte)
+ *   byte   バージョン ({@value #VERSION})
+ *   byte   予約 (0)
+ *   short  サンプル数
+ *   long   最初のサンプルの時刻(ms)
+ * サンプル (28byte × サンプル数)
+ *   int    前のサンプルからの間隔(ms)
+ *   float  加速度 x, y, z (m/s^2)
+ *   float  角速度 x, y, z (rad/s)
+ * </pre>
+ * @author NTT DOCOMO, INC.
+ */
+public final class SensorFrameDecoder {
+
+    /** フレームのバージョン. */
+    public static final int VERSION = 1;
+
+    /** ヘッダのサイズ. */
+    public static final int HEADER_SIZE = 12;
+
+    /** 1サンプルのサイズ. */
+    public static final int SAMPLE_SIZE = 28;
+
+    /**
+     * センサーのサンプル.
+     */
+    public static final class Sample {
+        /** サンプルの時刻(ms). */
+        private final long mTime;
+        /** 前のサンプルからの間隔(ms). */
+        private final int mInterval;
+        /** 加速度 x, y, z (m/s^2). */
+        private final float[] mAccel;
+        /** 角速度 x, y, z (rad/s). */
+        private final float[] mGyro;
+
+        /**
+         * コンストラクタ.
+         * @param time サンプルの時刻(ms)
+         * @param interval 前のサンプルからの間隔(ms)
+         * @param accel 加速度
+         * @param gyro 角速度
+         */
+        Sample(final long time, final int interval, final float[] accel, final float[] gyro) {
+            mTime = time;
+            mInterval = interval;
+            mAccel = accel;
+            mGyro = gyro;
+        }
+
+        /**
+         * サンプルの時刻を取得する.
+         * @return サンプルの時刻(ms)
+         */
+        public long getTime() {
+            return mTime;
+        }
+
+        /**
+         * 前のサンプルからの間隔を取得する.
+         * @return 間隔(ms)
+         */
+        public int getInterval() {
+            return mInterval;
+        }
+
+        /**
+         * 加速度を取得する.
+         * @return 加速度 x, y, z (m/s^2)
+         */
+        public float[] getAccel() {
+            return mAccel;
+        }
+
+        /**
+         * 角速度を取得する.
+         * @return 角速度 x, y, z (rad/s)
+         */
+        public float[] getGyro() {
+            return mGyro;
+        }
+    }
+
+    /**
+     * コンストラクタ.
+     * ユーティリティクラスなので、private.
+     */
+    private SensorFrameDecoder() {
+    }
+
+    /**
+     * フレームを解析する.
+     *
+     * @param frame フレーム
+     * @return サンプルの一覧
+     * @throws IllegalArgumentException フレームの形式が不正な場合
+     */
+    public static List<Sample> decode(final byte[] frame) {
+        if (frame == null || frame.length < HEADER_SIZE) {
+            throw new IllegalArgumentException("frame is too short.");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        int version = buffer.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported frame version: " + version);
+        }
+        buffer.get();
+        int count = buffer.getShort() & 0xFFFF;
+        long time = buffer.getLong();
+        if (frame.length != HEADER_SIZE + SAMPLE_SIZE * count) {
+            throw new IllegalArgumentException("frame length does not match sample count: " + count);
+        }
+
+        List<Sample> samples = new ArrayList<Sample>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                int interval = buffer.getInt();
+                if (i > 0) {
+                    time += interval;
+                }
+                float[] accel = {buffer.getFloat(), buffer.getFloat(), buffer.getFloat()};
+                float[] gyro = {buffer.getFloat(), buffer.getFloat(), buffer.getFloat()};
+                samples.add(new Sample(time, interval, accel, gyro));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("frame is truncated.");
+        }
+        return samples;
+    }
+}
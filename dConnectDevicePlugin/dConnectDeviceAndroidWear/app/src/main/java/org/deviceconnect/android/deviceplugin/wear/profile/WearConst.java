@@ -45,6 +45,10 @@ public final class WearConst {
     public static final String WEAR_TO_DEVICE_DEIVCEORIENTATION_DATA
             = "org.deviceconnect.wear.deivceorienatation.data";
 
+    /** Wear to Android (SensorFrameDecoder で解析するフレーム). */
+    public static final String WEAR_TO_DEVICE_DEIVCEORIENTATION_FRAME
+            = "org.deviceconnect.wear.deivceorienatation.frame";
+
     /** Register Key Event (ondown). */
     public static final String DEVICE_TO_WEAR_KEYEVENT_ONDOWN_REGISTER
             = "org.deviceconnect.wear.keyevent.ondown.regist";
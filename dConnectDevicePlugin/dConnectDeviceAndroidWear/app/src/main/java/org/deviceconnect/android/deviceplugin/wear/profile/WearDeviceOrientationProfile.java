@@ -13,6 +13,7 @@ import com.google.android.gms.wearable.MessageApi.SendMessageResult;
 
 import org.deviceconnect.android.deviceplugin.wear.WearDeviceService;
 import org.deviceconnect.android.deviceplugin.wear.WearManager;
+import org.deviceconnect.android.deviceplugin.wear.WearManager.OnBinaryMessageEventListener;
 import org.deviceconnect.android.deviceplugin.wear.WearManager.OnMessageEventListener;
 import org.deviceconnect.android.deviceplugin.wear.WearManager.OnMessageResultListener;
 import org.deviceconnect.android.event.Event;
@@ -37,22 +38,52 @@ import java.util.List;
  */
 public class WearDeviceOrientationProfile extends DeviceOrientationProfile {
 
+    /**
+     * Orientationのデータを通知するリスナー.
+     */
+    private interface OnOrientationListener {
+        /**
+         * Orientationのデータを通知する.
+         * @param serviceId サービスID
+         * @param orientation Orientationのデータ
+         */
+        void onOrientation(String serviceId, Bundle orientation);
+    }
+
     /**
      * 通知先のリスナーを保持するリスト.
      */
-    private final List<OnMessageEventListener> mListeners = 
-            Collections.synchronizedList(new ArrayList<OnMessageEventListener>());
+    private final List<OnOrientationListener> mListeners =
+            Collections.synchronizedList(new ArrayList<OnOrientationListener>());
 
     /**
      * Android Wearからのイベントを受け取るリスナー.
+     * <p>
+     * 1サンプルごとに文字列で送信する旧バージョンのWearアプリ用。
+     * </p>
      */
     private OnMessageEventListener mListener = new OnMessageEventListener() {
         @Override
         public void onEvent(final String nodeId, final String message) {
-            synchronized (mListeners) {
-                for (OnMessageEventListener l : mListeners) {
-                    l.onEvent(WearUtils.createServiceId(nodeId), message);
-                }
+            notifyOrientation(WearUtils.createServiceId(nodeId), createOrientation(message));
+        }
+    };
+
+    /**
+     * Android Wearからまとめて送信されたサンプルを受け取るリスナー.
+     */
+    private OnBinaryMessageEventListener mFrameListener = new OnBinaryMessageEventListener() {
+        @Override
+        public void onEvent(final String nodeId, final byte[] data) {
+            List<SensorFrameDecoder.Sample> samples;
+            try {
+                samples = SensorFrameDecoder.decode(data);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            String serviceId = WearUtils.createServiceId(nodeId);
+            for (SensorFrameDecoder.Sample sample : samples) {
+                notifyOrientation(serviceId, createOrientation(sample));
             }
         }
     };
@@ -63,10 +94,11 @@ public class WearDeviceOrientationProfile extends DeviceOrientationProfile {
      */
     public WearDeviceOrientationProfile(final WearManager mgr) {
         mgr.addMessageEventListener(WearConst.WEAR_TO_DEVICE_DEIVCEORIENTATION_DATA, mListener);
-        mListeners.add(new OnMessageEventListener() {
+        mgr.addBinaryMessageEventListener(WearConst.WEAR_TO_DEVICE_DEIVCEORIENTATION_FRAME, mFrameListener);
+        mListeners.add(new OnOrientationListener() {
             @Override
-            public void onEvent(final String nodeId, final String message) {
-                sendMessageToEvent(nodeId, message);
+            public void onOrientation(final String serviceId, final Bundle orientation) {
+                sendMessageToEvent(serviceId, orientation);
             }
         });
         addApi(mGetOnDeviceOrientation);
@@ -84,10 +116,9 @@ public class WearDeviceOrientationProfile extends DeviceOrientationProfile {
         public boolean onRequest(final Intent request, final Intent response) {
             final WearDeviceService service = (WearDeviceService) getContext();
             String nodeId = WearUtils.getNodeId(getServiceID(request));
-            final OnMessageEventListener l = new OnMessageEventListener() {
+            final OnOrientationListener l = new OnOrientationListener() {
                 @Override
-                public void onEvent(final String nodeId, final String message) {
-                    Bundle orientation = createOrientation(message);
+                public void onOrientation(final String nodeId, final Bundle orientation) {
                     setResult(response, DConnectMessage.RESULT_OK);
                     setOrientation(response, orientation);
                     service.sendResponse(response);
@@ -132,7 +163,7 @@ public class WearDeviceOrientationProfile extends DeviceOrientationProfile {
             String nodeId = WearUtils.getNodeId(getServiceID(request));
             getManager().sendMessageToWear(nodeId,
                 WearConst.DEVICE_TO_WEAR_DEIVCEORIENTATION_REGISTER,
-                "", new OnMessageResultListener() {
+                getInterval(request), new OnMessageResultListener() {
                     @Override
                     public void onResult(final SendMessageResult result) {
                         if (result.getStatus().isSuccess()) {
@@ -207,11 +238,28 @@ public class WearDeviceOrientationProfile extends DeviceOrientationProfile {
         });
     }
 
+    /**
+     * リクエストからイベントの通知間隔を取得する.
+     * @param request リクエスト
+     * @return Wearに送信する通知間隔(ms). 指定が無い場合は空文字
+     */
+    private String getInterval(final Intent request) {
+        String interval = request.getStringExtra(PARAM_INTERVAL);
+        if (interval == null) {
+            return "";
+        }
+        try {
+            return String.valueOf(Long.parseLong(interval));
+        } catch (NumberFormatException e) {
+            return "";
+        }
+    }
+
     /**
      * リスナーを追加する.
      * @param l 追加するリスナー
      */
-    private void addListener(final OnMessageEventListener l) {
+    private void addListener(final OnOrientationListener l) {
         if (!mListeners.contains(l)) {
             mListeners.add(l);
         }
@@ -221,19 +269,32 @@ public class WearDeviceOrientationProfile extends DeviceOrientationProfile {
      * リスナーを削除する.
      * @param l 削除するリスナー
      */
-    private void removeListener(final OnMessageEventListener l) {
+    private void removeListener(final OnOrientationListener l) {
         mListeners.remove(l);
     }
 
+    /**
+     * Orientationのデータをリスナーに通知する.
+     * @param serviceId サービスID
+     * @param orientation Orientationのデータ
+     */
+    private void notifyOrientation(final String serviceId, final Bundle orientation) {
+        List<OnOrientationListener> listeners;
+        synchronized (mListeners) {
+            listeners = new ArrayList<OnOrientationListener>(mListeners);
+        }
+        for (OnOrientationListener l : listeners) {
+            l.onOrientation(serviceId, orientation);
+        }
+    }
+
     /**
      * Send a message to the registration event.
      * 
      * @param nodeId node id
-     * @param data Received Strings.
+     * @param orientation Orientation data.
      */
-    private void sendMessageToEvent(final String nodeId, final String data) {
-        Bundle orientation = createOrientation(data);
-
+    private void sendMessageToEvent(final String nodeId, final Bundle orientation) {
         List<Event> events = EventManager.INSTANCE.getEventList(
                 nodeId, PROFILE_NAME, null, ATTRIBUTE_ON_DEVICE_ORIENTATION);
         synchronized (events) {
@@ -280,6 +341,38 @@ public class WearDeviceOrientationProfile extends DeviceOrientationProfile {
         return orientation;
     }
 
+    /**
+     * 受信したサンプルからOrientationのデータを作成する.
+     * @param sample 受信したサンプル
+     * @return Orientationのデータ
+     */
+    private Bundle createOrientation(final SensorFrameDecoder.Sample sample) {
+        float[] accel = sample.getAccel();
+        float[] gyro = sample.getGyro();
+
+        Bundle orientation = new Bundle();
+        Bundle a1 = new Bundle();
+        a1.putDouble(DeviceOrientationProfile.PARAM_X, 0.0);
+        a1.putDouble(DeviceOrientationProfile.PARAM_Y, 0.0);
+        a1.putDouble(DeviceOrientationProfile.PARAM_Z, 0.0);
+
+        Bundle a2 = new Bundle();
+        a2.putDouble(DeviceOrientationProfile.PARAM_X, accel[0]);
+        a2.putDouble(DeviceOrientationProfile.PARAM_Y, accel[1]);
+        a2.putDouble(DeviceOrientationProfile.PARAM_Z, accel[2]);
+
+        // Conversion the unit of angular speed from rad/s to degree/s.
+        Bundle r = new Bundle();
+        r.putDouble(DeviceOrientationProfile.PARAM_ALPHA, Math.toDegrees(gyro[0]));
+        r.putDouble(DeviceOrientationProfile.PARAM_BETA, Math.toDegrees(gyro[1]));
+        r.putDouble(DeviceOrientationProfile.PARAM_GAMMA, Math.toDegrees(gyro[2]));
+        orientation.putBundle(DeviceOrientationProfile.PARAM_ACCELERATION, a1);
+        orientation.putBundle(DeviceOrientationProfile.PARAM_ACCELERATION_INCLUDING_GRAVITY, a2);
+        orientation.putBundle(DeviceOrientationProfile.PARAM_ROTATION_RATE, r);
+        setInterval(orientation, sample.getInterval());
+        return orientation;
+    }
+
     /**
      * Android Wear管理クラスを取得する.
      * @return WearManager管理クラス
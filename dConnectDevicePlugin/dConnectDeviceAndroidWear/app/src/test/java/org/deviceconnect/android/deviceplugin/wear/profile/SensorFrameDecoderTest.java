@@ -0,0 +1,80 @@
+/*
+ SensorFrameDecoderTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.wear.profile;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * SensorFrameDecoder のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class SensorFrameDecoderTest {
+
+    /**
+     * Wear 側の SensorFrameEncoder と同じレイアウトのフレームを作成する.
+     * @param baseTime 最初のサンプルの時刻
+     * @param intervals 各サンプルの間隔
+     * @return フレーム
+     */
+    private static byte[] createFrame(final long baseTime, final int... intervals) {
+        ByteBuffer buffer = ByteBuffer.allocate(SensorFrameDecoder.HEADER_SIZE
+                + SensorFrameDecoder.SAMPLE_SIZE * intervals.length);
+        buffer.put((byte) SensorFrameDecoder.VERSION);
+        buffer.put((byte) 0);
+        buffer.putShort((short) intervals.length);
+        buffer.putLong(baseTime);
+        for (int i = 0; i < intervals.length; i++) {
+            buffer.putInt(intervals[i]);
+            for (int j = 0; j < 6; j++) {
+                buffer.putFloat(i * 10 + j);
+            }
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void decodeSamples() {
+        List<SensorFrameDecoder.Sample> samples = SensorFrameDecoder.decode(createFrame(5000, 7, 10, 12));
+
+        assertEquals(3, samples.size());
+        assertEquals(5000, samples.get(0).getTime());
+        assertEquals(5010, samples.get(1).getTime());
+        assertEquals(5022, samples.get(2).getTime());
+        assertEquals(7, samples.get(0).getInterval());
+        assertEquals(12, samples.get(2).getInterval());
+        assertEquals(20f, samples.get(2).getAccel()[0], 0);
+        assertEquals(22f, samples.get(2).getAccel()[2], 0);
+        assertEquals(23f, samples.get(2).getGyro()[0], 0);
+        assertEquals(25f, samples.get(2).getGyro()[2], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedVersion() {
+        byte[] frame = createFrame(0, 10);
+        frame[0] = 2;
+        SensorFrameDecoder.decode(frame);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedFrame() {
+        byte[] frame = createFrame(0, 10, 10);
+        byte[] truncated = new byte[frame.length - 4];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+        SensorFrameDecoder.decode(truncated);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortHeader() {
+        SensorFrameDecoder.decode(new byte[4]);
+    }
+}
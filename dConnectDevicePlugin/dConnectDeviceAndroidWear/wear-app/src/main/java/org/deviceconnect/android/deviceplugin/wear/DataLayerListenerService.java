@@ -77,14 +77,32 @@ public class DataLayerListenerService extends WearableListenerService {
         }
     }
 
-    private void startSensorService(String id) {
+    private void startSensorService(String id, final MessageEvent messageEvent) {
         Intent intent = new Intent();
         intent.setAction(WearConst.DEVICE_TO_WEAR_DEIVCEORIENTATION_REGISTER);
         intent.setClass(this, WearAppService.class);
         intent.putExtra(WearConst.PARAM_SENSOR_ID, id);
+        intent.putExtra(WearConst.PARAM_SENSOR_INTERVAL, getInterval(messageEvent));
         startService(intent);
     }
 
+    /**
+     * メッセージからイベントの通知間隔を取得する.
+     * @param messageEvent メッセージ
+     * @return 通知間隔(ms). 指定が無い場合は0
+     */
+    private long getInterval(final MessageEvent messageEvent) {
+        byte[] data = messageEvent.getData();
+        if (data == null || data.length == 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(data));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     private void stopSensorService(String id) {
         Intent intent = new Intent();
         intent.setAction(WearConst.DEVICE_TO_WEAR_DEIVCEORIENTATION_UNREGISTER);
@@ -105,7 +123,7 @@ public class DataLayerListenerService extends WearableListenerService {
         } else if (action.equals(WearConst.DEVICE_TO_WEAR_CANCAS_DELETE_IMAGE)) {
             deleteCanvas();
         } else if (action.equals(WearConst.DEVICE_TO_WEAR_DEIVCEORIENTATION_REGISTER)) {
-            startSensorService(id);
+            startSensorService(id, messageEvent);
         } else if (action.equals(WearConst.DEVICE_TO_WEAR_DEIVCEORIENTATION_UNREGISTER)) {
             stopSensorService(id);
         } else if (action.equals(WearConst.DEVICE_TO_WEAR_KEYEVENT_ONDOWN_REGISTER)) {
@@ -0,0 +1,141 @@
+/*
+SensorFrameEncoder.java
+Copyright (c) 2017 NTT DOCOMO,INC.
+Released under the MIT license
+http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.wear;
+
+import java.nio.ByteBuffer;
+
+/**
+ * センサーのサンプルを固定長レイアウトのバイナリフレームにまとめるクラス.
+ * <p>
+ * フレームのレイアウト(ビッグエンディアン):
+ * </p>
+ * <pre>
+ * ヘッダ (12byte)
+ *   byte   バージョン ({@value #VERSION})
+ *   byte   予約 (0)
+ *   short  サンプル数
+ *   long   最初のサンプルの時刻(ms)
+ * サンプル (28byte × サンプル数)
+ *   int    前のサンプルからの間隔(ms)
+ *   float  加速度 x, y, z (m/s^2)
+ *   float  角速度 x, y, z (rad/s)
+ * </pre>
+ * <p>
+ * スマートフォン側の SensorFrameDecoder と同じレイアウトを使用すること。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SensorFrameEncoder {
+
+    /** フレームのバージョン. */
+    public static final int VERSION = 1;
+
+    /** ヘッダのサイズ. */
+    public static final int HEADER_SIZE = 12;
+
+    /** 1サンプルのサイズ. */
+    public static final int SAMPLE_SIZE = 28;
+
+    /** 1フレームに格納するサンプルの最大数. */
+    private final int mMaxSamples;
+
+    /** サンプルを書き込むバッファ. */
+    private final ByteBuffer mBuffer;
+
+    /** バッファ内のサンプル数. */
+    private int mCount;
+
+    /** 最初のサンプルの時刻(ms). */
+    private long mBaseTime;
+
+    /** 前のサンプルの時刻(ms). */
+    private long mLastTime;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param maxSamples 1フレームに格納するサンプルの最大数
+     */
+    public SensorFrameEncoder(final int maxSamples) {
+        if (maxSamples <= 0 || maxSamples > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("maxSamples is invalid: " + maxSamples);
+        }
+        mMaxSamples = maxSamples;
+        mBuffer = ByteBuffer.allocate(HEADER_SIZE + SAMPLE_SIZE * maxSamples);
+        reset(System.currentTimeMillis());
+    }
+
+    /**
+     * バッファを空にして、間隔の計算の基準時刻を設定する.
+     *
+     * @param startTime 計測開始時刻(ms)
+     */
+    public synchronized void reset(final long startTime) {
+        mCount = 0;
+        mLastTime = startTime;
+        mBuffer.clear();
+        mBuffer.position(HEADER_SIZE);
+    }
+
+    /**
+     * サンプルを追加する.
+     *
+     * @param time サンプルの時刻(ms)
+     * @param accel 加速度 x, y, z
+     * @param gyro 角速度 x, y, z
+     * @return フレームが一杯になった場合はtrue、それ以外はfalse
+     */
+    public synchronized boolean add(final long time, final float[] accel, final float[] gyro) {
+        if (mCount == mMaxSamples) {
+            return true;
+        }
+        if (mCount == 0) {
+            mBaseTime = time;
+        }
+        mBuffer.putInt((int) (time - mLastTime));
+        mBuffer.putFloat(accel[0]);
+        mBuffer.putFloat(accel[1]);
+        mBuffer.putFloat(accel[2]);
+        mBuffer.putFloat(gyro[0]);
+        mBuffer.putFloat(gyro[1]);
+        mBuffer.putFloat(gyro[2]);
+        mLastTime = time;
+        mCount++;
+        return mCount == mMaxSamples;
+    }
+
+    /**
+     * バッファ内のサンプル数を取得する.
+     *
+     * @return サンプル数
+     */
+    public synchronized int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * バッファ内のサンプルをフレームにして取り出す.
+     *
+     * @return フレーム. サンプルが無い場合はnull
+     */
+    public synchronized byte[] flush() {
+        if (mCount == 0) {
+            return null;
+        }
+        mBuffer.put(0, (byte) VERSION);
+        mBuffer.put(1, (byte) 0);
+        mBuffer.putShort(2, (short) mCount);
+        mBuffer.putLong(4, mBaseTime);
+        byte[] frame = new byte[HEADER_SIZE + SAMPLE_SIZE * mCount];
+        mBuffer.flip();
+        mBuffer.get(frame);
+        mCount = 0;
+        mBuffer.clear();
+        mBuffer.position(HEADER_SIZE);
+        return frame;
+    }
+}
@@ -16,33 +16,42 @@ import com.google.android.gms.wearable.MessageApi;
 import com.google.android.gms.wearable.Wearable;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class WearAppService extends Service implements SensorEventListener {
-    /** radian. */
-    private static final double RAD2DEG = 180 / Math.PI;
+    /** センサーのデータをまとめて送信する間隔(ms). */
+    private static final long FRAME_WINDOW = 100;
 
-    /** Device NodeID . */
-    private final List<String> mIds = Collections.synchronizedList(new ArrayList<String>());
+    /** 1フレームに格納するサンプルの最大数. */
+    private static final int MAX_SAMPLES_PER_FRAME = 64;
+
+    /** 指定できる最小のサンプリング間隔(ms). */
+    private static final long MIN_SAMPLING_INTERVAL = 10;
+
+    /** Device NodeID とイベントの通知間隔(ms). 間隔の指定が無い場合は0. */
+    private final Map<String, Long> mIntervals = new ConcurrentHashMap<>();
 
     /** SensorManager. */
     private SensorManager mSensorManager;
 
-    /** Gyro x. */
-    private float mGyroX;
+    /** Gyro x, y, z (rad/s). */
+    private final float[] mGyro = new float[3];
 
-    /** Gyro y. */
-    private float mGyroY;
+    /** センサーのサンプルをまとめるクラス. */
+    private final SensorFrameEncoder mEncoder = new SensorFrameEncoder(MAX_SAMPLES_PER_FRAME);
 
-    /** Gyro z. */
-    private float mGyroZ;
+    /** センサーに設定しているサンプリング間隔(us). */
+    private int mSamplingPeriodUs;
 
-    /** The start time for measuring the interval. */
-    private long mStartTime;
+    /** フレームを定期的に送信する処理. */
+    private ScheduledFuture<?> mFlushFuture;
 
     /** GyroSensor. */
     private Sensor mGyroSensor;
@@ -53,7 +62,23 @@ public class WearAppService extends Service implements SensorEventListener {
     /**
      * スレッド管理用クラス.
      */
-    private final ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService mExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * バッファ内のサンプルをスマホ側に送信する処理.
+     */
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            byte[] frame = mEncoder.flush();
+            if (frame == null) {
+                return;
+            }
+            for (String id : mIntervals.keySet()) {
+                sendSensorEvent(frame, id);
+            }
+        }
+    };
 
     @Override
     public void onCreate() {
@@ -72,14 +97,20 @@ public class WearAppService extends Service implements SensorEventListener {
             String action = intent.getAction();
             String id = intent.getStringExtra(WearConst.PARAM_SENSOR_ID);
             if (WearConst.DEVICE_TO_WEAR_DEIVCEORIENTATION_REGISTER.equals(action)) {
-                if (!mIds.contains(id)) {
-                    mIds.add(id);
+                long interval = intent.getLongExtra(WearConst.PARAM_SENSOR_INTERVAL, 0);
+                if (interval > 0) {
+                    mIntervals.put(id, interval);
+                } else if (!mIntervals.containsKey(id)) {
+                    // 通知間隔の指定が無い場合は、指定済みの通知間隔を維持する
+                    mIntervals.put(id, 0L);
                 }
                 registerSensor();
             } else if (WearConst.DEVICE_TO_WEAR_DEIVCEORIENTATION_UNREGISTER.equals(action)) {
-                mIds.remove(id);
-                if (mIds.isEmpty()) {
+                mIntervals.remove(id);
+                if (mIntervals.isEmpty()) {
                     unregisterSensor();
+                } else {
+                    registerSensor();
                 }
             }
         }
@@ -88,37 +119,27 @@ public class WearAppService extends Service implements SensorEventListener {
 
     @Override
     public void onDestroy() {
-        mIds.clear();
+        mIntervals.clear();
         unregisterSensor();
+        mExecutorService.shutdown();
         super.onDestroy();
     }
 
     @Override
     public void onSensorChanged(final SensorEvent sensorEvent) {
         if (sensorEvent.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            long time = System.currentTimeMillis();
-            long interval = time - mStartTime;
-            mStartTime = time;
-
-            float accelX = sensorEvent.values[0];
-            float accelY = sensorEvent.values[1];
-            float accelZ = sensorEvent.values[2];
-            final String data = accelX + "," + accelY + "," + accelZ
-                    + "," + mGyroX + "," + mGyroY + "," + mGyroZ + "," + interval;
-            mExecutorService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    synchronized (mIds) {
-                        for (String id : mIds) {
-                            sendSensorEvent(data, id);
-                        }
-                    }
+            if (mEncoder.add(System.currentTimeMillis(), sensorEvent.values, mGyro)) {
+                // フレームが一杯になったので、送信間隔を待たずに送信する
+                try {
+                    mExecutorService.execute(mFlushTask);
+                } catch (RejectedExecutionException e) {
+                    // サービス終了済み
                 }
-            });
+            }
         } else if (sensorEvent.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-            mGyroX = (float) (sensorEvent.values[0] * RAD2DEG);
-            mGyroY = (float) (sensorEvent.values[1] * RAD2DEG);
-            mGyroZ = (float) (sensorEvent.values[2] * RAD2DEG);
+            mGyro[0] = sensorEvent.values[0];
+            mGyro[1] = sensorEvent.values[1];
+            mGyro[2] = sensorEvent.values[2];
         }
     }
 
@@ -129,10 +150,10 @@ public class WearAppService extends Service implements SensorEventListener {
 
     /**
      * センサーイベントをスマホ側に送信する.
-     * @param data 送信するデータ
+     * @param frame 送信するフレーム
      * @param id 送信先のID
      */
-    private void sendSensorEvent(final String data, final String id) {
+    private void sendSensorEvent(final byte[] frame, final String id) {
         GoogleApiClient client = getClient();
         if (!client.isConnected()) {
             ConnectionResult connectionResult = client.blockingConnect(30, TimeUnit.SECONDS);
@@ -145,7 +166,7 @@ public class WearAppService extends Service implements SensorEventListener {
         }
 
         MessageApi.SendMessageResult result = Wearable.MessageApi.sendMessage(client, id,
-                WearConst.WEAR_TO_DEVICE_DEIVCEORIENTATION_DATA, data.getBytes()).await();
+                WearConst.WEAR_TO_DEVICE_DEIVCEORIENTATION_FRAME, frame).await();
         if (!result.getStatus().isSuccess()) {
             if (BuildConfig.DEBUG) {
                 Log.e("WEAR", "Failed to send a sensor event.");
@@ -155,9 +176,17 @@ public class WearAppService extends Service implements SensorEventListener {
 
     /**
      * センサーを登録する.
+     * <p>
+     * 登録済みの場合は、要求されたイベントの通知間隔に合わせてサンプリング間隔を変更する。
+     * </p>
      */
     private synchronized void registerSensor() {
+        int samplingPeriodUs = getSamplingPeriodUs();
         if (mSensorManager != null) {
+            if (samplingPeriodUs != mSamplingPeriodUs) {
+                mSensorManager.unregisterListener(this);
+                registerListeners(samplingPeriodUs);
+            }
             return;
         }
 
@@ -178,16 +207,54 @@ public class WearAppService extends Service implements SensorEventListener {
         List<Sensor> accelSensors = mSensorManager.getSensorList(Sensor.TYPE_ACCELEROMETER);
         if (accelSensors.size() > 0) {
             mAccelerometer = accelSensors.get(0);
-            mSensorManager.registerListener(this, mAccelerometer, SensorManager.SENSOR_DELAY_NORMAL);
         }
-
         List<Sensor> gyroSensors = mSensorManager.getSensorList(Sensor.TYPE_GYROSCOPE);
         if (gyroSensors.size() > 0) {
             mGyroSensor = gyroSensors.get(0);
-            mSensorManager.registerListener(this, mGyroSensor, SensorManager.SENSOR_DELAY_NORMAL);
         }
+        mEncoder.reset(System.currentTimeMillis());
+        registerListeners(samplingPeriodUs);
+        mFlushFuture = mExecutorService.scheduleAtFixedRate(mFlushTask,
+                FRAME_WINDOW, FRAME_WINDOW, TimeUnit.MILLISECONDS);
+    }
 
-        mStartTime = System.currentTimeMillis();
+    /**
+     * 指定したサンプリング間隔でセンサーのリスナーを登録する.
+     * <p>
+     * センサーのイベントは送信間隔までまとめて通知してよいことをセンサーに伝える。
+     * </p>
+     * @param samplingPeriodUs サンプリング間隔(us)
+     */
+    private void registerListeners(final int samplingPeriodUs) {
+        int maxReportLatencyUs = (int) TimeUnit.MILLISECONDS.toMicros(FRAME_WINDOW);
+        if (mAccelerometer != null) {
+            mSensorManager.registerListener(this, mAccelerometer, samplingPeriodUs, maxReportLatencyUs);
+        }
+        if (mGyroSensor != null) {
+            mSensorManager.registerListener(this, mGyroSensor, samplingPeriodUs, maxReportLatencyUs);
+        }
+        mSamplingPeriodUs = samplingPeriodUs;
+    }
+
+    /**
+     * 要求されたイベントの通知間隔からサンプリング間隔を取得する.
+     * <p>
+     * 最も短い通知間隔に合わせる。通知間隔の指定が無い場合は {@link SensorManager#SENSOR_DELAY_NORMAL} を返却する。
+     * </p>
+     * @return サンプリング間隔(us) または SensorManager.SENSOR_DELAY_*
+     */
+    private int getSamplingPeriodUs() {
+        long interval = Long.MAX_VALUE;
+        for (Long value : new ArrayList<>(mIntervals.values())) {
+            if (value != null && value > 0) {
+                interval = Math.min(interval, value);
+            }
+        }
+        if (interval == Long.MAX_VALUE) {
+            return SensorManager.SENSOR_DELAY_NORMAL;
+        }
+        interval = Math.max(MIN_SAMPLING_INTERVAL, interval);
+        return (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toMicros(interval));
     }
 
     /**
@@ -200,6 +267,11 @@ public class WearAppService extends Service implements SensorEventListener {
             mSensorManager.unregisterListener(this);
             mSensorManager = null;
         }
+        if (mFlushFuture != null) {
+            mFlushFuture.cancel(false);
+            mFlushFuture = null;
+        }
+        mEncoder.flush();
     }
 
     /**
@@ -37,6 +37,10 @@ public final class WearConst {
     /** Wear to Android. */
     public static final String WEAR_TO_DEVICE_DEIVCEORIENTATION_DATA = "org.deviceconnect.wear.deivceorienatation.data";
 
+    /** Wear to Android (SensorFrameEncoder で作成したフレーム). */
+    public static final String WEAR_TO_DEVICE_DEIVCEORIENTATION_FRAME
+            = "org.deviceconnect.wear.deivceorienatation.frame";
+
     /** Register Key Event (ondown). */
     public static final String DEVICE_TO_WEAR_KEYEVENT_ONDOWN_REGISTER
             = "org.deviceconnect.wear.keyevent.ondown.regist";
@@ -204,6 +208,9 @@ public final class WearConst {
 
     public static final String PARAM_SENSOR_ID = "sensorId";
 
+    /** イベントの通知間隔(ms)を受け渡しするためのキー. */
+    public static final String PARAM_SENSOR_INTERVAL = "sensorInterval";
+
     /**
      * bitmapを受け渡しするためのキー.
      */
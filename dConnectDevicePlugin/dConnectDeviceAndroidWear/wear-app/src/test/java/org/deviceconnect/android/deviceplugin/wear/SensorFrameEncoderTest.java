@@ -0,0 +1,156 @@
+/*
+SensorFrameEncoderTest.java
+Copyright (c) 2017 NTT DOCOMO,INC.
+Released under the MIT license
+http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.wear;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SensorFrameEncoder のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class SensorFrameEncoderTest {
+
+    /** サンプリング周波数(Hz). */
+    private static final int RATE = 100;
+
+    /** 計測時間(s). */
+    private static final int DURATION = 10;
+
+    /** フレームをまとめる間隔(ms). */
+    private static final int WINDOW = 100;
+
+    @Test
+    public void emptyEncoderReturnsNull() {
+        SensorFrameEncoder encoder = new SensorFrameEncoder(4);
+        assertNull(encoder.flush());
+    }
+
+    @Test
+    public void frameHasFixedLayout() {
+        SensorFrameEncoder encoder = new SensorFrameEncoder(8);
+        encoder.reset(1000);
+        assertFalse(encoder.add(1010, new float[] {1, 2, 3}, new float[] {0.1f, 0.2f, 0.3f}));
+        assertFalse(encoder.add(1030, new float[] {4, 5, 6}, new float[] {0.4f, 0.5f, 0.6f}));
+        byte[] frame = encoder.flush();
+
+        assertEquals(SensorFrameEncoder.HEADER_SIZE + SensorFrameEncoder.SAMPLE_SIZE * 2, frame.length);
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        assertEquals(SensorFrameEncoder.VERSION, buffer.get());
+        assertEquals(0, buffer.get());
+        assertEquals(2, buffer.getShort());
+        assertEquals(1010, buffer.getLong());
+        assertEquals(10, buffer.getInt());
+        assertEquals(1f, buffer.getFloat(), 0);
+        assertEquals(2f, buffer.getFloat(), 0);
+        assertEquals(3f, buffer.getFloat(), 0);
+        assertEquals(0.1f, buffer.getFloat(), 0);
+        assertEquals(0.2f, buffer.getFloat(), 0);
+        assertEquals(0.3f, buffer.getFloat(), 0);
+        assertEquals(20, buffer.getInt());
+        assertEquals(4f, buffer.getFloat(), 0);
+        buffer.position(buffer.position() + 4 * 5);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(0, encoder.getSampleCount());
+    }
+
+    @Test
+    public void intervalContinuesAcrossFrames() {
+        SensorFrameEncoder encoder = new SensorFrameEncoder(2);
+        encoder.reset(0);
+        float[] values = new float[3];
+        assertFalse(encoder.add(10, values, values));
+        assertTrue(encoder.add(20, values, values));
+        // 一杯の場合は追加しない
+        assertTrue(encoder.add(30, values, values));
+        assertEquals(2, encoder.getSampleCount());
+        encoder.flush();
+
+        assertFalse(encoder.add(35, values, values));
+        ByteBuffer buffer = ByteBuffer.wrap(encoder.flush());
+        buffer.position(4);
+        assertEquals(35, buffer.getLong());
+        // 前のフレームの最後のサンプル(20ms)からの間隔
+        assertEquals(15, buffer.getInt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxSamples() {
+        new SensorFrameEncoder(0);
+    }
+
+    /**
+     * 100Hzのサンプルを1サンプルごとの文字列で送信する場合と、フレームにまとめて送信する場合の
+     * 1秒あたりのメッセージ数とバイト数を比較する.
+     */
+    @Test
+    public void benchmarkMessagesPerSecond() {
+        int samples = RATE * DURATION;
+        float[] accel = {0.12f, 9.81f, -0.33f};
+        float[] gyro = {0.011f, -0.027f, 0.004f};
+
+        // 旧方式: 1サンプル1メッセージ
+        int legacyMessages = 0;
+        long legacyBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            String data = accel[0] + "," + accel[1] + "," + accel[2] + ","
+                    + gyro[0] * 57.29 + "," + gyro[1] * 57.29 + "," + gyro[2] * 57.29 + "," + (1000 / RATE);
+            legacyBytes += data.getBytes().length;
+            legacyMessages++;
+        }
+        double legacyMs = (System.nanoTime() - start) / 1e6;
+
+        // 新方式: WINDOW ms ごとにフレームにまとめる
+        SensorFrameEncoder encoder = new SensorFrameEncoder(64);
+        encoder.reset(0);
+        int frameMessages = 0;
+        long frameBytes = 0;
+        long nextFlush = WINDOW;
+        start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            long time = i * 1000L / RATE;
+            if (time >= nextFlush) {
+                byte[] frame = encoder.flush();
+                if (frame != null) {
+                    frameMessages++;
+                    frameBytes += frame.length;
+                }
+                nextFlush += WINDOW;
+            }
+            if (encoder.add(time, accel, gyro)) {
+                byte[] frame = encoder.flush();
+                frameMessages++;
+                frameBytes += frame.length;
+            }
+        }
+        byte[] frame = encoder.flush();
+        if (frame != null) {
+            frameMessages++;
+            frameBytes += frame.length;
+        }
+        double frameMs = (System.nanoTime() - start) / 1e6;
+
+        System.out.println(String.format(Locale.US,
+                "legacy: %.1f msg/s, %d bytes, encode %.2fms / batched: %.1f msg/s, %d bytes, encode %.2fms",
+                legacyMessages / (double) DURATION, legacyBytes, legacyMs,
+                frameMessages / (double) DURATION, frameBytes, frameMs));
+
+        assertEquals(samples, legacyMessages);
+        assertTrue(frameMessages <= DURATION * (1000 / WINDOW) + 1);
+        assertTrue(frameMessages * 10 <= legacyMessages);
+        assertTrue(frameBytes < legacyBytes);
+    }
+}
@@ -20,6 +20,7 @@ import org.deviceconnect.android.profile.api.DConnectApi;
 import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PostApi;
+import org.deviceconnect.android.profile.util.FlashingExecutor;
 import org.deviceconnect.message.DConnectMessage;
 
 import java.util.ArrayList;
@@ -6,6 +6,7 @@ import org.deviceconnect.android.deviceplugin.fabo.param.FaBoShield;
 import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.PutApi;
+import org.deviceconnect.android.profile.util.FlashingExecutor;
 import org.deviceconnect.message.DConnectMessage;
 
 import java.util.ArrayList;
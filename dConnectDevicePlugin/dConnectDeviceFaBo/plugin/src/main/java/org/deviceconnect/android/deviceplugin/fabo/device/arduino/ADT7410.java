@@ -92,13 +92,13 @@ class ADT7410 extends BaseI2C implements IADT7410 {
             case DEVICE_REG:
                 int deviceId = decodeByte(data[offset++], data[offset]);
                 if ((deviceId & DEVICE_ID) != 0) {
-                    new Thread(new Runnable() {
+                    post(new Runnable() {
                         @Override
                         public void run() {
                             setADT7410();
                             startRead(ADT7410_DEVICE_ADDR, REGISTER_CONFIG, 2);
                         }
-                    }).start();
+                    });
                 } else {
                     for (OnADT7410Listener listener : mOnADT7410Listeners) {
                         listener.onError("ADT7410 is not connect.");
@@ -101,13 +101,13 @@ class ADXL345 extends BaseI2C implements IADXL345 {
         if (register == REGISTER_RA_DEVID) {
             int deviceId = decodeByte(data[offset++], data[offset]);
             if (deviceId == DEVICE_ID) {
-                new Thread(new Runnable() {
+                post(new Runnable() {
                     @Override
                     public void run() {
                         setADXL345();
                         startRead(ADXL345_DEVICE_ADDR, REGISTER_RA_DATAX0, 6);
                     }
-                }).start();
+                });
             } else {
                 for (OnADXL345Listener listener : mOnADXL345Listeners) {
                     listener.onError("ADXL345 is not connect.");
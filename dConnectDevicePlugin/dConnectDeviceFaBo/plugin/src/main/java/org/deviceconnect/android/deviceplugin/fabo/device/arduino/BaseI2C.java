@@ -1,5 +1,6 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.arduino;
 
+import java.util.concurrent.TimeoutException;
 
 import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.END_SYSEX;
 import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.I2C_CONFIG;
@@ -136,6 +137,38 @@ class BaseI2C {
         writeI2C(command);
     }
 
+    /**
+     * 指定されたレジスタをまとめて読み込みます.
+     * <p>
+     * 全てのレジスタの値を取得するまで待ちます。
+     * </p>
+     * @param timeout タイムアウト(ms)
+     * @param transactions 読み込み要求
+     * @throws TimeoutException タイムアウトした場合
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    void readI2C(final long timeout, final I2CTransaction... transactions)
+            throws TimeoutException, InterruptedException {
+        getFaBoDeviceControl().readI2C(timeout, transactions);
+    }
+
+    /**
+     * I2Cデバイスの処理をI2C用のスレッドで実行します.
+     * @param runnable 実行する処理
+     */
+    void post(final Runnable runnable) {
+        getFaBoDeviceControl().post(runnable);
+    }
+
+    /**
+     * 指定された時間後にI2Cデバイスの処理をI2C用のスレッドで実行します.
+     * @param runnable 実行する処理
+     * @param delay 遅延時間(ms)
+     */
+    void postDelayed(final Runnable runnable, final long delay) {
+        getFaBoDeviceControl().postDelayed(runnable, delay);
+    }
+
     /**
      * I2Cのアドレスを取得します.
      * @return アドレス
@@ -26,18 +26,18 @@ import org.deviceconnect.android.deviceplugin.fabo.device.IVCNL4010;
 import org.deviceconnect.android.deviceplugin.fabo.param.FaBoShield;
 import org.deviceconnect.android.deviceplugin.fabo.param.FaBoConst;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.fabo.serialkit.FaBoUsbConst;
 import io.fabo.serialkit.FaBoUsbListenerInterface;
 import io.fabo.serialkit.FaBoUsbManager;
 
-import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataUtil.decodeByte;
-import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.ANALOG_MESSAGE;
-import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.DIGITAL_MESSAGE;
 import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.END_SYSEX;
 import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.REPORT_VERSION;
 import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.START_SYSEX;
@@ -99,39 +99,22 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
     private Context mContext;
 
     /**
-     * sysex messageを解析中フラグ.
-     * <p>
-     * sysex messageを解析している間はtrue、それ以外はfalse
-     * </p>
+     * Arduinoから送られてきたデータを解析するクラス.
      */
-    private boolean mParsingSysex;
+    private FirmataDecoder mDecoder;
 
     /**
-     * Arduinoから送られてきたピン番号.
+     * I2C_REPLYの配信先を管理するテーブル.
      */
-    private int mChannel;
+    private final I2CTransactionTable mI2CTable = new I2CTransactionTable();
 
     /**
-     * Arduinoから送られてきたコマンド.
+     * I2Cデバイスの初期化などを実行するスレッド.
      * <p>
-     * 以下のコマンドが存在します。
-     *  - DIGITAL_MESSAGE
-     *  - ANALOG_MESSAGE
-     *  - REPORT_ANALOG
-     *  - REPORT_DIGITAL
+     * USBの受信スレッドを止めないように、I2C_REPLYを受けて行う処理はこのスレッドで実行します。
      * </p>
      */
-    private byte mCommand;
-
-    /**
-     * コマンドのデータカウント.
-     */
-    private int mWaitForData;
-
-    /**
-     * Arduinoから送られてきたデータを一時的に格納するバッファ.
-     */
-    private ByteArrayOutputStream mStoredInputData;
+    private ScheduledExecutorService mExecutor;
 
     /**
      * マウス型RobotCarを操作するクラス.
@@ -193,8 +176,8 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
 
     @Override
     public void initialize() {
-        mStoredInputData = new ByteArrayOutputStream();
-        mParsingSysex = false;
+        mDecoder = new FirmataDecoder(mFirmataHandler);
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
 
         // Set status.
         setStatus(FaBoConst.STATUS_FABO_NOCONNECT);
@@ -215,7 +198,12 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
     public void destroy() {
         mOnFaBoDeviceControlListener = null;
         mOnGPIOListeners.clear();
+        for (BaseI2C i2c : mI2CList) {
+            mI2CTable.setOnReplyListener(i2c.getAddress(), null);
+        }
         mI2CList.clear();
+        mI2CTable.clear();
+        mExecutor.shutdownNow();
         closeUsb();
         mContext.unregisterReceiver(mUsbEventReceiver);
     }
@@ -387,6 +375,15 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
         mI2CList.add(mISL29034);
         mI2CList.add(mMPL115);
         mI2CList.add(mLIDARLiteV3);
+
+        for (final BaseI2C i2c : mI2CList) {
+            mI2CTable.setOnReplyListener(i2c.getAddress(), new I2CTransactionTable.OnReplyListener() {
+                @Override
+                public void onReply(final byte[] data) {
+                    i2c.onReadData(data);
+                }
+            });
+        }
     }
 
     /**
@@ -422,7 +419,7 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
             Log.i(TAG, "----------------------------------------");
         }
 
-        mParsingSysex = false;
+        mDecoder.reset();
 
         if (mFaBoUsbManager != null) {
             mFaBoUsbManager.closeConnection();
@@ -658,6 +655,72 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
         sendMessage(buffer);
     }
 
+    /**
+     * I2Cから複数のレジスタをまとめて読み込みます.
+     * <p>
+     * 読み込み要求をまとめてArduinoに送信して、全ての応答を受信するまで待ちます。
+     * 受信スレッドを止めないように、I2C_REPLYを処理しているスレッドからは呼び出さないでください。
+     * </p>
+     * @param timeout タイムアウト(ms)
+     * @param transactions 読み込み要求
+     * @throws TimeoutException タイムアウトした場合
+     * @throws InterruptedException 割り込みが発生した場合
+     */
+    void readI2C(final long timeout, final I2CTransaction... transactions)
+            throws TimeoutException, InterruptedException {
+        for (I2CTransaction transaction : transactions) {
+            mI2CTable.add(transaction);
+        }
+        for (byte[] buffer : I2CTransactionTable.encodeRequests(transactions)) {
+            sendMessage(buffer);
+        }
+
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            for (I2CTransaction transaction : transactions) {
+                transaction.get(deadline - System.currentTimeMillis());
+            }
+        } finally {
+            for (I2CTransaction transaction : transactions) {
+                if (!transaction.isDone()) {
+                    mI2CTable.remove(transaction);
+                }
+            }
+        }
+    }
+
+    /**
+     * I2Cデバイスの処理を実行します.
+     * @param runnable 実行する処理
+     */
+    void post(final Runnable runnable) {
+        postDelayed(runnable, 0);
+    }
+
+    /**
+     * 指定された時間後にI2Cデバイスの処理を実行します.
+     * @param runnable 実行する処理
+     * @param delay 遅延時間(ms)
+     */
+    void postDelayed(final Runnable runnable, final long delay) {
+        ScheduledExecutorService executor = mExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Exception e) {
+                    if (DEBUG) {
+                        Log.w(TAG, "Failed to run a task of I2C device.", e);
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * メッセージの送信
      *
@@ -730,23 +793,24 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
 
     /**
      * REPORT_VERIONの解析を行います.
-     * @param data データ
+     * @param major メジャーバージョン
+     * @param minor マイナーバージョン
      */
-    private void reportVersion(final byte[] data) {
+    private void reportVersion(final int major, final int minor) {
         if (DEBUG) {
             Log.i(TAG, "REPORT_VERSION");
-            Log.i(TAG, "  Version: " + data[0] + "." + data[1]);
+            Log.i(TAG, "  Version: " + major + "." + minor);
         }
 
-        if ((byte) (data[0] & 0xFF) == (byte) VERSION[0] && (byte) (data[1] & 0xFF) == (byte) VERSION[1]) {
-            new Thread(new Runnable() {
+        if (major == VERSION[0] && minor == VERSION[1]) {
+            post(new Runnable() {
                 @Override
                 public void run() {
                     setStatus(FaBoConst.STATUS_FABO_RUNNING);
                     intFirmata();
                     notifyConnectFaBoDevice();
                 }
-            }).start();
+            });
         } else {
             if (DEBUG) {
                 Log.w(TAG, "Not support version.");
@@ -784,26 +848,21 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
     /**
      * sysex messageを解析します.
      * @param data sysex messageのデータ
+     * @param length データのサイズ
      */
-    private void parseSysExMessage(final byte[] data) {
+    private void parseSysExMessage(final byte[] data, final int length) {
         switch (data[0]) {
             case FirmataV32.REPORT_FIRMWARE:
                 break;
 
             case FirmataV32.I2C_REPLY:
-                int offset = 1;
-                int address = decodeByte(data[offset++], data[offset]);
-                for (BaseI2C i2c : mI2CList) {
-                    if (address == i2c.getAddress()) {
-                        i2c.onReadData(data);
-                    }
-                }
+                mI2CTable.dispatch(data, length);
                 break;
 
             case FirmataV32.STRING_DATA:
                 if (DEBUG) {
                     Log.i(TAG, "FirmataV32.STRING_DATA");
-                    Log.i(TAG, FirmataUtil.decodeString(data, 1, data.length));
+                    Log.i(TAG, FirmataUtil.decodeString(data, 1, length - 1));
                 }
                 break;
 
@@ -816,59 +875,29 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
     }
 
     /**
-     * Arduinoから読み込んだデータを処理します.
-     * @param inputData 読み込んだデータ
+     * FirmataDecoderからの通知を受け取るハンドラ.
      */
-    private void processInput(final byte inputData) {
-        if (mParsingSysex) {
-            if (inputData == END_SYSEX) {
-                parseSysExMessage(mStoredInputData.toByteArray());
-                mParsingSysex = false;
-            } else {
-                mStoredInputData.write(inputData);
-            }
-        } else if (mWaitForData > 0 && (inputData & 0x80) != 0x80) {
-            mWaitForData--;
-            mStoredInputData.write(inputData);
-
-            if (mWaitForData == 0) {
-                switch (mCommand) {
-                    case DIGITAL_MESSAGE:
-                        setDigitalData(mChannel, FirmataUtil.decodeByte(mStoredInputData.toByteArray()));
-                        break;
-                    case ANALOG_MESSAGE:
-                        setAnalogData(mChannel, FirmataUtil.decodeByte(mStoredInputData.toByteArray()));
-                        break;
-                    case REPORT_VERSION:
-                        reportVersion(mStoredInputData.toByteArray());
-                        break;
-                }
-            }
-        } else {
-            byte command;
-            if ((inputData & 0xFF) < 0xF0) {
-                command = (byte) (inputData & 0xF0);
-            } else {
-                command = inputData;
-            }
+    private final FirmataDecoder.Handler mFirmataHandler = new FirmataDecoder.Handler() {
+        @Override
+        public void onDigitalMessage(final int port, final int value) {
+            setDigitalData(port, value);
+        }
 
-            switch (command) {
-                case START_SYSEX:
-                    mParsingSysex = true;
-                    mStoredInputData.reset();
-                    break;
+        @Override
+        public void onAnalogMessage(final int pin, final int value) {
+            setAnalogData(pin, value);
+        }
 
-                case DIGITAL_MESSAGE:
-                case ANALOG_MESSAGE:
-                case REPORT_VERSION:
-                    mWaitForData = 2;
-                    mStoredInputData.reset();
-                    mCommand = command;
-                    mChannel = (byte) (inputData & 0x0F);
-                    break;
-            }
+        @Override
+        public void onReportVersion(final int major, final int minor) {
+            reportVersion(major, minor);
         }
-    }
+
+        @Override
+        public void onSysExMessage(final byte[] data, final int length) {
+            parseSysExMessage(data, length);
+        }
+    };
 
     /**
      * FaBoUsbManagerからの通知を受け取るリスナー.
@@ -910,15 +939,9 @@ public class FaBoUsbDeviceControl implements FaBoDeviceControl {
 //            }
 
             try {
-                for (byte data : datas) {
-                    processInput(data);
-                }
-            } catch (OutOfMemoryError e) {
-                mStoredInputData = new ByteArrayOutputStream();
-                mParsingSysex = false;
+                mDecoder.decode(datas, 0, datas.length);
             } catch (Exception e) {
-                mStoredInputData.reset();
-                mParsingSysex = false;
+                mDecoder.reset();
             }
         }
     };
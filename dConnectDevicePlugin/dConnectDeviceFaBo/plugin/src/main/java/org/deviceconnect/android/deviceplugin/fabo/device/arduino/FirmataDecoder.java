@@ -0,0 +1,243 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.arduino;
+
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataUtil.decodeByte;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.ANALOG_MESSAGE;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.DIGITAL_MESSAGE;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.END_SYSEX;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.REPORT_VERSION;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.START_SYSEX;
+
+/**
+ * Arduinoから送られてきたFirmataのメッセージを解析するクラス.
+ * <p>
+ * USBから受信したバッファをまとめて解析します。
+ * sysex messageは終端を検索してから一括でコピーし、バッファは再利用します。
+ * メッセージがバッファの境界で分割されている場合には、次のバッファと合わせて解析します。
+ * </p>
+ */
+class FirmataDecoder {
+
+    /**
+     * sysex messageを格納するバッファの初期サイズ.
+     */
+    private static final int DEFAULT_SYSEX_SIZE = 64;
+
+    /**
+     * sysex messageの最大サイズ.
+     * <p>
+     * このサイズを超えるsysex messageは破棄します。
+     * </p>
+     */
+    static final int MAX_SYSEX_SIZE = 4096;
+
+    /**
+     * 解析したメッセージを通知するハンドラ.
+     */
+    interface Handler {
+        /**
+         * DIGITAL_MESSAGEを受信したことを通知します.
+         * @param port ポート番号
+         * @param value ポートの値
+         */
+        void onDigitalMessage(int port, int value);
+
+        /**
+         * ANALOG_MESSAGEを受信したことを通知します.
+         * @param pin アナログピン番号
+         * @param value ピンの値
+         */
+        void onAnalogMessage(int pin, int value);
+
+        /**
+         * REPORT_VERSIONを受信したことを通知します.
+         * @param major メジャーバージョン
+         * @param minor マイナーバージョン
+         */
+        void onReportVersion(int major, int minor);
+
+        /**
+         * sysex messageを受信したことを通知します.
+         * <p>
+         * バッファは次のメッセージの解析に再利用されるので、通知の中で処理を完了してください。
+         * </p>
+         * @param data START_SYSEXとEND_SYSEXを除いたデータ
+         * @param length データのサイズ
+         */
+        void onSysExMessage(byte[] data, int length);
+    }
+
+    /**
+     * 通知先のハンドラ.
+     */
+    private final Handler mHandler;
+
+    /**
+     * sysex messageを格納するバッファ.
+     */
+    private byte[] mSysex = new byte[DEFAULT_SYSEX_SIZE];
+
+    /**
+     * sysex messageのサイズ.
+     */
+    private int mSysexLength;
+
+    /**
+     * sysex messageを解析中フラグ.
+     */
+    private boolean mParsingSysex;
+
+    /**
+     * sysex messageがMAX_SYSEX_SIZEを超えたフラグ.
+     */
+    private boolean mSysexOverflow;
+
+    /**
+     * 解析中のコマンド.
+     */
+    private byte mCommand;
+
+    /**
+     * 解析中のコマンドのチャンネル.
+     */
+    private int mChannel;
+
+    /**
+     * 残りのデータ数.
+     */
+    private int mWaitForData;
+
+    /**
+     * 1byte目のデータ.
+     */
+    private int mFirstData;
+
+    /**
+     * コンストラクタ.
+     * @param handler 解析したメッセージの通知先
+     */
+    FirmataDecoder(final Handler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler is null.");
+        }
+        mHandler = handler;
+    }
+
+    /**
+     * 解析中のメッセージを破棄します.
+     */
+    void reset() {
+        mParsingSysex = false;
+        mSysexOverflow = false;
+        mSysexLength = 0;
+        mWaitForData = 0;
+    }
+
+    /**
+     * 受信したデータを解析します.
+     * @param buffer 受信したデータ
+     * @param offset 開始位置
+     * @param length データのサイズ
+     */
+    void decode(final byte[] buffer, final int offset, final int length) {
+        final int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (mParsingSysex) {
+                int start = i;
+                while (i < end && buffer[i] != END_SYSEX) {
+                    i++;
+                }
+                appendSysex(buffer, start, i - start);
+                if (i < end) {
+                    i++;
+                    mParsingSysex = false;
+                    if (!mSysexOverflow && mSysexLength > 0) {
+                        mHandler.onSysExMessage(mSysex, mSysexLength);
+                    }
+                }
+                continue;
+            }
+
+            byte data = buffer[i++];
+            if (mWaitForData > 0 && (data & 0x80) != 0x80) {
+                if (--mWaitForData == 1) {
+                    mFirstData = data;
+                } else {
+                    dispatchMessage(mFirstData, data);
+                }
+                continue;
+            }
+
+            byte command;
+            if ((data & 0xFF) < 0xF0) {
+                command = (byte) (data & 0xF0);
+            } else {
+                command = data;
+            }
+
+            switch (command) {
+                case START_SYSEX:
+                    mParsingSysex = true;
+                    mSysexOverflow = false;
+                    mSysexLength = 0;
+                    mWaitForData = 0;
+                    break;
+
+                case DIGITAL_MESSAGE:
+                case ANALOG_MESSAGE:
+                case REPORT_VERSION:
+                    mWaitForData = 2;
+                    mCommand = command;
+                    mChannel = data & 0x0F;
+                    break;
+
+                default:
+                    mWaitForData = 0;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 2byteのデータを持つメッセージを通知します.
+     * @param first 1byte目のデータ
+     * @param second 2byte目のデータ
+     */
+    private void dispatchMessage(final int first, final int second) {
+        switch (mCommand) {
+            case DIGITAL_MESSAGE:
+                mHandler.onDigitalMessage(mChannel, decodeByte(first, second));
+                break;
+            case ANALOG_MESSAGE:
+                mHandler.onAnalogMessage(mChannel, decodeByte(first, second));
+                break;
+            case REPORT_VERSION:
+                mHandler.onReportVersion(first, second);
+                break;
+        }
+    }
+
+    /**
+     * sysex messageのバッファにデータを追加します.
+     * @param buffer 追加するデータ
+     * @param offset 開始位置
+     * @param length サイズ
+     */
+    private void appendSysex(final byte[] buffer, final int offset, final int length) {
+        if (length == 0 || mSysexOverflow) {
+            return;
+        }
+        int newLength = mSysexLength + length;
+        if (newLength > MAX_SYSEX_SIZE) {
+            mSysexOverflow = true;
+            return;
+        }
+        if (newLength > mSysex.length) {
+            byte[] sysex = new byte[Math.min(MAX_SYSEX_SIZE, Math.max(newLength, mSysex.length * 2))];
+            System.arraycopy(mSysex, 0, sysex, 0, mSysexLength);
+            mSysex = sysex;
+        }
+        System.arraycopy(buffer, offset, mSysex, mSysexLength, length);
+        mSysexLength = newLength;
+    }
+}
@@ -4,10 +4,8 @@ import org.deviceconnect.android.deviceplugin.fabo.device.IHTS221;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataUtil.decodeByte;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
 
 class HTS221 extends BaseI2C implements IHTS221 {
 
@@ -115,6 +113,11 @@ class HTS221 extends BaseI2C implements IHTS221 {
     private static final int REGISTER_T1_OUT_L = 0x3E;
     private static final int REGISTER_T1_OUT_H = 0x3F;
 
+    /**
+     * レジスタの読み込みのタイムアウト(ms).
+     */
+    private static final long TIMEOUT = 1000;
+
     private List<OnHumidityCallback> mOnHumidityCallbacks = new ArrayList<>();
     private List<OnTemperatureCallback> mOnTemperatureCallbacks = new ArrayList<>();
 
@@ -146,48 +149,6 @@ class HTS221 extends BaseI2C implements IHTS221 {
         return HTS221_SLAVE_ADDRESS;
     }
 
-    @Override
-    synchronized void onReadData(final byte[] data) {
-        int offset = 3;
-        int register = decodeByte(data[offset++], data[offset]);
-        switch (register) {
-            case REGISTER_DEVICE_REG:
-                mHumidity.onReadData(data, register);
-                mTemperature.onReadData(data, register);
-                break;
-
-            // humidity
-
-            case REGISTER_H0_RH_X2:
-            case REGISTER_H1_RH_X2:
-            case REGISTER_H0_T0_OUT_L:
-            case REGISTER_H0_T0_OUT_H:
-            case REGISTER_H1_T0_OUT_L:
-            case REGISTER_H1_T0_OUT_H:
-            case REGISTER_HUMIDITY_OUT_L:
-            case REGISTER_HUMIDITY_OUT_H:
-                mHumidity.onReadData(data, register);
-                break;
-
-            // temperature
-
-            case REGISTER_T1_T0_MSB:
-            case REGISTER_T0_DEGC_X8:
-            case REGISTER_T1_DEGC_X8:
-            case REGISTER_T0_OUT_L:
-            case REGISTER_T0_OUT_H:
-            case REGISTER_T1_OUT_L:
-            case REGISTER_T1_OUT_H:
-            case REGISTER_TEMP_OUT_L:
-            case REGISTER_TEMP_OUT_H:
-                mTemperature.onReadData(data, register);
-                break;
-
-            case REGISTER_STATUS_REG:
-                break;
-        }
-    }
-
     private void powerOn() {
         write(HTS221_SLAVE_ADDRESS, REGISTER_CTRL_REG1, PD | ODR_1HZ);
     }
@@ -207,50 +168,72 @@ class HTS221 extends BaseI2C implements IHTS221 {
     private abstract class HTSS221State {
 
         /**
-         * 現在のステート.
-         * <p>
-         * 現在、取得しているレジスタの番号になります。
-         * </p>
-         */
-        int mState = -1;
-
-        /**
-         * タイムアウトを監視するタイマー.
+         * 計測中フラグ.
          */
-        private Timer mTimer;
+        private boolean mMeasuring;
 
         /**
-         * 湿度の計測中フラグ.
+         * 計測中フラグ.
          * @return 計測中の場合にはtrue、それ以外はfalse
          */
         boolean isMeasuring() {
-            return mState != -1;
+            return mMeasuring;
         }
 
         /**
-         * 湿度の計測を開始します.
+         * 計測を開始します.
          */
         void start() {
+            mMeasuring = true;
             setI2CConfig();
-
-            mTimer = new Timer();
-            mTimer.schedule(new TimerTask() {
+            post(new Runnable() {
                 @Override
                 public void run() {
-                    onError("timeout");
+                    measure();
                 }
-            }, 1000);
-
-            next(REGISTER_DEVICE_REG);
+            });
         }
 
         /**
-         * 次のレジスタの値を取得します.
-         * @param register 次に取得するレジスタ
+         * デバイスIDを確認してから、計測に必要なレジスタをまとめて読み込みます.
          */
-        void next(final int register) {
-            mState = register;
-            read(HTS221_SLAVE_ADDRESS, register, 1);
+        private void measure() {
+            try {
+                I2CTransaction deviceId = new I2CTransaction(HTS221_SLAVE_ADDRESS, REGISTER_DEVICE_REG, 1);
+                readI2C(TIMEOUT, deviceId);
+                if (deviceId.getValue(0) != DEVICE_ID) {
+                    synchronized (HTS221.this) {
+                        onError("HTS221 is not connect.");
+                    }
+                    return;
+                }
+
+                powerOn();
+                configDevice();
+
+                int[] registers = getRegisters();
+                I2CTransaction[] transactions = new I2CTransaction[registers.length];
+                for (int i = 0; i < registers.length; i++) {
+                    transactions[i] = new I2CTransaction(HTS221_SLAVE_ADDRESS, registers[i], 1);
+                }
+                readI2C(TIMEOUT, transactions);
+
+                int[] values = new int[registers.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = transactions[i].getValue(0);
+                }
+                synchronized (HTS221.this) {
+                    onReadData(values);
+                }
+            } catch (TimeoutException e) {
+                synchronized (HTS221.this) {
+                    onError("timeout");
+                }
+            } catch (InterruptedException | CancellationException e) {
+                synchronized (HTS221.this) {
+                    onError("HTS221 is disconnected.");
+                }
+            }
         }
 
         /**
@@ -265,19 +248,20 @@ class HTS221 extends BaseI2C implements IHTS221 {
          * 後始末処理を行います.
          */
         void onFinish() {
-            if (mTimer != null) {
-                mTimer.cancel();
-                mTimer = null;
-            }
-            mState = -1;
+            mMeasuring = false;
         }
 
         /**
-         * HTS221から送られてきたデータを解析して、次のステップに進みます.
-         * @param data 送られてきたデータ
-         * @param register レジスタ番号
+         * 計測に必要なレジスタを取得します.
+         * @return レジスタの配列
          */
-        abstract void onReadData(final byte[] data, final int register);
+        abstract int[] getRegisters();
+
+        /**
+         * HTS221から読み込んだレジスタの値を変換して配信します.
+         * @param values {@link #getRegisters()}の順番に並んだレジスタの値
+         */
+        abstract void onReadData(final int[] values);
     }
 
 
@@ -334,66 +318,30 @@ class HTS221 extends BaseI2C implements IHTS221 {
         }
 
         @Override
-        void onReadData(final byte[] data, final int register) {
-
-            if (mState != register) {
-                // レジスタが一致しない場合には、不正なデータなので無視
-                return;
-            }
+        int[] getRegisters() {
+            return new int[] {
+                    REGISTER_H0_RH_X2,
+                    REGISTER_H1_RH_X2,
+                    REGISTER_H0_T0_OUT_L,
+                    REGISTER_H0_T0_OUT_H,
+                    REGISTER_H1_T0_OUT_L,
+                    REGISTER_H1_T0_OUT_H,
+                    REGISTER_HUMIDITY_OUT_L,
+                    REGISTER_HUMIDITY_OUT_H
+            };
+        }
 
-            int offset = 5;
-            switch(register) {
-                case REGISTER_DEVICE_REG:
-                    int deviceId = decodeByte(data[offset++], data[offset]);
-                    if (deviceId == DEVICE_ID) {
-                        powerOn();
-                        configDevice();
-                        next(REGISTER_H0_RH_X2);
-                    } else {
-                        onError("HTS221 is not connect.");
-                    }
-                    break;
-
-                case REGISTER_H0_RH_X2:
-                    h0_rh_x2 = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_H1_RH_X2);
-                    break;
-
-                case REGISTER_H1_RH_X2:
-                    h1_rh_x2 = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_H0_T0_OUT_L);
-                    break;
-
-                case REGISTER_H0_T0_OUT_L:
-                    h0_t0_l = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_H0_T0_OUT_H);
-                    break;
-
-                case REGISTER_H0_T0_OUT_H:
-                    h0_t0_h = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_H1_T0_OUT_L);
-                    break;
-
-                case REGISTER_H1_T0_OUT_L:
-                    h1_t0_l = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_H1_T0_OUT_H);
-                    break;
-
-                case REGISTER_H1_T0_OUT_H:
-                    h1_t0_h = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_HUMIDITY_OUT_L);
-                    break;
-
-                case REGISTER_HUMIDITY_OUT_L:
-                    humidity_out_l = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_HUMIDITY_OUT_H);
-                    break;
-
-                case REGISTER_HUMIDITY_OUT_H:
-                    humidity_out_h = decodeByte(data[offset++], data[offset]);
-                    onReadHumidity();
-                    break;
-            }
+        @Override
+        void onReadData(final int[] values) {
+            h0_rh_x2 = values[0];
+            h1_rh_x2 = values[1];
+            h0_t0_l = values[2];
+            h0_t0_h = values[3];
+            h1_t0_l = values[4];
+            h1_t0_h = values[5];
+            humidity_out_l = values[6];
+            humidity_out_h = values[7];
+            onReadHumidity();
         }
     }
 
@@ -454,73 +402,32 @@ class HTS221 extends BaseI2C implements IHTS221 {
         }
 
         @Override
-        void onReadData(final byte[] data, final int register) {
-
-            if (mState != register) {
-                // レジスタが一致しない場合には、不正なデータなので無視
-                return;
-            }
+        int[] getRegisters() {
+            return new int[] {
+                    REGISTER_T1_T0_MSB,
+                    REGISTER_T0_DEGC_X8,
+                    REGISTER_T1_DEGC_X8,
+                    REGISTER_T0_OUT_L,
+                    REGISTER_T0_OUT_H,
+                    REGISTER_T1_OUT_L,
+                    REGISTER_T1_OUT_H,
+                    REGISTER_TEMP_OUT_L,
+                    REGISTER_TEMP_OUT_H
+            };
+        }
 
-            int offset = 5;
-            switch (register) {
-                case REGISTER_DEVICE_REG:
-                    int deviceId = decodeByte(data[offset++], data[offset]);
-                    if (deviceId == DEVICE_ID) {
-                        powerOn();
-                        configDevice();
-                        next(REGISTER_T1_T0_MSB);
-                    } else {
-                        onError("HTS221 is not connect.");
-                    }
-                    break;
-
-                case REGISTER_T1_T0_MSB:
-                    t1_t0_msb = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_T0_DEGC_X8);
-                    break;
-
-                case REGISTER_T0_DEGC_X8:
-                    int a = decodeByte(data[offset++], data[offset]);
-                    t0_degc_x8 = ((t1_t0_msb & 0x3) << 8) | a;
-                    next(REGISTER_T1_DEGC_X8);
-                    break;
-
-                case REGISTER_T1_DEGC_X8:
-                    int b = decodeByte(data[offset++], data[offset]);
-                    t1_degc_x8 = ((t1_t0_msb & 0xC) << 6) | b;
-                    next(REGISTER_T0_OUT_L);
-                    break;
-
-                case REGISTER_T0_OUT_L:
-                    t0_l = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_T0_OUT_H);
-                    break;
-
-                case REGISTER_T0_OUT_H:
-                    t0_h = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_T1_OUT_L);
-                    break;
-
-                case REGISTER_T1_OUT_L:
-                    t1_l = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_T1_OUT_H);
-                    break;
-
-                case REGISTER_T1_OUT_H:
-                    t1_h = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_TEMP_OUT_L);
-                    break;
-
-                case REGISTER_TEMP_OUT_L:
-                    temp_out_l = decodeByte(data[offset++], data[offset]);
-                    next(REGISTER_TEMP_OUT_H);
-                    break;
-
-                case REGISTER_TEMP_OUT_H:
-                    temp_out_h = decodeByte(data[offset++], data[offset]);
-                    onReadTemperature();
-                    break;
-            }
+        @Override
+        void onReadData(final int[] values) {
+            t1_t0_msb = values[0];
+            t0_degc_x8 = ((t1_t0_msb & 0x3) << 8) | values[1];
+            t1_degc_x8 = ((t1_t0_msb & 0xC) << 6) | values[2];
+            t0_l = values[3];
+            t0_h = values[4];
+            t1_l = values[5];
+            t1_h = values[6];
+            temp_out_l = values[7];
+            temp_out_h = values[8];
+            onReadTemperature();
         }
     }
 }
@@ -0,0 +1,184 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.arduino;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataUtil.decodeByte;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.END_SYSEX;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.I2C_READ;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.I2C_REQUEST;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.START_SYSEX;
+
+/**
+ * I2Cの読み込み要求と、その応答を対応付けるクラス.
+ * <p>
+ * {@link I2CTransactionTable}に登録すると、同じアドレスとレジスタのI2C_REPLYを受信した時に完了します。
+ * </p>
+ */
+class I2CTransaction {
+
+    /**
+     * 読み込み要求のコマンドのサイズ.
+     */
+    static final int REQUEST_SIZE = 9;
+
+    /**
+     * I2C_REPLYのデータの開始位置.
+     * <p>
+     * I2C_REPLY、アドレス(2byte)、レジスタ(2byte)の後にデータが続きます。
+     * </p>
+     */
+    static final int REPLY_DATA_OFFSET = 5;
+
+    /**
+     * I2Cのアドレス.
+     */
+    private final int mAddress;
+
+    /**
+     * 読み込むレジスタ.
+     */
+    private final int mRegister;
+
+    /**
+     * 読み込むデータサイズ.
+     */
+    private final int mSize;
+
+    /**
+     * 読み込んだデータ.
+     */
+    private int[] mValues;
+
+    /**
+     * キャンセルフラグ.
+     */
+    private boolean mCancelled;
+
+    /**
+     * コンストラクタ.
+     * @param address アドレス
+     * @param register レジスタ
+     * @param size 読み込むデータサイズ
+     */
+    I2CTransaction(final int address, final int register, final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size is invalid. size=" + size);
+        }
+        mAddress = address & 0x7F;
+        mRegister = register;
+        mSize = size;
+    }
+
+    int getAddress() {
+        return mAddress;
+    }
+
+    int getRegister() {
+        return mRegister;
+    }
+
+    int getSize() {
+        return mSize;
+    }
+
+    /**
+     * 完了しているか確認します.
+     * @return 完了している場合はtrue、それ以外はfalse
+     */
+    synchronized boolean isDone() {
+        return mValues != null || mCancelled;
+    }
+
+    /**
+     * 読み込んだデータを取得します.
+     * <p>
+     * 完了していない場合には、完了するまで待ちます。
+     * </p>
+     * @param timeout タイムアウト(ms)
+     * @return 読み込んだデータ
+     * @throws TimeoutException タイムアウトした場合
+     * @throws InterruptedException 割り込みが発生した場合
+     * @throws CancellationException キャンセルされた場合
+     */
+    synchronized int[] get(final long timeout) throws TimeoutException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (mValues == null && !mCancelled) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new TimeoutException("I2C read is timeout. address=" + mAddress
+                        + " register=" + mRegister);
+            }
+            wait(remaining);
+        }
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+        return mValues;
+    }
+
+    /**
+     * 読み込んだデータの指定された位置の値を取得します.
+     * <p>
+     * 完了している場合にのみ使用できます。
+     * </p>
+     * @param index データの位置
+     * @return 値
+     */
+    synchronized int getValue(final int index) {
+        if (mValues == null) {
+            throw new IllegalStateException("I2C read is not completed.");
+        }
+        return mValues[index];
+    }
+
+    /**
+     * I2C_REPLYのデータで完了します.
+     * @param data START_SYSEXとEND_SYSEXを除いたI2C_REPLYのデータ
+     * @param length データのサイズ
+     */
+    synchronized void complete(final byte[] data, final int length) {
+        if (isDone()) {
+            return;
+        }
+        int count = Math.min(mSize, (length - REPLY_DATA_OFFSET) / 2);
+        int[] values = new int[Math.max(count, 0)];
+        int offset = REPLY_DATA_OFFSET;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = decodeByte(data[offset++], data[offset++]);
+        }
+        mValues = values;
+        notifyAll();
+    }
+
+    /**
+     * キャンセルします.
+     */
+    synchronized void cancel() {
+        if (isDone()) {
+            return;
+        }
+        mCancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * 読み込み要求のコマンドを書き込みます.
+     * @param buffer 書き込むバッファ
+     * @param offset 書き込む位置
+     * @return 次の書き込み位置
+     */
+    int writeRequest(final byte[] buffer, final int offset) {
+        int i = offset;
+        buffer[i++] = START_SYSEX;
+        buffer[i++] = I2C_REQUEST;
+        buffer[i++] = (byte) mAddress;
+        buffer[i++] = I2C_READ;
+        buffer[i++] = (byte) (mRegister & 0x7f);
+        buffer[i++] = (byte) ((mRegister >> 7) & 0x7f);
+        buffer[i++] = (byte) (mSize & 0x7f);
+        buffer[i++] = (byte) ((mSize >> 7) & 0x7f);
+        buffer[i++] = END_SYSEX;
+        return i;
+    }
+}
@@ -0,0 +1,185 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.arduino;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataUtil.decodeByte;
+import static org.deviceconnect.android.deviceplugin.fabo.device.arduino.FirmataV32.I2C_REPLY;
+
+/**
+ * I2C_REPLYの配信先を管理するテーブル.
+ * <p>
+ * 読み込み要求中の{@link I2CTransaction}がある場合には、アドレスとレジスタが一致する要求を
+ * 古いものから順番に完了します。
+ * 要求がない場合には、アドレスに登録されたリスナーに通知します。
+ * </p>
+ */
+class I2CTransactionTable {
+
+    /**
+     * 1回の書き込みに含める読み込み要求の最大数.
+     * <p>
+     * Arduinoのシリアル受信バッファ(64byte)を超えないようにします。
+     * </p>
+     */
+    static final int MAX_BATCH_SIZE = 6;
+
+    /**
+     * I2C_REPLYを受け取るリスナー.
+     */
+    interface OnReplyListener {
+        /**
+         * I2C_REPLYを受信したことを通知します.
+         * @param data START_SYSEXとEND_SYSEXを除いたI2C_REPLYのデータ
+         */
+        void onReply(byte[] data);
+    }
+
+    /**
+     * アドレスごとのリスナー.
+     */
+    private final OnReplyListener[] mListeners = new OnReplyListener[128];
+
+    /**
+     * アドレスとレジスタごとの読み込み要求.
+     */
+    private final Map<Integer, LinkedList<I2CTransaction>> mTransactions = new HashMap<>();
+
+    /**
+     * 読み込み要求の数.
+     */
+    private int mTransactionCount;
+
+    /**
+     * アドレスにリスナーを設定します.
+     * @param address アドレス
+     * @param listener リスナー. nullの場合は削除します
+     */
+    synchronized void setOnReplyListener(final int address, final OnReplyListener listener) {
+        mListeners[address & 0x7F] = listener;
+    }
+
+    /**
+     * 読み込み要求を追加します.
+     * @param transaction 読み込み要求
+     */
+    synchronized void add(final I2CTransaction transaction) {
+        Integer key = key(transaction.getAddress(), transaction.getRegister());
+        LinkedList<I2CTransaction> list = mTransactions.get(key);
+        if (list == null) {
+            list = new LinkedList<>();
+            mTransactions.put(key, list);
+        }
+        list.add(transaction);
+        mTransactionCount++;
+    }
+
+    /**
+     * 読み込み要求を削除して、キャンセルします.
+     * @param transaction 読み込み要求
+     */
+    void remove(final I2CTransaction transaction) {
+        synchronized (this) {
+            Integer key = key(transaction.getAddress(), transaction.getRegister());
+            LinkedList<I2CTransaction> list = mTransactions.get(key);
+            if (list != null && list.remove(transaction)) {
+                mTransactionCount--;
+                if (list.isEmpty()) {
+                    mTransactions.remove(key);
+                }
+            }
+        }
+        transaction.cancel();
+    }
+
+    /**
+     * 全ての読み込み要求をキャンセルします.
+     */
+    void clear() {
+        List<I2CTransaction> transactions = new ArrayList<>();
+        synchronized (this) {
+            for (LinkedList<I2CTransaction> list : mTransactions.values()) {
+                transactions.addAll(list);
+            }
+            mTransactions.clear();
+            mTransactionCount = 0;
+        }
+        for (I2CTransaction transaction : transactions) {
+            transaction.cancel();
+        }
+    }
+
+    /**
+     * 読み込み要求の数を取得します.
+     * @return 読み込み要求の数
+     */
+    synchronized int getTransactionCount() {
+        return mTransactionCount;
+    }
+
+    /**
+     * I2C_REPLYを配信します.
+     * @param data START_SYSEXとEND_SYSEXを除いたI2C_REPLYのデータ
+     * @param length データのサイズ
+     */
+    void dispatch(final byte[] data, final int length) {
+        if (length < I2CTransaction.REPLY_DATA_OFFSET || data[0] != I2C_REPLY) {
+            return;
+        }
+        int address = decodeByte(data[1], data[2]) & 0x7F;
+        int register = decodeByte(data[3], data[4]);
+
+        I2CTransaction transaction = null;
+        OnReplyListener listener;
+        synchronized (this) {
+            // 連続読み込みの応答では要求がないので、Mapを検索しない
+            if (mTransactionCount > 0) {
+                Integer key = key(address, register);
+                LinkedList<I2CTransaction> list = mTransactions.get(key);
+                if (list != null) {
+                    transaction = list.removeFirst();
+                    mTransactionCount--;
+                    if (list.isEmpty()) {
+                        mTransactions.remove(key);
+                    }
+                }
+            }
+            listener = mListeners[address];
+        }
+
+        if (transaction != null) {
+            transaction.complete(data, length);
+        } else if (listener != null) {
+            listener.onReply(data);
+        }
+    }
+
+    /**
+     * 読み込み要求のコマンドを作成します.
+     * <p>
+     * 読み込み要求は{@link #MAX_BATCH_SIZE}個ずつ、1つのバッファにまとめます。
+     * </p>
+     * @param transactions 読み込み要求
+     * @return 書き込むバッファのリスト
+     */
+    static List<byte[]> encodeRequests(final I2CTransaction... transactions) {
+        List<byte[]> buffers = new ArrayList<>();
+        for (int i = 0; i < transactions.length; i += MAX_BATCH_SIZE) {
+            int count = Math.min(MAX_BATCH_SIZE, transactions.length - i);
+            byte[] buffer = new byte[count * I2CTransaction.REQUEST_SIZE];
+            int offset = 0;
+            for (int j = 0; j < count; j++) {
+                offset = transactions[i + j].writeRequest(buffer, offset);
+            }
+            buffers.add(buffer);
+        }
+        return buffers;
+    }
+
+    private static Integer key(final int address, final int register) {
+        return (address << 16) | (register & 0xFFFF);
+    }
+}
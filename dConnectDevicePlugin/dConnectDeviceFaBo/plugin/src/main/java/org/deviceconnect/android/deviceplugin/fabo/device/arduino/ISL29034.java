@@ -250,12 +250,12 @@ class ISL29034 extends BaseI2C implements IISL29034 {
             case REG_ID:
                 int deviceId = decodeByte(data[offset++], data[offset]);
                 if ((deviceId & ID_MASK) == DEVICE_ID) {
-                    new Thread(new Runnable() {
+                    post(new Runnable() {
                         @Override
                         public void run() {
                             setISL29034();
                         }
-                    }).start();
+                    });
                 } else {
                     onError("ISL29034 is not connect.");
                 }
@@ -263,18 +263,18 @@ class ISL29034 extends BaseI2C implements IISL29034 {
 
             case REG_CMD2:
                 final int cmd = decodeByte(data[offset++], data[offset]);
-                new Thread(new Runnable() {
+                post(new Runnable() {
                     @Override
                     public void run() {
                         writeCMD2((byte) cmd);
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                        readADC();
+                        postDelayed(new Runnable() {
+                            @Override
+                            public void run() {
+                                readADC();
+                            }
+                        }, 100);
                     }
-                }).start();
+                });
                 break;
 
             case REG_DATA_L:
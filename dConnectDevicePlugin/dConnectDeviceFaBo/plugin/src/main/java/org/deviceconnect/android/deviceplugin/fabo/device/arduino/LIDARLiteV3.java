@@ -67,17 +67,12 @@ class LIDARLiteV3 extends BaseI2C implements ILIDARLiteV3 {
                 if (!mOnLIDARLiteListeners.isEmpty()) {
                     // LIDARLiteは連続で読み込みができないので、
                     // ここで、再度readを呼び出します。
-                    new Thread(new Runnable() {
+                    postDelayed(new Runnable() {
                         @Override
                         public void run() {
-                            try {
-                                Thread.sleep(33);
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
                             startRead();
                         }
-                    }).start();
+                    }, 33);
                 }
                 break;
         }
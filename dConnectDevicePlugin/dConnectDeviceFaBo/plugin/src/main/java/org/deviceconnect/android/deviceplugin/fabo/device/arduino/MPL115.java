@@ -80,12 +80,12 @@ class MPL115 extends BaseI2C implements IMPL115 {
                 }
                 onReadCoef(value);
 
-                new Thread(new Runnable() {
+                post(new Runnable() {
                     @Override
                     public void run() {
                         readData();
                     }
-                }).start();
+                });
             }   break;
 
             case PADC_MSB: {
@@ -355,22 +355,21 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
                 case DEVICE_REG:
                     int deviceId = decodeByte(data[offset++], data[offset]);
                     if (deviceId == DEVICE_ID) {
-                        new Thread(new Runnable() {
+                        post(new Runnable() {
                             @Override
                             public void run() {
                                 setVCNL4010();
 
-                                // 設定が反映されるまで、少し時間がかかるのスリープを入れておく
-                                try {
-                                    Thread.sleep(33);
-                                } catch (InterruptedException e) {
-                                    e.printStackTrace();
-                                }
-
-                                mState = REG_PROX_DATA_H;
-                                startRead(SLAVE_ADDRESS, REG_PROX_DATA_H, 2);
+                                // 設定が反映されるまで、少し時間がかかるので待ってから読み込みを開始する
+                                postDelayed(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        mState = REG_PROX_DATA_H;
+                                        startRead(SLAVE_ADDRESS, REG_PROX_DATA_H, 2);
+                                    }
+                                }, 33);
                             }
-                        }).start();
+                        });
                     } else {
                         onError("VCNL4010 is not connect.");
                     }
@@ -422,22 +421,21 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
                 case DEVICE_REG:
                     int deviceId = decodeByte(data[offset++], data[offset]);
                     if (deviceId == DEVICE_ID) {
-                        new Thread(new Runnable() {
+                        post(new Runnable() {
                             @Override
                             public void run() {
                                 setVCNL4010();
 
-                                // 設定が反映されるまで、少し時間がかかるのスリープを入れておく
-                                try {
-                                    Thread.sleep(33);
-                                } catch (InterruptedException e) {
-                                    e.printStackTrace();
-                                }
-
-                                mState = REG_AMBI_DATA_H;
-                                startRead(SLAVE_ADDRESS, REG_AMBI_DATA_H, 2);
+                                // 設定が反映されるまで、少し時間がかかるので待ってから読み込みを開始する
+                                postDelayed(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        mState = REG_AMBI_DATA_H;
+                                        startRead(SLAVE_ADDRESS, REG_AMBI_DATA_H, 2);
+                                    }
+                                }, 33);
                             }
-                        }).start();
+                        });
                     } else {
                         onError("VCNL4010 is not connect.");
                     }
@@ -0,0 +1,72 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.arduino;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * テスト用リソースに保存したFirmataのバイト列を読み込むクラス.
+ * <p>
+ * 1行が1回のUSB受信に対応する16進数のテキストです。'#'から始まる行はコメントです。
+ * </p>
+ */
+final class FirmataCapture {
+
+    private FirmataCapture() {
+    }
+
+    /**
+     * USB受信ごとのバッファを読み込みます.
+     * @param name リソース名
+     * @return 受信したバッファのリスト
+     * @throws IOException 読み込みに失敗した場合
+     */
+    static List<byte[]> load(final String name) throws IOException {
+        InputStream in = FirmataCapture.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Not found: " + name);
+        }
+        List<byte[]> chunks = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] hex = line.split("\\s+");
+                byte[] chunk = new byte[hex.length];
+                for (int i = 0; i < hex.length; i++) {
+                    chunk[i] = (byte) Integer.parseInt(hex[i], 16);
+                }
+                chunks.add(chunk);
+            }
+        } finally {
+            reader.close();
+        }
+        return chunks;
+    }
+
+    /**
+     * USB受信ごとのバッファを1つにまとめます.
+     * @param chunks 受信したバッファのリスト
+     * @return まとめたバッファ
+     */
+    static byte[] concat(final List<byte[]> chunks) {
+        int length = 0;
+        for (byte[] chunk : chunks) {
+            length += chunk.length;
+        }
+        byte[] stream = new byte[length];
+        int offset = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, stream, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return stream;
+    }
+}
@@ -0,0 +1,200 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.arduino;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FirmataDecoderのテスト.
+ */
+public class FirmataDecoderTest {
+
+    private static final String STARTUP = "firmata_startup_adxl345.hex";
+
+    /**
+     * 解析したメッセージを文字列で記録するハンドラ.
+     */
+    private static class RecordingHandler implements FirmataDecoder.Handler {
+        final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onDigitalMessage(final int port, final int value) {
+            mEvents.add("D" + port + "=" + value);
+        }
+
+        @Override
+        public void onAnalogMessage(final int pin, final int value) {
+            mEvents.add("A" + pin + "=" + value);
+        }
+
+        @Override
+        public void onReportVersion(final int major, final int minor) {
+            mEvents.add("V" + major + "." + minor);
+        }
+
+        @Override
+        public void onSysExMessage(final byte[] data, final int length) {
+            if (data[0] == FirmataV32.STRING_DATA) {
+                mEvents.add("S" + FirmataUtil.decodeString(data, 1, length - 1));
+            } else if (data[0] == FirmataV32.I2C_REPLY) {
+                StringBuilder sb = new StringBuilder("I");
+                sb.append(Integer.toHexString(FirmataUtil.decodeByte(data, 1)));
+                sb.append(":").append(Integer.toHexString(FirmataUtil.decodeByte(data, 3)));
+                for (int i = I2CTransaction.REPLY_DATA_OFFSET; i + 1 < length; i += 2) {
+                    sb.append(" ").append(Integer.toHexString(FirmataUtil.decodeByte(data, i)));
+                }
+                mEvents.add(sb.toString());
+            } else {
+                mEvents.add("X" + Integer.toHexString(data[0]) + "/" + length);
+            }
+        }
+    }
+
+    @Test
+    public void replayStartup() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        FirmataDecoder decoder = new FirmataDecoder(handler);
+        for (byte[] chunk : FirmataCapture.load(STARTUP)) {
+            decoder.decode(chunk, 0, chunk.length);
+        }
+
+        List<String> expected = new ArrayList<>(Arrays.asList(
+                "V2.5",
+                "X79/41",
+                "A0=3", "A1=103", "A2=203", "A3=303", "A4=403", "A5=503",
+                "D0=0", "D1=5", "D2=128",
+                "I53:0 e5"));
+        for (int k = 0; k < 5; k++) {
+            int x = 10 * k;
+            int y = (0x10000 - 20 * k) & 0xFFFF;
+            expected.add("I53:32 " + Integer.toHexString(x & 0xFF) + " " + Integer.toHexString(x >> 8)
+                    + " " + Integer.toHexString(y & 0xFF) + " " + Integer.toHexString(y >> 8) + " 0 1");
+            expected.add("A0=" + (500 + k));
+        }
+        expected.add("SI2C: Too few bytes received");
+        assertEquals(expected, handler.mEvents);
+    }
+
+    @Test
+    public void chunkBoundariesDoNotChangeResult() throws Exception {
+        byte[] stream = FirmataCapture.concat(FirmataCapture.load(STARTUP));
+
+        RecordingHandler whole = new RecordingHandler();
+        new FirmataDecoder(whole).decode(stream, 0, stream.length);
+
+        RecordingHandler single = new RecordingHandler();
+        FirmataDecoder decoder = new FirmataDecoder(single);
+        for (int i = 0; i < stream.length; i++) {
+            decoder.decode(stream, i, 1);
+        }
+
+        assertEquals(whole.mEvents, single.mEvents);
+        assertEquals(23, whole.mEvents.size());
+    }
+
+    @Test
+    public void oversizedSysExIsDropped() {
+        RecordingHandler handler = new RecordingHandler();
+        FirmataDecoder decoder = new FirmataDecoder(handler);
+
+        byte[] large = new byte[FirmataDecoder.MAX_SYSEX_SIZE + 3];
+        large[0] = FirmataV32.START_SYSEX;
+        large[1] = FirmataV32.STRING_DATA;
+        large[large.length - 1] = FirmataV32.END_SYSEX;
+        decoder.decode(large, 0, large.length);
+
+        byte[] next = {(byte) 0xE1, 0x05, 0x00};
+        decoder.decode(next, 0, next.length);
+
+        assertEquals(Arrays.asList("A1=5"), handler.mEvents);
+    }
+
+    @Test
+    public void resetDiscardsPartialMessage() {
+        RecordingHandler handler = new RecordingHandler();
+        FirmataDecoder decoder = new FirmataDecoder(handler);
+
+        byte[] partial = {FirmataV32.START_SYSEX, FirmataV32.I2C_REPLY, 0x53};
+        decoder.decode(partial, 0, partial.length);
+        decoder.reset();
+
+        byte[] next = {(byte) 0x91, 0x01, 0x00};
+        decoder.decode(next, 0, next.length);
+
+        assertEquals(Arrays.asList("D1=1"), handler.mEvents);
+    }
+
+    /**
+     * 解析のスループットを計測します.
+     * <p>
+     * 1byteずつ解析した場合と、USB受信単位で解析した場合を比較します。
+     * </p>
+     */
+    @Test
+    public void benchmarkThroughput() throws Exception {
+        List<byte[]> chunks = FirmataCapture.load(STARTUP);
+        byte[] stream = FirmataCapture.concat(chunks);
+        final int[] count = new int[1];
+        FirmataDecoder.Handler counter = new FirmataDecoder.Handler() {
+            @Override
+            public void onDigitalMessage(final int port, final int value) {
+                count[0]++;
+            }
+
+            @Override
+            public void onAnalogMessage(final int pin, final int value) {
+                count[0]++;
+            }
+
+            @Override
+            public void onReportVersion(final int major, final int minor) {
+                count[0]++;
+            }
+
+            @Override
+            public void onSysExMessage(final byte[] data, final int length) {
+                count[0]++;
+            }
+        };
+
+        int repeat = 20000;
+        FirmataDecoder decoder = new FirmataDecoder(counter);
+
+        // ウォームアップ
+        for (int i = 0; i < repeat / 10; i++) {
+            for (byte[] chunk : chunks) {
+                decoder.decode(chunk, 0, chunk.length);
+            }
+        }
+
+        count[0] = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            for (byte[] chunk : chunks) {
+                decoder.decode(chunk, 0, chunk.length);
+            }
+        }
+        long blockNanos = System.nanoTime() - start;
+        assertEquals(23 * repeat, count[0]);
+
+        start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            for (int j = 0; j < stream.length; j++) {
+                decoder.decode(stream, j, 1);
+            }
+        }
+        long byteNanos = System.nanoTime() - start;
+
+        double megaBytes = (double) stream.length * repeat / (1024 * 1024);
+        System.out.println(String.format("FirmataDecoder: block %.1f MB/s, per byte %.1f MB/s",
+                megaBytes / (blockNanos / 1e9), megaBytes / (byteNanos / 1e9)));
+
+        // 57600bpsのシリアル通信(約5.6KB/s)に対して十分に速いこと
+        assertTrue(megaBytes / (blockNanos / 1e9) > 1.0);
+    }
+}
@@ -0,0 +1,225 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.arduino;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * I2CTransactionTableのテスト.
+ */
+public class I2CTransactionTableTest {
+
+    private static final int HTS221 = 0x5F;
+    private static final int ADXL345 = 0x53;
+
+    private I2CTransactionTable mTable;
+    private FirmataDecoder mDecoder;
+    private List<String> mAdxlReplies;
+
+    @Before
+    public void setUp() {
+        mTable = new I2CTransactionTable();
+        mAdxlReplies = new ArrayList<>();
+        mTable.setOnReplyListener(ADXL345, new I2CTransactionTable.OnReplyListener() {
+            @Override
+            public void onReply(final byte[] data) {
+                mAdxlReplies.add(Integer.toHexString(FirmataUtil.decodeByte(data, 3)));
+            }
+        });
+        mDecoder = new FirmataDecoder(new FirmataDecoder.Handler() {
+            @Override
+            public void onDigitalMessage(final int port, final int value) {
+            }
+
+            @Override
+            public void onAnalogMessage(final int pin, final int value) {
+            }
+
+            @Override
+            public void onReportVersion(final int major, final int minor) {
+            }
+
+            @Override
+            public void onSysExMessage(final byte[] data, final int length) {
+                if (data[0] == FirmataV32.I2C_REPLY) {
+                    mTable.dispatch(data, length);
+                }
+            }
+        });
+    }
+
+    private void replay(final String name) throws Exception {
+        for (byte[] chunk : FirmataCapture.load(name)) {
+            mDecoder.decode(chunk, 0, chunk.length);
+        }
+    }
+
+    @Test
+    public void replayBatchedReads() throws Exception {
+        int[] registers = {0x30, 0x31, 0x36, 0x37, 0x3A, 0x3B, 0x28, 0x29};
+        int[] expected = {0x42, 0x8A, 0xF3, 0xFF, 0x1B, 0xD0, 0x05, 0xEC};
+
+        I2CTransaction deviceId = new I2CTransaction(HTS221, 0x0F, 1);
+        I2CTransaction[] transactions = new I2CTransaction[registers.length];
+        mTable.add(deviceId);
+        for (int i = 0; i < registers.length; i++) {
+            transactions[i] = new I2CTransaction(HTS221, registers[i], 1);
+            mTable.add(transactions[i]);
+        }
+        assertEquals(9, mTable.getTransactionCount());
+
+        replay("firmata_hts221_batch.hex");
+
+        assertEquals(0xBC, deviceId.get(0)[0]);
+        for (int i = 0; i < registers.length; i++) {
+            assertTrue(transactions[i].isDone());
+            assertEquals(expected[i], transactions[i].getValue(0));
+        }
+        assertEquals(0, mTable.getTransactionCount());
+
+        // 要求のないADXL345の応答はアドレスのリスナーに配信される
+        assertEquals(1, mAdxlReplies.size());
+        assertEquals("32", mAdxlReplies.get(0));
+    }
+
+    @Test
+    public void continuousReadsGoToListener() throws Exception {
+        replay("firmata_startup_adxl345.hex");
+
+        assertEquals(6, mAdxlReplies.size());
+        assertEquals("0", mAdxlReplies.get(0));
+        for (int i = 1; i < mAdxlReplies.size(); i++) {
+            assertEquals("32", mAdxlReplies.get(i));
+        }
+    }
+
+    @Test
+    public void transactionTakesPriorityOverListener() throws Exception {
+        I2CTransaction deviceId = new I2CTransaction(ADXL345, 0x00, 1);
+        mTable.add(deviceId);
+
+        replay("firmata_startup_adxl345.hex");
+
+        assertEquals(0xE5, deviceId.get(0)[0]);
+        assertEquals(5, mAdxlReplies.size());
+    }
+
+    @Test
+    public void sameRegisterIsCompletedInOrder() {
+        I2CTransaction first = new I2CTransaction(HTS221, 0x0F, 1);
+        I2CTransaction second = new I2CTransaction(HTS221, 0x0F, 1);
+        mTable.add(first);
+        mTable.add(second);
+
+        dispatch(reply(HTS221, 0x0F, 0x01));
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+
+        dispatch(reply(HTS221, 0x0F, 0x02));
+        assertEquals(1, first.getValue(0));
+        assertEquals(2, second.getValue(0));
+    }
+
+    @Test
+    public void multiByteReplyIsDecoded() {
+        I2CTransaction transaction = new I2CTransaction(ADXL345, 0x32, 6);
+        mTable.add(transaction);
+
+        dispatch(reply(ADXL345, 0x32, 0x10, 0x00, 0xF0, 0xFF, 0x00, 0x01));
+
+        for (int i = 0; i < 6; i++) {
+            assertEquals(new int[] {0x10, 0x00, 0xF0, 0xFF, 0x00, 0x01}[i], transaction.getValue(i));
+        }
+        assertTrue(mAdxlReplies.isEmpty());
+    }
+
+    @Test
+    public void timeoutAndCancel() throws Exception {
+        I2CTransaction transaction = new I2CTransaction(HTS221, 0x28, 1);
+        mTable.add(transaction);
+
+        try {
+            transaction.get(20);
+            fail("TimeoutException must be thrown.");
+        } catch (TimeoutException e) {
+            // OK
+        }
+
+        mTable.remove(transaction);
+        assertEquals(0, mTable.getTransactionCount());
+        try {
+            transaction.get(20);
+            fail("CancellationException must be thrown.");
+        } catch (CancellationException e) {
+            // OK
+        }
+
+        // キャンセル後の応答は破棄される
+        dispatch(reply(HTS221, 0x28, 0x05));
+        assertTrue(transaction.isDone());
+    }
+
+    @Test
+    public void clearCancelsAll() throws Exception {
+        I2CTransaction a = new I2CTransaction(HTS221, 0x28, 1);
+        I2CTransaction b = new I2CTransaction(ADXL345, 0x00, 1);
+        mTable.add(a);
+        mTable.add(b);
+
+        mTable.clear();
+
+        assertEquals(0, mTable.getTransactionCount());
+        assertTrue(a.isDone());
+        assertTrue(b.isDone());
+    }
+
+    @Test
+    public void requestsAreBatched() {
+        I2CTransaction[] transactions = new I2CTransaction[8];
+        for (int i = 0; i < transactions.length; i++) {
+            transactions[i] = new I2CTransaction(HTS221, 0x28 + i, 1);
+        }
+
+        List<byte[]> buffers = I2CTransactionTable.encodeRequests(transactions);
+
+        assertEquals(2, buffers.size());
+        assertEquals(I2CTransactionTable.MAX_BATCH_SIZE * I2CTransaction.REQUEST_SIZE, buffers.get(0).length);
+        assertEquals(2 * I2CTransaction.REQUEST_SIZE, buffers.get(1).length);
+
+        byte[] expected = {
+                FirmataV32.START_SYSEX, FirmataV32.I2C_REQUEST, 0x5F, FirmataV32.I2C_READ,
+                0x29, 0x00, 0x01, 0x00, FirmataV32.END_SYSEX
+        };
+        byte[] actual = new byte[I2CTransaction.REQUEST_SIZE];
+        System.arraycopy(buffers.get(0), I2CTransaction.REQUEST_SIZE, actual, 0, actual.length);
+        assertArrayEquals(expected, actual);
+    }
+
+    private void dispatch(final byte[] sysex) {
+        mTable.dispatch(sysex, sysex.length);
+    }
+
+    private static byte[] reply(final int address, final int register, final int... values) {
+        byte[] data = new byte[I2CTransaction.REPLY_DATA_OFFSET + values.length * 2];
+        data[0] = FirmataV32.I2C_REPLY;
+        data[1] = (byte) (address & 0x7F);
+        data[2] = (byte) ((address >> 7) & 0x7F);
+        data[3] = (byte) (register & 0x7F);
+        data[4] = (byte) ((register >> 7) & 0x7F);
+        for (int i = 0; i < values.length; i++) {
+            data[I2CTransaction.REPLY_DATA_OFFSET + i * 2] = (byte) (values[i] & 0x7F);
+            data[I2CTransaction.REPLY_DATA_OFFSET + i * 2 + 1] = (byte) ((values[i] >> 7) & 0x7F);
+        }
+        return data;
+    }
+}
@@ -1,7 +1,5 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.things;
 
-import com.google.android.things.pio.I2cDevice;
-
 import org.deviceconnect.android.deviceplugin.fabo.device.IADT7410;
 
 import java.io.IOException;
@@ -41,9 +39,19 @@ class ADT7410 extends BaseI2C implements IADT7410 {
     private static final int BIT16_RESOLUTION = 0x80;
 
     /**
-     * I2Cデバイス.
+     * 温度を取得する周期(ms).
+     */
+    private static final long INTERVAL = 33;
+
+    /**
+     * I2Cバス.
+     */
+    private final I2CBusScheduler mBus;
+
+    /**
+     * I2Cデバイスを開けた場合はtrue.
      */
-    private I2cDevice mI2cDevice;
+    private final boolean mOpened;
 
     /**
      * 温度の値を保持するバッファ.
@@ -51,16 +59,17 @@ class ADT7410 extends BaseI2C implements IADT7410 {
     private byte[] mBuffer = new byte[2];
 
     /**
-     * 温度監視用スレッド.
+     * 温度監視用のPoll.
      */
-    private WatchThread mWatchThread;
+    private WatchPoll mWatchPoll;
 
     /**
      * コンストラクタ.
      * @param control コントローラ
      */
     ADT7410(final FaBoThingsDeviceControl control) {
-        mI2cDevice = control.getI2cDevice(ADT7410_DEVICE_ADDR);
+        mBus = control.getI2CBusScheduler();
+        mOpened = control.getI2cDevice(ADT7410_DEVICE_ADDR) != null;
     }
 
     @Override
@@ -69,7 +78,7 @@ class ADT7410 extends BaseI2C implements IADT7410 {
             listener.onError("ADT7410 is not connect.");
         } else {
             try {
-                setADT7410();
+                setADT7410(mBus);
 
                 try {
                     Thread.sleep(10);
@@ -77,8 +86,10 @@ class ADT7410 extends BaseI2C implements IADT7410 {
                     e.printStackTrace();
                 }
 
-                readADT7410(mBuffer, mBuffer.length);
-                listener.onData(convertTemperature(decodeUShort2(mBuffer, 0)));
+                synchronized (mBuffer) {
+                    mBus.readRegBuffer(ADT7410_DEVICE_ADDR, REGISTER_CONFIG, mBuffer, mBuffer.length);
+                    listener.onData(convertTemperature(decodeUShort2(mBuffer, 0)));
+                }
             } catch (IOException e) {
                 listener.onError(e.getMessage());
             }
@@ -90,32 +101,33 @@ class ADT7410 extends BaseI2C implements IADT7410 {
         if (!checkDevice()) {
             listener.onError("ADT7410 is not connect.");
         } else {
-            if (mWatchThread == null) {
-                mWatchThread = new WatchThread();
-                mWatchThread.addListener(listener);
-                mWatchThread.start();
+            if (mWatchPoll == null) {
+                mWatchPoll = new WatchPoll();
+                mWatchPoll.addListener(listener);
+                mBus.addPoll(mWatchPoll);
             } else {
-                mWatchThread.addListener(listener);
+                mWatchPoll.addListener(listener);
             }
         }
     }
 
     @Override
     public synchronized void stopRead(final OnADT7410Listener listener) {
-        if (mWatchThread != null) {
-            mWatchThread.removeListener(listener);
-            if (mWatchThread.isEmptyListener()) {
-                mWatchThread.stopWatch();
-                mWatchThread = null;
+        if (mWatchPoll != null) {
+            mWatchPoll.removeListener(listener);
+            if (mWatchPoll.isEmptyListener()) {
+                mBus.removePoll(mWatchPoll);
+                mWatchPoll = null;
             }
         }
     }
 
     @Override
     synchronized void destroy() {
-        if (mWatchThread != null) {
-            mWatchThread.stopWatch();
-            mWatchThread = null;
+        if (mWatchPoll != null) {
+            mBus.removePoll(mWatchPoll);
+            mWatchPoll.clearListener();
+            mWatchPoll = null;
         }
     }
 
@@ -124,11 +136,11 @@ class ADT7410 extends BaseI2C implements IADT7410 {
      * @return ADT7410ならtrue、それ以外ならfalse
      */
     private boolean checkDevice() {
-        if (mI2cDevice == null) {
+        if (!mOpened) {
             return false;
         } else {
             try {
-                byte deviceId = mI2cDevice.readRegByte(DEVICE_REG);
+                byte deviceId = mBus.readRegByte(ADT7410_DEVICE_ADDR, DEVICE_REG);
                 return (deviceId & DEVICE_ID) != 0;
             } catch (IOException e) {
                 return false;
@@ -138,19 +150,10 @@ class ADT7410 extends BaseI2C implements IADT7410 {
 
     /**
      * ADT7410の初期化を行います.
+     * @param bus I2Cバス
      */
-    private void setADT7410() throws IOException {
-        mI2cDevice.writeRegByte(REGISTER_CONFIG, (byte) BIT16_RESOLUTION);
-    }
-
-    /**
-     * ADT7410から温度を読み込みます.
-     * @param buffer バッファ
-     * @param length サイズ
-     * @throws IOException 読み込みに失敗した場合に発生
-     */
-    private void readADT7410(final byte[] buffer, final int length) throws IOException {
-        mI2cDevice.readRegBuffer(REGISTER_CONFIG, buffer, length);
+    private void setADT7410(final I2CBus bus) throws IOException {
+        bus.writeRegByte(ADT7410_DEVICE_ADDR, REGISTER_CONFIG, (byte) BIT16_RESOLUTION);
     }
 
     /**
@@ -165,17 +168,19 @@ class ADT7410 extends BaseI2C implements IADT7410 {
         return value / 128.0;
     }
 
-    private class WatchThread extends Thread {
-        /**
-         * 停止フラグ.
-         */
-        private boolean mStopFlag;
-
+    /**
+     * 温度を監視するPoll.
+     */
+    private class WatchPoll extends I2CBusScheduler.Poll {
         /**
          * リスナー.
          */
         private List<OnADT7410Listener> mListeners = new CopyOnWriteArrayList<>();
 
+        WatchPoll() {
+            super(ADT7410_DEVICE_ADDR, REGISTER_CONFIG, 2, INTERVAL);
+        }
+
         /**
          * リスナーを追加します.
          * @param listener 追加するリスナー
@@ -193,6 +198,13 @@ class ADT7410 extends BaseI2C implements IADT7410 {
             mListeners.remove(listener);
         }
 
+        /**
+         * リスナーを全て削除します.
+         */
+        void clearListener() {
+            mListeners.clear();
+        }
+
         /**
          * 登録されているリスナーが空か確認します.
          * @return 空の場合はtrue、それ以外はfalse
@@ -201,38 +213,29 @@ class ADT7410 extends BaseI2C implements IADT7410 {
             return mListeners.isEmpty();
         }
 
-        /**
-         * 監視を停止します.
-         */
-        void stopWatch() {
-            mListeners.clear();
-            mStopFlag = true;
-            interrupt();
+        @Override
+        void onStart(final I2CBus bus) throws IOException {
+            setADT7410(bus);
         }
 
         @Override
-        public void run() {
-            final byte[] buffer = new byte[2];
-            try {
-                setADT7410();
-
-                while (!mStopFlag) {
-                    readADT7410(buffer, buffer.length);
+        void onData(final byte[] data) {
+            double t = convertTemperature(decodeUShort2(data, 0));
+            for (OnADT7410Listener l : mListeners) {
+                l.onData(t);
+            }
+        }
 
-                    double t = convertTemperature(decodeUShort2(buffer, 0));
-                    for (OnADT7410Listener l : mListeners) {
-                        l.onData(t);
-                    }
+        @Override
+        void onError(final IOException e) {
+            for (OnADT7410Listener l : mListeners) {
+                l.onError(e.getMessage());
+            }
+            mListeners.clear();
 
-                    try {
-                        Thread.sleep(33);
-                    } catch (InterruptedException e) {
-                        break;
-                    }
-                }
-            } catch (IOException e) {
-                for (OnADT7410Listener l : mListeners) {
-                    l.onError(e.getMessage());
+            synchronized (ADT7410.this) {
+                if (mWatchPoll == this) {
+                    mWatchPoll = null;
                 }
             }
         }
@@ -1,7 +1,5 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.things;
 
-import com.google.android.things.pio.I2cDevice;
-
 import org.deviceconnect.android.deviceplugin.fabo.device.IADXL345;
 
 import java.io.IOException;
@@ -52,9 +50,19 @@ class ADXL345 extends BaseI2C implements IADXL345 {
     private static final double RESOLUTION = (16 + 16) / Math.pow(2, 13);
 
     /**
-     * I2Cデバイス.
+     * 加速度センサーの値を取得する周期(ms).
      */
-    private I2cDevice mI2cDevice;
+    private static final long INTERVAL = 33;
+
+    /**
+     * I2Cバス.
+     */
+    private final I2CBusScheduler mBus;
+
+    /**
+     * I2Cデバイスを開けた場合はtrue.
+     */
+    private final boolean mOpened;
 
     /**
      * 加速度の値を保持するバッファ.
@@ -62,16 +70,17 @@ class ADXL345 extends BaseI2C implements IADXL345 {
     private byte[] mBuffer = new byte[6];
 
     /**
-     * 加速度センサーの値を監視するスレッド.
+     * 加速度センサーの値を監視するPoll.
      */
-    private WatchThread mWatchThread;
+    private WatchPoll mWatchPoll;
 
     /**
      * コンストラクタ.
      * @param control コントローラ
      */
     ADXL345(final FaBoThingsDeviceControl control) {
-        mI2cDevice = control.getI2cDevice(ADXL345_DEVICE_ADDR);
+        mBus = control.getI2CBusScheduler();
+        mOpened = control.getI2cDevice(ADXL345_DEVICE_ADDR) != null;
     }
 
     @Override
@@ -80,7 +89,7 @@ class ADXL345 extends BaseI2C implements IADXL345 {
             if (!checkDevice()) {
                 listener.onError("ADXL345 is not connect.");
             } else {
-                startADXL345();
+                startADXL345(mBus);
 
                 try {
                     Thread.sleep(10);
@@ -88,13 +97,15 @@ class ADXL345 extends BaseI2C implements IADXL345 {
                     e.printStackTrace();
                 }
 
-                readADXL345(mBuffer, mBuffer.length);
+                synchronized (mBuffer) {
+                    mBus.readRegBuffer(ADXL345_DEVICE_ADDR, REGISTER_RA_DATAX0, mBuffer, mBuffer.length);
 
-                double x = convertResolution(decodeShort(mBuffer, 0));
-                double y = convertResolution(decodeShort(mBuffer, 2));
-                double z = convertResolution(decodeShort(mBuffer, 4));
+                    double x = convertResolution(decodeShort(mBuffer, 0));
+                    double y = convertResolution(decodeShort(mBuffer, 2));
+                    double z = convertResolution(decodeShort(mBuffer, 4));
 
-                listener.onData(x, y, z);
+                    listener.onData(x, y, z);
+                }
             }
         } catch (IOException e) {
             listener.onError(e.getMessage());
@@ -106,32 +117,33 @@ class ADXL345 extends BaseI2C implements IADXL345 {
         if (!checkDevice()) {
             listener.onError("ADXL345 is not connect.");
         } else {
-            if (mWatchThread == null) {
-                mWatchThread = new WatchThread();
-                mWatchThread.addListener(listener);
-                mWatchThread.start();
+            if (mWatchPoll == null) {
+                mWatchPoll = new WatchPoll();
+                mWatchPoll.addListener(listener);
+                mBus.addPoll(mWatchPoll);
             } else {
-                mWatchThread.addListener(listener);
+                mWatchPoll.addListener(listener);
             }
         }
     }
 
     @Override
     public synchronized void stopRead(final OnADXL345Listener listener) {
-        if (mWatchThread != null) {
-            mWatchThread.removeListener(listener);
-            if (mWatchThread.isEmptyListener()) {
-                mWatchThread.stopWatch();
-                mWatchThread = null;
+        if (mWatchPoll != null) {
+            mWatchPoll.removeListener(listener);
+            if (mWatchPoll.isEmptyListener()) {
+                mBus.removePoll(mWatchPoll);
+                mWatchPoll = null;
             }
         }
     }
 
     @Override
     synchronized void destroy() {
-        if (mWatchThread != null) {
-            mWatchThread.stopWatch();
-            mWatchThread = null;
+        if (mWatchPoll != null) {
+            mBus.removePoll(mWatchPoll);
+            mWatchPoll.clearListener();
+            mWatchPoll = null;
         }
     }
 
@@ -140,11 +152,11 @@ class ADXL345 extends BaseI2C implements IADXL345 {
      * @return ADXL345ならtrue、それ以外ならfalse
      */
     private boolean checkDevice() {
-        if (mI2cDevice == null) {
+        if (!mOpened) {
             return false;
         } else {
             try {
-                byte deviceId = mI2cDevice.readRegByte(REGISTER_RA_DEVID);
+                byte deviceId = mBus.readRegByte(ADXL345_DEVICE_ADDR, REGISTER_RA_DEVID);
                 return (deviceId & 0xFF) == DEVICE_ID;
             } catch (IOException e) {
                 return false;
@@ -154,21 +166,12 @@ class ADXL345 extends BaseI2C implements IADXL345 {
 
     /**
      * ADXL345の加速度センサー開始要求を送信します.
+     * @param bus I2Cバス
      * @throws IOException 送信に失敗した場合に発生
      */
-    private void startADXL345() throws IOException {
-        mI2cDevice.writeRegByte(REGISTER_RA_DATA_FORMAT, (byte) 0x0B);
-        mI2cDevice.writeRegByte(REGISTER_RA_POWER_CTL, (byte) 0x08);
-    }
-
-    /**
-     * ADXL345から加速度センサーの値を取得します.
-     * @param buffer バッファ
-     * @param length バッファサイズ
-     * @throws IOException 読み込みに失敗した場合に発生
-     */
-    private void readADXL345(final byte[] buffer, final int length) throws IOException {
-        mI2cDevice.readRegBuffer(REGISTER_RA_DATAX0, buffer, length);
+    private void startADXL345(final I2CBus bus) throws IOException {
+        bus.writeRegByte(ADXL345_DEVICE_ADDR, REGISTER_RA_DATA_FORMAT, (byte) 0x0B);
+        bus.writeRegByte(ADXL345_DEVICE_ADDR, REGISTER_RA_POWER_CTL, (byte) 0x08);
     }
 
     /**
@@ -181,19 +184,18 @@ class ADXL345 extends BaseI2C implements IADXL345 {
     }
 
     /**
-     * 加速度センサーの値を取得するスレッド.
+     * 加速度センサーの値を取得するPoll.
      */
-    private class WatchThread extends Thread {
-        /**
-         * 停止フラグ.
-         */
-        private boolean mStopFlag;
-
+    private class WatchPoll extends I2CBusScheduler.Poll {
         /**
          * リスナー.
          */
         private List<OnADXL345Listener> mListeners = new CopyOnWriteArrayList<>();
 
+        WatchPoll() {
+            super(ADXL345_DEVICE_ADDR, REGISTER_RA_DATAX0, 6, INTERVAL);
+        }
+
         /**
          * リスナーを追加します.
          * @param listener 追加するリスナー
@@ -211,6 +213,13 @@ class ADXL345 extends BaseI2C implements IADXL345 {
             mListeners.remove(listener);
         }
 
+        /**
+         * リスナーを全て削除します.
+         */
+        void clearListener() {
+            mListeners.clear();
+        }
+
         /**
          * 登録されているリスナーが空か確認します.
          * @return 空の場合はtrue、それ以外はfalse
@@ -219,44 +228,33 @@ class ADXL345 extends BaseI2C implements IADXL345 {
             return mListeners.isEmpty();
         }
 
-        /**
-         * 監視を停止します.
-         */
-        void stopWatch() {
-            mListeners.clear();
-            mStopFlag = true;
-            interrupt();
+        @Override
+        void onStart(final I2CBus bus) throws IOException {
+            startADXL345(bus);
         }
 
         @Override
-        public void run() {
-            final byte[] buffer = new byte[6];
-
-            try {
-                startADXL345();
-
-                while (!mStopFlag) {
-                    readADXL345(buffer, buffer.length);
+        void onData(final byte[] data) {
+            double x = convertResolution(decodeShort(data, 0));
+            double y = convertResolution(decodeShort(data, 2));
+            double z = convertResolution(decodeShort(data, 4));
 
-                    double x = convertResolution(decodeShort(buffer, 0));
-                    double y = convertResolution(decodeShort(buffer, 2));
-                    double z = convertResolution(decodeShort(buffer, 4));
+            for (OnADXL345Listener l : mListeners) {
+                l.onData(x, y, z);
+            }
+        }
 
-                    for (OnADXL345Listener l : mListeners) {
-                        l.onData(x, y, z);
-                    }
+        @Override
+        void onError(final IOException e) {
+            for (OnADXL345Listener l : mListeners) {
+                l.onError(e.getMessage());
+            }
+            mListeners.clear();
 
-                    try {
-                        Thread.sleep(33);
-                    } catch (InterruptedException e) {
-                        break;
-                    }
-                }
-            } catch (IOException e) {
-                for (OnADXL345Listener l : mListeners) {
-                    l.onError(e.getMessage());
+            synchronized (ADXL345.this) {
+                if (mWatchPoll == this) {
+                    mWatchPoll = null;
                 }
-                mListeners.clear();
             }
         }
     }
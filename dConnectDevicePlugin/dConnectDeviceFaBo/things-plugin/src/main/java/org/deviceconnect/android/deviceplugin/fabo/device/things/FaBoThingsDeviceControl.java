@@ -120,6 +120,11 @@ public class FaBoThingsDeviceControl implements FaBoDeviceControl {
      */
     private Handler mHandler = new Handler(Looper.getMainLooper());
 
+    /**
+     * I2Cバスへのアクセスを管理するクラス.
+     */
+    private final I2CBusScheduler mI2CBusScheduler = new I2CBusScheduler(new ThingsI2CBus());
+
     /**
      * コンストラクタ.
      */
@@ -133,6 +138,7 @@ public class FaBoThingsDeviceControl implements FaBoDeviceControl {
         }
 
         mManagerService = new PeripheralManagerService();
+        mI2CBusScheduler.start();
 
         initGpio();
     }
@@ -191,14 +197,18 @@ public class FaBoThingsDeviceControl implements FaBoDeviceControl {
             mLIDARLiteV3 = null;
         }
 
-        for (I2cDevice device : mI2cDeviceMap.values()) {
-            try {
-                device.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        mI2CBusScheduler.stop();
+
+        synchronized (mI2cDeviceMap) {
+            for (I2cDevice device : mI2cDeviceMap.values()) {
+                try {
+                    device.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
+            mI2cDeviceMap.clear();
         }
-        mI2cDeviceMap.clear();
     }
 
     @Override
@@ -471,26 +481,76 @@ public class FaBoThingsDeviceControl implements FaBoDeviceControl {
      * @return I2cDeviceのインスタンス
      */
     I2cDevice getI2cDevice(final int address) {
-        if (mI2cDeviceMap.containsKey(address)) {
-            return mI2cDeviceMap.get(address);
-        }
-
-        List<String> i2cList = mManagerService.getI2cBusList();
-        if (i2cList.isEmpty()) {
-            if (DEBUG) {
-                Log.i(TAG, "No I2C port available on this device.");
+        synchronized (mI2cDeviceMap) {
+            if (mI2cDeviceMap.containsKey(address)) {
+                return mI2cDeviceMap.get(address);
             }
-            return null;
-        } else {
-            try {
-                I2cDevice device = mManagerService.openI2cDevice(i2cList.get(0), address);
-                if (device != null) {
-                    mI2cDeviceMap.put(address, device);
+
+            List<String> i2cList = mManagerService.getI2cBusList();
+            if (i2cList.isEmpty()) {
+                if (DEBUG) {
+                    Log.i(TAG, "No I2C port available on this device.");
                 }
-                return device;
-            } catch (IOException e) {
                 return null;
+            } else {
+                try {
+                    I2cDevice device = mManagerService.openI2cDevice(i2cList.get(0), address);
+                    if (device != null) {
+                        mI2cDeviceMap.put(address, device);
+                    }
+                    return device;
+                } catch (IOException e) {
+                    return null;
+                }
             }
         }
     }
+
+    /**
+     * I2Cバスへのアクセスを管理するクラスを取得します.
+     * <p>
+     * 各センサーはI2cDeviceを直接操作せずに、このクラスを経由してI2Cバスにアクセスします。
+     * </p>
+     * @return I2CBusSchedulerのインスタンス
+     */
+    I2CBusScheduler getI2CBusScheduler() {
+        return mI2CBusScheduler;
+    }
+
+    /**
+     * 開いているI2cDeviceを取得します.
+     * @param address アドレス
+     * @return I2cDeviceのインスタンス
+     * @throws IOException I2cDeviceが開かれていない場合に発生
+     */
+    private I2cDevice getOpenedI2cDevice(final int address) throws IOException {
+        I2cDevice device;
+        synchronized (mI2cDeviceMap) {
+            device = mI2cDeviceMap.get(address);
+        }
+        if (device == null) {
+            throw new IOException("I2C device is not opened. address=" + address);
+        }
+        return device;
+    }
+
+    /**
+     * Android ThingsのI2cDeviceを使用してI2Cバスにアクセスするクラス.
+     */
+    private class ThingsI2CBus implements I2CBus {
+        @Override
+        public byte readRegByte(final int address, final int register) throws IOException {
+            return getOpenedI2cDevice(address).readRegByte(register);
+        }
+
+        @Override
+        public void readRegBuffer(final int address, final int register, final byte[] buffer, final int length) throws IOException {
+            getOpenedI2cDevice(address).readRegBuffer(register, buffer, length);
+        }
+
+        @Override
+        public void writeRegByte(final int address, final int register, final byte value) throws IOException {
+            getOpenedI2cDevice(address).writeRegByte(register, value);
+        }
+    }
 }
@@ -1,7 +1,5 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.things;
 
-import com.google.android.things.pio.I2cDevice;
-
 import org.deviceconnect.android.deviceplugin.fabo.device.IHTS221;
 
 import java.io.IOException;
@@ -119,9 +117,49 @@ class HTS221 extends BaseI2C implements IHTS221 {
     private static final int REGISTER_T1_OUT_H = 0x3F;
 
     /**
-     * I2Cデバイス.
+     * 連続読み込みの時にレジスタのアドレスを自動で増加させるフラグ.
+     */
+    private static final int AUTO_INCREMENT = 0x80;
+
+    /**
+     * キャリブレーション値の先頭レジスタ.
+     */
+    private static final int REGISTER_CALIB_START = REGISTER_H0_RH_X2;
+
+    /**
+     * キャリブレーション値のサイズ(0x30〜0x3F).
+     */
+    private static final int CALIB_SIZE = 16;
+
+    /**
+     * 計測値の先頭レジスタ.
+     */
+    private static final int REGISTER_OUT_START = REGISTER_HUMIDITY_OUT_L;
+
+    /**
+     * 計測値のサイズ(0x28〜0x2B).
+     */
+    private static final int OUT_SIZE = 4;
+
+    /**
+     * I2Cバス.
+     */
+    private final I2CBusScheduler mBus;
+
+    /**
+     * I2Cデバイスを開けた場合はtrue.
+     */
+    private final boolean mOpened;
+
+    /**
+     * キャリブレーション値を格納するバッファ.
+     */
+    private final byte[] mCalib = new byte[CALIB_SIZE];
+
+    /**
+     * 計測値を格納するバッファ.
      */
-    private I2cDevice mI2cDevice;
+    private final byte[] mOut = new byte[OUT_SIZE];
 
     private int h0_rh_x2;
     private int h1_rh_x2;
@@ -133,7 +171,8 @@ class HTS221 extends BaseI2C implements IHTS221 {
     private int t1_out;
 
     HTS221(final FaBoThingsDeviceControl control) {
-        mI2cDevice = control.getI2cDevice(HTS221_SLAVE_ADDRESS);
+        mBus = control.getI2CBusScheduler();
+        mOpened = control.getI2cDevice(HTS221_SLAVE_ADDRESS) != null;
     }
 
     @Override
@@ -142,24 +181,14 @@ class HTS221 extends BaseI2C implements IHTS221 {
             callback.onError("HTS221 is not connect.");
         } else {
             try {
-                powerOn();
-                configDevice();
-
-                h0_rh_x2 = mI2cDevice.readRegByte(REGISTER_H0_RH_X2) & 0xFF;
-                h1_rh_x2 = mI2cDevice.readRegByte(REGISTER_H1_RH_X2) & 0xFF;
-
-                byte h0_t0_l = mI2cDevice.readRegByte(REGISTER_H0_T0_OUT_L);
-                byte h0_t0_h = mI2cDevice.readRegByte(REGISTER_H0_T0_OUT_H);
-                h0_t0_out = dataConv(h0_t0_l, h0_t0_h);
+                readRegisters();
 
-                byte h1_t0_l = mI2cDevice.readRegByte(REGISTER_H1_T0_OUT_L);
-                byte h1_t0_h = mI2cDevice.readRegByte(REGISTER_H1_T0_OUT_H);
-                h1_t0_out = dataConv(h1_t0_l, h1_t0_h);
+                h0_rh_x2 = calib(REGISTER_H0_RH_X2) & 0xFF;
+                h1_rh_x2 = calib(REGISTER_H1_RH_X2) & 0xFF;
+                h0_t0_out = dataConv(calib(REGISTER_H0_T0_OUT_L), calib(REGISTER_H0_T0_OUT_H));
+                h1_t0_out = dataConv(calib(REGISTER_H1_T0_OUT_L), calib(REGISTER_H1_T0_OUT_H));
 
-                byte h_out_l = mI2cDevice.readRegByte(REGISTER_HUMIDITY_OUT_L);
-                byte h_out_h = mI2cDevice.readRegByte(REGISTER_HUMIDITY_OUT_H);
-
-                int h_out = dataConv(h_out_l, h_out_h);
+                int h_out = dataConv(out(REGISTER_HUMIDITY_OUT_L), out(REGISTER_HUMIDITY_OUT_H));
 
                 int t_H0_rH = h0_rh_x2 / 2;
                 int t_H1_rH = h1_rh_x2 / 2;
@@ -178,27 +207,19 @@ class HTS221 extends BaseI2C implements IHTS221 {
             callback.onError("HTS221 is not connect.");
         } else {
             try {
-                powerOn();
-                configDevice();
+                readRegisters();
 
-                byte data = mI2cDevice.readRegByte(REGISTER_T1_T0_MSB);
+                byte data = calib(REGISTER_T1_T0_MSB);
 
-                byte t0_degc_x8 = mI2cDevice.readRegByte(REGISTER_T0_DEGC_X8);
-                byte t1_degc_x8 = mI2cDevice.readRegByte(REGISTER_T1_DEGC_X8);
+                byte t0_degc_x8 = calib(REGISTER_T0_DEGC_X8);
+                byte t1_degc_x8 = calib(REGISTER_T1_DEGC_X8);
                 this.t0_degc_x8 = ((data & 0x3) << 8) | t0_degc_x8;
                 this.t1_degc_x8 = ((data & 0xC) << 6) | t1_degc_x8;
 
-                byte t0_l = mI2cDevice.readRegByte(REGISTER_T0_OUT_L);
-                byte t0_h = mI2cDevice.readRegByte(REGISTER_T0_OUT_H);
-                t0_out = dataConv(t0_l, t0_h);
-
-                byte t1_l = mI2cDevice.readRegByte(REGISTER_T1_OUT_L);
-                byte t1_h = mI2cDevice.readRegByte(REGISTER_T1_OUT_H);
-                t1_out = dataConv(t1_l, t1_h);
+                t0_out = dataConv(calib(REGISTER_T0_OUT_L), calib(REGISTER_T0_OUT_H));
+                t1_out = dataConv(calib(REGISTER_T1_OUT_L), calib(REGISTER_T1_OUT_H));
 
-                byte temp_out_l = mI2cDevice.readRegByte(REGISTER_TEMP_OUT_L);
-                byte temp_out_h = mI2cDevice.readRegByte(REGISTER_TEMP_OUT_H);
-                int t_out = dataConv(temp_out_l, temp_out_h);
+                int t_out = dataConv(out(REGISTER_TEMP_OUT_L), out(REGISTER_TEMP_OUT_H));
 
                 // 1/8にする
                 int t_T0_degC = this.t0_degc_x8 / 8;
@@ -218,11 +239,11 @@ class HTS221 extends BaseI2C implements IHTS221 {
      * @return HTS221の場合にはtrue、それ以外はfalse
      */
     private boolean checkDevice() {
-        if (mI2cDevice == null) {
+        if (!mOpened) {
             return false;
         } else {
             try {
-                byte deviceId = mI2cDevice.readRegByte(REGISTER_DEVICE_REG);
+                byte deviceId = mBus.readRegByte(HTS221_SLAVE_ADDRESS, REGISTER_DEVICE_REG);
                 return (deviceId & 0xFF) == DEVICE_ID;
             } catch (IOException e) {
                 return false;
@@ -230,19 +251,60 @@ class HTS221 extends BaseI2C implements IHTS221 {
         }
     }
 
+    /**
+     * HTS221の設定を行い、キャリブレーション値と計測値を読み込みます.
+     * <p>
+     * レジスタを1byteずつ読み込まずに、キャリブレーション値と計測値をそれぞれ連続読み込みします。
+     * 途中で他のセンサーがバスを使用しないように、まとめてバスのスレッドで実行します。
+     * </p>
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    private void readRegisters() throws IOException {
+        mBus.call(new I2CBusScheduler.BusCallable<Void>() {
+            @Override
+            public Void call(final I2CBus bus) throws IOException {
+                powerOn(bus);
+                configDevice(bus);
+                bus.readRegBuffer(HTS221_SLAVE_ADDRESS, REGISTER_CALIB_START | AUTO_INCREMENT, mCalib, CALIB_SIZE);
+                bus.readRegBuffer(HTS221_SLAVE_ADDRESS, REGISTER_OUT_START | AUTO_INCREMENT, mOut, OUT_SIZE);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 読み込んだキャリブレーション値を取得します.
+     * @param register レジスタ
+     * @return 値
+     */
+    private byte calib(final int register) {
+        return mCalib[register - REGISTER_CALIB_START];
+    }
+
+    /**
+     * 読み込んだ計測値を取得します.
+     * @param register レジスタ
+     * @return 値
+     */
+    private byte out(final int register) {
+        return mOut[register - REGISTER_OUT_START];
+    }
+
     /**
      * HTS221へ起動要求を行います.
+     * @param bus I2Cバス
      * @throws IOException 起動要求に失敗した場合に発生.
      */
-    private void powerOn() throws IOException {
-        mI2cDevice.writeRegByte(REGISTER_CTRL_REG1, (byte) (PD | ODR_1HZ));
+    private void powerOn(final I2CBus bus) throws IOException {
+        bus.writeRegByte(HTS221_SLAVE_ADDRESS, REGISTER_CTRL_REG1, (byte) (PD | ODR_1HZ));
     }
 
     /**
      * HTS221へ設定要求を行います.
+     * @param bus I2Cバス
      * @throws IOException 設定要求に失敗した場合に発生.
      */
-    private void configDevice() throws IOException {
-        mI2cDevice.writeRegByte(REGISTER_AV_CONF, (byte) (AVGH_32 | AVGT_16));
+    private void configDevice(final I2CBus bus) throws IOException {
+        bus.writeRegByte(HTS221_SLAVE_ADDRESS, REGISTER_AV_CONF, (byte) (AVGH_32 | AVGT_16));
     }
 }
@@ -0,0 +1,39 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.things;
+
+import java.io.IOException;
+
+/**
+ * I2Cバスにアクセスするためのインターフェース.
+ * <p>
+ * アドレスを指定して、バスに接続されたデバイスのレジスタを読み書きします。
+ * </p>
+ */
+interface I2CBus {
+    /**
+     * 指定されたレジスタから1byte読み込みます.
+     * @param address デバイスのアドレス
+     * @param register レジスタ
+     * @return 読み込んだ値
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    byte readRegByte(int address, int register) throws IOException;
+
+    /**
+     * 指定されたレジスタから連続して読み込みます.
+     * @param address デバイスのアドレス
+     * @param register 開始レジスタ
+     * @param buffer 読み込んだ値を格納するバッファ
+     * @param length 読み込むサイズ
+     * @throws IOException 読み込みに失敗した場合に発生
+     */
+    void readRegBuffer(int address, int register, byte[] buffer, int length) throws IOException;
+
+    /**
+     * 指定されたレジスタに1byte書き込みます.
+     * @param address デバイスのアドレス
+     * @param register レジスタ
+     * @param value 書き込む値
+     * @throws IOException 書き込みに失敗した場合に発生
+     */
+    void writeRegByte(int address, int register, byte value) throws IOException;
+}
@@ -0,0 +1,616 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.things;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * I2Cバスへのアクセスを1つのスレッドで管理するクラス.
+ * <p>
+ * 登録された{@link Poll}を要求された周期で読み込みます。
+ * 同じアドレスで近いレジスタを読み込むPollは、1回の連続読み込みにまとめます。
+ * </p>
+ * <p>
+ * {@link I2CBus}のメソッドを呼び出した場合も、バスのスレッドで実行されるので、
+ * 複数のセンサーが同時にバスにアクセスすることはありません。
+ * </p>
+ * <p>
+ * 読み込んだ値は、バスのスレッドを止めないように別のスレッドでPollに通知します。
+ * </p>
+ */
+class I2CBusScheduler implements I2CBus {
+
+    /**
+     * 1回の連続読み込みの最大サイズ.
+     */
+    static final int MAX_BURST_SIZE = 32;
+
+    /**
+     * 連続読み込みにまとめるPollのレジスタの間隔.
+     */
+    private static final int MAX_REGISTER_GAP = 4;
+
+    /**
+     * 連続読み込みにまとめる時に、予定よりも早く読み込むことを許す割合.
+     * <p>
+     * 周期の1/4まで早く読み込みます。
+     * </p>
+     */
+    private static final int EARLY_READ_DIVISOR = 4;
+
+    /**
+     * バスのスレッドで実行する処理.
+     * @param <T> 戻り値の型
+     */
+    interface BusCallable<T> {
+        /**
+         * バスのスレッドで処理を実行します.
+         * @param bus I2Cバス
+         * @return 処理結果
+         * @throws IOException バスへのアクセスに失敗した場合に発生
+         */
+        T call(I2CBus bus) throws IOException;
+    }
+
+    /**
+     * 定期的にレジスタを読み込む要求.
+     * <p>
+     * {@link #onStart(I2CBus)}と{@link #onPolled(I2CBus)}はバスのスレッド、
+     * {@link #onData(byte[])}と{@link #onError(IOException)}は通知用のスレッドで呼び出されます。
+     * </p>
+     */
+    abstract static class Poll {
+        /**
+         * デバイスのアドレス.
+         */
+        private final int mAddress;
+
+        /**
+         * 読み込みを開始するレジスタ.
+         */
+        private final int mRegister;
+
+        /**
+         * 読み込むサイズ.
+         */
+        private final int mLength;
+
+        /**
+         * 読み込み周期(ns).
+         */
+        private final long mInterval;
+
+        /**
+         * 次に読み込む時間(ns).
+         */
+        private long mNextTime;
+
+        /**
+         * 開始処理を実行済みの場合はtrue.
+         */
+        private boolean mStarted;
+
+        /**
+         * コンストラクタ.
+         * @param address デバイスのアドレス
+         * @param register 読み込みを開始するレジスタ
+         * @param length 読み込むサイズ
+         * @param interval 読み込み周期(ms)
+         */
+        Poll(final int address, final int register, final int length, final long interval) {
+            if (length <= 0 || length > MAX_BURST_SIZE) {
+                throw new IllegalArgumentException("length is invalid. length=" + length);
+            }
+            if (interval <= 0) {
+                throw new IllegalArgumentException("interval is invalid. interval=" + interval);
+            }
+            mAddress = address;
+            mRegister = register;
+            mLength = length;
+            mInterval = TimeUnit.MILLISECONDS.toNanos(interval);
+        }
+
+        int getAddress() {
+            return mAddress;
+        }
+
+        int getRegister() {
+            return mRegister;
+        }
+
+        int getLength() {
+            return mLength;
+        }
+
+        /**
+         * 最初の読み込みの前にデバイスの設定を行います.
+         * <p>
+         * 最初の読み込みは、この処理から1周期後に行います。
+         * </p>
+         * @param bus I2Cバス
+         * @throws IOException 設定に失敗した場合に発生
+         */
+        void onStart(final I2CBus bus) throws IOException {
+        }
+
+        /**
+         * 読み込んだ後にデバイスへの書き込みが必要な場合に処理を行います.
+         * @param bus I2Cバス
+         * @throws IOException 書き込みに失敗した場合に発生
+         */
+        void onPolled(final I2CBus bus) throws IOException {
+        }
+
+        /**
+         * 読み込んだ値を通知します.
+         * @param data 読み込んだ値
+         */
+        abstract void onData(byte[] data);
+
+        /**
+         * 読み込みに失敗したことを通知します.
+         * <p>
+         * 失敗したPollはスケジューラから削除されます。
+         * </p>
+         * @param e 例外
+         */
+        abstract void onError(IOException e);
+    }
+
+    /**
+     * Pollをレジスタ順に並べるためのComparator.
+     */
+    private static final Comparator<Poll> REGISTER_ORDER = new Comparator<Poll>() {
+        @Override
+        public int compare(final Poll a, final Poll b) {
+            return a.mRegister < b.mRegister ? -1 : (a.mRegister == b.mRegister ? 0 : 1);
+        }
+    };
+
+    /**
+     * I2Cバス.
+     */
+    private final I2CBus mBus;
+
+    /**
+     * 排他処理用のオブジェクト.
+     */
+    private final Object mLock = new Object();
+
+    /**
+     * 登録されているPollのリスト.
+     */
+    private final List<Poll> mPolls = new ArrayList<>();
+
+    /**
+     * バスのスレッドで実行待ちの処理.
+     */
+    private final LinkedList<FutureTask<?>> mCalls = new LinkedList<>();
+
+    /**
+     * 連続読み込み用のバッファ.
+     */
+    private final byte[] mBurstBuffer = new byte[MAX_BURST_SIZE];
+
+    /**
+     * バスにアクセスするスレッド.
+     */
+    private BusThread mThread;
+
+    /**
+     * 読み込んだ値を通知するスレッド.
+     */
+    private ExecutorService mDispatcher;
+
+    /**
+     * バスにアクセスしていた時間の合計(ns).
+     */
+    private volatile long mBusyTime;
+
+    /**
+     * コンストラクタ.
+     * @param bus I2Cバス
+     */
+    I2CBusScheduler(final I2CBus bus) {
+        mBus = bus;
+    }
+
+    /**
+     * スケジューラを開始します.
+     */
+    void start() {
+        synchronized (mLock) {
+            if (mThread != null) {
+                return;
+            }
+            mDispatcher = Executors.newSingleThreadExecutor();
+            mThread = new BusThread();
+            mThread.start();
+        }
+    }
+
+    /**
+     * スケジューラを停止します.
+     * <p>
+     * 登録されているPollは削除され、実行待ちの処理はキャンセルされます。
+     * </p>
+     */
+    void stop() {
+        synchronized (mLock) {
+            if (mThread == null) {
+                return;
+            }
+            mThread = null;
+            mPolls.clear();
+            for (FutureTask<?> task : mCalls) {
+                task.cancel(false);
+            }
+            mCalls.clear();
+            mDispatcher.shutdown();
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Pollを登録します.
+     * @param poll 登録するPoll
+     */
+    void addPoll(final Poll poll) {
+        synchronized (mLock) {
+            if (!mPolls.contains(poll)) {
+                poll.mStarted = false;
+                poll.mNextTime = System.nanoTime();
+                mPolls.add(poll);
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Pollを削除します.
+     * @param poll 削除するPoll
+     */
+    void removePoll(final Poll poll) {
+        synchronized (mLock) {
+            mPolls.remove(poll);
+        }
+    }
+
+    /**
+     * バスにアクセスしていた時間の合計を取得します.
+     * @return バスにアクセスしていた時間(ns)
+     */
+    long getBusyTime() {
+        return mBusyTime;
+    }
+
+    /**
+     * バスのスレッドで処理を実行して、結果を待ちます.
+     * <p>
+     * バスのスレッドから呼び出された場合には、そのまま実行します。
+     * </p>
+     * @param callable 実行する処理
+     * @param <T> 戻り値の型
+     * @return 処理結果
+     * @throws IOException 処理に失敗した場合に発生
+     */
+    <T> T call(final BusCallable<T> callable) throws IOException {
+        if (Thread.currentThread() == mThread) {
+            return callable.call(mBus);
+        }
+
+        FutureTask<T> task = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return callable.call(mBus);
+            }
+        });
+        synchronized (mLock) {
+            if (mThread == null) {
+                throw new IOException("I2C bus scheduler is not running.");
+            }
+            mCalls.add(task);
+            mLock.notifyAll();
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("I2C bus access is interrupted.");
+        } catch (CancellationException e) {
+            throw new IOException("I2C bus scheduler is stopped.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public byte readRegByte(final int address, final int register) throws IOException {
+        return call(new BusCallable<Byte>() {
+            @Override
+            public Byte call(final I2CBus bus) throws IOException {
+                return bus.readRegByte(address, register);
+            }
+        });
+    }
+
+    @Override
+    public void readRegBuffer(final int address, final int register, final byte[] buffer, final int length) throws IOException {
+        call(new BusCallable<Void>() {
+            @Override
+            public Void call(final I2CBus bus) throws IOException {
+                bus.readRegBuffer(address, register, buffer, length);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void writeRegByte(final int address, final int register, final byte value) throws IOException {
+        call(new BusCallable<Void>() {
+            @Override
+            public Void call(final I2CBus bus) throws IOException {
+                bus.writeRegByte(address, register, value);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 通知用のスレッドで処理を実行します.
+     * @param runnable 実行する処理
+     */
+    private void dispatch(final Runnable runnable) {
+        try {
+            mDispatcher.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            // 停止済み
+        }
+    }
+
+    /**
+     * 読み込みに失敗したPollを削除して、エラーを通知します.
+     * @param polls 失敗したPoll
+     * @param e 例外
+     */
+    private void notifyError(final List<Poll> polls, final IOException e) {
+        synchronized (mLock) {
+            mPolls.removeAll(polls);
+        }
+        for (final Poll poll : polls) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    poll.onError(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 読み込む時間になったPollを取得します.
+     * <p>
+     * 最も予定時間が過ぎているPollと同じアドレスのPollのうち、
+     * 周期の1/4以内に読み込む予定のものも一緒に返却します。
+     * </p>
+     * @param now 現在時間(ns)
+     * @return 読み込むPollのリスト. 読み込むPollがない場合は空のリスト
+     */
+    private List<Poll> collectDuePolls(final long now) {
+        Poll first = null;
+        for (Poll poll : mPolls) {
+            if (poll.mNextTime <= now && (first == null || poll.mNextTime < first.mNextTime)) {
+                first = poll;
+            }
+        }
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        if (!first.mStarted) {
+            return Collections.singletonList(first);
+        }
+
+        List<Poll> due = new ArrayList<>();
+        for (Poll poll : mPolls) {
+            if (poll.mStarted && poll.mAddress == first.mAddress
+                    && poll.mNextTime <= now + poll.mInterval / EARLY_READ_DIVISOR) {
+                due.add(poll);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * 次にPollを読み込むまでの時間を取得します.
+     * @param now 現在時間(ns)
+     * @return 待ち時間(ns). Pollがない場合は0
+     */
+    private long getWaitTime(final long now) {
+        long next = Long.MAX_VALUE;
+        for (Poll poll : mPolls) {
+            next = Math.min(next, poll.mNextTime);
+        }
+        return next == Long.MAX_VALUE ? 0 : Math.max(1, next - now);
+    }
+
+    /**
+     * Pollの次に読み込む時間を更新します.
+     * <p>
+     * 読み込みが遅れて予定時間を過ぎている場合には、過ぎた分は読み込まずに現在時間から1周期後にします。
+     * </p>
+     * @param poll Poll
+     * @param now 現在時間(ns)
+     */
+    private void scheduleNext(final Poll poll, final long now) {
+        synchronized (mLock) {
+            poll.mNextTime += poll.mInterval;
+            if (poll.mNextTime <= now) {
+                poll.mNextTime = now + poll.mInterval;
+            }
+        }
+    }
+
+    /**
+     * Pollの開始処理を実行します.
+     * <p>
+     * 同じアドレスで同じ周期のPollが既にある場合には、連続読み込みにまとめられるように読み込む時間を合わせます。
+     * </p>
+     * @param poll Poll
+     */
+    private void startPoll(final Poll poll) {
+        long start = System.nanoTime();
+        try {
+            poll.onStart(mBus);
+            synchronized (mLock) {
+                long now = System.nanoTime();
+                poll.mStarted = true;
+                poll.mNextTime = now + poll.mInterval;
+                for (Poll other : mPolls) {
+                    if (other != poll && other.mStarted && other.mAddress == poll.mAddress
+                            && other.mInterval == poll.mInterval && other.mNextTime > now) {
+                        poll.mNextTime = other.mNextTime;
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            notifyError(Collections.singletonList(poll), e);
+        } finally {
+            mBusyTime += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * 同じアドレスのPollを連続読み込みにまとめて読み込みます.
+     * @param polls 同じアドレスのPoll
+     * @param now 現在時間(ns)
+     */
+    private void readPolls(final List<Poll> polls, final long now) {
+        Collections.sort(polls, REGISTER_ORDER);
+
+        int i = 0;
+        while (i < polls.size()) {
+            Poll first = polls.get(i);
+            int start = first.mRegister;
+            int end = start + first.mLength;
+            int j = i + 1;
+            while (j < polls.size()) {
+                Poll next = polls.get(j);
+                int nextEnd = Math.max(end, next.mRegister + next.mLength);
+                if (next.mRegister > end + MAX_REGISTER_GAP || nextEnd - start > MAX_BURST_SIZE) {
+                    break;
+                }
+                end = nextEnd;
+                j++;
+            }
+            readBurst(first.mAddress, start, end - start, polls.subList(i, j), now);
+            i = j;
+        }
+    }
+
+    /**
+     * 連続読み込みを行い、それぞれのPollに通知します.
+     * @param address アドレス
+     * @param register 開始レジスタ
+     * @param length 読み込むサイズ
+     * @param polls 読み込むPoll
+     * @param now 現在時間(ns)
+     */
+    private void readBurst(final int address, final int register, final int length,
+                           final List<Poll> polls, final long now) {
+        long start = System.nanoTime();
+        try {
+            mBus.readRegBuffer(address, register, mBurstBuffer, length);
+            for (final Poll poll : polls) {
+                int offset = poll.mRegister - register;
+                final byte[] data = Arrays.copyOfRange(mBurstBuffer, offset, offset + poll.mLength);
+                poll.onPolled(mBus);
+                scheduleNext(poll, now);
+                dispatch(new Runnable() {
+                    @Override
+                    public void run() {
+                        poll.onData(data);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            notifyError(new ArrayList<>(polls), e);
+        } finally {
+            mBusyTime += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * I2Cバスにアクセスするスレッド.
+     */
+    private class BusThread extends Thread {
+        BusThread() {
+            super("I2CBusScheduler");
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                FutureTask<?> task = null;
+                List<Poll> polls;
+                long now;
+
+                synchronized (mLock) {
+                    while (true) {
+                        if (mThread != this) {
+                            return;
+                        }
+                        if (!mCalls.isEmpty()) {
+                            task = mCalls.removeFirst();
+                            polls = null;
+                            now = 0;
+                            break;
+                        }
+                        now = System.nanoTime();
+                        polls = collectDuePolls(now);
+                        if (!polls.isEmpty()) {
+                            break;
+                        }
+                        long wait = getWaitTime(now);
+                        try {
+                            mLock.wait(TimeUnit.NANOSECONDS.toMillis(wait), (int) (wait % 1000000));
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+
+                if (task != null) {
+                    long start = System.nanoTime();
+                    task.run();
+                    mBusyTime += System.nanoTime() - start;
+                } else if (polls.size() == 1 && !polls.get(0).mStarted) {
+                    startPoll(polls.get(0));
+                } else {
+                    readPolls(polls, now);
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.things;
 
-import com.google.android.things.pio.I2cDevice;
-
 import org.deviceconnect.android.deviceplugin.fabo.device.IISL29034;
 
 import java.io.IOException;
@@ -58,21 +56,32 @@ class ISL29034 extends BaseI2C implements IISL29034 {
     private int mResolution = RES_4;
 
     /**
-     * I2Cデバイス.
+     * 照度を取得する周期(ms).
+     */
+    private static final long INTERVAL = 33;
+
+    /**
+     * I2Cバス.
      */
-    private I2cDevice mI2cDevice;
+    private final I2CBusScheduler mBus;
 
     /**
-     * 管理用スレッド.
+     * I2Cデバイスを開けた場合はtrue.
      */
-    private WatchThread mWatchThread;
+    private final boolean mOpened;
+
+    /**
+     * 管理用のPoll.
+     */
+    private WatchPoll mWatchPoll;
 
     /**
      * コンストラクタ.
      * @param control FaBoコントローラ
      */
     ISL29034(final FaBoThingsDeviceControl control) {
-        mI2cDevice = control.getI2cDevice(SLAVE_ADDRESS);
+        mBus = control.getI2CBusScheduler();
+        mOpened = control.getI2cDevice(SLAVE_ADDRESS) != null;
     }
 
     @Override
@@ -81,7 +90,7 @@ class ISL29034 extends BaseI2C implements IISL29034 {
             listener.onError("ISL29034 is not connect.");
         } else {
             try {
-                setISL29034();
+                setISL29034(mBus);
 
                 try {
                     Thread.sleep(10);
@@ -101,32 +110,33 @@ class ISL29034 extends BaseI2C implements IISL29034 {
         if (!checkDevice()) {
             listener.onError("ISL29034 is not connect.");
         } else {
-            if (mWatchThread == null) {
-                mWatchThread = new WatchThread();
-                mWatchThread.addListener(listener);
-                mWatchThread.start();
+            if (mWatchPoll == null) {
+                mWatchPoll = new WatchPoll();
+                mWatchPoll.addListener(listener);
+                mBus.addPoll(mWatchPoll);
             } else {
-                mWatchThread.addListener(listener);
+                mWatchPoll.addListener(listener);
             }
         }
     }
 
     @Override
     public synchronized void stopRead(final OnAmbientLightListener listener) {
-        if (mWatchThread != null) {
-            mWatchThread.removeListener(listener);
-            if (mWatchThread.isEmptyListener()) {
-                mWatchThread.stopWatch();
-                mWatchThread = null;
+        if (mWatchPoll != null) {
+            mWatchPoll.removeListener(listener);
+            if (mWatchPoll.isEmptyListener()) {
+                mBus.removePoll(mWatchPoll);
+                mWatchPoll = null;
             }
         }
     }
 
     @Override
     synchronized void destroy() {
-        if (mWatchThread != null) {
-            mWatchThread.stopWatch();
-            mWatchThread = null;
+        if (mWatchPoll != null) {
+            mBus.removePoll(mWatchPoll);
+            mWatchPoll.clearListener();
+            mWatchPoll = null;
         }
     }
 
@@ -135,11 +145,11 @@ class ISL29034 extends BaseI2C implements IISL29034 {
      * @return ISL29034ならtrue、それ以外ならfalse
      */
     private boolean checkDevice() {
-        if (mI2cDevice == null) {
+        if (!mOpened) {
             return false;
         } else {
             try {
-                byte deviceId = mI2cDevice.readRegByte(REG_ID);
+                byte deviceId = mBus.readRegByte(SLAVE_ADDRESS, REG_ID);
                 return ((deviceId & ID_MASK) == DEVICE_ID);
             } catch (IOException e) {
                 return false;
@@ -187,29 +197,32 @@ class ISL29034 extends BaseI2C implements IISL29034 {
 
     /**
      * ISL29034の設定を行います.
+     * @param bus I2Cバス
      */
-    private void setISL29034() throws IOException {
-        setOperation(OP_ALS_CONT);
-        setCMD2(FS_3, RES_16);
+    private void setISL29034(final I2CBus bus) throws IOException {
+        setOperation(bus, OP_ALS_CONT);
+        setCMD2(bus, FS_3, RES_16);
     }
 
     /**
      * Set Operation Mode.
+     * @param bus I2Cバス
      * @param config Operation Mode DEFAULT:Power-down the device
      */
-    private void setOperation(int config) throws IOException {
-        mI2cDevice.writeRegByte(REG_CMD1, (byte) (config & 0xFF));
+    private void setOperation(final I2CBus bus, int config) throws IOException {
+        bus.writeRegByte(SLAVE_ADDRESS, REG_CMD1, (byte) (config & 0xFF));
     }
 
     /**
      * CMD2にrangeとresolutionを設定します.
+     * @param bus I2Cバス
      * @param range luxの範囲
      * @param resolution 解像度
      */
-    private void setCMD2(final int range, final int resolution) throws IOException {
+    private void setCMD2(final I2CBus bus, final int range, final int resolution) throws IOException {
         mRange = range;
         mResolution = resolution;
-        byte value = mI2cDevice.readRegByte(REG_CMD2);
+        byte value = bus.readRegByte(SLAVE_ADDRESS, REG_CMD2);
 
         value &= 0xFC;
         value |= mRange;
@@ -217,7 +230,7 @@ class ISL29034 extends BaseI2C implements IISL29034 {
         value &= 0xF3;
         value |= mResolution;
 
-        mI2cDevice.writeRegByte(REG_CMD2, value);
+        bus.writeRegByte(SLAVE_ADDRESS, REG_CMD2, value);
     }
 
     /**
@@ -225,7 +238,7 @@ class ISL29034 extends BaseI2C implements IISL29034 {
      */
     private float readADC() throws IOException {
         byte[] buffer = new byte[2];
-        mI2cDevice.readRegBuffer(REG_DATA_L, buffer, 2);
+        mBus.readRegBuffer(SLAVE_ADDRESS, REG_DATA_L, buffer, 2);
         return convert(decodeShort(buffer, 0));
     }
 
@@ -241,19 +254,18 @@ class ISL29034 extends BaseI2C implements IISL29034 {
     }
 
     /**
-     * 管理用スレッド.
+     * 管理用のPoll.
      */
-    private class WatchThread extends Thread {
-        /**
-         * 停止フラグ.
-         */
-        private boolean mStopFlag;
-
+    private class WatchPoll extends I2CBusScheduler.Poll {
         /**
          * リスナー.
          */
         private List<OnAmbientLightListener> mListeners = new CopyOnWriteArrayList<>();
 
+        WatchPoll() {
+            super(SLAVE_ADDRESS, REG_DATA_L, 2, INTERVAL);
+        }
+
         /**
          * リスナーを追加します.
          * @param listener 追加するリスナー
@@ -271,6 +283,13 @@ class ISL29034 extends BaseI2C implements IISL29034 {
             mListeners.remove(listener);
         }
 
+        /**
+         * リスナーを全て削除します.
+         */
+        void clearListener() {
+            mListeners.clear();
+        }
+
         /**
          * 登録されているリスナーが空か確認します.
          * @return 空の場合はtrue、それ以外はfalse
@@ -279,37 +298,30 @@ class ISL29034 extends BaseI2C implements IISL29034 {
             return mListeners.isEmpty();
         }
 
-        /**
-         * 監視を停止します.
-         */
-        void stopWatch() {
-            mListeners.clear();
-            mStopFlag = true;
-            interrupt();
+        @Override
+        void onStart(final I2CBus bus) throws IOException {
+            setISL29034(bus);
         }
 
         @Override
-        public void run() {
-            try {
-                setISL29034();
-
-                while (!mStopFlag) {
-                    try {
-                        Thread.sleep(33);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-
-                    double lux = readADC();
-                    for (OnAmbientLightListener l : mListeners) {
-                        l.onData(lux);
-                    }
-                }
-            } catch (IOException e) {
-                for (OnAmbientLightListener l : mListeners) {
-                    l.onError(e.getMessage());
+        void onData(final byte[] data) {
+            double lux = convert(decodeShort(data, 0));
+            for (OnAmbientLightListener l : mListeners) {
+                l.onData(lux);
+            }
+        }
+
+        @Override
+        void onError(final IOException e) {
+            for (OnAmbientLightListener l : mListeners) {
+                l.onError(e.getMessage());
+            }
+            mListeners.clear();
+
+            synchronized (ISL29034.this) {
+                if (mWatchPoll == this) {
+                    mWatchPoll = null;
                 }
-                mListeners.clear();
             }
         }
     }
@@ -1,7 +1,5 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.things;
 
-import com.google.android.things.pio.I2cDevice;
-
 import org.deviceconnect.android.deviceplugin.fabo.device.ILIDARLiteV3;
 
 import java.io.IOException;
@@ -13,9 +11,32 @@ class LIDARLiteV3 extends BaseI2C implements ILIDARLiteV3 {
     private static final byte SLAVE_ADDRESS = 0x62;
 
     /**
-     * I2Cデバイス.
+     * 距離の計測開始を行うレジスタ.
+     */
+    private static final int REG_ACQ_COMMAND = 0x00;
+
+    /**
+     * 距離を読み込むレジスタ.
+     * <p>
+     * 0x0F(FULL_DELAY_HIGH)に連続読み込みのフラグ(0x80)を付けています。
+     * </p>
+     */
+    private static final int REG_FULL_DELAY = 0x8F;
+
+    /**
+     * 距離を取得する周期(ms).
+     */
+    private static final long INTERVAL = 33;
+
+    /**
+     * I2Cバス.
+     */
+    private final I2CBusScheduler mBus;
+
+    /**
+     * I2Cデバイスを開けた場合はtrue.
      */
-    private I2cDevice mI2cDevice;
+    private final boolean mOpened;
 
     /**
      * 読み込み用バッファ.
@@ -23,16 +44,17 @@ class LIDARLiteV3 extends BaseI2C implements ILIDARLiteV3 {
     private final byte[] mBuffer = new byte[2];
 
     /**
-     * 監視スレッド.
+     * 監視用のPoll.
      */
-    private WatchThread mWatchThread;
+    private WatchPoll mWatchPoll;
 
     /**
      * コンストラクタ.
      * @param control コントローラ
      */
     LIDARLiteV3(final FaBoThingsDeviceControl control) {
-        mI2cDevice = control.getI2cDevice(SLAVE_ADDRESS);
+        mBus = control.getI2CBusScheduler();
+        mOpened = control.getI2cDevice(SLAVE_ADDRESS) != null;
     }
 
     @Override
@@ -41,7 +63,7 @@ class LIDARLiteV3 extends BaseI2C implements ILIDARLiteV3 {
             listener.onError("LIDARLiteV3 is not connect.");
         } else {
             try {
-                setLIDARLiteConfig(1);
+                setLIDARLiteConfig(mBus, 1);
                 listener.onData(readDistance());
             } catch (IOException e) {
                 listener.onError(e.getMessage());
@@ -54,122 +76,131 @@ class LIDARLiteV3 extends BaseI2C implements ILIDARLiteV3 {
         if (!checkDevice()) {
             listener.onError("LIDARLiteV3 is not connect.");
         } else {
-            if (mWatchThread == null) {
-                mWatchThread = new WatchThread();
-                mWatchThread.addListener(listener);
-                mWatchThread.start();
+            if (mWatchPoll == null) {
+                mWatchPoll = new WatchPoll();
+                mWatchPoll.addListener(listener);
+                mBus.addPoll(mWatchPoll);
             } else {
-                mWatchThread.addListener(listener);
+                mWatchPoll.addListener(listener);
             }
         }
     }
 
     @Override
     public synchronized void stopRead(final OnLIDARLiteListener listener) {
-        if (mWatchThread != null) {
-            mWatchThread.removeListener(listener);
-            if (mWatchThread.isEmptyListener()) {
-                mWatchThread.stopWatch();
-                mWatchThread = null;
+        if (mWatchPoll != null) {
+            mWatchPoll.removeListener(listener);
+            if (mWatchPoll.isEmptyListener()) {
+                mBus.removePoll(mWatchPoll);
+                mWatchPoll = null;
             }
         }
     }
 
     @Override
-    void destroy() {
-        if (mWatchThread != null) {
-            mWatchThread.stopWatch();
-            mWatchThread = null;
+    synchronized void destroy() {
+        if (mWatchPoll != null) {
+            mBus.removePoll(mWatchPoll);
+            mWatchPoll.clearListener();
+            mWatchPoll = null;
         }
     }
 
     /**
-     * 接続されているデバイスがADXL345か確認を行う.
-     * @return ADXL345ならtrue、それ以外ならfalse
+     * 接続されているデバイスがLIDARLite v3か確認を行う.
+     * @return LIDARLite v3ならtrue、それ以外ならfalse
      */
     private boolean checkDevice() {
-        if (mI2cDevice == null) {
-            return false;
-        } else {
-            return true;
-        }
+        return mOpened;
     }
 
     /**
      * LIDARLite v3の設定を行います.
+     * @param bus I2Cバス
      * @param configuration 設定番号
      * @throws IOException 設定に失敗した場合に発生
      */
-    private synchronized void setLIDARLiteConfig(final int configuration) throws IOException {
+    private void setLIDARLiteConfig(final I2CBus bus, final int configuration) throws IOException {
         switch (configuration) {
             case 0: // Default mode, balanced performance
-                mI2cDevice.writeRegByte(0x02, (byte) 0x80); // Default
-                mI2cDevice.writeRegByte(0x04, (byte) 0x08); // Default
-                mI2cDevice.writeRegByte(0x1C, (byte) 0x00); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x02, (byte) 0x80); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x04, (byte) 0x08); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x1C, (byte) 0x00); // Default
                 break;
 
             case 1: // Short range, high speed
-                mI2cDevice.writeRegByte(0x02, (byte) 0x1d);
-                mI2cDevice.writeRegByte(0x04, (byte) 0x08); // Default
-                mI2cDevice.writeRegByte(0x1c, (byte) 0x00); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x02, (byte) 0x1d);
+                bus.writeRegByte(SLAVE_ADDRESS, 0x04, (byte) 0x08); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x1c, (byte) 0x00); // Default
                 break;
 
             case 2: // Default range, higher speed short range
-                mI2cDevice.writeRegByte(0x02, (byte) 0x80); // Default
-                mI2cDevice.writeRegByte(0x04, (byte) 0x00);
-                mI2cDevice.writeRegByte(0x1c, (byte) 0x00); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x02, (byte) 0x80); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x04, (byte) 0x00);
+                bus.writeRegByte(SLAVE_ADDRESS, 0x1c, (byte) 0x00); // Default
                 break;
 
             case 3: // Maximum range
-                mI2cDevice.writeRegByte(0x02, (byte) 0xff);
-                mI2cDevice.writeRegByte(0x04, (byte) 0x08); // Default
-                mI2cDevice.writeRegByte(0x1c, (byte) 0x00); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x02, (byte) 0xff);
+                bus.writeRegByte(SLAVE_ADDRESS, 0x04, (byte) 0x08); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x1c, (byte) 0x00); // Default
                 break;
 
             case 4: // High sensitivity detection, high erroneous measurements
-                mI2cDevice.writeRegByte(0x02, (byte) 0x80); // Default
-                mI2cDevice.writeRegByte(0x04, (byte) 0x08); // Default
-                mI2cDevice.writeRegByte(0x1c, (byte) 0x80);
+                bus.writeRegByte(SLAVE_ADDRESS, 0x02, (byte) 0x80); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x04, (byte) 0x08); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x1c, (byte) 0x80);
                 break;
 
             case 5: // Low sensitivity detection, low erroneous measurements
-                mI2cDevice.writeRegByte(0x02, (byte) 0x80); // Default
-                mI2cDevice.writeRegByte(0x04, (byte) 0x08); // Default
-                mI2cDevice.writeRegByte(0x1c, (byte) 0xb0);
+                bus.writeRegByte(SLAVE_ADDRESS, 0x02, (byte) 0x80); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x04, (byte) 0x08); // Default
+                bus.writeRegByte(SLAVE_ADDRESS, 0x1c, (byte) 0xb0);
                 break;
         }
     }
 
+    /**
+     * 距離の計測を開始します.
+     * @param bus I2Cバス
+     * @throws IOException 計測の開始に失敗した場合に発生
+     */
+    private void startAcquisition(final I2CBus bus) throws IOException {
+        bus.writeRegByte(SLAVE_ADDRESS, REG_ACQ_COMMAND, (byte) 0x04);
+    }
+
     /**
      * 距離センサーの値を取得します.
      * @return 距離
      * @throws IOException 距離センサーの値の読み込みに失敗した場合に発生
      */
     private synchronized int readDistance() throws IOException {
-        mI2cDevice.writeRegByte(0x00, (byte) 0x04);
+        startAcquisition(mBus);
         try {
             Thread.sleep(3);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        mI2cDevice.readRegBuffer(0x8F, mBuffer, mBuffer.length);
+        mBus.readRegBuffer(SLAVE_ADDRESS, REG_FULL_DELAY, mBuffer, mBuffer.length);
         return decodeUShort2(mBuffer, 0);
     }
 
     /**
-     * 距離センサーを監視するクラス.
+     * 距離センサーを監視するPoll.
+     * <p>
+     * 読み込んだ後に次の計測を開始しておくことで、計測の完了をバスのスレッドで待たないようにします。
+     * </p>
      */
-    private class WatchThread extends Thread {
-        /**
-         * 停止フラグ.
-         */
-        private boolean mStopFlag;
-
+    private class WatchPoll extends I2CBusScheduler.Poll {
         /**
          * リスナー.
          */
         private List<OnLIDARLiteListener> mListeners = new CopyOnWriteArrayList<>();
 
+        WatchPoll() {
+            super(SLAVE_ADDRESS, REG_FULL_DELAY, 2, INTERVAL);
+        }
+
         /**
          * リスナーを追加します.
          * @param listener 追加するリスナー
@@ -187,6 +218,13 @@ class LIDARLiteV3 extends BaseI2C implements ILIDARLiteV3 {
             mListeners.remove(listener);
         }
 
+        /**
+         * リスナーを全て削除します.
+         */
+        void clearListener() {
+            mListeners.clear();
+        }
+
         /**
          * 登録されているリスナーが空か確認します.
          * @return 空の場合はtrue、それ以外はfalse
@@ -195,38 +233,36 @@ class LIDARLiteV3 extends BaseI2C implements ILIDARLiteV3 {
             return mListeners.isEmpty();
         }
 
-        /**
-         * 監視を停止します.
-         */
-        void stopWatch() {
-            mListeners.clear();
-            mStopFlag = true;
-            interrupt();
+        @Override
+        void onStart(final I2CBus bus) throws IOException {
+            setLIDARLiteConfig(bus, 1);
+            startAcquisition(bus);
         }
 
         @Override
-        public void run() {
-            try {
-                setLIDARLiteConfig(1);
+        void onPolled(final I2CBus bus) throws IOException {
+            startAcquisition(bus);
+        }
 
-                while (!mStopFlag) {
-                    int distance = readDistance();
+        @Override
+        void onData(final byte[] data) {
+            int distance = decodeUShort2(data, 0);
+            for (OnLIDARLiteListener l : mListeners) {
+                l.onData(distance);
+            }
+        }
 
-                    for (OnLIDARLiteListener l : mListeners) {
-                        l.onData(distance);
-                    }
+        @Override
+        void onError(final IOException e) {
+            for (OnLIDARLiteListener l : mListeners) {
+                l.onError(e.getMessage());
+            }
+            mListeners.clear();
 
-                    try {
-                        Thread.sleep(33);
-                    } catch (InterruptedException e) {
-                        break;
-                    }
-                }
-            } catch (IOException e) {
-                for (OnLIDARLiteListener l : mListeners) {
-                    l.onError(e.getMessage());
+            synchronized (LIDARLiteV3.this) {
+                if (mWatchPoll == this) {
+                    mWatchPoll = null;
                 }
-                mListeners.clear();
             }
         }
     }
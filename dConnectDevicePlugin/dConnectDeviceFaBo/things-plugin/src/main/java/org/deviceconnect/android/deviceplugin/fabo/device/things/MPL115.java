@@ -1,7 +1,5 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.things;
 
-import com.google.android.things.pio.I2cDevice;
-
 import org.deviceconnect.android.deviceplugin.fabo.device.IMPL115;
 
 import java.io.IOException;
@@ -33,16 +31,23 @@ class MPL115 extends BaseI2C implements IMPL115 {
     private static final int CONVERT = 0x12;
 
     /**
-     * I2Cデバイス.
+     * I2Cバス.
      */
-    private I2cDevice mI2cDevice;
+    private final I2CBusScheduler mBus;
+
+    /**
+     * I2Cデバイスを開けた場合はtrue.
+     */
+    private final boolean mOpened;
+
     private float mA0;
     private float mB1;
     private float mB2;
     private float mC12;
 
     MPL115(final FaBoThingsDeviceControl control) {
-        mI2cDevice = control.getI2cDevice(SLAVE_ADDRESS);
+        mBus = control.getI2CBusScheduler();
+        mOpened = control.getI2cDevice(SLAVE_ADDRESS) != null;
     }
 
     @Override
@@ -53,14 +58,14 @@ class MPL115 extends BaseI2C implements IMPL115 {
             try {
                 readCoef();
 
-                mI2cDevice.writeRegByte(CONVERT, (byte) 0x01);
+                mBus.writeRegByte(SLAVE_ADDRESS, CONVERT, (byte) 0x01);
                 try {
                     Thread.sleep(10);
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
                 byte[] buffer = new byte[4];
-                mI2cDevice.readRegBuffer(PADC_MSB, buffer, 4);
+                mBus.readRegBuffer(SLAVE_ADDRESS, PADC_MSB, buffer, 4);
 
                 int padc = (((buffer[0] & 0xFF) << 8) | (buffer[1] & 0xFF)) >> 6;
                 int tadc = (((buffer[2] & 0xFF) << 8) | (buffer[3] & 0xFF)) >> 6;
@@ -81,7 +86,7 @@ class MPL115 extends BaseI2C implements IMPL115 {
      * @return MPL115ならtrue、それ以外ならfalse
      */
     private boolean checkDevice() {
-        return mI2cDevice != null;
+        return mOpened;
     }
 
     /**
@@ -90,7 +95,7 @@ class MPL115 extends BaseI2C implements IMPL115 {
      */
     private void readCoef() throws IOException {
         byte[] data = new byte[8];
-        mI2cDevice.readRegBuffer(A0_MSB, data, 8);
+        mBus.readRegBuffer(SLAVE_ADDRESS, A0_MSB, data, 8);
 
         mA0 = dataConv(data[1], data[0]) / (float) (1 << 3);
         mB1 = dataConv(data[3], data[2]) / (float) (1 << 13);
@@ -1,7 +1,5 @@
 package org.deviceconnect.android.deviceplugin.fabo.device.things;
 
-import com.google.android.things.pio.I2cDevice;
-
 import org.deviceconnect.android.deviceplugin.fabo.device.IVCNL4010;
 
 import java.io.IOException;
@@ -84,9 +82,22 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
     private static final double THRESHOLD = 1.8;
 
     /**
-     * I2Cデバイス.
+     * 値を取得する周期(ms).
+     * <p>
+     * ProximityとAmbient Lightのレジスタは連続しているので、同じ周期にして1回の読み込みにまとめます。
+     * </p>
+     */
+    private static final long INTERVAL = 33;
+
+    /**
+     * I2Cバス.
+     */
+    private final I2CBusScheduler mBus;
+
+    /**
+     * I2Cデバイスを開けた場合はtrue.
      */
-    private I2cDevice mI2cDevice;
+    private final boolean mOpened;
 
     /**
      * 一時的にデータを格納するバッファ.
@@ -94,21 +105,22 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
     private byte[] mBuffer = new byte[2];
 
     /**
-     * Proximityの値を監視するスレッド.
+     * Proximityの値を監視するPoll.
      */
-    private ProximityWatchTread mProximityWatchTread;
+    private ProximityWatchPoll mProximityWatchPoll;
 
     /**
-     * AmbientLightの値を監視するスレッド.
+     * AmbientLightの値を監視するPoll.
      */
-    private AmbientLightWatchThread mAmbientLightWatchThread;
+    private AmbientLightWatchPoll mAmbientLightWatchPoll;
 
     /**
      * コンストラクタ.
      * @param control コントローラ
      */
     VCNL4010(final FaBoThingsDeviceControl control) {
-        mI2cDevice = control.getI2cDevice(SLAVE_ADDRESS);
+        mBus = control.getI2CBusScheduler();
+        mOpened = control.getI2cDevice(SLAVE_ADDRESS) != null;
     }
 
     @Override
@@ -117,7 +129,7 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
             listener.onError("VCNL4010 is not connect.");
         } else {
             try {
-                setVCNL4010();
+                setVCNL4010(mBus);
 
                 try {
                     Thread.sleep(33);
@@ -137,23 +149,23 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
         if (!checkDevice()) {
             listener.onError("VCNL4010 is not connect.");
         } else {
-            if (mProximityWatchTread == null) {
-                mProximityWatchTread = new ProximityWatchTread();
-                mProximityWatchTread.addListener(listener);
-                mProximityWatchTread.start();
+            if (mProximityWatchPoll == null) {
+                mProximityWatchPoll = new ProximityWatchPoll();
+                mProximityWatchPoll.addListener(listener);
+                mBus.addPoll(mProximityWatchPoll);
             } else {
-                mProximityWatchTread.addListener(listener);
+                mProximityWatchPoll.addListener(listener);
             }
         }
     }
 
     @Override
     public synchronized void stopProximity(final OnProximityListener listener) {
-        if (mProximityWatchTread != null) {
-            mProximityWatchTread.removeListener(listener);
-            if (mProximityWatchTread.isEmptyListener()) {
-                mProximityWatchTread.stopWatch();
-                mProximityWatchTread = null;
+        if (mProximityWatchPoll != null) {
+            mProximityWatchPoll.removeListener(listener);
+            if (mProximityWatchPoll.isEmptyListener()) {
+                mBus.removePoll(mProximityWatchPoll);
+                mProximityWatchPoll = null;
             }
         }
     }
@@ -164,7 +176,7 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
             listener.onError("VCNL4010 is not connect.");
         } else {
             try {
-                setVCNL4010();
+                setVCNL4010(mBus);
 
                 try {
                     Thread.sleep(33);
@@ -184,37 +196,39 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
         if (!checkDevice()) {
             listener.onError("VCNL4010 is not connect.");
         } else {
-            if (mAmbientLightWatchThread == null) {
-                mAmbientLightWatchThread = new AmbientLightWatchThread();
-                mAmbientLightWatchThread.addListener(listener);
-                mAmbientLightWatchThread.start();
+            if (mAmbientLightWatchPoll == null) {
+                mAmbientLightWatchPoll = new AmbientLightWatchPoll();
+                mAmbientLightWatchPoll.addListener(listener);
+                mBus.addPoll(mAmbientLightWatchPoll);
             } else {
-                mAmbientLightWatchThread.addListener(listener);
+                mAmbientLightWatchPoll.addListener(listener);
             }
         }
     }
 
     @Override
     public synchronized void stopAmbientLight(final OnAmbientLightListener listener) {
-        if (mAmbientLightWatchThread != null) {
-            mAmbientLightWatchThread.removeListener(listener);
-            if (mAmbientLightWatchThread.isEmptyListener()) {
-                mAmbientLightWatchThread.stopWatch();
-                mAmbientLightWatchThread = null;
+        if (mAmbientLightWatchPoll != null) {
+            mAmbientLightWatchPoll.removeListener(listener);
+            if (mAmbientLightWatchPoll.isEmptyListener()) {
+                mBus.removePoll(mAmbientLightWatchPoll);
+                mAmbientLightWatchPoll = null;
             }
         }
     }
 
     @Override
     synchronized void destroy() {
-        if (mProximityWatchTread != null) {
-            mProximityWatchTread.stopWatch();
-            mProximityWatchTread = null;
+        if (mProximityWatchPoll != null) {
+            mBus.removePoll(mProximityWatchPoll);
+            mProximityWatchPoll.clearListener();
+            mProximityWatchPoll = null;
         }
 
-        if (mAmbientLightWatchThread != null) {
-            mAmbientLightWatchThread.stopWatch();
-            mAmbientLightWatchThread = null;
+        if (mAmbientLightWatchPoll != null) {
+            mBus.removePoll(mAmbientLightWatchPoll);
+            mAmbientLightWatchPoll.clearListener();
+            mAmbientLightWatchPoll = null;
         }
     }
 
@@ -223,11 +237,11 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
      * @return VCNL4010ならtrue、それ以外ならfalse
      */
     private boolean checkDevice() {
-        if (mI2cDevice == null) {
+        if (!mOpened) {
             return false;
         } else {
             try {
-                byte deviceId = mI2cDevice.readRegByte(DEVICE_REG);
+                byte deviceId = mBus.readRegByte(SLAVE_ADDRESS, DEVICE_REG);
                 return (deviceId & 0xFF) == DEVICE_ID;
             } catch (IOException e) {
                 return false;
@@ -237,44 +251,49 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
 
     /**
      * VCNL4010の設定を行います.
+     * @param bus I2Cバス
      */
-    private void setVCNL4010() throws IOException {
-        setCommand(CMD_SELFTIMED_EN | CMD_PROX_EN | CMD_ALS_EN);
-        setProxRate(PROX_RATE_250);
-        setLedCurrent(20);
-        setAmbiParm(AMBI_RATE_10 | AMBI_AUTO_OFFSET | AMBI_AVE_NUM_128);
+    private void setVCNL4010(final I2CBus bus) throws IOException {
+        setCommand(bus, CMD_SELFTIMED_EN | CMD_PROX_EN | CMD_ALS_EN);
+        setProxRate(bus, PROX_RATE_250);
+        setLedCurrent(bus, 20);
+        setAmbiParm(bus, AMBI_RATE_10 | AMBI_AUTO_OFFSET | AMBI_AVE_NUM_128);
     }
 
     /**
      * コマンドを送信します.
+     * @param bus I2Cバス
      * @param config 送信するコマンド設定
      */
-    private void setCommand(final int config) throws IOException {
-        mI2cDevice.writeRegByte(REG_CMD, (byte) config);
+    private void setCommand(final I2CBus bus, final int config) throws IOException {
+        bus.writeRegByte(SLAVE_ADDRESS, REG_CMD, (byte) config);
     }
 
     /**
      * Proximityのレートを送信します.
+     * @param bus I2Cバス
      * @param config　送信するレート
      */
-    private void setProxRate(final int config) throws IOException {
-        mI2cDevice.writeRegByte(REG_PROX_RATE, (byte) config);
+    private void setProxRate(final I2CBus bus, final int config) throws IOException {
+        bus.writeRegByte(SLAVE_ADDRESS, REG_PROX_RATE, (byte) config);
     }
 
     /**
      * LED Currentの値を送信します.
+     * @param bus I2Cバス
      * @param config 送信する値
      */
-    private void setLedCurrent(final int config) throws IOException {
-        mI2cDevice.writeRegByte(REG_LED_CRNT, (byte) config);
+    private void setLedCurrent(final I2CBus bus, final int config) throws IOException {
+        bus.writeRegByte(SLAVE_ADDRESS, REG_LED_CRNT, (byte) config);
     }
 
     /**
      * Ambient Lightの設定を送信します.
+     * @param bus I2Cバス
      * @param config 送信する設定
      */
-    private void setAmbiParm(final int config) throws IOException {
-        mI2cDevice.writeRegByte(REG_AMBI_PARM, (byte) config);
+    private void setAmbiParm(final I2CBus bus, final int config) throws IOException {
+        bus.writeRegByte(SLAVE_ADDRESS, REG_AMBI_PARM, (byte) config);
     }
 
     /**
@@ -292,7 +311,7 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
      * @throws IOException Proximityの読み込みに失敗した場合に発生
      */
     private synchronized double readProx() throws IOException {
-        mI2cDevice.readRegBuffer(REG_PROX_DATA_H, mBuffer, 2);
+        mBus.readRegBuffer(SLAVE_ADDRESS, REG_PROX_DATA_H, mBuffer, 2);
         return convert(decodeUShort2(mBuffer, 0));
     }
 
@@ -302,19 +321,14 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
      * @throws IOException Ambient Lightの読み込みに失敗した場合に発生
      */
     private synchronized double readAmbi() throws IOException {
-        mI2cDevice.readRegBuffer(REG_AMBI_DATA_H, mBuffer, 2);
+        mBus.readRegBuffer(SLAVE_ADDRESS, REG_AMBI_DATA_H, mBuffer, 2);
         return decodeUShort2(mBuffer, 0);
     }
 
     /**
-     * 近距離を監視するスレッド.
+     * 近距離を監視するPoll.
      */
-    private class ProximityWatchTread extends Thread {
-        /**
-         * 停止フラグ.
-         */
-        private boolean mStopFlag;
-
+    private class ProximityWatchPoll extends I2CBusScheduler.Poll {
         /**
          * リスナー.
          */
@@ -325,6 +339,10 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
          */
         private double mOldProximity;
 
+        ProximityWatchPoll() {
+            super(SLAVE_ADDRESS, REG_PROX_DATA_H, 2, INTERVAL);
+        }
+
         /**
          * リスナーを追加します.
          * @param listener 追加するリスナー
@@ -342,6 +360,13 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
             mListeners.remove(listener);
         }
 
+        /**
+         * リスナーを全て削除します.
+         */
+        void clearListener() {
+            mListeners.clear();
+        }
+
         /**
          * 登録されているリスナーが空か確認します.
          * @return 空の場合はtrue、それ以外はfalse
@@ -350,60 +375,53 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
             return mListeners.isEmpty();
         }
 
-        /**
-         * 監視を停止します.
-         */
-        void stopWatch() {
-            mListeners.clear();
-            mStopFlag = true;
-            interrupt();
+        @Override
+        void onStart(final I2CBus bus) throws IOException {
+            setVCNL4010(bus);
         }
 
         @Override
-        public void run() {
-            try {
-                setVCNL4010();
-
-                while (!mStopFlag) {
-                    try {
-                        Thread.sleep(33);
-                    } catch (InterruptedException e) {
-                        break;
-                    }
-
-                    double proximity = readProx();
-                    if (mOldProximity > THRESHOLD && proximity < THRESHOLD) {
-                        for (OnProximityListener l : mListeners) {
-                            l.onData(true);
-                        }
-                    } else if (mOldProximity < THRESHOLD && proximity > THRESHOLD) {
-                        for (OnProximityListener l : mListeners) {
-                            l.onData(false);
-                        }
-                    }
-                    mOldProximity = proximity;
+        void onData(final byte[] data) {
+            double proximity = convert(decodeUShort2(data, 0));
+            if (mOldProximity > THRESHOLD && proximity < THRESHOLD) {
+                for (OnProximityListener l : mListeners) {
+                    l.onData(true);
                 }
-            } catch (IOException e) {
+            } else if (mOldProximity < THRESHOLD && proximity > THRESHOLD) {
                 for (OnProximityListener l : mListeners) {
-                    l.onError(e.getMessage());
+                    l.onData(false);
+                }
+            }
+            mOldProximity = proximity;
+        }
+
+        @Override
+        void onError(final IOException e) {
+            for (OnProximityListener l : mListeners) {
+                l.onError(e.getMessage());
+            }
+            mListeners.clear();
+
+            synchronized (VCNL4010.this) {
+                if (mProximityWatchPoll == this) {
+                    mProximityWatchPoll = null;
                 }
             }
         }
     }
 
     /**
-     * 照度を監視するスレッド.
+     * 照度を監視するPoll.
      */
-    private class AmbientLightWatchThread extends Thread {
-        /**
-         * 停止フラグ.
-         */
-        private boolean mStopFlag;
-
+    private class AmbientLightWatchPoll extends I2CBusScheduler.Poll {
         /**
          * リスナー.
          */
-        private List<OnAmbientLightListener> mListeners = new CopyOnWriteArrayList<>();;
+        private List<OnAmbientLightListener> mListeners = new CopyOnWriteArrayList<>();
+
+        AmbientLightWatchPoll() {
+            super(SLAVE_ADDRESS, REG_AMBI_DATA_H, 2, INTERVAL);
+        }
 
         /**
          * リスナーを追加します.
@@ -422,6 +440,13 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
             mListeners.remove(listener);
         }
 
+        /**
+         * リスナーを全て削除します.
+         */
+        void clearListener() {
+            mListeners.clear();
+        }
+
         /**
          * 登録されているリスナーが空か確認します.
          * @return 空の場合はtrue、それ以外はfalse
@@ -430,35 +455,29 @@ class VCNL4010 extends BaseI2C implements IVCNL4010 {
             return mListeners.isEmpty();
         }
 
-        /**
-         * 監視を停止します.
-         */
-        void stopWatch() {
-            mListeners.clear();
-            mStopFlag = true;
-            interrupt();
+        @Override
+        void onStart(final I2CBus bus) throws IOException {
+            setVCNL4010(bus);
         }
 
         @Override
-        public void run() {
-            try {
-                setVCNL4010();
-
-                while (!mStopFlag) {
-                    try {
-                        Thread.sleep(33);
-                    } catch (InterruptedException e) {
-                        break;
-                    }
-
-                    double lux = readAmbi();
-                    for (OnAmbientLightListener l : mListeners) {
-                        l.onData(lux);
-                    }
-                }
-            } catch (IOException e) {
-                for (OnAmbientLightListener l : mListeners) {
-                    l.onError(e.getMessage());
+        void onData(final byte[] data) {
+            double lux = decodeUShort2(data, 0);
+            for (OnAmbientLightListener l : mListeners) {
+                l.onData(lux);
+            }
+        }
+
+        @Override
+        void onError(final IOException e) {
+            for (OnAmbientLightListener l : mListeners) {
+                l.onError(e.getMessage());
+            }
+            mListeners.clear();
+
+            synchronized (VCNL4010.this) {
+                if (mAmbientLightWatchPoll == this) {
+                    mAmbientLightWatchPoll = null;
                 }
             }
         }
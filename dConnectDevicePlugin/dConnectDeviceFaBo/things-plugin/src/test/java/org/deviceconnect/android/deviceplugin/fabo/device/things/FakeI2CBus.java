@@ -0,0 +1,199 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.things;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * テスト用のI2Cバス.
+ * <p>
+ * アドレスごとに256byteのレジスタを持つデバイスをシミュレートします。
+ * 1回のアクセスごとに指定された時間だけバスを占有し、アクセスの記録を残します。
+ * </p>
+ */
+class FakeI2CBus implements I2CBus {
+
+    /**
+     * バスへのアクセスの記録.
+     */
+    static class Transaction {
+        final int mAddress;
+        final int mRegister;
+        final int mLength;
+        final boolean mWrite;
+        final long mTime;
+
+        Transaction(final int address, final int register, final int length, final boolean write) {
+            mAddress = address;
+            mRegister = register;
+            mLength = length;
+            mWrite = write;
+            mTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * アドレスごとのレジスタ.
+     */
+    private final Map<Integer, byte[]> mDevices = new HashMap<>();
+
+    /**
+     * アクセスに失敗させるアドレス.
+     */
+    private final Set<Integer> mFailures = new HashSet<>();
+
+    /**
+     * アクセスの記録.
+     */
+    private final List<Transaction> mTransactions = new ArrayList<>();
+
+    /**
+     * バスにアクセスしたスレッド.
+     */
+    private final Set<Thread> mThreads = new HashSet<>();
+
+    /**
+     * 1回のアクセスでバスを占有する時間(ns).
+     */
+    private final long mLatency;
+
+    /**
+     * アクセス中の数.
+     */
+    private int mActive;
+
+    /**
+     * 同時にアクセスされた場合はtrue.
+     */
+    private volatile boolean mConcurrentAccess;
+
+    /**
+     * バスを占有していた時間の合計(ns).
+     */
+    private long mBusyTime;
+
+    /**
+     * コンストラクタ.
+     * @param latency 1回のアクセスでバスを占有する時間(us)
+     */
+    FakeI2CBus(final long latency) {
+        mLatency = TimeUnit.MICROSECONDS.toNanos(latency);
+    }
+
+    /**
+     * デバイスを追加します.
+     * @param address アドレス
+     * @return デバイスのレジスタ
+     */
+    synchronized byte[] addDevice(final int address) {
+        byte[] registers = new byte[256];
+        mDevices.put(address, registers);
+        return registers;
+    }
+
+    /**
+     * 指定されたアドレスへのアクセスを失敗させます.
+     * @param address アドレス
+     */
+    synchronized void setFailure(final int address) {
+        mFailures.add(address);
+    }
+
+    synchronized List<Transaction> getTransactions() {
+        return new ArrayList<>(mTransactions);
+    }
+
+    synchronized List<Transaction> getReads(final int address) {
+        List<Transaction> reads = new ArrayList<>();
+        for (Transaction t : mTransactions) {
+            if (!t.mWrite && t.mAddress == address) {
+                reads.add(t);
+            }
+        }
+        return reads;
+    }
+
+    synchronized Set<Thread> getThreads() {
+        return new HashSet<>(mThreads);
+    }
+
+    synchronized long getBusyTime() {
+        return mBusyTime;
+    }
+
+    boolean isConcurrentAccess() {
+        return mConcurrentAccess;
+    }
+
+    @Override
+    public byte readRegByte(final int address, final int register) throws IOException {
+        byte[] registers = begin(address, register, 1, false);
+        try {
+            return registers[register & 0xFF];
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void readRegBuffer(final int address, final int register, final byte[] buffer, final int length) throws IOException {
+        byte[] registers = begin(address, register, length, false);
+        try {
+            for (int i = 0; i < length; i++) {
+                buffer[i] = registers[(register + i) & 0xFF];
+            }
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void writeRegByte(final int address, final int register, final byte value) throws IOException {
+        byte[] registers = begin(address, register, 1, true);
+        try {
+            registers[register & 0xFF] = value;
+        } finally {
+            end();
+        }
+    }
+
+    private byte[] begin(final int address, final int register, final int length, final boolean write) throws IOException {
+        byte[] registers;
+        synchronized (this) {
+            if (mActive++ > 0) {
+                mConcurrentAccess = true;
+            }
+            mThreads.add(Thread.currentThread());
+            mTransactions.add(new Transaction(address, register, length, write));
+            registers = mDevices.get(address);
+        }
+
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < mLatency) {
+            LockSupport.parkNanos(mLatency - (System.nanoTime() - start));
+        }
+        synchronized (this) {
+            mBusyTime += System.nanoTime() - start;
+        }
+
+        if (registers == null || isFailure(address)) {
+            end();
+            throw new IOException("No device. address=" + address);
+        }
+        return registers;
+    }
+
+    private synchronized boolean isFailure(final int address) {
+        return mFailures.contains(address);
+    }
+
+    private synchronized void end() {
+        mActive--;
+    }
+}
@@ -0,0 +1,272 @@
+package org.deviceconnect.android.deviceplugin.fabo.device.things;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * I2CBusSchedulerのテスト.
+ */
+public class I2CBusSchedulerTest {
+
+    private FakeI2CBus mBus;
+    private I2CBusScheduler mScheduler;
+
+    /**
+     * 読み込んだ値を記録するPoll.
+     */
+    private static class RecordingPoll extends I2CBusScheduler.Poll {
+        final List<Long> mTimes = Collections.synchronizedList(new ArrayList<Long>());
+        final List<byte[]> mData = Collections.synchronizedList(new ArrayList<byte[]>());
+        final List<Thread> mThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        final AtomicInteger mStartCount = new AtomicInteger();
+        final CountDownLatch mError = new CountDownLatch(1);
+        volatile long mDelay;
+
+        RecordingPoll(final int address, final int register, final int length, final long interval) {
+            super(address, register, length, interval);
+        }
+
+        @Override
+        void onStart(final I2CBus bus) throws IOException {
+            mStartCount.incrementAndGet();
+            bus.writeRegByte(getAddress(), 0x00, (byte) 0x01);
+        }
+
+        @Override
+        void onData(final byte[] data) {
+            mTimes.add(System.nanoTime());
+            mData.add(data);
+            mThreads.add(Thread.currentThread());
+            if (mDelay > 0) {
+                try {
+                    Thread.sleep(mDelay);
+                } catch (InterruptedException e) {
+                    // ignore.
+                }
+            }
+        }
+
+        @Override
+        void onError(final IOException e) {
+            mError.countDown();
+        }
+
+        /**
+         * 読み込み間隔の平均を取得します.
+         * @return 平均(ms)
+         */
+        double getAverageInterval() {
+            synchronized (mTimes) {
+                long total = mTimes.get(mTimes.size() - 1) - mTimes.get(0);
+                return total / 1e6 / (mTimes.size() - 1);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mBus = new FakeI2CBus(200);
+        mScheduler = new I2CBusScheduler(mBus);
+        mScheduler.start();
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.stop();
+    }
+
+    @Test
+    public void pollsAtRequestedRate() throws Exception {
+        mBus.addDevice(0x10);
+        mBus.addDevice(0x20);
+        mBus.addDevice(0x30);
+        RecordingPoll fast = new RecordingPoll(0x10, 0x02, 2, 10);
+        RecordingPoll middle = new RecordingPoll(0x20, 0x02, 6, 25);
+        RecordingPoll slow = new RecordingPoll(0x30, 0x02, 2, 50);
+        mScheduler.addPoll(fast);
+        mScheduler.addPoll(middle);
+        mScheduler.addPoll(slow);
+
+        Thread.sleep(1000);
+        mScheduler.stop();
+        Thread.sleep(50);
+
+        assertEquals(1, fast.mStartCount.get());
+        assertRate(fast, 10, 1000);
+        assertRate(middle, 25, 1000);
+        assertRate(slow, 50, 1000);
+    }
+
+    @Test
+    public void onlyBusThreadAccessesBus() throws Exception {
+        mBus.addDevice(0x10);
+        mBus.addDevice(0x20);
+        mScheduler.addPoll(new RecordingPoll(0x10, 0x02, 2, 5));
+        mScheduler.addPoll(new RecordingPoll(0x20, 0x02, 2, 7));
+
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] callers = new Thread[4];
+        for (int i = 0; i < callers.length; i++) {
+            final int register = i;
+            callers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            mScheduler.writeRegByte(0x10, 0x40 + register, (byte) j);
+                            if (mScheduler.readRegByte(0x10, 0x40 + register) != (byte) j) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            callers[i].start();
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        assertEquals(0, failures.get());
+        assertFalse(mBus.isConcurrentAccess());
+        assertEquals(1, mBus.getThreads().size());
+    }
+
+    @Test
+    public void adjacentRegistersAreReadInOneBurst() throws Exception {
+        byte[] registers = mBus.addDevice(0x13);
+        registers[0x85] = 0x11;
+        registers[0x86] = 0x22;
+        registers[0x87] = 0x33;
+        registers[0x88] = 0x44;
+        RecordingPoll ambient = new RecordingPoll(0x13, 0x85, 2, 20);
+        RecordingPoll proximity = new RecordingPoll(0x13, 0x87, 2, 20);
+        mScheduler.addPoll(ambient);
+        Thread.sleep(7);
+        mScheduler.addPoll(proximity);
+
+        Thread.sleep(500);
+        mScheduler.stop();
+        Thread.sleep(50);
+
+        int samples = ambient.mData.size() + proximity.mData.size();
+        List<FakeI2CBus.Transaction> reads = mBus.getReads(0x13);
+        int bursts = 0;
+        for (FakeI2CBus.Transaction read : reads) {
+            if (read.mRegister == 0x85 && read.mLength == 4) {
+                bursts++;
+            }
+        }
+        assertTrue("bursts=" + bursts + " reads=" + reads.size(), bursts >= reads.size() - 2);
+        assertTrue("samples=" + samples + " reads=" + reads.size(), reads.size() * 2 <= samples + 2);
+
+        byte[] a = ambient.mData.get(ambient.mData.size() - 1);
+        byte[] p = proximity.mData.get(proximity.mData.size() - 1);
+        assertEquals(0x11, a[0]);
+        assertEquals(0x22, a[1]);
+        assertEquals(0x33, p[0]);
+        assertEquals(0x44, p[1]);
+    }
+
+    @Test
+    public void busUtilizationMatchesWork() throws Exception {
+        mScheduler.stop();
+        mBus = new FakeI2CBus(2000);
+        mScheduler = new I2CBusScheduler(mBus);
+        mScheduler.start();
+
+        RecordingPoll[] polls = new RecordingPoll[4];
+        for (int i = 0; i < polls.length; i++) {
+            mBus.addDevice(0x10 + i);
+            polls[i] = new RecordingPoll(0x10 + i, 0x02, 2, 20);
+            mScheduler.addPoll(polls[i]);
+        }
+
+        long start = System.nanoTime();
+        Thread.sleep(1000);
+        long elapsed = System.nanoTime() - start;
+        long busy = mScheduler.getBusyTime();
+        long busBusy = mBus.getBusyTime();
+        mScheduler.stop();
+
+        // 4センサー x 2ms / 20ms = 40%
+        double utilization = (double) busy / elapsed;
+        System.out.println(String.format("I2CBusScheduler: utilization %.1f%%, bus %.1f%%",
+                utilization * 100, (double) busBusy / elapsed * 100));
+        assertTrue("utilization=" + utilization, utilization > 0.30 && utilization < 0.50);
+        assertTrue(busy >= busBusy * 0.9);
+        for (RecordingPoll poll : polls) {
+            assertRate(poll, 20, 1000);
+        }
+    }
+
+    @Test
+    public void slowListenerDoesNotDelayBus() throws Exception {
+        mBus.addDevice(0x10);
+        mBus.addDevice(0x20);
+        RecordingPoll slow = new RecordingPoll(0x10, 0x02, 2, 10);
+        slow.mDelay = 40;
+        RecordingPoll fast = new RecordingPoll(0x20, 0x02, 2, 10);
+        mScheduler.addPoll(slow);
+        mScheduler.addPoll(fast);
+
+        Thread.sleep(500);
+        mScheduler.stop();
+
+        List<FakeI2CBus.Transaction> reads = mBus.getReads(0x20);
+        double interval = (reads.get(reads.size() - 1).mTime - reads.get(1).mTime) / 1e6 / (reads.size() - 2);
+        assertEquals(10, interval, 2.5);
+
+        for (Thread thread : fast.mThreads) {
+            assertFalse(mBus.getThreads().contains(thread));
+        }
+    }
+
+    @Test
+    public void failedPollIsRemoved() throws Exception {
+        mBus.addDevice(0x10);
+        RecordingPoll poll = new RecordingPoll(0x10, 0x02, 2, 10);
+        mScheduler.addPoll(poll);
+        Thread.sleep(50);
+
+        mBus.setFailure(0x10);
+        assertTrue(poll.mError.await(1, TimeUnit.SECONDS));
+        int count = mBus.getReads(0x10).size();
+        Thread.sleep(50);
+        assertEquals(count, mBus.getReads(0x10).size());
+    }
+
+    @Test
+    public void callAfterStopFails() {
+        mScheduler.stop();
+        try {
+            mScheduler.readRegByte(0x10, 0x00);
+            fail("IOException must be thrown.");
+        } catch (IOException e) {
+            // OK
+        }
+    }
+
+    private static void assertRate(final RecordingPoll poll, final long interval, final long duration) {
+        int expected = (int) (duration / interval);
+        int count = poll.mTimes.size();
+        assertTrue("interval=" + interval + " count=" + count, count >= expected * 0.8 && count <= expected + 1);
+        assertEquals(interval, poll.getAverageInterval(), interval * 0.1);
+    }
+}
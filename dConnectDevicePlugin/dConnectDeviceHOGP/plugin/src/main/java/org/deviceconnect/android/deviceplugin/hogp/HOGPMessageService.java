@@ -284,7 +284,7 @@ public class HOGPMessageService extends DConnectMessageService {
         mHOGPServer.setManufacturerName(getPackageName());
         mHOGPServer.setDeviceName(appName);
         mHOGPServer.setSerialNumber("" + versionCode);
-        mHOGPServer.setDataSendingRate(10);
+        mHOGPServer.setNotificationTimeout(100);
         mHOGPServer.start();
     }
 
@@ -42,12 +42,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.deviceconnect.android.deviceplugin.hogp.util.BleUuidUtils.CHARACTERISTIC_BATTERY_LEVEL;
 import static org.deviceconnect.android.deviceplugin.hogp.util.BleUuidUtils.CHARACTERISTIC_HID_CONTROL_POINT;
@@ -123,9 +121,9 @@ public abstract class AbstractHOGPServer {
     private byte[] mSerialNumber;
 
     /**
-     * HID Input Report
+     * HID Input Reportを送信するパイプライン.
      */
-    private final Queue<ReportHolder> mInputReportQueue = new ConcurrentLinkedQueue<>();
+    private InputReportPipeline mInputReportPipeline;
 
     /**
      * Bluetoothデバイスの処理を同期的に処理するためのハンドラ.
@@ -138,14 +136,14 @@ public abstract class AbstractHOGPServer {
     private HandlerThread mHandlerThread;
 
     /**
-     * デバイスに送信するタイマー.
+     * デバイスにHIDを送信するスレッド.
      */
-    private Timer mTimer;
+    private ScheduledExecutorService mInputReportExecutor;
 
     /**
-     * デバイスにHIDを送る送信レート.
+     * HID送信完了通知のタイムアウト(ms).
      */
-    private int mDataSendingRate = 10;
+    private int mNotificationTimeout = 100;
 
     /**
      * デバイス接続イベントを通知するリスナー.
@@ -191,11 +189,18 @@ public abstract class AbstractHOGPServer {
     }
 
     /**
-     * HIDデータ送信レートを設定します.
-     * @param dataSendingRate 送信レート
+     * HIDデータ送信完了通知のタイムアウトを設定します.
+     * <p>
+     * HIDデータは送信完了通知を受けてから次のデータを送信します。
+     * 送信完了通知が届かない場合には、ここで設定した時間が経過してから次のデータを送信します。
+     * </p>
+     * @param timeout タイムアウト(ms)
      */
-    public void setDataSendingRate(final int dataSendingRate) {
-        mDataSendingRate = dataSendingRate;
+    public void setNotificationTimeout(final int timeout) {
+        mNotificationTimeout = timeout;
+        if (mInputReportPipeline != null) {
+            mInputReportPipeline.setTimeout(timeout);
+        }
     }
 
     /**
@@ -269,17 +274,68 @@ public abstract class AbstractHOGPServer {
      */
     abstract void onOutputReport(final byte[] outputReport);
 
+    /**
+     * 送信待ちのHIDデータと新しいHIDデータを1つにまとめます.
+     * <p>
+     * まとめられない場合にはnullを返却します。デフォルトでは全てのデータをそのまま送信します。
+     * </p>
+     * @param pending 送信待ちのHIDデータ
+     * @param inputReport 新しいHIDデータ
+     * @return まとめたHIDデータ
+     */
+    byte[] mergeInputReport(final byte[] pending, final byte[] inputReport) {
+        return null;
+    }
+
     /**
      * 送信するHIDデータを追加します.
      * <p>
      * deviceにnullが指定された場合には接続されているデバイス全てに送信します。
+     * 送信待ちのデータとまとめられる場合には、{@link #mergeInputReport(byte[], byte[])} で1つのデータにまとめます。
      * </p>
      * @param device 送信先のBluetoothデバイス
      * @param inputReport 追加するデータ
      */
     final void addInputReport(final BluetoothDevice device, final byte[] inputReport) {
-        if (inputReport != null && inputReport.length > 0) {
-            mInputReportQueue.offer(new ReportHolder(device, inputReport));
+        InputReportPipeline pipeline = mInputReportPipeline;
+        if (pipeline == null || inputReport == null || inputReport.length == 0) {
+            return;
+        }
+
+        if (device != null) {
+            pipeline.offer(device.getAddress(), inputReport);
+        } else {
+            for (BluetoothDevice d : getDevices()) {
+                pipeline.offer(d.getAddress(), inputReport);
+            }
+        }
+    }
+
+    /**
+     * HIDデータをデバイスに通知します.
+     * <p>
+     * 送信スレッドから呼び出されるので、キャラクタリスティックに値を設定してから通知するまでの間に
+     * 他のデータで値が上書きされることはありません。
+     * </p>
+     * @param address 送信先のアドレス
+     * @param inputReport 送信するデータ
+     * @return 通知を開始できた場合はtrue、それ以外はfalse
+     */
+    private boolean notifyInputReport(final String address, final byte[] inputReport) {
+        BluetoothDevice device;
+        synchronized (mBluetoothDevicesMap) {
+            device = mBluetoothDevicesMap.get(address);
+        }
+        BluetoothGattServer gattServer = mGattServer;
+        if (device == null || gattServer == null || mInputReportCharacteristic == null) {
+            return false;
+        }
+
+        try {
+            mInputReportCharacteristic.setValue(inputReport);
+            return gattServer.notifyCharacteristicChanged(device, mInputReportCharacteristic, false);
+        } catch (final Throwable ignored) {
+            return false;
         }
     }
 
@@ -309,38 +365,21 @@ public abstract class AbstractHOGPServer {
         addService(setUpDeviceInformationService());
         addService(setUpBatteryService());
 
-        mTimer = new Timer();
-        mTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                final ReportHolder holder = mInputReportQueue.poll();
-                if (holder != null && mInputReportCharacteristic != null) {
-                    mInputReportCharacteristic.setValue(holder.getReport());
-                    mHandler.post(new Runnable() {
-                        private void notifyCharacteristic(final BluetoothDevice device) {
-                            try {
-                                if (mGattServer != null) {
-                                    mGattServer.notifyCharacteristicChanged(device, mInputReportCharacteristic, false);
-                                }
-                            } catch (final Throwable ignored) {
-                                // do nothing.
-                            }
-                        }
-                        @Override
-                        public void run() {
-                            if (holder.getDevice() != null) {
-                                notifyCharacteristic(holder.getDevice());
-                            } else {
-                                Set<BluetoothDevice> devices = getDevices();
-                                for (BluetoothDevice device : devices) {
-                                    notifyCharacteristic(device);
-                                }
-                            }
-                        }
-                    });
-                }
-            }
-        }, 0, mDataSendingRate);
+        mInputReportExecutor = Executors.newSingleThreadScheduledExecutor();
+        mInputReportPipeline = new InputReportPipeline(mInputReportExecutor,
+                new InputReportPipeline.ReportMerger() {
+                    @Override
+                    public byte[] merge(final byte[] pending, final byte[] report) {
+                        return mergeInputReport(pending, report);
+                    }
+                },
+                new InputReportPipeline.ReportSender() {
+                    @Override
+                    public boolean send(final String address, final byte[] report) {
+                        return notifyInputReport(address, report);
+                    }
+                });
+        mInputReportPipeline.setTimeout(mNotificationTimeout);
 
         startAdvertising();
     }
@@ -600,9 +639,13 @@ public abstract class AbstractHOGPServer {
                 }
 
                 try {
-                    if (mTimer != null) {
-                        mTimer.cancel();
-                        mTimer = null;
+                    if (mInputReportExecutor != null) {
+                        mInputReportExecutor.shutdownNow();
+                        mInputReportExecutor = null;
+                    }
+                    if (mInputReportPipeline != null) {
+                        mInputReportPipeline.clear();
+                        mInputReportPipeline = null;
                     }
 
                     if (mGattServer != null) {
@@ -732,6 +775,11 @@ public abstract class AbstractHOGPServer {
             mBluetoothDevicesMap.remove(device.getAddress());
         }
 
+        InputReportPipeline pipeline = mInputReportPipeline;
+        if (pipeline != null) {
+            pipeline.remove(device.getAddress());
+        }
+
         if (mOnHOGPServerListener != null) {
             mOnHOGPServerListener.onDisconnected(device);
         }
@@ -917,6 +965,14 @@ public abstract class AbstractHOGPServer {
             }
         }
 
+        @Override
+        public void onNotificationSent(final BluetoothDevice device, final int status) {
+            InputReportPipeline pipeline = mInputReportPipeline;
+            if (pipeline != null) {
+                pipeline.onSent(device.getAddress());
+            }
+        }
+
         @Override
         public void onServiceAdded(final int status, final BluetoothGattService service) {
             if (DEBUG) {
@@ -944,45 +1000,4 @@ public abstract class AbstractHOGPServer {
          */
         void onDisconnected(BluetoothDevice device);
     }
-
-    /**
-     * デバイスへのレポートを保持するクラス.
-     */
-    private class ReportHolder {
-        /**
-         * 送信先のBluetoothデバイス.
-         */
-        private BluetoothDevice mDevice;
-
-        /**
-         * 送信するレポート.
-         */
-        private byte[] mReport;
-
-        /**
-         * コンストラクタ.
-         * @param device 送信先のデバイス
-         * @param report 送信するレポート
-         */
-        ReportHolder(final BluetoothDevice device, final byte[] report) {
-            mDevice = device;
-            mReport = report;
-        }
-
-        /**
-         * 送信先のBluetoothデバイスを取得します.
-         * @return Bluetoothデバイス
-         */
-        BluetoothDevice getDevice() {
-            return mDevice;
-        }
-
-        /**
-         * 送信するレポートを取得します.
-         * @return レポート
-         */
-        byte[] getReport() {
-            return mReport;
-        }
-    }
 }
@@ -296,6 +296,12 @@ public class HOGPServer extends AbstractHOGPServer {
      */
     private byte[] mLastMouseReport = new byte[5];
 
+    /**
+     * 送信待ちのレポートをまとめるクラス.
+     */
+    private final InputReportMerger mInputReportMerger =
+            new InputReportMerger(REPORT_ID_MOUSE, REPORT_ID_JOYSTICK, REPORT_ID_KEYBOARD);
+
     // 初期化
     static {
         EMPTY_REPORT[0] = REPORT_ID_KEYBOARD;
@@ -363,6 +369,11 @@ public class HOGPServer extends AbstractHOGPServer {
         }
     }
 
+    @Override
+    byte[] mergeInputReport(final byte[] pending, final byte[] inputReport) {
+        return mInputReportMerger.merge(pending, inputReport);
+    }
+
     @Override
     void onOutputReport(final byte[] outputReport) {
         if (BuildConfig.DEBUG) {
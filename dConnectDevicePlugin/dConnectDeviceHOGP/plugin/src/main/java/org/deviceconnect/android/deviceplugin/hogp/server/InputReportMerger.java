@@ -0,0 +1,111 @@
+/*
+ InputReportMerger.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hogp.server;
+
+import java.util.Arrays;
+
+/**
+ * HOGPServerのInputレポートをまとめるクラス.
+ * <p>
+ * ボタンの状態が同じ連続したマウスのレポートは移動量を足し合わせ、ジョイスティックのレポートは最新の状態にまとめる。
+ * キーボードのレポートは同じ状態が連続した場合のみまとめる。キーの押下・解放が失われないように、状態の異なるレポートはまとめない。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class InputReportMerger implements InputReportPipeline.ReportMerger {
+
+    /**
+     * Relative入力モードのマウスのレポートサイズ.
+     */
+    private static final int RELATIVE_MOUSE_REPORT_SIZE = 5;
+
+    /**
+     * Absolute入力モードのマウスのレポートサイズ.
+     */
+    private static final int ABSOLUTE_MOUSE_REPORT_SIZE = 7;
+
+    /**
+     * 相対値の最大値.
+     */
+    private static final int MAX_RELATIVE_VALUE = 127;
+
+    /**
+     * マウスのレポートID.
+     */
+    private final byte mMouseReportId;
+
+    /**
+     * ジョイスティックのレポートID.
+     */
+    private final byte mJoystickReportId;
+
+    /**
+     * キーボードのレポートID.
+     */
+    private final byte mKeyboardReportId;
+
+    /**
+     * コンストラクタ.
+     * @param mouseReportId マウスのレポートID
+     * @param joystickReportId ジョイスティックのレポートID
+     * @param keyboardReportId キーボードのレポートID
+     */
+    InputReportMerger(final byte mouseReportId, final byte joystickReportId, final byte keyboardReportId) {
+        mMouseReportId = mouseReportId;
+        mJoystickReportId = joystickReportId;
+        mKeyboardReportId = keyboardReportId;
+    }
+
+    @Override
+    public byte[] merge(final byte[] pending, final byte[] report) {
+        if (pending.length != report.length || pending.length < 2 || pending[0] != report[0]) {
+            return null;
+        }
+
+        byte reportId = report[0];
+        if (reportId == mMouseReportId) {
+            // ボタンの押下・解放はまとめない
+            if (pending[1] != report[1]) {
+                return null;
+            }
+            if (report.length == RELATIVE_MOUSE_REPORT_SIZE) {
+                return mergeRelative(pending, report, 2, 3, 4);
+            } else if (report.length == ABSOLUTE_MOUSE_REPORT_SIZE) {
+                return mergeRelative(report, pending, 6);
+            }
+        } else if (reportId == mJoystickReportId) {
+            if (pending[1] == report[1]) {
+                return report;
+            }
+        } else if (reportId == mKeyboardReportId) {
+            if (Arrays.equals(pending, report)) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 指定された位置の相対値を足し合わせる.
+     *
+     * @param base 足し合わせる元のレポート
+     * @param report 足し合わせるレポート
+     * @param indexes 相対値の位置
+     * @return 足し合わせたレポート. 範囲を超える場合はnull
+     */
+    private static byte[] mergeRelative(final byte[] base, final byte[] report, final int... indexes) {
+        byte[] merged = base.clone();
+        for (int index : indexes) {
+            int value = base[index] + report[index];
+            if (value > MAX_RELATIVE_VALUE || value < -MAX_RELATIVE_VALUE) {
+                return null;
+            }
+            merged[index] = (byte) value;
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ InputReportPipeline.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hogp.server;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * デバイスごとにHID Inputレポートを送信するパイプライン.
+ * <p>
+ * デバイスごとに送信待ちのレポートを保持し、送信中のレポートの送信完了通知
+ * ({@link #onSent(String)}) を受けてから次のレポートを送信する。
+ * 送信待ちの最後のレポートとまとめられるレポートが追加された場合は、{@link ReportMerger} で1つのレポートにまとめる。
+ * </p>
+ * <p>
+ * レポートの送信は全て1つのスレッドで行うので、送信するレポートごとに値を設定してから通知することができる。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+final class InputReportPipeline {
+
+    /**
+     * レポートをまとめるインターフェース.
+     */
+    interface ReportMerger {
+        /**
+         * 送信待ちのレポートと新しいレポートを1つにまとめる.
+         *
+         * @param pending 送信待ちのレポート
+         * @param report 新しいレポート
+         * @return まとめたレポート. まとめられない場合はnull
+         */
+        byte[] merge(byte[] pending, byte[] report);
+    }
+
+    /**
+     * レポートを送信するインターフェース.
+     */
+    interface ReportSender {
+        /**
+         * レポートを送信する.
+         * <p>
+         * 送信が完了したら {@link InputReportPipeline#onSent(String)} を呼び出すこと。
+         * </p>
+         * @param address 送信先のアドレス
+         * @param report 送信するレポート
+         * @return 送信を開始できた場合はtrue、それ以外はfalse
+         */
+        boolean send(String address, byte[] report);
+    }
+
+    /**
+     * デバイスごとの送信状態.
+     */
+    private static class Channel {
+        /**
+         * 送信待ちのレポート.
+         */
+        final ArrayDeque<byte[]> mPending = new ArrayDeque<>();
+
+        /**
+         * 送信完了通知を待っている場合はtrue.
+         */
+        boolean mInFlight;
+
+        /**
+         * 送信完了通知のタイムアウト処理.
+         */
+        ScheduledFuture<?> mTimeoutFuture;
+    }
+
+    /**
+     * 送信処理を行うスレッド.
+     */
+    private final ScheduledExecutorService mExecutor;
+
+    /**
+     * レポートをまとめるクラス.
+     */
+    private final ReportMerger mMerger;
+
+    /**
+     * レポートを送信するクラス.
+     */
+    private final ReportSender mSender;
+
+    /**
+     * アドレスごとの送信状態.
+     */
+    private final Map<String, Channel> mChannels = new HashMap<>();
+
+    /**
+     * 送信完了通知のタイムアウト(ms).
+     */
+    private long mTimeout = 100;
+
+    /**
+     * 送信したレポート数.
+     */
+    private int mSentCount;
+
+    /**
+     * まとめたレポート数.
+     */
+    private int mMergedCount;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param executor 送信処理を行うスレッド
+     * @param merger レポートをまとめるクラス
+     * @param sender レポートを送信するクラス
+     */
+    InputReportPipeline(final ScheduledExecutorService executor, final ReportMerger merger,
+                        final ReportSender sender) {
+        mExecutor = executor;
+        mMerger = merger;
+        mSender = sender;
+    }
+
+    /**
+     * 送信完了通知のタイムアウトを設定する.
+     * <p>
+     * 送信完了通知が届かない場合や送信を開始できなかった場合は、この時間が経過してから次のレポートを送信する。
+     * </p>
+     * @param timeout タイムアウト(ms)
+     */
+    synchronized void setTimeout(final long timeout) {
+        mTimeout = timeout;
+    }
+
+    /**
+     * 送信するレポートを追加する.
+     *
+     * @param address 送信先のアドレス
+     * @param report レポート
+     */
+    void offer(final String address, final byte[] report) {
+        boolean drain;
+        synchronized (this) {
+            Channel channel = mChannels.get(address);
+            if (channel == null) {
+                channel = new Channel();
+                mChannels.put(address, channel);
+            }
+            byte[] snapshot = report.clone();
+            byte[] last = channel.mPending.peekLast();
+            byte[] merged = last != null && mMerger != null ? mMerger.merge(last, snapshot) : null;
+            if (merged != null) {
+                channel.mPending.pollLast();
+                channel.mPending.offerLast(merged);
+                mMergedCount++;
+            } else {
+                channel.mPending.offerLast(snapshot);
+            }
+            drain = !channel.mInFlight;
+        }
+        if (drain) {
+            execute(address);
+        }
+    }
+
+    /**
+     * 送信完了を通知する.
+     *
+     * @param address 送信が完了したデバイスのアドレス
+     */
+    void onSent(final String address) {
+        synchronized (this) {
+            Channel channel = mChannels.get(address);
+            if (channel == null || !channel.mInFlight) {
+                return;
+            }
+            channel.mInFlight = false;
+            if (channel.mTimeoutFuture != null) {
+                channel.mTimeoutFuture.cancel(false);
+                channel.mTimeoutFuture = null;
+            }
+            if (channel.mPending.isEmpty()) {
+                return;
+            }
+        }
+        execute(address);
+    }
+
+    /**
+     * 指定されたデバイスの送信待ちのレポートを破棄する.
+     *
+     * @param address デバイスのアドレス
+     */
+    synchronized void remove(final String address) {
+        Channel channel = mChannels.remove(address);
+        if (channel != null && channel.mTimeoutFuture != null) {
+            channel.mTimeoutFuture.cancel(false);
+        }
+    }
+
+    /**
+     * 全てのデバイスの送信待ちのレポートを破棄する.
+     */
+    synchronized void clear() {
+        for (Channel channel : mChannels.values()) {
+            if (channel.mTimeoutFuture != null) {
+                channel.mTimeoutFuture.cancel(false);
+            }
+        }
+        mChannels.clear();
+    }
+
+    /**
+     * 指定されたデバイスの送信待ちのレポート数を取得する.
+     *
+     * @param address デバイスのアドレス
+     * @return 送信待ちのレポート数
+     */
+    synchronized int getPendingCount(final String address) {
+        Channel channel = mChannels.get(address);
+        return channel == null ? 0 : channel.mPending.size();
+    }
+
+    /**
+     * 送信したレポート数を取得する.
+     *
+     * @return 送信したレポート数
+     */
+    synchronized int getSentCount() {
+        return mSentCount;
+    }
+
+    /**
+     * まとめたレポート数を取得する.
+     *
+     * @return まとめたレポート数
+     */
+    synchronized int getMergedCount() {
+        return mMergedCount;
+    }
+
+    /**
+     * 送信スレッドで次のレポートを送信する.
+     *
+     * @param address 送信先のアドレス
+     */
+    private void execute(final String address) {
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sendNext(address);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 停止済み
+        }
+    }
+
+    /**
+     * 送信待ちの先頭のレポートを送信する.
+     *
+     * @param address 送信先のアドレス
+     */
+    private void sendNext(final String address) {
+        final Channel channel;
+        final byte[] report;
+        synchronized (this) {
+            channel = mChannels.get(address);
+            if (channel == null || channel.mInFlight) {
+                return;
+            }
+            report = channel.mPending.pollFirst();
+            if (report == null) {
+                return;
+            }
+            channel.mInFlight = true;
+            channel.mTimeoutFuture = mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onTimeout(address, channel);
+                }
+            }, mTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        boolean result;
+        try {
+            result = mSender.send(address, report);
+        } catch (RuntimeException e) {
+            result = false;
+        }
+
+        synchronized (this) {
+            if (result) {
+                mSentCount++;
+            } else if (mChannels.get(address) == channel) {
+                // 送信を開始できなかったので、タイムアウト後に再送する
+                channel.mPending.offerFirst(report);
+            }
+        }
+    }
+
+    /**
+     * 送信完了通知が届かなかった場合の処理を行う.
+     *
+     * @param address 送信先のアドレス
+     * @param channel タイムアウトを設定した時の送信状態
+     */
+    private void onTimeout(final String address, final Channel channel) {
+        synchronized (this) {
+            if (mChannels.get(address) != channel || !channel.mInFlight) {
+                return;
+            }
+            channel.mInFlight = false;
+            channel.mTimeoutFuture = null;
+        }
+        sendNext(address);
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ InputReportPipelineTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hogp.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 模擬GATTサーバを使用した InputReportPipeline のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class InputReportPipelineTest {
+
+    /** 送信先のアドレス. */
+    private static final String ADDRESS = "00:11:22:33:44:55";
+
+    /** マウスのレポートID. */
+    private static final byte MOUSE = 0x01;
+
+    /** ジョイスティックのレポートID. */
+    private static final byte JOYSTICK = 0x02;
+
+    /** キーボードのレポートID. */
+    private static final byte KEYBOARD = 0x03;
+
+    /** BLEの接続間隔(ms). */
+    private static final long CONNECTION_INTERVAL = 8;
+
+    /**
+     * 模擬GATTサーバ.
+     * <p>
+     * 1つのキャラクタリスティックの値を共有し、通知時の値をコピーして接続間隔ごとに1つずつ送信する。
+     * 送信中に通知された場合は、BluetoothGattServer と同様にfalseを返却する。
+     * </p>
+     */
+    private static class FakeGattServer implements InputReportPipeline.ReportSender {
+        /** 送信完了を通知するタイマー. */
+        private final ScheduledExecutorService mRadio = Executors.newSingleThreadScheduledExecutor();
+        /** キャラクタリスティックの値. */
+        private byte[] mValue;
+        /** 送信中の場合はtrue. */
+        private boolean mBusy;
+        /** 送信完了を通知しない場合はtrue. */
+        volatile boolean mDropCallbacks;
+        /** 送信したレポート. */
+        final List<byte[]> mDelivered = Collections.synchronizedList(new ArrayList<byte[]>());
+        /** 送信した時刻(ns). */
+        final List<Long> mDeliveredTimes = Collections.synchronizedList(new ArrayList<Long>());
+        /** 送信に失敗した回数. */
+        int mRejected;
+        /** パイプライン. */
+        InputReportPipeline mPipeline;
+
+        @Override
+        public synchronized boolean send(final String address, final byte[] report) {
+            if (mBusy) {
+                mRejected++;
+                return false;
+            }
+            mBusy = true;
+            mValue = report;
+            final byte[] snapshot = mValue.clone();
+            mRadio.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (FakeGattServer.this) {
+                        mBusy = false;
+                        mDelivered.add(snapshot);
+                        mDeliveredTimes.add(System.nanoTime());
+                    }
+                    if (!mDropCallbacks) {
+                        mPipeline.onSent(address);
+                    }
+                }
+            }, CONNECTION_INTERVAL, TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        void shutdown() {
+            mRadio.shutdownNow();
+        }
+    }
+
+    /** 送信スレッド. */
+    private ScheduledExecutorService mExecutor;
+
+    /** 模擬GATTサーバ. */
+    private FakeGattServer mServer;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        mServer = new FakeGattServer();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+    }
+
+    private InputReportPipeline createPipeline(final boolean merge) {
+        InputReportPipeline pipeline = new InputReportPipeline(mExecutor,
+                merge ? new InputReportMerger(MOUSE, JOYSTICK, KEYBOARD) : null, mServer);
+        mServer.mPipeline = pipeline;
+        return pipeline;
+    }
+
+    private static byte[] mouse(final int buttons, final int dx, final int dy) {
+        return new byte[] {MOUSE, (byte) buttons, (byte) dx, (byte) dy, 0};
+    }
+
+    private static byte[] key(final int modifier, final int keyCode) {
+        return new byte[] {KEYBOARD, (byte) modifier, 0, (byte) keyCode, 0, 0, 0, 0, 0};
+    }
+
+    private void waitForIdle(final InputReportPipeline pipeline, final long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (pipeline.getPendingCount(ADDRESS) > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(CONNECTION_INTERVAL * 3);
+    }
+
+    /**
+     * 1msごとにマウスの移動量を入力し続けた場合の入力から送信までの遅延.
+     */
+    private double[] measureLatency(final boolean merge, final int samples) throws InterruptedException {
+        InputReportPipeline pipeline = createPipeline(merge);
+        final long[] offered = new long[samples];
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            long next = start + TimeUnit.MILLISECONDS.toNanos(i);
+            while (System.nanoTime() < next) {
+                Thread.yield();
+            }
+            offered[i] = System.nanoTime();
+            pipeline.offer(ADDRESS, mouse(0, 1, 0));
+        }
+        Thread.sleep(100);
+        int backlog = pipeline.getPendingCount(ADDRESS);
+
+        // 送信した移動量の累計から、各入力が送信された時刻を求める
+        double total = 0;
+        double max = 0;
+        int moved = 0;
+        int index = 0;
+        synchronized (mServer) {
+            for (int i = 0; i < mServer.mDelivered.size(); i++) {
+                moved += mServer.mDelivered.get(i)[2];
+                long time = mServer.mDeliveredTimes.get(i);
+                for (; index < moved && index < samples; index++) {
+                    double latency = (time - offered[index]) / 1e6;
+                    total += latency;
+                    max = Math.max(max, latency);
+                }
+            }
+        }
+        return new double[] {index == 0 ? 0 : total / index, max, index, backlog, mServer.mDelivered.size()};
+    }
+
+    @Test
+    public void sustainedMouseInputHasBoundedLatency() throws Exception {
+        int samples = 1000;
+        double[] merged = measureLatency(true, samples);
+        tearDown();
+        setUp();
+        double[] fifo = measureLatency(false, samples);
+
+        System.out.println(String.format(Locale.US,
+                "coalescing: avg %.1fms max %.1fms, %d notifications, backlog %d / "
+                        + "fifo: avg %.1fms max %.1fms, %d of %d inputs sent, backlog %d",
+                merged[0], merged[1], (int) merged[4], (int) merged[3],
+                fifo[0], fifo[1], (int) fifo[2], samples, (int) fifo[3]));
+
+        // 全ての移動量が失われずに送信される
+        assertEquals(samples, (int) merged[2]);
+        assertEquals(0, (int) merged[3]);
+        assertTrue("max latency=" + merged[1], merged[1] < CONNECTION_INTERVAL * 10);
+        // まとめない場合は送信待ちが増え続ける
+        assertTrue(fifo[3] > samples / 2);
+        assertTrue(fifo[1] > merged[1] * 5);
+    }
+
+    @Test
+    public void eachNotificationCarriesItsOwnValue() throws Exception {
+        InputReportPipeline pipeline = createPipeline(false);
+        byte[] report = mouse(0, 1, 0);
+        for (int i = 1; i <= 20; i++) {
+            report[2] = (byte) i;
+            pipeline.offer(ADDRESS, report);
+        }
+        waitForIdle(pipeline, 2000);
+
+        assertEquals(20, mServer.mDelivered.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i + 1, mServer.mDelivered.get(i)[2]);
+        }
+        assertEquals(0, mServer.mRejected);
+    }
+
+    @Test
+    public void buttonChangesAreNotMerged() throws Exception {
+        InputReportPipeline pipeline = createPipeline(true);
+        pipeline.offer(ADDRESS, mouse(0, 1, 1));
+        pipeline.offer(ADDRESS, mouse(0, 2, 2));
+        pipeline.offer(ADDRESS, mouse(0, 3, 3));
+        pipeline.offer(ADDRESS, mouse(1, 0, 0));
+        pipeline.offer(ADDRESS, mouse(0, 0, 0));
+        waitForIdle(pipeline, 2000);
+
+        List<byte[]> delivered = mServer.mDelivered;
+        // 最初のレポートは直ちに送信され、続く移動はまとめられる
+        int dx = 0;
+        for (byte[] report : delivered) {
+            dx += report[2];
+        }
+        assertEquals(6, dx);
+        assertArrayEquals(mouse(1, 0, 0), delivered.get(delivered.size() - 2));
+        assertArrayEquals(mouse(0, 0, 0), delivered.get(delivered.size() - 1));
+        assertTrue(delivered.size() <= 4);
+    }
+
+    @Test
+    public void relativeMovementIsSplitWhenOutOfRange() throws Exception {
+        InputReportPipeline pipeline = createPipeline(true);
+        for (int i = 0; i < 4; i++) {
+            pipeline.offer(ADDRESS, mouse(0, 100, -100));
+        }
+        waitForIdle(pipeline, 2000);
+
+        assertEquals(4, mServer.mDelivered.size());
+        for (byte[] report : mServer.mDelivered) {
+            assertEquals(100, report[2]);
+            assertEquals(-100, report[3]);
+        }
+    }
+
+    @Test
+    public void keyTransitionsArePreserved() throws Exception {
+        InputReportPipeline pipeline = createPipeline(true);
+        pipeline.offer(ADDRESS, key(0, 0x04));
+        pipeline.offer(ADDRESS, key(0, 0x04));
+        pipeline.offer(ADDRESS, key(0, 0x00));
+        pipeline.offer(ADDRESS, key(0, 0x05));
+        pipeline.offer(ADDRESS, key(0, 0x05));
+        pipeline.offer(ADDRESS, key(0, 0x00));
+        waitForIdle(pipeline, 2000);
+
+        List<byte[]> expected = Arrays.asList(key(0, 0x04), key(0, 0x00), key(0, 0x05), key(0, 0x00));
+        assertEquals(expected.size(), mServer.mDelivered.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), mServer.mDelivered.get(i));
+        }
+        assertEquals(2, pipeline.getMergedCount());
+    }
+
+    @Test
+    public void absolutePointerKeepsLatestPosition() throws Exception {
+        InputReportPipeline pipeline = createPipeline(true);
+        for (int i = 1; i <= 10; i++) {
+            pipeline.offer(ADDRESS, new byte[] {MOUSE, 0, (byte) i, 0, (byte) i, 0, 1});
+        }
+        waitForIdle(pipeline, 2000);
+
+        byte[] last = mServer.mDelivered.get(mServer.mDelivered.size() - 1);
+        assertEquals(10, last[2]);
+        assertEquals(10, last[4]);
+        int wheel = 0;
+        for (byte[] report : mServer.mDelivered) {
+            wheel += report[6];
+        }
+        assertEquals(10, wheel);
+        assertTrue(mServer.mDelivered.size() < 10);
+    }
+
+    @Test
+    public void missingCallbackIsRecoveredByTimeout() throws Exception {
+        InputReportPipeline pipeline = createPipeline(false);
+        pipeline.setTimeout(30);
+        mServer.mDropCallbacks = true;
+        for (int i = 0; i < 3; i++) {
+            pipeline.offer(ADDRESS, key(0, 0x04 + i));
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (mServer.mDelivered.size() < 3) {
+                    Thread.yield();
+                }
+                done.countDown();
+            }
+        }).start();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(0x06, mServer.mDelivered.get(2)[3]);
+    }
+
+    @Test
+    public void removedDeviceDropsPendingReports() throws Exception {
+        InputReportPipeline pipeline = createPipeline(false);
+        for (int i = 0; i < 10; i++) {
+            pipeline.offer(ADDRESS, key(0, 0x04 + i));
+        }
+        pipeline.remove(ADDRESS);
+        Thread.sleep(CONNECTION_INTERVAL * 5);
+
+        assertTrue(mServer.mDelivered.size() <= 1);
+        assertEquals(0, pipeline.getPendingCount(ADDRESS));
+    }
+}
@@ -200,7 +200,7 @@ public class HVCC2WDeviceService extends DConnectMessageService
                                 break;
                             default:
                         }
-                        HVCManager.INSTANCE.startEventTimer(kind, interval);
+                        HVCManager.INSTANCE.startEventTimer(serviceId, kind, interval);
                         DConnectProfile.setResult(response, DConnectMessage.RESULT_OK);
                     } else {
                         MessageUtils.setIllegalDeviceStateError(response, "Can not register event.");
@@ -254,7 +254,7 @@ public class HVCC2WDeviceService extends DConnectMessageService
                             break;
                         default:
                     }
-                    HVCManager.INSTANCE.stopEventTimer(kind);
+                    HVCManager.INSTANCE.stopEventTimer(serviceId, kind);
                     DConnectProfile.setResult(response, DConnectMessage.RESULT_OK);
                 } else {
                     MessageUtils.setIllegalDeviceStateError(response, "Can not unregister event.");
@@ -0,0 +1,270 @@
+/*
+ HVCDetectionScheduler
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcc2w.manager;
+
+import org.deviceconnect.android.deviceplugin.hvcc2w.manager.data.HumanDetectKind;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detection Scheduler.
+ * <p>
+ * Runs one detection per tick for each camera at the shortest interval of the subscribed kinds,
+ * and fans the result out to each kind at its own interval.
+ * Detections are executed on a single thread, so cameras never run detections concurrently.
+ * </p>
+ * @param <R> Detection result
+ * @author NTT DOCOMO, INC.
+ */
+public class HVCDetectionScheduler<R> {
+
+    /**
+     * Detector.
+     * @param <R> Detection result
+     */
+    public interface Detector<R> {
+        /**
+         * Execute detection.
+         * @param serviceId Service ID
+         * @return Detection result. null if failed
+         */
+        R detect(String serviceId);
+    }
+
+    /**
+     * Detection Result Listener.
+     * @param <R> Detection result
+     */
+    public interface OnDetectListener<R> {
+        /**
+         * Notify detection result.
+         * @param serviceId Service ID
+         * @param kind Detect kind
+         * @param result Detection result
+         */
+        void onDetect(String serviceId, HumanDetectKind kind, R result);
+    }
+
+    /** Detector. */
+    private final Detector<R> mDetector;
+    /** Listener. */
+    private final OnDetectListener<R> mListener;
+    /** Executor. */
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    /** Schedules per camera. */
+    private final Map<String, CameraSchedule> mCameras = new HashMap<>();
+
+    /**
+     * Constructor.
+     * @param detector Detector
+     * @param listener Listener
+     */
+    public HVCDetectionScheduler(final Detector<R> detector, final OnDetectListener<R> listener) {
+        mDetector = detector;
+        mListener = listener;
+    }
+
+    /**
+     * Subscribe detection.
+     * <p>
+     * If the kind is already subscribed, its interval is replaced.
+     * </p>
+     * @param serviceId Service ID
+     * @param kind Detect kind
+     * @param interval Interval(ms)
+     */
+    public synchronized void subscribe(final String serviceId, final HumanDetectKind kind, final long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive.");
+        }
+        CameraSchedule camera = mCameras.get(serviceId);
+        if (camera == null) {
+            camera = new CameraSchedule(serviceId);
+            mCameras.put(serviceId, camera);
+        }
+        camera.mSubscriptions.put(kind, new Subscription(interval, now() + interval));
+        camera.reschedule();
+    }
+
+    /**
+     * Unsubscribe detection.
+     * @param serviceId Service ID
+     * @param kind Detect kind
+     */
+    public synchronized void unsubscribe(final String serviceId, final HumanDetectKind kind) {
+        CameraSchedule camera = mCameras.get(serviceId);
+        if (camera == null) {
+            return;
+        }
+        camera.mSubscriptions.remove(kind);
+        if (camera.mSubscriptions.isEmpty()) {
+            camera.cancel();
+            mCameras.remove(serviceId);
+        } else {
+            camera.reschedule();
+        }
+    }
+
+    /**
+     * Unsubscribe all detections.
+     */
+    public synchronized void unsubscribeAll() {
+        for (CameraSchedule camera : mCameras.values()) {
+            camera.cancel();
+        }
+        mCameras.clear();
+    }
+
+    /**
+     * Return tick interval of the camera.
+     * @param serviceId Service ID
+     * @return Tick interval(ms). 0 if not subscribed
+     */
+    public synchronized long getTickInterval(final String serviceId) {
+        CameraSchedule camera = mCameras.get(serviceId);
+        return camera == null ? 0 : camera.mTickInterval;
+    }
+
+    /**
+     * Shutdown scheduler.
+     */
+    public void shutdown() {
+        unsubscribeAll();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Return current time.
+     * @return time(ms)
+     */
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Run detection of the camera once.
+     * @param camera Camera schedule
+     */
+    private void tick(final CameraSchedule camera) {
+        List<HumanDetectKind> due = new ArrayList<>();
+        synchronized (this) {
+            if (mCameras.get(camera.mServiceId) != camera) {
+                return;
+            }
+            long now = now();
+            // Half a tick of tolerance keeps a kind whose interval is a multiple of the tick from slipping a whole tick.
+            long tolerance = camera.mTickInterval / 2;
+            for (Map.Entry<HumanDetectKind, Subscription> entry : camera.mSubscriptions.entrySet()) {
+                Subscription s = entry.getValue();
+                if (now >= s.mNextTime - tolerance) {
+                    due.add(entry.getKey());
+                    s.mNextTime += s.mInterval;
+                    if (s.mNextTime < now - tolerance) {
+                        s.mNextTime = now + s.mInterval;
+                    }
+                }
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        R result = mDetector.detect(camera.mServiceId);
+        if (result == null) {
+            return;
+        }
+        for (HumanDetectKind kind : due) {
+            mListener.onDetect(camera.mServiceId, kind, result);
+        }
+    }
+
+    /**
+     * Subscription of a detect kind.
+     */
+    private static class Subscription {
+        /** Interval(ms). */
+        private final long mInterval;
+        /** Next notify time(ms). */
+        private long mNextTime;
+
+        /**
+         * Constructor.
+         * @param interval Interval(ms)
+         * @param nextTime Next notify time(ms)
+         */
+        Subscription(final long interval, final long nextTime) {
+            mInterval = interval;
+            mNextTime = nextTime;
+        }
+    }
+
+    /**
+     * Detection schedule of a camera.
+     */
+    private class CameraSchedule implements Runnable {
+        /** Service ID. */
+        private final String mServiceId;
+        /** Subscriptions. */
+        private final Map<HumanDetectKind, Subscription> mSubscriptions = new EnumMap<>(HumanDetectKind.class);
+        /** Tick interval(ms). */
+        private long mTickInterval;
+        /** Scheduled tick. */
+        private ScheduledFuture<?> mFuture;
+
+        /**
+         * Constructor.
+         * @param serviceId Service ID
+         */
+        CameraSchedule(final String serviceId) {
+            mServiceId = serviceId;
+        }
+
+        /**
+         * Reschedule the tick at the shortest interval of the subscriptions.
+         */
+        void reschedule() {
+            long tick = Long.MAX_VALUE;
+            for (Subscription s : mSubscriptions.values()) {
+                tick = Math.min(tick, s.mInterval);
+            }
+            if (tick == mTickInterval && mFuture != null) {
+                return;
+            }
+            cancel();
+            mTickInterval = tick;
+            mFuture = mExecutor.scheduleAtFixedRate(this, tick, tick, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Cancel the tick.
+         */
+        void cancel() {
+            if (mFuture != null) {
+                mFuture.cancel(false);
+                mFuture = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                tick(this);
+            } catch (RuntimeException e) {
+                // A failed detection must not stop the periodic tick.
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ HVCHttpClient
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcc2w.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * HTTPS Client for HVC Web API.
+ * <p>
+ * The connection is never disconnected explicitly and the response body is always read to the end,
+ * so the keep-alive pool of HttpsURLConnection reuses the TLS connection for the next request.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class HVCHttpClient {
+    /** Connect timeout(ms). */
+    private static final int CONNECT_TIMEOUT = 10 * 1000;
+    /** Read timeout(ms). */
+    private static final int READ_TIMEOUT = 30 * 1000;
+    /** Buffer size. */
+    private static final int BUFFER_SIZE = 4096;
+
+    /** SSL Socket Factory. If null, default factory is used. */
+    private final SSLSocketFactory mSocketFactory;
+    /** Hostname Verifier. If null, default verifier is used. */
+    private final HostnameVerifier mHostnameVerifier;
+
+    /**
+     * Constructor.
+     */
+    public HVCHttpClient() {
+        this(null, null);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * The same socket factory must be used for all requests, because the connection pool is keyed with it.
+     * </p>
+     * @param socketFactory SSL Socket Factory
+     * @param hostnameVerifier Hostname Verifier
+     */
+    HVCHttpClient(final SSLSocketFactory socketFactory, final HostnameVerifier hostnameVerifier) {
+        mSocketFactory = socketFactory;
+        mHostnameVerifier = hostnameVerifier;
+    }
+
+    /**
+     * POST Request.
+     * @param url URL
+     * @param query query string. empty if no query
+     * @param accessToken access token. null if not required
+     * @return response body. null if status code is not 200
+     * @throws IOException failed to communicate
+     */
+    public String post(final String url, final String query, final String accessToken) throws IOException {
+        URL u;
+        if (query == null || query.isEmpty()) {
+            u = new URL(url);
+        } else {
+            u = new URL(url + "?" + query);
+        }
+        HttpsURLConnection conn = (HttpsURLConnection) u.openConnection();
+        if (mSocketFactory != null) {
+            conn.setSSLSocketFactory(mSocketFactory);
+        }
+        if (mHostnameVerifier != null) {
+            conn.setHostnameVerifier(mHostnameVerifier);
+        }
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+        conn.setRequestProperty("Connection", "keep-alive");
+        if (accessToken != null) {
+            // アクセストークンが必要なリクエストの場合
+            conn.setRequestProperty("Authorization", "Bearer " + accessToken);
+        }
+        conn.setDoInput(true);
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(0);
+
+        // POST
+        conn.getOutputStream().close();
+
+        int status;
+        try {
+            status = conn.getResponseCode();
+        } catch (IOException e) {
+            // 壊れた接続をプールに戻さないように切断する
+            conn.disconnect();
+            throw e;
+        }
+        if (status == HttpsURLConnection.HTTP_OK) {
+            return new String(readFully(conn.getInputStream()), "UTF-8");
+        } else {
+            // エラーのボディも最後まで読み込まないと接続が再利用されない
+            InputStream error = conn.getErrorStream();
+            if (error != null) {
+                readFully(error);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Read the stream to the end and close it.
+     * @param in stream
+     * @return read data
+     * @throws IOException failed to read
+     */
+    private static byte[] readFully(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -7,7 +7,6 @@ import android.media.AudioTrack;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.AsyncTask;
-import android.os.Handler;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -23,20 +22,14 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
-import javax.net.ssl.HttpsURLConnection;
-
 import jp.co.omron.hvcw.ErrorCodes;
 import jp.co.omron.hvcw.FileInfo;
 import jp.co.omron.hvcw.HvcwApi;
@@ -243,13 +236,10 @@ public enum HVCManager {
     private List<String> mEventList;
     /** HVC SDK Handle. */
     private HvcwApi mApi;
-    /** Body Timer Handler. */
-    private Handler mBodyTimer;
-
-    /** Hand Timer Handler. */
-    private Handler mHandTimer;
-    /** Face Timer Handler. */
-    private Handler mFaceTimer;
+    /** Detection Scheduler. */
+    private HVCDetectionScheduler<OkaoResult> mDetectionScheduler;
+    /** HTTPS Client. */
+    private HVCHttpClient mHttpClient;
     /**
      * POST Request's or Manager's Listener.
      */
@@ -281,9 +271,18 @@ public enum HVCManager {
     private HVCManager() {
         mServices = new ConcurrentHashMap<String, HVCCameraInfo>();
         mEventList = new ArrayList<String>();
-        mBodyTimer = new Handler();
-        mHandTimer = new Handler();
-        mFaceTimer = new Handler();
+        mHttpClient = new HVCHttpClient();
+        mDetectionScheduler = new HVCDetectionScheduler<>(new HVCDetectionScheduler.Detector<OkaoResult>() {
+            @Override
+            public OkaoResult detect(final String serviceId) {
+                return execute();
+            }
+        }, new HVCDetectionScheduler.OnDetectListener<OkaoResult>() {
+            @Override
+            public void onDetect(final String serviceId, final HumanDetectKind kind, final OkaoResult result) {
+                notifyDetectResult(serviceId, kind, result);
+            }
+        });
     }
     /**
      * Return HVC Cameras.
@@ -386,82 +385,34 @@ public enum HVCManager {
     }
 
     /**
-     * Start Face Detection Timer.
-     * @param interval Timer's interval
-     */
-    private void startFaceTimer(final Long interval) {
-        mFaceTimer.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                for (String key : mServices.keySet()) {
-                    HVCCameraInfo camera = mServices.get(key);
-                    if (camera == null) {
-                        return;
-                    }
-                    OkaoResult result = HVCManager.INSTANCE.execute();
-
-                    if (camera.getFaceEvent() != null) {
-                        camera.getFaceEvent().onNotifyForFaceDetectResult(key, result);
-                    }
-                }
-                if (mEventList.size() > 0) {
-                    mFaceTimer.postDelayed(this, interval);
-                }
-            }
-        }, interval);
-    }
-
-    /**
-     * Start Hand Detection Timer.
-     * @param interval Timer's interval
+     * Notify Detection Result.
+     * @param serviceId ServiceID
+     * @param kind HumanDetect kind
+     * @param result Okao Result
      */
-    private void startHandTimer(final Long interval) {
-        mHandTimer.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                for (String key : mServices.keySet()) {
-                    HVCCameraInfo camera = mServices.get(key);
-                    if (camera == null) {
-                        return;
-                    }
-                    OkaoResult result = HVCManager.INSTANCE.execute();
-
-                    if (camera.getHandEvent() != null) {
-                        camera.getHandEvent().onNotifyForHandDetectResult(key, result);
-                    }
-                }
-                if (mEventList.size() > 0) {
-                    mHandTimer.postDelayed(this, interval);
+    private void notifyDetectResult(final String serviceId, final HumanDetectKind kind, final OkaoResult result) {
+        HVCCameraInfo camera = mServices.get(serviceId);
+        if (camera == null) {
+            return;
+        }
+        switch (kind) {
+            case BODY:
+                if (camera.getBodyEvent() != null) {
+                    camera.getBodyEvent().onNotifyForBodyDetectResult(serviceId, result);
                 }
-            }
-        }, interval);
-    }
-
-    /**
-     * Start Body Detection Timer.
-     * @param interval Timer's interval
-     */
-    private void startBodyTimer(final Long interval) {
-        mBodyTimer.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                for (String key : mServices.keySet()) {
-                    HVCCameraInfo camera = mServices.get(key);
-                    if (camera == null) {
-                        return;
-                    }
-                    OkaoResult result = HVCManager.INSTANCE.execute();
-
-                    if (camera.getBodyEvent() != null) {
-                        camera.getBodyEvent().onNotifyForBodyDetectResult(key, result);
-                    }
-
+                break;
+            case HAND:
+                if (camera.getHandEvent() != null) {
+                    camera.getHandEvent().onNotifyForHandDetectResult(serviceId, result);
                 }
-                if (mEventList.size() > 0) {
-                    mBodyTimer.postDelayed(this, interval);
+                break;
+            case FACE:
+                if (camera.getFaceEvent() != null) {
+                    camera.getFaceEvent().onNotifyForFaceDetectResult(serviceId, result);
                 }
-            }
-        }, interval);
+                break;
+            default:
+        }
     }
 
     /**
@@ -526,61 +477,55 @@ public enum HVCManager {
                 mEventList.remove(camera.getID());
             }
         }
+        mDetectionScheduler.unsubscribeAll();
     }
 
     /**
      * Start Event Timer.
+     * <p>
+     * One detection per tick is shared by body, hand and face detections of the camera.
+     * </p>
+     * @param serviceId ServiceID
      * @param kind HumanDetect kind
      * @param interval Interval
      */
-    public void startEventTimer(final HumanDetectKind kind, final Long interval) {
+    public void startEventTimer(final String serviceId, final HumanDetectKind kind, final Long interval) {
         switch (kind) {
             case BODY:
-                startBodyTimer(interval);
-                break;
             case HAND:
-                startHandTimer(interval);
-                break;
             case FACE:
-                startFaceTimer(interval);
+                mDetectionScheduler.subscribe(serviceId, kind, interval);
                 break;
             case HUMAN:
-                startBodyTimer(interval);
-                startHandTimer(interval);
-                startFaceTimer(interval);
+                mDetectionScheduler.subscribe(serviceId, HumanDetectKind.BODY, interval);
+                mDetectionScheduler.subscribe(serviceId, HumanDetectKind.HAND, interval);
+                mDetectionScheduler.subscribe(serviceId, HumanDetectKind.FACE, interval);
                 break;
             default:
-
         }
-
     }
 
-
-
-
     /**
      * Stop Event Timer.
+     * @param serviceId ServiceID
+     * @param kind HumanDetect kind
      */
-    public void stopEventTimer(final HumanDetectKind kind) {
-        switch(kind) {
+    public void stopEventTimer(final String serviceId, final HumanDetectKind kind) {
+        switch (kind) {
             case BODY:
-                mBodyTimer.removeCallbacksAndMessages(null);
-                break;
             case HAND:
-                mHandTimer.removeCallbacksAndMessages(null);
-                break;
             case FACE:
-                mFaceTimer.removeCallbacksAndMessages(null);
+                mDetectionScheduler.unsubscribe(serviceId, kind);
                 break;
             case HUMAN:
-                mBodyTimer.removeCallbacksAndMessages(null);
-                mHandTimer.removeCallbacksAndMessages(null);
-                mFaceTimer.removeCallbacksAndMessages(null);
+                mDetectionScheduler.unsubscribe(serviceId, HumanDetectKind.BODY);
+                mDetectionScheduler.unsubscribe(serviceId, HumanDetectKind.HAND);
+                mDetectionScheduler.unsubscribe(serviceId, HumanDetectKind.FACE);
+                break;
             default:
         }
     }
 
-
     /**
      * Sign Up HVC Service.
      * @param mailAddress user's mail address
@@ -1146,50 +1091,14 @@ public enum HVCManager {
 
         @Override
         protected String doInBackground(String... params) {
-            HttpsURLConnection conn = null;
             String json = null;
             try {
-                URL url;
-                if (params[1].isEmpty()) {
-                    url = new URL(params[0]);
-                } else {
-                    url = new URL(params[0] + "?" + params[1]);
-                }
-                conn = (HttpsURLConnection)url.openConnection();
-                conn.setRequestMethod("POST");
-                conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
-                if (params.length == 3) {
-                    // アクセストークンが必要なリクエストの場合
-                    conn.setRequestProperty("Authorization", "Bearer " + params[2]);
-                }
-                conn.setDoInput(true);
-                conn.setDoOutput(true);
-
-                // POST
-                conn.connect();
-
-                // レスポンス受信
-                if (conn.getResponseCode() == HttpsURLConnection.HTTP_OK) {
-                    StringBuilder sb = new StringBuilder();
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sb.append(line);
-                    }
-                    json = sb.toString();
-                }
-            } catch(MalformedURLException e) {
-                if (BuildConfig.DEBUG) {
-                    e.printStackTrace();
-                }
+                String accessToken = params.length == 3 ? params[2] : null;
+                json = mHttpClient.post(params[0], params[1], accessToken);
             } catch(IOException e) {
                 if (BuildConfig.DEBUG) {
                     e.printStackTrace();
                 }
-            } finally {
-                if(conn != null) {
-                    conn.disconnect();
-                }
             }
 
             return json;
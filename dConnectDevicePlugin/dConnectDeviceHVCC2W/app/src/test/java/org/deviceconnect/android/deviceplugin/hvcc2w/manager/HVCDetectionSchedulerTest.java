@@ -0,0 +1,233 @@
+/*
+ HVCDetectionSchedulerTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcc2w.manager;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import org.deviceconnect.android.deviceplugin.hvcc2w.manager.data.HumanDetectKind;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of HVCDetectionScheduler.
+ * <p>
+ * Detections are sent to a local HTTPS server which stands in for the camera service.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class HVCDetectionSchedulerTest {
+    /** Keystore password. */
+    private static final char[] PASSWORD = "password".toCharArray();
+    /** Detection path. */
+    private static final String DETECT_PATH = "/c2w/api/v1/okaoExecute";
+
+    /** Local HTTPS server. */
+    private HttpsServer mServer;
+    /** Number of detections per camera. */
+    private final Map<String, AtomicInteger> mCalls = new ConcurrentHashMap<>();
+    /** Client ports of the server, one per connection. */
+    private final Set<Integer> mConnections = Collections.synchronizedSet(new HashSet<Integer>());
+    /** HTTPS Client. */
+    private HVCHttpClient mClient;
+    /** Detection URL. */
+    private String mUrl;
+    /** Notifications per camera and kind. */
+    private final Map<String, AtomicInteger> mNotifications = new ConcurrentHashMap<>();
+    /** Scheduler. */
+    private HVCDetectionScheduler<String> mScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = getClass().getClassLoader().getResourceAsStream("hvc_localhost.jks");
+        try {
+            keyStore.load(in, PASSWORD);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, PASSWORD);
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+
+        mServer = HttpsServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        mServer.setHttpsConfigurator(new HttpsConfigurator(context));
+        mServer.createContext(DETECT_PATH, new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                drain(exchange.getRequestBody());
+                mConnections.add(exchange.getRemoteAddress().getPort());
+                String query = exchange.getRequestURI().getQuery();
+                String serviceId = query.substring(query.indexOf('=') + 1);
+                int count = counter(mCalls, serviceId).incrementAndGet();
+
+                byte[] body = ("{\"serviceId\":\"" + serviceId + "\",\"count\":" + count + "}").getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+
+        mClient = new HVCHttpClient(context.getSocketFactory(), new HostnameVerifier() {
+            @Override
+            public boolean verify(final String hostname, final SSLSession session) {
+                return "127.0.0.1".equals(hostname);
+            }
+        });
+        mUrl = "https://127.0.0.1:" + mServer.getAddress().getPort() + DETECT_PATH;
+
+        mScheduler = new HVCDetectionScheduler<>(new HVCDetectionScheduler.Detector<String>() {
+            @Override
+            public String detect(final String serviceId) {
+                try {
+                    return mClient.post(mUrl, "serviceId=" + serviceId, "token");
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+        }, new HVCDetectionScheduler.OnDetectListener<String>() {
+            @Override
+            public void onDetect(final String serviceId, final HumanDetectKind kind, final String result) {
+                counter(mNotifications, serviceId + "/" + kind).incrementAndGet();
+            }
+        });
+
+        // Warm up the TLS connection, so handshake time does not disturb the schedule.
+        assertTrue(mClient.post(mUrl, "serviceId=warmup", null).contains("warmup"));
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdown();
+        mServer.stop(0);
+    }
+
+    /**
+     * Body(100ms), hand(200ms) and face(300ms) share one detection per tick.
+     */
+    @Test
+    public void mixedSubscriptionsShareOneDetection() throws Exception {
+        mScheduler.subscribe("camera1", HumanDetectKind.BODY, 100);
+        mScheduler.subscribe("camera1", HumanDetectKind.HAND, 200);
+        mScheduler.subscribe("camera1", HumanDetectKind.FACE, 300);
+        assertEquals(100, mScheduler.getTickInterval("camera1"));
+
+        Thread.sleep(1250);
+        mScheduler.unsubscribeAll();
+        Thread.sleep(50);
+
+        int calls = count(mCalls, "camera1");
+        // Independent timers would have made 12 + 6 + 4 = 22 calls.
+        assertTrue("calls=" + calls, calls >= 10 && calls <= 13);
+        assertEquals(calls, count(mNotifications, "camera1/BODY"));
+        assertInRange(count(mNotifications, "camera1/HAND"), 5, 7);
+        assertInRange(count(mNotifications, "camera1/FACE"), 3, 5);
+        assertEquals("connections=" + mConnections, 1, mConnections.size());
+    }
+
+    /**
+     * Each camera is detected at its own shortest interval.
+     */
+    @Test
+    public void camerasAreScheduledIndependently() throws Exception {
+        mScheduler.subscribe("camera1", HumanDetectKind.BODY, 100);
+        mScheduler.subscribe("camera1", HumanDetectKind.FACE, 100);
+        mScheduler.subscribe("camera2", HumanDetectKind.HAND, 250);
+
+        Thread.sleep(1050);
+        mScheduler.unsubscribeAll();
+        Thread.sleep(50);
+
+        assertInRange(count(mCalls, "camera1"), 9, 11);
+        assertInRange(count(mCalls, "camera2"), 3, 5);
+        assertEquals(count(mCalls, "camera1"), count(mNotifications, "camera1/BODY"));
+        assertEquals(count(mCalls, "camera1"), count(mNotifications, "camera1/FACE"));
+        assertEquals(count(mCalls, "camera2"), count(mNotifications, "camera2/HAND"));
+        assertEquals("connections=" + mConnections, 1, mConnections.size());
+    }
+
+    /**
+     * Unsubscribing the fastest kind slows the tick, and unsubscribing all stops detections.
+     */
+    @Test
+    public void unsubscribeReschedulesTick() throws Exception {
+        mScheduler.subscribe("camera1", HumanDetectKind.BODY, 100);
+        mScheduler.subscribe("camera1", HumanDetectKind.FACE, 300);
+        assertEquals(100, mScheduler.getTickInterval("camera1"));
+
+        mScheduler.unsubscribe("camera1", HumanDetectKind.BODY);
+        assertEquals(300, mScheduler.getTickInterval("camera1"));
+        Thread.sleep(950);
+        assertInRange(count(mCalls, "camera1"), 2, 4);
+
+        mScheduler.unsubscribe("camera1", HumanDetectKind.FACE);
+        assertEquals(0, mScheduler.getTickInterval("camera1"));
+        int calls = count(mCalls, "camera1");
+        Thread.sleep(400);
+        assertEquals(calls, count(mCalls, "camera1"));
+        assertEquals(0, count(mNotifications, "camera1/BODY"));
+    }
+
+    private static AtomicInteger counter(final Map<String, AtomicInteger> map, final String key) {
+        synchronized (map) {
+            AtomicInteger counter = map.get(key);
+            if (counter == null) {
+                counter = new AtomicInteger();
+                map.put(key, counter);
+            }
+            return counter;
+        }
+    }
+
+    private static int count(final Map<String, AtomicInteger> map, final String key) {
+        AtomicInteger counter = map.get(key);
+        return counter == null ? 0 : counter.get();
+    }
+
+    private static void assertInRange(final int value, final int min, final int max) {
+        assertTrue("value=" + value + " expected=[" + min + ", " + max + "]", value >= min && value <= max);
+    }
+
+    private static void drain(final InputStream in) throws IOException {
+        byte[] buf = new byte[1024];
+        while (in.read(buf) != -1) {
+            // discard.
+        }
+        in.close();
+    }
+}
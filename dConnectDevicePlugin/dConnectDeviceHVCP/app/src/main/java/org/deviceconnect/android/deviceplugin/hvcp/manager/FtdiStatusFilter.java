@@ -0,0 +1,76 @@
+/*
+ FtdiStatusFilter
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+import java.io.IOException;
+
+/**
+ * Removes FTDI modem status bytes from the data read from the serial port.
+ * <p>
+ * FTDI chips put 2 modem status bytes at the head of every 64 bytes USB packet.
+ * usb-serial-for-android removes them from the first packet of a read only,
+ * so one read returns 62 data bytes followed by repeated (2 status bytes, 62 data bytes).
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class FtdiStatusFilter implements HVCPSerialPort {
+    /** USB packet size. */
+    static final int PACKET_SIZE = 64;
+    /** Modem status size in a packet. */
+    static final int STATUS_SIZE = 2;
+
+    /** Serial port. */
+    private final HVCPSerialPort mPort;
+
+    /**
+     * Constructor.
+     * @param port Serial port of FTDI chip
+     */
+    public FtdiStatusFilter(final HVCPSerialPort port) {
+        mPort = port;
+    }
+
+    @Override
+    public int read(final byte[] dest, final int timeoutMillis) throws IOException {
+        int num = mPort.read(dest, timeoutMillis);
+        if (num <= 0) {
+            return num;
+        }
+        return removeStatusBytes(dest, num);
+    }
+
+    @Override
+    public int write(final byte[] src, final int timeoutMillis) throws IOException {
+        return mPort.write(src, timeoutMillis);
+    }
+
+    /**
+     * Remove modem status bytes from the data of one read.
+     * @param buf data of one read
+     * @param length data length
+     * @return data length after removing status bytes
+     */
+    static int removeStatusBytes(final byte[] buf, final int length) {
+        int payload = PACKET_SIZE - STATUS_SIZE;
+        if (length <= payload) {
+            return length;
+        }
+        int dest = payload;
+        int src = payload;
+        while (src < length) {
+            src += STATUS_SIZE;
+            int count = Math.min(payload, length - src);
+            if (count <= 0) {
+                break;
+            }
+            System.arraycopy(buf, src, buf, dest, count);
+            dest += count;
+            src += count;
+        }
+        return dest;
+    }
+}
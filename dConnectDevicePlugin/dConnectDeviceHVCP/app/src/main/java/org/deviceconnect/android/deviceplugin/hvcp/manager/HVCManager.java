@@ -8,8 +8,6 @@ import android.content.IntentFilter;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbManager;
-import android.os.Handler;
-import android.support.annotation.NonNull;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -23,10 +21,16 @@ import org.deviceconnect.android.deviceplugin.hvcp.manager.data.HumanDetectKind;
 import org.deviceconnect.android.deviceplugin.hvcp.manager.data.OkaoResult;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -44,6 +48,10 @@ public enum HVCManager {
     private static final String TAG = "HVCManager";
     /** Okao Execute Command. */
     private static final String OKAO_EXECUTE = "FE040300FF0102";
+    /** Okao Execute Command's execute flag 1. */
+    private static final int OKAO_EXECUTE_FLAGS1 = 0xFF;
+    /** Okao Execute Command's execute flag 2. */
+    private static final int OKAO_EXECUTE_FLAGS2 = 0x01;
 
     /** Option parameter:{@value}. */
     public static final String PARAM_OPTIONS_EYE = "eye";
@@ -202,44 +210,35 @@ public enum HVCManager {
     private UsbSerialPort mUsbDriver;
 
     /**
-     * No Command.
+     * Command Queue.
      */
-    private final int CMD_UNKNOWN = -1;
+    private HVCPCommandQueue mCommandQueue;
     /**
-     * Get Version.
+     * Detection Timer.
      */
-    private final int CMD_VERSION = 1;
+    private final ScheduledExecutorService mDetectionTimer = Executors.newSingleThreadScheduledExecutor();
     /**
-     * Execute Okao.
+     * Scheduled Detection.
      */
-    private final int CMD_OKAO_EXECUTE = 2;
+    private ScheduledFuture<?> mDetectionFuture;
     /**
-     * Set Threshold.
+     * Now interval.
      */
-    private final int CMD_SET_THRESHOLD = 3;
+    private Long mNowInterval = PARAM_INTERVAL_MIN;
     /**
-     * Set Size.
+     * Okao Execute is waiting for the response.
      */
-    private final int CMD_SET_SIZE = 4;
+    private final AtomicBoolean mOkaoExecuting = new AtomicBoolean();
     /**
-     * Command mType.
+     * Okao Result. Reused for every response.
      */
-    private int mType = 0;
-    /**
-     * Now interval.
-     */
-    private Long mNowInterval = PARAM_INTERVAL_MIN;
+    private final OkaoResult mOkaoResult = new OkaoResult();
     /**
      * HVC Cameras.
      */
     private ConcurrentHashMap<String, HVCCameraInfo> mServices;
     /** Event List. */
     private List<String> mEventList;
-    /** One shot response list. */
-    private List<String> mOneShotList;
-
-    /** Timer Handler. */
-    private Handler mTimer;
 
     public static final String ACTION_USB_PERMISSION_BASE = "com.serenegiant.USB_PERMISSION.";
     public final String ACTION_USB_PERMISSION = ACTION_USB_PERMISSION_BASE + hashCode();
@@ -287,10 +286,6 @@ public enum HVCManager {
     private HVCManager() {
         mServices = new ConcurrentHashMap<String, HVCCameraInfo>();
         mEventList = new ArrayList<String>();
-        mOneShotList = new ArrayList<String>();
-
-        mTimer = new Handler();
-        mType = CMD_UNKNOWN;
     }
     /**
      * Return HVC Cameras.
@@ -340,6 +335,7 @@ public enum HVCManager {
             // デバイスとの接続切断を通知.
             notifyOnDisconnected(camera);
         }
+        closePort();
     }
 
     /**
@@ -359,11 +355,10 @@ public enum HVCManager {
             return;
         }
         camera.setBodyEvent(l);
-        mType = CMD_OKAO_EXECUTE;
         if (BuildConfig.DEBUG) {
             Log.d(TAG, "register body event ");
         }
-        sendCommand(OKAO_EXECUTE, interval);
+        startDetection(interval);
     }
 
     /**
@@ -383,8 +378,7 @@ public enum HVCManager {
             return;
         }
         camera.setHandEvent(l);
-        mType = CMD_OKAO_EXECUTE;
-        sendCommand(OKAO_EXECUTE, interval);
+        startDetection(interval);
     }
 
     /**
@@ -408,8 +402,7 @@ public enum HVCManager {
         }
         camera.setOptions(options);
         camera.setFaceEvent(l);
-        mType = CMD_OKAO_EXECUTE;
-        sendCommand(OKAO_EXECUTE, interval);
+        startDetection(interval);
     }
 
     /**
@@ -421,8 +414,6 @@ public enum HVCManager {
     public synchronized void execute(final String serviceId,
                         final HumanDetectKind kind,
                         final HVCCameraInfo.OneShotOkaoResultResoponseListener l) {
-        mOneShotList.add(serviceId);
-
         HVCCameraInfo camera = mServices.get(serviceId);
         if (camera == null) {
             return;
@@ -444,8 +435,7 @@ public enum HVCManager {
                 break;
             default:
         }
-        mType = CMD_OKAO_EXECUTE;
-        sendCommand(OKAO_EXECUTE, new Long(1));
+        executeOkao();
     }
 
     /**
@@ -478,17 +468,14 @@ public enum HVCManager {
         StringBuffer cmdThreshold = new StringBuffer();
         cmdThreshold.append("FE050800").append(swapLSBandMSB(b)).append(swapLSBandMSB(h))
                 .append(swapLSBandMSB(f)).append("F401");
-        mOneShotList.add(serviceId);
         HVCCameraInfo camera = mServices.get(serviceId);
         if (camera == null) {
             return;
         }
-        camera.setThresholdSet(l);
-        mType = CMD_SET_THRESHOLD;
         if (BuildConfig.DEBUG) {
             Log.d(TAG, "Set threshold cmd:" + cmdThreshold.toString());
         }
-        sendCommand(cmdThreshold.toString(), new Long(1));
+        sendCommand(cmdThreshold.toString(), new SetParameterCallback(l));
 
     }
 
@@ -536,17 +523,14 @@ public enum HVCManager {
         cmdThreshold.append("FE070C00").append(swapLSBandMSB(bMin)).append(swapLSBandMSB(bMax))
                 .append(swapLSBandMSB(hMin)).append(swapLSBandMSB(hMax))
                 .append(swapLSBandMSB(fMin)).append(swapLSBandMSB(fMax));
-        mOneShotList.add(serviceId);
         HVCCameraInfo camera = mServices.get(serviceId);
         if (camera == null) {
             return;
         }
-        camera.setSizeSet(l);
-        mType = CMD_SET_SIZE;
         if (BuildConfig.DEBUG) {
             Log.d(TAG, "Set size cmd:" + cmdThreshold.toString());
         }
-        sendCommand(cmdThreshold.toString(), new Long(50));
+        sendCommand(cmdThreshold.toString(), new SetParameterCallback(l));
 
     }
     /**
@@ -613,211 +597,177 @@ public enum HVCManager {
             camera.setHandEvent(null);
             mEventList.remove(camera.getID());
         }
+        stopDetection();
+    }
+
+    /**
+     * Okao Execute's Callback.
+     */
+    private final HVCPCommandQueue.Callback mOkaoCallback = new HVCPCommandQueue.Callback() {
+        @Override
+        public void onResponse(final int status, final byte[] data, final int offset, final int length) {
+            mOkaoExecuting.set(false);
+            if (status == 0 && OkaoResultDecoder.decode(OKAO_EXECUTE_FLAGS1, OKAO_EXECUTE_FLAGS2,
+                    data, offset, length, mOkaoResult)) {
+                notifyOkaoResult(mOkaoResult, true);
+            } else {
+                if (BuildConfig.DEBUG) {
+                    Log.w(TAG, "Okao Execute failed. status:" + status + " length:" + length);
+                }
+                notifyOkaoResult(clearOkaoResult(), false);
+            }
+        }
+
+        @Override
+        public void onError(final IOException e) {
+            mOkaoExecuting.set(false);
+            handleError(e);
+            notifyOkaoResult(clearOkaoResult(), false);
+        }
+    };
+
+    /**
+     * Set Parameter Command's Callback.
+     */
+    private class SetParameterCallback implements HVCPCommandQueue.Callback {
+        /** Listener. */
+        private final HVCCameraInfo.OneShotSetParameterResoponseListener mListener;
+
+        /**
+         * Constructor.
+         * @param listener Listener
+         */
+        SetParameterCallback(final HVCCameraInfo.OneShotSetParameterResoponseListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onResponse(final int status, final byte[] data, final int offset, final int length) {
+            if (mListener != null) {
+                mListener.onResponse(status);
+            }
+        }
+
+        @Override
+        public void onError(final IOException e) {
+            handleError(e);
+            // 応答が無くても後続の処理が止まらないように通知する
+            if (mListener != null) {
+                mListener.onResponse(-1);
+            }
+        }
     }
 
     /**
-     * Start USB binary read thread.
+     * Start periodic Okao Execute.
+     * @param interval Interval
      */
-    private synchronized void startReadThread(final String stCommand, final Long interval) {
-        mTimer.removeCallbacksAndMessages(null);
+    private synchronized void startDetection(final Long interval) {
+        if (mDetectionFuture != null && interval.equals(mNowInterval)) {
+            return;
+        }
+        stopDetection();
         mNowInterval = interval;
-        mTimer.postDelayed(new Runnable() {
+        mDetectionFuture = mDetectionTimer.scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
                 try {
-                    byte buf[] = new byte[32768];
-                    int num = mUsbDriver.read(buf, buf.length);
-
-                    if (num > 0) {
-                        int buf_pos = 0;
-                        for (int i = 0; i + buf_pos < num; i++) {
-                            //if(i!=0 && (i%62)==0)buf0_pos+=2;
-                            buf[i] = buf[i + buf_pos];
-                            if (((i + 63) % 62) == 0) {
-                                buf_pos += 2;
-                            }
-                        }
-                        num -= buf_pos;
-                        num += 2;
-                    }
-                    for (String key : mServices.keySet()) {
-                        HVCCameraInfo camera = mServices.get(key);
-                        if (mType == CMD_OKAO_EXECUTE) {
-                            if (buf[0] == (byte) 0xfe) {
-                                OkaoResult result = parseOkaoResult(buf);
-                                if (camera.getBodyEvent() != null) {
-                                    camera.getBodyEvent().onNotifyForBodyDetectResult(key, result);
-                                }
-
-                                if (camera.getHandEvent() != null) {
-                                    camera.getHandEvent().onNotifyForHandDetectResult(key, result);
-                                }
-
-                                if (camera.getFaceEvent() != null) {
-                                    camera.getFaceEvent().onNotifyForFaceDetectResult(key, result);
-                                }
-
-                                if (camera.getBodyGet() != null) {
-                                    camera.getBodyGet().onResponse(key, result);
-                                    camera.setBodyGet(null);
-                                    mOneShotList.remove(key);
-                                }
-                                if (camera.getHandGet() != null) {
-                                    camera.getHandGet().onResponse(key, result);
-                                    camera.setHandGet(null);
-                                    mOneShotList.remove(key);
-                                }
-                                if (camera.getFaceGet() != null) {
-                                    camera.getFaceGet().onResponse(key, result);
-                                    camera.setFaceGet(null);
-                                    mOneShotList.remove(key);
-                                }
-                            }
-                        } else if (mType == CMD_SET_THRESHOLD) {
-                            if (buf[0] == (byte) 0xfe && camera.getThresholdSet() != null) {
-                                camera.getThresholdSet().onResponse(buf[1]);
-                                camera.setThresholdSet(null);
-                                mOneShotList.remove(key);
-                                if (BuildConfig.DEBUG) {
-                                    Log.d(TAG, "SET Threshold response");
-                                }
-                            } else {
-                                if (BuildConfig.DEBUG) {
-                                    Log.d(TAG, "SET Threshold no response");
-                                }
-                                camera.getThresholdSet().onResponse(buf[1]);
-                                camera.setThresholdSet(null);
-                                mOneShotList.remove(key);
-                            }
-                        } else if (mType == CMD_SET_SIZE) {
-                            if (buf[0] == (byte) 0xfe && camera.getSizeSet() != null) {
-                                camera.getSizeSet().onResponse(buf[1]);
-                                camera.setSizeSet(null);
-                                mOneShotList.remove(key);
-                                if (BuildConfig.DEBUG) {
-                                    Log.d(TAG, "SET size  response");
-                                }
-                            } else {
-                                if (BuildConfig.DEBUG) {
-                                    Log.d(TAG, "SET size no response");
-                                }
-                            }
-                        }
-                    }
-                } catch (IOException e) {
+                    executeOkao();
+                } catch (RuntimeException e) {
                     if (BuildConfig.DEBUG) {
-                        e.printStackTrace();
+                        Log.e(TAG, "", e);
                     }
-                    mEventList.clear();
-                    mOneShotList.clear();
-                    return;
-                }
-                if (mEventList.size() > 0 || mOneShotList.size() > 0) {
-
-                    if (mType == CMD_OKAO_EXECUTE) {
-                        byte send[] = hex2bin(OKAO_EXECUTE);
-                        try {
-                            mUsbDriver.write(send, send.length);
-                        } catch (IOException e) {
-                            if (BuildConfig.DEBUG) {
-                                Log.e(TAG, "", e);
-                            }
-                        }
-                    }
-                    mTimer.postDelayed(this, mNowInterval);
                 }
             }
-        }, interval);
+        }, 0, interval, TimeUnit.MILLISECONDS);
     }
 
-    @NonNull
-    private OkaoResult parseOkaoResult(final byte[] buf) {
-        OkaoResult result = new OkaoResult();
-        int header = 2 + buf[2] + 4;//(strBuffer.indexOf("a0007800")+8)/2;//160x120
-        if (buf[2] > 8) {
-            result.setNumberOfBody(buf[6]);
-            result.setNumberOfHand(buf[7]);
-            result.setNumberOfFace(buf[8]);
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, "body:" + result.getNumberOfBody());
-                Log.d(TAG, "hand:" + result.getNumberOfHand());
-                Log.d(TAG, "face:" + result.getNumberOfFace());
+    /**
+     * Stop periodic Okao Execute.
+     */
+    private synchronized void stopDetection() {
+        if (mDetectionFuture != null) {
+            mDetectionFuture.cancel(false);
+            mDetectionFuture = null;
+        }
+    }
+
+    /**
+     * Okao Execute.
+     * <p>
+     * If Okao Execute is already waiting for the response, its result is shared.
+     * </p>
+     */
+    private void executeOkao() {
+        if (mOkaoExecuting.compareAndSet(false, true)) {
+            sendCommand(OKAO_EXECUTE, mOkaoCallback);
+        }
+    }
+
+    /**
+     * Notify Okao Result.
+     * @param result Okao Result
+     * @param event true if notify to event listeners
+     */
+    private void notifyOkaoResult(final OkaoResult result, final boolean event) {
+        for (String key : mServices.keySet()) {
+            HVCCameraInfo camera = mServices.get(key);
+            if (camera == null) {
+                continue;
             }
-            for (int i = 0; i < result.getNumberOfBody(); i++) {
-                result.getBodyX()[i] = (buf[10 + 11 * i] & 0xff) + ((buf[10 + 11 * i + 1] & 0xff) << 8);
-                result.getBodyY()[i] = (buf[10 + 11 * i + 2] & 0xff) + ((buf[10 + 11 * i + 3] & 0xff) << 8);
-                result.getBodySize()[i] = (buf[10 + 11 * i + 4] & 0xff) + ((buf[10 + 11 * i + 5] & 0xff) << 8);
-                result.getBodyDetectConfidence()[i] = (buf[10 + 11 * i + 6] & 0xff) + ((buf[10 + 11 * i + 7] & 0xff) << 8);
-                if (BuildConfig.DEBUG) {
-                    String bodyDebug = "[body" + result.getNumberOfBody() + "]"
-                            + "| x:" + result.getBodyX()[i]
-                            + "| y:" + result.getBodyY()[i]
-                            + "| size:" + result.getBodySize()[i]
-                            + "| Confidence:" + result.getBodyDetectConfidence()[i] + "\n";
-                    Log.d(TAG, bodyDebug);
+            if (event) {
+                if (camera.getBodyEvent() != null) {
+                    camera.getBodyEvent().onNotifyForBodyDetectResult(key, result);
                 }
-            }
-
-            for (int i = 0; i < result.getNumberOfHand(); i++) {
-                result.getHandX()[i] = (buf[10 + 11 * (result.getNumberOfBody() + i)] & 0xff) + ((buf[10 + 11 * (result.getNumberOfBody() + i) + 1] & 0xff) << 8);
-                result.getHandY()[i] = (buf[10 + 11 * (result.getNumberOfBody() + i) + 2] & 0xff) + ((buf[10 + 11 * (result.getNumberOfBody() + i) + 3] & 0xff) << 8);
-                result.getHandSize()[i] = (buf[10 + 11 * (result.getNumberOfBody() + i) + 4] & 0xff) + ((buf[10 + 11 * (result.getNumberOfBody() + i) + 5] & 0xff) << 8);
-                result.getHandDetectConfidence()[i] = (buf[10 + 11 * (result.getNumberOfBody() + i) + 6] & 0xff) + ((buf[10 + 11 * (result.getNumberOfBody() + i) + 7] & 0xff) << 8);
-                if (BuildConfig.DEBUG) {
-                    String handDebug = "[hand" + result.getNumberOfHand() + "]"
-                            + "| x:" + result.getHandX()[i]
-                            + "| y:" + result.getHandY()[i]
-                            + "| size:" + result.getHandSize()[i]
-                            + "| Confidence:" + result.getHandDetectConfidence()[i] + "\n";
-                    Log.d(TAG, handDebug);
+                if (camera.getHandEvent() != null) {
+                    camera.getHandEvent().onNotifyForHandDetectResult(key, result);
+                }
+                if (camera.getFaceEvent() != null) {
+                    camera.getFaceEvent().onNotifyForFaceDetectResult(key, result);
                 }
             }
 
-            for (int i = 0; i < result.getNumberOfFace(); i++) {
-                result.getFaceX()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i)] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 1] & 0xff) << 8);
-                result.getFaceY()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 2] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 3] & 0xff) << 8);
-                result.getFaceSize()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 4] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 5] & 0xff) << 8);
-                result.getFaceDetectConfidence()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 6] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 7] & 0xff) << 8);
-
-                result.getFaceDirectionLR()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i)] + 8 & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 9] & 0xff) << 8);
-                result.getFaceDirectionUD()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 10] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 11] & 0xff) << 8);
-                result.getFaceDirectionSlope()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 12] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 13] & 0xff) << 8);
-                result.getFaceDirectionConfidence()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 14] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 15] & 0xff) << 8);
-
-                result.getAge()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 16] & 0xff);
-                result.getAgeConfidence()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 17] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 18] & 0xff) << 8);
-
-                result.getGender()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 19] & 0xff);
-                result.getGenderConfidence()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 20] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 21] & 0xff) << 8);
-
-                result.getGazeLR()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 22] & 0xff);
-                result.getGazeUD()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 23] & 0xff);
-                result.getBlinkLeft()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 24] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 25] & 0xff) << 8);
-                result.getBlinkRight()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 26] & 0xff)
-                        + ((buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 27] & 0xff) << 8);
-
-                result.getExpressionUnknown()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 28] & 0xff);
-                result.getExpressionSmile()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 29] & 0xff);
-                result.getExpressionSurprise()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 30] & 0xff);
-                result.getExpressionMad()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 31] & 0xff);
-                result.getExpressionSad()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 32] & 0xff);
-                result.getExpressionConfidence()[i] = (buf[10 + 11 * (result.getNumberOfBody() + result.getNumberOfHand() + i) + 33] & 0xff);
-
+            HVCCameraInfo.OneShotOkaoResultResoponseListener l = camera.getBodyGet();
+            if (l != null) {
+                camera.setBodyGet(null);
+                l.onResponse(key, result);
             }
+            l = camera.getHandGet();
+            if (l != null) {
+                camera.setHandGet(null);
+                l.onResponse(key, result);
+            }
+            l = camera.getFaceGet();
+            if (l != null) {
+                camera.setFaceGet(null);
+                l.onResponse(key, result);
+            }
+        }
+    }
 
+    /**
+     * Clear Okao Result.
+     * @return cleared Okao Result
+     */
+    private OkaoResult clearOkaoResult() {
+        mOkaoResult.setNumberOfBody(0);
+        mOkaoResult.setNumberOfHand(0);
+        mOkaoResult.setNumberOfFace(0);
+        return mOkaoResult;
+    }
+
+    /**
+     * Handle Command Error.
+     * @param e exception
+     */
+    private void handleError(final IOException e) {
+        if (BuildConfig.DEBUG) {
+            Log.e(TAG, "HVC-P command error.", e);
+        }
+        if (!(e instanceof InterruptedIOException)) {
+            // ポートが使えなくなったので閉じる。次のコマンドで開き直す
+            closePort();
         }
-        return result;
     }
 
     /**
@@ -825,40 +775,87 @@ public enum HVCManager {
      *
      * @param stCommand
      *            Command String Example) FF00AE11
-     * @param interval Interval
+     * @param callback Response Callback
      */
-    private void sendCommand(final String stCommand, final Long interval) {
+    private void sendCommand(final String stCommand, final HVCPCommandQueue.Callback callback) {
+        HVCPCommandQueue queue = openPort();
+        if (queue == null) {
+            callback.onError(new InterruptedIOException("HVC-P is not opened."));
+            return;
+        }
+        queue.enqueue(hex2bin(stCommand), callback);
+    }
+
+    /**
+     * Open USB serial port and start the command queue.
+     * @return Command Queue. null if failed to open
+     */
+    private synchronized HVCPCommandQueue openPort() {
+        if (mCommandQueue != null && mCommandQueue.isRunning()) {
+            return mCommandQueue;
+        }
+
         List<UsbSerialDriver> availableDrivers = UsbSerialProber.getDefaultProber().findAllDrivers(mUsbManager);
         if (availableDrivers.isEmpty()) {
-            return;
+            return null;
         }
 
         UsbSerialDriver driver = availableDrivers.get(0);
         UsbDeviceConnection connection = mUsbManager.openDevice(driver.getDevice());
         if (connection == null) {
             // You probably need to call UsbManager.requestPermission(driver.getDevice(), ..)
-            return;
+            return null;
         }
-        mUsbDriver = driver.getPorts().get(0);
+        final UsbSerialPort port = driver.getPorts().get(0);
+        if (port == null) {
+            return null;
+        }
+        try {
+            port.open(connection);
+            port.setParameters(921600, 8, UsbSerialPort.STOPBITS_1, UsbSerialPort.PARITY_NONE);
+        } catch (IOException e) {
+            if (BuildConfig.DEBUG) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+        mUsbDriver = port;
+        // HVC-P is connected through FTDI FT232R.
+        mCommandQueue = new HVCPCommandQueue(new FtdiStatusFilter(new HVCPSerialPort() {
+            @Override
+            public int read(final byte[] dest, final int timeoutMillis) throws IOException {
+                return port.read(dest, timeoutMillis);
+            }
 
+            @Override
+            public int write(final byte[] src, final int timeoutMillis) throws IOException {
+                return port.write(src, timeoutMillis);
+            }
+        }));
+        mCommandQueue.start();
+        return mCommandQueue;
+    }
+
+    /**
+     * Stop the command queue and close USB serial port.
+     */
+    private synchronized void closePort() {
+        if (mCommandQueue != null) {
+            mCommandQueue.stop();
+            mCommandQueue = null;
+        }
         if (mUsbDriver != null) {
             try {
-                mUsbDriver.open(connection);
-
-                mUsbDriver.setParameters(921600, 8, UsbSerialPort.STOPBITS_1, UsbSerialPort.PARITY_NONE);
-
-                startReadThread(stCommand, interval);
-                byte send[] = hex2bin(stCommand);
-                mUsbDriver.write(send, send.length);
-
-
+                mUsbDriver.close();
             } catch (IOException e) {
                 if (BuildConfig.DEBUG) {
                     e.printStackTrace();
                 }
             }
+            mUsbDriver = null;
         }
     }
+
     /**
      * Check Remove Event list.
      * @param serviceId ServiceID
@@ -871,6 +868,9 @@ public enum HVCManager {
                 && camera.getFaceRecognizeEvent() == null) {
             mEventList.remove(camera.getID());
         }
+        if (mEventList.isEmpty()) {
+            stopDetection();
+        }
     }
 
     /**
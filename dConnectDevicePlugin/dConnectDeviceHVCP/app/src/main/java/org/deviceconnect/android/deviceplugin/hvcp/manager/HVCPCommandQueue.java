@@ -0,0 +1,257 @@
+/*
+ HVCPCommandQueue
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends commands to HVC-P one by one and matches the responses.
+ * <p>
+ * A dedicated thread owns the serial port. It writes a queued command, reads the response
+ * as the bytes arrive, and sends the next command as soon as the response is completed,
+ * so commands run at the speed of the device.
+ * Callbacks are called on that thread.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class HVCPCommandQueue {
+    /** Default response timeout(ms). */
+    public static final long DEFAULT_RESPONSE_TIMEOUT = 5000;
+    /** Read timeout(ms). */
+    private static final int READ_TIMEOUT = 100;
+    /** Write timeout(ms). */
+    private static final int WRITE_TIMEOUT = 1000;
+    /** Read buffer size. */
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Response Callback.
+     */
+    public interface Callback {
+        /**
+         * Received the response.
+         * <p>
+         * data is valid only during this call.
+         * </p>
+         * @param status status code
+         * @param data buffer
+         * @param offset offset of data
+         * @param length data length
+         */
+        void onResponse(int status, byte[] data, int offset, int length);
+
+        /**
+         * Failed to send the command or receive the response.
+         * <p>
+         * {@link InterruptedIOException} is passed if the response timed out or the queue was stopped.
+         * </p>
+         * @param e exception
+         */
+        void onError(IOException e);
+    }
+
+    /**
+     * Queued command.
+     */
+    private static class Command {
+        /** Command bytes. */
+        private final byte[] mData;
+        /** Callback. */
+        private final Callback mCallback;
+
+        /**
+         * Constructor.
+         * @param data Command bytes
+         * @param callback Callback
+         */
+        Command(final byte[] data, final Callback callback) {
+            mData = data;
+            mCallback = callback;
+        }
+    }
+
+    /** Serial port. */
+    private final HVCPSerialPort mPort;
+    /** Response timeout(ms). */
+    private final long mResponseTimeout;
+    /** Queued commands. */
+    private final BlockingQueue<Command> mQueue = new LinkedBlockingQueue<>();
+    /** Framer. */
+    private final HVCPResponseFramer mFramer;
+    /** Command waiting for the response. Accessed only by the reader thread. */
+    private Command mInFlight;
+    /** Reader thread. */
+    private Thread mThread;
+    /** Running flag. */
+    private volatile boolean mRunning;
+
+    /**
+     * Constructor.
+     * @param port Serial port
+     */
+    public HVCPCommandQueue(final HVCPSerialPort port) {
+        this(port, DEFAULT_RESPONSE_TIMEOUT);
+    }
+
+    /**
+     * Constructor.
+     * @param port Serial port
+     * @param responseTimeout Response timeout(ms)
+     */
+    public HVCPCommandQueue(final HVCPSerialPort port, final long responseTimeout) {
+        mPort = port;
+        mResponseTimeout = responseTimeout;
+        mFramer = new HVCPResponseFramer(new HVCPResponseFramer.OnResponseListener() {
+            @Override
+            public void onResponse(final int status, final byte[] data, final int offset, final int length) {
+                Command command = mInFlight;
+                mInFlight = null;
+                if (command != null) {
+                    command.mCallback.onResponse(status, data, offset, length);
+                }
+            }
+        });
+    }
+
+    /**
+     * Start reader thread.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "HVCP-Reader");
+        mThread.start();
+    }
+
+    /**
+     * Stop reader thread.
+     * <p>
+     * Queued commands are failed with {@link InterruptedIOException}.
+     * </p>
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = mThread;
+            mThread = null;
+            mRunning = false;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            if (thread != Thread.currentThread()) {
+                try {
+                    thread.join(READ_TIMEOUT * 2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        failAll(new InterruptedIOException("Command queue is stopped."));
+    }
+
+    /**
+     * Return true if the reader thread is running.
+     * @return true if running
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Queue a command.
+     * @param command Command bytes
+     * @param callback Callback
+     */
+    public void enqueue(final byte[] command, final Callback callback) {
+        synchronized (this) {
+            if (mRunning) {
+                mQueue.add(new Command(command, callback));
+                return;
+            }
+        }
+        callback.onError(new InterruptedIOException("Command queue is stopped."));
+    }
+
+    /**
+     * Return number of commands waiting to be sent.
+     * @return number of commands
+     */
+    public int getQueuedCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * Reader thread loop.
+     */
+    private void loop() {
+        byte[] buf = new byte[READ_BUFFER_SIZE];
+        while (mRunning) {
+            Command command;
+            try {
+                command = mQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            mFramer.reset();
+            mInFlight = command;
+            try {
+                mPort.write(command.mData, WRITE_TIMEOUT);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mResponseTimeout);
+                while (mInFlight != null) {
+                    if (!mRunning) {
+                        throw new InterruptedIOException("Command queue is stopped.");
+                    }
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        throw new InterruptedIOException("Response timeout.");
+                    }
+                    int num = mPort.read(buf, (int) Math.min(remaining, READ_TIMEOUT));
+                    if (num > 0) {
+                        mFramer.feed(buf, 0, num);
+                    }
+                }
+            } catch (IOException e) {
+                Command failed = mInFlight;
+                mInFlight = null;
+                if (failed != null) {
+                    failed.mCallback.onError(e);
+                }
+            }
+        }
+        Command failed = mInFlight;
+        mInFlight = null;
+        if (failed != null) {
+            failed.mCallback.onError(new InterruptedIOException("Command queue is stopped."));
+        }
+    }
+
+    /**
+     * Fail all queued commands.
+     * @param e exception
+     */
+    private void failAll(final IOException e) {
+        List<Command> commands = new ArrayList<>();
+        mQueue.drainTo(commands);
+        for (Command command : commands) {
+            command.mCallback.onError(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ HVCPResponseFramer
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+/**
+ * Splits HVC-P responses from serial bytes.
+ * <p>
+ * Response format: Sync(0xFE), Status(1byte), Data length(4bytes, LSB first), Data.
+ * Bytes may be fed in any chunk size; a response is reported as soon as its last byte arrives.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class HVCPResponseFramer {
+    /** Sync code. */
+    public static final int SYNC = 0xFE;
+    /** Header size. */
+    public static final int HEADER_SIZE = 6;
+    /** Max data size. (result + 320x240 image) */
+    public static final int MAX_DATA_SIZE = 320 * 240 + 4 + 4096;
+    /** Initial buffer size. */
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * Response Listener.
+     */
+    public interface OnResponseListener {
+        /**
+         * Received a response.
+         * <p>
+         * data is valid only during this call.
+         * </p>
+         * @param status status code
+         * @param data buffer
+         * @param offset offset of data
+         * @param length data length
+         */
+        void onResponse(int status, byte[] data, int offset, int length);
+    }
+
+    /** Listener. */
+    private final OnResponseListener mListener;
+    /** Buffer. */
+    private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+    /** Buffered size. */
+    private int mLength;
+    /** Number of discarded bytes. */
+    private long mDiscarded;
+
+    /**
+     * Constructor.
+     * @param listener Listener
+     */
+    public HVCPResponseFramer(final OnResponseListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Discard buffered bytes.
+     */
+    public void reset() {
+        mLength = 0;
+    }
+
+    /**
+     * Return number of discarded bytes.
+     * @return number of bytes
+     */
+    public long getDiscardedBytes() {
+        return mDiscarded;
+    }
+
+    /**
+     * Feed received bytes.
+     * @param src buffer
+     * @param offset offset
+     * @param length length
+     */
+    public void feed(final byte[] src, final int offset, final int length) {
+        ensureCapacity(mLength + length);
+        System.arraycopy(src, offset, mBuffer, mLength, length);
+        mLength += length;
+
+        int pos = 0;
+        while (pos < mLength) {
+            if ((mBuffer[pos] & 0xFF) != SYNC) {
+                pos++;
+                mDiscarded++;
+                continue;
+            }
+            if (mLength - pos < HEADER_SIZE) {
+                break;
+            }
+            int dataLength = (mBuffer[pos + 2] & 0xFF)
+                    | ((mBuffer[pos + 3] & 0xFF) << 8)
+                    | ((mBuffer[pos + 4] & 0xFF) << 16)
+                    | ((mBuffer[pos + 5] & 0xFF) << 24);
+            if (dataLength < 0 || dataLength > MAX_DATA_SIZE) {
+                // 壊れたヘッダなので次の同期コードを探す
+                pos++;
+                mDiscarded++;
+                continue;
+            }
+            if (mLength - pos < HEADER_SIZE + dataLength) {
+                break;
+            }
+            int status = mBuffer[pos + 1] & 0xFF;
+            mListener.onResponse(status, mBuffer, pos + HEADER_SIZE, dataLength);
+            pos += HEADER_SIZE + dataLength;
+        }
+
+        if (pos > 0) {
+            mLength -= pos;
+            System.arraycopy(mBuffer, pos, mBuffer, 0, mLength);
+        }
+    }
+
+    /**
+     * Grow buffer.
+     * @param size required size
+     */
+    private void ensureCapacity(final int size) {
+        if (size > mBuffer.length) {
+            int newSize = mBuffer.length;
+            while (newSize < size) {
+                newSize *= 2;
+            }
+            byte[] buffer = new byte[newSize];
+            System.arraycopy(mBuffer, 0, buffer, 0, mLength);
+            mBuffer = buffer;
+        }
+    }
+}
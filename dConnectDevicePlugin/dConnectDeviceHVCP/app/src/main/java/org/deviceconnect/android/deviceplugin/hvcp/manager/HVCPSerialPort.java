@@ -0,0 +1,33 @@
+/*
+ HVCPSerialPort
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+import java.io.IOException;
+
+/**
+ * Serial port connected to HVC-P.
+ * @author NTT DOCOMO, INC.
+ */
+public interface HVCPSerialPort {
+    /**
+     * Read bytes.
+     * @param dest destination buffer
+     * @param timeoutMillis timeout(ms)
+     * @return number of read bytes. 0 if timed out
+     * @throws IOException failed to read
+     */
+    int read(byte[] dest, int timeoutMillis) throws IOException;
+
+    /**
+     * Write bytes.
+     * @param src source buffer
+     * @param timeoutMillis timeout(ms)
+     * @return number of written bytes
+     * @throws IOException failed to write
+     */
+    int write(byte[] src, int timeoutMillis) throws IOException;
+}
@@ -0,0 +1,200 @@
+/*
+ OkaoResultDecoder
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+import org.deviceconnect.android.deviceplugin.hvcp.manager.data.OkaoResult;
+
+/**
+ * Decodes the data of the HVC-P Execute Detection response.
+ * <p>
+ * Data format: Number of bodies(1byte), hands(1byte), faces(1byte), Reserved(1byte),
+ * body results, hand results, face results, image.
+ * The size of a face result depends on the execute flags.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public final class OkaoResultDecoder {
+    /** Execute flag 1: Body Detection. */
+    public static final int FLAG_BODY = 0x01;
+    /** Execute flag 1: Hand Detection. */
+    public static final int FLAG_HAND = 0x02;
+    /** Execute flag 1: Face Detection. */
+    public static final int FLAG_FACE = 0x04;
+    /** Execute flag 1: Face Direction Estimation. */
+    public static final int FLAG_DIRECTION = 0x08;
+    /** Execute flag 1: Age Estimation. */
+    public static final int FLAG_AGE = 0x10;
+    /** Execute flag 1: Gender Estimation. */
+    public static final int FLAG_GENDER = 0x20;
+    /** Execute flag 1: Gaze Estimation. */
+    public static final int FLAG_GAZE = 0x40;
+    /** Execute flag 1: Blink Estimation. */
+    public static final int FLAG_BLINK = 0x80;
+    /** Execute flag 2: Expression Estimation. */
+    public static final int FLAG_EXPRESSION = 0x01;
+
+    /** Size of count fields. */
+    private static final int COUNT_SIZE = 4;
+    /** Size of a detection result. */
+    private static final int DETECTION_SIZE = 8;
+    /** Max number of results in OkaoResult. */
+    private static final int MAX_RESULTS = 35;
+
+    /**
+     * Constructor.
+     */
+    private OkaoResultDecoder() {
+    }
+
+    /**
+     * Return size of a face result.
+     * @param flags1 Execute flag 1
+     * @param flags2 Execute flag 2
+     * @return size
+     */
+    public static int getFaceResultSize(final int flags1, final int flags2) {
+        int size = DETECTION_SIZE;
+        if ((flags1 & FLAG_DIRECTION) != 0) {
+            size += 8;
+        }
+        if ((flags1 & FLAG_AGE) != 0) {
+            size += 3;
+        }
+        if ((flags1 & FLAG_GENDER) != 0) {
+            size += 3;
+        }
+        if ((flags1 & FLAG_GAZE) != 0) {
+            size += 2;
+        }
+        if ((flags1 & FLAG_BLINK) != 0) {
+            size += 4;
+        }
+        if ((flags2 & FLAG_EXPRESSION) != 0) {
+            size += 6;
+        }
+        return size;
+    }
+
+    /**
+     * Decode the response data into result.
+     * <p>
+     * The arrays of result are reused, only the entries up to the number of results are overwritten.
+     * </p>
+     * @param flags1 Execute flag 1
+     * @param flags2 Execute flag 2
+     * @param data buffer
+     * @param offset offset of data
+     * @param length data length
+     * @param result result to store
+     * @return true if decoded, false if the data is too short
+     */
+    public static boolean decode(final int flags1, final int flags2, final byte[] data, final int offset,
+                                 final int length, final OkaoResult result) {
+        if (length < COUNT_SIZE) {
+            return false;
+        }
+        int bodies = data[offset] & 0xFF;
+        int hands = data[offset + 1] & 0xFF;
+        int faces = data[offset + 2] & 0xFF;
+        int faceSize = getFaceResultSize(flags1, flags2);
+        if (length < COUNT_SIZE + DETECTION_SIZE * (bodies + hands) + faceSize * faces) {
+            return false;
+        }
+
+        int pos = offset + COUNT_SIZE;
+        result.setNumberOfBody(Math.min(bodies, MAX_RESULTS));
+        for (int i = 0; i < bodies; i++, pos += DETECTION_SIZE) {
+            if (i < MAX_RESULTS) {
+                result.getBodyX()[i] = u16(data, pos);
+                result.getBodyY()[i] = u16(data, pos + 2);
+                result.getBodySize()[i] = u16(data, pos + 4);
+                result.getBodyDetectConfidence()[i] = u16(data, pos + 6);
+            }
+        }
+
+        result.setNumberOfHand(Math.min(hands, MAX_RESULTS));
+        for (int i = 0; i < hands; i++, pos += DETECTION_SIZE) {
+            if (i < MAX_RESULTS) {
+                result.getHandX()[i] = u16(data, pos);
+                result.getHandY()[i] = u16(data, pos + 2);
+                result.getHandSize()[i] = u16(data, pos + 4);
+                result.getHandDetectConfidence()[i] = u16(data, pos + 6);
+            }
+        }
+
+        result.setNumberOfFace(Math.min(faces, MAX_RESULTS));
+        for (int i = 0; i < faces && i < MAX_RESULTS; i++, pos += faceSize) {
+            decodeFace(flags1, flags2, data, pos, i, result);
+        }
+        return true;
+    }
+
+    /**
+     * Decode a face result.
+     * @param flags1 Execute flag 1
+     * @param flags2 Execute flag 2
+     * @param data buffer
+     * @param offset offset of the face result
+     * @param i index of the face
+     * @param result result to store
+     */
+    private static void decodeFace(final int flags1, final int flags2, final byte[] data, final int offset,
+                                   final int i, final OkaoResult result) {
+        int pos = offset;
+        result.getFaceX()[i] = u16(data, pos);
+        result.getFaceY()[i] = u16(data, pos + 2);
+        result.getFaceSize()[i] = u16(data, pos + 4);
+        result.getFaceDetectConfidence()[i] = u16(data, pos + 6);
+        pos += DETECTION_SIZE;
+
+        if ((flags1 & FLAG_DIRECTION) != 0) {
+            result.getFaceDirectionLR()[i] = u16(data, pos);
+            result.getFaceDirectionUD()[i] = u16(data, pos + 2);
+            result.getFaceDirectionSlope()[i] = u16(data, pos + 4);
+            result.getFaceDirectionConfidence()[i] = u16(data, pos + 6);
+            pos += 8;
+        }
+        if ((flags1 & FLAG_AGE) != 0) {
+            result.getAge()[i] = data[pos] & 0xFF;
+            result.getAgeConfidence()[i] = u16(data, pos + 1);
+            pos += 3;
+        }
+        if ((flags1 & FLAG_GENDER) != 0) {
+            result.getGender()[i] = data[pos] & 0xFF;
+            result.getGenderConfidence()[i] = u16(data, pos + 1);
+            pos += 3;
+        }
+        if ((flags1 & FLAG_GAZE) != 0) {
+            result.getGazeLR()[i] = data[pos] & 0xFF;
+            result.getGazeUD()[i] = data[pos + 1] & 0xFF;
+            pos += 2;
+        }
+        if ((flags1 & FLAG_BLINK) != 0) {
+            result.getBlinkLeft()[i] = u16(data, pos);
+            result.getBlinkRight()[i] = u16(data, pos + 2);
+            pos += 4;
+        }
+        if ((flags2 & FLAG_EXPRESSION) != 0) {
+            result.getExpressionUnknown()[i] = data[pos] & 0xFF;
+            result.getExpressionSmile()[i] = data[pos + 1] & 0xFF;
+            result.getExpressionSurprise()[i] = data[pos + 2] & 0xFF;
+            result.getExpressionMad()[i] = data[pos + 3] & 0xFF;
+            result.getExpressionSad()[i] = data[pos + 4] & 0xFF;
+            result.getExpressionConfidence()[i] = data[pos + 5] & 0xFF;
+        }
+    }
+
+    /**
+     * Read unsigned 16bit value. (LSB first)
+     * @param data buffer
+     * @param pos position
+     * @return value
+     */
+    private static int u16(final byte[] data, final int pos) {
+        return (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ HVCPCommandQueueTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+import org.deviceconnect.android.deviceplugin.hvcp.manager.data.OkaoResult;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of HVCPCommandQueue with a simulated HVC-P.
+ * @author NTT DOCOMO, INC.
+ */
+public class HVCPCommandQueueTest {
+    /** Execute Detection without image. */
+    private static final byte[] EXECUTE = {(byte) 0xFE, 0x04, 0x03, 0x00, (byte) 0xFF, 0x01, 0x00};
+    /** Execute Detection with 160x120 image. */
+    private static final byte[] EXECUTE_WITH_IMAGE = {(byte) 0xFE, 0x04, 0x03, 0x00, (byte) 0xFF, 0x01, 0x02};
+    /** Set Threshold. */
+    private static final byte[] SET_THRESHOLD = {(byte) 0xFE, 0x05, 0x08, 0x00,
+            (byte) 0xF4, 0x01, (byte) 0xF4, 0x01, (byte) 0xF4, 0x01, (byte) 0xF4, 0x01};
+    /** Set Size Range. */
+    private static final byte[] SET_SIZE = {(byte) 0xFE, 0x07, 0x0C, 0x00,
+            0x1E, 0x00, 0x00, 0x20, 0x28, 0x00, 0x00, 0x20, 0x40, 0x00, 0x00, 0x20};
+    /** Unknown command. */
+    private static final byte[] UNKNOWN = {(byte) 0xFE, 0x7E, 0x00, 0x00};
+    /** Baud rate of HVC-P. */
+    private static final int BAUD_RATE = 921600;
+
+    /** Queue. */
+    private HVCPCommandQueue mQueue;
+
+    @After
+    public void tearDown() {
+        if (mQueue != null) {
+            mQueue.stop();
+        }
+    }
+
+    /**
+     * Records the response of a command.
+     */
+    private static class ResultCallback implements HVCPCommandQueue.Callback {
+        final CountDownLatch mDone = new CountDownLatch(1);
+        final byte[] mCommand;
+        final List<byte[]> mOrder;
+        volatile int mStatus = -1;
+        volatile int mLength = -1;
+        volatile long mSequence = -1;
+        volatile IOException mError;
+        volatile long mTime;
+
+        ResultCallback(final byte[] command, final List<byte[]> order) {
+            mCommand = command;
+            mOrder = order;
+        }
+
+        @Override
+        public void onResponse(final int status, final byte[] data, final int offset, final int length) {
+            mTime = System.nanoTime();
+            mStatus = status;
+            mLength = length;
+            if (mCommand[1] == SimulatedHVCPDevice.CMD_EXECUTE) {
+                OkaoResult result = new OkaoResult();
+                if (OkaoResultDecoder.decode(0xFF, 0x01, data, offset, length, result)) {
+                    mSequence = result.getBodyX()[0];
+                }
+            }
+            if (mOrder != null) {
+                mOrder.add(mCommand);
+            }
+            mDone.countDown();
+        }
+
+        @Override
+        public void onError(final IOException e) {
+            mError = e;
+            if (mOrder != null) {
+                mOrder.add(mCommand);
+            }
+            mDone.countDown();
+        }
+    }
+
+    @Test
+    public void detectionRunsAtDeviceSpeed() throws Exception {
+        final SimulatedHVCPDevice device = new SimulatedHVCPDevice(30, BAUD_RATE);
+        mQueue = new HVCPCommandQueue(device);
+        mQueue.start();
+
+        final OkaoResult result = new OkaoResult();
+        final List<Long> received = Collections.synchronizedList(new ArrayList<Long>());
+        final AtomicInteger errors = new AtomicInteger();
+        final long duration = TimeUnit.SECONDS.toNanos(1);
+        final long start = System.nanoTime();
+        final CountDownLatch finished = new CountDownLatch(1);
+        mQueue.enqueue(EXECUTE, new HVCPCommandQueue.Callback() {
+            @Override
+            public void onResponse(final int status, final byte[] data, final int offset, final int length) {
+                received.add(System.nanoTime());
+                if (!OkaoResultDecoder.decode(0xFF, 0x01, data, offset, length, result)
+                        || result.getBodyX()[0] != received.size() - 1) {
+                    errors.incrementAndGet();
+                }
+                if (System.nanoTime() - start < duration) {
+                    mQueue.enqueue(EXECUTE, this);
+                } else {
+                    finished.countDown();
+                }
+            }
+
+            @Override
+            public void onError(final IOException e) {
+                errors.incrementAndGet();
+                finished.countDown();
+            }
+        });
+        assertTrue(finished.await(3, TimeUnit.SECONDS));
+        long elapsed = received.get(received.size() - 1) - start;
+
+        List<Long> completed = device.getCompletedTimes();
+        assertEquals(received.size(), completed.size());
+        long totalLatency = 0;
+        long maxLatency = 0;
+        for (int i = 0; i < received.size(); i++) {
+            long latency = received.get(i) - completed.get(i);
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+        double averageLatency = totalLatency / 1e6 / received.size();
+        double ideal = device.getExecuteResponseTime(0) / 1e6;
+        double throughput = received.size() / (elapsed / 1e9);
+        System.out.println(String.format("HVCPCommandQueue: %d results, %.1f results/s (device max %.1f/s), "
+                        + "latency after last byte avg %.2fms max %.2fms",
+                received.size(), throughput, 1000 / ideal, averageLatency, maxLatency / 1e6));
+
+        assertEquals(0, errors.get());
+        assertTrue("throughput=" + throughput, throughput >= 1000 / ideal * 0.85);
+        assertTrue("latency=" + averageLatency, averageLatency < 5);
+    }
+
+    @Test
+    public void largeResponseIsReadAsBytesArrive() throws Exception {
+        SimulatedHVCPDevice device = new SimulatedHVCPDevice(10, BAUD_RATE);
+        mQueue = new HVCPCommandQueue(device);
+        mQueue.start();
+
+        ResultCallback callback = new ResultCallback(EXECUTE_WITH_IMAGE, null);
+        long start = System.nanoTime();
+        mQueue.enqueue(EXECUTE_WITH_IMAGE, callback);
+        assertTrue(callback.mDone.await(2, TimeUnit.SECONDS));
+
+        double expected = device.getExecuteResponseTime(160 * 120) / 1e6;
+        double actual = (callback.mTime - start) / 1e6;
+        assertEquals(0, callback.mStatus);
+        assertEquals(4 + 8 * 3 + 34 + 4 + 160 * 120, callback.mLength);
+        assertEquals(0, callback.mSequence);
+        assertTrue("actual=" + actual + " expected=" + expected, actual >= expected && actual < expected + 20);
+    }
+
+    @Test
+    public void responsesAreMatchedToCommands() throws Exception {
+        SimulatedHVCPDevice device = new SimulatedHVCPDevice(5, BAUD_RATE);
+        mQueue = new HVCPCommandQueue(device);
+        mQueue.start();
+
+        final byte[][] commands = {SET_THRESHOLD, EXECUTE, SET_SIZE, UNKNOWN, EXECUTE};
+        final List<byte[]> order = Collections.synchronizedList(new ArrayList<byte[]>());
+        final List<ResultCallback> callbacks = Collections.synchronizedList(new ArrayList<ResultCallback>());
+        Thread[] threads = new Thread[3];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10; i++) {
+                        byte[] command = commands[i % commands.length];
+                        ResultCallback callback = new ResultCallback(command, order);
+                        callbacks.add(callback);
+                        mQueue.enqueue(command, callback);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long lastSequence = -1;
+        for (ResultCallback callback : callbacks) {
+            assertTrue(callback.mDone.await(2, TimeUnit.SECONDS));
+        }
+        List<Integer> deviceCommands = device.getCommands();
+        assertEquals(callbacks.size(), deviceCommands.size());
+        for (int i = 0; i < order.size(); i++) {
+            byte[] command = order.get(i);
+            assertEquals(command[1] & 0xFF, (int) deviceCommands.get(i));
+        }
+        for (ResultCallback callback : callbacks) {
+            assertEquals(null, callback.mError);
+            switch (callback.mCommand[1]) {
+                case SimulatedHVCPDevice.CMD_EXECUTE:
+                    assertEquals(0, callback.mStatus);
+                    assertTrue(callback.mLength > 0);
+                    break;
+                case SimulatedHVCPDevice.CMD_SET_THRESHOLD:
+                case SimulatedHVCPDevice.CMD_SET_SIZE:
+                    assertEquals(0, callback.mStatus);
+                    assertEquals(0, callback.mLength);
+                    break;
+                default:
+                    assertEquals(SimulatedHVCPDevice.STATUS_INVALID_COMMAND, callback.mStatus);
+                    break;
+            }
+        }
+        // Execute results are delivered in order.
+        List<ResultCallback> executes = new ArrayList<>();
+        for (ResultCallback callback : callbacks) {
+            if (callback.mCommand == EXECUTE) {
+                executes.add(callback);
+            }
+        }
+        Collections.sort(executes, new java.util.Comparator<ResultCallback>() {
+            @Override
+            public int compare(final ResultCallback a, final ResultCallback b) {
+                return Long.compare(a.mTime, b.mTime);
+            }
+        });
+        for (ResultCallback callback : executes) {
+            assertTrue(callback.mSequence > lastSequence);
+            lastSequence = callback.mSequence;
+        }
+        assertEquals(callbacks.size() * 2 / 5 - 1, lastSequence);
+    }
+
+    @Test
+    public void timeoutMovesToNextCommand() throws Exception {
+        SimulatedHVCPDevice device = new SimulatedHVCPDevice(5, BAUD_RATE);
+        mQueue = new HVCPCommandQueue(device, 200);
+        mQueue.start();
+
+        device.dropResponses(1);
+        ResultCallback lost = new ResultCallback(EXECUTE, null);
+        ResultCallback next = new ResultCallback(SET_THRESHOLD, null);
+        mQueue.enqueue(EXECUTE, lost);
+        mQueue.enqueue(SET_THRESHOLD, next);
+
+        assertTrue(lost.mDone.await(1, TimeUnit.SECONDS));
+        assertTrue(lost.mError instanceof InterruptedIOException);
+        assertTrue(next.mDone.await(1, TimeUnit.SECONDS));
+        assertEquals(0, next.mStatus);
+        assertEquals(null, next.mError);
+    }
+
+    @Test
+    public void garbageBeforeResponseIsSkipped() throws Exception {
+        SimulatedHVCPDevice device = new SimulatedHVCPDevice(5, BAUD_RATE);
+        mQueue = new HVCPCommandQueue(device);
+        mQueue.start();
+
+        device.sendGarbage(new byte[] {0x00, 0x12, 0x34});
+        ResultCallback callback = new ResultCallback(EXECUTE, null);
+        mQueue.enqueue(EXECUTE, callback);
+        assertTrue(callback.mDone.await(1, TimeUnit.SECONDS));
+        assertEquals(0, callback.mStatus);
+        assertEquals(0, callback.mSequence);
+    }
+
+    @Test
+    public void stopFailsQueuedCommands() throws Exception {
+        SimulatedHVCPDevice device = new SimulatedHVCPDevice(100, BAUD_RATE);
+        mQueue = new HVCPCommandQueue(device);
+        mQueue.start();
+
+        List<ResultCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ResultCallback callback = new ResultCallback(EXECUTE, null);
+            callbacks.add(callback);
+            mQueue.enqueue(EXECUTE, callback);
+        }
+        Thread.sleep(20);
+        mQueue.stop();
+        for (ResultCallback callback : callbacks) {
+            assertTrue(callback.mDone.await(1, TimeUnit.SECONDS));
+            assertTrue(callback.mError instanceof InterruptedIOException);
+        }
+
+        ResultCallback after = new ResultCallback(EXECUTE, null);
+        mQueue.enqueue(EXECUTE, after);
+        assertTrue(after.mError instanceof InterruptedIOException);
+    }
+}
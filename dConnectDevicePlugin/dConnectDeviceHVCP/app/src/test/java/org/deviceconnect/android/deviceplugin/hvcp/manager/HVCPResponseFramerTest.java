@@ -0,0 +1,200 @@
+/*
+ HVCPResponseFramerTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+import org.deviceconnect.android.deviceplugin.hvcp.manager.data.OkaoResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of HVCPResponseFramer and OkaoResultDecoder.
+ * @author NTT DOCOMO, INC.
+ */
+public class HVCPResponseFramerTest {
+
+    /**
+     * Records received responses.
+     */
+    private static class Recorder implements HVCPResponseFramer.OnResponseListener {
+        final List<Integer> mStatus = new ArrayList<>();
+        final List<byte[]> mData = new ArrayList<>();
+
+        @Override
+        public void onResponse(final int status, final byte[] data, final int offset, final int length) {
+            mStatus.add(status);
+            mData.add(Arrays.copyOfRange(data, offset, offset + length));
+        }
+    }
+
+    @Test
+    public void responsesAreFramedFromAnyChunkSize() {
+        byte[] stream = concat(SimulatedHVCPDevice.buildExecuteResponse(1, 160 * 120),
+                SimulatedHVCPDevice.buildResponse(0, new byte[0]),
+                SimulatedHVCPDevice.buildExecuteResponse(2, 0),
+                SimulatedHVCPDevice.buildResponse(2, new byte[] {1, 2, 3}));
+
+        Random random = new Random(1);
+        for (int trial = 0; trial < 20; trial++) {
+            Recorder recorder = new Recorder();
+            HVCPResponseFramer framer = new HVCPResponseFramer(recorder);
+            int pos = 0;
+            while (pos < stream.length) {
+                int len = Math.min(stream.length - pos, 1 + random.nextInt(trial < 10 ? 8 : 4096));
+                framer.feed(stream, pos, len);
+                pos += len;
+            }
+            assertEquals(Arrays.asList(0, 0, 0, 2), recorder.mStatus);
+            assertEquals(4 + 8 * 3 + 34 + 4 + 160 * 120, recorder.mData.get(0).length);
+            assertEquals(0, recorder.mData.get(1).length);
+            assertArrayEquals(new byte[] {1, 2, 3}, recorder.mData.get(3));
+            assertEquals(0, framer.getDiscardedBytes());
+        }
+    }
+
+    @Test
+    public void ftdiStatusBytesAreRemovedBeforeFraming() throws Exception {
+        final byte[] stream = concat(SimulatedHVCPDevice.buildExecuteResponse(1, 0),
+                SimulatedHVCPDevice.buildExecuteResponse(2, 160 * 120),
+                SimulatedHVCPDevice.buildResponse(0, new byte[] {1, 2, 3}));
+        final int payload = FtdiStatusFilter.PACKET_SIZE - FtdiStatusFilter.STATUS_SIZE;
+        final Random random = new Random(2);
+
+        // Each read returns 1 to 8 USB packets. The driver removes the status of the first packet only.
+        HVCPSerialPort ftdi = new HVCPSerialPort() {
+            private int mPos;
+
+            @Override
+            public int read(final byte[] dest, final int timeoutMillis) {
+                int packets = 1 + random.nextInt(8);
+                int num = 0;
+                for (int i = 0; i < packets && mPos < stream.length; i++) {
+                    if (i > 0) {
+                        dest[num++] = 0x01;
+                        dest[num++] = 0x60;
+                    }
+                    int len = Math.min(stream.length - mPos, payload);
+                    System.arraycopy(stream, mPos, dest, num, len);
+                    num += len;
+                    mPos += len;
+                }
+                return num;
+            }
+
+            @Override
+            public int write(final byte[] src, final int timeoutMillis) {
+                return src.length;
+            }
+        };
+
+        Recorder recorder = new Recorder();
+        HVCPResponseFramer framer = new HVCPResponseFramer(recorder);
+        FtdiStatusFilter filter = new FtdiStatusFilter(ftdi);
+        byte[] buf = new byte[FtdiStatusFilter.PACKET_SIZE * 8];
+        int total = 0;
+        int num;
+        while ((num = filter.read(buf, 100)) > 0) {
+            framer.feed(buf, 0, num);
+            total += num;
+        }
+
+        assertEquals(stream.length, total);
+        assertEquals(Arrays.asList(0, 0, 0), recorder.mStatus);
+        assertEquals(4 + 8 * 3 + 34 + 4 + 160 * 120, recorder.mData.get(1).length);
+        assertArrayEquals(new byte[] {1, 2, 3}, recorder.mData.get(2));
+        assertEquals(0, framer.getDiscardedBytes());
+    }
+
+    @Test
+    public void garbageIsSkipped() {
+        Recorder recorder = new Recorder();
+        HVCPResponseFramer framer = new HVCPResponseFramer(recorder);
+        // 0xFE followed by a broken length must not stall the framer.
+        byte[] garbage = {0x00, 0x11, (byte) 0xFE, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F};
+        byte[] stream = concat(garbage, SimulatedHVCPDevice.buildResponse(0, new byte[] {9}));
+        framer.feed(stream, 0, stream.length);
+
+        assertEquals(1, recorder.mStatus.size());
+        assertArrayEquals(new byte[] {9}, recorder.mData.get(0));
+        assertEquals(garbage.length, framer.getDiscardedBytes());
+    }
+
+    @Test
+    public void executeResultIsDecodedIntoReusedObject() {
+        OkaoResult result = new OkaoResult();
+        long[] bodyX = result.getBodyX();
+        long[] faceX = result.getFaceX();
+
+        for (int sequence = 0; sequence < 3; sequence++) {
+            byte[] response = SimulatedHVCPDevice.buildExecuteResponse(sequence, 160 * 120);
+            assertTrue(OkaoResultDecoder.decode(0xFF, 0x01, response, HVCPResponseFramer.HEADER_SIZE,
+                    response.length - HVCPResponseFramer.HEADER_SIZE, result));
+
+            assertSame(bodyX, result.getBodyX());
+            assertSame(faceX, result.getFaceX());
+            assertEquals(2, result.getNumberOfBody());
+            assertEquals(1, result.getNumberOfHand());
+            assertEquals(1, result.getNumberOfFace());
+            assertEquals(sequence, result.getBodyX()[0]);
+            assertEquals(800, result.getBodyDetectConfidence()[1]);
+            assertEquals(30, result.getHandX()[0]);
+            assertEquals(700, result.getHandDetectConfidence()[0]);
+            assertEquals(160, result.getFaceX()[0]);
+            assertEquals(120, result.getFaceY()[0]);
+            assertEquals(64, result.getFaceSize()[0]);
+            assertEquals(950, result.getFaceDetectConfidence()[0]);
+            assertEquals(10, result.getFaceDirectionLR()[0]);
+            assertEquals(20, result.getFaceDirectionUD()[0]);
+            assertEquals(30, result.getFaceDirectionSlope()[0]);
+            assertEquals(600, result.getFaceDirectionConfidence()[0]);
+            assertEquals(35, result.getAge()[0]);
+            assertEquals(400, result.getAgeConfidence()[0]);
+            assertEquals(1, result.getGender()[0]);
+            assertEquals(300, result.getGenderConfidence()[0]);
+            assertEquals(5, result.getGazeLR()[0]);
+            assertEquals(6, result.getGazeUD()[0]);
+            assertEquals(111, result.getBlinkLeft()[0]);
+            assertEquals(222, result.getBlinkRight()[0]);
+            assertEquals(60, result.getExpressionSmile()[0]);
+            assertEquals(50, result.getExpressionConfidence()[0]);
+        }
+    }
+
+    @Test
+    public void shortResultIsRejected() {
+        byte[] response = SimulatedHVCPDevice.buildExecuteResponse(0, 0);
+        OkaoResult result = new OkaoResult();
+        assertFalse(OkaoResultDecoder.decode(0xFF, 0x01, response, HVCPResponseFramer.HEADER_SIZE,
+                response.length - HVCPResponseFramer.HEADER_SIZE - 1, result));
+        assertEquals(4 + 8 * 3 + 34, response.length - HVCPResponseFramer.HEADER_SIZE);
+        assertEquals(34, OkaoResultDecoder.getFaceResultSize(0xFF, 0x01));
+        assertEquals(8, OkaoResultDecoder.getFaceResultSize(0x07, 0x00));
+    }
+
+    private static byte[] concat(final byte[]... arrays) {
+        int length = 0;
+        for (byte[] a : arrays) {
+            length += a.length;
+        }
+        byte[] result = new byte[length];
+        int pos = 0;
+        for (byte[] a : arrays) {
+            System.arraycopy(a, 0, result, pos, a.length);
+            pos += a.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ SimulatedHVCPDevice
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hvcp.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated HVC-P connected with a serial port.
+ * <p>
+ * Commands are processed one by one. A response becomes readable after the processing time,
+ * and its bytes arrive at the speed of the serial line.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class SimulatedHVCPDevice implements HVCPSerialPort {
+    /** Execute Detection command. */
+    static final int CMD_EXECUTE = 0x04;
+    /** Set Threshold command. */
+    static final int CMD_SET_THRESHOLD = 0x05;
+    /** Set Size Range command. */
+    static final int CMD_SET_SIZE = 0x07;
+    /** Status: invalid command. */
+    static final int STATUS_INVALID_COMMAND = 0xFF;
+
+    /**
+     * Response being sent.
+     */
+    private static class Response {
+        /** Command code. */
+        private final int mCommand;
+        /** Time when the device received the command(ns). */
+        private final long mReceivedTime;
+        /** Time when the first byte becomes readable(ns). */
+        private long mStartTime;
+        /** Response bytes. */
+        private final byte[] mData;
+        /** Number of bytes already read. */
+        private int mRead;
+
+        Response(final int command, final long receivedTime, final byte[] data) {
+            mCommand = command;
+            mReceivedTime = receivedTime;
+            mData = data;
+        }
+    }
+
+    /** Processing time of Execute Detection(ns). */
+    private final long mExecuteTime;
+    /** Processing time of other commands(ns). */
+    private final long mCommandTime;
+    /** Transfer time of a byte(ns). */
+    private final long mByteTime;
+    /** Responses. */
+    private final LinkedList<Response> mResponses = new LinkedList<>();
+    /** Time when the device finished sending each response(ns). */
+    private final List<Long> mCompletedTimes = new ArrayList<>();
+    /** Received command codes. */
+    private final List<Integer> mCommands = new ArrayList<>();
+    /** Number of Execute Detection. */
+    private int mExecuteCount;
+    /** Number of responses to drop. */
+    private int mDropCount;
+    /** Garbage bytes sent before the next response. */
+    private byte[] mGarbage;
+
+    /**
+     * Constructor.
+     * @param executeTime Processing time of Execute Detection(ms)
+     * @param baudRate Baud rate
+     */
+    SimulatedHVCPDevice(final long executeTime, final int baudRate) {
+        mExecuteTime = TimeUnit.MILLISECONDS.toNanos(executeTime);
+        mCommandTime = TimeUnit.MILLISECONDS.toNanos(1);
+        // 8N1: 10bit per byte
+        mByteTime = TimeUnit.SECONDS.toNanos(10) / baudRate;
+    }
+
+    /**
+     * Drop the responses of the next commands.
+     * @param count number of responses
+     */
+    synchronized void dropResponses(final int count) {
+        mDropCount = count;
+    }
+
+    /**
+     * Send garbage bytes before the next response.
+     * @param garbage garbage bytes
+     */
+    synchronized void sendGarbage(final byte[] garbage) {
+        mGarbage = garbage;
+    }
+
+    /**
+     * Return received command codes.
+     * @return command codes
+     */
+    synchronized List<Integer> getCommands() {
+        return new ArrayList<>(mCommands);
+    }
+
+    /**
+     * Return time when the device finished sending each response.
+     * @return time(ns)
+     */
+    synchronized List<Long> getCompletedTimes() {
+        return new ArrayList<>(mCompletedTimes);
+    }
+
+    /**
+     * Return the time needed to execute a detection and send the response.
+     * @param imageSize size of the image in the response
+     * @return time(ns)
+     */
+    long getExecuteResponseTime(final int imageSize) {
+        return mExecuteTime + mByteTime * buildExecuteResponse(0, imageSize).length;
+    }
+
+    @Override
+    public synchronized int write(final byte[] src, final int timeoutMillis) throws IOException {
+        if (src.length < 4 || (src[0] & 0xFF) != 0xFE) {
+            throw new IOException("Invalid command.");
+        }
+        int command = src[1] & 0xFF;
+        int length = (src[2] & 0xFF) | ((src[3] & 0xFF) << 8);
+        if (src.length != 4 + length) {
+            throw new IOException("Invalid command length.");
+        }
+        mCommands.add(command);
+        if (mDropCount > 0) {
+            mDropCount--;
+            return src.length;
+        }
+
+        long now = System.nanoTime();
+        byte[] data;
+        switch (command) {
+            case CMD_EXECUTE:
+                int imageSize = 0;
+                if (src[6] == 0x01) {
+                    imageSize = 320 * 240;
+                } else if (src[6] == 0x02) {
+                    imageSize = 160 * 120;
+                }
+                data = buildExecuteResponse(mExecuteCount++, imageSize);
+                break;
+            case CMD_SET_THRESHOLD:
+            case CMD_SET_SIZE:
+                data = buildResponse(0, new byte[0]);
+                break;
+            default:
+                data = buildResponse(STATUS_INVALID_COMMAND, new byte[0]);
+                break;
+        }
+        if (mGarbage != null) {
+            byte[] garbage = new byte[mGarbage.length + data.length];
+            System.arraycopy(mGarbage, 0, garbage, 0, mGarbage.length);
+            System.arraycopy(data, 0, garbage, mGarbage.length, data.length);
+            data = garbage;
+            mGarbage = null;
+        }
+        mResponses.add(new Response(command, now, data));
+        schedule();
+        notifyAll();
+        return src.length;
+    }
+
+    @Override
+    public synchronized int read(final byte[] dest, final int timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long now = System.nanoTime();
+            Response response = mResponses.peek();
+            if (response != null && now >= response.mStartTime) {
+                int available = (int) Math.min(response.mData.length, (now - response.mStartTime) / mByteTime)
+                        - response.mRead;
+                if (available > 0) {
+                    int num = Math.min(available, dest.length);
+                    System.arraycopy(response.mData, response.mRead, dest, 0, num);
+                    response.mRead += num;
+                    if (response.mRead == response.mData.length) {
+                        mResponses.poll();
+                        mCompletedTimes.add(response.mStartTime + mByteTime * response.mData.length);
+                        schedule();
+                    }
+                    return num;
+                }
+            }
+            if (now >= deadline) {
+                return 0;
+            }
+            long wait = deadline - now;
+            if (response != null) {
+                // 次の1byteが届くまで待つ
+                long next = response.mStartTime + mByteTime * (response.mRead + 1);
+                wait = Math.max(Math.min(wait, next - now), 1);
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, wait);
+            } catch (InterruptedException e) {
+                throw new java.io.InterruptedIOException("Interrupted.");
+            }
+        }
+    }
+
+    /**
+     * Decide when the head response starts to be sent.
+     */
+    private void schedule() {
+        Response response = mResponses.peek();
+        if (response != null && response.mStartTime == 0) {
+            long processing = response.mCommand == CMD_EXECUTE ? mExecuteTime : mCommandTime;
+            long previous = mCompletedTimes.isEmpty() ? 0 : mCompletedTimes.get(mCompletedTimes.size() - 1);
+            response.mStartTime = Math.max(response.mReceivedTime, previous) + processing;
+        }
+    }
+
+    /**
+     * Build a response.
+     * @param status status
+     * @param data data
+     * @return response bytes
+     */
+    static byte[] buildResponse(final int status, final byte[] data) {
+        byte[] response = new byte[HVCPResponseFramer.HEADER_SIZE + data.length];
+        response[0] = (byte) 0xFE;
+        response[1] = (byte) status;
+        response[2] = (byte) data.length;
+        response[3] = (byte) (data.length >> 8);
+        response[4] = (byte) (data.length >> 16);
+        response[5] = (byte) (data.length >> 24);
+        System.arraycopy(data, 0, response, HVCPResponseFramer.HEADER_SIZE, data.length);
+        return response;
+    }
+
+    /**
+     * Build a response of Execute Detection with all functions.
+     * <p>
+     * 2 bodies, 1 hand and 1 face are detected. The x position of the first body is the sequence number.
+     * </p>
+     * @param sequence sequence number
+     * @param imageSize size of the image
+     * @return response bytes
+     */
+    static byte[] buildExecuteResponse(final int sequence, final int imageSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(2);
+        out.write(1);
+        out.write(1);
+        out.write(0);
+        // body
+        writeDetection(out, sequence, 100, 50, 900);
+        writeDetection(out, 200, 110, 60, 800);
+        // hand
+        writeDetection(out, 30, 40, 20, 700);
+        // face
+        writeDetection(out, 160, 120, 64, 950);
+        write16(out, 10);
+        write16(out, 20);
+        write16(out, 30);
+        write16(out, 600);
+        out.write(35);
+        write16(out, 400);
+        out.write(1);
+        write16(out, 300);
+        out.write(5);
+        out.write(6);
+        write16(out, 111);
+        write16(out, 222);
+        out.write(10);
+        out.write(60);
+        out.write(10);
+        out.write(10);
+        out.write(10);
+        out.write(50);
+        if (imageSize > 0) {
+            int width = imageSize == 320 * 240 ? 320 : 160;
+            write16(out, width);
+            write16(out, imageSize / width);
+            out.write(new byte[imageSize], 0, imageSize);
+        }
+        return buildResponse(0, out.toByteArray());
+    }
+
+    private static void writeDetection(final ByteArrayOutputStream out, final int x, final int y,
+                                       final int size, final int confidence) {
+        write16(out, x);
+        write16(out, y);
+        write16(out, size);
+        write16(out, confidence);
+    }
+
+    private static void write16(final ByteArrayOutputStream out, final int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+}
@@ -71,6 +71,11 @@ public class HitoeManager {
     /** Device scanning running. */
     private boolean mIsCallbackRunning;
 
+    /** Number of ECG samples kept per device. */
+    private static final int ECG_BUFFER_SIZE = 1024;
+    /** Number of Acceleration samples kept per device. */
+    private static final int ACCEL_BUFFER_SIZE = 256;
+
     /** Device scan timestamp. */
     private final Map<HitoeDevice, Long> mNowTimestamps;
     /** Handler. */
@@ -116,8 +121,10 @@ public class HitoeManager {
     private final Map<HitoeDevice, HeartRateData> mHRData;
     /** Acceleration Datas. */
     private final Map<HitoeDevice, AccelerationData> mAccelData;
-    /** ECG Datas. */
-    private final Map<HitoeDevice, HeartRateData> mECGData;
+    /** ECG sample buffers. */
+    private final Map<HitoeDevice, SampleRingBuffer> mECGBuffers;
+    /** Acceleration sample buffers. */
+    private final Map<HitoeDevice, SampleRingBuffer> mAccelBuffers;
     /** Pose Estimation datas. */
     private final Map<HitoeDevice, PoseEstimationData> mPoseEstimationData;
     /** Stress Estimation datas. */
@@ -134,15 +141,15 @@ public class HitoeManager {
     /** Acceleration's interval. */
     private long mInterval = 0;
     /** Temporary storage data for pose estimation. */
-    private ArrayList<String> mListForPosture;
+    private final List<String> mListForPosture;
     /** Lock for pose estimation. */
     private ReentrantLock mLockForPosture;
     /** Temporary storage data for walking state estimation. */
-    private ArrayList<String> mListForWalk;
+    private final List<String> mListForWalk;
     /** Lock for walking state estimation. */
     private ReentrantLock mLockForWalk;
     /** Temporary storage data for the left and right balance estimation. */
-    private ArrayList<String> mListForLRBalance;
+    private final List<String> mListForLRBalance;
     /** Lock for the left and right balance estimation. */
     private ReentrantLock mLockForLRBalance;
     /** Hitoe API Callback. */
@@ -223,15 +230,17 @@ public class HitoeManager {
             }
 
             if (dataKey.equals("raw.ecg")) {
-                extractHealth(HeartData.HeartRateType.ECG, rawData, receiveDevice);
+                RawDataParseUtils.parseECG(rawData, getSampleBuffer(mECGBuffers, receiveDevice, ECG_BUFFER_SIZE, 1));
             } else if (dataKey.equals("raw.acc")) {
                 analyzeAccelerationData(rawData, receiveDevice);
+                SampleRingBuffer buffer = getSampleBuffer(mAccelBuffers, receiveDevice, ACCEL_BUFFER_SIZE, 3);
+                RawDataParseUtils.parseAccelerationData(rawData, buffer);
                 AccelerationData currentAccel = mAccelData.get(receiveDevice);
                 if (currentAccel == null) {
                     currentAccel = new AccelerationData();
+                    mAccelData.put(receiveDevice, currentAccel);
                 }
-                currentAccel = RawDataParseUtils.parseAccelerationData(currentAccel, rawData);
-                mAccelData.put(receiveDevice, currentAccel);
+                RawDataParseUtils.updateAccelerationData(currentAccel, buffer);
             } else if (dataKey.equals("raw.rri")) {
                 extractHealth(HeartData.HeartRateType.RRI, rawData, receiveDevice);
             } else if (dataKey.equals("raw.bat")) {
@@ -307,7 +316,8 @@ public class HitoeManager {
         mRegisterDevices = Collections.synchronizedList(
                 new ArrayList<HitoeDevice>());
         mHRData = new ConcurrentHashMap<>();
-        mECGData = new ConcurrentHashMap<>();
+        mECGBuffers = new ConcurrentHashMap<>();
+        mAccelBuffers = new ConcurrentHashMap<>();
         mPoseEstimationData = new ConcurrentHashMap<>();
         mStressEstimationData = new ConcurrentHashMap<>();
         mWalkStateData = new ConcurrentHashMap<>();
@@ -456,7 +466,33 @@ public class HitoeManager {
         if (pos == -1) {
             return null;
         }
-        return mECGData.get(mRegisterDevices.get(pos));
+        return createECGData(mRegisterDevices.get(pos));
+    }
+
+    /**
+     * Get ECG sample buffer.
+     * @param serviceId index id
+     * @return ECG sample buffer. null if no ECG data has been received
+     */
+    public SampleRingBuffer getECGBuffer(final String serviceId) {
+        int pos = getPosForServiceId(serviceId);
+        if (pos == -1) {
+            return null;
+        }
+        return mECGBuffers.get(mRegisterDevices.get(pos));
+    }
+
+    /**
+     * Get Acceleration sample buffer.
+     * @param serviceId index id
+     * @return Acceleration sample buffer. null if no Acceleration data has been received
+     */
+    public SampleRingBuffer getAccelerationBuffer(final String serviceId) {
+        int pos = getPosForServiceId(serviceId);
+        if (pos == -1) {
+            return null;
+        }
+        return mAccelBuffers.get(mRegisterDevices.get(pos));
     }
     /**
      * Get Stress Estimation Data.
@@ -934,9 +970,6 @@ public class HitoeManager {
         if (mHeartRataListener != null) {
             mHeartRataListener.onReceivedData(receiveDevice, mHRData.get(receiveDevice));
         }
-        if (mECGListener != null) {
-            mECGListener.onReceivedData(receiveDevice, mHRData.get(receiveDevice));
-        }
         if (mPoseEstimationListener != null) {
             mPoseEstimationListener.onReceivedData(receiveDevice, mPoseEstimationData.get(receiveDevice));
         }
@@ -950,7 +983,7 @@ public class HitoeManager {
             mDeviceOrientationListener.onReceivedData(receiveDevice, mAccelData.get(receiveDevice));
         }
         if (mECGListener != null) {
-            mECGListener.onReceivedData(receiveDevice, mECGData.get(receiveDevice));
+            mECGListener.onReceivedData(receiveDevice, createECGData(receiveDevice));
         }
         if (mStressEstimationListener != null) {
             mStressEstimationListener.onReceivedData(receiveDevice, mStressEstimationData.get(receiveDevice));
@@ -1364,18 +1397,12 @@ public class HitoeManager {
      * @param data 周波数領域特徴量データ
      */
     private void parseFreqDomain(final HitoeDevice receiveDevice, final String data) {
-
-        String[] lineList = data.split(HitoeConstants.BR);
-        ArrayList<String> stressInputList = new ArrayList<String>();
-
         if (receiveDevice.getAvailableExDataList().contains("ex.stress")) {
-            for (int i = 0; i < lineList.length; i++) {
-                stressInputList.add(lineList[i]);
-            }
-
+            TempExData exData = new TempExData("ex.stress", Collections.<String>emptyList());
+            RawDataParseUtils.addLines(data, exData.getDataList());
             try {
                 mLockForEx.lock();
-                mListForEx.add(new TempExData("ex.stress", stressInputList));
+                mListForEx.add(exData);
             } finally {
                 mLockForEx.unlock();
             }
@@ -1405,12 +1432,45 @@ public class HitoeManager {
             HeartData energy = RawDataParseUtils.parseEnergyExpended(rawData);
             currentHeartRate.setEnergyExpended(energy);
             mHRData.put(receiveDevice, currentHeartRate);
-        } else if (type == HeartData.HeartRateType.ECG) {
-            HeartData ecg = RawDataParseUtils.parseECG(rawData);
-            currentHeartRate.setECG(ecg);
-            mECGData.put(receiveDevice, currentHeartRate);
+        }
+    }
 
+    /**
+     * Get sample buffer of the device.
+     * @param buffers sample buffers
+     * @param device Hitoe device
+     * @param capacity capacity of new buffer
+     * @param channelCount number of channels of new buffer
+     * @return sample buffer
+     */
+    private static SampleRingBuffer getSampleBuffer(final Map<HitoeDevice, SampleRingBuffer> buffers,
+                                                    final HitoeDevice device,
+                                                    final int capacity, final int channelCount) {
+        SampleRingBuffer buffer = buffers.get(device);
+        if (buffer == null) {
+            buffer = new SampleRingBuffer(capacity, channelCount);
+            buffers.put(device, buffer);
         }
+        return buffer;
+    }
+
+    /**
+     * Create ECG data from the latest sample.
+     * @param device Hitoe device
+     * @return ECG data. null if no ECG data has been received
+     */
+    private HeartRateData createECGData(final HitoeDevice device) {
+        SampleRingBuffer buffer = mECGBuffers.get(device);
+        if (buffer == null) {
+            return null;
+        }
+        HeartData ecg = RawDataParseUtils.createECGData(buffer);
+        if (ecg == null) {
+            return null;
+        }
+        HeartRateData data = new HeartRateData();
+        data.setECG(ecg);
+        return data;
     }
 
     /**
@@ -1419,12 +1479,8 @@ public class HitoeManager {
      * @param receiveDevice Hitoe device
      */
     private void extractBattery(final String rawData, final HitoeDevice receiveDevice) {
-        String[] lineList = rawData.split(HitoeConstants.BR);
-        String levelString = lineList[lineList.length - 1];
-        String[] level = levelString.split(",", -1);
-
         TargetDeviceData current = RawDataParseUtils.parseDeviceData(receiveDevice,
-                Float.parseFloat(level[1]));
+                RawDataParseUtils.parseBatteryLevel(rawData));
         HeartRateData currentHeartRate = mHRData.get(receiveDevice);
         if (currentHeartRate == null) {
             currentHeartRate = new HeartRateData();
@@ -1439,131 +1495,66 @@ public class HitoeManager {
      * @param receiveDevice receive device
      */
     private void analyzeAccelerationData(final String rawData, final HitoeDevice receiveDevice) {
-        String[] lineList = rawData.split(HitoeConstants.BR);
-        ArrayList<String> postureInputList  = new ArrayList<String>();
-        ArrayList<String> walkInputList  = new ArrayList<String>();
-        ArrayList<String> lrBalanceInputList  = new ArrayList<String>();
-
-        ArrayList<String> workList = new ArrayList<String>();
-
-        for (int i = 0; i < lineList.length; i++) {
-
-            if (receiveDevice.getAvailableExDataList().contains("ex.posture")) {
-                try {
-                    mLockForPosture.lock();
-                    mListForPosture.add(lineList[i]);
-                    if (mListForPosture.size() > HitoeConstants.EX_POSTURE_UNIT_NUM + 5) {
-
-                        for (int j = 0; j < HitoeConstants.EX_POSTURE_UNIT_NUM; j++) {
-
-                            postureInputList.add(mListForPosture.get(j));
-                        }
-                        for (int j = HitoeConstants.EX_POSTURE_UNIT_NUM;
-                                    j < HitoeConstants.EX_POSTURE_UNIT_NUM + 5; j++) {
-
-                            postureInputList.add(mListForPosture.get(j));
-                        }
-                        workList = new ArrayList<>();
-                        for (int j = 25; j < mListForPosture.size(); j++) {
-
-                            workList.add(mListForPosture.get(j));
-                        }
-                        mListForPosture = workList;
-                    }
-                } finally {
+        List<String> exDataList = receiveDevice.getAvailableExDataList();
+        boolean posture = exDataList.contains("ex.posture");
+        boolean walk = exDataList.contains("ex.walk");
+        boolean lrBalance = exDataList.contains("ex.lr_balance");
+        if (!posture && !walk && !lrBalance) {
+            return;
+        }
 
-                    mLockForPosture.unlock();
+        int length = rawData.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = RawDataParseUtils.indexOfLineEnd(rawData, lineStart);
+            if (lineEnd > lineStart) {
+                String line = rawData.substring(lineStart, lineEnd);
+                if (posture) {
+                    addExLine("ex.posture", line, mListForPosture, mLockForPosture,
+                            HitoeConstants.EX_POSTURE_UNIT_NUM);
                 }
-                if (postureInputList.size() > 0) {
-
-                    try {
-                        mLockForEx.lock();
-                        mListForEx.add(new TempExData("ex.posture", postureInputList));
-
-                    } finally {
-                        mLockForEx.unlock();
-                    }
-
-                    postureInputList.clear();
+                if (walk) {
+                    addExLine("ex.walk", line, mListForWalk, mLockForWalk,
+                            HitoeConstants.EX_WALK_UNIT_NUM);
                 }
-            }
-            if (receiveDevice.getAvailableExDataList().contains("ex.walk")) {
-                try {
-                    mLockForWalk.lock();
-                    mListForWalk.add(lineList[i]);
-                    if (mListForWalk.size() > HitoeConstants.EX_WALK_UNIT_NUM + 5) {
-
-                        for (int j = 0; j < HitoeConstants.EX_WALK_UNIT_NUM; j++) {
-
-                            walkInputList.add(mListForWalk.get(j));
-                        }
-                        for (int j = HitoeConstants.EX_WALK_UNIT_NUM;
-                                    j < HitoeConstants.EX_WALK_UNIT_NUM + 5; j++) {
-
-                            walkInputList.add(mListForWalk.get(j));
-                        }
-
-                        workList = new ArrayList<>();
-                        for (int j = 25; j < mListForWalk.size(); j++) {
-
-                            workList.add(mListForWalk.get(j));
-                        }
-                        mListForWalk = workList;
-                    }
-                } finally {
-
-                    mLockForWalk.unlock();
-                }
-                if (walkInputList.size() > 0) {
-
-                    try {
-                        mLockForEx.lock();
-                        mListForEx.add(new TempExData("ex.walk", walkInputList));
-                    } finally {
-                        mLockForEx.unlock();
-                    }
-
-                    walkInputList.clear();
+                if (lrBalance) {
+                    addExLine("ex.lr_balance", line, mListForLRBalance, mLockForLRBalance,
+                            HitoeConstants.EX_LR_BALANCE_UNIT_NUM);
                 }
             }
-            if (receiveDevice.getAvailableExDataList().contains("ex.lr_balance")) {
-                try {
-                    mLockForLRBalance.lock();
-                    mListForLRBalance.add(lineList[i]);
-                    if (mListForLRBalance.size() > HitoeConstants.EX_LR_BALANCE_UNIT_NUM + 5) {
-
-                        for (int j = 0; j < HitoeConstants.EX_LR_BALANCE_UNIT_NUM; j++) {
-
-                            lrBalanceInputList.add(mListForLRBalance.get(j));
-                        }
-                        for (int j = HitoeConstants.EX_LR_BALANCE_UNIT_NUM;
-                                j < HitoeConstants.EX_LR_BALANCE_UNIT_NUM + 5; j++) {
-
-                            lrBalanceInputList.add(mListForLRBalance.get(j));
-                        }
-                        workList = new ArrayList<>();
-                        for (int j = 25; j < mListForLRBalance.size(); j++) {
-
-                            workList.add(mListForLRBalance.get(j));
-                        }
-                        mListForLRBalance = workList;
-
-                    }
-                } finally {
-
-                    mLockForLRBalance.unlock();
-                }
-                if (lrBalanceInputList.size() > 0) {
-
-                    try {
-                        mLockForEx.lock();
-                        mListForEx.add(new TempExData("ex.lr_balance", lrBalanceInputList));
-                    } finally {
-                        mLockForEx.unlock();
-                    }
+            lineStart = lineEnd + 1;
+        }
+    }
 
-                    lrBalanceInputList.clear();
-                }
+    /**
+     * Add a line of Acceleration data to the window for extended analysis.
+     * When the window has enough lines, the oldest lines are passed to the extended analysis,
+     * and the window slides by 25 lines.
+     * @param key Ex data's key
+     * @param line a line of Acceleration data
+     * @param window lines which are not analyzed yet
+     * @param lock lock for window
+     * @param unitNum number of lines for an analysis
+     */
+    private void addExLine(final String key, final String line, final List<String> window,
+                           final ReentrantLock lock, final int unitNum) {
+        TempExData exData = null;
+        try {
+            lock.lock();
+            window.add(line);
+            if (window.size() > unitNum + 5) {
+                exData = new TempExData(key, window.subList(0, unitNum + 5));
+                window.subList(0, 25).clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (exData != null) {
+            try {
+                mLockForEx.lock();
+                mListForEx.add(exData);
+            } finally {
+                mLockForEx.unlock();
             }
         }
     }
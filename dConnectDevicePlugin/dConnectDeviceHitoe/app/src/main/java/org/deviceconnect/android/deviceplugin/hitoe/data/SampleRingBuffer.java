@@ -0,0 +1,196 @@
+/*
+ SampleRingBuffer
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.data;
+
+/**
+ * Fixed size ring buffer of sensor samples.
+ * <p>
+ * Each sample has a timestamp and a fixed number of channels.
+ * Samples are stored in primitive arrays, so adding a sample does not allocate any object.
+ * When the buffer is full, the oldest sample is overwritten.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SampleRingBuffer {
+    /** Max number of samples. */
+    private final int mCapacity;
+    /** Number of channels per sample. */
+    private final int mChannelCount;
+    /** Timestamps. */
+    private final long[] mTimestamps;
+    /** Channel values. Values of a sample are stored contiguously. */
+    private final double[] mValues;
+    /** Index of the next sample to write. */
+    private int mHead;
+    /** Number of stored samples. */
+    private int mSize;
+    /** Total number of samples added since creation or last clear. */
+    private long mTotalCount;
+
+    /**
+     * Constructor.
+     * @param capacity max number of samples
+     * @param channelCount number of channels per sample
+     */
+    public SampleRingBuffer(final int capacity, final int channelCount) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+        if (channelCount <= 0) {
+            throw new IllegalArgumentException("channelCount must be positive.");
+        }
+        mCapacity = capacity;
+        mChannelCount = channelCount;
+        mTimestamps = new long[capacity];
+        mValues = new double[capacity * channelCount];
+    }
+
+    /**
+     * Get max number of samples.
+     * @return max number of samples
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Get number of channels per sample.
+     * @return number of channels
+     */
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /**
+     * Get number of stored samples.
+     * @return number of stored samples
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Get total number of samples added.
+     * @return total number of samples
+     */
+    public synchronized long getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * Add a sample of a single channel.
+     * @param timestamp timestamp
+     * @param value value
+     */
+    public synchronized void add(final long timestamp, final double value) {
+        checkChannelCount(1);
+        mTimestamps[mHead] = timestamp;
+        mValues[mHead] = value;
+        advance();
+    }
+
+    /**
+     * Add a sample of three channels.
+     * @param timestamp timestamp
+     * @param x value of channel 0
+     * @param y value of channel 1
+     * @param z value of channel 2
+     */
+    public synchronized void add(final long timestamp, final double x, final double y, final double z) {
+        checkChannelCount(3);
+        int offset = mHead * 3;
+        mTimestamps[mHead] = timestamp;
+        mValues[offset] = x;
+        mValues[offset + 1] = y;
+        mValues[offset + 2] = z;
+        advance();
+    }
+
+    /**
+     * Get timestamp of the latest sample.
+     * @return timestamp. -1 if empty
+     */
+    public synchronized long getLatestTimestamp() {
+        if (mSize == 0) {
+            return -1;
+        }
+        return mTimestamps[latestIndex()];
+    }
+
+    /**
+     * Get value of the latest sample.
+     * @param channel channel index
+     * @return value. NaN if empty
+     */
+    public synchronized double getLatestValue(final int channel) {
+        if (channel < 0 || channel >= mChannelCount) {
+            throw new IndexOutOfBoundsException("channel: " + channel);
+        }
+        if (mSize == 0) {
+            return Double.NaN;
+        }
+        return mValues[latestIndex() * mChannelCount + channel];
+    }
+
+    /**
+     * Copy the latest samples in chronological order.
+     * @param timestamps destination of timestamps
+     * @param values destination of values. Its length must be timestamps.length * channel count or more
+     * @return number of copied samples
+     */
+    public synchronized int copyLatest(final long[] timestamps, final double[] values) {
+        int count = Math.min(mSize, timestamps.length);
+        if (values.length < count * mChannelCount) {
+            throw new IllegalArgumentException("values is too short.");
+        }
+        int start = (mHead - count + mCapacity) % mCapacity;
+        for (int i = 0; i < count; i++) {
+            int index = (start + i) % mCapacity;
+            timestamps[i] = mTimestamps[index];
+            System.arraycopy(mValues, index * mChannelCount, values, i * mChannelCount, mChannelCount);
+        }
+        return count;
+    }
+
+    /**
+     * Remove all samples.
+     */
+    public synchronized void clear() {
+        mHead = 0;
+        mSize = 0;
+        mTotalCount = 0;
+    }
+
+    /**
+     * Get index of the latest sample.
+     * @return index
+     */
+    private int latestIndex() {
+        return (mHead - 1 + mCapacity) % mCapacity;
+    }
+
+    /**
+     * Move the write position to the next sample.
+     */
+    private void advance() {
+        mHead = (mHead + 1) % mCapacity;
+        if (mSize < mCapacity) {
+            mSize++;
+        }
+        mTotalCount++;
+    }
+
+    /**
+     * Check number of channels.
+     * @param channelCount number of channels of the sample to add
+     */
+    private void checkChannelCount(final int channelCount) {
+        if (mChannelCount != channelCount) {
+            throw new IllegalStateException("This buffer has " + mChannelCount + " channels.");
+        }
+    }
+}
@@ -7,6 +7,7 @@
 package org.deviceconnect.android.deviceplugin.hitoe.data;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Temporary holding the Exdata.
@@ -23,7 +24,7 @@ public class TempExData {
      * @param key Key
      * @param dataList Ex data list
      */
-    public TempExData(final String key, final ArrayList<String> dataList) {
+    public TempExData(final String key, final List<String> dataList) {
         setKey(key);
         setDataList(new ArrayList<String>());
         for (int i = 0; i < dataList.size(); i++) {
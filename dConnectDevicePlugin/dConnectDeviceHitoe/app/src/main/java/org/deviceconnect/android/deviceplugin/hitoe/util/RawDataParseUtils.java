@@ -11,6 +11,7 @@ import org.deviceconnect.android.deviceplugin.hitoe.data.HeartData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeDevice;
 import org.deviceconnect.android.deviceplugin.hitoe.data.PoseEstimationData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.SampleRingBuffer;
 import org.deviceconnect.android.deviceplugin.hitoe.data.StressEstimationData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.TargetDeviceData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.WalkStateData;
@@ -20,6 +21,7 @@ import org.deviceconnect.profile.WalkStateProfileConstants;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 
 /**
@@ -28,6 +30,15 @@ import java.util.TimeZone;
  */
 public final class RawDataParseUtils {
 
+    /** Powers of ten that can be represented exactly as double. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Max value of mantissa that can be represented exactly as double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
     /**
      * Private Constructor.
      */
@@ -83,60 +94,127 @@ public final class RawDataParseUtils {
 
 
     /**
-     * Parse Acceleration Data.
-     * @param data Accleration data
+     * Parse ECG Data into ring buffer.
+     * <p>
+     * Each line of raw data is "timestamp,value[:...]".
+     * Lines which can not be parsed are skipped.
+     * This method does not allocate any object for well-formed data.
+     * </p>
      * @param raw raw data
-     * @return Acceleration object
+     * @param buffer ring buffer which has one channel
+     * @return number of added samples
      */
-    public static AccelerationData parseAccelerationData(final AccelerationData data, final String raw) {
+    public static int parseECG(final String raw, final SampleRingBuffer buffer) {
         if (raw == null) {
-            return data;
+            return 0;
         }
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String[] list = lineList[0].split(HitoeConstants.COMMA, -1);
-        String[] accList = list[1].split(HitoeConstants.COLON, -1);
-        double[] accelList = new double[3];
-        for (int i = 0; i < accList.length; i++) {
-            accelList[i] = Double.valueOf(accList[i]);
-        }
-        data.setAccelX(accelList[0]);
-        data.setAccelY(accelList[1]);
-        data.setAccelZ(accelList[2]);
-        return data;
+        int count = 0;
+        int length = raw.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = indexOfLineEnd(raw, lineStart, length);
+            int comma = indexOf(raw, ',', lineStart, lineEnd);
+            if (comma > lineStart) {
+                int valueEnd = indexOf(raw, ':', comma + 1, lineEnd);
+                if (valueEnd < 0) {
+                    valueEnd = lineEnd;
+                }
+                try {
+                    long timestamp = parseLong(raw, lineStart, comma);
+                    double value = parseDouble(raw, comma + 1, valueEnd);
+                    buffer.add(timestamp, value);
+                    count++;
+                } catch (NumberFormatException e) {
+                    // skip this line.
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return count;
     }
 
-
-
     /**
-     * Parse ECG Data.
+     * Parse Acceleration Data into ring buffer.
+     * <p>
+     * Each line of raw data is "timestamp,x:y:z".
+     * Lines which can not be parsed are skipped.
+     * This method does not allocate any object for well-formed data.
+     * </p>
      * @param raw raw data
-     * @return ECG data object
+     * @param buffer ring buffer which has three channels
+     * @return number of added samples
      */
-    public static HeartData parseECG(final String raw) {
-        String[] lineList = raw.split(HitoeConstants.BR);
-        HeartData heart = new HeartData();
-        for (int i = 0; i < lineList.length; i++) {
-            String val = lineList[i];
-            if (val == null) {
-                continue;
+    public static int parseAccelerationData(final String raw, final SampleRingBuffer buffer) {
+        if (raw == null) {
+            return 0;
+        }
+        int count = 0;
+        int length = raw.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = indexOfLineEnd(raw, lineStart, length);
+            int comma = indexOf(raw, ',', lineStart, lineEnd);
+            int colon1 = comma < 0 ? -1 : indexOf(raw, ':', comma + 1, lineEnd);
+            int colon2 = colon1 < 0 ? -1 : indexOf(raw, ':', colon1 + 1, lineEnd);
+            if (comma > lineStart && colon2 > 0) {
+                int zEnd = indexOf(raw, ':', colon2 + 1, lineEnd);
+                if (zEnd < 0) {
+                    zEnd = lineEnd;
+                }
+                try {
+                    long timestamp = parseLong(raw, lineStart, comma);
+                    double x = parseDouble(raw, comma + 1, colon1);
+                    double y = parseDouble(raw, colon1 + 1, colon2);
+                    double z = parseDouble(raw, colon2 + 1, zEnd);
+                    buffer.add(timestamp, x, y, z);
+                    count++;
+                } catch (NumberFormatException e) {
+                    // skip this line.
+                }
             }
-            String[] list = val.split(HitoeConstants.COMMA, -1);
-            long timestamp = Long.parseLong(list[0]);
-            String[] ecgList = list[1].split(HitoeConstants.COLON, -1);
-            String date = nowTimeStampString(timestamp);
-            heart.setValue(Float.parseFloat(ecgList[0]));
-            heart.setTimeStamp(timestamp);
-            heart.setTimeStampString(date);
+            lineStart = lineEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Create ECG data from the latest sample of ring buffer.
+     * @param buffer ring buffer of ECG
+     * @return ECG data object. null if buffer is empty
+     */
+    public static HeartData createECGData(final SampleRingBuffer buffer) {
+        long timestamp = buffer.getLatestTimestamp();
+        if (timestamp < 0) {
+            return null;
         }
+        HeartData heart = new HeartData();
+        heart.setValue((float) buffer.getLatestValue(0));
+        heart.setTimeStamp(timestamp);
+        heart.setTimeStampString(nowTimeStampString(timestamp));
         heart.setHeartRateType(HeartData.HeartRateType.ECG);
         heart.setMderFloat(MDERFloatConvreterUtils.convertMDERFloatToFloat(heart.getValue()));
         heart.setType("ecg beat");
         heart.setTypeCode(663568);
         heart.setUnit("mVolt * miliSecond");
         heart.setUnitCode(3328);
-
         return heart;
+    }
 
+    /**
+     * Set the latest sample of ring buffer to Acceleration data.
+     * @param data Acceleration data
+     * @param buffer ring buffer of Acceleration
+     * @return Acceleration object
+     */
+    public static AccelerationData updateAccelerationData(final AccelerationData data,
+                                                          final SampleRingBuffer buffer) {
+        if (buffer.size() == 0) {
+            return data;
+        }
+        data.setAccelX(buffer.getLatestValue(0));
+        data.setAccelY(buffer.getLatestValue(1));
+        data.setAccelZ(buffer.getLatestValue(2));
+        return data;
     }
 
     /**
@@ -294,7 +372,245 @@ public final class RawDataParseUtils {
 
     }
 
+    /**
+     * Find the end of line which starts at the given index.
+     * <p>
+     * Raw data can be scanned line by line without String.split as follows.
+     * </p>
+     * <pre>
+     * int lineStart = 0;
+     * while (lineStart &lt; raw.length()) {
+     *     int lineEnd = RawDataParseUtils.indexOfLineEnd(raw, lineStart);
+     *     // the line is raw[lineStart, lineEnd)
+     *     lineStart = lineEnd + 1;
+     * }
+     * </pre>
+     * @param raw raw data
+     * @param start start index of line
+     * @return index of line separator, or length of raw data if this is the last line
+     */
+    public static int indexOfLineEnd(final String raw, final int start) {
+        return indexOfLineEnd(raw, start, raw.length());
+    }
+
+    /**
+     * Add each line of raw data to the list.
+     * <p>
+     * Empty lines are skipped.
+     * </p>
+     * @param raw raw data
+     * @param lines list to add lines
+     * @return number of added lines
+     */
+    public static int addLines(final String raw, final List<String> lines) {
+        if (raw == null) {
+            return 0;
+        }
+        int count = 0;
+        int length = raw.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = indexOfLineEnd(raw, lineStart, length);
+            if (lineEnd > lineStart) {
+                lines.add(raw.substring(lineStart, lineEnd));
+                count++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Parse battery level from the last line of raw data.
+     * <p>
+     * Each line of raw data is "timestamp,level".
+     * This method does not allocate any object for well-formed data.
+     * </p>
+     * @param raw raw data
+     * @return battery level
+     * @throws NumberFormatException if the last line has no battery level
+     */
+    public static float parseBatteryLevel(final String raw) {
+        int lineEnd = raw.length();
+        while (lineEnd > 0 && isLineSeparator(raw.charAt(lineEnd - 1))) {
+            lineEnd--;
+        }
+        int lineStart = lineEnd;
+        while (lineStart > 0 && !isLineSeparator(raw.charAt(lineStart - 1))) {
+            lineStart--;
+        }
+        int comma = indexOf(raw, ',', lineStart, lineEnd);
+        if (comma < 0) {
+            throw new NumberFormatException("No battery level: " + raw);
+        }
+        int valueEnd = indexOf(raw, ',', comma + 1, lineEnd);
+        if (valueEnd < 0) {
+            valueEnd = lineEnd;
+        }
+        return (float) parseDouble(raw, comma + 1, valueEnd);
+    }
+
+    /**
+     * Check whether the character is a line separator.
+     * @param c character
+     * @return true if c is a line separator
+     */
+    private static boolean isLineSeparator(final char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Find the end of line.
+     * @param s string
+     * @param start start index
+     * @param end end index
+     * @return index of line separator, or end if not found
+     */
+    private static int indexOfLineEnd(final String s, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (isLineSeparator(c)) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Find the character in range.
+     * @param s string
+     * @param c character
+     * @param start start index
+     * @param end end index
+     * @return index of character, or -1 if not found
+     */
+    private static int indexOf(final String s, final char c, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse decimal integer in range without allocation.
+     * @param s string
+     * @param start start index
+     * @param end end index
+     * @return value
+     * @throws NumberFormatException if the range is not a decimal integer
+     */
+    static long parseLong(final CharSequence s, final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if (i >= end) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse decimal number in range without allocation.
+     * <p>
+     * Numbers which can not be converted exactly by a single multiplication or division,
+     * such as numbers with more than 15 significant digits, and other notations
+     * are delegated to {@link Double#parseDouble(String)}.
+     * </p>
+     * @param s string
+     * @param start start index
+     * @param end end index
+     * @return value
+     * @throws NumberFormatException if the range is not a number
+     */
+    static double parseDouble(final CharSequence s, final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean exact = true;
+        for (; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                mantissa = mantissa * 10 + digit;
+            } else {
+                exact = false;
+            }
+            digits++;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            for (i++; i < end; i++) {
+                int digit = s.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + digit;
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return parseDoubleSlow(s, start, end);
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            int expStart = ++i;
+            if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                i++;
+            }
+            if (i >= end || end - i > 4) {
+                return parseDoubleSlow(s, start, end);
+            }
+            exponent += (int) parseLong(s, expStart, end);
+            i = end;
+        }
+        if (i != end || !exact
+                || exponent < -POWERS_OF_TEN.length + 1 || exponent > POWERS_OF_TEN.length - 1) {
+            return parseDoubleSlow(s, start, end);
+        }
+        double value;
+        if (exponent < 0) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        }
+        return negative ? -value : value;
+    }
 
+    /**
+     * Parse decimal number in range by {@link Double#parseDouble(String)}.
+     * @param s string
+     * @param start start index
+     * @param end end index
+     * @return value
+     * @throws NumberFormatException if the range is not a number
+     */
+    private static double parseDoubleSlow(final CharSequence s, final int start, final int end) {
+        return Double.parseDouble(s.subSequence(start, end).toString().trim());
+    }
 
     /**
      * Split Comma.
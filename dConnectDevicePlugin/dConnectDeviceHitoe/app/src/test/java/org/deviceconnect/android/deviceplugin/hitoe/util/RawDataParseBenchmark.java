@@ -0,0 +1,244 @@
+/*
+ RawDataParseBenchmark
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.util;
+
+import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
+import org.deviceconnect.android.deviceplugin.hitoe.data.SampleRingBuffer;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of {@link RawDataParseUtils}.
+ * <p>
+ * Replays raw ECG, Acceleration and Battery notifications at 10 times the real rate,
+ * and reports allocated bytes per sample.
+ * The split based parser which was used before is measured for comparison.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class RawDataParseBenchmark {
+    /** Sampling rate of ECG on the device. */
+    private static final int ECG_SAMPLING_RATE = 200;
+    /** Interval of notifications from the device. */
+    private static final int NOTIFY_INTERVAL = HitoeConstants.ADD_RECEIVER_PARAM_ECG_SAMPLING_INTERVAL;
+    /** Replay speed. */
+    private static final int SPEED = 10;
+    /** Replay duration in milliseconds. */
+    private static final long DURATION = 2000;
+    /**
+     * Max allocated bytes per sample.
+     * Parsing itself allocates nothing, but the replay loop (e.g. Thread.sleep) may allocate a little.
+     */
+    private static final double MAX_BYTES_PER_SAMPLE = 8.0;
+
+    @Test
+    public void benchmarkECG() throws Exception {
+        final List<String> records = recordECG(new Random(0), 500);
+        final SampleRingBuffer buffer = new SampleRingBuffer(1024, 1);
+
+        double bytes = replay("ecg", records, new Parser() {
+            @Override
+            public int parse(final String raw) {
+                return RawDataParseUtils.parseECG(raw, buffer);
+            }
+        });
+        replay("ecg (split)", records, new Parser() {
+            @Override
+            public int parse(final String raw) {
+                return parseECGBySplit(raw);
+            }
+        });
+        assertTrue("bytes per sample: " + bytes, bytes < MAX_BYTES_PER_SAMPLE);
+    }
+
+    @Test
+    public void benchmarkAcceleration() throws Exception {
+        final List<String> records = recordAcceleration(new Random(0), 500);
+        final SampleRingBuffer buffer = new SampleRingBuffer(256, 3);
+
+        double bytes = replay("acc", records, new Parser() {
+            @Override
+            public int parse(final String raw) {
+                return RawDataParseUtils.parseAccelerationData(raw, buffer);
+            }
+        });
+        assertTrue("bytes per sample: " + bytes, bytes < MAX_BYTES_PER_SAMPLE);
+    }
+
+    @Test
+    public void benchmarkBattery() throws Exception {
+        final List<String> records = new ArrayList<>();
+        long timestamp = 1490000000000L;
+        for (int i = 0; i < 500; i++) {
+            records.add(timestamp + "," + (i % 4) + HitoeConstants.BR
+                    + (timestamp + NOTIFY_INTERVAL) + "," + (i % 4));
+            timestamp += NOTIFY_INTERVAL * 2;
+        }
+
+        double bytes = replay("bat", records, new Parser() {
+            @Override
+            public int parse(final String raw) {
+                return RawDataParseUtils.parseBatteryLevel(raw) < 0 ? 0 : 1;
+            }
+        });
+        replay("bat (split)", records, new Parser() {
+            @Override
+            public int parse(final String raw) {
+                String[] lineList = raw.split(HitoeConstants.BR);
+                String[] level = lineList[lineList.length - 1].split(",", -1);
+                return Float.parseFloat(level[1]) < 0 ? 0 : 1;
+            }
+        });
+        assertTrue("bytes per sample: " + bytes, bytes < MAX_BYTES_PER_SAMPLE);
+    }
+
+    /**
+     * Replay records and report allocated bytes per sample.
+     * @param name name of benchmark
+     * @param records raw notifications
+     * @param parser parser
+     * @return allocated bytes per sample. 0 if allocation can not be measured
+     */
+    private static double replay(final String name, final List<String> records, final Parser parser)
+            throws InterruptedException {
+        // warm up
+        for (int i = 0; i < 20; i++) {
+            for (String raw : records) {
+                parser.parse(raw);
+            }
+        }
+
+        long intervalNanos = NOTIFY_INTERVAL * 1000000L / SPEED;
+        long samples = 0;
+        long notifications = 0;
+        long parseNanos = 0;
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        long next = start;
+        while (System.nanoTime() - start < DURATION * 1000000L) {
+            String raw = records.get((int) (notifications % records.size()));
+            long t = System.nanoTime();
+            samples += parser.parse(raw);
+            parseNanos += System.nanoTime() - t;
+            notifications++;
+
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+            }
+        }
+        long allocated = getAllocatedBytes() - startBytes;
+        double bytesPerSample = startBytes < 0 ? 0 : (double) allocated / samples;
+        System.out.println(String.format(Locale.ENGLISH,
+                "%s: %d notifications, %d samples, %.1f ns/sample, %.1f bytes/sample",
+                name, notifications, samples, (double) parseNanos / samples, bytesPerSample));
+        return bytesPerSample;
+    }
+
+    /**
+     * Get allocated bytes of current thread.
+     * @return allocated bytes. -1 if not supported
+     */
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Create raw ECG notifications.
+     * @param random random
+     * @param count number of notifications
+     * @return raw notifications
+     */
+    private static List<String> recordECG(final Random random, final int count) {
+        List<String> records = new ArrayList<>();
+        int samplesPerNotify = ECG_SAMPLING_RATE * NOTIFY_INTERVAL / 1000;
+        long timestamp = 1490000000000L;
+        for (int i = 0; i < count; i++) {
+            StringBuilder raw = new StringBuilder();
+            for (int j = 0; j < samplesPerNotify; j++) {
+                if (j > 0) {
+                    raw.append(HitoeConstants.BR);
+                }
+                raw.append(timestamp).append(',')
+                        .append(String.format(Locale.ENGLISH, "%.3f", random.nextGaussian()));
+                timestamp += 1000 / ECG_SAMPLING_RATE;
+            }
+            records.add(raw.toString());
+        }
+        return records;
+    }
+
+    /**
+     * Create raw Acceleration notifications.
+     * @param random random
+     * @param count number of notifications
+     * @return raw notifications
+     */
+    private static List<String> recordAcceleration(final Random random, final int count) {
+        List<String> records = new ArrayList<>();
+        int samplesPerNotify = 4;
+        long timestamp = 1490000000000L;
+        for (int i = 0; i < count; i++) {
+            StringBuilder raw = new StringBuilder();
+            for (int j = 0; j < samplesPerNotify; j++) {
+                if (j > 0) {
+                    raw.append(HitoeConstants.BR);
+                }
+                raw.append(timestamp).append(',')
+                        .append(String.format(Locale.ENGLISH, "%.4f:%.4f:%.4f",
+                                random.nextGaussian(), random.nextGaussian(), 9.8 + random.nextGaussian()));
+                timestamp += NOTIFY_INTERVAL / samplesPerNotify;
+            }
+            records.add(raw.toString());
+        }
+        return records;
+    }
+
+    /**
+     * Parse ECG in the same way as the split based parser.
+     * @param raw raw data
+     * @return number of samples
+     */
+    private static int parseECGBySplit(final String raw) {
+        String[] lineList = raw.split(HitoeConstants.BR);
+        float value = 0;
+        for (String line : lineList) {
+            String[] list = line.split(HitoeConstants.COMMA, -1);
+            Long.parseLong(list[0]);
+            String[] ecgList = list[1].split(HitoeConstants.COLON, -1);
+            value += Float.parseFloat(ecgList[0]);
+        }
+        return value == Float.MAX_VALUE ? 0 : lineList.length;
+    }
+
+    /**
+     * Parser of raw data.
+     */
+    private interface Parser {
+        /**
+         * Parse raw data.
+         * @param raw raw data
+         * @return number of samples
+         */
+        int parse(String raw);
+    }
+}
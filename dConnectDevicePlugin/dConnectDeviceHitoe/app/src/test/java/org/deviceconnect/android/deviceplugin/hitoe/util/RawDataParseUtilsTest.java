@@ -0,0 +1,164 @@
+/*
+ RawDataParseUtilsTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.util;
+
+import org.deviceconnect.android.deviceplugin.hitoe.data.AccelerationData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.HeartData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.SampleRingBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test of {@link RawDataParseUtils}.
+ * @author NTT DOCOMO, INC.
+ */
+public class RawDataParseUtilsTest {
+
+    @Test
+    public void parseECG() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 1);
+        int count = RawDataParseUtils.parseECG("1000,0.5\n1040,-1.25:9\r\n1080,2", buffer);
+
+        assertEquals(3, count);
+        long[] timestamps = new long[4];
+        double[] values = new double[4];
+        assertEquals(3, buffer.copyLatest(timestamps, values));
+        assertEquals(1000, timestamps[0]);
+        assertEquals(1080, timestamps[2]);
+        assertEquals(0.5, values[0], 0);
+        assertEquals(-1.25, values[1], 0);
+        assertEquals(2, values[2], 0);
+    }
+
+    @Test
+    public void parseECG_skipsMalformedLines() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 1);
+        int count = RawDataParseUtils.parseECG("abc,1\n\n1000,\n1040,1.5\n,2", buffer);
+
+        assertEquals(1, count);
+        assertEquals(1040, buffer.getLatestTimestamp());
+        assertEquals(1.5, buffer.getLatestValue(0), 0);
+    }
+
+    @Test
+    public void parseECG_overwritesOldest() {
+        SampleRingBuffer buffer = new SampleRingBuffer(2, 1);
+        RawDataParseUtils.parseECG("1,1\n2,2\n3,3", buffer);
+
+        long[] timestamps = new long[2];
+        double[] values = new double[2];
+        assertEquals(2, buffer.copyLatest(timestamps, values));
+        assertEquals(2, timestamps[0]);
+        assertEquals(3, timestamps[1]);
+        assertEquals(3, buffer.getTotalCount());
+    }
+
+    @Test
+    public void parseAccelerationData() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 3);
+        int count = RawDataParseUtils.parseAccelerationData("1000,0.1:-0.2:9.8\n1040,1:2", buffer);
+
+        assertEquals(1, count);
+        AccelerationData data = RawDataParseUtils.updateAccelerationData(new AccelerationData(), buffer);
+        assertEquals(0.1, data.getAccelX(), 0);
+        assertEquals(-0.2, data.getAccelY(), 0);
+        assertEquals(9.8, data.getAccelZ(), 0);
+    }
+
+    @Test
+    public void createECGData() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 1);
+        assertNull(RawDataParseUtils.createECGData(buffer));
+
+        RawDataParseUtils.parseECG("1000,0.5\n1040,0.75", buffer);
+        HeartData ecg = RawDataParseUtils.createECGData(buffer);
+        assertEquals(HeartData.HeartRateType.ECG, ecg.getHeartRateType());
+        assertEquals(1040, ecg.getTimeStamp());
+        assertEquals(0.75f, ecg.getValue(), 0);
+    }
+
+    @Test
+    public void parseDouble_sameAsDoubleParseDouble() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            double expected = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 6);
+            String[] texts = {
+                Double.toString(expected),
+                String.format(Locale.ENGLISH, "%." + random.nextInt(10) + "f", expected),
+                String.valueOf((int) (expected * 1000))
+            };
+            for (String text : texts) {
+                assertEquals(text, Double.parseDouble(text),
+                    RawDataParseUtils.parseDouble(text, 0, text.length()), 0);
+            }
+        }
+    }
+
+    @Test
+    public void parseDouble_otherNotations() {
+        String[] texts = {"1e3", "-2.5E-4", ".5", "5.", "+1", "12345678901234567890", "0.1234567890123456789", "NaN"};
+        for (String text : texts) {
+            assertEquals(text, Double.parseDouble(text), RawDataParseUtils.parseDouble(text, 0, text.length()), 0);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseDouble_invalid() {
+        RawDataParseUtils.parseDouble("1.2x", 0, 4);
+    }
+
+    @Test
+    public void parseLong() {
+        assertEquals(1490000000000L, RawDataParseUtils.parseLong("t=1490000000000;", 2, 15));
+        assertEquals(-42, RawDataParseUtils.parseLong("-42", 0, 3));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseLong_invalid() {
+        RawDataParseUtils.parseLong("4.2", 0, 3);
+    }
+
+    @Test
+    public void indexOfLineEnd() {
+        String raw = "1,a\n2,b\r\n3,c";
+        assertEquals(3, RawDataParseUtils.indexOfLineEnd(raw, 0));
+        assertEquals(7, RawDataParseUtils.indexOfLineEnd(raw, 4));
+        assertEquals(8, RawDataParseUtils.indexOfLineEnd(raw, 8));
+        assertEquals(raw.length(), RawDataParseUtils.indexOfLineEnd(raw, 9));
+    }
+
+    @Test
+    public void addLines() {
+        List<String> lines = new ArrayList<>();
+        lines.add("0,z");
+        int count = RawDataParseUtils.addLines("1,a\n2,b\r\n\n3,c\n", lines);
+
+        assertEquals(3, count);
+        assertEquals(Arrays.asList("0,z", "1,a", "2,b", "3,c"), lines);
+        assertEquals(0, RawDataParseUtils.addLines(null, lines));
+    }
+
+    @Test
+    public void parseBatteryLevel() {
+        assertEquals(3.5f, RawDataParseUtils.parseBatteryLevel("1000,4\n2000,3.5"), 0);
+        assertEquals(2f, RawDataParseUtils.parseBatteryLevel("1000,4\r\n2000,2,x\r\n"), 0);
+        assertEquals(1f, RawDataParseUtils.parseBatteryLevel("1000,1"), 0);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseBatteryLevel_invalid() {
+        RawDataParseUtils.parseBatteryLevel("1000,4\n2000");
+    }
+}
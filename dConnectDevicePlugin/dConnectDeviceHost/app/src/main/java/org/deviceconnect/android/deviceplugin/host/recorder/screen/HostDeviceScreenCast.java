@@ -13,7 +13,10 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.hardware.display.DisplayManager;
 import android.hardware.display.VirtualDisplay;
 import android.media.Image;
@@ -34,6 +37,7 @@ import org.deviceconnect.android.deviceplugin.host.recorder.util.MixedReplaceMed
 import org.deviceconnect.android.provider.FileManager;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -41,8 +45,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.logging.Logger;
 
-import static android.R.attr.max;
-
 /**
  * Host Device Screen Cast.
  *
@@ -111,7 +113,7 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
     private PictureSize mPreviewSize;
     private PictureSize mPictureSize;
 
-    private long mFrameInterval;
+    private ScreenCastEncoder mEncoder;
 
     private double mMaxFps;
 
@@ -213,7 +215,10 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
     @Override
     public void setMaxFrameRate(double frameRate) {
         mMaxFps = frameRate;
-        mFrameInterval =  1000L / max;
+        ScreenCastEncoder encoder = mEncoder;
+        if (encoder != null) {
+            encoder.setMaxFrameRate(frameRate);
+        }
     }
 
     @Override
@@ -547,6 +552,9 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
         mIsCasting = true;
 
         setupVirtualDisplay();
+        final BitmapFrameEncoder frameEncoder = new BitmapFrameEncoder();
+        final ScreenCastEncoder encoder = new ScreenCastEncoder(frameEncoder, new ServerFrameSink(), mMaxFps);
+        mEncoder = encoder;
         mThread = new Thread(new Runnable() {
             @Override
             public void run() {
@@ -557,24 +565,33 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
                     while (mIsCasting) {
                         long start = System.currentTimeMillis();
 
-                        Bitmap bitmap = getScreenshot();
-                        if (bitmap == null) {
-                            continue;
+                        // 画面に変化がない場合や送信先がいない場合はエンコードしない。
+                        Image image = acquireLatestImage();
+                        if (image != null) {
+                            try {
+                                Image.Plane plane = image.getPlanes()[0];
+                                encoder.onFrame(plane.getBuffer(), image.getWidth(), image.getHeight(),
+                                        plane.getPixelStride(), plane.getRowStride(), start);
+                            } finally {
+                                image.close();
+                            }
+                        } else {
+                            encoder.onIdle(start);
                         }
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        bitmap.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-                        byte[] media = baos.toByteArray();
-                        mServer.offerMedia(media);
 
                         long end = System.currentTimeMillis();
-                        long interval = mFrameInterval - (end - start);
+                        long interval = encoder.getFrameInterval() - (end - start);
                         if (interval > 0) {
                             Thread.sleep(interval);
                         }
                     }
+                } catch (InterruptedException e) {
+                    // Nothing to do.
                 } catch (Throwable e) {
                     mLogger.warning("MediaProjection is broken." + e.getMessage());
                     stopWebServer();
+                } finally {
+                    frameEncoder.release();
                 }
             }
         });
@@ -597,6 +614,7 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
             }
             mThread = null;
         }
+        mEncoder = null;
         releaseVirtualDisplay();
     }
 
@@ -620,6 +638,17 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
         }
     }
 
+    private synchronized Image acquireLatestImage() {
+        try {
+            if (mImageReader == null) {
+                return null;
+            }
+            return mImageReader.acquireLatestImage();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private Bitmap decodeToBitmap(final Image img) {
         Image.Plane[] planes = img.getPlanes();
         if (planes[0].getBuffer() == null) {
@@ -661,6 +690,121 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
         }
     }
 
+    /**
+     * 画面キャプチャのフレームを JPEG にエンコードするクラス.
+     * <p>
+     * フレームごとに Bitmap を作成しないように、Bitmap と出力先のバッファを再利用する。
+     * </p>
+     */
+    private static class BitmapFrameEncoder implements ScreenCastEncoder.FrameEncoder {
+
+        /** 行のパディングを含むフレームをコピーする Bitmap. */
+        private Bitmap mSource;
+
+        /** パディングを除いて縮小したフレームを描画する Bitmap. */
+        private Bitmap mFrame;
+
+        private final Canvas mCanvas = new Canvas();
+
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        private final Rect mSrcRect = new Rect();
+
+        private final Rect mDstRect = new Rect();
+
+        private final ByteArrayOutputStream mStream = new ByteArrayOutputStream();
+
+        @Override
+        public byte[] encode(final ByteBuffer pixels, final int width, final int height,
+                             final int pixelStride, final int rowStride,
+                             final int quality, final float scale) {
+            int sourceWidth = rowStride / pixelStride;
+            if (mSource == null || mSource.getWidth() != sourceWidth || mSource.getHeight() != height) {
+                if (mSource != null) {
+                    mSource.recycle();
+                }
+                mSource = Bitmap.createBitmap(sourceWidth, height, Bitmap.Config.ARGB_8888);
+            }
+            pixels.rewind();
+            mSource.copyPixelsFromBuffer(pixels);
+            pixels.rewind();
+
+            Bitmap frame;
+            int frameWidth = Math.max(1, (int) (width * scale));
+            int frameHeight = Math.max(1, (int) (height * scale));
+            if (sourceWidth == width && frameWidth == width && frameHeight == height) {
+                frame = mSource;
+            } else {
+                if (mFrame == null || mFrame.getWidth() != frameWidth || mFrame.getHeight() != frameHeight) {
+                    if (mFrame != null) {
+                        mFrame.recycle();
+                    }
+                    mFrame = Bitmap.createBitmap(frameWidth, frameHeight, Bitmap.Config.ARGB_8888);
+                    mCanvas.setBitmap(mFrame);
+                }
+                mSrcRect.set(0, 0, width, height);
+                mDstRect.set(0, 0, frameWidth, frameHeight);
+                mCanvas.drawBitmap(mSource, mSrcRect, mDstRect, mPaint);
+                frame = mFrame;
+            }
+
+            mStream.reset();
+            if (!frame.compress(Bitmap.CompressFormat.JPEG, quality, mStream)) {
+                return null;
+            }
+            return mStream.toByteArray();
+        }
+
+        void release() {
+            mCanvas.setBitmap(null);
+            if (mSource != null) {
+                mSource.recycle();
+                mSource = null;
+            }
+            if (mFrame != null) {
+                mFrame.recycle();
+                mFrame = null;
+            }
+        }
+    }
+
+    /**
+     * エンコードしたフレームを {@link MixedReplaceMediaServer} で配信するクラス.
+     */
+    private class ServerFrameSink implements ScreenCastEncoder.FrameSink {
+        @Override
+        public int getClientCount() {
+            MixedReplaceMediaServer server = mServer;
+            return server != null ? server.getClientCount() : 0;
+        }
+
+        @Override
+        public int getMaxQueuedCount() {
+            MixedReplaceMediaServer server = mServer;
+            return server != null ? server.getMaxQueuedMediaCount() : 0;
+        }
+
+        @Override
+        public int getQueueCapacity() {
+            MixedReplaceMediaServer server = mServer;
+            return server != null ? server.getMaxMediaCache() : 1;
+        }
+
+        @Override
+        public long getDroppedCount() {
+            MixedReplaceMediaServer server = mServer;
+            return server != null ? server.getDroppedMediaCount() : 0;
+        }
+
+        @Override
+        public void offer(final byte[] media) {
+            MixedReplaceMediaServer server = mServer;
+            if (server != null) {
+                server.offerMedia(media);
+            }
+        }
+    }
+
     private interface PermissionCallback {
         void onAllowed();
         void onDisallowed();
@@ -0,0 +1,109 @@
+/*
+ ScreenCastChangeDetector.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.screen;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 画面キャプチャのフレームの変化を検出するクラス.
+ * <p>
+ * フレームをタイルに分割して、タイルごとに間引いた画素からハッシュ値を計算する。
+ * 前のフレームとハッシュ値が異なるタイルの数を変化量とする。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class ScreenCastChangeDetector {
+
+    /** 横方向のタイル数. */
+    static final int TILE_COLUMNS = 16;
+
+    /** 縦方向のタイル数. */
+    static final int TILE_ROWS = 16;
+
+    /** 画素を間引く間隔. */
+    private final int mSampleStep;
+
+    /** 前のフレームのタイルごとのハッシュ値. */
+    private final long[] mTileHashes = new long[TILE_COLUMNS * TILE_ROWS];
+
+    /** 計算中のタイルごとのハッシュ値. */
+    private final long[] mWorkHashes = new long[TILE_COLUMNS * TILE_ROWS];
+
+    /** 前のフレームの横幅. 0の場合は前のフレームがない. */
+    private int mWidth;
+
+    /** 前のフレームの縦幅. */
+    private int mHeight;
+
+    /**
+     * コンストラクタ.
+     * @param sampleStep 画素を間引く間隔. 1の場合は全ての画素を使用する
+     */
+    ScreenCastChangeDetector(final int sampleStep) {
+        if (sampleStep < 1) {
+            throw new IllegalArgumentException("sampleStep must be positive.");
+        }
+        mSampleStep = sampleStep;
+    }
+
+    /**
+     * フレームの変化を検出する.
+     * <p>
+     * 前のフレームがない場合やサイズが変わった場合は、全てのタイルが変化したものとする。
+     * </p>
+     * @param pixels フレームの画素
+     * @param width 横幅
+     * @param height 縦幅
+     * @param pixelStride 1画素のバイト数
+     * @param rowStride 1行のバイト数
+     * @return 変化したタイルの数
+     */
+    int detect(final ByteBuffer pixels, final int width, final int height,
+               final int pixelStride, final int rowStride) {
+        final long[] hashes = mWorkHashes;
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = 0xcbf29ce484222325L;
+        }
+
+        final int step = mSampleStep;
+        final int base = pixels.position();
+        final boolean readInt = pixelStride >= 4;
+        for (int y = 0; y < height; y += step) {
+            int tileRow = y * TILE_ROWS / height;
+            int rowOffset = base + y * rowStride;
+            for (int x = 0; x < width; x += step) {
+                int offset = rowOffset + x * pixelStride;
+                int value = readInt ? pixels.getInt(offset) : pixels.get(offset);
+                int tile = tileRow * TILE_COLUMNS + x * TILE_COLUMNS / width;
+                hashes[tile] = (hashes[tile] ^ value) * 0x100000001b3L;
+            }
+        }
+
+        int changed = 0;
+        boolean sizeChanged = width != mWidth || height != mHeight;
+        for (int i = 0; i < hashes.length; i++) {
+            if (sizeChanged || hashes[i] != mTileHashes[i]) {
+                changed++;
+            }
+            mTileHashes[i] = hashes[i];
+        }
+        mWidth = width;
+        mHeight = height;
+        return changed;
+    }
+
+    /**
+     * 前のフレームの情報を破棄する.
+     * <p>
+     * 次のフレームは全てのタイルが変化したものとする。
+     * </p>
+     */
+    void reset() {
+        mWidth = 0;
+        mHeight = 0;
+    }
+}
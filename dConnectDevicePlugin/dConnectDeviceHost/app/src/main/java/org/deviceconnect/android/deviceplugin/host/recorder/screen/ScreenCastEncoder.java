@@ -0,0 +1,329 @@
+/*
+ ScreenCastEncoder.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.screen;
+
+import java.nio.ByteBuffer;
+
+/**
+ * スクリーンキャストのフレームを配信するかを判断して、エンコードするクラス.
+ * <p>
+ * 前のフレームから画面が変化していない場合はエンコードしない。
+ * ただし、新しいクライアントが接続した場合と一定時間フレームを送信していない場合は、
+ * 最後にエンコードしたフレームを再送する。
+ * </p>
+ * <p>
+ * クライアントごとの送信キューの状況から、最も遅いクライアントに合わせて
+ * JPEG の品質、解像度、フレームレートを段階的に変更する。
+ * 送信キューが溢れた場合は品質を1段階下げ、キューが空の状態が続いた場合は1段階上げる。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class ScreenCastEncoder {
+
+    /**
+     * 品質の段階.
+     * <p>
+     * 先頭が最も高い品質になる。
+     * </p>
+     */
+    static final Level[] LEVELS = {
+        new Level(80, 1.0f, 1.0f),
+        new Level(70, 1.0f, 1.0f),
+        new Level(60, 0.75f, 1.0f),
+        new Level(50, 0.5f, 0.75f),
+        new Level(40, 0.5f, 0.5f)
+    };
+
+    /** 変化を検出するときに画素を間引く間隔. */
+    private static final int SAMPLE_STEP = 2;
+
+    /** 品質を上げるまでに送信キューが空である必要があるフレーム数. */
+    private static final int STABLE_FRAMES_TO_RAISE = 10;
+
+    /** 品質を下げた後に次に下げるまでに待つフレーム数. 送信キューが空くのを待つ. */
+    private static final int FRAMES_TO_HOLD = 3;
+
+    /** フレームを送信していない場合に最後のフレームを再送する間隔(ms). */
+    static final long KEEP_ALIVE_INTERVAL = 1000;
+
+    /**
+     * フレームをエンコードするインターフェース.
+     */
+    interface FrameEncoder {
+        /**
+         * フレームを JPEG にエンコードする.
+         * @param pixels RGBA の画素
+         * @param width 横幅
+         * @param height 縦幅
+         * @param pixelStride 1画素のバイト数
+         * @param rowStride 1行のバイト数
+         * @param quality JPEG の品質
+         * @param scale 解像度の倍率
+         * @return エンコードしたデータ. 失敗した場合は null
+         */
+        byte[] encode(ByteBuffer pixels, int width, int height, int pixelStride, int rowStride,
+                      int quality, float scale);
+    }
+
+    /**
+     * エンコードしたフレームの送信先のインターフェース.
+     */
+    interface FrameSink {
+        /**
+         * 接続しているクライアントの数を取得する.
+         * @return クライアントの数
+         */
+        int getClientCount();
+
+        /**
+         * 送信キューに溜まっているフレーム数の最大値をクライアント全体から取得する.
+         * @return フレーム数
+         */
+        int getMaxQueuedCount();
+
+        /**
+         * クライアントごとの送信キューの大きさを取得する.
+         * @return 送信キューの大きさ
+         */
+        int getQueueCapacity();
+
+        /**
+         * 送信キューが溢れて破棄されたフレーム数の累計を取得する.
+         * @return フレーム数
+         */
+        long getDroppedCount();
+
+        /**
+         * フレームを全てのクライアントに送信する.
+         * @param media フレーム
+         */
+        void offer(byte[] media);
+    }
+
+    private final FrameEncoder mEncoder;
+
+    private final FrameSink mSink;
+
+    private final ScreenCastChangeDetector mDetector = new ScreenCastChangeDetector(SAMPLE_STEP);
+
+    private long mFrameInterval;
+
+    private int mLevel;
+
+    private int mStableFrames;
+
+    private int mHoldFrames;
+
+    private long mLastDroppedCount;
+
+    private int mLastClientCount;
+
+    private long mLastSentTime;
+
+    private byte[] mLastMedia;
+
+    private long mSentBytes;
+
+    private int mEncodedCount;
+
+    private int mSkippedCount;
+
+    /**
+     * コンストラクタ.
+     * @param encoder フレームのエンコーダ
+     * @param sink エンコードしたフレームの送信先
+     * @param maxFps 最大フレームレート
+     */
+    ScreenCastEncoder(final FrameEncoder encoder, final FrameSink sink, final double maxFps) {
+        mEncoder = encoder;
+        mSink = sink;
+        setMaxFrameRate(maxFps);
+    }
+
+    /**
+     * 最大フレームレートを設定する.
+     * @param maxFps 最大フレームレート
+     */
+    synchronized void setMaxFrameRate(final double maxFps) {
+        if (maxFps <= 0) {
+            throw new IllegalArgumentException("maxFps must be positive.");
+        }
+        mFrameInterval = (long) (1000.0 / maxFps);
+    }
+
+    /**
+     * 現在の品質でのフレームの間隔を取得する.
+     * @return フレームの間隔(ms)
+     */
+    synchronized long getFrameInterval() {
+        return (long) (mFrameInterval / LEVELS[mLevel].mFpsRate);
+    }
+
+    /**
+     * 現在の品質を取得する.
+     * @return 品質
+     */
+    synchronized Level getLevel() {
+        return LEVELS[mLevel];
+    }
+
+    /**
+     * 送信したデータのバイト数の累計を取得する.
+     * <p>
+     * 全てのクライアントへの送信を1回として数える。
+     * </p>
+     * @return バイト数
+     */
+    synchronized long getSentBytes() {
+        return mSentBytes;
+    }
+
+    /**
+     * エンコードしたフレーム数を取得する.
+     * @return フレーム数
+     */
+    synchronized int getEncodedCount() {
+        return mEncodedCount;
+    }
+
+    /**
+     * 変化がないためにエンコードしなかったフレーム数を取得する.
+     * @return フレーム数
+     */
+    synchronized int getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * 画面キャプチャのフレームを処理する.
+     * @param pixels RGBA の画素
+     * @param width 横幅
+     * @param height 縦幅
+     * @param pixelStride 1画素のバイト数
+     * @param rowStride 1行のバイト数
+     * @param now 現在時刻(ms)
+     * @return フレームをエンコードした場合はtrue、それ以外はfalse
+     */
+    synchronized boolean onFrame(final ByteBuffer pixels, final int width, final int height,
+                                 final int pixelStride, final int rowStride, final long now) {
+        if (mSink.getClientCount() == 0) {
+            // 送信先がいないのでエンコードしない。次に接続したクライアントには最新の画面を送る。
+            mDetector.reset();
+            mLastClientCount = 0;
+            return false;
+        }
+
+        if (mDetector.detect(pixels, width, height, pixelStride, rowStride) == 0) {
+            mSkippedCount++;
+            onIdle(now);
+            return false;
+        }
+
+        updateLevel();
+
+        Level level = LEVELS[mLevel];
+        byte[] media = mEncoder.encode(pixels, width, height, pixelStride, rowStride,
+                level.mQuality, level.mScale);
+        if (media == null) {
+            mDetector.reset();
+            return false;
+        }
+        mEncodedCount++;
+        mLastMedia = media;
+        send(media, now);
+        return true;
+    }
+
+    /**
+     * 新しいフレームがない場合の処理を行う.
+     * <p>
+     * 新しいクライアントが接続した場合や、一定時間フレームを送信していない場合は、
+     * 最後にエンコードしたフレームを再送する。
+     * </p>
+     * @param now 現在時刻(ms)
+     */
+    synchronized void onIdle(final long now) {
+        if (mLastMedia == null) {
+            return;
+        }
+        int clientCount = mSink.getClientCount();
+        if (clientCount > mLastClientCount || now - mLastSentTime >= KEEP_ALIVE_INTERVAL) {
+            send(mLastMedia, now);
+        }
+    }
+
+    /**
+     * 状態を初期化する.
+     */
+    synchronized void reset() {
+        mDetector.reset();
+        mLastMedia = null;
+        mLastClientCount = 0;
+        mStableFrames = 0;
+        mHoldFrames = 0;
+    }
+
+    private void send(final byte[] media, final long now) {
+        mSink.offer(media);
+        mSentBytes += media.length;
+        mLastSentTime = now;
+        mLastClientCount = mSink.getClientCount();
+    }
+
+    private void updateLevel() {
+        long dropped = mSink.getDroppedCount();
+        boolean congested = dropped > mLastDroppedCount
+            || mSink.getMaxQueuedCount() >= mSink.getQueueCapacity();
+        boolean idle = mSink.getMaxQueuedCount() == 0;
+        mLastDroppedCount = dropped;
+
+        if (mHoldFrames > 0) {
+            mHoldFrames--;
+        }
+
+        if (congested) {
+            mStableFrames = 0;
+            if (mHoldFrames == 0 && mLevel < LEVELS.length - 1) {
+                mLevel++;
+                mHoldFrames = FRAMES_TO_HOLD;
+            }
+        } else if (idle) {
+            mStableFrames++;
+            if (mStableFrames >= STABLE_FRAMES_TO_RAISE && mLevel > 0) {
+                mLevel--;
+                mStableFrames = 0;
+            }
+        } else {
+            mStableFrames = 0;
+        }
+    }
+
+    /**
+     * 配信する品質.
+     */
+    static class Level {
+        /** JPEG の品質. */
+        final int mQuality;
+
+        /** 解像度の倍率. */
+        final float mScale;
+
+        /** 最大フレームレートに対する倍率. */
+        final float mFpsRate;
+
+        Level(final int quality, final float scale, final float fpsRate) {
+            mQuality = quality;
+            mScale = scale;
+            mFpsRate = fpsRate;
+        }
+
+        @Override
+        public String toString() {
+            return "quality=" + mQuality + ", scale=" + mScale + ", fps=" + mFpsRate;
+        }
+    }
+}
@@ -99,6 +99,11 @@ public class MixedReplaceMediaServer {
      */
     private final List<ServerRunnable> mRunnables = Collections.synchronizedList(
             new ArrayList<ServerRunnable>());
+
+    /**
+     * Number of media discarded because queues of clients were full.
+     */
+    private long mDroppedMediaCount;
     
     /**
      * Set a boundary.
@@ -215,6 +220,47 @@ public class MixedReplaceMediaServer {
         }
     }
     
+    /**
+     * Get the number of connected clients.
+     * @return number of clients
+     */
+    public int getClientCount() {
+        return mRunnables.size();
+    }
+
+    /**
+     * Get the max number of media waiting to be sent among all clients.
+     * <p>
+     * This value shows how far the slowest client is behind.
+     * </p>
+     * @return number of media
+     */
+    public int getMaxQueuedMediaCount() {
+        int max = 0;
+        synchronized (mRunnables) {
+            for (ServerRunnable run : mRunnables) {
+                max = Math.max(max, run.mMediaQueue.size());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Get the max number of media waiting to be sent for each client.
+     * @return number of media
+     */
+    public int getMaxMediaCache() {
+        return MAX_MEDIA_CACHE;
+    }
+
+    /**
+     * Get the total number of media discarded because queues of clients were full.
+     * @return number of media
+     */
+    public synchronized long getDroppedMediaCount() {
+        return mDroppedMediaCount;
+    }
+
     /**
      * Start a mixed replace media server.
      * <p>
@@ -413,6 +459,7 @@ public class MixedReplaceMediaServer {
         private boolean offerMedia(final byte[] media) {
             if (mMediaQueue.size() == MAX_MEDIA_CACHE) {
                 mMediaQueue.remove();
+                mDroppedMediaCount++;
             }
             return mMediaQueue.offer(media);
         }
@@ -0,0 +1,321 @@
+package org.deviceconnect.android.deviceplugin.host.recorder.screen;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * スクリーンキャストの変化検出と品質制御のテスト.
+ * <p>
+ * 合成したフレームと、帯域を指定できる疑似クライアントを使って、
+ * 送信したバイト数と選択された品質を確認する。
+ * </p>
+ */
+public class ScreenCastEncoderTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int PIXEL_STRIDE = 4;
+    private static final int ROW_STRIDE = WIDTH * PIXEL_STRIDE + 32;
+    private static final double MAX_FPS = 10.0;
+    private static final long FRAME_INTERVAL = 100;
+
+    private FakeFrameEncoder mFrameEncoder;
+    private FakeFrameSink mSink;
+    private ScreenCastEncoder mEncoder;
+    private ByteBuffer mFrame;
+
+    @Before
+    public void setUp() {
+        mFrameEncoder = new FakeFrameEncoder();
+        mSink = new FakeFrameSink();
+        mEncoder = new ScreenCastEncoder(mFrameEncoder, mSink, MAX_FPS);
+        mFrame = ByteBuffer.allocate(ROW_STRIDE * HEIGHT);
+    }
+
+    @Test
+    public void staticFramesAreEncodedOnlyOnce() {
+        mSink.addClient(Integer.MAX_VALUE);
+        drawSquare(0);
+
+        long now = 0;
+        for (int i = 0; i < 25; i++) {
+            mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, now);
+            mSink.drain();
+            now += FRAME_INTERVAL;
+        }
+
+        Assert.assertEquals(1, mEncoder.getEncodedCount());
+        Assert.assertEquals(24, mEncoder.getSkippedCount());
+        // 最初のフレームと、1秒ごとの再送(1000ms, 2000ms)のみ.
+        int frameSize = mFrameEncoder.mSizes.get(0);
+        Assert.assertEquals(frameSize * 3, mEncoder.getSentBytes());
+        Assert.assertEquals(3, mSink.mOffered);
+    }
+
+    @Test
+    public void changedFramesAreEncoded() {
+        mSink.addClient(Integer.MAX_VALUE);
+
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            drawSquare(i);
+            Assert.assertTrue(mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, now));
+            mSink.drain();
+            now += FRAME_INTERVAL;
+        }
+        Assert.assertEquals(10, mEncoder.getEncodedCount());
+        Assert.assertEquals(0, mEncoder.getSkippedCount());
+    }
+
+    @Test
+    public void changeInPaddingIsIgnored() {
+        mSink.addClient(Integer.MAX_VALUE);
+        drawSquare(0);
+        mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, 0);
+
+        mFrame.put(WIDTH * PIXEL_STRIDE + 4, (byte) 0x55);
+        Assert.assertFalse(mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, FRAME_INTERVAL));
+    }
+
+    @Test
+    public void newClientReceivesLastFrame() {
+        mSink.addClient(Integer.MAX_VALUE);
+        drawSquare(0);
+        mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, 0);
+        mSink.drain();
+        Assert.assertEquals(1, mSink.mOffered);
+
+        mSink.addClient(Integer.MAX_VALUE);
+        mEncoder.onIdle(FRAME_INTERVAL);
+        Assert.assertEquals(2, mSink.mOffered);
+        Assert.assertEquals(1, mEncoder.getEncodedCount());
+    }
+
+    @Test
+    public void framesAreNotEncodedWithoutClients() {
+        drawSquare(0);
+        Assert.assertFalse(mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, 0));
+        Assert.assertEquals(0, mEncoder.getEncodedCount());
+
+        // 接続したクライアントには変化がなくても最新の画面を送る.
+        mSink.addClient(Integer.MAX_VALUE);
+        Assert.assertTrue(mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, FRAME_INTERVAL));
+    }
+
+    @Test
+    public void slowClientLowersQuality() {
+        int fullSize = FakeFrameEncoder.size(WIDTH, HEIGHT, ScreenCastEncoder.LEVELS[0]);
+        mSink.addClient(Integer.MAX_VALUE);
+        mSink.addClient(fullSize / 4);
+
+        List<Integer> qualities = runFrames(60);
+
+        // 帯域に収まる品質まで下げた後は、1段階上げて様子を見るだけになる.
+        Assert.assertEquals(ScreenCastEncoder.LEVELS[0].mQuality, (int) qualities.get(0));
+        for (int i = 15; i < qualities.size(); i++) {
+            Assert.assertTrue("quality must be lowered: " + qualities,
+                    qualities.get(i) <= ScreenCastEncoder.LEVELS[2].mQuality);
+        }
+        int lowered = 0;
+        for (int i = 15; i < qualities.size(); i++) {
+            if (qualities.get(i) == ScreenCastEncoder.LEVELS[3].mQuality) {
+                lowered++;
+            }
+        }
+        Assert.assertTrue(lowered > (qualities.size() - 15) / 2);
+    }
+
+    @Test
+    public void verySlowClientUsesLowestLevel() {
+        int fullSize = FakeFrameEncoder.size(WIDTH, HEIGHT, ScreenCastEncoder.LEVELS[0]);
+        mSink.addClient(Integer.MAX_VALUE);
+        mSink.addClient(fullSize / 20);
+
+        List<Integer> qualities = runFrames(60);
+
+        for (int i = 1; i < qualities.size(); i++) {
+            Assert.assertTrue("quality must not rise: " + qualities,
+                    qualities.get(i) <= qualities.get(i - 1));
+        }
+        ScreenCastEncoder.Level last = ScreenCastEncoder.LEVELS[ScreenCastEncoder.LEVELS.length - 1];
+        Assert.assertSame(last, mEncoder.getLevel());
+        Assert.assertEquals((long) (FRAME_INTERVAL / last.mFpsRate), mEncoder.getFrameInterval());
+        int lastSize = mFrameEncoder.mSizes.get(mFrameEncoder.mSizes.size() - 1);
+        Assert.assertTrue(lastSize < fullSize / 4);
+    }
+
+    @Test
+    public void qualityRecoversWhenClientCatchesUp() {
+        int fullSize = FakeFrameEncoder.size(WIDTH, HEIGHT, ScreenCastEncoder.LEVELS[0]);
+        FakeClient client = mSink.addClient(fullSize / 4);
+        runFrames(60);
+        Assert.assertTrue(mEncoder.getLevel().mQuality < ScreenCastEncoder.LEVELS[0].mQuality);
+
+        client.mBytesPerTick = Integer.MAX_VALUE;
+        List<Integer> qualities = runFrames(60);
+
+        for (int i = 1; i < qualities.size(); i++) {
+            Assert.assertTrue("quality must not fall: " + qualities,
+                    qualities.get(i) >= qualities.get(i - 1));
+        }
+        Assert.assertSame(ScreenCastEncoder.LEVELS[0], mEncoder.getLevel());
+        Assert.assertEquals(FRAME_INTERVAL, mEncoder.getFrameInterval());
+    }
+
+    @Test
+    public void fastClientsKeepBestQuality() {
+        mSink.addClient(Integer.MAX_VALUE);
+        mSink.addClient(Integer.MAX_VALUE);
+
+        List<Integer> qualities = runFrames(30);
+
+        for (int quality : qualities) {
+            Assert.assertEquals(ScreenCastEncoder.LEVELS[0].mQuality, quality);
+        }
+        Assert.assertEquals(0, mSink.getDroppedCount());
+    }
+
+    /**
+     * 動く四角形を描いたフレームを送り、エンコードされた品質を返す.
+     */
+    private List<Integer> runFrames(final int count) {
+        int start = mFrameEncoder.mQualities.size();
+        long now = mSink.mNow;
+        for (int i = 0; i < count; i++) {
+            drawSquare(start + i);
+            mEncoder.onFrame(mFrame, WIDTH, HEIGHT, PIXEL_STRIDE, ROW_STRIDE, now);
+            // フレーム間隔の間にクライアントが送信できる分だけキューを消費する.
+            long interval = mEncoder.getFrameInterval();
+            for (long t = 0; t < interval; t += FRAME_INTERVAL) {
+                mSink.drain();
+            }
+            now += interval;
+            mSink.mNow = now;
+        }
+        return new ArrayList<Integer>(mFrameEncoder.mQualities.subList(start, mFrameEncoder.mQualities.size()));
+    }
+
+    private void drawSquare(final int index) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int offset = y * ROW_STRIDE + x * PIXEL_STRIDE;
+                int px = (index * 4) % (WIDTH - 8);
+                boolean inside = x >= px && x < px + 8 && y >= 8 && y < 16;
+                mFrame.putInt(offset, inside ? 0xFF0000FF : 0x202020FF);
+            }
+        }
+    }
+
+    private static class FakeFrameEncoder implements ScreenCastEncoder.FrameEncoder {
+        final List<Integer> mQualities = new ArrayList<Integer>();
+        final List<Integer> mSizes = new ArrayList<Integer>();
+
+        static int size(final int width, final int height, final ScreenCastEncoder.Level level) {
+            int w = (int) (width * level.mScale);
+            int h = (int) (height * level.mScale);
+            return 100 + w * h * level.mQuality / 100;
+        }
+
+        @Override
+        public byte[] encode(final ByteBuffer pixels, final int width, final int height,
+                             final int pixelStride, final int rowStride,
+                             final int quality, final float scale) {
+            ScreenCastEncoder.Level level = null;
+            for (ScreenCastEncoder.Level l : ScreenCastEncoder.LEVELS) {
+                if (l.mQuality == quality && l.mScale == scale) {
+                    level = l;
+                }
+            }
+            Assert.assertNotNull(level);
+            int size = size(width, height, level);
+            mQualities.add(quality);
+            mSizes.add(size);
+            return new byte[size];
+        }
+    }
+
+    private static class FakeClient {
+        final LinkedList<byte[]> mQueue = new LinkedList<byte[]>();
+        int mBytesPerTick;
+        int mRemaining;
+
+        FakeClient(final int bytesPerTick) {
+            mBytesPerTick = bytesPerTick;
+        }
+    }
+
+    private static class FakeFrameSink implements ScreenCastEncoder.FrameSink {
+        static final int CAPACITY = 2;
+
+        final List<FakeClient> mClients = new ArrayList<FakeClient>();
+        long mDropped;
+        int mOffered;
+        long mNow;
+
+        FakeClient addClient(final int bytesPerTick) {
+            FakeClient client = new FakeClient(bytesPerTick);
+            mClients.add(client);
+            return client;
+        }
+
+        void drain() {
+            for (FakeClient client : mClients) {
+                long budget = client.mBytesPerTick;
+                while (budget > 0) {
+                    // 送信中のフレームはキューから取り出されている.
+                    if (client.mRemaining == 0) {
+                        if (client.mQueue.isEmpty()) {
+                            break;
+                        }
+                        client.mRemaining = client.mQueue.removeFirst().length;
+                    }
+                    long sent = Math.min(budget, client.mRemaining);
+                    client.mRemaining -= sent;
+                    budget -= sent;
+                }
+            }
+        }
+
+        @Override
+        public int getClientCount() {
+            return mClients.size();
+        }
+
+        @Override
+        public int getMaxQueuedCount() {
+            int max = 0;
+            for (FakeClient client : mClients) {
+                max = Math.max(max, client.mQueue.size());
+            }
+            return max;
+        }
+
+        @Override
+        public int getQueueCapacity() {
+            return CAPACITY;
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return mDropped;
+        }
+
+        @Override
+        public void offer(final byte[] media) {
+            mOffered++;
+            for (FakeClient client : mClients) {
+                if (client.mQueue.size() == CAPACITY) {
+                    client.mQueue.removeFirst();
+                    mDropped++;
+                }
+                client.mQueue.addLast(media);
+            }
+        }
+    }
+}
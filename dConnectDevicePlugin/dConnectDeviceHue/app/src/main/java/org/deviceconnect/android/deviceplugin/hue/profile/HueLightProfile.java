@@ -27,6 +27,8 @@ import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PostApi;
 import org.deviceconnect.android.profile.api.PutApi;
+import org.deviceconnect.android.profile.util.CommandRateLimiter;
+import org.deviceconnect.android.profile.util.FlashingExecutor;
 import org.deviceconnect.android.service.DConnectService;
 import org.deviceconnect.message.DConnectMessage;
 
@@ -59,11 +61,30 @@ public class HueLightProfile extends LightProfile {
      */
     private static final int HUE_BRIGHTNESS_TUNED_MAX_VALUE = 254;
 
+    /**
+     * ブリッジへ1秒あたりに送信するライト状態変更コマンド数.
+     */
+    private static final double HUE_COMMAND_RATE = 10;
+
+    /**
+     * ブリッジへ連続して送信できるライト状態変更コマンド数.
+     */
+    private static final int HUE_COMMAND_BURST = 5;
+
     /**
      * ライトフラッシング管理マップ.
      */
     private final Map<String, FlashingExecutor> mFlashingMap = new HashMap<String, FlashingExecutor>();
 
+    /**
+     * ブリッジへのライト状態変更コマンドの送信レートを制限するクラス.
+     * <p>
+     * Hueのブリッジはライトの状態変更を1秒あたり10コマンド程度までしか処理できないため、
+     * サービス(ブリッジ)ごとに送信レートを制限する。同じライトへの送信待ちの状態変更は最新のものにまとめる。
+     * </p>
+     */
+    private final CommandRateLimiter mCommandLimiter = new CommandRateLimiter(HUE_COMMAND_RATE, HUE_COMMAND_BURST);
+
     public HueLightProfile() {
         addApi(new GetApi() {
             @Override
@@ -119,7 +140,7 @@ public class HueLightProfile extends LightProfile {
                     sendResultOK(response);//do not check result of flashing
                     return true;
                 } else {
-                    bridge.updateLightState(light, lightState, new PHLightAdapter() {
+                    updateLightState(bridge, light, lightState, new PHLightAdapter() {
                         @Override
                         public void onStateUpdate(final Map<String, String> successAttribute, final List<PHHueError> errorAttribute) {
                             sendResultOK(response);
@@ -161,7 +182,7 @@ public class HueLightProfile extends LightProfile {
                 PHLightState lightState = new PHLightState();
                 lightState.setOn(false);
 
-                bridge.updateLightState(light, lightState, new PHLightAdapter() {
+                updateLightState(bridge, light, lightState, new PHLightAdapter() {
                     @Override
                     public void onStateUpdate(final Map<String, String> successAttribute,
                                               final List<PHHueError> errorAttribute) {
@@ -251,7 +272,7 @@ public class HueLightProfile extends LightProfile {
                     flashing(lightId, lightState, bridge, light, flashing);
                     countDownLatch.countDown();//do not check result of flashing
                 } else {
-                    bridge.updateLightState(light, lightState, new PHLightAdapter() {
+                    updateLightState(bridge, light, lightState, new PHLightAdapter() {
                         private boolean mErrorFlag = false;
 
                         @Override
@@ -319,7 +340,7 @@ public class HueLightProfile extends LightProfile {
             @Override
             public void changeLight(final boolean isOn, final FlashingExecutor.CompleteListener listener) {
                 lightState.setOn(isOn);
-                bridge.updateLightState(light, lightState, new PHLightAdapter() {
+                updateLightState(bridge, light, lightState, new PHLightAdapter() {
                     @Override
                     public void onStateUpdate(final Map<String, String> successAttribute, final List<PHHueError> errorAttribute) {
                         listener.onComplete();
@@ -335,6 +356,33 @@ public class HueLightProfile extends LightProfile {
         exe.start(flashing);
     }
 
+    /**
+     * ブリッジの送信レートを守ってライトの状態を変更する.
+     * <p>
+     * 送信待ちの間に同じライトへの新しい状態変更が要求された場合は送信せずに、
+     * 新しい状態で上書きされたものとして成功を通知する。
+     * </p>
+     * @param bridge Hueのブリッジ
+     * @param light ライト
+     * @param lightState ライトの状態
+     * @param listener 結果を通知するリスナー
+     */
+    private void updateLightState(final PHBridge bridge, final PHLight light, final PHLightState lightState,
+                                  final PHLightListener listener) {
+        final PHLightState state = new PHLightState(lightState);
+        mCommandLimiter.submit(light.getIdentifier(), new CommandRateLimiter.Command() {
+            @Override
+            public void execute() {
+                bridge.updateLightState(light, state, listener);
+            }
+
+            @Override
+            public void cancel() {
+                listener.onStateUpdate(new HashMap<String, String>(), new ArrayList<PHHueError>());
+            }
+        });
+    }
+
     private void sendResponseAfterAwait(final Intent response, final CountDownLatch latch) {
         new Thread(new Runnable() {
             @Override
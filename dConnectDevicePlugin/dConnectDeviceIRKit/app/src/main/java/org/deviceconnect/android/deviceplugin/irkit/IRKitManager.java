@@ -32,6 +32,7 @@ import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.util.ByteArrayBuffer;
 import org.apache.http.util.EntityUtils;
+import org.deviceconnect.android.deviceplugin.irkit.network.IRKitCommandQueue;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -48,6 +49,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.jmdns.JmDNS;
 import javax.jmdns.ServiceEvent;
@@ -190,8 +192,22 @@ public enum IRKitManager {
     
     /**
      * 実行用スレッド管理クラス.
+     * <p>
+     * IRKitごとのキューで共有し、IRKitの台数分まで並列に通信する.
+     * </p>
      */
-    private ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    /**
+     * IRKitごとのキューの待ち時間を管理するスケジューラ.
+     */
+    private ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * IRKitごとのリクエストキュー. キーはIRKitのIPアドレス.
+     */
+    private final ConcurrentHashMap<String, IRKitCommandQueue> mCommandQueues =
+            new ConcurrentHashMap<String, IRKitCommandQueue>();
 
     /**
      * WiFiのセキュリティタイプ.
@@ -451,6 +467,42 @@ public enum IRKitManager {
         return res;
     }
 
+    /**
+     * 指定したIPのIRKitへのリクエストキューを取得する.
+     * <p>
+     * キューが無い場合は作成する.
+     * </p>
+     *
+     * @param ip IRKitのIPアドレス
+     * @return リクエストキュー
+     */
+    private IRKitCommandQueue getCommandQueue(final String ip) {
+        IRKitCommandQueue queue = mCommandQueues.get(ip);
+        if (queue == null) {
+            IRKitCommandQueue newQueue = new IRKitCommandQueue(ip, mExecutor, mScheduler);
+            queue = mCommandQueues.putIfAbsent(ip, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * 指定したIPのIRKitへのリクエストキューを閉じる.
+     * <p>
+     * 実行待ちのリクエストには失敗が通知される.
+     * </p>
+     *
+     * @param ip IRKitのIPアドレス
+     */
+    private void closeCommandQueue(final String ip) {
+        IRKitCommandQueue queue = mCommandQueues.remove(ip);
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
     /**
      * サービスを登録する.
      * 
@@ -472,6 +524,7 @@ public enum IRKitManager {
         }
         
         mServices.remove(device.getName());
+        closeCommandQueue(device.getIp());
         
         if (BuildConfig.DEBUG) {
             Log.d("IRKit", "Lost Device : " + device);
@@ -614,6 +667,9 @@ public enum IRKitManager {
             mRemoveHandler = null;
             mIsDetecting = false;
             mServices.clear();
+            for (String ip : mCommandQueues.keySet()) {
+                closeCommandQueue(ip);
+            }
             mDNS.removeServiceListener(SERVICE_TYPE, mServiceListener);
             try {
                 mDNS.close();
@@ -643,28 +699,17 @@ public enum IRKitManager {
      * @param callback 処理結果を受けるコールバック
      */
     public void fetchMessage(final String ip, final GetMessageCallback callback) {
-        mExecutor.execute(new Runnable() {
-
+        if (BuildConfig.DEBUG) {
+            Log.d("IRKit", "http://" + ip + "/messages");
+        }
+        getCommandQueue(ip).get("/messages", new IRKitCommandQueue.ResponseCallback() {
             @Override
-            public void run() {
-                HttpGet req = createGetRequest(ip, "/messages");
-                HttpClient client = createClient();
-                String message = executeRequest(req, client);
-                callback.onGetMessage(message);
-
-                // 連続でIRKitに通信を行わないようにするためのスリープ
-                // IRKitに連続で通信を行うと正常に動作しないことがあるため
-                try {
-                    Thread.sleep(SLEEP_TIME);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+            public void onResponse(final String body) {
+                callback.onGetMessage(body);
             }
         });
     }
 
-
-
     /**
      * 赤外線データを送信する.
      * 
@@ -673,43 +718,13 @@ public enum IRKitManager {
      * @param callback 処理結果の通知を受けるコールバック
      */
     public void sendMessage(final String ip, final String message, final PostMessageCallback callback) {
-        mExecutor.execute(new Runnable() {
-
+        if (BuildConfig.DEBUG) {
+            Log.d("IRKit", "ip=" + ip + " post message : " + message);
+        }
+        getCommandQueue(ip).post("/messages", message, new IRKitCommandQueue.ResponseCallback() {
             @Override
-            public void run() {
-                HttpPost req = createPostRequest(ip, "/messages");
-                HttpClient client = createClient();
-                boolean result = false;
-                try {
-                    if (BuildConfig.DEBUG) {
-                        Log.d("IRKit", "ip=" + ip + " post message : " + message);
-                    }
-                    StringEntity body = new StringEntity(message);
-                    req.setEntity(body);
-                    HttpResponse res = client.execute(req);
-                    if (res.getStatusLine().getStatusCode() == STATUS_CODE_OK) {
-                        result = true;
-                    }
-                    
-                    // 連続でIRKitに通信を行わないようにするためのスリープ
-                    // IRKitに連続で通信を行うと正常に動作しないことがあるため
-                    try {
-                        Thread.sleep(SLEEP_TIME);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                } catch (ClientProtocolException e) {
-                    if (BuildConfig.DEBUG) {
-                        e.printStackTrace();
-                    }
-                } catch (IOException e) {
-                    if (BuildConfig.DEBUG) {
-                        e.printStackTrace();
-                    }
-                } finally {
-                    client.getConnectionManager().shutdown();
-                    callback.onPostMessage(result);
-                }
+            public void onResponse(final String body) {
+                callback.onPostMessage(body != null);
             }
         });
     }
@@ -12,6 +12,9 @@ import java.util.List;
 
 /**
  * Virutal Device 及び Virtual Profile を管理するDBクラス
+ * <p>
+ * 参照はプロセスで共有する{@link VirtualDeviceCache}から行い、DBへの書き込みはキャッシュにも反映する.
+ * </p>
  */
 public class IRKitDBHelper {
     /**
@@ -132,17 +135,51 @@ public class IRKitDBHelper {
                                                              "PUT", "PUT", "PUT",
                                                              "PUT", "PUT", "PUT"};
 
+    /**
+     * プロセスで共有する Virtual Device 及び Virtual Profile のキャッシュ.
+     */
+    private static VirtualDeviceCache sCache;
+
     /**
      * DB Helper.
      */
     private DBHelper mDBHelper;
 
+    /**
+     * キャッシュ.
+     */
+    private final VirtualDeviceCache mCache;
+
     /**
      * コンストラクタ.
      * @param context application context
      */
     public IRKitDBHelper(final Context context) {
         mDBHelper = new DBHelper(context);
+        mCache = getCache(context);
+    }
+
+    /**
+     * プロセスで共有するキャッシュを取得する.
+     * @param context context
+     * @return キャッシュ
+     */
+    private static synchronized VirtualDeviceCache getCache(final Context context) {
+        if (sCache == null) {
+            final DBHelper dbHelper = new DBHelper(context.getApplicationContext());
+            sCache = new VirtualDeviceCache(new VirtualDeviceCache.Loader() {
+                @Override
+                public List<VirtualDeviceData> loadVirtualDevices() {
+                    return queryVirtualDevices(dbHelper);
+                }
+
+                @Override
+                public List<VirtualProfileData> loadVirtualProfiles() {
+                    return queryVirtualProfiles(dbHelper);
+                }
+            });
+        }
+        return sCache;
     }
 
     /**
@@ -151,7 +188,7 @@ public class IRKitDBHelper {
      * @return 登録の成否
      */
     public synchronized long addVirtualDevice(final VirtualDeviceData device) {
-        addVirtualProfiles(device);
+        List<VirtualProfileData> profiles = addVirtualProfiles(device);
         ContentValues values = new ContentValues();
         values.put(VIRTUAL_DEVICE_COL_SERVICE_ID, device.getServiceId());
         values.put(VIRTUAL_DEVICE_COL_DEVICE_NAME, device.getDeviceName());
@@ -159,7 +196,11 @@ public class IRKitDBHelper {
 
         SQLiteDatabase db = mDBHelper.getWritableDatabase();
         try {
-            return db.insert(VIRTUAL_DEVICE_TBL_NAME, null, values);
+            long id = db.insert(VIRTUAL_DEVICE_TBL_NAME, null, values);
+            if (id >= 0) {
+                mCache.putVirtualDevice(device, profiles);
+            }
+            return id;
         } finally {
             db.close();
         }
@@ -168,42 +209,59 @@ public class IRKitDBHelper {
     /**
      * サービスID に関連したProfile を登録する。
      *
-     * @return 登録の成否
+     * @return 登録した Profile
      */
-    private synchronized void addVirtualProfiles(final VirtualDeviceData device) {
+    private synchronized List<VirtualProfileData> addVirtualProfiles(final VirtualDeviceData device) {
+        List<VirtualProfileData> profiles = new ArrayList<VirtualProfileData>();
         if (device.getCategoryName().equals("ライト")) {
             for (int i = 0; i < IRKIT_LIGHT_API_NAMES.length; i++) {
-                ContentValues values = new ContentValues();
-                values.put(VIRTUAL_PROFILE_COL_NAME, IRKIT_LIGHT_API_NAMES[i]);
-                values.put(VIRTUAL_PROFILE_COL_SERVICE_ID, device.getServiceId());
-                values.put(VIRTUAL_PROFILE_COL_PROFILE, "Light");
-                values.put(VIRTUAL_PROFILE_COL_METHOD, IRKIT_LIGHT_API_HTTP_METHODS[i]);
-                values.put(VIRTUAL_PROFILE_COL_URI, IRKIT_LIGHT_API_URIS[i]);
-
-                SQLiteDatabase db = mDBHelper.getWritableDatabase();
-                try {
-                    db.insert(VIRTUAL_PROFILE_TBL_NAME, null, values);
-                } finally {
-                    db.close();
-                }
+                addVirtualProfile(profiles, device.getServiceId(), IRKIT_LIGHT_API_NAMES[i], "Light",
+                        IRKIT_LIGHT_API_HTTP_METHODS[i], IRKIT_LIGHT_API_URIS[i]);
             }
         } else {
             for (int i = 0; i < IRKIT_TV_API_NAMES.length; i++) {
-                ContentValues values = new ContentValues();
-                values.put(VIRTUAL_PROFILE_COL_NAME, IRKIT_TV_API_NAMES[i]);
-                values.put(VIRTUAL_PROFILE_COL_SERVICE_ID, device.getServiceId());
-                values.put(VIRTUAL_PROFILE_COL_PROFILE, "TV");
-                values.put(VIRTUAL_PROFILE_COL_METHOD, IRKIT_TV_API_HTTP_METHODS[i]);
-                values.put(VIRTUAL_PROFILE_COL_URI, IRKIT_TV_API_URIS[i]);
-
-                SQLiteDatabase db = mDBHelper.getWritableDatabase();
-                try {
-                    db.insert(VIRTUAL_PROFILE_TBL_NAME, null, values);
-                } finally {
-                    db.close();
-                }
+                addVirtualProfile(profiles, device.getServiceId(), IRKIT_TV_API_NAMES[i], "TV",
+                        IRKIT_TV_API_HTTP_METHODS[i], IRKIT_TV_API_URIS[i]);
             }
         }
+        return profiles;
+    }
+
+    /**
+     * Profile を1件登録する.
+     * @param profiles 登録した Profile の追加先
+     * @param serviceId サービスID
+     * @param name API 名
+     * @param profile Profile 名
+     * @param method HTTP Method
+     * @param uri URI
+     */
+    private void addVirtualProfile(final List<VirtualProfileData> profiles, final String serviceId,
+                                   final String name, final String profile, final String method,
+                                   final String uri) {
+        ContentValues values = new ContentValues();
+        values.put(VIRTUAL_PROFILE_COL_NAME, name);
+        values.put(VIRTUAL_PROFILE_COL_SERVICE_ID, serviceId);
+        values.put(VIRTUAL_PROFILE_COL_PROFILE, profile);
+        values.put(VIRTUAL_PROFILE_COL_METHOD, method);
+        values.put(VIRTUAL_PROFILE_COL_URI, uri);
+
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+        try {
+            long id = db.insert(VIRTUAL_PROFILE_TBL_NAME, null, values);
+            if (id >= 0) {
+                VirtualProfileData p = new VirtualProfileData();
+                p.setId((int) id);
+                p.setServiceId(serviceId);
+                p.setName(name);
+                p.setProfile(profile);
+                p.setMethod(method);
+                p.setUri(uri);
+                profiles.add(p);
+            }
+        } finally {
+            db.close();
+        }
     }
 
     /**
@@ -230,7 +288,11 @@ public class IRKitDBHelper {
 
         SQLiteDatabase db = mDBHelper.getWritableDatabase();
         try {
-            return db.update(VIRTUAL_PROFILE_TBL_NAME, values, whereClause, whereArgs);
+            int count = db.update(VIRTUAL_PROFILE_TBL_NAME, values, whereClause, whereArgs);
+            if (count > 0) {
+                mCache.updateVirtualProfile(profile);
+            }
+            return count;
         } finally {
             db.close();
         }
@@ -251,6 +313,7 @@ public class IRKitDBHelper {
         try {
             int isDeleteProfile = db.delete(VIRTUAL_PROFILE_TBL_NAME, whereClause, whereArgs);
             int isDeleteDevice = db.delete(VIRTUAL_DEVICE_TBL_NAME, whereClause, whereArgs);
+            mCache.removeVirtualDevice(serviceId);
             if (isDeleteDevice > 0 && isDeleteProfile > 0) {
                 return true;
             } else {
@@ -266,28 +329,8 @@ public class IRKitDBHelper {
      * @param serviceId 検索するサービスID. 全件取得はnull.
      * @return Virtual Device List
      */
-    public synchronized List<VirtualDeviceData> getVirtualDevices(final String serviceId) {
-        String sql = "SELECT * FROM " + VIRTUAL_DEVICE_TBL_NAME;
-        if (serviceId != null) {
-            sql += " WHERE " + VIRTUAL_PROFILE_COL_SERVICE_ID + "='" + serviceId + "';";
-        }
-        String[] selectionArgs = {};
-
-        SQLiteDatabase db = mDBHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery(sql, selectionArgs);
-
-        List<VirtualDeviceData> devices = new ArrayList<VirtualDeviceData>();
-        boolean next = cursor.moveToFirst();
-        while (next) {
-            VirtualDeviceData device = new VirtualDeviceData();
-            device.setServiceId(cursor.getString(cursor.getColumnIndex(VIRTUAL_DEVICE_COL_SERVICE_ID)));
-            device.setDeviceName(cursor.getString(cursor.getColumnIndex(VIRTUAL_DEVICE_COL_DEVICE_NAME)));
-            device.setCategoryName(cursor.getString(cursor.getColumnIndex(VIRTUAL_DEVICE_COL_CATEGORY_NAME)));
-            devices.add(device);
-            next = cursor.moveToNext();
-        }
-        cursor.close();
-        return devices;
+    public List<VirtualDeviceData> getVirtualDevices(final String serviceId) {
+        return mCache.getVirtualDevices(serviceId);
     }
 
 
@@ -296,14 +339,44 @@ public class IRKitDBHelper {
      * @param serviceId 検索するサービスID
      * @return Virtual Device List
      */
-    public synchronized List<VirtualDeviceData> getVirtualDevicesByServiceId(final String serviceId) {
+    public List<VirtualDeviceData> getVirtualDevicesByServiceId(final String serviceId) {
+        return mCache.getVirtualDevicesByPrefix(serviceId);
+    }
+
+    /**
+     * Virtual Profile Listの取得.
+     * @param serviceId 検索するサービスID. 全件取得はnull.
+     * @param profile Profile
+     * @return Virtual Device List
+     */
+    public List<VirtualProfileData> getVirtualProfiles(final String serviceId,
+                                                       final String profile) {
+        return mCache.getVirtualProfiles(serviceId, profile);
+    }
+
+    /**
+     * 指定したAPIの Virtual Profile の取得.
+     * @param serviceId サービスID
+     * @param profile Profile
+     * @param uri URI
+     * @param method HTTP Method
+     * @return Virtual Profile. 登録されていない場合はnull.
+     */
+    public VirtualProfileData getVirtualProfile(final String serviceId, final String profile,
+                                                final String uri, final String method) {
+        return mCache.getVirtualProfile(serviceId, profile, uri, method);
+    }
+
+    /**
+     * DBから全ての Virtual Device を読み込む.
+     * @param dbHelper DB Helper
+     * @return Virtual Device List
+     */
+    private static List<VirtualDeviceData> queryVirtualDevices(final DBHelper dbHelper) {
         String sql = "SELECT * FROM " + VIRTUAL_DEVICE_TBL_NAME;
-        if (serviceId != null) {
-            sql += " WHERE " + VIRTUAL_PROFILE_COL_SERVICE_ID + " LIKE '" + serviceId + "%';";
-        }
         String[] selectionArgs = {};
 
-        SQLiteDatabase db = mDBHelper.getReadableDatabase();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
         Cursor cursor = db.rawQuery(sql, selectionArgs);
 
         List<VirtualDeviceData> devices = new ArrayList<VirtualDeviceData>();
@@ -321,25 +394,15 @@ public class IRKitDBHelper {
     }
 
     /**
-     * Virtual Profile Listの取得.
-     * @param serviceId 検索するサービスID. 全件取得はnull.
-     * @param profile Profile
-     * @return Virtual Device List
+     * DBから全ての Virtual Profile を読み込む.
+     * @param dbHelper DB Helper
+     * @return Virtual Profile List
      */
-    public synchronized List<VirtualProfileData> getVirtualProfiles(final String serviceId,
-                                                                    final String profile) {
+    private static List<VirtualProfileData> queryVirtualProfiles(final DBHelper dbHelper) {
         String sql = "SELECT * FROM " + VIRTUAL_PROFILE_TBL_NAME;
-        if (serviceId != null && profile != null) {
-            sql += " WHERE " + VIRTUAL_PROFILE_COL_SERVICE_ID + "='" + serviceId + "'" +
-                    " AND " + VIRTUAL_PROFILE_COL_PROFILE + "='" + profile + "';";
-        } else if (serviceId != null && profile == null) {
-            sql += " WHERE " + VIRTUAL_PROFILE_COL_SERVICE_ID + "='" + serviceId + "';";
-
-        }
-
         String[] selectionArgs = {};
 
-        SQLiteDatabase db = mDBHelper.getReadableDatabase();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
         Cursor cursor = db.rawQuery(sql, selectionArgs);
 
         List<VirtualProfileData> profiles = new ArrayList<VirtualProfileData>();
@@ -0,0 +1,290 @@
+package org.deviceconnect.android.deviceplugin.irkit.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Virtual Device 及び Virtual Profile をメモリ上に保持するクラス.
+ *
+ * <p>
+ * 初回の参照時に{@link Loader}から全件を読み込み、以降の参照はDBにアクセスせずに行う.
+ * Virtual Device はサービスIDで、Virtual Profile はサービスIDと (Profile, URI, HTTP Method) で索引する.
+ * DBへの書き込みは呼び出し元で行い、成功した内容をこのクラスにも反映することで、DBと同じ内容を保つ.
+ * </p>
+ * <p>
+ * 取得したデータを呼び出し元が変更してもキャッシュに影響しないように、取得時にはコピーを返す.
+ * </p>
+ */
+public class VirtualDeviceCache {
+
+    /**
+     * Virtual Device 及び Virtual Profile の読み込み元.
+     */
+    public interface Loader {
+        /**
+         * 全ての Virtual Device を読み込む.
+         * @return Virtual Device List
+         */
+        List<VirtualDeviceData> loadVirtualDevices();
+
+        /**
+         * 全ての Virtual Profile を読み込む.
+         * @return Virtual Profile List
+         */
+        List<VirtualProfileData> loadVirtualProfiles();
+    }
+
+    /**
+     * 読み込み元.
+     */
+    private final Loader mLoader;
+
+    /**
+     * Virtual Device. キーはサービスID.
+     */
+    private final Map<String, VirtualDeviceData> mDevices = new LinkedHashMap<String, VirtualDeviceData>();
+
+    /**
+     * サービスIDごとの Virtual Profile. キーは (Profile, URI, HTTP Method).
+     */
+    private final Map<String, Map<String, VirtualProfileData>> mProfiles =
+            new LinkedHashMap<String, Map<String, VirtualProfileData>>();
+
+    /**
+     * 読み込み済みかどうか.
+     */
+    private boolean mLoaded;
+
+    /**
+     * コンストラクタ.
+     * @param loader 読み込み元
+     */
+    public VirtualDeviceCache(final Loader loader) {
+        mLoader = loader;
+    }
+
+    /**
+     * Virtual Device Listの取得.
+     * @param serviceId 検索するサービスID. 全件取得はnull.
+     * @return Virtual Device List
+     */
+    public synchronized List<VirtualDeviceData> getVirtualDevices(final String serviceId) {
+        load();
+        List<VirtualDeviceData> devices = new ArrayList<VirtualDeviceData>();
+        if (serviceId == null) {
+            for (VirtualDeviceData device : mDevices.values()) {
+                devices.add(copy(device));
+            }
+        } else {
+            VirtualDeviceData device = mDevices.get(serviceId);
+            if (device != null) {
+                devices.add(copy(device));
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * 指定した文字列から始まるサービスIDの Virtual Device Listの取得.
+     * @param prefix サービスIDの先頭. 全件取得はnull.
+     * @return Virtual Device List
+     */
+    public synchronized List<VirtualDeviceData> getVirtualDevicesByPrefix(final String prefix) {
+        load();
+        List<VirtualDeviceData> devices = new ArrayList<VirtualDeviceData>();
+        for (VirtualDeviceData device : mDevices.values()) {
+            if (prefix == null || device.getServiceId().startsWith(prefix)) {
+                devices.add(copy(device));
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Virtual Profile Listの取得.
+     * @param serviceId 検索するサービスID. 全件取得はnull.
+     * @param profile Profile. 全件取得はnull.
+     * @return Virtual Profile List
+     */
+    public synchronized List<VirtualProfileData> getVirtualProfiles(final String serviceId,
+                                                                    final String profile) {
+        load();
+        List<VirtualProfileData> profiles = new ArrayList<VirtualProfileData>();
+        if (serviceId == null) {
+            for (Map<String, VirtualProfileData> map : mProfiles.values()) {
+                addProfiles(profiles, map, null);
+            }
+        } else {
+            Map<String, VirtualProfileData> map = mProfiles.get(serviceId);
+            if (map != null) {
+                addProfiles(profiles, map, profile);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * 指定したAPIの Virtual Profile を取得する.
+     * @param serviceId サービスID
+     * @param profile Profile
+     * @param uri URI. 大文字小文字は区別しない.
+     * @param method HTTP Method
+     * @return Virtual Profile. 無い場合はnull.
+     */
+    public synchronized VirtualProfileData getVirtualProfile(final String serviceId, final String profile,
+                                                             final String uri, final String method) {
+        load();
+        Map<String, VirtualProfileData> map = mProfiles.get(serviceId);
+        if (map == null || profile == null || uri == null || method == null) {
+            return null;
+        }
+        VirtualProfileData p = map.get(createKey(profile, uri, method));
+        return p != null ? copy(p) : null;
+    }
+
+    /**
+     * Virtual Device を追加する.
+     * @param device Virtual Device
+     * @param profiles Virtual Device に登録した Virtual Profile
+     */
+    public synchronized void putVirtualDevice(final VirtualDeviceData device,
+                                              final List<VirtualProfileData> profiles) {
+        if (!mLoaded) {
+            // 読み込み時にDBから取得する.
+            return;
+        }
+        mDevices.put(device.getServiceId(), copy(device));
+        for (VirtualProfileData profile : profiles) {
+            putProfile(copy(profile));
+        }
+    }
+
+    /**
+     * Virtual Profile を更新する.
+     * <p>
+     * サービスID、URI、HTTP Method が同じ Virtual Profile を置き換える.
+     * </p>
+     * @param profile Virtual Profile
+     */
+    public synchronized void updateVirtualProfile(final VirtualProfileData profile) {
+        if (!mLoaded) {
+            return;
+        }
+        Map<String, VirtualProfileData> map = mProfiles.get(profile.getServiceId());
+        if (map == null) {
+            return;
+        }
+        for (Map.Entry<String, VirtualProfileData> entry : map.entrySet()) {
+            VirtualProfileData p = entry.getValue();
+            if (p.getUri().equals(profile.getUri()) && p.getMethod().equals(profile.getMethod())) {
+                VirtualProfileData updated = copy(profile);
+                updated.setId(p.getId());
+                String key = createKey(updated.getProfile(), updated.getUri(), updated.getMethod());
+                if (key.equals(entry.getKey())) {
+                    entry.setValue(updated);
+                } else {
+                    map.remove(entry.getKey());
+                    map.put(key, updated);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Virtual Device とその Virtual Profile を削除する.
+     * @param serviceId サービスID
+     */
+    public synchronized void removeVirtualDevice(final String serviceId) {
+        mDevices.remove(serviceId);
+        mProfiles.remove(serviceId);
+    }
+
+    /**
+     * 読み込んでいない場合は読み込む.
+     */
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        for (VirtualDeviceData device : mLoader.loadVirtualDevices()) {
+            mDevices.put(device.getServiceId(), device);
+        }
+        for (VirtualProfileData profile : mLoader.loadVirtualProfiles()) {
+            putProfile(profile);
+        }
+        mLoaded = true;
+    }
+
+    /**
+     * Virtual Profile を索引に追加する.
+     * @param profile Virtual Profile
+     */
+    private void putProfile(final VirtualProfileData profile) {
+        Map<String, VirtualProfileData> map = mProfiles.get(profile.getServiceId());
+        if (map == null) {
+            map = new LinkedHashMap<String, VirtualProfileData>();
+            mProfiles.put(profile.getServiceId(), map);
+        }
+        map.put(createKey(profile.getProfile(), profile.getUri(), profile.getMethod()), profile);
+    }
+
+    /**
+     * Virtual Profile をリストに追加する.
+     * @param profiles 追加先のリスト
+     * @param map サービスIDの Virtual Profile
+     * @param profile 追加する Profile. 全件の場合はnull.
+     */
+    private static void addProfiles(final List<VirtualProfileData> profiles,
+                                    final Map<String, VirtualProfileData> map, final String profile) {
+        for (VirtualProfileData p : map.values()) {
+            if (profile == null || profile.equals(p.getProfile())) {
+                profiles.add(copy(p));
+            }
+        }
+    }
+
+    /**
+     * (Profile, URI, HTTP Method) の索引のキーを作成する.
+     * @param profile Profile
+     * @param uri URI
+     * @param method HTTP Method
+     * @return キー
+     */
+    private static String createKey(final String profile, final String uri, final String method) {
+        return profile + " " + method + " " + uri.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Virtual Device をコピーする.
+     * @param device コピー元
+     * @return コピー
+     */
+    private static VirtualDeviceData copy(final VirtualDeviceData device) {
+        VirtualDeviceData d = new VirtualDeviceData();
+        d.setServiceId(device.getServiceId());
+        d.setDeviceName(device.getDeviceName());
+        d.setCategoryName(device.getCategoryName());
+        return d;
+    }
+
+    /**
+     * Virtual Profile をコピーする.
+     * @param profile コピー元
+     * @return コピー
+     */
+    private static VirtualProfileData copy(final VirtualProfileData profile) {
+        VirtualProfileData p = new VirtualProfileData();
+        p.setId(profile.getId());
+        p.setServiceId(profile.getServiceId());
+        p.setName(profile.getName());
+        p.setProfile(profile.getProfile());
+        p.setMethod(profile.getMethod());
+        p.setUri(profile.getUri());
+        p.setIr(profile.getIr());
+        return p;
+    }
+}
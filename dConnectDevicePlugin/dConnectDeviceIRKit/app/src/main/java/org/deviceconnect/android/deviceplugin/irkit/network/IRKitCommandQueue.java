@@ -0,0 +1,568 @@
+/*
+ IRKitCommandQueue.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.irkit.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1台のIRKitに対するHTTPリクエストを順番に実行するキュー.
+ *
+ * <p>
+ * IRKitは連続で通信を行うと正常に動作しないことがあるため、同じIRKitへのリクエストは1つずつ、
+ * 前のリクエストの完了から{@link #getInterval()}ミリ秒以上空けて実行する.
+ * 別のIRKitのキューとは独立して実行されるため、応答しないIRKitが他のIRKitへの送信を遅らせることはない.
+ * </p>
+ * <p>
+ * 通信は{@link HttpURLConnection}で行い、応答を最後まで読み込むことで同じIRKitへの接続をKeep-Aliveで再利用する.
+ * 通信に失敗した場合はスレッドを止めずにスケジューラで待ってから再送し、待ち時間は失敗するごとに倍にする.
+ * 連続して{@link #FAILURE_THRESHOLD}回通信に失敗した場合は、{@link #OPEN_DURATION}ミリ秒の間は
+ * 通信せずに即座に失敗を通知する(サーキットブレーカー).
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class IRKitCommandQueue {
+
+    /**
+     * Httpリクエスト ステータスコード 200.
+     */
+    private static final int STATUS_CODE_OK = 200;
+
+    /**
+     * HTTPリクエストのタイムアウト {@value} ミリ秒.
+     */
+    public static final int DEFAULT_TIMEOUT = 5000;
+
+    /**
+     * リクエストの実行間隔 {@value} ミリ秒.
+     */
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    /**
+     * 最大再送回数.
+     */
+    public static final int MAX_RETRY = 2;
+
+    /**
+     * 再送までの待ち時間の初期値 {@value} ミリ秒.
+     */
+    public static final long INITIAL_BACKOFF = 500;
+
+    /**
+     * サーキットブレーカーが開くまでの連続失敗回数.
+     */
+    public static final int FAILURE_THRESHOLD = 3;
+
+    /**
+     * サーキットブレーカーが開いている時間 {@value} ミリ秒.
+     */
+    public static final long OPEN_DURATION = 30 * 1000;
+
+    /** 3.0用ヘッダー名. */
+    private static final String X_REQUESTED_WITH_HEADER_NAME = "X-Requested-With";
+    /** 3.0用ヘッダー値. */
+    private static final String X_REQUESTED_WITH_HEADER_VALUE = "IRKit Device Plug-in";
+
+    /**
+     * リクエストの結果を受け取るコールバック.
+     */
+    public interface ResponseCallback {
+        /**
+         * リクエストの結果を通知する.
+         *
+         * @param body レスポンスボディ。失敗した場合はnull。
+         */
+        void onResponse(String body);
+    }
+
+    /**
+     * キューに積まれたリクエスト.
+     */
+    public final class Command {
+        /** HTTPメソッド. */
+        private final String mMethod;
+        /** パス. */
+        private final String mPath;
+        /** POSTするボディ. */
+        private final String mBody;
+        /** コールバック. */
+        private final ResponseCallback mCallback;
+        /** 再送回数. */
+        private int mRetryCount;
+        /** キャンセルされたかどうか. */
+        private boolean mCancelled;
+        /** 完了したかどうか. */
+        private boolean mDone;
+
+        /**
+         * コンストラクタ.
+         * @param method HTTPメソッド
+         * @param path パス
+         * @param body POSTするボディ
+         * @param callback コールバック
+         */
+        private Command(final String method, final String path, final String body,
+                        final ResponseCallback callback) {
+            mMethod = method;
+            mPath = path;
+            mBody = body;
+            mCallback = callback;
+        }
+
+        /**
+         * リクエストをキャンセルする.
+         * <p>
+         * 実行前または再送待ちの場合はキューから取り除き、コールバックにnullを通知する.
+         * 通信中の場合は、その通信の完了後に再送しない.
+         * </p>
+         */
+        public void cancel() {
+            IRKitCommandQueue.this.cancel(this);
+        }
+    }
+
+    /** 通信を実行するスレッド. 複数のキューで共有する. */
+    private final ExecutorService mExecutor;
+    /** 実行間隔と再送の待ち時間を管理するスケジューラ. 複数のキューで共有する. */
+    private final ScheduledExecutorService mScheduler;
+    /** IRKitのホスト. */
+    private final String mHost;
+    /** 実行待ちのリクエスト. 先頭が実行中または再送待ちのリクエスト. */
+    private final LinkedList<Command> mCommands = new LinkedList<>();
+
+    /** HTTPリクエストのタイムアウト. 単位はミリ秒. */
+    private int mTimeout = DEFAULT_TIMEOUT;
+    /** リクエストの実行間隔. 単位はミリ秒. */
+    private long mInterval = DEFAULT_INTERVAL;
+    /** 再送までの待ち時間の初期値. 単位はミリ秒. */
+    private long mInitialBackoff = INITIAL_BACKOFF;
+    /** サーキットブレーカーが開いている時間. 単位はミリ秒. */
+    private long mOpenDuration = OPEN_DURATION;
+
+    /** 先頭のリクエストを実行中(再送待ちを含む)かどうか. */
+    private boolean mRunning;
+    /** 先頭のリクエストの実行待ちのタスク. */
+    private Future<?> mScheduled;
+    /** 前のリクエストが完了した時刻. */
+    private long mLastCompleted;
+    /** 連続して通信に失敗した回数. */
+    private int mFailureCount;
+    /** サーキットブレーカーが閉じる時刻. 0の場合は閉じている. */
+    private long mOpenUntil;
+    /** 閉じたかどうか. */
+    private boolean mClosed;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param host IRKitのホスト. ポート番号を含めても良い.
+     * @param executor 通信を実行するスレッド
+     * @param scheduler 待ち時間を管理するスケジューラ
+     */
+    public IRKitCommandQueue(final String host, final ExecutorService executor,
+                             final ScheduledExecutorService scheduler) {
+        mHost = host;
+        mExecutor = executor;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * IRKitのホストを取得する.
+     * @return ホスト
+     */
+    public String getHost() {
+        return mHost;
+    }
+
+    /**
+     * HTTPリクエストのタイムアウトを設定する.
+     * @param timeout タイムアウト. 単位はミリ秒.
+     */
+    public synchronized void setTimeout(final int timeout) {
+        mTimeout = timeout;
+    }
+
+    /**
+     * リクエストの実行間隔を取得する.
+     * @return 実行間隔. 単位はミリ秒.
+     */
+    public synchronized long getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * リクエストの実行間隔を設定する.
+     * @param interval 実行間隔. 単位はミリ秒.
+     */
+    public synchronized void setInterval(final long interval) {
+        mInterval = interval;
+    }
+
+    /**
+     * 再送までの待ち時間の初期値を設定する.
+     * @param backoff 待ち時間. 単位はミリ秒.
+     */
+    public synchronized void setInitialBackoff(final long backoff) {
+        mInitialBackoff = backoff;
+    }
+
+    /**
+     * サーキットブレーカーが開いている時間を設定する.
+     * @param duration 時間. 単位はミリ秒.
+     */
+    public synchronized void setOpenDuration(final long duration) {
+        mOpenDuration = duration;
+    }
+
+    /**
+     * サーキットブレーカーが開いているかを確認する.
+     * @return 開いている場合はtrue、その他はfalse
+     */
+    public synchronized boolean isOpen() {
+        return mOpenUntil != 0 && System.currentTimeMillis() < mOpenUntil;
+    }
+
+    /**
+     * GETリクエストをキューに追加する.
+     *
+     * @param path パス
+     * @param callback コールバック
+     * @return 追加したリクエスト
+     */
+    public Command get(final String path, final ResponseCallback callback) {
+        return enqueue(new Command("GET", path, null, callback));
+    }
+
+    /**
+     * POSTリクエストをキューに追加する.
+     * <p>
+     * 成功した場合はレスポンスボディ(空文字の場合もある)を通知する.
+     * </p>
+     *
+     * @param path パス
+     * @param body ボディ
+     * @param callback コールバック
+     * @return 追加したリクエスト
+     */
+    public Command post(final String path, final String body, final ResponseCallback callback) {
+        return enqueue(new Command("POST", path, body, callback));
+    }
+
+    /**
+     * キューを閉じる.
+     * <p>
+     * 実行待ちのリクエストには失敗を通知する.
+     * </p>
+     */
+    public void close() {
+        List<Command> failed;
+        synchronized (this) {
+            mClosed = true;
+            failed = drain();
+        }
+        notifyFailure(failed);
+    }
+
+    /**
+     * リクエストをキューに追加する.
+     * @param command リクエスト
+     * @return 追加したリクエスト
+     */
+    private Command enqueue(final Command command) {
+        synchronized (this) {
+            if (!mClosed && !isOpen()) {
+                mCommands.add(command);
+                scheduleNext();
+                return command;
+            }
+            command.mDone = true;
+        }
+        command.mCallback.onResponse(null);
+        return command;
+    }
+
+    /**
+     * リクエストをキャンセルする.
+     * @param command リクエスト
+     */
+    private void cancel(final Command command) {
+        synchronized (this) {
+            if (command.mDone) {
+                return;
+            }
+            if (mRunning && mCommands.peek() == command) {
+                if (mScheduled == null) {
+                    // 通信中の場合は完了時に処理する.
+                    command.mCancelled = true;
+                    return;
+                }
+                mScheduled.cancel(false);
+                mScheduled = null;
+                mRunning = false;
+            }
+            mCommands.remove(command);
+            command.mDone = true;
+            scheduleNext();
+        }
+        command.mCallback.onResponse(null);
+    }
+
+    /**
+     * 実行できる状態であれば、先頭のリクエストの実行を予約する.
+     */
+    private void scheduleNext() {
+        if (mRunning || mClosed || mCommands.isEmpty()) {
+            return;
+        }
+        mRunning = true;
+        long delay = mLastCompleted + mInterval - System.currentTimeMillis();
+        if (delay > 0) {
+            mScheduled = schedule(delay);
+        } else {
+            execute();
+        }
+    }
+
+    /**
+     * 指定時間後に先頭のリクエストを実行する.
+     * @param delay 待ち時間. 単位はミリ秒.
+     * @return 予約したタスク
+     */
+    private Future<?> schedule(final long delay) {
+        try {
+            return mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (IRKitCommandQueue.this) {
+                        if (mScheduled == null) {
+                            // キャンセル済み.
+                            return;
+                        }
+                        mScheduled = null;
+                        execute();
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            mRunning = false;
+            return null;
+        }
+    }
+
+    /**
+     * 先頭のリクエストを通信用のスレッドで実行する.
+     */
+    private void execute() {
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runHead();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mRunning = false;
+        }
+    }
+
+    /**
+     * 先頭のリクエストを実行する.
+     */
+    private void runHead() {
+        Command command;
+        int timeout;
+        synchronized (this) {
+            command = mCommands.peek();
+            if (command == null || mClosed) {
+                mRunning = false;
+                return;
+            }
+            timeout = mTimeout;
+        }
+
+        String body = null;
+        boolean failed = false;
+        boolean retryable = false;
+        try {
+            body = request(command, timeout);
+        } catch (RetryableException e) {
+            failed = true;
+            retryable = true;
+        } catch (IOException e) {
+            failed = true;
+        }
+
+        List<Command> drained = null;
+        synchronized (this) {
+            if (mClosed || command.mDone) {
+                return;
+            }
+            if (!failed) {
+                // 応答があった場合はIRKitは動作している.
+                mFailureCount = 0;
+                mOpenUntil = 0;
+            } else {
+                mFailureCount++;
+                if (mFailureCount >= FAILURE_THRESHOLD) {
+                    mOpenUntil = System.currentTimeMillis() + mOpenDuration;
+                    drained = drain();
+                } else if (retryable && !command.mCancelled && command.mRetryCount < MAX_RETRY) {
+                    long backoff = mInitialBackoff << command.mRetryCount;
+                    command.mRetryCount++;
+                    mScheduled = schedule(backoff);
+                    if (mScheduled != null) {
+                        return;
+                    }
+                }
+            }
+            if (drained == null) {
+                mCommands.remove(command);
+                command.mDone = true;
+                mRunning = false;
+                mLastCompleted = System.currentTimeMillis();
+                scheduleNext();
+            }
+        }
+
+        if (drained == null) {
+            command.mCallback.onResponse(body);
+        } else {
+            notifyFailure(drained);
+        }
+    }
+
+    /**
+     * 実行待ちのリクエストを全て取り除く.
+     * @return 取り除いたリクエスト
+     */
+    private List<Command> drain() {
+        List<Command> commands = new ArrayList<>(mCommands);
+        if (mScheduled != null) {
+            mScheduled.cancel(false);
+            mScheduled = null;
+        }
+        for (Command command : commands) {
+            command.mDone = true;
+        }
+        mCommands.clear();
+        mRunning = false;
+        return commands;
+    }
+
+    /**
+     * リクエストに失敗を通知する.
+     * @param commands リクエスト
+     */
+    private static void notifyFailure(final List<Command> commands) {
+        for (Command command : commands) {
+            command.mCallback.onResponse(null);
+        }
+    }
+
+    /**
+     * HTTPリクエストを実行する.
+     *
+     * @param command リクエスト
+     * @param timeout タイムアウト. 単位はミリ秒.
+     * @return ステータスコードが200の場合はレスポンスボディ、その他はnull
+     * @throws RetryableException 再送して良い通信エラーが発生した場合
+     * @throws IOException 再送できない通信エラーが発生した場合
+     */
+    private String request(final Command command, final int timeout) throws IOException {
+        HttpURLConnection conn = null;
+        boolean sent = false;
+        try {
+            conn = (HttpURLConnection) new URL("http://" + mHost + command.mPath).openConnection();
+            conn.setConnectTimeout(timeout);
+            conn.setReadTimeout(timeout);
+            conn.setUseCaches(false);
+            conn.setRequestMethod(command.mMethod);
+            conn.setRequestProperty(X_REQUESTED_WITH_HEADER_NAME, X_REQUESTED_WITH_HEADER_VALUE);
+            byte[] body = null;
+            if (command.mBody != null) {
+                body = command.mBody.getBytes("UTF-8");
+                conn.setDoOutput(true);
+                conn.setFixedLengthStreamingMode(body.length);
+            }
+            conn.connect();
+
+            if (body != null) {
+                sent = true;
+                OutputStream out = conn.getOutputStream();
+                out.write(body);
+                out.close();
+            }
+
+            int status = conn.getResponseCode();
+            InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            String response = readFully(in);
+            return status == STATUS_CODE_OK ? response : null;
+        } catch (IOException e) {
+            // 応答を読み切った接続は再利用するため、失敗した場合のみ切断する.
+            if (conn != null) {
+                conn.disconnect();
+            }
+            // POSTは送信後に失敗した場合、IRKitが赤外線を送信済みの可能性があるので再送しない.
+            if (sent) {
+                throw e;
+            }
+            throw new RetryableException(e);
+        }
+    }
+
+    /**
+     * ストリームを最後まで読み込んで閉じる.
+     * <p>
+     * 読み切ったストリームの接続はKeep-Aliveで再利用される.
+     * </p>
+     * @param in ストリーム
+     * @return 読み込んだ文字列
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static String readFully(final InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 再送して良い通信エラー.
+     */
+    private static class RetryableException extends IOException {
+        /**
+         * コンストラクタ.
+         * @param cause 原因
+         */
+        RetryableException(final IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -91,8 +91,8 @@ public class IRKitLightProfile extends LightProfile {
     private boolean sendLightRequest(final String serviceId, final String lightId,
                                      final String method, final Intent response) {
         IRKitDBHelper helper = new IRKitDBHelper(getContext());
-        List<VirtualProfileData> requests = helper.getVirtualProfiles(serviceId, "Light");
-        if (requests.size() == 0) {
+        VirtualProfileData req = helper.getVirtualProfile(serviceId, "Light", "/light", method);
+        if (req == null && helper.getVirtualProfiles(serviceId, "Light").size() == 0) {
             MessageUtils.setNotSupportAttributeError(response);
             return true;
         }
@@ -102,16 +102,10 @@ public class IRKitLightProfile extends LightProfile {
             return true;
         }
 
-        for (VirtualProfileData req : requests) {
-            String uri = req.getUri();
-            if (req.getUri().equalsIgnoreCase(uri)
-                    && req.getMethod().equals(method)
-                    && req.getIr() != null) {
-                return ((VirtualService) getService()).sendIR(req.getIr(), response);
-            } else {
-                MessageUtils.setInvalidRequestParameterError(response, "IR is not registered for that request");
-            }
+        if (req != null && req.getIr() != null) {
+            return ((VirtualService) getService()).sendIR(req.getIr(), response);
         }
+        MessageUtils.setInvalidRequestParameterError(response, "IR is not registered for that request");
         return true;
     }
 
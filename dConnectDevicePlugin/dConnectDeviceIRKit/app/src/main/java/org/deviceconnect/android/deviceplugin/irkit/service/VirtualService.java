@@ -79,22 +79,12 @@ public class VirtualService extends DConnectService {
     public boolean sendTVRequest(final String serviceId, final String method, final String uri,
                                         final Intent response) {
         boolean send = true;
-        IRKitDBHelper helper = new IRKitDBHelper(getContext());
-        List<VirtualProfileData> requests = helper.getVirtualProfiles(serviceId, "TV");
-        if (requests.size() == 0) {
+        VirtualProfileData vData = mDBHelper.getVirtualProfile(serviceId, "TV", uri, method);
+        if (vData == null && mDBHelper.getVirtualProfiles(serviceId, "TV").size() == 0) {
             MessageUtils.setInvalidRequestParameterError(response, "Invalid ServiceId");
             return send;
         }
-        VirtualProfileData vData = null;
-        for (VirtualProfileData req : requests) {
-            if (req.getUri().equalsIgnoreCase(uri)
-                    && req.getMethod().equals(method)
-                    && req.getIr() != null) {
-                vData = req;
-                break;
-            }
-        }
-        if (vData != null) {
+        if (vData != null && vData.getIr() != null) {
             send = sendIR(vData.getIr(), response);
         } else {
             MessageUtils.setInvalidRequestParameterError(response, "IR is not registered for that request");
@@ -0,0 +1,192 @@
+package org.deviceconnect.android.deviceplugin.irkit.data;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link VirtualDeviceCache}クラスの単体テスト.
+ */
+public class VirtualDeviceCacheTest {
+
+    /** ベンチマークで使用する仮想デバイスの数. */
+    private static final int DEVICE_COUNT = 100;
+
+    /** TV の Virtual Profile の URI. */
+    private static final String[] TV_URIS = {"/tv", "/tv", "/tv/channel?control=next",
+            "/tv/channel?control=previous", "/tv/channel?tuning=1", "/tv/channel?tuning=2",
+            "/tv/channel?tuning=3", "/tv/channel?tuning=4", "/tv/channel?tuning=5",
+            "/tv/channel?tuning=6", "/tv/channel?tuning=7", "/tv/channel?tuning=8",
+            "/tv/channel?tuning=9", "/tv/channel?tuning=10", "/tv/channel?tuning=11",
+            "/tv/channel?tuning=12", "/tv/volume?control=up", "/tv/volume?control=down",
+            "/tv/broadcastwave?select=DTV", "/tv/broadcastwave?select=BS", "/tv/broadcastwave?select=CS"};
+
+    /** DB の内容を模擬する読み込み元. */
+    private CountingLoader mLoader;
+
+    @Before
+    public void setUp() {
+        mLoader = new CountingLoader();
+        for (int i = 0; i < DEVICE_COUNT; i++) {
+            String serviceId = "irkit" + (i % 4) + "." + i;
+            if (i % 5 == 0) {
+                mLoader.addDevice(serviceId, "ライト");
+                mLoader.addProfile(serviceId, "Light", "POST", "/light", "{\"light\":\"on\"}");
+                mLoader.addProfile(serviceId, "Light", "DELETE", "/light", null);
+            } else {
+                mLoader.addDevice(serviceId, "テレビ");
+                for (int n = 0; n < TV_URIS.length; n++) {
+                    String method = n == 1 ? "DELETE" : "PUT";
+                    mLoader.addProfile(serviceId, "TV", method, TV_URIS[n], "{\"tv\":" + n + "}");
+                }
+            }
+        }
+    }
+
+    /**
+     * 100台の仮想デバイスのサービス検索と赤外線の検索の時間を計測する.
+     * DB からの読み込みは1回のみであることを確認する.
+     */
+    @Test
+    public void testBenchmark() {
+        VirtualDeviceCache cache = new VirtualDeviceCache(mLoader);
+
+        // サービス検索: 全仮想デバイスと、それぞれの Virtual Profile を取得する.
+        long start = System.nanoTime();
+        List<VirtualDeviceData> devices = cache.getVirtualDevices(null);
+        int profileCount = 0;
+        for (VirtualDeviceData device : devices) {
+            profileCount += cache.getVirtualProfiles(device.getServiceId(), null).size();
+        }
+        long coldDiscovery = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        devices = cache.getVirtualDevices(null);
+        for (VirtualDeviceData device : devices) {
+            cache.getVirtualProfiles(device.getServiceId(), null);
+        }
+        long warmDiscovery = System.nanoTime() - start;
+        Assert.assertEquals(DEVICE_COUNT, devices.size());
+        Assert.assertEquals(mLoader.mProfiles.size(), profileCount);
+
+        // 赤外線の送信時の検索.
+        int lookups = 10000;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            int index = 1 + (i % DEVICE_COUNT);
+            if (index % 5 == 0) {
+                index++;
+            }
+            String serviceId = "irkit" + (index % 4) + "." + (index % DEVICE_COUNT);
+            VirtualProfileData p = cache.getVirtualProfile(serviceId, "TV", "/TV/volume?control=up", "PUT");
+            Assert.assertNotNull(serviceId, p);
+            Assert.assertEquals("{\"tv\":16}", p.getIr());
+        }
+        long lookup = System.nanoTime() - start;
+
+        System.out.println(DEVICE_COUNT + " virtual devices: discovery cold " + coldDiscovery / 1000
+                + "us, warm " + warmDiscovery / 1000 + "us, signal lookup "
+                + lookup / lookups + "ns/op");
+        Assert.assertEquals(1, mLoader.mLoadCount);
+    }
+
+    /**
+     * 書き込みがキャッシュに反映され、読み込み直さないことを確認する.
+     */
+    @Test
+    public void testWriteThrough() {
+        VirtualDeviceCache cache = new VirtualDeviceCache(mLoader);
+        Assert.assertNull(cache.getVirtualProfile("irkit0.0", "Light", "/light", "DELETE").getIr());
+
+        VirtualProfileData update = cache.getVirtualProfile("irkit0.0", "Light", "/light", "DELETE");
+        update.setIr("{\"light\":\"off\"}");
+        Assert.assertNull(cache.getVirtualProfile("irkit0.0", "Light", "/light", "DELETE").getIr());
+        cache.updateVirtualProfile(update);
+        Assert.assertEquals("{\"light\":\"off\"}",
+                cache.getVirtualProfile("irkit0.0", "Light", "/light", "DELETE").getIr());
+
+        VirtualDeviceData device = new VirtualDeviceData();
+        device.setServiceId("irkit9.new");
+        device.setDeviceName("new");
+        device.setCategoryName("ライト");
+        List<VirtualProfileData> profiles = new ArrayList<VirtualProfileData>();
+        profiles.add(createProfile(device.getServiceId(), "Light", "POST", "/light", null));
+        cache.putVirtualDevice(device, profiles);
+        Assert.assertEquals(1, cache.getVirtualDevices("irkit9.new").size());
+        Assert.assertEquals(1, cache.getVirtualDevicesByPrefix("irkit9").size());
+        Assert.assertNotNull(cache.getVirtualProfile("irkit9.new", "Light", "/light", "POST"));
+
+        cache.removeVirtualDevice("irkit0.0");
+        Assert.assertEquals(0, cache.getVirtualDevices("irkit0.0").size());
+        Assert.assertEquals(0, cache.getVirtualProfiles("irkit0.0", null).size());
+        Assert.assertEquals(DEVICE_COUNT, cache.getVirtualDevices(null).size());
+        Assert.assertEquals(1, mLoader.mLoadCount);
+    }
+
+    /**
+     * 検索条件の組み合わせが DB の検索と同じ結果になることを確認する.
+     */
+    @Test
+    public void testQuery() {
+        VirtualDeviceCache cache = new VirtualDeviceCache(mLoader);
+        Assert.assertEquals(DEVICE_COUNT / 4, cache.getVirtualDevicesByPrefix("irkit1").size());
+        Assert.assertEquals(0, cache.getVirtualProfiles("irkit0.0", "TV").size());
+        Assert.assertEquals(2, cache.getVirtualProfiles("irkit0.0", "Light").size());
+        Assert.assertEquals(TV_URIS.length, cache.getVirtualProfiles("irkit1.1", "TV").size());
+        Assert.assertEquals(mLoader.mProfiles.size(), cache.getVirtualProfiles(null, "TV").size());
+        Assert.assertNull(cache.getVirtualProfile("irkit1.1", "TV", "/tv", "POST"));
+        Assert.assertNull(cache.getVirtualProfile("irkit1.1", "TV", null, "PUT"));
+        Assert.assertNull(cache.getVirtualProfile("unknown", "TV", "/tv", "PUT"));
+    }
+
+    private static VirtualProfileData createProfile(final String serviceId, final String profile,
+                                                    final String method, final String uri,
+                                                    final String ir) {
+        VirtualProfileData p = new VirtualProfileData();
+        p.setServiceId(serviceId);
+        p.setName(method + " " + uri);
+        p.setProfile(profile);
+        p.setMethod(method);
+        p.setUri(uri);
+        p.setIr(ir);
+        return p;
+    }
+
+    /**
+     * 読み込み回数を数える読み込み元.
+     */
+    private static class CountingLoader implements VirtualDeviceCache.Loader {
+        private final List<VirtualDeviceData> mDevices = new ArrayList<VirtualDeviceData>();
+        private final List<VirtualProfileData> mProfiles = new ArrayList<VirtualProfileData>();
+        private int mLoadCount;
+
+        void addDevice(final String serviceId, final String category) {
+            VirtualDeviceData device = new VirtualDeviceData();
+            device.setServiceId(serviceId);
+            device.setDeviceName(serviceId);
+            device.setCategoryName(category);
+            mDevices.add(device);
+        }
+
+        void addProfile(final String serviceId, final String profile, final String method,
+                        final String uri, final String ir) {
+            VirtualProfileData p = createProfile(serviceId, profile, method, uri, ir);
+            p.setId(mProfiles.size() + 1);
+            mProfiles.add(p);
+        }
+
+        @Override
+        public List<VirtualDeviceData> loadVirtualDevices() {
+            mLoadCount++;
+            return new ArrayList<VirtualDeviceData>(mDevices);
+        }
+
+        @Override
+        public List<VirtualProfileData> loadVirtualProfiles() {
+            return new ArrayList<VirtualProfileData>(mProfiles);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ IRKitCommandQueueTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.irkit.network;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IRKitCommandQueue}クラスの単体テスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class IRKitCommandQueueTest {
+
+    /** テストで使用するHTTPリクエストのタイムアウト. 単位はミリ秒. */
+    private static final int TIMEOUT = 1000;
+
+    /** テストで使用するリクエストの実行間隔. 単位はミリ秒. */
+    private static final long INTERVAL = 50;
+
+    /** テストで使用する再送までの待ち時間. 単位はミリ秒. */
+    private static final long BACKOFF = 100;
+
+    private ExecutorService mExecutor;
+
+    private ScheduledExecutorService mScheduler;
+
+    private final List<StubIRKitServer> mServers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newCachedThreadPool();
+        mScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        for (StubIRKitServer server : mServers) {
+            server.shutdown();
+        }
+        mExecutor.shutdownNow();
+        mScheduler.shutdownNow();
+    }
+
+    /**
+     * 応答しないIRKitがあっても、他のIRKitへのリクエストが遅れないことを確認する.
+     */
+    @Test
+    public void testUnresponsiveDeviceDoesNotBlockOthers() throws Exception {
+        StubIRKitServer first = createServer(true);
+        StubIRKitServer second = createServer(true);
+        StubIRKitServer dead = createServer(false);
+        IRKitCommandQueue deadQueue = createQueue(dead);
+        IRKitCommandQueue firstQueue = createQueue(first);
+        IRKitCommandQueue secondQueue = createQueue(second);
+
+        Result deadResult = new Result(1);
+        deadQueue.post("/messages", "dead", deadResult);
+
+        long start = System.currentTimeMillis();
+        Result firstResult = new Result(5);
+        Result secondResult = new Result(5);
+        for (int i = 0; i < 5; i++) {
+            firstQueue.post("/messages", "first-" + i, firstResult);
+            secondQueue.post("/messages", "second-" + i, secondResult);
+        }
+        Assert.assertTrue(firstResult.await());
+        Assert.assertTrue(secondResult.await());
+        long elapsed = System.currentTimeMillis() - start;
+
+        System.out.println("5 commands x 2 devices with 1 unresponsive device: " + elapsed + "ms");
+        Assert.assertTrue("elapsed " + elapsed + "ms", elapsed < TIMEOUT);
+        Assert.assertEquals(5, firstResult.getSuccessCount());
+        Assert.assertEquals(5, secondResult.getSuccessCount());
+
+        // 応答しないIRKitには失敗が通知される.
+        Assert.assertTrue(deadResult.await());
+        Assert.assertEquals(0, deadResult.getSuccessCount());
+    }
+
+    /**
+     * 同じIRKitへのリクエストは順番に実行され、接続が再利用されることを確認する.
+     */
+    @Test
+    public void testOrderAndKeepAlive() throws Exception {
+        StubIRKitServer server = createServer(true);
+        server.setLatency(20);
+        IRKitCommandQueue queue = createQueue(server);
+
+        Result result = new Result(10);
+        for (int i = 0; i < 10; i++) {
+            if (i % 2 == 0) {
+                queue.post("/messages", "message-" + i, result);
+            } else {
+                queue.get("/messages", result);
+            }
+        }
+        Assert.assertTrue(result.await());
+        Assert.assertEquals(10, result.getSuccessCount());
+
+        List<String> requests = server.getRequests();
+        Assert.assertEquals(10, requests.size());
+        for (int i = 0; i < 10; i++) {
+            if (i % 2 == 0) {
+                Assert.assertEquals("POST /messages message-" + i, requests.get(i));
+            } else {
+                Assert.assertEquals("GET /messages ", requests.get(i));
+            }
+        }
+        Assert.assertEquals(1, server.getConnectionCount());
+    }
+
+    /**
+     * 同じIRKitへのリクエストの間隔が空けられることを確認する.
+     */
+    @Test
+    public void testInterval() throws Exception {
+        StubIRKitServer server = createServer(true);
+        IRKitCommandQueue queue = createQueue(server);
+        queue.setInterval(200);
+
+        long start = System.currentTimeMillis();
+        Result result = new Result(3);
+        for (int i = 0; i < 3; i++) {
+            queue.get("/messages", result);
+        }
+        Assert.assertTrue(result.await());
+        Assert.assertTrue(System.currentTimeMillis() - start >= 2 * 200);
+    }
+
+    /**
+     * 接続できない場合に再送し、連続して失敗した場合はサーキットブレーカーが開くことを確認する.
+     */
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        StubIRKitServer dead = createServer(false);
+        IRKitCommandQueue queue = createQueue(dead);
+        queue.setTimeout(200);
+
+        Result result = new Result(3);
+        for (int i = 0; i < 3; i++) {
+            queue.get("/messages", result);
+        }
+        Assert.assertTrue(result.await());
+        Assert.assertEquals(0, result.getSuccessCount());
+        Assert.assertTrue(queue.isOpen());
+        // 1つ目のリクエストで再送を含めて3回通信し、ブレーカーが開いた後のリクエストは通信しない.
+        Assert.assertEquals(IRKitCommandQueue.FAILURE_THRESHOLD, dead.getConnectionCount());
+
+        long start = System.currentTimeMillis();
+        Result rejected = new Result(1);
+        queue.get("/messages", rejected);
+        Assert.assertTrue(rejected.await());
+        Assert.assertTrue(System.currentTimeMillis() - start < 100);
+        Assert.assertEquals(IRKitCommandQueue.FAILURE_THRESHOLD, dead.getConnectionCount());
+    }
+
+    /**
+     * サーキットブレーカーが開いている時間が過ぎた後、応答があれば閉じることを確認する.
+     */
+    @Test
+    public void testCircuitBreakerRecovery() throws Exception {
+        StubIRKitServer server = createServer(true);
+        IRKitCommandQueue queue = createQueue(server);
+        queue.setTimeout(200);
+        queue.setOpenDuration(300);
+        server.shutdown();
+
+        Result failed = new Result(1);
+        queue.get("/messages", failed);
+        Assert.assertTrue(failed.await());
+        Assert.assertTrue(queue.isOpen());
+
+        Thread.sleep(400);
+        Assert.assertFalse(queue.isOpen());
+        Result closed = new Result(1);
+        queue.get("/messages", closed);
+        Assert.assertTrue(closed.await());
+        Assert.assertEquals(0, closed.getSuccessCount());
+        // 試行の1回の失敗で再び開く.
+        Assert.assertTrue(queue.isOpen());
+    }
+
+    /**
+     * 再送待ちのリクエストをキャンセルできることを確認する.
+     */
+    @Test
+    public void testCancelDuringBackoff() throws Exception {
+        StubIRKitServer server = createServer(true);
+        IRKitCommandQueue queue = createQueue(server);
+        queue.setInitialBackoff(5000);
+        server.shutdown();
+
+        Result result = new Result(1);
+        IRKitCommandQueue.Command command = queue.get("/messages", result);
+        Thread.sleep(200);
+        long start = System.currentTimeMillis();
+        command.cancel();
+        Assert.assertTrue(result.await());
+        Assert.assertTrue(System.currentTimeMillis() - start < 100);
+        Assert.assertEquals(0, result.getSuccessCount());
+        Assert.assertFalse(queue.isOpen());
+    }
+
+    /**
+     * キューを閉じると実行待ちのリクエストに失敗が通知されることを確認する.
+     */
+    @Test
+    public void testClose() throws Exception {
+        StubIRKitServer server = createServer(true);
+        server.setLatency(300);
+        IRKitCommandQueue queue = createQueue(server);
+
+        Result result = new Result(3);
+        for (int i = 0; i < 3; i++) {
+            queue.post("/messages", "message-" + i, result);
+        }
+        Thread.sleep(100);
+        queue.close();
+        Assert.assertTrue(result.await());
+        Assert.assertEquals(0, result.getSuccessCount());
+
+        Result closed = new Result(1);
+        queue.get("/messages", closed);
+        Assert.assertTrue(closed.await());
+        Assert.assertEquals(1, server.getRequests().size());
+    }
+
+    private StubIRKitServer createServer(final boolean responsive) throws Exception {
+        StubIRKitServer server = new StubIRKitServer(responsive);
+        mServers.add(server);
+        return server;
+    }
+
+    private IRKitCommandQueue createQueue(final StubIRKitServer server) {
+        IRKitCommandQueue queue = new IRKitCommandQueue(server.getHost(), mExecutor, mScheduler);
+        queue.setTimeout(TIMEOUT);
+        queue.setInterval(INTERVAL);
+        queue.setInitialBackoff(BACKOFF);
+        return queue;
+    }
+
+    /**
+     * 通知された結果を保持する.
+     */
+    private static class Result implements IRKitCommandQueue.ResponseCallback {
+        private final CountDownLatch mLatch;
+        private final List<String> mBodies = Collections.synchronizedList(new ArrayList<String>());
+
+        Result(final int count) {
+            mLatch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(final String body) {
+            mBodies.add(body);
+            mLatch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mLatch.await(10, TimeUnit.SECONDS);
+        }
+
+        int getSuccessCount() {
+            int count = 0;
+            synchronized (mBodies) {
+                for (String body : mBodies) {
+                    if (body != null) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ StubIRKitServer.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.irkit.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * IRKitのHTTPサーバーを模擬するクラス.
+ *
+ * <p>
+ * ループバックアドレスで待ち受け、GET /messages には保持している赤外線データを、
+ * POST /messages には空のボディを返す. HTTP/1.1のKeep-Aliveに対応し、受け付けた接続数を記録する.
+ * 応答しないように設定した場合は、接続を受け付けるだけで何も返さない.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class StubIRKitServer {
+
+    /** 待ち受けソケット. */
+    private final ServerSocket mServerSocket;
+
+    /** 応答するかどうか. */
+    private final boolean mResponsive;
+
+    /** 受け付けたソケット. */
+    private final List<Socket> mSockets = new ArrayList<>();
+
+    /** 受信したリクエスト. 形式は「メソッド パス ボディ」. */
+    private final List<String> mRequests = new ArrayList<>();
+
+    /** 応答までの遅延. 単位はミリ秒. */
+    private long mLatency;
+
+    /** GET /messages で返す赤外線データ. */
+    private String mMessage = "{\"format\":\"raw\",\"freq\":38,\"data\":[100,200]}";
+
+    /**
+     * コンストラクタ.
+     * @param responsive 応答する場合はtrue、接続を受け付けるだけで応答しない場合はfalse
+     * @throws IOException 待ち受けに失敗した場合
+     */
+    StubIRKitServer(final boolean responsive) throws IOException {
+        mResponsive = responsive;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * IRKitCommandQueueに渡すホストを取得する.
+     * @return ホストとポート番号
+     */
+    String getHost() {
+        return "127.0.0.1:" + mServerSocket.getLocalPort();
+    }
+
+    /**
+     * 応答までの遅延を設定する.
+     * @param latency 遅延. 単位はミリ秒.
+     */
+    synchronized void setLatency(final long latency) {
+        mLatency = latency;
+    }
+
+    /**
+     * 受け付けた接続の数を取得する.
+     * @return 接続数
+     */
+    synchronized int getConnectionCount() {
+        return mSockets.size();
+    }
+
+    /**
+     * 受信したリクエストを取得する.
+     * @return リクエストのリスト
+     */
+    synchronized List<String> getRequests() {
+        return new ArrayList<>(mRequests);
+    }
+
+    /**
+     * 停止する.
+     */
+    synchronized void shutdown() {
+        close(mServerSocket);
+        for (Socket socket : mSockets) {
+            close(socket);
+        }
+    }
+
+    /**
+     * 接続を受け付ける.
+     */
+    private void accept() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                synchronized (this) {
+                    mSockets.add(socket);
+                }
+                if (!mResponsive) {
+                    continue;
+                }
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 1つの接続でリクエストを順番に処理する.
+     * @param socket ソケット
+     */
+    private void serve(final Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null) {
+                    break;
+                }
+                int contentLength = 0;
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    if (line.toLowerCase(Locale.ENGLISH).startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                byte[] body = new byte[contentLength];
+                int offset = 0;
+                while (offset < contentLength) {
+                    int len = in.read(body, offset, contentLength - offset);
+                    if (len < 0) {
+                        return;
+                    }
+                    offset += len;
+                }
+
+                String[] parts = requestLine.split(" ");
+                String response;
+                long latency;
+                synchronized (this) {
+                    mRequests.add(parts[0] + " " + parts[1] + " " + new String(body, "UTF-8"));
+                    response = "GET".equals(parts[0]) ? mMessage : "";
+                    latency = mLatency;
+                }
+                if (latency > 0) {
+                    Thread.sleep(latency);
+                }
+                byte[] data = response.getBytes("UTF-8");
+                String header = "HTTP/1.1 200 OK\r\n"
+                        + "Server: IRKit/3.0.0.0.g85190b5\r\n"
+                        + "Content-Type: text/plain\r\n"
+                        + "Content-Length: " + data.length + "\r\n"
+                        + "\r\n";
+                out.write(header.getBytes("UTF-8"));
+                out.write(data);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 切断された.
+        } catch (InterruptedException e) {
+            // 停止された.
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * 1行を読み込む.
+     * @param in ストリーム
+     * @return 改行を除いた行. ストリームの終わりの場合はnull.
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static String readLine(final InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                String str = line.toString("UTF-8");
+                return str.endsWith("\r") ? str.substring(0, str.length() - 1) : str;
+            }
+            line.write(c);
+        }
+        return null;
+    }
+
+    /**
+     * ソケットを閉じる.
+     * @param socket ソケット
+     */
+    private static void close(final Closeable socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+    }
+}
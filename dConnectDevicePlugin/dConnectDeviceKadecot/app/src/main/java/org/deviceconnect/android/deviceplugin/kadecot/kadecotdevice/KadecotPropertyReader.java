@@ -0,0 +1,285 @@
+/*
+ KadecotPropertyReader
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kadecot Property Reader.
+ * <p>
+ * 同じ家電のプロパティ読み込みを1つのバッチにまとめて Kadecot サーバへ問い合わせる。
+ * 取得した値は短時間キャッシュし、プロパティの変更通知で更新する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class KadecotPropertyReader {
+
+    /**
+     * Kadecot server backend.
+     */
+    public interface Backend {
+        /**
+         * Query a property.
+         *
+         * @param deviceId Kadecot deviceId.
+         * @param propertyName Property name.
+         * @return Server result. (Processing error is null.)
+         */
+        String query(String deviceId, String propertyName);
+    }
+
+    /**
+     * Read callback.
+     */
+    public interface Callback {
+        /**
+         * Called when all properties are read.
+         *
+         * @param results Server results keyed by property name. (Processing error is null.)
+         */
+        void onResult(Map<String, String> results);
+    }
+
+    /**
+     * Cached property.
+     */
+    private static class Entry {
+        /** Server result. */
+        private String mValue;
+        /** Time of the value(ns). */
+        private long mTime;
+        /** true if the property is being read. */
+        private boolean mLoading;
+        /** Requests waiting for the property. */
+        private final List<Request> mWaiters = new ArrayList<>();
+    }
+
+    /**
+     * Read request.
+     */
+    private static class Request {
+        /** Callback. */
+        private final Callback mCallback;
+        /** Results. */
+        private final Map<String, String> mResults = new LinkedHashMap<>();
+        /** Number of properties not read yet. */
+        private int mPending;
+
+        Request(final Callback callback) {
+            mCallback = callback;
+        }
+    }
+
+    /**
+     * Batch of properties of an appliance.
+     */
+    private class Batch implements Runnable {
+        /** Kadecot deviceId. */
+        private final String mDeviceId;
+        /** Property names. */
+        private final Set<String> mNames = new LinkedHashSet<>();
+
+        Batch(final String deviceId) {
+            mDeviceId = deviceId;
+        }
+
+        @Override
+        public void run() {
+            String[] names;
+            long start;
+            synchronized (KadecotPropertyReader.this) {
+                // 実行を始めたバッチには以降のプロパティを追加しない
+                mPendingBatches.remove(mDeviceId);
+                names = mNames.toArray(new String[mNames.size()]);
+                start = System.nanoTime();
+            }
+            for (String name : names) {
+                String value;
+                try {
+                    value = mBackend.query(mDeviceId, name);
+                } catch (RuntimeException e) {
+                    value = null;
+                }
+                complete(mDeviceId, name, value, start);
+            }
+        }
+    }
+
+    /** Backend. */
+    private final Backend mBackend;
+    /** Executor. */
+    private final Executor mExecutor;
+    /** Time to live of cached values(ns). */
+    private final long mTimeToLive;
+    /** Cached properties. (Key: deviceId, propertyName) */
+    private final Map<String, Map<String, Entry>> mEntries = new HashMap<>();
+    /** Batches waiting for the executor. (Key: deviceId) */
+    private final Map<String, Batch> mPendingBatches = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param backend Backend.
+     * @param executor Executor to query Kadecot server.
+     * @param timeToLive Time to live of cached values(ms).
+     */
+    public KadecotPropertyReader(final Backend backend, final Executor executor, final long timeToLive) {
+        mBackend = backend;
+        mExecutor = executor;
+        mTimeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    }
+
+    /**
+     * Read properties.
+     * <p>
+     * キャッシュが有効なプロパティは問い合わせない。
+     * 読み込み中または実行待ちのプロパティは、その結果を共有する。
+     * </p>
+     * @param deviceId Kadecot deviceId.
+     * @param propertyNames Property names.
+     * @param callback Callback. Called on the executor thread or the caller thread.
+     */
+    public void read(final String deviceId, final String[] propertyNames, final Callback callback) {
+        Request request = new Request(callback);
+        Batch newBatch = null;
+        boolean cached;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (String name : propertyNames) {
+                if (request.mResults.containsKey(name)) {
+                    continue;
+                }
+                Entry entry = getEntry(deviceId, name);
+                if (entry.mValue != null && now - entry.mTime < mTimeToLive) {
+                    request.mResults.put(name, entry.mValue);
+                    continue;
+                }
+                request.mResults.put(name, null);
+                request.mPending++;
+                entry.mWaiters.add(request);
+                if (!entry.mLoading) {
+                    entry.mLoading = true;
+                    Batch batch = mPendingBatches.get(deviceId);
+                    if (batch == null) {
+                        batch = new Batch(deviceId);
+                        mPendingBatches.put(deviceId, batch);
+                        newBatch = batch;
+                    }
+                    batch.mNames.add(name);
+                }
+            }
+            cached = request.mPending == 0;
+        }
+
+        if (cached) {
+            callback.onResult(request.mResults);
+            return;
+        }
+        if (newBatch != null) {
+            try {
+                mExecutor.execute(newBatch);
+            } catch (RejectedExecutionException e) {
+                String[] names;
+                synchronized (this) {
+                    mPendingBatches.remove(deviceId);
+                    names = newBatch.mNames.toArray(new String[newBatch.mNames.size()]);
+                }
+                for (String name : names) {
+                    complete(deviceId, name, null, System.nanoTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * Notify a property changed.
+     *
+     * @param deviceId Kadecot deviceId.
+     * @param propertyName Property name.
+     * @param value Server result.
+     */
+    public synchronized void onPropertyChanged(final String deviceId, final String propertyName, final String value) {
+        Entry entry = getEntry(deviceId, propertyName);
+        entry.mValue = value;
+        entry.mTime = System.nanoTime();
+    }
+
+    /**
+     * Discard cached properties of an appliance.
+     *
+     * @param deviceId Kadecot deviceId.
+     */
+    public synchronized void invalidate(final String deviceId) {
+        Map<String, Entry> entries = mEntries.get(deviceId);
+        if (entries != null) {
+            for (Entry entry : entries.values()) {
+                entry.mValue = null;
+            }
+        }
+    }
+
+    /**
+     * Get cached property.
+     *
+     * @param deviceId Kadecot deviceId.
+     * @param propertyName Property name.
+     * @return Cached property.
+     */
+    private Entry getEntry(final String deviceId, final String propertyName) {
+        Map<String, Entry> entries = mEntries.get(deviceId);
+        if (entries == null) {
+            entries = new HashMap<>();
+            mEntries.put(deviceId, entries);
+        }
+        Entry entry = entries.get(propertyName);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(propertyName, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Complete reading a property.
+     *
+     * @param deviceId Kadecot deviceId.
+     * @param propertyName Property name.
+     * @param value Server result. (Processing error is null.)
+     * @param start Time when the query started(ns).
+     */
+    private void complete(final String deviceId, final String propertyName, final String value, final long start) {
+        List<Request> completed = new ArrayList<>();
+        synchronized (this) {
+            Entry entry = getEntry(deviceId, propertyName);
+            entry.mLoading = false;
+            // 問い合わせ中に変更通知を受けていた場合は通知の値を残す
+            if (value != null && (entry.mValue == null || entry.mTime <= start)) {
+                entry.mValue = value;
+                entry.mTime = System.nanoTime();
+            }
+            for (Request request : entry.mWaiters) {
+                request.mResults.put(propertyName, value);
+                if (--request.mPending == 0) {
+                    completed.add(request);
+                }
+            }
+            entry.mWaiters.clear();
+        }
+        for (Request request : completed) {
+            request.mCallback.onResult(request.mResults);
+        }
+    }
+}
@@ -9,11 +9,11 @@ package org.deviceconnect.android.deviceplugin.kadecot.profile;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 
 import org.deviceconnect.android.deviceplugin.kadecot.KadecotDeviceService;
 import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.KadecotHomeAirConditioner;
+import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.KadecotPropertyReader;
 import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.KadecotResult;
 import org.deviceconnect.android.deviceplugin.kadecot.profile.original.AirConditionerProfile;
 import org.deviceconnect.android.deviceplugin.kadecot.service.KadecotService;
@@ -26,6 +26,8 @@ import org.deviceconnect.message.DConnectMessage;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 
 import static org.deviceconnect.android.deviceplugin.kadecot.service.KadecotService.IDX_DEVICEID;
@@ -45,39 +47,30 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     /**
      * Kadecot server query task class.
      */
-    public class KadecotServerQueryTask extends AsyncTask<Intent, Void, Void> {
+    private class KadecotServerQueryTask implements Runnable {
+        /** Request. */
+        private final Intent mRequest;
+        /** Response. */
+        private final Intent mResponse;
+
+        /**
+         * Constructor.
+         *
+         * @param request Request.
+         * @param response Response.
+         */
+        KadecotServerQueryTask(final Intent request, final Intent response) {
+            mRequest = request;
+            mResponse = response;
+        }
 
         @Override
-        protected Void doInBackground(final Intent... intents) {
-            Intent request = intents[0];
-            Intent response = intents[1];
+        public void run() {
+            Intent request = mRequest;
+            Intent response = mResponse;
             String action = request.getAction();
             String attr = getAttribute(request);
-            if (action.endsWith(DConnectMessage.METHOD_GET)) {
-                if (attr == null) {
-                    getAirConditioner(request, response);
-                } else {
-                    if (isEqual(KadecotHomeAirConditionerProfile.ATTRIBUTE_POWER_SAVING, attr)) {
-                        getAirConditionerOperationPowerSaving(request, response);
-                    } else if (isEqual(KadecotHomeAirConditionerProfile.ATTRIBUTE_MODE_SETTING, attr)) {
-                        getAirConditionerOperationModeSetting(request, response);
-                    } else if (isEqual(KadecotHomeAirConditionerProfile.ATTRIBUTE_ROOM_TEMPERATURE, attr)) {
-                        getAirConditionerRoomTemperature(request, response);
-                    } else if (isEqual(KadecotHomeAirConditionerProfile.ATTRIBUTE_TEMPERATURE, attr)) {
-                        getAirConditionerTemperatureValue(request, response);
-                    } else if (isEqual(KadecotHomeAirConditionerProfile.ATTRIBUTE_AIR_FLOW, attr)) {
-                        getAirConditionerAirFlowValue(request, response);
-                    } else if (isEqual(KadecotHomeAirConditionerProfile.ATTRIBUTE_ENL_PROPERTY, attr)) {
-                        getAirConditionerECHONETLiteProperty(request, response);
-                    } else {
-                        MessageUtils.setNotSupportAttributeError(response);
-                        sendResponse(response);
-                    }
-                }
-            } else if (action.endsWith(DConnectMessage.METHOD_POST)) {
-                MessageUtils.setNotSupportAttributeError(response);
-                sendResponse(response);
-            } else if (action.endsWith(DConnectMessage.METHOD_PUT)) {
+            if (action.endsWith(DConnectMessage.METHOD_PUT)) {
                 if (attr == null) {
                     putAirConditioner(request, response);
                 } else {
@@ -103,8 +96,10 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
                     MessageUtils.setNotSupportAttributeError(response);
                     sendResponse(response);
                 }
+            } else {
+                MessageUtils.setNotSupportAttributeError(response);
+                sendResponse(response);
             }
-            return null;
         }
     }
 
@@ -128,7 +123,13 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     private final DConnectApi mGetAirConditionerApi = new GetApi() {
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
+            KadecotService.readProperty(getContext(), response, getServiceID(request),
+                    KadecotHomeAirConditioner.PROP_OPERATIONSTATUS, new KadecotService.OnPropertyReadListener() {
+                        @Override
+                        public void onRead(final KadecotResult result) {
+                            getAirConditioner(response, result);
+                        }
+                    });
             return false;
         }
     };
@@ -136,12 +137,10 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     /**
      * Get air conditioner power status.
      *
-     * @param request Request.
      * @param response Response.
+     * @param result Kadecot result.
      */
-    private void getAirConditioner(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(),response, getServiceID(request),
-                KadecotHomeAirConditioner.POWERSTATE_GET);
+    private void getAirConditioner(final Intent response, final KadecotResult result) {
         KadecotService.getPowerStatus(response, result);
         sendResponse(response);
     }
@@ -156,7 +155,13 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
+            KadecotService.readProperty(getContext(), response, getServiceID(request),
+                    KadecotHomeAirConditioner.PROP_POWERSAVINGOPERATIONSETTING, new KadecotService.OnPropertyReadListener() {
+                        @Override
+                        public void onRead(final KadecotResult result) {
+                            getAirConditionerOperationPowerSaving(response, result);
+                        }
+                    });
             return false;
         }
     };
@@ -164,12 +169,10 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     /**
      * Get air conditioner operation power saving status.
      *
-     * @param request Request.
      * @param response Response.
+     * @param result Kadecot result.
      */
-    protected void getAirConditionerOperationPowerSaving(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(),response, getServiceID(request),
-                KadecotHomeAirConditioner.POWERSAVING_GET);
+    protected void getAirConditionerOperationPowerSaving(final Intent response, final KadecotResult result) {
         if (result != null) {
             String propertyName = result.getPropertyName();
             String propertyValue = result.getPropertyValue();
@@ -201,7 +204,13 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
+            KadecotService.readProperty(getContext(), response, getServiceID(request),
+                    KadecotHomeAirConditioner.PROP_OPERATIONMODESETTING, new KadecotService.OnPropertyReadListener() {
+                        @Override
+                        public void onRead(final KadecotResult result) {
+                            getAirConditionerOperationModeSetting(response, result);
+                        }
+                    });
             return false;
         }
     };
@@ -209,12 +218,10 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     /**
      * Get air conditioner operation mode setting status.
      *
-     * @param request Request.
      * @param response Response.
+     * @param result Kadecot result.
      */
-    protected void getAirConditionerOperationModeSetting(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(),response, getServiceID(request),
-                KadecotHomeAirConditioner.OPERATIONMODE_GET);
+    protected void getAirConditionerOperationModeSetting(final Intent response, final KadecotResult result) {
         if (result != null) {
             String propertyName = result.getPropertyName();
             String propertyValue = result.getPropertyValue();
@@ -250,7 +257,13 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
+            KadecotService.readProperty(getContext(), response, getServiceID(request),
+                    KadecotHomeAirConditioner.PROP_MEASUREDVALUEOFROOMTEMPERATURE, new KadecotService.OnPropertyReadListener() {
+                        @Override
+                        public void onRead(final KadecotResult result) {
+                            getAirConditionerRoomTemperature(response, result);
+                        }
+                    });
             return false;
         }
     };
@@ -258,12 +271,10 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     /**
      * Get air conditioner room temperature.
      *
-     * @param request Request.
      * @param response Response.
+     * @param result Kadecot result.
      */
-    protected void getAirConditionerRoomTemperature(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(),response, getServiceID(request),
-                KadecotHomeAirConditioner.ROOMTEMPERATURE_GET);
+    protected void getAirConditionerRoomTemperature(final Intent response, final KadecotResult result) {
         if (result != null) {
             String propertyName = result.getPropertyName();
             String propertyValue = result.getPropertyValue();
@@ -295,7 +306,13 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
+            KadecotService.readProperty(getContext(), response, getServiceID(request),
+                    KadecotHomeAirConditioner.PROP_SETTEMPERATUREVALUE, new KadecotService.OnPropertyReadListener() {
+                        @Override
+                        public void onRead(final KadecotResult result) {
+                            getAirConditionerTemperatureValue(response, result);
+                        }
+                    });
             return false;
         }
     };
@@ -303,12 +320,10 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     /**
      * Get air conditioner temperature value.
      *
-     * @param request Request.
      * @param response Response.
+     * @param result Kadecot result.
      */
-    protected void getAirConditionerTemperatureValue(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(),response, getServiceID(request),
-                KadecotHomeAirConditioner.TEMPERATUREVALUE_GET);
+    protected void getAirConditionerTemperatureValue(final Intent response, final KadecotResult result) {
         if (result != null) {
             String propertyName = result.getPropertyName();
             String propertyValue = result.getPropertyValue();
@@ -336,7 +351,13 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
+            KadecotService.readProperty(getContext(), response, getServiceID(request),
+                    KadecotHomeAirConditioner.PROP_AIRFLOWRATESETTING, new KadecotService.OnPropertyReadListener() {
+                        @Override
+                        public void onRead(final KadecotResult result) {
+                            getAirConditionerAirFlowValue(response, result);
+                        }
+                    });
             return false;
         }
     };
@@ -344,12 +365,10 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     /**
      * Get air conditioner air flow value.
      *
-     * @param request Request.
      * @param response Response.
+     * @param result Kadecot result.
      */
-    protected void getAirConditionerAirFlowValue(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(),response, getServiceID(request),
-                KadecotHomeAirConditioner.AIRFLOW_GET);
+    protected void getAirConditionerAirFlowValue(final Intent response, final KadecotResult result) {
         if (result != null) {
             String propertyName = result.getPropertyName();
             String propertyValue = result.getPropertyValue();
@@ -392,7 +411,7 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
+            getAirConditionerECHONETLiteProperty(request, response);
             return false;
         }
     };
@@ -416,8 +435,6 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
             Pattern p = Pattern.compile(",");
             String[] epcs = p.split(strEpcs);
-            List<Bundle> dataList = new ArrayList<>();
-            Bundle resultData = new Bundle();
 
             for (int i = 0; i < epcs.length; i++) {
                 String strValue = epcs[i].trim();
@@ -436,54 +453,56 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
                 }
             }
 
-            for (String epc : epcs) {
-                String urlstr = "content://com.sonycsl.kadecot.json.provider/jsonp/v1/devices/"
-                        + element[IDX_DEVICEID] + "?procedure=get&params={\"propertyName\":\"" + epc + "\"}";
-                Cursor cursor = getContext().getContentResolver().query(Uri.parse(urlstr), null, null, null, null);
-                if (cursor != null) {
-                    cursor.moveToFirst();
-                    String result = cursor.getString(0);
-                    String propertyName = KadecotDeviceService.getPropertyName(result);
-                    String propertyValue = KadecotDeviceService.getPropertyValue(result);
-                    if (propertyName != null && propertyValue != null) {
-                        if (result.equals(NO_RESULT)) {
-                            cursor.close();
-                            MessageUtils.setNotSupportAttributeError(response,
-                                    "This device not support 'get' procedure.");
+            // 複数のEPCは1つのバッチでまとめて読み込む
+            final String[] names = epcs;
+            KadecotService.getPropertyReader(getContext()).read(element[IDX_DEVICEID], names,
+                    new KadecotPropertyReader.Callback() {
+                        @Override
+                        public void onResult(final Map<String, String> results) {
+                            List<Bundle> dataList = new ArrayList<>();
+                            Bundle resultData = new Bundle();
+                            for (String epc : names) {
+                                String result = results.get(epc);
+                                if (result == null) {
+                                    KadecotService.createInvalidKadecotResponseError(response);
+                                    sendResponse(response);
+                                    return;
+                                }
+                                String propertyName = KadecotDeviceService.getPropertyName(result);
+                                String propertyValue = KadecotDeviceService.getPropertyValue(result);
+                                if (propertyName != null && propertyValue != null) {
+                                    if (result.equals(NO_RESULT)) {
+                                        MessageUtils.setNotSupportAttributeError(response,
+                                                "This device not support 'get' procedure.");
+                                        sendResponse(response);
+                                        return;
+                                    } else {
+                                        resultData.putString(PARAM_EPC, propertyName);
+                                        resultData.putString(PARAM_VALUE, propertyValue);
+                                        dataList.add((Bundle) resultData.clone());
+                                    }
+                                } else {
+                                    KadecotService.createInvalidKadecotResponseError(response);
+                                    sendResponse(response);
+                                    return;
+                                }
+                            }
+                            setResult(response, DConnectMessage.RESULT_OK);
+                            response.putExtra(PARAM_PROPERTIES, dataList.toArray(new Bundle[dataList.size()]));
                             sendResponse(response);
-                            return;
-                        } else {
-                            resultData.putString(PARAM_EPC, propertyName);
-                            resultData.putString(PARAM_VALUE, propertyValue);
-                            dataList.add((Bundle) resultData.clone());
                         }
-                    } else {
-                        cursor.close();
-                        KadecotService.createInvalidKadecotResponseError(response);
-                        sendResponse(response);
-                        return;
-                    }
-                    cursor.close();
-                } else {
-                    KadecotService.createInvalidKadecotResponseError(response);
-                    sendResponse(response);
-                    return;
-                }
-            }
-            setResult(response, DConnectMessage.RESULT_OK);
-            response.putExtra(PARAM_PROPERTIES, dataList.toArray(new Bundle[dataList.size()]));
+                    });
         } else {
             KadecotService.createInvalidKadecotResponseError(response);
+            sendResponse(response);
         }
-        sendResponse(response);
     }
 
     private final DConnectApi mPutAirConditionerApi = new PutApi() {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
-            return false;
+            return executeQueryTask(request, response);
         }
     };
 
@@ -510,8 +529,7 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
-            return false;
+            return executeQueryTask(request, response);
         }
     };
 
@@ -571,8 +589,7 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
-            return false;
+            return executeQueryTask(request, response);
         }
     };
 
@@ -640,8 +657,7 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
-            return false;
+            return executeQueryTask(request, response);
         }
     };
 
@@ -692,8 +708,7 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
-            return false;
+            return executeQueryTask(request, response);
         }
     };
 
@@ -802,8 +817,7 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
-            return false;
+            return executeQueryTask(request, response);
         }
     };
 
@@ -870,6 +884,8 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
                     + "\",\"propertyValue\":[" + buf.toString() + "]}";
 
             Cursor cursor = getContext().getContentResolver().query(Uri.parse(urlstr), null, null, null, null);
+            // EPCは名前付きプロパティと同じ値を指すため、家電のキャッシュを破棄する
+            KadecotService.getPropertyReader(getContext()).invalidate(element[IDX_DEVICEID]);
             if (cursor != null) {
                 cursor.moveToFirst();
                 String result = cursor.getString(0);
@@ -900,8 +916,7 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
     private final DConnectApi mDeleteAirConditionerApi = new DeleteApi() {
         @Override
         public boolean onRequest(final Intent request, final Intent response) {
-            new KadecotServerQueryTask().execute(request, response);
-            return false;
+            return executeQueryTask(request, response);
         }
     };
 
@@ -920,6 +935,23 @@ public class KadecotHomeAirConditionerProfile extends AirConditionerProfile {
 
 
 
+    /**
+     * Execute Kadecot server query task.
+     *
+     * @param request Request.
+     * @param response Response.
+     * @return true if the response is sent immediately.
+     */
+    private boolean executeQueryTask(final Intent request, final Intent response) {
+        try {
+            KadecotService.getQueryExecutor().execute(new KadecotServerQueryTask(request, response));
+            return false;
+        } catch (RejectedExecutionException e) {
+            MessageUtils.setIllegalServerStateError(response, "Too many requests to the Kadecot server.");
+            return true;
+        }
+    }
+
     /**
      * Check result (Int).
      *
@@ -38,7 +38,14 @@ public class KadecotPowerProfile extends DConnectProfile {
         addApi(new GetApi() {
             @Override
             public boolean onRequest(final Intent request, final Intent response) {
-                getPowerStatus(request, response);
+                KadecotService.readProperty(getContext(), response, getServiceID(request),
+                        KadecotHomeAirConditioner.PROP_OPERATIONSTATUS, new KadecotService.OnPropertyReadListener() {
+                            @Override
+                            public void onRead(final KadecotResult result) {
+                                KadecotService.getPowerStatus(response, result);
+                                sendResponse(response);
+                            }
+                        });
                 return false;
             }
         });
@@ -71,19 +78,6 @@ public class KadecotPowerProfile extends DConnectProfile {
         KadecotService.powerOn(response, result);
         sendResponse(response);
     }
-    /**
-     * Get power status.
-     *
-     * @param request Request.
-     * @param response Response.
-     */
-    private void getPowerStatus(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(),response, getServiceID(request),
-                KadecotHomeAirConditioner.POWERSTATE_GET);
-        KadecotService.getPowerStatus(response, result);
-        sendResponse(response);
-    }
-
     /**
      * Power Off.
      *
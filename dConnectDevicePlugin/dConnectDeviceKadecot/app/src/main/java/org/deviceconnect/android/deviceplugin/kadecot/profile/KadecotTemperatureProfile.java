@@ -64,7 +64,14 @@ public class KadecotTemperatureProfile extends DConnectProfile {
         addApi(new GetApi() {
             @Override
             public boolean onRequest(final Intent request, final Intent response) {
-                getTemperature(request, response);
+                KadecotService.readProperty(getContext(), response, getServiceID(request),
+                        KadecotHomeAirConditioner.PROP_SETTEMPERATUREVALUE,
+                        new KadecotService.OnPropertyReadListener() {
+                            @Override
+                            public void onRead(final KadecotResult result) {
+                                getTemperature(request, response, result);
+                            }
+                        });
                 return false;
             }
         });
@@ -91,10 +98,9 @@ public class KadecotTemperatureProfile extends DConnectProfile {
      *
      * @param request Request.
      * @param response Response.
+     * @param result Kadecot result.
      */
-    private void getTemperature(final Intent request, final Intent response) {
-        KadecotResult result = KadecotService.requestKadecotServer(getContext(), response, getServiceID(request),
-                KadecotHomeAirConditioner.TEMPERATUREVALUE_GET);
+    private void getTemperature(final Intent request, final Intent response, final KadecotResult result) {
         if (result != null) {
             String propertyName = result.getPropertyName();
             String propertyValue = result.getPropertyValue();
@@ -7,6 +7,7 @@
 package org.deviceconnect.android.deviceplugin.kadecot.service;
 
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
@@ -16,6 +17,7 @@ import org.deviceconnect.android.deviceplugin.kadecot.KadecotDeviceService;
 import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.ENLObject;
 import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.KadecotDevice;
 import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.KadecotHomeAirConditioner;
+import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.KadecotPropertyReader;
 import org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice.KadecotResult;
 import org.deviceconnect.android.deviceplugin.kadecot.profile.KadecotEchonetliteProfile;
 import org.deviceconnect.android.deviceplugin.kadecot.profile.KadecotHomeAirConditionerProfile;
@@ -29,6 +31,14 @@ import org.deviceconnect.android.profile.LightProfile;
 import org.deviceconnect.android.service.DConnectService;
 import org.deviceconnect.message.DConnectMessage;
 
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.deviceconnect.android.profile.DConnectProfile.setResult;
 
 public class KadecotService extends DConnectService {
@@ -48,6 +58,42 @@ public class KadecotService extends DConnectService {
     /** Index of profile name. */
     public static final int IDX_PROFILENAME = 2;
 
+    /** Number of threads to query Kadecot server. */
+    private static final int QUERY_THREAD_COUNT = 2;
+
+    /** Max number of queries waiting for a thread. */
+    private static final int QUERY_QUEUE_SIZE = 64;
+
+    /** Time to live of cached properties(ms). */
+    private static final long PROPERTY_CACHE_TTL = 2000;
+
+    /** Kadecot server base URI. */
+    private static final String KADECOT_BASE_URI = "content://com.sonycsl.kadecot.json.provider/jsonp/v1/devices/";
+
+    /**
+     * Executor to query Kadecot server.
+     * <p>
+     * AsyncTaskのシリアルExecutorはプロセス全体で共有されるため、Kadecot専用のスレッドで問い合わせる。
+     * </p>
+     */
+    private static final ThreadPoolExecutor QUERY_EXECUTOR = new ThreadPoolExecutor(
+            QUERY_THREAD_COUNT, QUERY_THREAD_COUNT, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(QUERY_QUEUE_SIZE), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(r, "Kadecot-Query-" + mCount.incrementAndGet());
+                }
+            });
+
+    static {
+        QUERY_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /** Property reader. */
+    private static KadecotPropertyReader sPropertyReader;
+
 
     private final KadecotDevice mDevice;
 
@@ -79,6 +125,137 @@ public class KadecotService extends DConnectService {
         return profileName.equals(element[IDX_PROFILENAME]);
     }
 
+    /**
+     * Get executor to query Kadecot server.
+     *
+     * @return Executor.
+     */
+    public static Executor getQueryExecutor() {
+        return QUERY_EXECUTOR;
+    }
+
+    /**
+     * Get property reader shared by all Kadecot services.
+     *
+     * @param context Context.
+     * @return Property reader.
+     */
+    public static synchronized KadecotPropertyReader getPropertyReader(final Context context) {
+        if (sPropertyReader == null) {
+            final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+            sPropertyReader = new KadecotPropertyReader(new KadecotPropertyReader.Backend() {
+                @Override
+                public String query(final String deviceId, final String propertyName) {
+                    String urlstr = KADECOT_BASE_URI + deviceId
+                            + "?procedure=get&params={\"propertyName\":\"" + propertyName + "\"}";
+                    Cursor cursor = resolver.query(Uri.parse(urlstr), null, null, null, null);
+                    if (cursor == null) {
+                        return null;
+                    }
+                    try {
+                        cursor.moveToFirst();
+                        return cursor.getString(0);
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            }, QUERY_EXECUTOR, PROPERTY_CACHE_TTL);
+        }
+        return sPropertyReader;
+    }
+
+    /**
+     * Create Kadecot result from server result.
+     *
+     * @param strResult Server result.
+     * @return Kadecot result. (Processing error is null.)
+     */
+    public static KadecotResult createKadecotResult(final String strResult) {
+        if (strResult == null) {
+            return null;
+        }
+        KadecotResult result = new KadecotResult();
+        result.setServerResult(strResult);
+        result.setPropertyName(KadecotDeviceService.getPropertyName(strResult));
+        result.setPropertyValue(KadecotDeviceService.getPropertyValue(strResult));
+        return result;
+    }
+
+    /**
+     * Get Kadecot deviceId of air conditioner.
+     *
+     * @param serviceId Service ID.
+     * @return Kadecot deviceId. (Not air conditioner is null.)
+     */
+    public static String getAirConditionerDeviceId(final String serviceId) {
+        String[] element = KadecotDeviceService.getElementFromServiceId(serviceId);
+        if (element[IDX_PREFIX].equals(PREFIX_KADECOT) && element.length > IDX_PROFILENAME
+                && element[IDX_DEVICEID] != null
+                && element[IDX_PROFILENAME].equals(AirConditionerProfileConstants.PROFILE_NAME)) {
+            return element[IDX_DEVICEID];
+        }
+        return null;
+    }
+
+    /**
+     * Listener of reading a property.
+     */
+    public interface OnPropertyReadListener {
+        /**
+         * Called when a property is read.
+         *
+         * @param result Kadecot result. (Processing error is null.)
+         */
+        void onRead(KadecotResult result);
+    }
+
+    /**
+     * Read a property of air conditioner.
+     * <p>
+     * 処理エラーの場合は response にエラーを設定して、null を通知する。
+     * </p>
+     * @param context Context.
+     * @param response Response.
+     * @param serviceId Service ID.
+     * @param propertyName Property name.
+     * @param listener Listener. Called on the thread to query Kadecot server or the caller thread.
+     */
+    public static void readProperty(final Context context, final Intent response, final String serviceId,
+                                    final String propertyName, final OnPropertyReadListener listener) {
+        String deviceId = getAirConditionerDeviceId(serviceId);
+        if (deviceId == null) {
+            createInvalidKadecotResponseError(response);
+            listener.onRead(null);
+            return;
+        }
+        getPropertyReader(context).read(deviceId, new String[] {propertyName},
+                new KadecotPropertyReader.Callback() {
+                    @Override
+                    public void onResult(final Map<String, String> results) {
+                        KadecotResult result = createKadecotResult(results.get(propertyName));
+                        if (result == null) {
+                            createInvalidKadecotResponseError(response);
+                        }
+                        listener.onRead(result);
+                    }
+                });
+    }
+
+    /**
+     * Update cached property with the result of 'set' procedure.
+     *
+     * @param context Context.
+     * @param deviceId Kadecot deviceId.
+     * @param result Kadecot result.
+     */
+    private static void updateProperty(final Context context, final String deviceId, final KadecotResult result) {
+        if (result.getPropertyName() != null && result.getPropertyValue() != null
+                && !NO_RESULT.equals(result.getServerResult())) {
+            getPropertyReader(context).onPropertyChanged(deviceId, result.getPropertyName(),
+                    result.getServerResult());
+        }
+    }
+
     /**
      * Creates an error of "unknown error" for Kadecot server response.
      *
@@ -107,12 +284,9 @@ public class KadecotService extends DConnectService {
             Cursor cursor = context.getContentResolver().query(Uri.parse(urlstr), null, null, null, null);
             if (cursor != null) {
                 cursor.moveToFirst();
-                KadecotResult result = new KadecotResult();
-                String strResult = cursor.getString(0);
-                result.setServerResult(strResult);
-                result.setPropertyName(KadecotDeviceService.getPropertyName(strResult));
-                result.setPropertyValue(KadecotDeviceService.getPropertyValue(strResult));
+                KadecotResult result = createKadecotResult(cursor.getString(0));
                 cursor.close();
+                updateProperty(context, element[IDX_DEVICEID], result);
                 return result;
             } else {
                 createInvalidKadecotResponseError(response);
@@ -142,12 +316,9 @@ public class KadecotService extends DConnectService {
             Cursor cursor = context.getContentResolver().query(Uri.parse(urlstr), null, null, null, null);
             if (cursor != null) {
                 cursor.moveToFirst();
-                KadecotResult result = new KadecotResult();
-                String strResult = cursor.getString(0);
-                result.setServerResult(strResult);
-                result.setPropertyName(KadecotDeviceService.getPropertyName(strResult));
-                result.setPropertyValue(KadecotDeviceService.getPropertyValue(strResult));
+                KadecotResult result = createKadecotResult(cursor.getString(0));
                 cursor.close();
+                updateProperty(context, element[IDX_DEVICEID], result);
                 return result;
             } else {
                 createInvalidKadecotResponseError(response);
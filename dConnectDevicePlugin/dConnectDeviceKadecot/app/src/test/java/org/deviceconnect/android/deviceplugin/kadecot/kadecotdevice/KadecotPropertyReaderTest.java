@@ -0,0 +1,244 @@
+/*
+ KadecotPropertyReaderTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.kadecot.kadecotdevice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of KadecotPropertyReader with a fake Kadecot content provider.
+ * @author NTT DOCOMO, INC.
+ */
+public class KadecotPropertyReaderTest {
+    /** Kadecot deviceId of the air conditioner. */
+    private static final String DEVICE_ID = "1";
+    /** Properties shown on a dashboard. */
+    private static final String[] DASHBOARD = {
+            KadecotHomeAirConditioner.PROP_OPERATIONSTATUS,
+            KadecotHomeAirConditioner.PROP_POWERSAVINGOPERATIONSETTING,
+            KadecotHomeAirConditioner.PROP_OPERATIONMODESETTING,
+            KadecotHomeAirConditioner.PROP_MEASUREDVALUEOFROOMTEMPERATURE,
+            KadecotHomeAirConditioner.PROP_SETTEMPERATUREVALUE,
+            KadecotHomeAirConditioner.PROP_AIRFLOWRATESETTING
+    };
+    /** Time of a query to Kadecot(ms). */
+    private static final long QUERY_TIME = 20;
+
+    /**
+     * Fake Kadecot content provider.
+     */
+    private static class FakeKadecotProvider implements KadecotPropertyReader.Backend {
+        /** Number of queries. */
+        final AtomicInteger mQueryCount = new AtomicInteger();
+        /** Queried property names. */
+        final List<String> mQueries = Collections.synchronizedList(new ArrayList<String>());
+        /** Property values. */
+        final Map<String, Integer> mValues = new ConcurrentHashMap<>();
+        /** true if the provider returns null cursor. */
+        volatile boolean mFail;
+
+        @Override
+        public String query(final String deviceId, final String propertyName) {
+            mQueryCount.incrementAndGet();
+            mQueries.add(propertyName);
+            try {
+                Thread.sleep(QUERY_TIME);
+            } catch (InterruptedException e) {
+                return null;
+            }
+            if (mFail) {
+                return null;
+            }
+            Integer value = mValues.get(propertyName);
+            return "{\"propertyName\":\"" + propertyName + "\",\"propertyValue\":[" + (value == null ? 48 : value) + "]}";
+        }
+    }
+
+    /**
+     * Waits for the results of a read.
+     */
+    private static class ResultCallback implements KadecotPropertyReader.Callback {
+        final CountDownLatch mDone = new CountDownLatch(1);
+        volatile Map<String, String> mResults;
+
+        @Override
+        public void onResult(final Map<String, String> results) {
+            mResults = results;
+            mDone.countDown();
+        }
+
+        Map<String, String> await() throws InterruptedException {
+            assertTrue(mDone.await(2, TimeUnit.SECONDS));
+            return mResults;
+        }
+    }
+
+    /** Fake provider. */
+    private FakeKadecotProvider mProvider;
+    /** Executor. */
+    private ThreadPoolExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        mProvider = new FakeKadecotProvider();
+        mExecutor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(64));
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void dashboardBurstIsMergedAndCached() throws Exception {
+        KadecotPropertyReader reader = new KadecotPropertyReader(mProvider, mExecutor, 2000);
+        int clients = 8;
+
+        // 各クライアントがプロパティごとに GET する
+        List<ResultCallback> callbacks = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            for (String name : DASHBOARD) {
+                ResultCallback callback = new ResultCallback();
+                callbacks.add(callback);
+                reader.read(DEVICE_ID, new String[] {name}, callback);
+            }
+        }
+        for (ResultCallback callback : callbacks) {
+            assertEquals(1, callback.await().size());
+            assertTrue(callback.mResults.values().iterator().next().contains("propertyValue"));
+        }
+        double elapsed = (System.nanoTime() - start) / 1e6;
+        System.out.println(String.format("KadecotPropertyReader: %d reads, %d Kadecot queries, %.0fms "
+                        + "(%d queries, %dms without merging)",
+                callbacks.size(), mProvider.mQueryCount.get(), elapsed,
+                callbacks.size(), callbacks.size() * QUERY_TIME));
+        assertEquals(DASHBOARD.length, mProvider.mQueryCount.get());
+        assertEquals(DASHBOARD.length, new HashSet<>(mProvider.mQueries).size());
+
+        // キャッシュが有効な間は問い合わせない
+        ResultCallback again = new ResultCallback();
+        reader.read(DEVICE_ID, DASHBOARD, again);
+        assertEquals(DASHBOARD.length, again.await().size());
+        assertEquals(DASHBOARD.length, mProvider.mQueryCount.get());
+    }
+
+    @Test
+    public void multiplePropertiesAreReadInOneBatch() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        KadecotPropertyReader reader = new KadecotPropertyReader(mProvider, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                tasks.add(command);
+            }
+        }, 2000);
+
+        ResultCallback first = new ResultCallback();
+        ResultCallback second = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {"0x80", "0xb0"}, first);
+        reader.read(DEVICE_ID, new String[] {"0xb0", "0xb3", "0xb3"}, second);
+        reader.read("2", new String[] {"0x80"}, new ResultCallback());
+
+        // 家電ごとに1つのバッチ
+        assertEquals(2, tasks.size());
+        tasks.get(0).run();
+        assertEquals(2, first.await().size());
+        assertEquals(2, second.await().size());
+        assertEquals(3, mProvider.mQueryCount.get());
+    }
+
+    @Test
+    public void notificationUpdatesCache() throws Exception {
+        KadecotPropertyReader reader = new KadecotPropertyReader(mProvider, mExecutor, 2000);
+        String name = KadecotHomeAirConditioner.PROP_SETTEMPERATUREVALUE;
+        ResultCallback callback = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {name}, callback);
+        assertTrue(callback.await().get(name).contains("[48]"));
+
+        String notified = "{\"propertyName\":\"" + name + "\",\"propertyValue\":[26]}";
+        reader.onPropertyChanged(DEVICE_ID, name, notified);
+        callback = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {name}, callback);
+        assertEquals(notified, callback.await().get(name));
+        assertEquals(1, mProvider.mQueryCount.get());
+
+        reader.invalidate(DEVICE_ID);
+        mProvider.mValues.put(name, 27);
+        callback = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {name}, callback);
+        assertTrue(callback.await().get(name).contains("[27]"));
+        assertEquals(2, mProvider.mQueryCount.get());
+    }
+
+    @Test
+    public void expiredValueIsQueriedAgain() throws Exception {
+        KadecotPropertyReader reader = new KadecotPropertyReader(mProvider, mExecutor, 50);
+        String name = KadecotHomeAirConditioner.PROP_OPERATIONSTATUS;
+        ResultCallback callback = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {name}, callback);
+        callback.await();
+
+        Thread.sleep(100);
+        callback = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {name}, callback);
+        callback.await();
+        assertEquals(2, mProvider.mQueryCount.get());
+    }
+
+    @Test
+    public void errorIsNotCached() throws Exception {
+        KadecotPropertyReader reader = new KadecotPropertyReader(mProvider, mExecutor, 2000);
+        String name = KadecotHomeAirConditioner.PROP_OPERATIONSTATUS;
+        mProvider.mFail = true;
+        ResultCallback callback = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {name}, callback);
+        assertNull(callback.await().get(name));
+
+        mProvider.mFail = false;
+        callback = new ResultCallback();
+        reader.read(DEVICE_ID, new String[] {name}, callback);
+        assertTrue(callback.await().get(name).contains("[48]"));
+        assertEquals(2, mProvider.mQueryCount.get());
+    }
+
+    @Test
+    public void rejectedBatchFailsWaiters() throws Exception {
+        KadecotPropertyReader reader = new KadecotPropertyReader(mProvider, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 2000);
+        ResultCallback callback = new ResultCallback();
+        reader.read(DEVICE_ID, DASHBOARD, callback);
+        Map<String, String> results = callback.await();
+        assertEquals(DASHBOARD.length, results.size());
+        for (String value : results.values()) {
+            assertNull(value);
+        }
+        assertEquals(0, mProvider.mQueryCount.get());
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ PebbleBinaryTransfer.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.pebble.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Pebbleへバイナリデータを分割して送信するクラス.
+ * <p>
+ * 最初にデータサイズを送信し、ACKを受信してから分割データを送信する。
+ * 分割データはACKを待たずにウィンドウサイズまで続けて送信し、トランザクションIDで管理する。
+ * NACKを受信、またはタイムアウトした分割データのみを再送する。
+ * </p>
+ * <p>
+ * ウィンドウサイズはACKを受信するごとに1ずつ増やし、NACKを受信すると半分にする。
+ * NACKを受信した後は、ウィンドウサイズ分のACKを受信するごとに1ずつ増やし、
+ * NACKを受信したウィンドウサイズには {@value #PROBE_INTERVAL} 回続けてACKを受信するまで戻さない。
+ * Pebble側の受信バッファが空くまでの時間に合わせて、送信数が調整される。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class PebbleBinaryTransfer {
+
+    /**
+     * Pebbleへメッセージを送信するインターフェース.
+     */
+    public interface Transport {
+        /**
+         * データサイズを送信する.
+         *
+         * @param transactionId トランザクションID
+         * @param length データサイズ
+         */
+        void sendLength(int transactionId, int length);
+
+        /**
+         * 分割データを送信する.
+         *
+         * @param transactionId トランザクションID
+         * @param index 分割データのインデックス
+         * @param body 分割データ
+         */
+        void sendChunk(int transactionId, int index, byte[] body);
+
+        /**
+         * Pebble側のアプリを起動する.
+         */
+        void startApp();
+    }
+
+    /** データサイズのメッセージを示すインデックス. */
+    private static final int LENGTH_INDEX = -1;
+
+    /**
+     * 使用するトランザクションIDの数.
+     * <p>
+     * 255 はコマンド送信で使用しているので、0〜254 を使用する。
+     * </p>
+     */
+    private static final int TRANSACTION_ID_COUNT = 255;
+
+    /** 1つの分割データの最大再送回数. */
+    private static final int RETRY_MAX = 5;
+
+    /** データサイズ送信の最大リトライ回数. */
+    private static final int LENGTH_RETRY_MAX = 3;
+
+    /** Pebble側のアプリの起動を待つ時間(ms). */
+    private static final long START_APP_WAIT = 2000;
+
+    /** NACKを受信してから送信を再開するまでの時間(ms). */
+    private static final long RETRY_INTERVAL = 100;
+
+    /** NACKを受信したウィンドウサイズを再び試すまでに受信するACKの数. */
+    private static final int PROBE_INTERVAL = 16;
+
+    /**
+     * 送信中のメッセージ.
+     */
+    private static class Slot {
+        /** 分割データのインデックス. */
+        final int mIndex;
+        /** タイムアウト時刻(ms). */
+        final long mDeadline;
+
+        Slot(final int index, final long deadline) {
+            mIndex = index;
+            mDeadline = deadline;
+        }
+    }
+
+    /** メッセージの送信先. */
+    private final Transport mTransport;
+
+    /** 分割データのサイズ. */
+    private final int mChunkSize;
+
+    /** 最大ウィンドウサイズ. */
+    private final int mMaxWindow;
+
+    /** ACKのタイムアウト時間(ms). */
+    private final long mTimeout;
+
+    /** ロックオブジェクト. */
+    private final Object mLock = new Object();
+
+    /** 送信中のメッセージ. キーはトランザクションID. */
+    private final Map<Integer, Slot> mInFlight = new HashMap<>();
+
+    /** 再送する分割データのインデックス. */
+    private final LinkedList<Integer> mRetransmit = new LinkedList<>();
+
+    /** 分割データごとの再送回数. */
+    private int[] mRetries = new int[0];
+
+    /** ACKを受信した分割データ. */
+    private boolean[] mAcked = new boolean[0];
+
+    /** ACKを受信した分割データ数. */
+    private int mAckedCount;
+
+    /** データサイズのACKを受信した場合はtrue. */
+    private boolean mLengthAcked;
+
+    /** データサイズのNACKを受信、またはタイムアウトした場合はtrue. */
+    private boolean mLengthFailed;
+
+    /** 送信に失敗した場合はtrue. */
+    private boolean mFailed;
+
+    /** 現在のウィンドウサイズ. */
+    private int mWindow = 1;
+
+    /** ウィンドウサイズを1ずつ増やす上限. */
+    private int mWindowThreshold;
+
+    /** ウィンドウサイズを増やすまでに受信したACKの数. */
+    private int mWindowCredit;
+
+    /** NACKを受信したウィンドウサイズ未満の上限. */
+    private int mWindowLimit;
+
+    /** 最後のNACKから続けて受信したACKの数. */
+    private int mAcksSinceNack;
+
+    /** 送信を再開する時刻(ms). */
+    private long mResumeTime;
+
+    /** 次に使用するトランザクションID. */
+    private int mNextTransactionId;
+
+    /** 再送した分割データの総数. */
+    private int mRetransmitCount;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param transport メッセージの送信先
+     * @param chunkSize 分割データのサイズ. Pebble側のアプリの受信バッファに収まるサイズを指定すること
+     * @param maxWindow 最大ウィンドウサイズ
+     * @param timeout ACKのタイムアウト時間(ms)
+     */
+    public PebbleBinaryTransfer(final Transport transport, final int chunkSize,
+                                final int maxWindow, final long timeout) {
+        if (chunkSize <= 0 || maxWindow <= 0 || maxWindow >= TRANSACTION_ID_COUNT) {
+            throw new IllegalArgumentException("chunkSize or maxWindow is invalid.");
+        }
+        mTransport = transport;
+        mChunkSize = chunkSize;
+        mMaxWindow = maxWindow;
+        mTimeout = timeout;
+    }
+
+    /**
+     * データを送信する.
+     * <p>
+     * 送信が完了するまで呼び出し元のスレッドをブロックする。
+     * </p>
+     * @param data 送信するデータ
+     * @return 送信に成功した場合はtrue、それ以外はfalse
+     */
+    public boolean send(final byte[] data) {
+        int count = (data.length + mChunkSize - 1) / mChunkSize;
+        synchronized (mLock) {
+            mInFlight.clear();
+            mRetransmit.clear();
+            mRetries = new int[count];
+            mAcked = new boolean[count];
+            mAckedCount = 0;
+            mFailed = false;
+            mWindow = 1;
+            mWindowThreshold = mMaxWindow;
+            mWindowCredit = 0;
+            mWindowLimit = mMaxWindow;
+            mAcksSinceNack = 0;
+            mResumeTime = 0;
+            mRetransmitCount = 0;
+        }
+        if (!sendLength(data.length)) {
+            return false;
+        }
+        try {
+            return sendChunks(data, count);
+        } catch (InterruptedException e) {
+            return false;
+        } finally {
+            synchronized (mLock) {
+                mInFlight.clear();
+            }
+        }
+    }
+
+    /**
+     * Pebbleから受信したACKを通知する.
+     *
+     * @param transactionId トランザクションID
+     * @return このクラスが送信したメッセージのACKの場合はtrue、それ以外はfalse
+     */
+    public boolean onAck(final int transactionId) {
+        synchronized (mLock) {
+            Slot slot = mInFlight.remove(transactionId);
+            if (slot == null) {
+                return false;
+            }
+            if (slot.mIndex == LENGTH_INDEX) {
+                mLengthAcked = true;
+            } else if (!mAcked[slot.mIndex]) {
+                mAcked[slot.mIndex] = true;
+                mAckedCount++;
+                growWindow();
+            }
+            mLock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Pebbleから受信したNACKを通知する.
+     *
+     * @param transactionId トランザクションID
+     * @return このクラスが送信したメッセージのNACKの場合はtrue、それ以外はfalse
+     */
+    public boolean onNack(final int transactionId) {
+        synchronized (mLock) {
+            Slot slot = mInFlight.remove(transactionId);
+            if (slot == null) {
+                return false;
+            }
+            if (slot.mIndex == LENGTH_INDEX) {
+                mLengthFailed = true;
+            } else {
+                retransmit(slot.mIndex);
+                mResumeTime = System.currentTimeMillis() + RETRY_INTERVAL;
+            }
+            mLock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * 最後の送信で再送した分割データの総数を取得する.
+     *
+     * @return 再送した分割データの総数
+     */
+    public int getRetransmitCount() {
+        synchronized (mLock) {
+            return mRetransmitCount;
+        }
+    }
+
+    /**
+     * データサイズをPebbleに通知する.
+     * <p>
+     * 失敗した場合には、Pebble側のアプリを起動してからリトライする。
+     * </p>
+     * @param length データサイズ
+     * @return 通知に成功した場合はtrue、それ以外はfalse
+     */
+    private boolean sendLength(final int length) {
+        for (int retry = 0; retry < LENGTH_RETRY_MAX; retry++) {
+            int transactionId;
+            synchronized (mLock) {
+                mLengthAcked = false;
+                mLengthFailed = false;
+                transactionId = nextTransactionId();
+                mInFlight.put(transactionId, new Slot(LENGTH_INDEX, System.currentTimeMillis() + mTimeout));
+            }
+            mTransport.sendLength(transactionId, length);
+            try {
+                synchronized (mLock) {
+                    long remain = mTimeout;
+                    long deadline = System.currentTimeMillis() + mTimeout;
+                    while (!mLengthAcked && !mLengthFailed && remain > 0) {
+                        mLock.wait(remain);
+                        remain = deadline - System.currentTimeMillis();
+                    }
+                    mInFlight.remove(transactionId);
+                    if (mLengthAcked) {
+                        return true;
+                    }
+                }
+                // nackが返ってきたみたいなので、アプリ起動してからリトライを試みる。
+                mTransport.startApp();
+                Thread.sleep(START_APP_WAIT);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 分割データを送信する.
+     *
+     * @param data 送信するデータ
+     * @param count 分割データ数
+     * @return 送信に成功した場合はtrue、それ以外はfalse
+     * @throws InterruptedException 送信が中断された場合
+     */
+    private boolean sendChunks(final byte[] data, final int count) throws InterruptedException {
+        int next = 0;
+        while (true) {
+            int[] transactionIds = new int[mMaxWindow];
+            int[] indexes = new int[mMaxWindow];
+            int sendCount = 0;
+            synchronized (mLock) {
+                long now = System.currentTimeMillis();
+                expire(now);
+                if (mFailed) {
+                    return false;
+                }
+                if (mAckedCount == count) {
+                    return true;
+                }
+                if (now >= mResumeTime) {
+                    while (mInFlight.size() < mWindow) {
+                        Integer index = mRetransmit.poll();
+                        if (index == null) {
+                            if (next >= count) {
+                                break;
+                            }
+                            index = next++;
+                        }
+                        int transactionId = nextTransactionId();
+                        mInFlight.put(transactionId, new Slot(index, now + mTimeout));
+                        transactionIds[sendCount] = transactionId;
+                        indexes[sendCount] = index;
+                        sendCount++;
+                    }
+                }
+                if (sendCount == 0) {
+                    mLock.wait(Math.max(1, nextWakeUpTime(now) - now));
+                }
+            }
+            for (int i = 0; i < sendCount; i++) {
+                mTransport.sendChunk(transactionIds[i], indexes[i], getChunk(data, indexes[i]));
+            }
+        }
+    }
+
+    /**
+     * タイムアウトした分割データを再送に回す.
+     *
+     * @param now 現在時刻(ms)
+     */
+    private void expire(final long now) {
+        Iterator<Slot> it = mInFlight.values().iterator();
+        while (it.hasNext()) {
+            Slot slot = it.next();
+            if (slot.mIndex != LENGTH_INDEX && slot.mDeadline <= now) {
+                it.remove();
+                retransmit(slot.mIndex);
+            }
+        }
+    }
+
+    /**
+     * 分割データを再送キューの先頭に追加し、ウィンドウサイズを半分にする.
+     *
+     * @param index 分割データのインデックス
+     */
+    private void retransmit(final int index) {
+        if (mAcked[index]) {
+            return;
+        }
+        mRetries[index]++;
+        mRetransmitCount++;
+        if (mRetries[index] > RETRY_MAX) {
+            mFailed = true;
+            return;
+        }
+        mRetransmit.addFirst(index);
+        mWindowLimit = Math.max(1, mWindow - 1);
+        mAcksSinceNack = 0;
+        mWindowThreshold = Math.max(1, mWindow / 2);
+        mWindow = mWindowThreshold;
+        mWindowCredit = 0;
+    }
+
+    /**
+     * ACKの受信に応じてウィンドウサイズを増やす.
+     */
+    private void growWindow() {
+        if (++mAcksSinceNack >= PROBE_INTERVAL) {
+            mWindowLimit = mMaxWindow;
+        }
+        if (mWindow >= mWindowLimit) {
+            return;
+        }
+        if (mWindow < mWindowThreshold) {
+            mWindow++;
+        } else if (++mWindowCredit >= mWindow) {
+            mWindow++;
+            mWindowCredit = 0;
+        }
+    }
+
+    /**
+     * 次に送信処理を行う時刻を取得する.
+     *
+     * @param now 現在時刻(ms)
+     * @return 次に送信処理を行う時刻(ms)
+     */
+    private long nextWakeUpTime(final long now) {
+        long time = now + mTimeout;
+        for (Slot slot : mInFlight.values()) {
+            time = Math.min(time, slot.mDeadline);
+        }
+        if (mResumeTime > now) {
+            time = Math.min(time, mResumeTime);
+        }
+        return time;
+    }
+
+    /**
+     * 送信中のメッセージと重複しないトランザクションIDを取得する.
+     *
+     * @return トランザクションID
+     */
+    private int nextTransactionId() {
+        int transactionId;
+        do {
+            transactionId = mNextTransactionId;
+            mNextTransactionId = (mNextTransactionId + 1) % TRANSACTION_ID_COUNT;
+        } while (mInFlight.containsKey(transactionId));
+        return transactionId;
+    }
+
+    /**
+     * 分割データを取得する.
+     * <p>
+     * Pebble側のアプリは分割データのサイズ単位で受信するので、最後の分割データは0で埋める。
+     * </p>
+     * @param data 送信するデータ
+     * @param index 分割データのインデックス
+     * @return 分割データ
+     */
+    private byte[] getChunk(final byte[] data, final int index) {
+        return Arrays.copyOfRange(data, index * mChunkSize, (index + 1) * mChunkSize);
+    }
+}
@@ -6,10 +6,9 @@
  */
 package org.deviceconnect.android.deviceplugin.pebble.util;
 
-import java.util.Random;
+import java.util.Arrays;
 
 import android.graphics.Bitmap;
-import android.graphics.Color;
 
 /**
  * 画像を変換するためのユーティリティクラス.
@@ -33,41 +32,59 @@ public final class PebbleBitmapUtil {
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
         int[] pixels = new int[width * height];
-        final boolean byThreshold = false;
         bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        Random random = new Random();
-        final int randomNumberMax = 255;
+        return convertImageDithering(pixels, width, height);
+    }
+
+    /**
+     * 指定されたピクセルを誤差拡散法で2値化して、PebbleのGBitmap構造に変換する.
+     * <p>
+     * Pebble側のアプリは1bitのGBitmapを表示するので、スマートフォン側で
+     * Floyd-Steinbergの誤差拡散を行ってから1ピクセル1bitに詰める。
+     * </p>
+     * @param pixels ARGBのピクセル
+     * @param width 横幅
+     * @param height 高さ
+     * @return GBitmapのデータ
+     */
+    static byte[] convertImageDithering(final int[] pixels, final int width, final int height) {
+        final int threshold = 128;
+        final int white = 255;
+        // 現在の行と次の行の誤差(1/16単位)
+        int[] errors = new int[width + 2];
+        int[] nextErrors = new int[width + 2];
 
         PbiImageStream stream = new PbiImageStream(width, height);
         for (int yy = 0; yy < height; yy++) {
             for (int xx = 0; xx < width; xx++) {
-                final int threshold = 128;
-                final int rgbColors = 3;
-                int bitmapColor = pixels[(xx + yy * width)];
-                int rr = Color.red(bitmapColor);
-                int gg = Color.green(bitmapColor);
-                int bb = Color.blue(bitmapColor);
-                int x, y;
-                y = (rr + gg + bb) / rgbColors;
-                if (byThreshold) {
-                    if (y < threshold) {
-                        x = 0;
-                    } else {
-                        x = 1;
-                    }
-                } else {
-                    x = 0; //誤差拡散法:iOS 側との互換性を有する
-                    if (y > 150) {
-                        x = 1;
-                    } else if (y > 110) {
-                        if (y > random.nextInt(randomNumberMax)) {
-                            x = 1;
-                        }
-                    }
-                }
+                int y = luminance(pixels[xx + yy * width]) + errors[xx + 1] / 16;
+                int x = y < threshold ? 0 : 1;
+                int error = y - (x == 0 ? 0 : white);
+                errors[xx + 2] += error * 7;
+                nextErrors[xx] += error * 3;
+                nextErrors[xx + 1] += error * 5;
+                nextErrors[xx + 2] += error;
                 stream.setPixel(xx, yy, x);
             }
+            int[] tmp = errors;
+            errors = nextErrors;
+            nextErrors = tmp;
+            Arrays.fill(nextErrors, 0);
         }
         return stream.getStream();
     }
+
+    /**
+     * ピクセルの輝度を取得する.
+     *
+     * @param color ARGBのピクセル
+     * @return 輝度(0〜255)
+     */
+    private static int luminance(final int color) {
+        final int rgbColors = 3;
+        int rr = (color >> 16) & 0xFF;
+        int gg = (color >> 8) & 0xFF;
+        int bb = color & 0xFF;
+        return (rr + gg + bb) / rgbColors;
+    }
 }
@@ -36,7 +36,6 @@ import org.json.JSONObject;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -240,6 +239,16 @@ public final class PebbleManager {
     /** トランザクション(通信時)の数値. */
     private static final int TRANSACATION_ID = 255;
 
+    /**
+     * バイナリを分割するデータサイズを定義.
+     * 分割サイズは、Pebbleアプリ側でも定義してあるので
+     * 大きくする場合には、Pebbleアプリ側の定義も修正すること。
+     */
+    private static final int BINARY_CHUNK_SIZE = 64;
+
+    /** ACKを待たずに送信するバイナリの分割データの最大数. */
+    private static final int BINARY_WINDOW_MAX = 4;
+
     /**
      * このクラスが属するコンテキスト.
      */
@@ -290,8 +299,33 @@ public final class PebbleManager {
     /** バイナリ送信状態を保持. */
     private BinarySendState mBinarySendState;
 
-    /** バイナリ送信をブロックする. */
-    private final Object mBinaryLockObj = new Object();
+    /**
+     * バイナリを分割して送信するクラス.
+     */
+    private final PebbleBinaryTransfer mBinaryTransfer = new PebbleBinaryTransfer(
+            new PebbleBinaryTransfer.Transport() {
+                @Override
+                public void sendLength(final int transactionId, final int length) {
+                    PebbleDictionary data = new PebbleDictionary();
+                    data.addInt8(KEY_PROFILE, (byte) PROFILE_BINARY);
+                    data.addInt32(KEY_PARAM_BINARY_LENGTH, length);
+                    PebbleKit.sendDataToPebbleWithTransactionId(mContext, MY_UUID, data, transactionId);
+                }
+
+                @Override
+                public void sendChunk(final int transactionId, final int index, final byte[] body) {
+                    PebbleDictionary data = new PebbleDictionary();
+                    data.addInt8(KEY_PROFILE, (byte) PROFILE_BINARY);
+                    data.addInt16(KEY_PARAM_BINARY_INDEX, (byte) index);
+                    data.addBytes(KEY_PARAM_BINARY_BODY, body);
+                    PebbleKit.sendDataToPebbleWithTransactionId(mContext, MY_UUID, data, transactionId);
+                }
+
+                @Override
+                public void startApp() {
+                    PebbleKit.startAppOnPebble(getContext(), MY_UUID);
+                }
+            }, BINARY_CHUNK_SIZE, BINARY_WINDOW_MAX, TIMEOUT);
 
     /**
      * Pebbleからのイベントを受け取るためのハンドラ.
@@ -321,9 +355,7 @@ public final class PebbleManager {
                 mRequestDictionary = null;
             } else {
                 mBinarySendState = BinarySendState.STATE_ACK;
-                synchronized (mBinaryLockObj) {
-                    mBinaryLockObj.notifyAll();
-                }
+                mBinaryTransfer.onAck(transactionId);
             }
         }
     };
@@ -346,9 +378,7 @@ public final class PebbleManager {
                 mRequestDictionary = null;
             } else {
                 mBinarySendState = BinarySendState.STATE_NACK;
-                synchronized (mBinaryLockObj) {
-                    mBinaryLockObj.notifyAll();
-                }
+                mBinaryTransfer.onNack(transactionId);
             }
         }
     };
@@ -578,128 +608,20 @@ public final class PebbleManager {
 
     /**
      * 指定されたデータをPebbleに送信する.
+     * <p>
+     * データは分割して送信する。詳細は {@link PebbleBinaryTransfer} を参照のこと。
+     * </p>
      * @param data 送信するデータ.
      * @param listener 送信確認用のリスナー.
      */
     public void sendDataToPebble(final byte[] data, final OnSendDataListener listener) {
         mExecutor.execute(new Runnable() {
-            /**
-             * 分割するデータサイズを定義.
-             * 分割サイズは、Pebbleアプリ側でも定義してあるので
-             * 大きくする場合には、Pebbleアプリ側の定義も修正すること。
-             */
-            private static final int BUF_SIZE = 64;
             @Override
             public void run() {
-                final int sleepMilliSec = 100;
-                final int streamRemainLegnth = data.length;
-                final int count = streamRemainLegnth / BUF_SIZE + 1;
-                // 最初にデータのサイズを送る
-                if (!sendLength(streamRemainLegnth)) {
-                    if (listener != null) {
-                        listener.onSend(false);
-                    }
-                    return;
-                }
-                // Pebbleにデータ送信
-                for (int i = 0; i < count; i++) {
-                    mBinarySendState = BinarySendState.STATE_NONE;
-                    if (!sendBody(data, i)) {
-                        if (listener != null) {
-                            listener.onSend(false);
-                        }
-                        return;
-                    }
-                    try {
-                        Thread.sleep(sleepMilliSec);
-                    } catch (InterruptedException e) {
-                        if (BuildConfig.DEBUG) {
-                           e.printStackTrace();
-                        }
-                    }
-                }
+                boolean result = mBinaryTransfer.send(data);
                 if (listener != null) {
-                    listener.onSend(true);
-                }
-            }
-            /**
-             * Pebbleからのレスポンスを待つ.
-             * 
-             * @return ACKの場合はtrue、NACKの場合はfalseを返却する
-             */
-            private boolean waitAck() {
-                try {
-                    synchronized (mBinaryLockObj) {
-                        mBinaryLockObj.wait(TIMEOUT);
-                    }
-                } catch (InterruptedException e) {
-                    if (BuildConfig.DEBUG) {
-                        e.printStackTrace();
-                    }
-                }
-                return (mBinarySendState == BinarySendState.STATE_ACK);
-            }
-            /**
-             * データのサイズをPebbleに通知する.
-             * 
-             * @param streamTotalLength データサイズ
-             * @return 通知に成功した場合はtrue、それ以外はfalse
-             */
-            private boolean sendLength(final int streamTotalLength) {
-                final int retryMax = 3;
-                final int sleepMilliSec = 2000;
-                PebbleDictionary data = new PebbleDictionary();
-                data.addInt8(KEY_PROFILE, (byte) PROFILE_BINARY);
-                data.addInt32(KEY_PARAM_BINARY_LENGTH, streamTotalLength);
-                for (int retry = 0; retry < retryMax; retry++) {
-                    PebbleKit.sendDataToPebble(mContext, MY_UUID, data);
-                    if (waitAck()) {
-                        return true;
-                    } else {
-                        // nackが返ってきたみたいなので、アプリ起動してから
-                        // リトライを試みる。
-                        PebbleKit.startAppOnPebble(getContext(), MY_UUID);
-                        try {
-                            Thread.sleep(sleepMilliSec);
-                        } catch (InterruptedException e) {
-                            if (BuildConfig.DEBUG) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
-                }
-                return false;
-            }
-            /**
-             * データの中身を分割して送信する.
-             * 
-             * @param stream 送信するデータ
-             * @param index 分割したデータのインデックス
-             * @return 通知に成功した場合はtrue、それ以外はfalse
-             */
-            public boolean sendBody(final byte[] stream, final int index) {
-                final int retryMax = 3;
-                final int sleepMilliSec = 100;
-                byte[] send = Arrays.copyOfRange(stream, index * BUF_SIZE, (index + 1) * BUF_SIZE);
-                PebbleDictionary data = new PebbleDictionary();
-                data.addInt8(KEY_PROFILE, (byte) PROFILE_BINARY);
-                data.addInt16(KEY_PARAM_BINARY_INDEX, (byte) index);
-                data.addBytes(KEY_PARAM_BINARY_BODY, send);
-                for (int retry = 0; retry < retryMax; retry++) {
-                    PebbleKit.sendDataToPebble(mContext, MY_UUID, data);
-                    if (waitAck()) {
-                        return true;
-                    } else {
-                        try {
-                            Thread.sleep(sleepMilliSec);
-                        } catch (InterruptedException e) {
-                            if (BuildConfig.DEBUG) {
-                               e.printStackTrace();
-                            }
-                        }
-                    }
+                    listener.onSend(result);
                 }
-                return false;
             }
         });
     }
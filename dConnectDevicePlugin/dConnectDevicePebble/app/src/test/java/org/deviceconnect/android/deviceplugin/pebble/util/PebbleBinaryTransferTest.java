@@ -0,0 +1,152 @@
+/*
+ PebbleBinaryTransferTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.pebble.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 模擬したPebbleで PebbleBinaryTransfer の転送時間と再送を確認するテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class PebbleBinaryTransferTest {
+
+    /** Pebbleの横ドット数. */
+    private static final int WIDTH = 144;
+    /** Pebbleの縦ドット数. */
+    private static final int HEIGHT = 168;
+    /** 分割データのサイズ. Pebble側のアプリの定義に合わせる. */
+    private static final int CHUNK_SIZE = 64;
+    /** 片道の遅延(ms). */
+    private static final long LATENCY = 15;
+    /** Pebbleが1メッセージを処理する時間(ms). */
+    private static final long PROCESS_TIME = 10;
+    /** ACKのタイムアウト(ms). */
+    private static final long TIMEOUT = 500;
+    /** 以前の実装で分割データごとに待っていた時間(ms). */
+    private static final long LEGACY_SLEEP = 100;
+
+    /** 模擬したPebble. */
+    private SimulatedPebbleTransport mTransport;
+
+    @After
+    public void tearDown() {
+        if (mTransport != null) {
+            mTransport.shutdown();
+        }
+    }
+
+    /**
+     * 全画面の画像と同じサイズのデータを作成する.
+     *
+     * @return データ
+     */
+    private static byte[] createImage() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Random random = new Random(1);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return PebbleBitmapUtil.convertImageDithering(pixels,
+                WIDTH, HEIGHT);
+    }
+
+    /**
+     * 模擬したPebbleにデータを送信する.
+     *
+     * @param data データ
+     * @param maxWindow 最大ウィンドウサイズ
+     * @param inboxSize Pebbleの受信バッファのメッセージ数
+     * @param lossRate メッセージが失われる確率
+     * @return 送信にかかった時間(ms)
+     */
+    private long transfer(final byte[] data, final int maxWindow, final int inboxSize, final double lossRate) {
+        mTransport = new SimulatedPebbleTransport(LATENCY, PROCESS_TIME, inboxSize, lossRate, 7);
+        final PebbleBinaryTransfer transfer = new PebbleBinaryTransfer(mTransport, CHUNK_SIZE, maxWindow, TIMEOUT);
+        mTransport.setReceiver(new SimulatedPebbleTransport.Receiver() {
+            @Override
+            public void onAck(final int transactionId) {
+                transfer.onAck(transactionId);
+            }
+
+            @Override
+            public void onNack(final int transactionId) {
+                transfer.onNack(transactionId);
+            }
+        });
+        long start = System.currentTimeMillis();
+        assertTrue(transfer.send(data));
+        long elapsed = System.currentTimeMillis() - start;
+        assertArrayEquals(data, mTransport.getReceived());
+
+        int chunks = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        System.out.println(String.format("PebbleBinaryTransfer: window %d, inbox %d, loss %.0f%%: "
+                        + "%d bytes, %d messages, %d nack, %d retransmits, %dms",
+                maxWindow, inboxSize, lossRate * 100, data.length, mTransport.mMessageCount.get(),
+                mTransport.mNackCount.get(), transfer.getRetransmitCount(), elapsed));
+        // 再送はNACKを受けた分割データのみ
+        assertEquals(1 + chunks + transfer.getRetransmitCount(), mTransport.mMessageCount.get());
+        assertEquals(mTransport.mNackCount.get(), transfer.getRetransmitCount());
+        mTransport.shutdown();
+        return elapsed;
+    }
+
+    @Test
+    public void windowedTransferIsFasterThanStopAndWait() {
+        byte[] data = createImage();
+        int chunks = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        long stopAndWait = transfer(data, 1, 4, 0);
+        long windowed = transfer(data, 4, 4, 0);
+        System.out.println(String.format("PebbleBinaryTransfer: legacy about %dms (stop-and-wait + %dms sleep per chunk)",
+                stopAndWait + chunks * LEGACY_SLEEP, LEGACY_SLEEP));
+        assertTrue("windowed=" + windowed + " stopAndWait=" + stopAndWait, windowed < stopAndWait * 0.6);
+    }
+
+    @Test
+    public void onlyNackedChunksAreRetransmittedWithLoss() {
+        byte[] data = createImage();
+        transfer(data, 4, 4, 0.05);
+        transfer(data, 4, 4, 0.2);
+    }
+
+    @Test
+    public void windowShrinksWhenPebbleIsBusy() {
+        transfer(createImage(), 4, 1, 0);
+        // NACKを受けたウィンドウサイズはしばらく試さない
+        assertTrue("nack=" + mTransport.mNackCount.get(), mTransport.mNackCount.get() <= 8);
+    }
+
+    @Test
+    public void transferFailsWhenPebbleDoesNotRespond() {
+        SimulatedPebbleTransport transport = new SimulatedPebbleTransport(LATENCY, PROCESS_TIME, 4, 0, 7);
+        mTransport = transport;
+        PebbleBinaryTransfer transfer = new PebbleBinaryTransfer(transport, CHUNK_SIZE, 4, 50);
+        final PebbleBinaryTransfer[] holder = {transfer};
+        transport.setReceiver(new SimulatedPebbleTransport.Receiver() {
+            @Override
+            public void onAck(final int transactionId) {
+                // データサイズのACKのみ返す
+                if (transactionId == 0) {
+                    holder[0].onAck(transactionId);
+                }
+            }
+
+            @Override
+            public void onNack(final int transactionId) {
+            }
+        });
+        assertFalse(transfer.send(new byte[CHUNK_SIZE * 3]));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ PebbleBitmapUtilTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.pebble.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PebbleBitmapUtil の誤差拡散のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class PebbleBitmapUtilTest {
+
+    /** Pebbleの横ドット数. */
+    private static final int WIDTH = 144;
+    /** Pebbleの縦ドット数. */
+    private static final int HEIGHT = 168;
+    /** pbi ヘッダ長. */
+    private static final int HEADER_LENGTH = 12;
+
+    /**
+     * 白のピクセル数を数える.
+     */
+    private static int countWhite(final byte[] pbi, final int width, final int height) {
+        int rowSize = ((width + 31) / 32) * 4;
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if ((pbi[HEADER_LENGTH + rowSize * y + x / 8] & (1 << (x % 8))) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 指定した色で塗りつぶした画像を2値化する.
+     */
+    private static byte[] convert(final int gray, final int width, final int height) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+        }
+        return PebbleBitmapUtil.convertImageDithering(pixels, width, height);
+    }
+
+    @Test
+    public void imageIsPackedToOneBitPerPixel() {
+        int width = WIDTH;
+        int height = HEIGHT;
+        byte[] pbi = convert(255, width, height);
+        // 1行は4byte単位
+        assertEquals(HEADER_LENGTH + 20 * height, pbi.length);
+        assertEquals(width * height, countWhite(pbi, width, height));
+        assertEquals(0, countWhite(convert(0, width, height), width, height));
+    }
+
+    @Test
+    public void grayIsDitheredInProportion() {
+        int width = WIDTH;
+        int height = HEIGHT;
+        int[] grays = {32, 64, 128, 192, 224};
+        for (int gray : grays) {
+            double ratio = countWhite(convert(gray, width, height), width, height) / (double) (width * height);
+            assertTrue("gray=" + gray + " ratio=" + ratio, Math.abs(ratio - gray / 255.0) < 0.02);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ SimulatedPebbleTransport.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.pebble.util;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PebbleKit と Pebble側のアプリを模擬するトランスポート.
+ * <p>
+ * メッセージは片道の遅延の後に受信バッファに入り、1つずつ処理される。
+ * 受信バッファが一杯の場合、または指定した確率でメッセージが失われた場合はNACKを返す。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class SimulatedPebbleTransport implements PebbleBinaryTransfer.Transport {
+
+    /**
+     * ACK/NACKを受け取るリスナー.
+     */
+    interface Receiver {
+        void onAck(int transactionId);
+        void onNack(int transactionId);
+    }
+
+    /** 片道の遅延(ms). */
+    private final long mLatency;
+    /** 1メッセージの処理時間(ms). */
+    private final long mProcessTime;
+    /** 受信バッファのメッセージ数. */
+    private final int mInboxSize;
+    /** メッセージが失われる確率. */
+    private final double mLossRate;
+    /** 乱数. */
+    private final Random mRandom;
+    /** タイマー. */
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    /** ACK/NACKの通知先. */
+    private volatile Receiver mReceiver;
+    /** 受信バッファ内のメッセージ数. */
+    private int mInboxCount;
+    /** 受信バッファの処理が終わる時刻(ms). */
+    private long mInboxFreeTime;
+
+    /** 受信したデータ. */
+    private byte[] mReceived;
+    /** 送信されたメッセージ数. */
+    final AtomicInteger mMessageCount = new AtomicInteger();
+    /** NACKを返したメッセージ数. */
+    final AtomicInteger mNackCount = new AtomicInteger();
+
+    SimulatedPebbleTransport(final long latency, final long processTime, final int inboxSize,
+                             final double lossRate, final long seed) {
+        mLatency = latency;
+        mProcessTime = processTime;
+        mInboxSize = inboxSize;
+        mLossRate = lossRate;
+        mRandom = new Random(seed);
+    }
+
+    void setReceiver(final Receiver receiver) {
+        mReceiver = receiver;
+    }
+
+    synchronized byte[] getReceived() {
+        return mReceived;
+    }
+
+    void shutdown() {
+        mScheduler.shutdownNow();
+    }
+
+    @Override
+    public void sendLength(final int transactionId, final int length) {
+        deliver(transactionId, new Runnable() {
+            @Override
+            public void run() {
+                mReceived = new byte[length];
+            }
+        });
+    }
+
+    @Override
+    public void sendChunk(final int transactionId, final int index, final byte[] body) {
+        deliver(transactionId, new Runnable() {
+            @Override
+            public void run() {
+                int offset = index * body.length;
+                int size = Math.min(body.length, mReceived.length - offset);
+                System.arraycopy(body, 0, mReceived, offset, size);
+            }
+        });
+    }
+
+    @Override
+    public void startApp() {
+    }
+
+    /**
+     * メッセージを受信バッファに届ける.
+     *
+     * @param transactionId トランザクションID
+     * @param store 受信したメッセージを保存する処理
+     */
+    private void deliver(final int transactionId, final Runnable store) {
+        mMessageCount.incrementAndGet();
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                boolean lost;
+                long done;
+                synchronized (SimulatedPebbleTransport.this) {
+                    lost = mRandom.nextDouble() < mLossRate;
+                    if (lost || mInboxCount >= mInboxSize) {
+                        done = -1;
+                    } else {
+                        mInboxCount++;
+                        mInboxFreeTime = Math.max(now, mInboxFreeTime) + mProcessTime;
+                        done = mInboxFreeTime;
+                    }
+                }
+                if (done < 0) {
+                    mNackCount.incrementAndGet();
+                    respond(transactionId, false, mLatency);
+                    return;
+                }
+                mScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (SimulatedPebbleTransport.this) {
+                            mInboxCount--;
+                            store.run();
+                        }
+                        respond(transactionId, true, mLatency);
+                    }
+                }, done - now, TimeUnit.MILLISECONDS);
+            }
+        }, mLatency, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * ACK/NACKを返す.
+     *
+     * @param transactionId トランザクションID
+     * @param ack ACKの場合はtrue、NACKの場合はfalse
+     * @param delay 遅延(ms)
+     */
+    private void respond(final int transactionId, final boolean ack, final long delay) {
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Receiver receiver = mReceiver;
+                if (receiver == null) {
+                    return;
+                }
+                if (ack) {
+                    receiver.onAck(transactionId);
+                } else {
+                    receiver.onNack(transactionId);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
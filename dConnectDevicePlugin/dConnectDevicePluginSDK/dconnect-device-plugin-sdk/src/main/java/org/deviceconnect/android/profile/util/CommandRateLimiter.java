@@ -0,0 +1,232 @@
+/*
+ CommandRateLimiter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * デバイスへ送信するコマンドの送信レートを制限するクラス.
+ * <p>
+ * トークンバケットで送信レートを制限する。ブリッジなどコマンドを受け付けるデバイスごとに1つ作成すること。
+ * 送信待ちのコマンドと同じキーのコマンドが追加された場合は、古いコマンドを破棄して新しいコマンドに置き換える。
+ * 置き換えられたコマンドは送信待ちの順番を引き継ぐ。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class CommandRateLimiter {
+
+    /**
+     * コマンド.
+     */
+    public interface Command {
+        /**
+         * コマンドを送信する.
+         * <p>
+         * 共有タイマーのスレッドまたは {@link CommandRateLimiter#submit(String, Command)} の呼び出し元スレッドで
+         * 呼び出されるので、ブロックしないこと。
+         * </p>
+         */
+        void execute();
+
+        /**
+         * 同じキーの新しいコマンドに置き換えられたため、送信されなかったことを通知する.
+         */
+        void cancel();
+    }
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("org.deviceconnect.dplugin");
+
+    /**
+     * タイマー.
+     */
+    private final ScheduledExecutorService mScheduler;
+
+    /**
+     * 1秒あたりに送信できるコマンド数.
+     */
+    private final double mRate;
+
+    /**
+     * 連続して送信できるコマンド数.
+     */
+    private final int mBurst;
+
+    /**
+     * 送信待ちのコマンド. キーごとに最新のコマンドのみを保持する.
+     */
+    private final LinkedHashMap<String, Command> mPending = new LinkedHashMap<>();
+
+    /**
+     * トークン数.
+     */
+    private double mTokens;
+
+    /**
+     * 最後にトークンを補充した時刻(ns).
+     */
+    private long mLastRefillTime;
+
+    /**
+     * スケジュール済みの送信処理.
+     */
+    private ScheduledFuture<?> mDrainFuture;
+
+    /**
+     * 送信待ちのコマンドを送信する処理.
+     */
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            List<Command> ready = new ArrayList<>();
+            synchronized (CommandRateLimiter.this) {
+                mDrainFuture = null;
+                refill();
+                Iterator<Command> it = mPending.values().iterator();
+                while (it.hasNext() && mTokens >= 1) {
+                    ready.add(it.next());
+                    it.remove();
+                    mTokens -= 1;
+                }
+                scheduleDrain();
+            }
+            for (Command command : ready) {
+                execute(command);
+            }
+        }
+    };
+
+    /**
+     * 共有タイマーを使用する CommandRateLimiter を生成する.
+     *
+     * @param rate 1秒あたりに送信できるコマンド数
+     * @param burst 連続して送信できるコマンド数
+     */
+    public CommandRateLimiter(final double rate, final int burst) {
+        this(rate, burst, EffectScheduler.getInstance());
+    }
+
+    /**
+     * 指定したタイマーを使用する CommandRateLimiter を生成する.
+     *
+     * @param rate 1秒あたりに送信できるコマンド数
+     * @param burst 連続して送信できるコマンド数
+     * @param scheduler タイマー
+     */
+    public CommandRateLimiter(final double rate, final int burst, final ScheduledExecutorService scheduler) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive.");
+        }
+        mRate = rate;
+        mBurst = burst;
+        mScheduler = scheduler;
+        mTokens = burst;
+        mLastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * コマンドを送信する.
+     * <p>
+     * トークンがあり、送信待ちのコマンドが無い場合は、呼び出し元のスレッドで直ちに送信する。
+     * </p>
+     * @param key コマンドの対象を示すキー (ライトIDなど)
+     * @param command コマンド
+     */
+    public void submit(final String key, final Command command) {
+        Command superseded = null;
+        boolean executeNow = false;
+        synchronized (this) {
+            refill();
+            if (mPending.isEmpty() && mTokens >= 1) {
+                mTokens -= 1;
+                executeNow = true;
+            } else {
+                superseded = mPending.put(key, command);
+                scheduleDrain();
+            }
+        }
+        if (superseded != null) {
+            superseded.cancel();
+        }
+        if (executeNow) {
+            execute(command);
+        }
+    }
+
+    /**
+     * 送信待ちのコマンドを全て破棄する.
+     */
+    public void clear() {
+        List<Command> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(mPending.values());
+            mPending.clear();
+            if (mDrainFuture != null) {
+                mDrainFuture.cancel(false);
+                mDrainFuture = null;
+            }
+        }
+        for (Command command : cancelled) {
+            command.cancel();
+        }
+    }
+
+    /**
+     * 送信待ちのコマンド数を取得する.
+     *
+     * @return 送信待ちのコマンド数
+     */
+    public synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * 経過時間に応じてトークンを補充する.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        mTokens = Math.min(mBurst, mTokens + (now - mLastRefillTime) * mRate / TimeUnit.SECONDS.toNanos(1));
+        mLastRefillTime = now;
+    }
+
+    /**
+     * 次のトークンが補充される時刻に送信処理をスケジュールする.
+     */
+    private void scheduleDrain() {
+        if (mDrainFuture != null || mPending.isEmpty()) {
+            return;
+        }
+        long delay = 0;
+        if (mTokens < 1) {
+            delay = (long) Math.ceil((1 - mTokens) * TimeUnit.SECONDS.toNanos(1) / mRate);
+        }
+        mDrainFuture = mScheduler.schedule(mDrainTask, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * コマンドを送信する.
+     *
+     * @param command コマンド
+     */
+    private void execute(final Command command) {
+        try {
+            command.execute();
+        } catch (RuntimeException e) {
+            mLogger.log(Level.WARNING, "Failed to execute a command.", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ EffectScheduler.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.util;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ライトの点滅などのエフェクトを駆動する共有タイマー.
+ * <p>
+ * プロセス内の全ての {@link FlashingExecutor} と {@link CommandRateLimiter} が1つのスレッドを共有する。
+ * このスレッドで実行される処理は、ブロックせずに短時間で戻ること。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public final class EffectScheduler {
+
+    /**
+     * 共有タイマー.
+     */
+    private static ScheduledExecutorService sScheduler;
+
+    /**
+     * Private Constructor.
+     */
+    private EffectScheduler() {
+    }
+
+    /**
+     * 共有タイマーを取得する.
+     *
+     * @return 共有タイマー
+     */
+    public static synchronized ScheduledExecutorService getInstance() {
+        if (sScheduler == null) {
+            sScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(r, "DConnect-EffectScheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sScheduler;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ FlashingExecutor.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.util;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Light Profile の flashing パラメータを実行するクラス.
+ * <p>
+ * 点灯・消灯のタイミングは {@link EffectScheduler} の共有タイマーで管理するため、
+ * ライトの数だけスレッドを作成しない。
+ * 各タイミングは点滅開始時刻からの累積時間で決めるので、状態変更の完了に時間がかかっても
+ * 後続のタイミングはずれない。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class FlashingExecutor {
+
+    /**
+     * ライトの点灯・消灯タイミング通知リスナー.
+     */
+    public interface LightControllable {
+        /**
+         * ライトの点灯・消灯の変更要求.
+         * <p>
+         * 共有タイマーのスレッドから呼び出されるので、ブロックしないこと。
+         * CompleteListener#onComplete()を呼び出すと次の点滅処理を行います。
+         * </p>
+         * @param isOn true: 点灯、false: 消灯
+         * @param listener 点灯・消灯完了通知を行うリスナー
+         */
+        void changeLight(boolean isOn, CompleteListener listener);
+    }
+
+    /**
+     * ライトの状態変更通知リスナー.
+     */
+    public interface CompleteListener {
+        /**
+         * ライトの状態が変更できたことを通知します。
+         */
+        void onComplete();
+    }
+
+    /**
+     * タイマー.
+     */
+    private final ScheduledExecutorService mScheduler;
+
+    /**
+     * 点灯・消灯タイミング通知リスナー.
+     */
+    private LightControllable mListener;
+
+    /**
+     * 最後にスケジュールした処理.
+     */
+    private ScheduledFuture<?> mLatestScheduledFuture;
+
+    /**
+     * 点滅間隔のキュー.
+     */
+    private final Queue<Long> mFlashingQueue = new LinkedList<>();
+
+    /**
+     * 次に設定する状態.
+     */
+    private boolean mIsOn = true;
+
+    /**
+     * 最後に実行した処理の識別子.
+     */
+    private int mLastIdentifier = 0;
+
+    /**
+     * 次の状態変更の予定時刻(ns).
+     */
+    private long mNextTime;
+
+    /**
+     * 共有タイマーを使用する FlashingExecutor を生成する.
+     */
+    public FlashingExecutor() {
+        this(EffectScheduler.getInstance());
+    }
+
+    /**
+     * 指定したタイマーを使用する FlashingExecutor を生成する.
+     *
+     * @param scheduler タイマー
+     */
+    public FlashingExecutor(final ScheduledExecutorService scheduler) {
+        mScheduler = scheduler;
+    }
+
+    /**
+     * 点灯・消灯タイミング通知リスナーを設定する.
+     *
+     * @param controllable リスナー
+     */
+    public synchronized void setLightControllable(final LightControllable controllable) {
+        mListener = controllable;
+    }
+
+    /**
+     * 点滅を開始する.
+     * <p>
+     * 実行中の点滅は停止する。
+     * </p>
+     * @param flashing 点滅間隔(ms)
+     */
+    public synchronized void start(final long[] flashing) {
+        cancelSchedule();
+        mLastIdentifier++;
+        updateQueue(flashing);
+        mIsOn = true;
+        mNextTime = System.nanoTime();
+        scheduleNext();
+    }
+
+    /**
+     * 点滅を停止する.
+     */
+    public synchronized void stop() {
+        cancelSchedule();
+        mLastIdentifier++;
+        mFlashingQueue.clear();
+        onFinish();
+    }
+
+    /**
+     * 次の状態変更をスケジュールする.
+     */
+    private synchronized void scheduleNext() {
+        Long interval = mFlashingQueue.poll();
+        if (interval == null) {
+            onFinish();
+            return;
+        }
+        mNextTime += TimeUnit.MILLISECONDS.toNanos(interval);
+        final int identifier = mLastIdentifier;
+        long delay = Math.max(0, mNextTime - System.nanoTime());
+        mLatestScheduledFuture = mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                controlLight(identifier);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * ライトの状態を変更する.
+     *
+     * @param scheduledIdentifier スケジュールした時の識別子
+     */
+    private void controlLight(final int scheduledIdentifier) {
+        final int identifier;
+        final LightControllable listener;
+        final boolean isOn;
+        synchronized (this) {
+            // 他の点滅が開始された
+            if (mLastIdentifier != scheduledIdentifier) {
+                return;
+            }
+            // 最後の間隔が経過したら状態は変更せずに終了する
+            if (mFlashingQueue.isEmpty()) {
+                onFinish();
+                return;
+            }
+            mLastIdentifier++;
+            identifier = mLastIdentifier;
+            listener = mListener;
+            isOn = mIsOn;
+        }
+        if (listener == null) {
+            next(identifier);
+            return;
+        }
+        listener.changeLight(isOn, new CompleteListener() {
+            @Override
+            public void onComplete() {
+                next(identifier);
+            }
+        });
+    }
+
+    /**
+     * 状態変更の完了後に次の状態変更をスケジュールする.
+     *
+     * @param identifier 状態変更の識別子
+     */
+    private synchronized void next(final int identifier) {
+        //Return if other execution has been begin.
+        if (mLastIdentifier != identifier) {
+            return;
+        }
+        mIsOn = !mIsOn;
+        scheduleNext();
+    }
+
+    /**
+     * 点滅を終了する.
+     */
+    private synchronized void onFinish() {
+        mListener = null;
+        mLatestScheduledFuture = null;
+    }
+
+    /**
+     * スケジュール済みの処理をキャンセルする.
+     */
+    private synchronized void cancelSchedule() {
+        if (mLatestScheduledFuture != null && !mLatestScheduledFuture.isCancelled()) {
+            mLatestScheduledFuture.cancel(false);
+        }
+    }
+
+    /**
+     * 点滅間隔のキューを更新する.
+     *
+     * @param flashing 点滅間隔(ms)
+     */
+    private synchronized void updateQueue(final long[] flashing) {
+        mFlashingQueue.clear();
+        mFlashingQueue.add(0L);
+        for (long value : flashing) {
+            mFlashingQueue.add(value);
+        }
+    }
+}
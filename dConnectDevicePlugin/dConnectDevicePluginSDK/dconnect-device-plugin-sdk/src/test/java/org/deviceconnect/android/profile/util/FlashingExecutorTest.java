@@ -0,0 +1,272 @@
+/*
+ FlashingExecutorTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 100個のライトと送信レートを制限するブリッジを模擬した FlashingExecutor と CommandRateLimiter のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class FlashingExecutorTest {
+
+    /**
+     * ライトの数.
+     */
+    private static final int LIGHT_COUNT = 100;
+
+    /**
+     * 模擬ブリッジ.
+     * <p>
+     * トークンバケットを超えたコマンドは拒否する。
+     * </p>
+     */
+    private static class FakeBridge {
+        /** 1秒あたりに受け付けるコマンド数. */
+        private final double mRate;
+        /** 連続して受け付けるコマンド数. */
+        private final int mBurst;
+        /** トークン数. */
+        private double mTokens;
+        /** 最後にトークンを補充した時刻(ns). */
+        private long mLastTime = System.nanoTime();
+        /** 受け付けたコマンド数. */
+        final AtomicInteger mAccepted = new AtomicInteger();
+        /** 拒否したコマンド数. */
+        final AtomicInteger mRejected = new AtomicInteger();
+        /** ライトごとの最後の値. */
+        final ConcurrentHashMap<String, Integer> mValues = new ConcurrentHashMap<>();
+
+        FakeBridge(final double rate, final int burst) {
+            mRate = rate;
+            mBurst = burst;
+            mTokens = burst;
+        }
+
+        synchronized boolean send(final String lightId, final int value) {
+            long now = System.nanoTime();
+            mTokens = Math.min(mBurst, mTokens + (now - mLastTime) * mRate / 1e9);
+            mLastTime = now;
+            if (mTokens < 1) {
+                mRejected.incrementAndGet();
+                return false;
+            }
+            mTokens -= 1;
+            mAccepted.incrementAndGet();
+            mValues.put(lightId, value);
+            return true;
+        }
+    }
+
+    /** 作成されたスレッド数. */
+    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+    /** タイマー. */
+    private ScheduledThreadPoolExecutor mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                mThreadCount.incrementAndGet();
+                return new Thread(r);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdownNow();
+    }
+
+    @Test
+    public void flashingOfManyLightsSharesOneTimer() throws Exception {
+        final long[] pattern = {100, 100, 100, 100};
+        final List<long[]> changes = Collections.synchronizedList(new ArrayList<long[]>());
+        final CountDownLatch done = new CountDownLatch(LIGHT_COUNT * pattern.length);
+        final long[] starts = new long[LIGHT_COUNT];
+        for (int i = 0; i < LIGHT_COUNT; i++) {
+            final int light = i;
+            FlashingExecutor executor = new FlashingExecutor(mScheduler);
+            executor.setLightControllable(new FlashingExecutor.LightControllable() {
+                @Override
+                public void changeLight(final boolean isOn, final FlashingExecutor.CompleteListener listener) {
+                    changes.add(new long[] {light, System.nanoTime() - starts[light], isOn ? 1 : 0});
+                    listener.onComplete();
+                    done.countDown();
+                }
+            });
+            synchronized (changes) {
+                starts[light] = System.nanoTime();
+                executor.start(pattern);
+            }
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        Thread.sleep(200);
+
+        // ライトごとに 0ms:点灯, 100ms:消灯, 200ms:点灯, 300ms:消灯
+        int[] counts = new int[LIGHT_COUNT];
+        double totalJitter = 0;
+        double maxJitter = 0;
+        synchronized (changes) {
+            assertEquals(LIGHT_COUNT * pattern.length, changes.size());
+            for (long[] change : changes) {
+                int light = (int) change[0];
+                int index = counts[light]++;
+                assertEquals(index % 2 == 0 ? 1 : 0, change[2]);
+                // 点滅開始時刻からの予定時刻とのずれ
+                double jitter = Math.abs(change[1] / 1e6 - index * 100);
+                totalJitter += jitter;
+                maxJitter = Math.max(maxJitter, jitter);
+            }
+        }
+        double averageJitter = totalJitter / changes.size();
+        System.out.println(String.format("FlashingExecutor: %d lights, %d changes, %d thread(s), "
+                        + "jitter avg %.2fms max %.2fms",
+                LIGHT_COUNT, changes.size(), mThreadCount.get(), averageJitter, maxJitter));
+        assertEquals(1, mThreadCount.get());
+        assertTrue("average jitter=" + averageJitter, averageJitter < 20);
+        assertTrue("max jitter=" + maxJitter, maxJitter < 50);
+    }
+
+    @Test
+    public void flashingIsPacedForRateLimitedBridge() throws Exception {
+        final FakeBridge bridge = new FakeBridge(100, 10);
+        final CommandRateLimiter limiter = new CommandRateLimiter(80, 8, mScheduler);
+        final long[] pattern = {100, 100};
+        final CountDownLatch done = new CountDownLatch(LIGHT_COUNT * pattern.length);
+        long start = System.nanoTime();
+        for (int i = 0; i < LIGHT_COUNT; i++) {
+            final String lightId = String.valueOf(i);
+            FlashingExecutor executor = new FlashingExecutor(mScheduler);
+            executor.setLightControllable(new FlashingExecutor.LightControllable() {
+                @Override
+                public void changeLight(final boolean isOn, final FlashingExecutor.CompleteListener listener) {
+                    limiter.submit(lightId, new CommandRateLimiter.Command() {
+                        @Override
+                        public void execute() {
+                            bridge.send(lightId, isOn ? 1 : 0);
+                            listener.onComplete();
+                            done.countDown();
+                        }
+
+                        @Override
+                        public void cancel() {
+                            listener.onComplete();
+                            done.countDown();
+                        }
+                    });
+                }
+            });
+            executor.start(pattern);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("CommandRateLimiter: %d commands accepted, %d rejected in %.2fs",
+                bridge.mAccepted.get(), bridge.mRejected.get(), elapsed));
+
+        assertEquals(0, bridge.mRejected.get());
+        assertEquals(LIGHT_COUNT * pattern.length, bridge.mAccepted.get());
+        // 8コマンド + 80コマンド/秒
+        assertTrue("elapsed=" + elapsed, elapsed >= (LIGHT_COUNT * pattern.length - 8) / 80.0 * 0.95);
+        for (int i = 0; i < LIGHT_COUNT; i++) {
+            assertEquals(Integer.valueOf(0), bridge.mValues.get(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void unpacedBurstIsRejectedByBridge() {
+        FakeBridge bridge = new FakeBridge(100, 10);
+        for (int i = 0; i < LIGHT_COUNT; i++) {
+            bridge.send(String.valueOf(i), 1);
+        }
+        assertTrue(bridge.mRejected.get() >= LIGHT_COUNT - 11);
+    }
+
+    @Test
+    public void supersededStateChangesAreMerged() throws Exception {
+        final FakeBridge bridge = new FakeBridge(100, 10);
+        CommandRateLimiter limiter = new CommandRateLimiter(80, 8, mScheduler);
+        final int updates = 20;
+        final AtomicInteger executed = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(LIGHT_COUNT * updates);
+        for (int value = 0; value < updates; value++) {
+            for (int i = 0; i < LIGHT_COUNT; i++) {
+                final String lightId = String.valueOf(i);
+                final int v = value;
+                limiter.submit(lightId, new CommandRateLimiter.Command() {
+                    @Override
+                    public void execute() {
+                        bridge.send(lightId, v);
+                        executed.incrementAndGet();
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void cancel() {
+                        cancelled.incrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+        }
+        assertTrue(limiter.getPendingCount() <= LIGHT_COUNT);
+        assertTrue(done.await(3, TimeUnit.SECONDS));
+        System.out.println(String.format("CommandRateLimiter: %d updates, %d sent, %d merged",
+                LIGHT_COUNT * updates, executed.get(), cancelled.get()));
+
+        assertEquals(0, bridge.mRejected.get());
+        assertTrue(executed.get() <= 8 + LIGHT_COUNT);
+        assertEquals(LIGHT_COUNT * updates, executed.get() + cancelled.get());
+        for (int i = 0; i < LIGHT_COUNT; i++) {
+            assertEquals(Integer.valueOf(updates - 1), bridge.mValues.get(String.valueOf(i)));
+        }
+        assertEquals(0, limiter.getPendingCount());
+    }
+
+    @Test
+    public void restartCancelsPreviousPattern() throws Exception {
+        final List<Boolean> changes = Collections.synchronizedList(new ArrayList<Boolean>());
+        FlashingExecutor executor = new FlashingExecutor(mScheduler);
+        FlashingExecutor.LightControllable controllable = new FlashingExecutor.LightControllable() {
+            @Override
+            public void changeLight(final boolean isOn, final FlashingExecutor.CompleteListener listener) {
+                changes.add(isOn);
+                listener.onComplete();
+            }
+        };
+        executor.setLightControllable(controllable);
+        executor.start(new long[] {200, 200});
+        Thread.sleep(50);
+        executor.setLightControllable(controllable);
+        executor.start(new long[] {50});
+        Thread.sleep(400);
+
+        // 最初の点滅は点灯のみで中断され、2回目の点滅は点灯して終了する
+        assertEquals(2, changes.size());
+        assertTrue(changes.get(0));
+        assertTrue(changes.get(1));
+    }
+}
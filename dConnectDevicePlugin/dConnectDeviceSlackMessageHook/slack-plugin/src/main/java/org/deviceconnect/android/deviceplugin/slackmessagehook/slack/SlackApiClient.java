@@ -0,0 +1,494 @@
+/*
+ SlackApiClient.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.slackmessagehook.slack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SlackのWeb APIを呼び出すクラス.
+ * <p>
+ * APIのメソッドごとにリクエストのキューを持ち、同じメソッドのリクエストは送信間隔を空けて1つずつ送信する。
+ * HTTP 429が返却された場合は、Retry-Afterで指定された時間が経過するまでそのメソッドのリクエストを送信せずに再送する。
+ * ファイルのアップロードは、取得元のデータをメモリに溜めずにSlackに転送する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SlackApiClient {
+
+    /** HTTP 429 Too Many Requests. */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /** メソッドごとの標準の送信間隔(ms). */
+    private static final long DEFAULT_INTERVAL = 1000;
+
+    /** Retry-Afterが無い場合の待ち時間(ms). */
+    private static final long DEFAULT_RETRY_AFTER = 1000;
+
+    /** HTTP 429の場合の最大再送回数. */
+    private static final int MAX_RETRY = 3;
+
+    /** アップロードのバッファサイズ. */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** 取得元のサイズが不明な場合のチャンクサイズ. */
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /** マルチパートの区切り文字. */
+    private static final String BOUNDARY = "==================================";
+
+    /** 同時に実行するリクエスト数. */
+    private static final int THREAD_COUNT = 3;
+
+    /**
+     * APIの呼び出し結果を通知するコールバック.
+     */
+    public interface Callback {
+        /**
+         * APIの呼び出しが完了した時に呼ばれます.
+         * <p>
+         * 送信スレッドから呼び出されます。
+         * </p>
+         * @param body レスポンスのボディ. エラーの場合はnull
+         * @param error エラー
+         */
+        void onResponse(String body, Exception error);
+    }
+
+    /**
+     * リクエスト.
+     */
+    private abstract class Request {
+        /** APIのメソッド名. */
+        final String mMethod;
+        /** コールバック. */
+        final Callback mCallback;
+        /** 再送回数. */
+        int mRetryCount;
+
+        Request(final String method, final Callback callback) {
+            mMethod = method;
+            mCallback = callback;
+        }
+
+        /**
+         * 接続を開いてリクエストを送信する.
+         * @return 接続
+         * @throws IOException 送信に失敗した場合
+         */
+        abstract HttpURLConnection open() throws IOException;
+
+        /**
+         * 送信後に後始末を行う.
+         */
+        void close() {
+        }
+    }
+
+    /**
+     * メソッドごとのリクエストのキュー.
+     */
+    private static class MethodQueue {
+        /** 送信待ちのリクエスト. */
+        final ArrayDeque<Request> mPending = new ArrayDeque<>();
+        /** 次のリクエストを送信できる時刻(ns). */
+        long mNextTime;
+        /** リクエストを送信中または送信予定の場合はtrue. */
+        boolean mRunning;
+    }
+
+    /** APIのベースURL. */
+    private final String mBaseUrl;
+
+    /** 送信スレッド. */
+    private final ScheduledExecutorService mExecutor;
+
+    /** メソッドごとのキュー. */
+    private final Map<String, MethodQueue> mQueues = new HashMap<>();
+
+    /** メソッドごとの送信間隔(ms). */
+    private final Map<String, Long> mIntervals = new HashMap<>();
+
+    /** APIトークン(URLエンコード済み). */
+    private volatile String mToken;
+
+    /** HTTP 429を受信した回数. */
+    private int mRateLimitedCount;
+
+    /**
+     * コンストラクタ.
+     * @param baseUrl APIのベースURL
+     */
+    public SlackApiClient(final String baseUrl) {
+        mBaseUrl = baseUrl;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREAD_COUNT);
+        executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+    }
+
+    /**
+     * APIトークンを設定する.
+     * @param token URLエンコード済みのAPIトークン
+     */
+    public void setToken(final String token) {
+        mToken = token;
+    }
+
+    /**
+     * メソッドの送信間隔を設定する.
+     * @param method APIのメソッド名
+     * @param interval 送信間隔(ms)
+     */
+    public synchronized void setInterval(final String method, final long interval) {
+        mIntervals.put(method, interval);
+    }
+
+    /**
+     * HTTP 429を受信した回数を取得する.
+     * @return 受信した回数
+     */
+    public synchronized int getRateLimitedCount() {
+        return mRateLimitedCount;
+    }
+
+    /**
+     * GETでAPIを呼び出す.
+     * @param method APIのメソッド名
+     * @param params 追加のパラメータ ("&amp;key=value" 形式)
+     * @param callback コールバック
+     */
+    public void get(final String method, final String params, final Callback callback) {
+        enqueue(new Request(method, callback) {
+            @Override
+            HttpURLConnection open() throws IOException {
+                URL url = new URL(mBaseUrl + method + "?token=" + mToken + (params == null ? "" : params));
+                HttpURLConnection con = (HttpURLConnection) url.openConnection();
+                con.setRequestMethod("GET");
+                con.setInstanceFollowRedirects(false);
+                con.connect();
+                return con;
+            }
+        });
+    }
+
+    /**
+     * files.uploadでファイルをアップロードする.
+     * <p>
+     * 取得元のサイズが分かる場合は固定長、分からない場合はチャンク形式で送信し、データ全体をメモリに溜めない。
+     * </p>
+     * @param channels 送信先のチャンネル
+     * @param comment コメント. 不要な場合はnull
+     * @param resource 取得元のURL
+     * @param headers 取得元に送信するヘッダ. 不要な場合はnull
+     * @param callback コールバック
+     */
+    public void upload(final String channels, final String comment, final URL resource,
+                       final Map<String, String> headers, final Callback callback) {
+        enqueue(new Request("files.upload", callback) {
+            /** 取得元との接続. */
+            private HttpURLConnection mSource;
+
+            @Override
+            HttpURLConnection open() throws IOException {
+                mSource = (HttpURLConnection) resource.openConnection();
+                mSource.setInstanceFollowRedirects(true);
+                if (headers != null) {
+                    for (Map.Entry<String, String> header : headers.entrySet()) {
+                        mSource.setRequestProperty(header.getKey(), header.getValue());
+                    }
+                }
+                mSource.connect();
+                InputStream in = mSource.getInputStream();
+                long length = getContentLength(mSource);
+
+                ByteArrayOutputStream head = new ByteArrayOutputStream();
+                writeDisposition(head, "token", mToken);
+                writeDisposition(head, "channels", channels);
+                if (comment != null) {
+                    writeDisposition(head, "initial_comment", comment);
+                }
+                writeAscii(head, "--" + BOUNDARY + "\r\n");
+                writeAscii(head, "Content-Disposition: form-data; name=\"file\"; filename=\""
+                        + escape(resource.getFile()) + "\"\r\n");
+                writeAscii(head, "Content-Type: application/octet-stream\r\n\r\n");
+                byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes("UTF-8");
+
+                HttpURLConnection con = (HttpURLConnection) new URL(mBaseUrl + "files.upload").openConnection();
+                con.setRequestMethod("POST");
+                con.setInstanceFollowRedirects(false);
+                con.setDoOutput(true);
+                con.setRequestProperty("Accept-Charset", "UTF-8");
+                con.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+                long total = length < 0 ? -1 : head.size() + length + tail.length;
+                if (total >= 0 && total <= Integer.MAX_VALUE) {
+                    con.setFixedLengthStreamingMode((int) total);
+                } else {
+                    con.setChunkedStreamingMode(CHUNK_SIZE);
+                }
+
+                OutputStream out = con.getOutputStream();
+                try {
+                    head.writeTo(out);
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int len;
+                    while ((len = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, len);
+                    }
+                    out.write(tail);
+                    out.flush();
+                } finally {
+                    out.close();
+                }
+                return con;
+            }
+
+            @Override
+            void close() {
+                if (mSource != null) {
+                    mSource.disconnect();
+                    mSource = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * 送信待ちのリクエストを全て破棄する.
+     */
+    public synchronized void clear() {
+        for (MethodQueue queue : mQueues.values()) {
+            for (Request request : queue.mPending) {
+                notifyResponse(request, null, new IOException("Request was cancelled."));
+            }
+            queue.mPending.clear();
+        }
+    }
+
+    /**
+     * リクエストをキューに追加する.
+     * @param request リクエスト
+     */
+    private synchronized void enqueue(final Request request) {
+        MethodQueue queue = mQueues.get(request.mMethod);
+        if (queue == null) {
+            queue = new MethodQueue();
+            mQueues.put(request.mMethod, queue);
+        }
+        queue.mPending.offerLast(request);
+        if (!queue.mRunning) {
+            scheduleNext(queue);
+        }
+    }
+
+    /**
+     * キューの次のリクエストの送信をスケジュールする.
+     * @param queue キュー
+     */
+    private synchronized void scheduleNext(final MethodQueue queue) {
+        if (queue.mPending.isEmpty()) {
+            queue.mRunning = false;
+            return;
+        }
+        queue.mRunning = true;
+        long delay = Math.max(0, queue.mNextTime - System.nanoTime());
+        try {
+            mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    execute(queue);
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            queue.mRunning = false;
+        }
+    }
+
+    /**
+     * キューの先頭のリクエストを送信する.
+     * @param queue キュー
+     */
+    private void execute(final MethodQueue queue) {
+        Request request;
+        synchronized (this) {
+            request = queue.mPending.pollFirst();
+            if (request == null) {
+                queue.mRunning = false;
+                return;
+            }
+        }
+
+        HttpURLConnection con = null;
+        String body = null;
+        Exception error = null;
+        boolean retry = false;
+        long wait = getInterval(request.mMethod);
+        try {
+            con = request.open();
+            int code = con.getResponseCode();
+            if (code == HTTP_TOO_MANY_REQUESTS) {
+                wait = Math.max(wait, getRetryAfter(con));
+                synchronized (this) {
+                    mRateLimitedCount++;
+                }
+                if (request.mRetryCount < MAX_RETRY) {
+                    request.mRetryCount++;
+                    retry = true;
+                } else {
+                    error = new IOException("Rate limited: " + request.mMethod);
+                }
+            } else {
+                InputStream in = code >= HttpURLConnection.HTTP_BAD_REQUEST ? con.getErrorStream() : con.getInputStream();
+                if (in == null) {
+                    error = new IOException("HTTP " + code + ": " + request.mMethod);
+                } else {
+                    body = read(in);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            error = e;
+        } finally {
+            if (con != null) {
+                con.disconnect();
+            }
+            request.close();
+        }
+
+        synchronized (this) {
+            queue.mNextTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+            if (retry) {
+                queue.mPending.offerFirst(request);
+            }
+            scheduleNext(queue);
+        }
+        if (!retry) {
+            notifyResponse(request, body, error);
+        }
+    }
+
+    /**
+     * コールバックに結果を通知する.
+     * @param request リクエスト
+     * @param body レスポンスのボディ
+     * @param error エラー
+     */
+    private void notifyResponse(final Request request, final String body, final Exception error) {
+        if (request.mCallback != null) {
+            request.mCallback.onResponse(body, error);
+        }
+    }
+
+    /**
+     * メソッドの送信間隔を取得する.
+     * @param method APIのメソッド名
+     * @return 送信間隔(ms)
+     */
+    private synchronized long getInterval(final String method) {
+        Long interval = mIntervals.get(method);
+        return interval == null ? DEFAULT_INTERVAL : interval;
+    }
+
+    /**
+     * Retry-Afterヘッダから待ち時間を取得する.
+     * @param con 接続
+     * @return 待ち時間(ms)
+     */
+    private static long getRetryAfter(final HttpURLConnection con) {
+        String value = con.getHeaderField("Retry-After");
+        if (value != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // 日付形式は使用されないので無視する
+            }
+        }
+        return DEFAULT_RETRY_AFTER;
+    }
+
+    /**
+     * Content-Lengthヘッダからサイズを取得する.
+     * @param con 接続
+     * @return サイズ. 不明な場合は-1
+     */
+    private static long getContentLength(final HttpURLConnection con) {
+        String value = con.getHeaderField("Content-Length");
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // サイズ不明として扱う
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * ストリームから文字列を読み込む.
+     * @param in ストリーム
+     * @return 文字列
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static String read(final InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * マルチパートのパラメータを書き込む.
+     * @param out 書き込み先
+     * @param name 名前
+     * @param value 値
+     * @throws IOException 書き込みに失敗した場合
+     */
+    private static void writeDisposition(final OutputStream out, final String name, final String value)
+            throws IOException {
+        writeAscii(out, "--" + BOUNDARY + "\r\n");
+        writeAscii(out, "Content-Disposition: form-data; name=\"" + escape(name) + "\"\r\n\r\n");
+        out.write(value == null ? new byte[0] : value.getBytes("UTF-8"));
+        writeAscii(out, "\r\n");
+    }
+
+    /**
+     * 文字列を書き込む.
+     * @param out 書き込み先
+     * @param str 文字列
+     * @throws IOException 書き込みに失敗した場合
+     */
+    private static void writeAscii(final OutputStream out, final String str) throws IOException {
+        out.write(str.getBytes("UTF-8"));
+    }
+
+    /**
+     * 文字列をエスケープ処理する.
+     * @param str 文字列
+     * @return 処理後の文字列
+     */
+    private static String escape(final String str) {
+        String ret = str.replace("\\", "\\\\");
+        return ret.replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ SlackDirectory.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.slackmessagehook.slack;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slackのチャンネル・IM・ユーザーの一覧をメモリ上に保持するクラス.
+ * <p>
+ * rtm.startや一覧取得APIの結果で一覧を読み込み、以降はRTMのイベントで差分を反映する。
+ * 読み込み前や無効化された後は {@link #isLoaded()} がfalseになるので、APIから取得し直すこと。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SlackDirectory {
+
+    /**
+     * 一覧の要素.
+     */
+    public static final class Entry {
+        /** ID. */
+        private final String mId;
+        /** 名前. IMの場合は相手のユーザーID. */
+        private final String mName;
+        /** アイコンのURL. */
+        private final String mIcon;
+
+        /**
+         * コンストラクタ.
+         * @param id ID
+         * @param name 名前
+         * @param icon アイコンのURL
+         */
+        public Entry(final String id, final String name, final String icon) {
+            mId = id;
+            mName = name;
+            mIcon = icon;
+        }
+
+        /**
+         * IDを取得する.
+         * @return ID
+         */
+        public String getId() {
+            return mId;
+        }
+
+        /**
+         * 名前を取得する.
+         * @return 名前
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * アイコンのURLを取得する.
+         * @return アイコンのURL
+         */
+        public String getIcon() {
+            return mIcon;
+        }
+    }
+
+    /** チャンネル一覧. */
+    private final Map<String, Entry> mChannels = new LinkedHashMap<>();
+
+    /** IM一覧. */
+    private final Map<String, Entry> mIms = new LinkedHashMap<>();
+
+    /** ユーザー一覧. */
+    private final Map<String, Entry> mUsers = new LinkedHashMap<>();
+
+    /** 一覧を読み込み済みの場合はtrue. */
+    private boolean mLoaded;
+
+    /**
+     * 一覧を読み込む.
+     * @param channels チャンネル一覧
+     * @param ims IM一覧
+     * @param users ユーザー一覧
+     */
+    public synchronized void load(final List<Entry> channels, final List<Entry> ims, final List<Entry> users) {
+        clear();
+        putAll(mChannels, channels);
+        putAll(mIms, ims);
+        putAll(mUsers, users);
+        mLoaded = true;
+    }
+
+    /**
+     * 一覧を読み込み済みか確認する.
+     * @return 読み込み済みの場合はtrue
+     */
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * 一覧を無効化する.
+     * <p>
+     * イベントから差分を反映できない変更があった場合に呼び出す。
+     * </p>
+     */
+    public synchronized void invalidate() {
+        mLoaded = false;
+    }
+
+    /**
+     * 一覧を破棄する.
+     */
+    public synchronized void clear() {
+        mChannels.clear();
+        mIms.clear();
+        mUsers.clear();
+        mLoaded = false;
+    }
+
+    /**
+     * チャンネルを追加・更新する.
+     * @param entry チャンネル
+     */
+    public synchronized void putChannel(final Entry entry) {
+        mChannels.put(entry.getId(), entry);
+    }
+
+    /**
+     * チャンネルを削除する.
+     * @param id チャンネルID
+     */
+    public synchronized void removeChannel(final String id) {
+        mChannels.remove(id);
+    }
+
+    /**
+     * IMを追加・更新する.
+     * @param entry IM
+     */
+    public synchronized void putIm(final Entry entry) {
+        mIms.put(entry.getId(), entry);
+    }
+
+    /**
+     * IMを削除する.
+     * @param id IMのID
+     */
+    public synchronized void removeIm(final String id) {
+        mIms.remove(id);
+    }
+
+    /**
+     * ユーザーを追加・更新する.
+     * @param entry ユーザー
+     */
+    public synchronized void putUser(final Entry entry) {
+        mUsers.put(entry.getId(), entry);
+    }
+
+    /**
+     * チャンネル一覧を取得する.
+     * @return チャンネル一覧
+     */
+    public synchronized List<Entry> getChannels() {
+        return new ArrayList<>(mChannels.values());
+    }
+
+    /**
+     * IM一覧を取得する.
+     * @return IM一覧
+     */
+    public synchronized List<Entry> getIms() {
+        return new ArrayList<>(mIms.values());
+    }
+
+    /**
+     * ユーザー一覧を取得する.
+     * @return ユーザー一覧
+     */
+    public synchronized List<Entry> getUsers() {
+        return new ArrayList<>(mUsers.values());
+    }
+
+    /**
+     * ユーザーを取得する.
+     * @param id ユーザーID
+     * @return ユーザー. 存在しない場合はnull
+     */
+    public synchronized Entry getUser(final String id) {
+        return mUsers.get(id);
+    }
+
+    /**
+     * チャンネル一覧とIM一覧を合成した一覧を取得する.
+     * <p>
+     * IMの名前とアイコンは相手のユーザーのものに置き換える。
+     * </p>
+     * @return チャンネルとIMの一覧
+     */
+    public synchronized List<Entry> getAllChannels() {
+        List<Entry> list = new ArrayList<>(mChannels.size() + mIms.size());
+        list.addAll(mChannels.values());
+        for (Entry im : mIms.values()) {
+            Entry user = mUsers.get(im.getName());
+            if (user != null) {
+                list.add(new Entry(im.getId(), user.getName(), user.getIcon()));
+            } else {
+                list.add(im);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 一覧に要素を追加する.
+     * @param map 追加先
+     * @param entries 追加する要素
+     */
+    private static void putAll(final Map<String, Entry> map, final List<Entry> entries) {
+        if (entries == null) {
+            return;
+        }
+        for (Entry entry : entries) {
+            map.put(entry.getId(), entry);
+        }
+    }
+}
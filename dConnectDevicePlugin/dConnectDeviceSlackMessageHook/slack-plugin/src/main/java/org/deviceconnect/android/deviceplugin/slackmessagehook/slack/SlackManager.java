@@ -6,8 +6,8 @@
  */
 package org.deviceconnect.android.deviceplugin.slackmessagehook.slack;
 
-import android.os.AsyncTask;
 import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.codebutler.android_websockets.WebSocketClient;
@@ -18,15 +18,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
@@ -35,7 +27,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
 
 
 /**
@@ -72,6 +64,12 @@ public class SlackManager {
     /** WebSocketのKeepAlive時間 */
     private static final int KEEPALIVE_SPAN = 5000;
 
+    /** 一覧取得・アップロードAPI(Tier 2: 20回/分)の送信間隔 */
+    private static final long TIER2_INTERVAL = 3000;
+
+    /** 履歴取得API(Tier 3: 50回/分)の送信間隔 */
+    private static final long TIER3_INTERVAL = 1200;
+
     /** SlackManagerの基底Exception */
     public abstract class SlackManagerException extends Exception {}
     /** APITokenが不正 */
@@ -90,6 +88,15 @@ public class SlackManager {
     /** SlackBotのApiToken */
     private String token = null;
 
+    /** SlackAPIクライアント */
+    private final SlackApiClient apiClient = new SlackApiClient(BASE_URL);
+
+    /** チャンネル・IM・ユーザー一覧のキャッシュ */
+    private final SlackDirectory directory = new SlackDirectory();
+
+    /** APIのコールバックを返すHandler */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     /** 処理完了コールバック */
     public interface FinishCallback<Result> {
         /**
@@ -153,6 +160,12 @@ public class SlackManager {
      * 初期化。シングルトンのためにprivate.
      */
     private SlackManager() {
+        apiClient.setInterval("channels.list", TIER2_INTERVAL);
+        apiClient.setInterval("im.list", TIER2_INTERVAL);
+        apiClient.setInterval("users.list", TIER2_INTERVAL);
+        apiClient.setInterval("files.upload", TIER2_INTERVAL);
+        apiClient.setInterval("channels.history", TIER3_INTERVAL);
+        apiClient.setInterval("im.history", TIER3_INTERVAL);
     }
 
     /** Botの情報を取得 */
@@ -206,6 +219,9 @@ public class SlackManager {
             return;
         }
         token = newToken;
+        apiClient.setToken(token);
+        // 別のチームの一覧を返さないようにキャッシュを破棄
+        directory.clear();
         // 接続
         if (needsConnect) {
             if (connectState > CONNECT_STATE_DISCONNECTING) {
@@ -286,7 +302,7 @@ public class SlackManager {
         }
 
         // 接続処理
-        new GetTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new TaskParam("rtm.start", "&simple_latest=True&no_unreads=True") {
+        callApi("rtm.start", "&simple_latest=True&no_unreads=True", new ApiCallback() {
             @Override
             public void callBack(JSONObject json) {
                 // rtm.startに失敗
@@ -312,15 +328,7 @@ public class SlackManager {
                         }
                         return;
                     }
-                    jsonUrl = json.getString("url");
-                    if (BuildConfig.DEBUG) Log.d(TAG, "url:"+jsonUrl);
-                    JSONObject selfJson = json.getJSONObject("self");
-                    botInfo.id = selfJson.getString("id");
-                    botInfo.name = selfJson.getString("name");
-                    JSONObject teamJson = json.getJSONObject("team");
-                    botInfo.teamName = teamJson.getString("name");
-                    botInfo.teamDomain = teamJson.getString("domain");
-                    if (BuildConfig.DEBUG) Log.d(TAG, "bot:" + botInfo.toString());
+                    jsonUrl = parseStartResponse(json);
                     connectWebSocket(URI.create(jsonUrl));
                 } catch (JSONException e) {
                     Log.e(TAG, "error", e);
@@ -568,6 +576,8 @@ public class SlackManager {
                                 callSendMsgFinishCallback(null, new SlackUnknownException(), handler);
                                 break;
                             default:
+                                // チャンネル・ユーザーの変更
+                                updateDirectory(type, json);
                         }
                     }
                     if (json.has("ok")) {
@@ -666,7 +676,7 @@ public class SlackManager {
         handler.postDelayed(new Runnable() {
             public void run() {
                 // 再接続処理
-                new GetTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new TaskParam("rtm.start", "&simple_latest=True&no_unreads=True") {
+                callApi("rtm.start", "&simple_latest=True&no_unreads=True", new ApiCallback() {
                     @Override
                     public void callBack(JSONObject json) {
                         // rtm.startに失敗
@@ -683,15 +693,7 @@ public class SlackManager {
                                 retry(_retryCount, handler, callback);
                                 return;
                             }
-                            jsonUrl = json.getString("url");
-                            if (BuildConfig.DEBUG) Log.d(TAG, "url:"+jsonUrl);
-                            JSONObject selfJson = json.getJSONObject("self");
-                            botInfo.id = selfJson.getString("id");
-                            botInfo.name = selfJson.getString("name");
-                            JSONObject teamJson = json.getJSONObject("team");
-                            botInfo.teamName = teamJson.getString("name");
-                            botInfo.teamDomain = teamJson.getString("domain");
-                            if (BuildConfig.DEBUG) Log.d(TAG, "bot:" + botInfo.toString());
+                            jsonUrl = parseStartResponse(json);
                             connectWebSocket(URI.create(jsonUrl));
                             // callback
                             callback.onFinish(true, null);
@@ -706,6 +708,74 @@ public class SlackManager {
         return true;
     }
 
+    /**
+     * rtm.startのレスポンスからBot情報と一覧を読み込む
+     * @param json rtm.startのレスポンス
+     * @return WebSocketの接続先
+     * @throws JSONException レスポンスが不正な場合
+     */
+    private String parseStartResponse(JSONObject json) throws JSONException {
+        String jsonUrl = json.getString("url");
+        if (BuildConfig.DEBUG) Log.d(TAG, "url:"+jsonUrl);
+        JSONObject selfJson = json.getJSONObject("self");
+        botInfo.id = selfJson.getString("id");
+        botInfo.name = selfJson.getString("name");
+        JSONObject teamJson = json.getJSONObject("team");
+        botInfo.teamName = teamJson.getString("name");
+        botInfo.teamDomain = teamJson.getString("domain");
+        if (BuildConfig.DEBUG) Log.d(TAG, "bot:" + botInfo.toString());
+
+        // 一覧をキャッシュ。以降はRTMのイベントで更新する
+        if (json.has("channels") && json.has("ims") && json.has("users")) {
+            List<SlackDirectory.Entry> channels = new ArrayList<>();
+            JSONArray channelArray = json.getJSONArray("channels");
+            for (int i = 0; i < channelArray.length(); i++) {
+                JSONObject obj = channelArray.getJSONObject(i);
+                if (!obj.optBoolean("is_archived")) {
+                    channels.add(toEntry(obj));
+                }
+            }
+            directory.load(channels, toEntries(json.getJSONArray("ims")), toEntries(json.getJSONArray("users")));
+        } else {
+            directory.invalidate();
+        }
+        return jsonUrl;
+    }
+
+    /**
+     * RTMのイベントを一覧のキャッシュに反映する
+     * @param type イベントの種類
+     * @param json イベント
+     * @throws JSONException イベントが不正な場合
+     */
+    private void updateDirectory(String type, JSONObject json) throws JSONException {
+        switch (type) {
+            case "channel_created":
+            case "channel_rename":
+                directory.putChannel(toEntry(json.getJSONObject("channel")));
+                break;
+            case "channel_deleted":
+            case "channel_archive":
+                directory.removeChannel(json.getString("channel"));
+                break;
+            case "channel_unarchive":
+                // チャンネル名がイベントに含まれないので取得し直す
+                directory.invalidate();
+                break;
+            case "im_created":
+                directory.putIm(toImEntry(json.getJSONObject("channel").getString("id"), json.getString("user")));
+                break;
+            case "im_open":
+                directory.putIm(toImEntry(json.getString("channel"), json.getString("user")));
+                break;
+            case "team_join":
+            case "user_change":
+                directory.putUser(toEntry(json.getJSONObject("user")));
+                break;
+            default:
+        }
+    }
+
     //endregion
     //---------------------------------------------------------------------------------------
     //region History
@@ -757,7 +827,7 @@ public class SlackManager {
             }
             return;
         }
-        new GetTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new TaskParam(target, params) {
+        callApi(target, params, new ApiCallback() {
             @Override
             public void callBack(JSONObject json) {
                 if (BuildConfig.DEBUG) Log.d(TAG, json.toString());
@@ -861,112 +931,24 @@ public class SlackManager {
      * @param handler Callbackを返すスレッド
      */
     public void getAllChannelList(final FinishCallback<List<ListInfo>> callback, final Handler handler) {
-        new Thread() {
+        if (BuildConfig.DEBUG) Log.d(TAG, "*getAllChannelList");
+        if (connectState == CONNECT_STATE_CONNECTED && directory.isLoaded()) {
+            // キャッシュから返す
+            List<ListInfo> resList = toListInfos(directory.getAllChannels());
+            callFinishCallback(callback, resList, null, handler != null ? handler : mainHandler);
+            return;
+        }
+        loadDirectory(new FinishCallback<Void>() {
             @Override
-            public void run() {
-                final CountDownLatch latch = new CountDownLatch(3);
-                final HashMap<String, ArrayList<ListInfo>> resMap = new HashMap<>();
-                final Exception[] err = new Exception[1];
-
-                // Channelリスト取得
-                getChannelList(new FinishCallback<ArrayList<ListInfo>>() {
-                    @Override
-                    public void onFinish(ArrayList<ListInfo> listInfos, Exception error) {
-                        if (error == null) {
-                            resMap.put("channel", listInfos);
-                        } else {
-                            err[0] = error;
-                            Log.e("slack", "err", error);
-                        }
-                        latch.countDown();
-                    }
-                });
-
-                // IMリスト取得
-                getIMList(new FinishCallback<ArrayList<ListInfo>>() {
-                    @Override
-                    public void onFinish(ArrayList<ListInfo> listInfos, Exception error) {
-                        if (error == null) {
-                            resMap.put("im", listInfos);
-                        } else {
-                            err[0] = error;
-                            Log.e("slack", "err", error);
-                        }
-                        latch.countDown();
-                    }
-                });
-
-                // ユーザーリスト取得
-                getUserList(new FinishCallback<ArrayList<ListInfo>>() {
-                    @Override
-                    public void onFinish(ArrayList<ListInfo> listInfos, Exception error) {
-                        if (error == null) {
-                            resMap.put("user", listInfos);
-                        } else {
-                            err[0] = error;
-                            Log.e("slack", "err", error);
-                        }
-                        latch.countDown();
-                    }
-                });
-
-                // 処理終了を待つ
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-
-                // 各情報を詰め替え
-                ArrayList<ListInfo> channels = resMap.get("channel");
-                ArrayList<ListInfo> ims = resMap.get("im");
-                ArrayList<ListInfo> users = resMap.get("user");
-                if (channels != null && ims != null && users != null) {
-                    final List<ListInfo> resList = new ArrayList<>();
-                    // Channel
-                    resList.addAll(channels);
-                    // UserをHashMapへ
-                    HashMap<String, ListInfo> userMap = new HashMap<>();
-                    for (ListInfo info : users) {
-                        userMap.put(info.id, info);
-                    }
-                    // IM
-                    for (ListInfo info : ims) {
-                        // UserIDからUserNameを取得
-                        ListInfo user = userMap.get(info.name);
-                        if (user != null) {
-                            info.name = user.name;
-                            info.icon = user.icon;
-                        }
-                        resList.add(info);
-                    }
-
-                    if (callback != null) {
-                        if (handler != null) {
-                            handler.post(new Runnable() {
-                                public void run() {
-                                    callback.onFinish(resList, null);
-                                }
-                            });
-                        } else {
-                            callback.onFinish(resList, null);
-                        }
-                    }
+            public void onFinish(Void v, Exception error) {
+                if (error == null) {
+                    List<ListInfo> resList = toListInfos(directory.getAllChannels());
+                    callFinishCallback(callback, resList, null, handler);
                 } else {
-                    if (callback != null) {
-                        if (handler != null) {
-                            handler.post(new Runnable() {
-                                public void run() {
-                                    callback.onFinish(null, err[0]);
-                                }
-                            });
-                        } else {
-                            callback.onFinish(null, err[0]);
-                        }
-                    }
+                    callFinishCallback(callback, null, error, handler);
                 }
             }
-        }.start();
+        });
     }
 
     /**
@@ -975,6 +957,10 @@ public class SlackManager {
      */
     public void getChannelList(final FinishCallback<ArrayList<ListInfo>> callback) {
         if (BuildConfig.DEBUG) Log.d(TAG, "*getChannelList");
+        if (connectState == CONNECT_STATE_CONNECTED && directory.isLoaded()) {
+            callFinishCallback(callback, toListInfos(directory.getChannels()), null, mainHandler);
+            return;
+        }
         getList("channels.list", "&exclude_archived=1", "channels", callback);
     }
 
@@ -984,6 +970,10 @@ public class SlackManager {
      */
     public void getIMList(final FinishCallback<ArrayList<ListInfo>> callback) {
         if (BuildConfig.DEBUG) Log.d(TAG, "*getIMList");
+        if (connectState == CONNECT_STATE_CONNECTED && directory.isLoaded()) {
+            callFinishCallback(callback, toListInfos(directory.getIms()), null, mainHandler);
+            return;
+        }
         getList("im.list", "", "ims",callback);
     }
 
@@ -993,9 +983,74 @@ public class SlackManager {
      */
     public void getUserList(final FinishCallback<ArrayList<ListInfo>> callback) {
         if (BuildConfig.DEBUG) Log.d(TAG, "*getUserList");
+        if (connectState == CONNECT_STATE_CONNECTED && directory.isLoaded()) {
+            callFinishCallback(callback, toListInfos(directory.getUsers()), null, mainHandler);
+            return;
+        }
         getList("users.list", "", "members", callback);
     }
 
+    /**
+     * Channel・IM・ユーザー一覧をAPIから取得してキャッシュする
+     * @param callback 完了コールバック
+     */
+    private void loadDirectory(final FinishCallback<Void> callback) {
+        final HashMap<String, List<SlackDirectory.Entry>> resMap = new HashMap<>();
+        final Exception[] err = new Exception[1];
+        final int[] remaining = {3};
+        final FinishCallback<Void> collected = new FinishCallback<Void>() {
+            @Override
+            public void onFinish(Void v, Exception error) {
+                // 全ての一覧の取得が終わるまで待つ
+                if (--remaining[0] > 0) {
+                    return;
+                }
+                List<SlackDirectory.Entry> channels = resMap.get("channel");
+                List<SlackDirectory.Entry> ims = resMap.get("im");
+                List<SlackDirectory.Entry> users = resMap.get("user");
+                if (channels != null && ims != null && users != null) {
+                    directory.load(channels, ims, users);
+                    callback.onFinish(null, null);
+                } else {
+                    callback.onFinish(null, err[0]);
+                }
+            }
+        };
+
+        // Channelリスト取得
+        fetchList("channels.list", "&exclude_archived=1", "channels", collect("channel", resMap, err, collected));
+        // IMリスト取得
+        fetchList("im.list", "", "ims", collect("im", resMap, err, collected));
+        // ユーザーリスト取得
+        fetchList("users.list", "", "members", collect("user", resMap, err, collected));
+    }
+
+    /**
+     * 一覧の取得結果を集めるコールバックを作成
+     * @param key 一覧の種類
+     * @param resMap 取得結果
+     * @param err エラー
+     * @param collected 取得が終わったことを通知するコールバック
+     * @return コールバック
+     */
+    private FinishCallback<List<SlackDirectory.Entry>> collect(final String key,
+                                                               final Map<String, List<SlackDirectory.Entry>> resMap,
+                                                               final Exception[] err,
+                                                               final FinishCallback<Void> collected) {
+        return new FinishCallback<List<SlackDirectory.Entry>>() {
+            @Override
+            public void onFinish(List<SlackDirectory.Entry> entries, Exception error) {
+                if (error == null) {
+                    resMap.put(key, entries);
+                } else {
+                    err[0] = error;
+                    Log.e(TAG, "err", error);
+                }
+                collected.onFinish(null, null);
+            }
+        };
+    }
+
     /**
      * 一覧取得ベース
      * @param target ターゲットAPI
@@ -1004,27 +1059,41 @@ public class SlackManager {
      * @param callback 取得コールバック
      */
     private void getList(String target, String params, final String listname, final FinishCallback<ArrayList<ListInfo>> callback) {
-        if (connectState != CONNECT_STATE_CONNECTED) {
-            if (callback != null) {
-                callback.onFinish(null, new SlackConnectionException());
+        fetchList(target, params, listname, new FinishCallback<List<SlackDirectory.Entry>>() {
+            @Override
+            public void onFinish(List<SlackDirectory.Entry> entries, Exception error) {
+                if (callback != null) {
+                    callback.onFinish(error == null ? toListInfos(entries) : null, error);
+                }
             }
+        });
+    }
+
+    /**
+     * 一覧をAPIから取得
+     * @param target ターゲットAPI
+     * @param params パラメータ
+     * @param listname リスト名
+     * @param callback 取得コールバック
+     */
+    private void fetchList(String target, String params, final String listname, final FinishCallback<List<SlackDirectory.Entry>> callback) {
+        if (connectState != CONNECT_STATE_CONNECTED) {
+            callback.onFinish(null, new SlackConnectionException());
             return;
         }
-        new GetTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new TaskParam(target, params) {
+        callApi(target, params, new ApiCallback() {
             @Override
             public void callBack(JSONObject json) {
                 if (BuildConfig.DEBUG && json != null) Log.d(TAG, json.toString());
 
                 if (json == null) {
-                    if (callback != null) {
-                        // Slackサーバーエラー
-                        callback.onFinish(null, new SlackConnectionException());
-                    }
+                    // Slackサーバーエラー
+                    callback.onFinish(null, new SlackConnectionException());
                     return;
                 }
 
                 try {
-                    if (json.has("error") && callback != null) {
+                    if (json.has("error")) {
                         connectState = CONNECT_STATE_DISCONNECTED;
                         String err = json.getString("error");
                         if (err.equals("invalid_auth") || err.equals("not_authed")) {
@@ -1036,137 +1105,163 @@ public class SlackManager {
                         }
                         return;
                     }
-                    JSONArray jsonArray = json.getJSONArray(listname);
-                    int length = jsonArray.length();
-                    ArrayList<ListInfo> array = new ArrayList<>(length);
-                    for (int i = 0; i < length; i++) {
-                        JSONObject obj = (JSONObject) jsonArray.get(i);
-                        ListInfo info = new ListInfo();
-                        if (obj.has("id")) {
-                            info.id = obj.getString("id");
-                        }
-                        if (obj.has("name")) {
-                            info.name = obj.getString("name");
-                        }
-                        if (obj.has("user")) {
-                            info.name = obj.getString("user");
-                        }
-                        /* RealNameいる？
-                        if (obj.has("real_name")) {
-                            String realName = obj.getString("real_name");
-                            if (!realName.isEmpty()) {
-                                info.name = realName;
-                            }
-                        }
-                        */
-                        if (obj.has("profile")) {
-                            JSONObject prof = obj.getJSONObject("profile");
-                            info.icon = prof.getString("image_192");
-                        }
-                        array.add(info);
-                    }
-                    if (callback != null) {
-                        callback.onFinish(array, null);
-                    }
+                    callback.onFinish(toEntries(json.getJSONArray(listname)), null);
                 } catch (JSONException e) {
                     Log.e(TAG, "error", e);
-                    if (callback != null) {
-                        callback.onFinish(null, e);
-                    }
+                    callback.onFinish(null, e);
                 }
             }
         });
     }
 
-
-    //endregion
-    //---------------------------------------------------------------------------------------
-    //region GetTask
+    /**
+     * JSONの一覧をキャッシュの要素に変換
+     * @param jsonArray 一覧
+     * @return 要素の一覧
+     * @throws JSONException 一覧が不正な場合
+     */
+    private List<SlackDirectory.Entry> toEntries(JSONArray jsonArray) throws JSONException {
+        int length = jsonArray.length();
+        List<SlackDirectory.Entry> array = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            array.add(toEntry(jsonArray.getJSONObject(i)));
+        }
+        return array;
+    }
 
     /**
-     * Get用Task用パラメータ
+     * Channel・IM・ユーザーのJSONをキャッシュの要素に変換
+     * @param obj Channel・IM・ユーザー
+     * @return 要素
+     * @throws JSONException JSONが不正な場合
      */
-    private class TaskParam {
-        protected String target;
-        protected String params;
-        protected URL resource;
-        protected String origin;
-        public void callBack(JSONObject json) {}
-        public TaskParam(String target, String params) {
-            this.target = target;
-            this.params = params;
+    private SlackDirectory.Entry toEntry(JSONObject obj) throws JSONException {
+        String id = null;
+        String name = null;
+        String icon = null;
+        if (obj.has("id")) {
+            id = obj.getString("id");
+        }
+        if (obj.has("name")) {
+            name = obj.getString("name");
         }
-        public TaskParam(String target, String params, URL resource, String origin) {
-            this.target = target;
-            this.params = params;
-            this.resource = resource;
-            this.origin = origin;
+        if (obj.has("user")) {
+            name = obj.getString("user");
         }
+        if (obj.has("profile")) {
+            JSONObject prof = obj.getJSONObject("profile");
+            icon = prof.optString("image_192", null);
+        }
+        return new SlackDirectory.Entry(id, name, icon);
     }
 
     /**
-     * Get用Task
+     * IMのキャッシュの要素を作成
+     * @param id IMのID
+     * @param user 相手のユーザーID
+     * @return 要素
      */
-    private class GetTask extends AsyncTask<TaskParam, Void, JSONObject> {
+    private SlackDirectory.Entry toImEntry(String id, String user) {
+        return new SlackDirectory.Entry(id, user, null);
+    }
 
-        /** パラメータ */
-        TaskParam param = null;
+    /**
+     * キャッシュの要素を受け渡し情報に変換
+     * @param entries 要素の一覧
+     * @return 受け渡し情報の一覧
+     */
+    private ArrayList<ListInfo> toListInfos(List<SlackDirectory.Entry> entries) {
+        ArrayList<ListInfo> array = new ArrayList<>(entries.size());
+        for (SlackDirectory.Entry entry : entries) {
+            ListInfo info = new ListInfo();
+            info.id = entry.getId();
+            info.name = entry.getName();
+            info.icon = entry.getIcon();
+            array.add(info);
+        }
+        return array;
+    }
 
+    /**
+     * 取得コールバックを呼ぶ
+     * @param callback コールバック
+     * @param result 結果
+     * @param e 例外
+     * @param handler Callbackを返すスレッド
+     */
+    private <T> void callFinishCallback(final FinishCallback<T> callback, final T result, final Exception e, Handler handler) {
+        if (callback == null) {
+            return;
+        }
+        if (handler == null) {
+            callback.onFinish(result, e);
+        } else {
+            handler.post(new Runnable() {
+                public void run() {
+                    callback.onFinish(result, e);
+                }
+            });
+        }
+    }
+
+
+    //endregion
+    //---------------------------------------------------------------------------------------
+    //region API
+
+    /**
+     * API呼び出し結果のコールバック
+     */
+    private interface ApiCallback {
         /**
-         * Background処理.
-         *
-         * @param params Params
+         * API呼び出しが完了した時にメインスレッドで呼ばれます.
+         * @param json レスポンス. 失敗した場合はnull
          */
-        @Override
-        protected JSONObject doInBackground(TaskParam... params) {
+        void callBack(JSONObject json);
+    }
 
-            HttpURLConnection con = null;
-            URL url;
-            InputStream stream = null;
-            JSONObject json = null;
-            param = params[0];
+    /**
+     * APIを呼び出す.
+     * <p>
+     * リクエストはメソッドごとにレート制限に合わせて送信される。
+     * </p>
+     * @param target ターゲットAPI
+     * @param params パラメータ
+     * @param callback コールバック
+     */
+    private void callApi(String target, String params, final ApiCallback callback) {
+        if (BuildConfig.DEBUG) Log.d(TAG, "api:" + target);
+        apiClient.get(target, params, new SlackApiClient.Callback() {
+            @Override
+            public void onResponse(String body, Exception error) {
+                postResponse(body, error, callback);
+            }
+        });
+    }
 
+    /**
+     * レスポンスをJSONに変換してメインスレッドでコールバックを呼ぶ
+     * @param body レスポンス
+     * @param error エラー
+     * @param callback コールバック
+     */
+    private void postResponse(String body, Exception error, final ApiCallback callback) {
+        JSONObject json = null;
+        if (error != null) {
+            Log.e(TAG, "error", error);
+        } else {
             try {
-                // 接続
-                url = new URL(BASE_URL + param.target + "?token=" + token + param.params);
-                con = (HttpURLConnection)url.openConnection();
-                con.setRequestMethod("GET");
-                con.setInstanceFollowRedirects(false);
-                con.connect();
-                stream = con.getInputStream();
-                if (BuildConfig.DEBUG) Log.d(TAG, "url:"+url.toString());
-
-                // レスポンス取得
-                BufferedReader streamReader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
-                StringBuilder responseStrBuilder = new StringBuilder();
-                String inputStr;
-                while ((inputStr = streamReader.readLine()) != null)
-                    responseStrBuilder.append(inputStr);
-
-                // Json
-                json = new JSONObject(responseStrBuilder.toString());
-
-            } catch (IOException | JSONException e) {
+                json = new JSONObject(body);
+            } catch (JSONException e) {
                 Log.e(TAG, "error", e);
-            } finally {
-                if (stream != null) {
-                    try {
-                        stream.close();
-                    } catch (IOException e) {
-                        Log.e(TAG, "stream close error", e);
-                    }
-                }
-                if (con != null) {
-                    con.disconnect();
-                }
             }
-            return json;
-        }
-
-        @Override
-        protected void onPostExecute(JSONObject json) {
-            param.callBack(json);
         }
+        final JSONObject result = json;
+        mainHandler.post(new Runnable() {
+            public void run() {
+                callback.callBack(result);
+            }
+        });
     }
 
 
@@ -1176,6 +1271,9 @@ public class SlackManager {
 
     /**
      * Slackにファイルをアップロード.
+     * <p>
+     * リソースはメモリに溜めずにSlackへ転送する。
+     * </p>
      * @param msg コメント
      * @param channel チャンネル
      * @param url リソースURL
@@ -1188,9 +1286,14 @@ public class SlackManager {
             }
             return;
         }
-        new UploadFileTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new TaskParam(channel, msg, url, orign) {
+        Map<String, String> headers = new HashMap<>();
+        if (orign != null) {
+            headers.put(DConnectMessage.HEADER_GOTAPI_ORIGIN, orign);
+        }
+        final ApiCallback apiCallback = new ApiCallback() {
             @Override
             public void callBack(JSONObject json) {
+                if (BuildConfig.DEBUG && json != null) Log.d(TAG, json.toString());
                 if (callback != null) {
                     SlackManagerException exception = null;
                     if (json == null) {
@@ -1207,6 +1310,12 @@ public class SlackManager {
                     callback.onFinish(json, exception);
                 }
             }
+        };
+        apiClient.upload(channel, msg, url, headers, new SlackApiClient.Callback() {
+            @Override
+            public void onResponse(String body, Exception error) {
+                postResponse(body, error, apiCallback);
+            }
         });
     }
 
@@ -1219,167 +1328,6 @@ public class SlackManager {
     public void uploadFile(String msg, String channel, URL url, String orign) {
         uploadFile(msg, channel, url, orign, null);
     }
-
-    /**
-     * ファイルアップロード用Task
-     */
-    private class UploadFileTask extends AsyncTask<TaskParam, Void, JSONObject> {
-
-        /** パラメータ */
-        TaskParam param = null;
-
-        /**
-         * Background処理.
-         *
-         * @param params Params
-         */
-        @Override
-        protected JSONObject doInBackground(TaskParam... params) {
-
-            HttpURLConnection con1 = null;
-            HttpURLConnection con2 = null;
-            BufferedInputStream stream1 = null;
-            DataOutputStream stream2 = null;
-            BufferedReader streamReader = null;
-            JSONObject json = null;
-            param = params[0];
-
-            try {
-                // リソース取得
-                URL url = param.resource;
-                con1 = (HttpURLConnection)url.openConnection();
-                con1.setInstanceFollowRedirects(true);
-                con1.setRequestProperty(DConnectMessage.HEADER_GOTAPI_ORIGIN, param.origin);
-
-                con1.connect();
-                stream1 = new BufferedInputStream(con1.getInputStream());
-
-                // Slack接続
-                url = new URL(BASE_URL + "files.upload");
-                con2 = (HttpURLConnection)url.openConnection();
-                con2.setRequestMethod("POST");
-                con2.setInstanceFollowRedirects(false);
-                con2.setDoOutput(true);
-                con2.setRequestProperty("Accept-Charset", "UTF-8");
-                con2.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
-                BufferedOutputStream bo = new BufferedOutputStream(con2.getOutputStream());
-                stream2 = new DataOutputStream(bo);
-
-                // パラメータ設定
-                addDisposition(stream2, "token", token);
-                addDisposition(stream2, "channels", param.target);
-                if (param.params != null) {
-                    addDisposition(stream2, "initial_comment", param.params);
-                }
-                addData(stream2, stream1, "file", param.resource.getFile());
-                addEnd(stream2);
-                stream2.flush();
-
-                // 接続
-                con2.connect();
-
-                // レスポンス取得
-                streamReader = new BufferedReader(new InputStreamReader(con2.getInputStream(), "UTF-8"));
-                StringBuilder responseStrBuilder = new StringBuilder();
-                String inputStr;
-                while ((inputStr = streamReader.readLine()) != null)
-                    responseStrBuilder.append(inputStr);
-
-                // Json
-                json = new JSONObject(responseStrBuilder.toString());
-                if (BuildConfig.DEBUG) Log.d(TAG, responseStrBuilder.toString());
-
-
-            } catch (IOException | JSONException e) {
-                Log.e(TAG, "error", e);
-            } finally {
-                if (streamReader != null) {
-                    try {
-                        streamReader.close();
-                    } catch (IOException e) {
-                        Log.e(TAG, "stream close error", e);
-                    }
-                }
-                if (stream2 != null) {
-                    try {
-                        stream2.close();
-                    } catch (IOException e) {
-                        Log.e(TAG, "stream close error", e);
-                    }
-                }
-                if (stream1 != null) {
-                    try {
-                        stream1.close();
-                    } catch (IOException e) {
-                        Log.e(TAG, "stream close error", e);
-                    }
-                }
-                if (con2 != null) {
-                    con2.disconnect();
-                }
-                if (con1 != null) {
-                    con1.disconnect();
-                }
-            }
-            return json;
-        }
-
-        @Override
-        protected void onPostExecute(JSONObject json) {
-            param.callBack(json);
-        }
-
-        /** 区切り文字 */
-        private static final String BOUNDARY = "==================================";
-
-        /**
-         * パラメータ追加
-         * @param os OutputStream
-         * @param name 名前
-         * @param value 値
-         * @throws IOException 例外
-         */
-        private void addDisposition(DataOutputStream os, String name, String value) throws IOException {
-            name = escape(name);
-            os.writeBytes("--" + BOUNDARY + "\r\n");
-            os.writeBytes("Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n");
-            byte[] bytes = value.getBytes();
-            for (int i=0;i<bytes.length;i++){
-                os.writeByte(bytes[i]);
-            }
-            os.writeBytes("\r\n");
-        }
-
-        /**
-         * バイナリデータを追加
-         * @param os OutputStream
-         * @param is InputStream
-         * @param name 名前
-         * @param filename ファイル名
-         * @throws IOException 例外
-         */
-        private void  addData(DataOutputStream os, InputStream is, String name, String filename) throws IOException {
-            filename = escape(filename);
-            os.writeBytes("--" + BOUNDARY + "\r\n");
-            os.writeBytes("Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n");
-            os.writeBytes("Content-Type: application/octet-stream\r\n\r\n");
-            // リソースを書き出し
-            int c;
-            while ((c = is.read()) >= 0) {
-                os.write(c);
-            }
-            os.writeBytes("\n");
-        }
-
-        /**
-         * 終了文字を追加
-         * @param os OutputStream
-         * @throws IOException 例外
-         */
-        private void addEnd(DataOutputStream os) throws IOException {
-            os.writeBytes("--" + BOUNDARY + "--\r\n");
-        }
-    }
     //endregion
     //---------------------------------------------------------------------------------------
 }
@@ -0,0 +1,377 @@
+/*
+ SlackApiClientTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.slackmessagehook.slack;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ローカルの模擬Slackサーバを使用した SlackApiClient のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class SlackApiClientTest {
+
+    /** 取得元のデータの分割数. */
+    private static final int SOURCE_CHUNKS = 10;
+
+    /** 取得元のデータの分割サイズ. */
+    private static final int SOURCE_CHUNK_SIZE = 32 * 1024;
+
+    /** 取得元のデータを送信する間隔(ms). */
+    private static final long SOURCE_DELAY = 50;
+
+    /**
+     * API呼び出しの結果.
+     */
+    private static class Result implements SlackApiClient.Callback {
+        final CountDownLatch mLatch = new CountDownLatch(1);
+        String mBody;
+        Exception mError;
+
+        @Override
+        public void onResponse(final String body, final Exception error) {
+            mBody = body;
+            mError = error;
+            mLatch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(mLatch.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /** 模擬Slackサーバ. */
+    private HttpServer mServer;
+
+    /** サーバのスレッド. */
+    private ExecutorService mServerExecutor;
+
+    /** テスト対象. */
+    private SlackApiClient mClient;
+
+    /** サーバのURL. */
+    private String mServerUrl;
+
+    /** リクエストを受信した時刻(ns). */
+    private final List<Long> mRequestTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+    /** リクエストされたメソッド. */
+    private final List<String> mRequestMethods = Collections.synchronizedList(new ArrayList<String>());
+
+    /** HTTP 429を返却する回数. */
+    private final AtomicInteger mRateLimitCount = new AtomicInteger();
+
+    /** HTTP 429で返却するRetry-After(秒). */
+    private volatile String mRetryAfter = "1";
+
+    /** files.uploadで最初のデータを受信した時刻(ns). */
+    private final AtomicLong mUploadFirstByteTime = new AtomicLong();
+
+    /** 取得元が全てのデータを送信し終えた時刻(ns). */
+    private final AtomicLong mSourceFinishTime = new AtomicLong();
+
+    /** files.uploadで受信したボディ. */
+    private volatile byte[] mUploadBody;
+
+    /** files.uploadで受信したヘッダ. */
+    private volatile String mUploadLength;
+
+    /** files.uploadで受信したTransfer-Encoding. */
+    private volatile String mUploadEncoding;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServerExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mServerExecutor);
+        mServer.createContext("/api/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                String method = exchange.getRequestURI().getPath().substring("/api/".length());
+                if ("files.upload".equals(method)) {
+                    handleUpload(exchange);
+                    return;
+                }
+                mRequestTimes.add(System.nanoTime());
+                mRequestMethods.add(method);
+                if (mRateLimitCount.getAndDecrement() > 0) {
+                    exchange.getResponseHeaders().add("Retry-After", mRetryAfter);
+                    respond(exchange, 429, "{\"ok\":false,\"error\":\"ratelimited\"}");
+                } else {
+                    respond(exchange, 200, "{\"ok\":true,\"method\":\"" + method + "\"}");
+                }
+            }
+        });
+        mServer.createContext("/source/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                boolean fixed = exchange.getRequestURI().getPath().endsWith("fixed.bin");
+                exchange.sendResponseHeaders(200, fixed ? (long) SOURCE_CHUNKS * SOURCE_CHUNK_SIZE : 0);
+                OutputStream out = exchange.getResponseBody();
+                for (int i = 0; i < SOURCE_CHUNKS; i++) {
+                    if (i > 0) {
+                        sleep(SOURCE_DELAY);
+                    }
+                    out.write(sourceChunk(i));
+                    out.flush();
+                }
+                mSourceFinishTime.set(System.nanoTime());
+                out.close();
+            }
+        });
+        mServer.start();
+        mServerUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+        mClient = new SlackApiClient(mServerUrl + "/api/");
+        mClient.setToken("xoxb-test");
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+    }
+
+    private void handleUpload(final HttpExchange exchange) throws IOException {
+        mUploadLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        mUploadEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            if (body.size() == 0) {
+                mUploadFirstByteTime.set(System.nanoTime());
+            }
+            body.write(buffer, 0, len);
+        }
+        mUploadBody = body.toByteArray();
+        respond(exchange, 200, "{\"ok\":true}");
+    }
+
+    private static void respond(final HttpExchange exchange, final int code, final String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private static byte[] sourceChunk(final int index) {
+        byte[] chunk = new byte[SOURCE_CHUNK_SIZE];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) (index * 31 + i);
+        }
+        return chunk;
+    }
+
+    private static byte[] sourceData() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < SOURCE_CHUNKS; i++) {
+            byte[] chunk = sourceChunk(i);
+            out.write(chunk, 0, chunk.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void sleep(final long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int indexOf(final byte[] data, final byte[] target) {
+        outer:
+        for (int i = 0; i <= data.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (data[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private long gapMillis(final int index) {
+        return TimeUnit.NANOSECONDS.toMillis(mRequestTimes.get(index) - mRequestTimes.get(index - 1));
+    }
+
+    @Test
+    public void requestsOfSameMethodAreSpaced() throws Exception {
+        mClient.setInterval("users.list", 200);
+        mClient.setInterval("im.list", 200);
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Result result = new Result();
+            mClient.get("users.list", "", result);
+            results.add(result);
+        }
+        Result im = new Result();
+        mClient.get("im.list", "", im);
+        for (Result result : results) {
+            result.await();
+            assertNull(result.mError);
+            assertTrue(result.mBody.contains("users.list"));
+        }
+        im.await();
+
+        List<Long> userTimes = new ArrayList<>();
+        synchronized (mRequestTimes) {
+            for (int i = 0; i < mRequestMethods.size(); i++) {
+                if ("users.list".equals(mRequestMethods.get(i))) {
+                    userTimes.add(mRequestTimes.get(i));
+                }
+            }
+            // 別のメソッドは待たされない
+            assertTrue(mRequestMethods.indexOf("im.list") < 2);
+        }
+        assertEquals(5, userTimes.size());
+        for (int i = 1; i < userTimes.size(); i++) {
+            long gap = TimeUnit.NANOSECONDS.toMillis(userTimes.get(i) - userTimes.get(i - 1));
+            assertTrue("gap=" + gap, gap >= 190);
+        }
+    }
+
+    @Test
+    public void retryAfterIsHonored() throws Exception {
+        mClient.setInterval("channels.list", 0);
+        mRateLimitCount.set(1);
+        Result result = new Result();
+        mClient.get("channels.list", "&exclude_archived=1", result);
+        result.await();
+
+        assertNull(result.mError);
+        assertTrue(result.mBody.contains("\"ok\":true"));
+        assertEquals(2, mRequestTimes.size());
+        long gap = gapMillis(1);
+        System.out.println(String.format(Locale.US, "retry after 429: %dms", gap));
+        assertTrue("gap=" + gap, gap >= 950);
+        assertEquals(1, mClient.getRateLimitedCount());
+    }
+
+    @Test
+    public void rateLimitPausesQueuedRequests() throws Exception {
+        mClient.setInterval("im.history", 0);
+        mRateLimitCount.set(1);
+        Result first = new Result();
+        Result second = new Result();
+        mClient.get("im.history", "&channel=D1", first);
+        mClient.get("im.history", "&channel=D2", second);
+        first.await();
+        second.await();
+
+        // 429の後はRetry-Afterが経過するまで同じメソッドを送信しない
+        assertEquals(3, mRequestTimes.size());
+        assertTrue(gapMillis(1) >= 950);
+        assertNull(first.mError);
+        assertNull(second.mError);
+    }
+
+    @Test
+    public void givesUpAfterRepeatedRateLimits() throws Exception {
+        mClient.setInterval("users.list", 0);
+        mRetryAfter = "0";
+        mRateLimitCount.set(100);
+        Result result = new Result();
+        mClient.get("users.list", "", result);
+        result.await();
+
+        assertNull(result.mBody);
+        assertTrue(result.mError instanceof IOException);
+        assertEquals(4, mRequestTimes.size());
+    }
+
+    @Test
+    public void uploadStreamsKnownLengthSource() throws Exception {
+        Result result = new Result();
+        long start = System.nanoTime();
+        mClient.upload("C1", "hello", new URL(mServerUrl + "/source/fixed.bin"), null, result);
+        result.await();
+
+        assertNull(result.mError);
+        assertNotNull(mUploadBody);
+        assertNull(mUploadEncoding);
+        assertEquals(String.valueOf(mUploadBody.length), mUploadLength);
+        System.out.println(String.format(Locale.US,
+                "upload (fixed length): first byte at %dms, source finished at %dms",
+                TimeUnit.NANOSECONDS.toMillis(mUploadFirstByteTime.get() - start),
+                TimeUnit.NANOSECONDS.toMillis(mSourceFinishTime.get() - start)));
+        // 取得元の読み込みが終わる前にSlackへの送信が始まっている
+        assertTrue(mUploadFirstByteTime.get() < mSourceFinishTime.get());
+        assertMultipart(mUploadBody, "hello");
+    }
+
+    @Test
+    public void uploadStreamsUnknownLengthSourceChunked() throws Exception {
+        Result result = new Result();
+        mClient.upload("C1", null, new URL(mServerUrl + "/source/chunked.bin"), null, result);
+        result.await();
+
+        assertNull(result.mError);
+        assertNotNull(mUploadBody);
+        assertEquals("chunked", mUploadEncoding);
+        assertTrue(mUploadFirstByteTime.get() < mSourceFinishTime.get());
+        assertMultipart(mUploadBody, null);
+    }
+
+    @Test
+    public void uploadReportsSourceError() throws Exception {
+        Result result = new Result();
+        mClient.upload("C1", null, new URL(mServerUrl + "/missing/file.bin"), null, result);
+        result.await();
+
+        assertNull(result.mBody);
+        assertNotNull(result.mError);
+        assertNull(mUploadBody);
+    }
+
+    private void assertMultipart(final byte[] body, final String comment) throws IOException {
+        String text = new String(body, "ISO-8859-1");
+        assertTrue(text.contains("name=\"token\"\r\n\r\nxoxb-test\r\n"));
+        assertTrue(text.contains("name=\"channels\"\r\n\r\nC1\r\n"));
+        assertEquals(comment != null, text.contains("name=\"initial_comment\""));
+        assertTrue(text.endsWith("\r\n--==================================--\r\n"));
+
+        byte[] data = sourceData();
+        byte[] header = "Content-Type: application/octet-stream\r\n\r\n".getBytes("UTF-8");
+        int offset = indexOf(body, header) + header.length;
+        byte[] file = new byte[data.length];
+        System.arraycopy(body, offset, file, 0, file.length);
+        assertArrayEquals(data, file);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ SlackDirectoryTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.slackmessagehook.slack;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SlackDirectory のテスト.
+ * <p>
+ * RTMのイベントを受信した時に SlackManager が行う更新を再現する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SlackDirectoryTest {
+
+    /** テスト対象. */
+    private SlackDirectory mDirectory;
+
+    @Before
+    public void setUp() {
+        mDirectory = new SlackDirectory();
+        mDirectory.load(
+                Arrays.asList(entry("C1", "general"), entry("C2", "random")),
+                Arrays.asList(entry("D1", "U1")),
+                Arrays.asList(new SlackDirectory.Entry("U1", "alice", "http://example.com/alice.png"),
+                        entry("U2", "bob")));
+    }
+
+    private static SlackDirectory.Entry entry(final String id, final String name) {
+        return new SlackDirectory.Entry(id, name, null);
+    }
+
+    private static List<String> names(final List<SlackDirectory.Entry> entries) {
+        List<String> names = new ArrayList<>();
+        for (SlackDirectory.Entry entry : entries) {
+            names.add(entry.getId() + ":" + entry.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void imIsResolvedToUser() {
+        assertTrue(mDirectory.isLoaded());
+        List<SlackDirectory.Entry> all = mDirectory.getAllChannels();
+        assertEquals(Arrays.asList("C1:general", "C2:random", "D1:alice"), names(all));
+        assertEquals("http://example.com/alice.png", all.get(2).getIcon());
+        // IM一覧は相手のユーザーIDのまま
+        assertEquals("U1", mDirectory.getIms().get(0).getName());
+    }
+
+    @Test
+    public void channelEventsUpdateList() {
+        // channel_created
+        mDirectory.putChannel(entry("C3", "new-channel"));
+        // channel_rename
+        mDirectory.putChannel(entry("C1", "announce"));
+        // channel_archive
+        mDirectory.removeChannel("C2");
+
+        assertEquals(Arrays.asList("C1:announce", "C3:new-channel"), names(mDirectory.getChannels()));
+        assertTrue(mDirectory.isLoaded());
+    }
+
+    @Test
+    public void userAndImEventsUpdateList() {
+        // team_join
+        mDirectory.putUser(entry("U3", "carol"));
+        // im_created
+        mDirectory.putIm(entry("D3", "U3"));
+        // user_change
+        mDirectory.putUser(entry("U1", "alice2"));
+
+        assertEquals(Arrays.asList("C1:general", "C2:random", "D1:alice2", "D3:carol"),
+                names(mDirectory.getAllChannels()));
+        assertNull(mDirectory.getUser("U1").getIcon());
+    }
+
+    @Test
+    public void unknownImUserKeepsId() {
+        mDirectory.putIm(entry("D9", "U9"));
+        List<SlackDirectory.Entry> all = mDirectory.getAllChannels();
+        assertEquals("D9:U9", names(all).get(all.size() - 1));
+    }
+
+    @Test
+    public void invalidateAndClear() {
+        mDirectory.invalidate();
+        assertFalse(mDirectory.isLoaded());
+        assertEquals(2, mDirectory.getChannels().size());
+
+        mDirectory.clear();
+        assertFalse(mDirectory.isLoaded());
+        assertTrue(mDirectory.getAllChannels().isEmpty());
+    }
+
+    @Test
+    public void returnedListsAreCopies() {
+        List<SlackDirectory.Entry> channels = mDirectory.getChannels();
+        channels.clear();
+        assertEquals(2, mDirectory.getChannels().size());
+    }
+}
@@ -28,7 +28,10 @@ import org.deviceconnect.android.deviceplugin.smartmeter.param.WiSunDevice;
 import org.deviceconnect.android.deviceplugin.smartmeter.profiles.SmartMeterDeviceProfile;
 import org.deviceconnect.android.deviceplugin.smartmeter.profiles.SmartMeterPowerMeterProfile;
 import org.deviceconnect.android.deviceplugin.smartmeter.profiles.SmartMeterSystemProfile;
+import org.deviceconnect.android.deviceplugin.smartmeter.util.ENLRequestScheduler;
 import org.deviceconnect.android.deviceplugin.smartmeter.util.ENLUtil;
+import org.deviceconnect.android.deviceplugin.smartmeter.util.IntegratedPowerHistory;
+import org.deviceconnect.android.deviceplugin.smartmeter.util.IntegratedPowerStore;
 import org.deviceconnect.android.deviceplugin.smartmeter.util.PrefUtil;
 import org.deviceconnect.android.message.DConnectMessageService;
 import org.deviceconnect.android.message.MessageUtils;
@@ -37,6 +40,7 @@ import org.deviceconnect.android.service.DConnectService;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -45,6 +49,7 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.deviceconnect.android.profile.DConnectProfile.setResult;
 
@@ -76,6 +81,24 @@ public class SmartMeterMessageService extends DConnectMessageService {
     WiSunDevice mWiSunDevice = new WiSunDevice();
     /** ECHONET Lite Utility Class. */
     ENLUtil mENLUtil = new ENLUtil();
+    /** ECHONET Lite 要求の送信、タイムアウト処理用スケジューラ. */
+    private final ScheduledExecutorService mRequestExecutor = Executors.newSingleThreadScheduledExecutor();
+    /** プロパティ取得要求スケジューラ. */
+    private final ENLRequestScheduler mRequestScheduler = new ENLRequestScheduler(mENLUtil, mRequestExecutor,
+            new ENLRequestScheduler.Transport() {
+                @Override
+                public void send(final byte[] packet) {
+                    sendEchonetLitePacket(packet);
+                }
+            });
+    /** 積算電力量計測値履歴取得. */
+    private final IntegratedPowerHistory mIntegratedPowerHistory = new IntegratedPowerHistory(mENLUtil, mRequestExecutor,
+            new ENLRequestScheduler.Transport() {
+                @Override
+                public void send(final byte[] packet) {
+                    sendEchonetLitePacket(packet);
+                }
+            }, mRequestScheduler);
     /** USBシリアルデバイスリスト. */
     ArrayList<UsbSerialDevice> mUsbSerialDevices = new ArrayList<>();
     /** ペアリング応答返信先Intent. */
@@ -106,6 +129,14 @@ public class SmartMeterMessageService extends DConnectMessageService {
         startSearchUSBSerialDeviceThread();
     }
 
+    @Override
+    public void onDestroy() {
+        mRequestScheduler.clear();
+        mIntegratedPowerHistory.clear();
+        mRequestExecutor.shutdownNow();
+        super.onDestroy();
+    }
+
     @Override
     protected SystemProfile getSystemProfile() {
         return new SmartMeterSystemProfile();
@@ -536,6 +567,10 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * USBシリアルデバイスクローズ.
      */
     private void closeDevice() {
+        // 応答が得られなくなるため、取得要求を破棄する.
+        mRequestScheduler.clear();
+        mIntegratedPowerHistory.clear();
+
         Iterator<UsbSerialDevice> index = mUsbSerialDevices.iterator();
 
         while (index.hasNext()) {
@@ -1023,6 +1058,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
                     mPairingResponse = null;
                     mSequenceState = 0;
                     mExecCommand = BP35C2.Command.NONE;
+                    mIntegratedPowerHistory.clear();
                     break;
                 default:
                     byte[] cmd;
@@ -1076,14 +1112,15 @@ public class SmartMeterMessageService extends DConnectMessageService {
                                 }
                                 mPairngServiceId = null;
                                 mPairingResponse = null;
-                            } else if (sequenceGetInstantaneousPowerProcess != 0) {
-                                getInstantaneousPowerProcess(data);
-                            } else if (sequenceGetInstantaneousCurrentProcess != 0) {
-                                getInstantaneousCurrentProcess(data);
-                            } else if (sequenceGetDayDataProcess != 0) {
-                                getDayDataProcess(data);
-                            } else if (sequenceGetOperationStatusProcess != 0) {
-                                getOperationStatusProcess(data);
+                                startIntegratedPowerBackfill();
+                            } else if (mRequestScheduler.onReceive(enlData)) {
+                                if (DEBUG) {
+                                    Log.i(TAG, "  TID = " + ENLUtil.getTransactionId(enlData) + " : property response.");
+                                }
+                            } else if (mIntegratedPowerHistory.onReceive(enlData)) {
+                                if (DEBUG) {
+                                    Log.i(TAG, "  TID = " + ENLUtil.getTransactionId(enlData) + " : history response.");
+                                }
                             }
                         }
                     }
@@ -1092,81 +1129,56 @@ public class SmartMeterMessageService extends DConnectMessageService {
         }
     }
 
-    /** 動作状態取得シーケンス管理用. */
-    private int sequenceGetOperationStatusProcess = 0;
-    /** 動作状態応答用Intent. */
-    private Intent mGetOperationStatusResponse;
-
     /**
-     * 動作状態取得.
-     * @param response レスポンス設定用Intent.
+     * ECHONET Lite パケットをスマートメーターへ送信する.
+     * @param enlCmd ECHONET Lite 要求パケット.
      */
-    public void getOperationStatus(final Intent response) {
-        mGetOperationStatusResponse = response;
-        sequenceGetOperationStatusProcess = 1;
-        getOperationStatusProcess(null);
+    private void sendEchonetLitePacket(final byte[] enlCmd) {
+        String command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
+        byte[] cmd = command.getBytes();
+        ByteBuffer sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
+        sendCmd.put(cmd);
+        sendCmd.put(enlCmd);
+        mExecCommand = BP35C2.Command.SEND_TO;
+        SendMessage(sendCmd.array());
     }
 
     /**
-     * 動作状態取得処理.
-     * @param data シリアル受信データ.
+     * 動作状態取得.
+     * @param response レスポンス設定用Intent.
      */
-    public void getOperationStatusProcess(final byte[] data) {
-        byte[] enlData;
-        int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
-
-        switch (sequenceGetOperationStatusProcess) {
-            case 1:
-                // 動作状態取得.
-                enlCmd = mENLUtil.makeEchonetLitePacket("GET_80", null);
-                command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                cmd = command.getBytes();
-                sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                sendCmd.put(cmd);
-                sendCmd.put(enlCmd);
-                mExecCommand = BP35C2.Command.SEND_TO;
-                SendMessage(sendCmd.array());
-                sequenceGetOperationStatusProcess++;
-                break;
-            case 2:
+    public void getOperationStatus(final Intent response) {
+        mRequestScheduler.request(0x80, new ENLRequestScheduler.Callback() {
+            @Override
+            public void onResult(final ENLUtil.ResultData resultData) {
                 int operationStatus;
-                enlData = mENLUtil.convertHex2Bin(data);
-                esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_GET_RES) {
-                    // 正常応答.
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
-                    for (ENLUtil.ResultData resultData : rd) {
-                        if (resultData.mEpc == 0x80 && resultData.mPdc == 1) {
-                            // 動作状態保存.
-                            operationStatus = (resultData.mEdt[0] & 0xFF);
-                        } else {
-                            operationStatus = 0xFF;
-                        }
-                        resultOperationStatus(operationStatus);
-                    }
-                } else if (esv == ENLUtil.ESV_GET_SNA) {
+                if (resultData.mPdc == 1) {
+                    // 動作状態保存.
+                    operationStatus = (resultData.mEdt[0] & 0xFF);
+                } else {
                     // 不可応答.
                     operationStatus = 0xFF;
-                    resultOperationStatus(operationStatus);
-                } else {
-                    break;
                 }
-                break;
-        }
+                resultOperationStatus(operationStatus, response);
+            }
+
+            @Override
+            public void onFailure() {
+                MessageUtils.setTimeoutError(response);
+                sendResponse(response);
+            }
+        });
     }
 
     /**
      * 動作状態を要求元へ返却する.
      * @param operationStatus 動作状態.
+     * @param response レスポンス設定用Intent.
      */
-    public void resultOperationStatus(final int operationStatus) {
+    public void resultOperationStatus(final int operationStatus, final Intent response) {
         String strOperationStatus;
-        setResult(mGetOperationStatusResponse, DConnectMessage.RESULT_OK);
-        Bundle root = mGetOperationStatusResponse.getExtras();
+        setResult(response, DConnectMessage.RESULT_OK);
+        Bundle root = response.getExtras();
         switch (operationStatus) {
             case 0x31:
                 strOperationStatus = "OFF";
@@ -1181,18 +1193,10 @@ public class SmartMeterMessageService extends DConnectMessageService {
 
         // 動作状態データ設定.
         root.putString("powerstatus", strOperationStatus);
-        mGetOperationStatusResponse.putExtras(root);
-        sendResponse(mGetOperationStatusResponse);
-        sequenceGetOperationStatusProcess = 0;
+        response.putExtras(root);
+        sendResponse(response);
     }
 
-    /** 瞬時電力量取得シーケンス管理用. */
-    private int sequenceGetInstantaneousPowerProcess = 0;
-    /** 変換単位保存用. */
-    private String mGetInstantaneousPowerUnit = null;
-    /** 瞬時電流量応答用Intent. */
-    private Intent mInstantaneousPowerResponse;
-
     /** オーバーフロー判定値(32bit). */
     final int DEF_INT_OVERFLOW = 0x7FFFFFFF;
     /** アンダーフロー判定値(32bit). */
@@ -1206,94 +1210,58 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param response レスポンス設定用Intent.
      */
     public void getInstantaneousPower(final String unit, final Intent response) {
-        mGetInstantaneousPowerUnit = unit;
-        mInstantaneousPowerResponse = response;
-        sequenceGetInstantaneousPowerProcess = 1;
-        getInstantaneousPowerProcess(null);
-    }
-
-    /**
-     * 瞬時電力量取得処理.
-     * @param data シリアル受信データ.
-     */
-    public void getInstantaneousPowerProcess(final byte[] data) {
-        byte[] enlData;
-        int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
-
-        switch (sequenceGetInstantaneousPowerProcess) {
-            case 1:
-                // 瞬時電力計測値取得.
-                enlCmd = mENLUtil.makeEchonetLitePacket("GET_E7", null);
-                command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                cmd = command.getBytes();
-                sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                sendCmd.put(cmd);
-                sendCmd.put(enlCmd);
-                mExecCommand = BP35C2.Command.SEND_TO;
-                SendMessage(sendCmd.array());
-                sequenceGetInstantaneousPowerProcess++;
-                break;
-            case 2:
+        mRequestScheduler.request(0xE7, new ENLRequestScheduler.Callback() {
+            @Override
+            public void onResult(final ENLUtil.ResultData resultData) {
                 long instantaneousPower;
-                enlData = mENLUtil.convertHex2Bin(data);
-                esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_GET_RES) {
-                    // 正常応答.
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
-                    for (ENLUtil.ResultData resultData : rd) {
-                        if (resultData.mEpc == 0xE7 && resultData.mPdc == 4) {
-                            // 瞬時電力量保存.
-                            byte[] byTmp = new byte[4];
-                            System.arraycopy(resultData.mEdt, 0, byTmp, 0, 4);
-
-                            int tmp = ByteBuffer.wrap(byTmp).asIntBuffer().get();
-                            if (tmp == DEF_INT_NO_DATA) {
-                                instantaneousPower = DEF_INT_NO_DATA;
-                            } else if (tmp == DEF_INT_UNDERFLOW) {
-                                instantaneousPower = DEF_INT_UNDERFLOW;
-                            } else if (tmp == DEF_INT_OVERFLOW) {
-                                instantaneousPower = DEF_INT_OVERFLOW;
-                            } else {
-                                instantaneousPower = (long)(tmp);
-                            }
-                        } else {
-                            instantaneousPower = DEF_INT_NO_DATA;
-                        }
-                        resultInstantaneousPower(instantaneousPower);
+                if (resultData.mPdc == 4) {
+                    // 瞬時電力量保存.
+                    int tmp = ByteBuffer.wrap(resultData.mEdt).asIntBuffer().get();
+                    if (tmp == DEF_INT_NO_DATA) {
+                        instantaneousPower = DEF_INT_NO_DATA;
+                    } else if (tmp == DEF_INT_UNDERFLOW) {
+                        instantaneousPower = DEF_INT_UNDERFLOW;
+                    } else if (tmp == DEF_INT_OVERFLOW) {
+                        instantaneousPower = DEF_INT_OVERFLOW;
+                    } else {
+                        instantaneousPower = (long)(tmp);
                     }
-                } else if (esv == ENLUtil.ESV_GET_SNA) {
+                } else {
                     // 不可応答.
                     instantaneousPower = DEF_INT_NO_DATA;
-                    resultInstantaneousPower(instantaneousPower);
-                } else {
-                    break;
                 }
-                break;
-        }
+                resultInstantaneousPower(instantaneousPower, unit, response);
+            }
+
+            @Override
+            public void onFailure() {
+                MessageUtils.setTimeoutError(response);
+                sendResponse(response);
+            }
+        });
     }
 
     /**
      * 指定された単位変換をして瞬時電力量を要求元へ返却する.
      * @param instantaneousPower 瞬時電力量.
+     * @param unit 電力量単位.
+     * @param response レスポンス設定用Intent.
      */
-    public void resultInstantaneousPower(final long instantaneousPower) {
-        setResult(mInstantaneousPowerResponse, DConnectMessage.RESULT_OK);
-        Bundle root = mInstantaneousPowerResponse.getExtras();
+    public void resultInstantaneousPower(final long instantaneousPower, final String unit, final Intent response) {
+        setResult(response, DConnectMessage.RESULT_OK);
+        Bundle root = response.getExtras();
         double power;
+        String powerUnit = unit;
 
         if (instantaneousPower == DEF_INT_UNDERFLOW || instantaneousPower == DEF_INT_OVERFLOW || instantaneousPower == DEF_INT_NO_DATA) {
             power = instantaneousPower;
         } else {
             // 単位変換.
-            if (mGetInstantaneousPowerUnit == null) {
-                mGetInstantaneousPowerUnit = "W";
+            if (powerUnit == null) {
+                powerUnit = "W";
             }
 
-            if (mGetInstantaneousPowerUnit.contains("kW")) {
+            if (powerUnit.contains("kW")) {
                 power = instantaneousPower * 0.001;
             } else {
                 power = instantaneousPower;
@@ -1302,19 +1270,11 @@ public class SmartMeterMessageService extends DConnectMessageService {
 
         // 瞬時電力量データ設定.
         root.putDouble("instantaneouspower", power);
-        root.putString("unit", mGetInstantaneousPowerUnit);
-        mInstantaneousPowerResponse.putExtras(root);
-        sendResponse(mInstantaneousPowerResponse);
-        sequenceGetInstantaneousPowerProcess = 0;
+        root.putString("unit", powerUnit);
+        response.putExtras(root);
+        sendResponse(response);
     }
 
-    /** 瞬時電流量取得シーケンス管理用. */
-    private int sequenceGetInstantaneousCurrentProcess = 0;
-    /** 変換単位保存用. */
-    private String mGetInstantaneousCurrentUnit = null;
-    /** 瞬時電流量応答用Intent. */
-    private Intent mInstantaneousCurrentResponse;
-
     /** オーバーフロー判定値(16bit). */
     final int DEF_SHORT_OVERFLOW = 0x7FFF;
     /** アンダーフロー判定値(16bit). */
@@ -1328,148 +1288,87 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param response レスポンス設定用Intent.
      */
     public void getInstantaneousCurrent(final String unit, final Intent response) {
-        mGetInstantaneousCurrentUnit = unit;
-        mInstantaneousCurrentResponse = response;
-        sequenceGetInstantaneousCurrentProcess = 1;
-        getInstantaneousCurrentProcess(null);
+        final String currentUnit = (unit == null) ? "A" : unit;
+        mRequestScheduler.request(0xE8, new ENLRequestScheduler.Callback() {
+            @Override
+            public void onResult(final ENLUtil.ResultData resultData) {
+                if (resultData.mPdc != 4) {
+                    // 不可応答.
+                    resultInstantaneousCurrent(DEF_SHORT_NO_DATA, DEF_SHORT_NO_DATA, currentUnit, response);
+                    return;
+                }
+
+                // 単位変換.
+                float coeff;
+                if (currentUnit.contains("mA")) {
+                    coeff = 1000;
+                } else {
+                    coeff = 1;
+                }
+                float effectiveRPhase = convertInstantaneousCurrent(resultData.mEdt[0], resultData.mEdt[1], coeff);
+                float effectiveTPhase = convertInstantaneousCurrent(resultData.mEdt[2], resultData.mEdt[3], coeff);
+                resultInstantaneousCurrent(effectiveRPhase, effectiveTPhase, currentUnit, response);
+            }
+
+            @Override
+            public void onFailure() {
+                MessageUtils.setTimeoutError(response);
+                sendResponse(response);
+            }
+        });
     }
 
     /**
-     * 瞬時電流量取得処理.
-     * @param data シリアル受信データ.
+     * 瞬時電流計測値(符号付き16bit、0.1A単位)を変換する.
+     * @param high 上位バイト.
+     * @param low 下位バイト.
+     * @param coeff 単位変換係数.
+     * @return 電流量. オーバーフロー、アンダーフロー、未計測の場合は判定値そのもの.
      */
-    public void getInstantaneousCurrentProcess(final byte[] data) {
-        byte[] enlData;
-        int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
-        float effectiveRPhase;
-        float effectiveTPhase;
-
-        switch (sequenceGetInstantaneousCurrentProcess) {
-            case 1:
-                // 瞬時電流計測値取得.
-                enlCmd = mENLUtil.makeEchonetLitePacket("GET_E8", null);
-                command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                cmd = command.getBytes();
-                sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                sendCmd.put(cmd);
-                sendCmd.put(enlCmd);
-                mExecCommand = BP35C2.Command.SEND_TO;
-                SendMessage(sendCmd.array());
-                sequenceGetInstantaneousCurrentProcess++;
-                break;
-            case 2:
-                enlData = mENLUtil.convertHex2Bin(data);
-                esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_GET_RES) {
-                    // 正常応答.
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
-                    for (ENLUtil.ResultData resultData : rd) {
-                        if (resultData.mEpc == 0xE8 && resultData.mPdc == 4) {
-                            float unit;
-                            // 単位変換.
-                            if (mGetInstantaneousCurrentUnit == null) {
-                                mGetInstantaneousCurrentUnit = "A";
-                            }
-
-                            if (mGetInstantaneousCurrentUnit.contains("mA")) {
-                                unit = 1000;
-                            } else {
-                                unit = 1;
-                            }
-
-                            // 瞬時電力量保存.
-                            int rPhase;
-                            byte[] tmp = new byte[4];
-                            if ((resultData.mEdt[0] & 0x80) == 0x80) {
-                                tmp[0] = tmp[1] = (byte)0xFF;
-                            } else {
-                                tmp[0] = tmp[1] = (byte)0x00;
-                            }
-                            tmp[2] = resultData.mEdt[0];
-                            tmp[3] = resultData.mEdt[1];
-                            rPhase = ByteBuffer.wrap(tmp).asIntBuffer().get();
-                            if ((rPhase & 0xFFFF) == DEF_SHORT_UNDERFLOW || (rPhase & 0xFFFF) == DEF_SHORT_OVERFLOW || (rPhase & 0xFFFF) == DEF_SHORT_NO_DATA) {
-                                effectiveRPhase = rPhase;
-                            } else {
-                                effectiveRPhase = rPhase * 0.1f * unit;
-                            }
-
-                            int tPhase;
-                            tmp = new byte[4];
-                            if ((resultData.mEdt[2] & 0x80) == 0x80) {
-                                tmp[0] = tmp[1] = (byte)0xFF;
-                            } else {
-                                tmp[0] = tmp[1] = (byte)0x00;
-                            }
-                            tmp[2] = resultData.mEdt[2];
-                            tmp[3] = resultData.mEdt[3];
-                            tPhase = ByteBuffer.wrap(tmp).asIntBuffer().get();
-                            if ((tPhase & 0xFFFF) == DEF_SHORT_UNDERFLOW || (tPhase & 0xFFFF) == DEF_SHORT_OVERFLOW || (tPhase & 0xFFFF) == DEF_SHORT_NO_DATA) {
-                                effectiveTPhase = tPhase;
-                            } else {
-                                effectiveTPhase = tPhase * 0.1f * unit;
-                            }
-                        } else {
-                            effectiveRPhase = effectiveTPhase = 0x7FFE;
-                        }
-                        resultInstantaneousCurrent(effectiveRPhase, effectiveTPhase);
-                    }
-                } else if (esv == ENLUtil.ESV_GET_SNA) {
-                    // 不可応答.
-                    resultInstantaneousCurrent(DEF_SHORT_NO_DATA, DEF_SHORT_NO_DATA);
-                } else {
-                    break;
-                }
-                break;
+    private float convertInstantaneousCurrent(final byte high, final byte low, final float coeff) {
+        int phase = (short) (((high << 8) & 0xFF00) | (low & 0x00FF));
+        if ((phase & 0xFFFF) == DEF_SHORT_UNDERFLOW || (phase & 0xFFFF) == DEF_SHORT_OVERFLOW || (phase & 0xFFFF) == DEF_SHORT_NO_DATA) {
+            return phase;
         }
+        return phase * 0.1f * coeff;
     }
 
     /**
      * 瞬時電流量を要求元へ返却する.
      * @param rPhase R相電流量.
      * @param tPhase T相電流量.
+     * @param unit 電流量単位.
+     * @param response レスポンス設定用Intent.
      */
-    public void resultInstantaneousCurrent(final float rPhase, final float tPhase) {
-        setResult(mInstantaneousCurrentResponse, DConnectMessage.RESULT_OK);
-        Bundle root = mInstantaneousCurrentResponse.getExtras();
+    public void resultInstantaneousCurrent(final float rPhase, final float tPhase, final String unit, final Intent response) {
+        setResult(response, DConnectMessage.RESULT_OK);
+        Bundle root = response.getExtras();
         Bundle instantaneouscurrent = new Bundle();
 
         // 瞬時電力量データ設定.
         instantaneouscurrent.putDouble("rphase", rPhase);
         instantaneouscurrent.putDouble("tphase", tPhase);
-        instantaneouscurrent.putString("unit", mGetInstantaneousCurrentUnit);
+        instantaneouscurrent.putString("unit", unit);
         root.putBundle("instantaneouscurrent", instantaneouscurrent);
-        mInstantaneousCurrentResponse.putExtras(root);
-        sendResponse(mInstantaneousCurrentResponse);
-        sequenceGetInstantaneousCurrentProcess = 0;
+        response.putExtras(root);
+        sendResponse(response);
     }
 
-    /** 積算電力量取得シーケンス管理用. */
-    private int sequenceGetDayDataProcess = 0;
-    /** 取得日保存用. */
-    private int mGetDateCount = 0;
-    /** 取得時間（時）保存用. */
-    private int mGetDateHour = 0;
-    /** 取得時間（分）保存用. */
-    private int mGetDateMinute = 0;
-    /** データ格納数保存用. */
-    private int mGetDateDataCount = 0;
-    /** 積算電力量要求ループ数. */
-    private int mGetDateLoop = 0;
-    /** 積算電力量応答用Intent. */
-    private Intent mDailyDataResponse;
-    /** 積算電力量方向保存用. */
-    private String mGetDatePowerFlow = null;
-    /** 単位変換保存用. */
-    private String mGetDatePowerUnit = null;
-    /** 保存処理用インデックス. */
-    private int mIndex = 0;
-    /** 積算電力量一時保存用変数. */
-    double mDayData[] = new double[96];
+    /**
+     * 積算電力量計測値履歴の保存先を設定し、保存されていない日の取得を開始する.
+     */
+    private void startIntegratedPowerBackfill() {
+        File file = new File(getFilesDir(), "integrated_power_" + mWiSunDevice.getMacAddress() + ".dat");
+        mIntegratedPowerHistory.setStore(new IntegratedPowerStore(file));
+
+        int[] epcs;
+        if (mENLUtil.isDefineProperty(IntegratedPowerHistory.EPC_REVERSE, "get")) {
+            epcs = new int[] {IntegratedPowerHistory.EPC_NORMAL, IntegratedPowerHistory.EPC_REVERSE};
+        } else {
+            epcs = new int[] {IntegratedPowerHistory.EPC_NORMAL};
+        }
+        mIntegratedPowerHistory.startBackfill(epcs, IntegratedPowerHistory.MAX_DAYS_AGO);
+    }
 
     /**
          * 積算電力量取得.
@@ -1482,164 +1381,84 @@ public class SmartMeterMessageService extends DConnectMessageService {
          * @param response レスポンス設定用Intent.
          */
     public void getDailyData(final int dateCount, final int hour, final int minute, final int count, final String powerFlow, final String unit, final Intent response) {
-        mGetDateCount = dateCount;
-        mGetDateHour = hour;
-        mGetDateMinute = minute;
-        mGetDatePowerFlow = powerFlow;
-        mGetDateDataCount = count;
-        mGetDatePowerUnit = unit;
-        mDailyDataResponse = response;
-
-        if ((count == 48 && hour == 0 && minute < 30) ||
-                (count == 24 && hour == 0 && minute < 59)) {
-            mGetDateLoop = 1;
-        } else {
-            mGetDateLoop = 2;
+        final int epc;
+        switch (powerFlow) {
+            case "normal":
+                epc = IntegratedPowerHistory.EPC_NORMAL;
+                break;
+            case "reverse":
+                epc = IntegratedPowerHistory.EPC_REVERSE;
+                break;
+            default:
+                return;
         }
-        mIndex = 0;
-        sequenceGetDayDataProcess = 1;
-        getDayDataProcess(null);
-    }
 
-    /**
-     * 積算電力量取得要求.
-     * @param dataCount 取得日.
-     */
-    public void sendCmdGetDateCount(final int dataCount) {
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
-        byte[] excData = new byte[1];
-
-        excData[0] = (byte)(dataCount & 0xFF);
-        enlCmd = mENLUtil.makeEchonetLitePacket("SET_E5", excData);
-        command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-        cmd = command.getBytes();
-        sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-        sendCmd.put(cmd);
-        sendCmd.put(enlCmd);
-        mExecCommand = BP35C2.Command.SEND_TO;
-        SendMessage(sendCmd.array());
+        // 指定日と前日の計測値を取得する. 前日以前の計測値は保存済みであればスマートメーターに問い合わせない.
+        final boolean hasPreviousDay = dateCount < IntegratedPowerHistory.MAX_DAYS_AGO;
+        int from = hasPreviousDay ? dateCount + 1 : dateCount;
+
+        mIntegratedPowerHistory.request(epc, from, dateCount, new IntegratedPowerHistory.Callback() {
+            @Override
+            public void onResult(final IntegratedPowerStore.Day[] days) {
+                // 前日分と指定日分を連結する.
+                double[] dayData = new double[96];
+                setDayData(hasPreviousDay ? days[0] : null, dayData, 0);
+                setDayData(days[days.length - 1], dayData, 48);
+                resultIntegratedPower(dayData, hour, minute, count, powerFlow, unit, response);
+            }
+
+            @Override
+            public void onFailure() {
+                MessageUtils.setTimeoutError(response);
+                sendResponse(response);
+            }
+        });
     }
 
     /**
-     * 積算電力量取得処置ルーチン.
-     * @param data 受信データ.
+     * 1日分の積算電力量計測値を変換して格納する.
+     * @param day 積算電力量計測値. nullの場合は未計測とする.
+     * @param dayData 格納先.
+     * @param offset 格納位置.
      */
-    public void getDayDataProcess(final byte[] data) {
-        byte[] enlData;
-        int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
-
-        switch (sequenceGetDayDataProcess) {
-            case 1:
-                // 取得日設定
-                if (mGetDateCount!= 0) {
-                    sendCmdGetDateCount(mGetDateCount + 1);
-                } else {
-                    sendCmdGetDateCount(mGetDateCount);
-                }
-                sequenceGetDayDataProcess++;
-                break;
-            case 2:
-                enlData = mENLUtil.convertHex2Bin(data);
-                esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_SET_RES) {
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
-                    for(ENLUtil.ResultData resultData : rd) {
-                        if (resultData.mEpc == 0xE5 && resultData.mPdc == 0) {
-                            // Next.
-                            switch (mGetDatePowerFlow) {
-                                case "normal":
-                                    enlCmd = mENLUtil.makeEchonetLitePacket("GET_E2", null);
-                                    break;
-                                case "reverse":
-                                    enlCmd = mENLUtil.makeEchonetLitePacket("GET_E4", null);
-                                    break;
-                                default:
-                                    return;
-                            }
-                            command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                            cmd = command.getBytes();
-                            sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                            sendCmd.put(cmd);
-                            sendCmd.put(enlCmd);
-                            mExecCommand = BP35C2.Command.SEND_TO;
-                            SendMessage(sendCmd.array());
-                            sequenceGetDayDataProcess++;
-                            break;
-                        }
-                    }
-                }
-                break;
-            case 3:
-                enlData = mENLUtil.convertHex2Bin(data);
-                esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_GET_RES) {
-                    // 正常応答.
-                    float unitValue = mENLUtil.getUnitValue();
-                    int coeff = mENLUtil.getCoeffValue();
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
-                    for (ENLUtil.ResultData resultData : rd) {
-                        if ((resultData.mEpc == 0xE2 || resultData.mEpc == 0xE4) && resultData.mPdc == 194) {
-                            // 積算電力量保存.
-                            byte[] byTmp = new byte[4];
-                            int pos = 2;
-                            for (int n = 0; n < 48; n++) {
-                                System.arraycopy(resultData.mEdt, pos, byTmp, 0, 4);
-                                pos += 4;
-                                int tmp = ByteBuffer.wrap(byTmp).asIntBuffer().get();
-                                if (tmp == DEF_INT_NO_DATA || unitValue == 0) {
-                                    mDayData[mIndex++] = DEF_INT_NO_DATA;
-                                } else {
-                                    mDayData[mIndex++] = tmp * coeff * unitValue;
-                                }
-                            }
-                        } else {
-                            for (int n = 0; n < 48; n++) {
-                                mDayData[mIndex++] = DEF_INT_NO_DATA;
-                            }
-                        }
-                    }
-                } else if (esv == ENLUtil.ESV_GET_SNA) {
-                    // 不可応答.
-                    for (int n = 0; n < 48; n++) {
-                        mDayData[mIndex++] = DEF_INT_NO_DATA;
-                    }
-                }else {
-                    break;
-                }
-                mGetDateLoop--;
-                if (mGetDateLoop == 0) {
-                    resultIntegratedPower(mDayData);
-                } else {
-                    sendCmdGetDateCount(mGetDateCount);
-                    sequenceGetDayDataProcess = 2;
-                }
-                break;
+    private void setDayData(final IntegratedPowerStore.Day day, final double[] dayData, final int offset) {
+        for (int n = 0; n < IntegratedPowerStore.SLOT_COUNT; n++) {
+            if (day == null) {
+                dayData[offset + n] = DEF_INT_NO_DATA;
+                continue;
+            }
+            int tmp = day.mValues[n];
+            if (tmp == DEF_INT_NO_DATA || tmp == IntegratedPowerHistory.NO_DATA || day.mUnitValue == 0) {
+                dayData[offset + n] = DEF_INT_NO_DATA;
+            } else {
+                dayData[offset + n] = tmp * day.mCoeff * day.mUnitValue;
+            }
         }
-
     }
 
     /**
      * 指定された単位変換をして積算電力量を要求元へ返却する.
-     * @param dayData 積算電力量データ.
+     * @param dayData 積算電力量データ(前日分と指定日分の96コマ).
+     * @param hour 取得開始指定時刻(時間).
+     * @param minute 取得開始指定時刻（分）.
+     * @param count コマ数（24 or 48）.
+     * @param powerFlow 取得積算電力量方向（normal or reverse）.
+     * @param unit 電力量単位.
+     * @param response レスポンス設定用Intent.
      */
-    public void resultIntegratedPower(final double[] dayData) {
-        setResult(mDailyDataResponse, DConnectMessage.RESULT_OK);
-        Bundle root = mDailyDataResponse.getExtras();
+    public void resultIntegratedPower(final double[] dayData, final int hour, final int minute, final int count,
+                                      final String powerFlow, final String unit, final Intent response) {
+        setResult(response, DConnectMessage.RESULT_OK);
+        Bundle root = response.getExtras();
 
         // 単位変換.
         int coeff;
-        if (mGetDatePowerUnit == null) {
-            mGetDatePowerUnit = "Wh";
+        String powerUnit = unit;
+        if (powerUnit == null) {
+            powerUnit = "Wh";
         }
 
-        if (mGetDatePowerUnit.contains("kWh")) {
+        if (powerUnit.contains("kWh")) {
             coeff = 1;
         } else {
             coeff = 1000;
@@ -1647,11 +1466,11 @@ public class SmartMeterMessageService extends DConnectMessageService {
 
         // 積算電力量データ設定.
         int index;
-        double[] integratedpower = new double[mGetDateDataCount];
-        if (mGetDateDataCount == 48) {
+        double[] integratedpower = new double[count];
+        if (count == 48) {
             // Index計算.
-            index = ((mGetDateHour * 2) + (mGetDateMinute/30)) + 48;
-            for (int n = mGetDateDataCount - 1; n >= 0; n--) {
+            index = ((hour * 2) + (minute/30)) + 48;
+            for (int n = count - 1; n >= 0; n--) {
                 if (dayData[index] == DEF_INT_NO_DATA) {
                     integratedpower[n] = dayData[index--];
                 } else {
@@ -1660,8 +1479,8 @@ public class SmartMeterMessageService extends DConnectMessageService {
             }
         } else {
             // Index計算.
-            index = (mGetDateHour * 2) + 48;
-            for (int n = mGetDateDataCount - 1; n >= 0; n--) {
+            index = (hour * 2) + 48;
+            for (int n = count - 1; n >= 0; n--) {
                 if (dayData[index] == DEF_INT_NO_DATA && dayData[index + 1] == DEF_INT_NO_DATA) {
                     integratedpower[n] = dayData[index];
                 } else if (dayData[index] != DEF_INT_NO_DATA && dayData[index + 1] == DEF_INT_NO_DATA) {
@@ -1675,11 +1494,10 @@ public class SmartMeterMessageService extends DConnectMessageService {
             }
         }
         root.putDoubleArray("integratedpower", integratedpower);
-        root.putInt("count", mGetDateDataCount);
-        root.putString("unit", mGetDatePowerUnit);
-        root.putString("powerFlow", mGetDatePowerFlow);
-        mDailyDataResponse.putExtras(root);
-        sendResponse(mDailyDataResponse);
-        sequenceGetDayDataProcess = 0;
+        root.putInt("count", count);
+        root.putString("unit", powerUnit);
+        root.putString("powerFlow", powerFlow);
+        response.putExtras(root);
+        sendResponse(response);
     }
 }
@@ -0,0 +1,338 @@
+/*
+ ENLRequestScheduler.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECHONET Lite のプロパティ取得要求をまとめて送信するスケジューラ.
+ *
+ * <p>
+ * 同時に要求されたプロパティは1つのGet要求(OPC&gt;1)にまとめて送信する.
+ * 応答はトランザクションIDで要求と対応付けるため、複数の要求を同時に応答待ちにできる.
+ * 同じEPCに対する要求が送信待ちまたは応答待ちの場合は、その結果を共有する.
+ * </p>
+ * <p>
+ * パケットの送信、タイムアウト処理はすべてスケジューラのスレッドで行う.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ENLRequestScheduler {
+    /** 1つのGet要求にまとめるプロパティの最大数. */
+    public static final int MAX_PROPERTY_COUNT = 8;
+    /** 同時に応答待ちにできる要求の最大数(デフォルト). */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    /** 要求をまとめるために送信を待つ時間(デフォルト). 単位はミリ秒. */
+    public static final long DEFAULT_GATHER_DELAY = 20;
+    /** 応答待ちのタイムアウト時間(デフォルト). 単位はミリ秒. */
+    public static final long DEFAULT_TIMEOUT = 10 * 1000;
+
+    /**
+     * パケットの送信先.
+     */
+    public interface Transport {
+        /**
+         * ECHONET Lite パケットを送信する.
+         * @param packet ECHONET Lite 要求パケット.
+         */
+        void send(byte[] packet);
+    }
+
+    /**
+     * プロパティ取得結果の通知先.
+     */
+    public interface Callback {
+        /**
+         * プロパティの取得結果を通知する.
+         * <p>
+         * 不可応答の場合はPDCが0の結果が通知される.
+         * </p>
+         * @param data 取得結果.
+         */
+        void onResult(ENLUtil.ResultData data);
+
+        /**
+         * タイムアウトなどで応答が得られなかったことを通知する.
+         */
+        void onFailure();
+    }
+
+    /**
+     * 応答待ちの要求.
+     */
+    private static class Frame {
+        /** トランザクションID. */
+        final int mTransactionId;
+        /** EPCごとの結果通知先. */
+        final Map<Integer, List<Callback>> mRequests = new LinkedHashMap<>();
+        /** タイムアウト処理. */
+        ScheduledFuture<?> mTimeoutTask;
+
+        /**
+         * コンストラクタ.
+         * @param transactionId トランザクションID.
+         */
+        Frame(final int transactionId) {
+            mTransactionId = transactionId;
+        }
+    }
+
+    /** ECHONET Lite Utility. */
+    private final ENLUtil mENLUtil;
+    /** 送信、タイムアウト処理を行うスケジューラ. */
+    private final ScheduledExecutorService mScheduler;
+    /** パケットの送信先. */
+    private final Transport mTransport;
+    /** 同時に応答待ちにできる要求の最大数. */
+    private final int mMaxInFlight;
+    /** 要求をまとめるために送信を待つ時間. 単位はミリ秒. */
+    private final long mGatherDelay;
+    /** 応答待ちのタイムアウト時間. 単位はミリ秒. */
+    private final long mTimeout;
+
+    /** 送信待ちのEPCごとの結果通知先. 要求順に並ぶ. */
+    private final Map<Integer, List<Callback>> mPending = new LinkedHashMap<>();
+    /** 応答待ちの要求. キーはトランザクションID. */
+    private final Map<Integer, Frame> mInFlight = new HashMap<>();
+    /** 予約済みの送信処理. 予約されていない場合はnull. */
+    private ScheduledFuture<?> mDispatchTask;
+
+    /** 送信待ちの要求を送信する処理. */
+    private final Runnable mDispatch = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    /**
+     * コンストラクタ.
+     * @param util ECHONET Lite Utility.
+     * @param scheduler 送信、タイムアウト処理を行うスケジューラ.
+     * @param transport パケットの送信先.
+     */
+    public ENLRequestScheduler(final ENLUtil util, final ScheduledExecutorService scheduler,
+                               final Transport transport) {
+        this(util, scheduler, transport, DEFAULT_MAX_IN_FLIGHT, DEFAULT_GATHER_DELAY, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * コンストラクタ.
+     * @param util ECHONET Lite Utility.
+     * @param scheduler 送信、タイムアウト処理を行うスケジューラ.
+     * @param transport パケットの送信先.
+     * @param maxInFlight 同時に応答待ちにできる要求の最大数.
+     * @param gatherDelay 要求をまとめるために送信を待つ時間. 単位はミリ秒.
+     * @param timeout 応答待ちのタイムアウト時間. 単位はミリ秒.
+     */
+    public ENLRequestScheduler(final ENLUtil util, final ScheduledExecutorService scheduler,
+                               final Transport transport, final int maxInFlight,
+                               final long gatherDelay, final long timeout) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight is less than 1.");
+        }
+        mENLUtil = util;
+        mScheduler = scheduler;
+        mTransport = transport;
+        mMaxInFlight = maxInFlight;
+        mGatherDelay = gatherDelay;
+        mTimeout = timeout;
+    }
+
+    /**
+     * プロパティの取得を要求する.
+     * @param epc 取得するEPC.
+     * @param callback 結果通知先.
+     */
+    public synchronized void request(final int epc, final Callback callback) {
+        // 応答待ちの同じEPCがあれば、その結果を共有する.
+        for (Frame frame : mInFlight.values()) {
+            List<Callback> callbacks = frame.mRequests.get(epc);
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+
+        List<Callback> callbacks = mPending.get(epc);
+        if (callbacks == null) {
+            callbacks = new ArrayList<>();
+            mPending.put(epc, callbacks);
+        }
+        callbacks.add(callback);
+        scheduleDispatch(mGatherDelay);
+    }
+
+    /**
+     * 受信したパケットを要求に対応付けて結果を通知する.
+     * @param packet ECHONET Lite 受信パケット.
+     * @return 応答待ちの要求に対する応答の場合はtrue、それ以外はfalse.
+     */
+    public boolean onReceive(final byte[] packet) {
+        int transactionId = ENLUtil.getTransactionId(packet);
+        Frame frame;
+        synchronized (this) {
+            frame = mInFlight.get(transactionId);
+            if (frame == null || packet.length <= ENLUtil.IDX_OPC) {
+                return false;
+            }
+            int esv = mENLUtil.checkEsv(packet, transactionId);
+            if (esv != ENLUtil.ESV_GET_RES && esv != ENLUtil.ESV_GET_SNA) {
+                return false;
+            }
+            mInFlight.remove(transactionId);
+            frame.mTimeoutTask.cancel(false);
+            // 空きができたので、送信待ちの要求は待たずに送信する.
+            scheduleDispatch(0);
+        }
+
+        Map<Integer, ENLUtil.ResultData> results = new HashMap<>();
+        ENLUtil.ResultData[] resultData = mENLUtil.splitResultData(packet);
+        if (resultData != null) {
+            for (ENLUtil.ResultData data : resultData) {
+                results.put(data.mEpc, data);
+            }
+        }
+        for (Map.Entry<Integer, List<Callback>> entry : frame.mRequests.entrySet()) {
+            ENLUtil.ResultData data = results.get(entry.getKey());
+            if (data == null) {
+                // 応答に含まれていないプロパティは不可応答として扱う.
+                data = mENLUtil.new ResultData(entry.getKey(), 0, null);
+            }
+            for (Callback callback : entry.getValue()) {
+                callback.onResult(data);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 送信待ち、応答待ちの要求をすべて破棄し、失敗を通知する.
+     */
+    public void clear() {
+        List<List<Callback>> failed = new ArrayList<>();
+        synchronized (this) {
+            if (mDispatchTask != null) {
+                mDispatchTask.cancel(false);
+                mDispatchTask = null;
+            }
+            failed.addAll(mPending.values());
+            mPending.clear();
+            for (Frame frame : mInFlight.values()) {
+                frame.mTimeoutTask.cancel(false);
+                failed.addAll(frame.mRequests.values());
+            }
+            mInFlight.clear();
+        }
+        notifyFailure(failed);
+    }
+
+    /**
+     * 応答待ちの要求数を取得する.
+     * @return 応答待ちの要求数.
+     */
+    public synchronized int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * 送信処理を予約する.
+     * <p>
+     * 送信待ちの要求がない場合、応答待ちの要求数が上限に達している場合は何もしない.
+     * </p>
+     * @param delay 送信までの待ち時間. 単位はミリ秒.
+     */
+    private void scheduleDispatch(final long delay) {
+        if (mPending.isEmpty() || mInFlight.size() >= mMaxInFlight) {
+            return;
+        }
+        if (mDispatchTask != null) {
+            if (delay > 0) {
+                return;
+            }
+            mDispatchTask.cancel(false);
+        }
+        try {
+            mDispatchTask = mScheduler.schedule(mDispatch, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // スケジューラが停止済み
+            mDispatchTask = null;
+        }
+    }
+
+    /**
+     * 送信待ちの要求をまとめて送信する.
+     */
+    private void dispatch() {
+        List<byte[]> packets = new ArrayList<>();
+        synchronized (this) {
+            mDispatchTask = null;
+            while (!mPending.isEmpty() && mInFlight.size() < mMaxInFlight) {
+                final Frame frame = new Frame(mENLUtil.nextTransactionId());
+                Iterator<Map.Entry<Integer, List<Callback>>> it = mPending.entrySet().iterator();
+                while (it.hasNext() && frame.mRequests.size() < MAX_PROPERTY_COUNT) {
+                    Map.Entry<Integer, List<Callback>> entry = it.next();
+                    frame.mRequests.put(entry.getKey(), entry.getValue());
+                    it.remove();
+                }
+
+                int[] epcs = new int[frame.mRequests.size()];
+                int index = 0;
+                for (Integer epc : frame.mRequests.keySet()) {
+                    epcs[index++] = epc;
+                }
+                frame.mTimeoutTask = mScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        onTimeout(frame);
+                    }
+                }, mTimeout, TimeUnit.MILLISECONDS);
+                mInFlight.put(frame.mTransactionId, frame);
+                packets.add(mENLUtil.makeGetPacket(frame.mTransactionId, epcs));
+            }
+        }
+        for (byte[] packet : packets) {
+            mTransport.send(packet);
+        }
+    }
+
+    /**
+     * 応答待ちの要求がタイムアウトした時の処理.
+     * @param frame タイムアウトした要求.
+     */
+    private void onTimeout(final Frame frame) {
+        synchronized (this) {
+            if (mInFlight.remove(frame.mTransactionId) == null) {
+                return;
+            }
+            scheduleDispatch(0);
+        }
+        notifyFailure(new ArrayList<>(frame.mRequests.values()));
+    }
+
+    /**
+     * 失敗を通知する.
+     * @param failed 通知先一覧.
+     */
+    private static void notifyFailure(final List<List<Callback>> failed) {
+        for (List<Callback> callbacks : failed) {
+            for (Callback callback : callbacks) {
+                callback.onFailure();
+            }
+        }
+    }
+}
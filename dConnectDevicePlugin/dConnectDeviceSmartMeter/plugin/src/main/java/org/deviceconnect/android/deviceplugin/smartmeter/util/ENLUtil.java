@@ -75,7 +75,7 @@ public class ENLUtil {
     static final int EPC_OPERATION_STATUS = 0x80;
 
     /** Transaction ID. */
-    private int mTransactionId = 0;
+    private volatile int mTransactionId = 0;
 
     /** ECHONET Property Map Table. */
     private int mapTable[][] = new int[16][8];
@@ -251,14 +251,10 @@ public class ENLUtil {
     public byte[] makeEchonetLitePacket(final String command, final byte[] data) {
 
         // トランザクションID更新.
-        mTransactionId++;
-        // カウンターリミット判定.
-        if (mTransactionId > 0xFFFF) {
-            mTransactionId = 0;
-        }
+        int transactionId = nextTransactionId();
         // トランザクションID設定.
-        byte tId1 = (byte) ((mTransactionId & 0xFF00) >> 8);
-        byte tId2 = (byte) (mTransactionId & 0x00FF);
+        byte tId1 = (byte) ((transactionId & 0xFF00) >> 8);
+        byte tId2 = (byte) (transactionId & 0x00FF);
         // EPC設定.
         byte epc = (byte) 0x01;
 //        // PDC設定.
@@ -391,12 +387,78 @@ public class ENLUtil {
         }
     }
 
+    /**
+     * トランザクションIDを更新する.
+     * @return 更新後のトランザクションID.
+     */
+    public synchronized int nextTransactionId() {
+        mTransactionId++;
+        // カウンターリミット判定.
+        if (mTransactionId > 0xFFFF) {
+            mTransactionId = 0;
+        }
+        return mTransactionId;
+    }
+
+    /**
+     * 複数プロパティのGet要求パケット生成.
+     * @param transactionId トランザクションID.
+     * @param epcs 取得するEPC一覧.
+     * @return ECHONET Lite 要求パケット.
+     */
+    public byte[] makeGetPacket(final int transactionId, final int[] epcs) {
+        if (epcs == null || epcs.length == 0 || epcs.length > 0xFF) {
+            throw new IllegalArgumentException("epcs is invalid.");
+        }
+        byte[] packet = new byte[IDX_OPC + 1 + epcs.length * 2];
+        packet[IDX_EHD1] = EHD1;
+        packet[IDX_EHD2] = EHD2;
+        packet[IDX_TID1] = (byte) ((transactionId & 0xFF00) >> 8);
+        packet[IDX_TID2] = (byte) (transactionId & 0x00FF);
+        packet[IDX_SEOJ1] = EOJ_CNT_1;
+        packet[IDX_SEOJ2] = EOJ_CNT_2;
+        packet[IDX_SEOJ3] = EOJ_CNT_3;
+        packet[IDX_DEOJ1] = EOJ_SMC_1;
+        packet[IDX_DEOJ2] = EOJ_SMC_2;
+        packet[IDX_DEOJ3] = EOJ_SMC_3;
+        packet[IDX_ESV] = (byte) ESV_GET;
+        packet[IDX_OPC] = (byte) epcs.length;
+        int pos = IDX_OPC + 1;
+        for (int epc : epcs) {
+            packet[pos++] = (byte) epc;     // EPC
+            packet[pos++] = (byte) 0x00;    // PDC
+        }
+        return packet;
+    }
+
+    /**
+     * パケットからトランザクションIDを取得する.
+     * @param buf ECHONET Lite パケット.
+     * @return トランザクションID. パケット長が足りない場合は-1.
+     */
+    public static int getTransactionId(final byte[] buf) {
+        if (buf == null || buf.length <= IDX_TID2) {
+            return -1;
+        }
+        return ((buf[IDX_TID1] << 8) & 0xFF00) | (buf[IDX_TID2] & 0x00FF);
+    }
+
     /**
      * ESV取得.
      * @param buf ECHONET Lite 受信パケット.
      * @return ESV値.
      */
     public int checkEsv(final byte[] buf) {
+        return checkEsv(buf, mTransactionId);
+    }
+
+    /**
+     * 指定したトランザクションIDの応答としてESVを取得する.
+     * @param buf ECHONET Lite 受信パケット.
+     * @param transactionId 要求時のトランザクションID.
+     * @return ESV値.
+     */
+    public int checkEsv(final byte[] buf, final int transactionId) {
         // 受信パケット長判定.
         int dataLength = buf.length;
         if (dataLength < 10) {
@@ -406,8 +468,8 @@ public class ENLUtil {
         // Check ECHONET Packet.
         if (buf[IDX_EHD1] == EHD1 && buf[IDX_EHD2] == EHD2) {
             // Check TID.
-            byte tId1 = (byte) ((mTransactionId & 0xFF00) >> 8);
-            byte tId2 = (byte) (mTransactionId & 0x00FF);
+            byte tId1 = (byte) ((transactionId & 0xFF00) >> 8);
+            byte tId2 = (byte) (transactionId & 0x00FF);
             if (buf[IDX_ESV] != (byte) ESV_INF && buf[IDX_TID1] == tId1 && buf[IDX_TID2] == tId2 ||
                     buf[IDX_ESV] == (byte) ESV_INF) {
                 // Check SEOJ-DEOJ.
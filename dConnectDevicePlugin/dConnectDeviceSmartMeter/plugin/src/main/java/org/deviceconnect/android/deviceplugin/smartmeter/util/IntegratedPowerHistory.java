@@ -0,0 +1,554 @@
+/*
+ IntegratedPowerHistory.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 積算電力量計測値履歴(30分毎)を取得するクラス.
+ *
+ * <p>
+ * 前日以前の計測値は変化しないため、{@link IntegratedPowerStore}に保存して次回以降はスマートメーターに問い合わせない.
+ * スマートメーターへの問い合わせは、積算履歴収集日1(0xE5)の設定と計測値履歴(0xE2/0xE4)の取得を1日ずつ順番に行う.
+ * また、通信が空いている間に保存されていない日の計測値を取得するバックフィルを行う.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class IntegratedPowerHistory {
+    /** 積算電力量計測値履歴1（正方向）. */
+    public static final int EPC_NORMAL = 0xE2;
+    /** 積算電力量計測値履歴1（逆方向）. */
+    public static final int EPC_REVERSE = 0xE4;
+    /** 取得できる最大の日数(何日前まで). */
+    public static final int MAX_DAYS_AGO = 99;
+    /** 未計測値. */
+    public static final int NO_DATA = 0xFFFFFFFE;
+    /** 応答待ちのタイムアウト時間(デフォルト). 単位はミリ秒. */
+    public static final long DEFAULT_TIMEOUT = 10 * 1000;
+    /** バックフィルで1日分を取得する間隔. 単位はミリ秒. */
+    public static final long BACKFILL_INTERVAL = 1000;
+    /** バックフィルが完了した後に、再度確認するまでの間隔. 単位はミリ秒. */
+    public static final long BACKFILL_RECHECK_INTERVAL = 60 * 60 * 1000;
+
+    /** 1日のミリ秒. */
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+    /** 積算電力量計測値履歴のPDC. */
+    private static final int HISTORY_PDC = 2 + IntegratedPowerStore.SLOT_COUNT * 4;
+
+    /** 積算履歴収集日1の設定待ち. */
+    private static final int STATE_SET = 1;
+    /** 計測値履歴の取得待ち. */
+    private static final int STATE_GET = 2;
+
+    /**
+     * 取得結果の通知先.
+     */
+    public interface Callback {
+        /**
+         * 取得結果を通知する.
+         * @param days 1日ごとの計測値. 古い日から順に並ぶ. スマートメーターが応答できなかった日はnull.
+         */
+        void onResult(IntegratedPowerStore.Day[] days);
+
+        /**
+         * タイムアウトなどで応答が得られなかったことを通知する.
+         */
+        void onFailure();
+    }
+
+    /**
+     * 1日分の取得結果の通知先.
+     */
+    private interface DayListener {
+        /**
+         * 1日分の取得結果を通知する.
+         * @param day 計測値. スマートメーターが応答できなかった場合はnull.
+         * @param failed 応答が得られなかった場合はtrue.
+         */
+        void onDay(IntegratedPowerStore.Day day, boolean failed);
+    }
+
+    /**
+     * 1日分の取得処理.
+     */
+    private static class Job {
+        /** EPC. */
+        final int mEpc;
+        /** 何日前か. */
+        final int mDaysAgo;
+        /** 1970年1月1日からの日数. */
+        final int mEpochDay;
+        /** 取得結果の通知先. */
+        final List<DayListener> mListeners = new ArrayList<>();
+        /** 状態. */
+        int mState;
+        /** 応答待ちのトランザクションID. */
+        int mTransactionId = -1;
+        /** タイムアウト処理. */
+        ScheduledFuture<?> mTimeoutTask;
+
+        /**
+         * コンストラクタ.
+         * @param epc EPC.
+         * @param daysAgo 何日前か.
+         * @param epochDay 1970年1月1日からの日数.
+         */
+        Job(final int epc, final int daysAgo, final int epochDay) {
+            mEpc = epc;
+            mDaysAgo = daysAgo;
+            mEpochDay = epochDay;
+        }
+    }
+
+    /** ECHONET Lite Utility. */
+    private final ENLUtil mENLUtil;
+    /** 送信、タイムアウト処理を行うスケジューラ. */
+    private final ScheduledExecutorService mScheduler;
+    /** パケットの送信先. */
+    private final ENLRequestScheduler.Transport mTransport;
+    /** 通信が空いているかの判定に使用するプロパティ取得要求スケジューラ. */
+    private final ENLRequestScheduler mRequestScheduler;
+    /** 応答待ちのタイムアウト時間. 単位はミリ秒. */
+    private final long mTimeout;
+
+    /** 計測値の保存先. 未設定の場合はnull. */
+    private IntegratedPowerStore mStore;
+    /** 取得待ちの処理. */
+    private final ArrayDeque<Job> mQueue = new ArrayDeque<>();
+    /** 実行中の処理. */
+    private Job mActive;
+
+    /** バックフィルするEPC. 停止中はnull. */
+    private int[] mBackfillEpcs;
+    /** バックフィルする日数. */
+    private int mBackfillDays;
+    /** 予約済みのバックフィル処理. */
+    private ScheduledFuture<?> mBackfillTask;
+    /** バックフィルで取得できなかった日. 再取得しない. */
+    private final Set<Long> mBackfillSkipped = new HashSet<>();
+
+    /** バックフィル処理. */
+    private final Runnable mBackfill = new Runnable() {
+        @Override
+        public void run() {
+            backfill();
+        }
+    };
+
+    /**
+     * コンストラクタ.
+     * @param util ECHONET Lite Utility.
+     * @param scheduler 送信、タイムアウト処理を行うスケジューラ.
+     * @param transport パケットの送信先.
+     * @param requestScheduler 通信が空いているかの判定に使用するプロパティ取得要求スケジューラ. 使用しない場合はnull.
+     */
+    public IntegratedPowerHistory(final ENLUtil util, final ScheduledExecutorService scheduler,
+                                  final ENLRequestScheduler.Transport transport,
+                                  final ENLRequestScheduler requestScheduler) {
+        this(util, scheduler, transport, requestScheduler, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * コンストラクタ.
+     * @param util ECHONET Lite Utility.
+     * @param scheduler 送信、タイムアウト処理を行うスケジューラ.
+     * @param transport パケットの送信先.
+     * @param requestScheduler 通信が空いているかの判定に使用するプロパティ取得要求スケジューラ. 使用しない場合はnull.
+     * @param timeout 応答待ちのタイムアウト時間. 単位はミリ秒.
+     */
+    public IntegratedPowerHistory(final ENLUtil util, final ScheduledExecutorService scheduler,
+                                  final ENLRequestScheduler.Transport transport,
+                                  final ENLRequestScheduler requestScheduler, final long timeout) {
+        mENLUtil = util;
+        mScheduler = scheduler;
+        mTransport = transport;
+        mRequestScheduler = requestScheduler;
+        mTimeout = timeout;
+    }
+
+    /**
+     * 計測値の保存先を設定する.
+     * @param store 保存先. 保存しない場合はnull.
+     */
+    public synchronized void setStore(final IntegratedPowerStore store) {
+        mStore = store;
+        mBackfillSkipped.clear();
+    }
+
+    /**
+     * 指定した期間の計測値を取得する.
+     * <p>
+     * 保存済みの日は保存先から、それ以外の日と当日はスマートメーターから取得する.
+     * </p>
+     * @param epc EPC ({@link #EPC_NORMAL} / {@link #EPC_REVERSE}).
+     * @param fromDaysAgo 取得開始日(何日前か).
+     * @param toDaysAgo 取得終了日(何日前か).
+     * @param callback 取得結果の通知先.
+     */
+    public void request(final int epc, final int fromDaysAgo, final int toDaysAgo, final Callback callback) {
+        if (toDaysAgo < 0 || fromDaysAgo < toDaysAgo || fromDaysAgo > MAX_DAYS_AGO) {
+            throw new IllegalArgumentException("days is out of range.");
+        }
+        final IntegratedPowerStore.Day[] days = new IntegratedPowerStore.Day[fromDaysAgo - toDaysAgo + 1];
+        final int[] remaining = new int[] {days.length};
+        final boolean[] failed = new boolean[1];
+
+        synchronized (this) {
+            int today = getToday();
+            for (int i = 0; i < days.length; i++) {
+                int daysAgo = fromDaysAgo - i;
+                int epochDay = today - daysAgo;
+                if (daysAgo > 0 && mStore != null) {
+                    days[i] = mStore.get(epc, epochDay);
+                    if (days[i] != null) {
+                        remaining[0]--;
+                        continue;
+                    }
+                }
+
+                final int index = i;
+                enqueue(epc, daysAgo, epochDay, new DayListener() {
+                    @Override
+                    public void onDay(final IntegratedPowerStore.Day day, final boolean error) {
+                        synchronized (days) {
+                            days[index] = day;
+                            failed[0] |= error;
+                            if (--remaining[0] > 0) {
+                                return;
+                            }
+                        }
+                        if (failed[0]) {
+                            callback.onFailure();
+                        } else {
+                            callback.onResult(days);
+                        }
+                    }
+                });
+            }
+            if (remaining[0] > 0) {
+                startNext();
+                return;
+            }
+        }
+        callback.onResult(days);
+    }
+
+    /**
+     * 受信したパケットを処理する.
+     * @param packet ECHONET Lite 受信パケット.
+     * @return 実行中の処理に対する応答の場合はtrue、それ以外はfalse.
+     */
+    public boolean onReceive(final byte[] packet) {
+        int transactionId = ENLUtil.getTransactionId(packet);
+        Job job;
+        IntegratedPowerStore.Day day = null;
+        synchronized (this) {
+            job = mActive;
+            if (job == null || job.mTransactionId != transactionId || packet.length <= ENLUtil.IDX_OPC) {
+                return false;
+            }
+            int esv = mENLUtil.checkEsv(packet, transactionId);
+            if (job.mState == STATE_SET && esv == ENLUtil.ESV_SET_RES) {
+                // 積算履歴収集日を設定できたので計測値を取得する.
+                job.mTimeoutTask.cancel(false);
+                job.mState = STATE_GET;
+                send(job, mENLUtil.makeEchonetLitePacket(job.mEpc == EPC_REVERSE ? "GET_E4" : "GET_E2", null));
+                return true;
+            } else if (job.mState == STATE_GET && esv == ENLUtil.ESV_GET_RES) {
+                day = parseHistory(job, packet);
+            } else if (esv != ENLUtil.ESV_SETC_SNA && esv != ENLUtil.ESV_GET_SNA) {
+                return false;
+            }
+            job.mTimeoutTask.cancel(false);
+            mActive = null;
+            if (day != null && isCacheable(job, day)) {
+                mStore.put(day);
+            }
+            startNext();
+        }
+        notifyDay(job, day, false);
+        return true;
+    }
+
+    /**
+     * 通信が空いている間に、保存されていない日の計測値を取得する.
+     * @param epcs 取得するEPC.
+     * @param days 取得する日数(何日前まで).
+     */
+    public synchronized void startBackfill(final int[] epcs, final int days) {
+        mBackfillEpcs = epcs.clone();
+        mBackfillDays = Math.min(days, MAX_DAYS_AGO);
+        scheduleBackfill(BACKFILL_INTERVAL);
+    }
+
+    /**
+     * バックフィルを停止する.
+     */
+    public synchronized void stopBackfill() {
+        mBackfillEpcs = null;
+        if (mBackfillTask != null) {
+            mBackfillTask.cancel(false);
+            mBackfillTask = null;
+        }
+    }
+
+    /**
+     * 取得待ち、実行中の処理をすべて破棄し、失敗を通知する.
+     * <p>
+     * バックフィルも停止する.
+     * </p>
+     */
+    public void clear() {
+        List<Job> jobs = new ArrayList<>();
+        synchronized (this) {
+            stopBackfill();
+            if (mActive != null) {
+                if (mActive.mTimeoutTask != null) {
+                    mActive.mTimeoutTask.cancel(false);
+                }
+                jobs.add(mActive);
+                mActive = null;
+            }
+            jobs.addAll(mQueue);
+            mQueue.clear();
+        }
+        for (Job job : jobs) {
+            notifyDay(job, null, true);
+        }
+    }
+
+    /**
+     * 現在時刻を取得する.
+     * @return 現在時刻. 単位はミリ秒.
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 今日が1970年1月1日から何日目かを取得する.
+     * @return 1970年1月1日からの日数(ローカル時刻).
+     */
+    private int getToday() {
+        long now = currentTimeMillis();
+        return (int) ((now + TimeZone.getDefault().getOffset(now)) / DAY_MILLIS);
+    }
+
+    /**
+     * 取得処理を追加する.
+     * <p>
+     * 同じ日の取得処理が実行中または取得待ちの場合は、その結果を共有する.
+     * </p>
+     * @param epc EPC.
+     * @param daysAgo 何日前か.
+     * @param epochDay 1970年1月1日からの日数.
+     * @param listener 取得結果の通知先.
+     */
+    private void enqueue(final int epc, final int daysAgo, final int epochDay, final DayListener listener) {
+        if (mActive != null && mActive.mEpc == epc && mActive.mEpochDay == epochDay) {
+            mActive.mListeners.add(listener);
+            return;
+        }
+        for (Job job : mQueue) {
+            if (job.mEpc == epc && job.mEpochDay == epochDay) {
+                job.mListeners.add(listener);
+                return;
+            }
+        }
+        Job job = new Job(epc, daysAgo, epochDay);
+        job.mListeners.add(listener);
+        mQueue.add(job);
+    }
+
+    /**
+     * 実行中の処理がなければ、次の処理を開始する.
+     */
+    private void startNext() {
+        if (mActive != null || mQueue.isEmpty()) {
+            return;
+        }
+        mActive = mQueue.poll();
+        mActive.mState = STATE_SET;
+        send(mActive, mENLUtil.makeEchonetLitePacket("SET_E5", new byte[] {(byte) mActive.mDaysAgo}));
+    }
+
+    /**
+     * パケットを送信し、応答待ちにする.
+     * @param job 処理.
+     * @param packet ECHONET Lite 要求パケット.
+     */
+    private void send(final Job job, final byte[] packet) {
+        job.mTransactionId = ENLUtil.getTransactionId(packet);
+        try {
+            job.mTimeoutTask = mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onTimeout(job);
+                }
+            }, mTimeout, TimeUnit.MILLISECONDS);
+            // 送信はスケジューラのスレッドで行い、他の要求の送信と重ならないようにする.
+            mScheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mTransport.send(packet);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // スケジューラが停止済み
+            job.mTimeoutTask = null;
+        }
+    }
+
+    /**
+     * 実行中の処理がタイムアウトした時の処理.
+     * @param job タイムアウトした処理.
+     */
+    private void onTimeout(final Job job) {
+        synchronized (this) {
+            if (mActive != job) {
+                return;
+            }
+            mActive = null;
+            startNext();
+        }
+        notifyDay(job, null, true);
+    }
+
+    /**
+     * 計測値履歴の応答を解析する.
+     * @param job 処理.
+     * @param packet ECHONET Lite 受信パケット.
+     * @return 計測値. 含まれていない場合はnull.
+     */
+    private IntegratedPowerStore.Day parseHistory(final Job job, final byte[] packet) {
+        ENLUtil.ResultData[] resultData = mENLUtil.splitResultData(packet);
+        if (resultData == null) {
+            return null;
+        }
+        for (ENLUtil.ResultData data : resultData) {
+            if (data.mEpc == job.mEpc && data.mPdc == HISTORY_PDC) {
+                ByteBuffer buffer = ByteBuffer.wrap(data.mEdt);
+                int collectionDay = buffer.getShort() & 0xFFFF;
+                if (collectionDay != job.mDaysAgo) {
+                    // 他の機器が積算履歴収集日を変更した.
+                    return null;
+                }
+                int[] values = new int[IntegratedPowerStore.SLOT_COUNT];
+                for (int n = 0; n < values.length; n++) {
+                    values[n] = buffer.getInt();
+                }
+                return new IntegratedPowerStore.Day(job.mEpc, job.mEpochDay,
+                        mENLUtil.getCoeffValue(), mENLUtil.getUnitValue(), values);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 計測値を保存できるか判定する.
+     * <p>
+     * 当日の計測値は変化するため保存しない. 前日の計測値は最後のコマが計測済みの場合のみ保存する.
+     * </p>
+     * @param job 処理.
+     * @param day 計測値.
+     * @return 保存できる場合はtrue.
+     */
+    private boolean isCacheable(final Job job, final IntegratedPowerStore.Day day) {
+        if (mStore == null || day.mUnitValue == 0) {
+            return false;
+        }
+        if (job.mDaysAgo == 1) {
+            return day.mValues[IntegratedPowerStore.SLOT_COUNT - 1] != NO_DATA;
+        }
+        return job.mDaysAgo > 1;
+    }
+
+    /**
+     * 1日分の取得結果を通知する.
+     * @param job 処理.
+     * @param day 計測値.
+     * @param failed 応答が得られなかった場合はtrue.
+     */
+    private static void notifyDay(final Job job, final IntegratedPowerStore.Day day, final boolean failed) {
+        for (DayListener listener : job.mListeners) {
+            listener.onDay(day, failed);
+        }
+    }
+
+    /**
+     * バックフィル処理を予約する.
+     * @param delay 待ち時間. 単位はミリ秒.
+     */
+    private void scheduleBackfill(final long delay) {
+        if (mBackfillEpcs == null) {
+            return;
+        }
+        if (mBackfillTask != null) {
+            mBackfillTask.cancel(false);
+        }
+        try {
+            mBackfillTask = mScheduler.schedule(mBackfill, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // スケジューラが停止済み
+            mBackfillTask = null;
+        }
+    }
+
+    /**
+     * 保存されていない日の計測値を1日分取得する.
+     */
+    private synchronized void backfill() {
+        mBackfillTask = null;
+        if (mBackfillEpcs == null) {
+            return;
+        }
+        // 通信中、または係数と単位が取得できていない場合は後で行う.
+        boolean busy = mActive != null || !mQueue.isEmpty()
+                || (mRequestScheduler != null && mRequestScheduler.getInFlightCount() > 0);
+        if (busy || mStore == null || mENLUtil.getUnitValue() == 0) {
+            scheduleBackfill(BACKFILL_INTERVAL);
+            return;
+        }
+
+        int today = getToday();
+        for (int daysAgo = 1; daysAgo <= mBackfillDays; daysAgo++) {
+            for (final int epc : mBackfillEpcs) {
+                final int epochDay = today - daysAgo;
+                final long key = ((long) epc << 32) | epochDay;
+                if (mStore.get(epc, epochDay) != null || mBackfillSkipped.contains(key)) {
+                    continue;
+                }
+                enqueue(epc, daysAgo, epochDay, new DayListener() {
+                    @Override
+                    public void onDay(final IntegratedPowerStore.Day day, final boolean failed) {
+                        synchronized (IntegratedPowerHistory.this) {
+                            // 保存できなかった日は繰り返し取得しない.
+                            if (mStore != null && mStore.get(epc, epochDay) == null) {
+                                mBackfillSkipped.add(key);
+                            }
+                            scheduleBackfill(BACKFILL_INTERVAL);
+                        }
+                    }
+                });
+                startNext();
+                return;
+            }
+        }
+        scheduleBackfill(BACKFILL_RECHECK_INTERVAL);
+    }
+}
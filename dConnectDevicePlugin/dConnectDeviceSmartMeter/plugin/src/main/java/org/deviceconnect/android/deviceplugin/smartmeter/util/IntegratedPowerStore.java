@@ -0,0 +1,236 @@
+/*
+ IntegratedPowerStore.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 積算電力量計測値履歴(30分毎)をファイルに保存するクラス.
+ *
+ * <p>
+ * 1日分のデータは、計測値の生データ(48コマ分の32bit整数)と、取得時の係数と単位で保存する.
+ * 1日分は205バイトとなり、EPCごとに最大{@link #MAX_DAYS}日分を保持する.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class IntegratedPowerStore {
+    /** 1日のコマ数. */
+    public static final int SLOT_COUNT = 48;
+    /** EPCごとに保持する最大日数. */
+    public static final int MAX_DAYS = 100;
+
+    /** ファイル識別子. */
+    private static final int MAGIC = 0x454E4C48;
+    /** ファイルフォーマットのバージョン. */
+    private static final int VERSION = 1;
+
+    /**
+     * 1日分の積算電力量計測値.
+     */
+    public static class Day {
+        /** EPC (0xE2:正方向 / 0xE4:逆方向). */
+        public final int mEpc;
+        /** 1970年1月1日からの日数(ローカル時刻). */
+        public final int mEpochDay;
+        /** 係数. */
+        public final int mCoeff;
+        /** 積算電力量単位. */
+        public final float mUnitValue;
+        /** 計測値(48コマ). */
+        public final int[] mValues;
+
+        /**
+         * コンストラクタ.
+         * @param epc EPC.
+         * @param epochDay 1970年1月1日からの日数.
+         * @param coeff 係数.
+         * @param unitValue 積算電力量単位.
+         * @param values 計測値(48コマ).
+         */
+        public Day(final int epc, final int epochDay, final int coeff, final float unitValue, final int[] values) {
+            if (values.length != SLOT_COUNT) {
+                throw new IllegalArgumentException("values must have " + SLOT_COUNT + " slots.");
+            }
+            mEpc = epc;
+            mEpochDay = epochDay;
+            mCoeff = coeff;
+            mUnitValue = unitValue;
+            mValues = values;
+        }
+    }
+
+    /** 保存先ファイル. */
+    private final File mFile;
+    /** EPCごとの保存データ. キーは1970年1月1日からの日数. */
+    private final Map<Integer, TreeMap<Integer, Day>> mDays = new HashMap<>();
+    /** ファイルを読み込んだかどうか. */
+    private boolean mLoaded;
+
+    /**
+     * コンストラクタ.
+     * @param file 保存先ファイル.
+     */
+    public IntegratedPowerStore(final File file) {
+        mFile = file;
+    }
+
+    /**
+     * 1日分の計測値を取得する.
+     * @param epc EPC.
+     * @param epochDay 1970年1月1日からの日数.
+     * @return 計測値. 保存されていない場合はnull.
+     */
+    public synchronized Day get(final int epc, final int epochDay) {
+        load();
+        TreeMap<Integer, Day> days = mDays.get(epc);
+        return days != null ? days.get(epochDay) : null;
+    }
+
+    /**
+     * 1日分の計測値を保存する.
+     * <p>
+     * 保持する日数を超えた場合は、古い日から破棄する.
+     * </p>
+     * @param day 計測値.
+     */
+    public synchronized void put(final Day day) {
+        load();
+        TreeMap<Integer, Day> days = mDays.get(day.mEpc);
+        if (days == null) {
+            days = new TreeMap<>();
+            mDays.put(day.mEpc, days);
+        }
+        days.put(day.mEpochDay, day);
+        while (days.size() > MAX_DAYS) {
+            days.remove(days.firstKey());
+        }
+        save();
+    }
+
+    /**
+     * 保存している日数を取得する.
+     * @param epc EPC.
+     * @return 日数.
+     */
+    public synchronized int size(final int epc) {
+        load();
+        TreeMap<Integer, Day> days = mDays.get(epc);
+        return days != null ? days.size() : 0;
+    }
+
+    /**
+     * ファイルから読み込む.
+     */
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int epc = in.readUnsignedByte();
+                int epochDay = in.readInt();
+                int coeff = in.readInt();
+                float unitValue = in.readFloat();
+                int[] values = new int[SLOT_COUNT];
+                for (int n = 0; n < SLOT_COUNT; n++) {
+                    values[n] = in.readInt();
+                }
+                Day day = new Day(epc, epochDay, coeff, unitValue, values);
+                TreeMap<Integer, Day> days = mDays.get(epc);
+                if (days == null) {
+                    days = new TreeMap<>();
+                    mDays.put(epc, days);
+                }
+                days.put(epochDay, day);
+            }
+        } catch (IOException e) {
+            // 壊れたファイルは破棄して取得し直す.
+            mDays.clear();
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * ファイルへ書き込む.
+     * <p>
+     * 一時ファイルに書き込んでから置き換えるため、書き込み中に終了しても既存のデータは壊れない.
+     * </p>
+     */
+    private void save() {
+        File tmp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            int count = 0;
+            for (TreeMap<Integer, Day> days : mDays.values()) {
+                count += days.size();
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (TreeMap<Integer, Day> days : mDays.values()) {
+                for (Day day : days.values()) {
+                    out.writeByte(day.mEpc);
+                    out.writeInt(day.mEpochDay);
+                    out.writeInt(day.mCoeff);
+                    out.writeFloat(day.mUnitValue);
+                    for (int value : day.mValues) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(mFile)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            // 保存できなくてもメモリ上のデータは使用できる.
+            tmp.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * ストリームを閉じる.
+     * @param stream ストリーム.
+     */
+    private static void close(final Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ ENLRequestSchedulerTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ENLRequestScheduler}クラスの単体テスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ENLRequestSchedulerTest {
+
+    /** スマートメーターの1フレームの処理時間. 単位はミリ秒. */
+    private static final long LATENCY = 150;
+
+    /** テスト用のタイムアウト時間. 単位はミリ秒. */
+    private static final long TIMEOUT = 1000;
+
+    /** 瞬時電力計測値. */
+    private static final byte[] POWER = {0x00, 0x00, 0x01, (byte) 0xF4};
+
+    /** 瞬時電流計測値. */
+    private static final byte[] CURRENT = {0x00, 0x32, (byte) 0xFF, (byte) 0xF6};
+
+    /** 動作状態. */
+    private static final byte[] STATUS = {0x30};
+
+    private final ENLUtil mENLUtil = new ENLUtil();
+
+    private ScheduledExecutorService mExecutor;
+
+    private SimulatedSmartMeter mMeter;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        mMeter = new SimulatedSmartMeter(LATENCY);
+        mMeter.setProperty(0xE7, POWER);
+        mMeter.setProperty(0xE8, CURRENT);
+        mMeter.setProperty(0x80, STATUS);
+    }
+
+    @After
+    public void tearDown() {
+        mMeter.shutdown();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * 同時に要求されたプロパティが1つのGet要求にまとめられることを確認する.
+     */
+    @Test
+    public void testMergeConcurrentRequests() throws Exception {
+        ENLRequestScheduler scheduler = createScheduler(mMeter, ENLRequestScheduler.DEFAULT_TIMEOUT);
+        Result power = new Result();
+        Result current = new Result();
+        Result status = new Result();
+
+        long start = System.currentTimeMillis();
+        scheduler.request(0xE7, power);
+        scheduler.request(0xE8, current);
+        scheduler.request(0x80, status);
+        Assert.assertTrue(power.await());
+        Assert.assertTrue(current.await());
+        Assert.assertTrue(status.await());
+        long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertEquals(1, mMeter.getRequestCount());
+        Assert.assertEquals(3, mMeter.getRequest(0)[ENLUtil.IDX_OPC]);
+        Assert.assertArrayEquals(POWER, power.mData.mEdt);
+        Assert.assertArrayEquals(CURRENT, current.mData.mEdt);
+        Assert.assertArrayEquals(STATUS, status.mData.mEdt);
+        // 1往復分の時間で3つのプロパティが取得できる
+        Assert.assertTrue("elapsed = " + elapsed, elapsed < LATENCY * 2);
+    }
+
+    /**
+     * 同じEPCに対する要求が1つの結果を共有することを確認する.
+     */
+    @Test
+    public void testShareSameProperty() throws Exception {
+        ENLRequestScheduler scheduler = createScheduler(mMeter, ENLRequestScheduler.DEFAULT_TIMEOUT);
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Result result = new Result();
+            results.add(result);
+            scheduler.request(0xE7, result);
+        }
+
+        // 応答待ちの間に要求されたものも同じ結果を共有する
+        Thread.sleep(ENLRequestScheduler.DEFAULT_GATHER_DELAY + LATENCY / 2);
+        Assert.assertEquals(1, scheduler.getInFlightCount());
+        Result late = new Result();
+        results.add(late);
+        scheduler.request(0xE7, late);
+
+        for (Result result : results) {
+            Assert.assertTrue(result.await());
+            Assert.assertSame(results.get(0).mData, result.mData);
+        }
+        Assert.assertEquals(1, mMeter.getRequestCount());
+        Assert.assertEquals(1, mMeter.getRequest(0)[ENLUtil.IDX_OPC]);
+    }
+
+    /**
+     * 応答待ちの要求の後に要求されたプロパティは、空きができた時点でまとめて送信されることを確認する.
+     */
+    @Test
+    public void testPipelining() throws Exception {
+        ENLRequestScheduler scheduler = new ENLRequestScheduler(mENLUtil, mExecutor, mMeter,
+                1, ENLRequestScheduler.DEFAULT_GATHER_DELAY, ENLRequestScheduler.DEFAULT_TIMEOUT);
+        mMeter.setReceiver(createReceiver(scheduler));
+        Result power = new Result();
+        scheduler.request(0xE7, power);
+        Thread.sleep(ENLRequestScheduler.DEFAULT_GATHER_DELAY + LATENCY / 2);
+
+        Result current = new Result();
+        Result status = new Result();
+        scheduler.request(0xE8, current);
+        scheduler.request(0x80, status);
+        Assert.assertTrue(power.await());
+        Assert.assertTrue(current.await());
+        Assert.assertTrue(status.await());
+
+        Assert.assertEquals(2, mMeter.getRequestCount());
+        Assert.assertEquals(1, mMeter.getRequest(0)[ENLUtil.IDX_OPC]);
+        Assert.assertEquals(2, mMeter.getRequest(1)[ENLUtil.IDX_OPC]);
+    }
+
+    /**
+     * 応答が要求と異なる順番で届いても、トランザクションIDで対応付けられることを確認する.
+     */
+    @Test
+    public void testMatchByTransactionId() throws Exception {
+        // 最初のフレームだけを遅らせてスマートメーターへ渡す
+        final CountDownLatch released = new CountDownLatch(1);
+        ENLRequestScheduler.Transport transport = new ENLRequestScheduler.Transport() {
+            private int mCount;
+
+            @Override
+            public void send(final byte[] packet) {
+                if (mCount++ == 0) {
+                    mExecutor.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            mMeter.send(packet);
+                            released.countDown();
+                        }
+                    }, LATENCY * 2, TimeUnit.MILLISECONDS);
+                } else {
+                    mMeter.send(packet);
+                }
+            }
+        };
+        ENLRequestScheduler scheduler = createScheduler(transport, ENLRequestScheduler.DEFAULT_TIMEOUT);
+
+        // 1フレームに収まらない数のプロパティを要求する
+        int count = ENLRequestScheduler.MAX_PROPERTY_COUNT + 2;
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            mMeter.setProperty(0xD0 + i, new byte[] {(byte) i});
+            Result result = new Result();
+            results.add(result);
+            scheduler.request(0xD0 + i, result);
+        }
+        for (int i = 0; i < count; i++) {
+            Result result = results.get(i);
+            Assert.assertTrue(result.await());
+            Assert.assertEquals(0xD0 + i, result.mData.mEpc);
+            Assert.assertArrayEquals(new byte[] {(byte) i}, result.mData.mEdt);
+        }
+        Assert.assertEquals(0, released.getCount());
+
+        // 後から送信したフレームが先に応答されている
+        Assert.assertEquals(2, mMeter.getRequestCount());
+        Assert.assertEquals(2, mMeter.getRequest(0)[ENLUtil.IDX_OPC]);
+        Assert.assertEquals(ENLRequestScheduler.MAX_PROPERTY_COUNT, mMeter.getRequest(1)[ENLUtil.IDX_OPC]);
+    }
+
+    /**
+     * 取得できないプロパティはPDCが0の結果が通知されることを確認する.
+     */
+    @Test
+    public void testUnsupportedProperty() throws Exception {
+        ENLRequestScheduler scheduler = createScheduler(mMeter, ENLRequestScheduler.DEFAULT_TIMEOUT);
+        Result power = new Result();
+        Result unknown = new Result();
+        scheduler.request(0xE7, power);
+        scheduler.request(0xEF, unknown);
+
+        Assert.assertTrue(power.await());
+        Assert.assertTrue(unknown.await());
+        Assert.assertArrayEquals(POWER, power.mData.mEdt);
+        Assert.assertEquals(0xEF, unknown.mData.mEpc);
+        Assert.assertEquals(0, unknown.mData.mPdc);
+    }
+
+    /**
+     * 応答がない場合に失敗が通知され、その後の要求は処理されることを確認する.
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        ENLRequestScheduler scheduler = createScheduler(mMeter, TIMEOUT);
+        mMeter.setDropCount(1);
+        Result lost = new Result();
+        scheduler.request(0xE7, lost);
+        Assert.assertTrue(lost.await());
+        Assert.assertTrue(lost.mFailed);
+        Assert.assertEquals(0, scheduler.getInFlightCount());
+
+        // タイムアウトした要求への応答は対応付けられない
+        byte[] lateResponse = mENLUtil.makeGetPacket(ENLUtil.getTransactionId(mMeter.getRequest(0)), new int[] {0xE7});
+        Assert.assertFalse(scheduler.onReceive(lateResponse));
+
+        Result power = new Result();
+        scheduler.request(0xE7, power);
+        Assert.assertTrue(power.await());
+        Assert.assertFalse(power.mFailed);
+        Assert.assertArrayEquals(POWER, power.mData.mEdt);
+    }
+
+    /**
+     * 破棄した要求に失敗が通知されることを確認する.
+     */
+    @Test
+    public void testClear() throws Exception {
+        ENLRequestScheduler scheduler = createScheduler(mMeter, ENLRequestScheduler.DEFAULT_TIMEOUT);
+        Result power = new Result();
+        scheduler.request(0xE7, power);
+        scheduler.clear();
+
+        Assert.assertTrue(power.await());
+        Assert.assertTrue(power.mFailed);
+    }
+
+    /**
+     * スケジューラを作成する.
+     * @param transport パケットの送信先.
+     * @param timeout タイムアウト時間.
+     * @return スケジューラ.
+     */
+    private ENLRequestScheduler createScheduler(final ENLRequestScheduler.Transport transport,
+                                                final long timeout) {
+        ENLRequestScheduler scheduler = new ENLRequestScheduler(mENLUtil, mExecutor, transport,
+                ENLRequestScheduler.DEFAULT_MAX_IN_FLIGHT, ENLRequestScheduler.DEFAULT_GATHER_DELAY, timeout);
+        mMeter.setReceiver(createReceiver(scheduler));
+        return scheduler;
+    }
+
+    private static SimulatedSmartMeter.Receiver createReceiver(final ENLRequestScheduler scheduler) {
+        return new SimulatedSmartMeter.Receiver() {
+            @Override
+            public void onReceive(final byte[] packet) {
+                scheduler.onReceive(packet);
+            }
+        };
+    }
+
+    /**
+     * 通知された結果を保持する.
+     */
+    private static class Result implements ENLRequestScheduler.Callback {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private ENLUtil.ResultData mData;
+        private boolean mFailed;
+
+        @Override
+        public void onResult(final ENLUtil.ResultData data) {
+            mData = data;
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onFailure() {
+            mFailed = true;
+            mLatch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mLatch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
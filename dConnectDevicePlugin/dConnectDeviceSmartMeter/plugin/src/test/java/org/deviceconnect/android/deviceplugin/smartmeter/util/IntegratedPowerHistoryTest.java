@@ -0,0 +1,281 @@
+/*
+ IntegratedPowerHistoryTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IntegratedPowerHistory}クラスの単体テスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class IntegratedPowerHistoryTest {
+
+    /** スマートメーターの1フレームの処理時間. 単位はミリ秒. */
+    private static final long LATENCY = 50;
+
+    /** スマートメーターが保持している日数. */
+    private static final int METER_DAYS = 10;
+
+    /** 1日の取得に必要なフレーム数(積算履歴収集日1の設定と計測値履歴の取得). */
+    private static final int FRAMES_PER_DAY = 2;
+
+    /** テストで使用する現在時刻. */
+    private static final long NOW;
+    static {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2017, Calendar.JUNE, 15, 12, 0, 0);
+        NOW = calendar.getTimeInMillis();
+    }
+
+    /** 係数と単位が取得済みのECHONET Lite Utility. */
+    private final ENLUtil mENLUtil = new ENLUtil() {
+        @Override
+        public float getUnitValue() {
+            return 0.1f;
+        }
+    };
+
+    private ScheduledExecutorService mExecutor;
+
+    private SimulatedSmartMeter mMeter;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        mMeter = new SimulatedSmartMeter(LATENCY);
+        for (int daysAgo = 0; daysAgo < METER_DAYS; daysAgo++) {
+            mMeter.setHistory(IntegratedPowerHistory.EPC_NORMAL, daysAgo, createValues(daysAgo));
+        }
+        mFile = File.createTempFile("integrated_power", ".dat");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mMeter.shutdown();
+        mExecutor.shutdownNow();
+        mFile.delete();
+    }
+
+    /**
+     * 7日分の取得で、2回目以降は当日分のみスマートメーターに問い合わせることを確認する.
+     */
+    @Test
+    public void testColdAndWarmCache() throws Exception {
+        IntegratedPowerHistory history = createHistory(new IntegratedPowerStore(mFile));
+
+        long start = System.currentTimeMillis();
+        Result cold = request(history, 6, 0);
+        long coldElapsed = System.currentTimeMillis() - start;
+        int coldFrames = mMeter.getRequestCount();
+        assertDays(cold, 6, 0);
+
+        start = System.currentTimeMillis();
+        Result warm = request(history, 6, 0);
+        long warmElapsed = System.currentTimeMillis() - start;
+        int warmFrames = mMeter.getRequestCount() - coldFrames;
+        assertDays(warm, 6, 0);
+
+        System.out.println("7 days: cold " + coldFrames + " frames " + coldElapsed + "ms, warm "
+                + warmFrames + " frames " + warmElapsed + "ms");
+        Assert.assertEquals(7 * FRAMES_PER_DAY, coldFrames);
+        Assert.assertEquals(FRAMES_PER_DAY, warmFrames);
+    }
+
+    /**
+     * 保存した計測値が、再作成した後も使用されることを確認する.
+     */
+    @Test
+    public void testPersistence() throws Exception {
+        request(createHistory(new IntegratedPowerStore(mFile)), 6, 1);
+        int frames = mMeter.getRequestCount();
+        Assert.assertEquals(6 * FRAMES_PER_DAY, frames);
+
+        IntegratedPowerStore store = new IntegratedPowerStore(mFile);
+        Assert.assertEquals(6, store.size(IntegratedPowerHistory.EPC_NORMAL));
+        Result result = request(createHistory(store), 6, 1);
+        assertDays(result, 6, 1);
+        Assert.assertEquals(frames, mMeter.getRequestCount());
+    }
+
+    /**
+     * 最後のコマが未計測の前日分は保存しないことを確認する.
+     */
+    @Test
+    public void testIncompleteYesterday() throws Exception {
+        int[] values = createValues(1);
+        values[IntegratedPowerStore.SLOT_COUNT - 1] = IntegratedPowerHistory.NO_DATA;
+        mMeter.setHistory(IntegratedPowerHistory.EPC_NORMAL, 1, values);
+        IntegratedPowerHistory history = createHistory(new IntegratedPowerStore(mFile));
+
+        request(history, 2, 1);
+        request(history, 2, 1);
+        Assert.assertEquals(3 * FRAMES_PER_DAY, mMeter.getRequestCount());
+    }
+
+    /**
+     * スマートメーターが保持していない日はnullが通知され、保存されないことを確認する.
+     */
+    @Test
+    public void testNotAvailableDay() throws Exception {
+        IntegratedPowerStore store = new IntegratedPowerStore(mFile);
+        IntegratedPowerHistory history = createHistory(store);
+
+        Result result = request(history, METER_DAYS, METER_DAYS - 1);
+        Assert.assertNull(result.mDays[0]);
+        Assert.assertNotNull(result.mDays[1]);
+        Assert.assertEquals(1, store.size(IntegratedPowerHistory.EPC_NORMAL));
+    }
+
+    /**
+     * 同じ日に対する同時の要求は、1回の問い合わせを共有することを確認する.
+     */
+    @Test
+    public void testShareSameDay() throws Exception {
+        IntegratedPowerHistory history = createHistory(new IntegratedPowerStore(mFile));
+        Result first = new Result();
+        Result second = new Result();
+        history.request(IntegratedPowerHistory.EPC_NORMAL, 3, 0, first);
+        history.request(IntegratedPowerHistory.EPC_NORMAL, 1, 0, second);
+
+        Assert.assertTrue(first.await());
+        Assert.assertTrue(second.await());
+        Assert.assertSame(first.mDays[3], second.mDays[1]);
+        Assert.assertEquals(4 * FRAMES_PER_DAY, mMeter.getRequestCount());
+    }
+
+    /**
+     * 通信が空いている間に過去の計測値が保存され、その後の要求では当日分のみ問い合わせることを確認する.
+     */
+    @Test
+    public void testBackfill() throws Exception {
+        IntegratedPowerStore store = new IntegratedPowerStore(mFile);
+        IntegratedPowerHistory history = createHistory(store);
+        history.startBackfill(new int[] {IntegratedPowerHistory.EPC_NORMAL}, 3);
+
+        long end = System.currentTimeMillis() + 10 * 1000;
+        while (store.size(IntegratedPowerHistory.EPC_NORMAL) < 3 && System.currentTimeMillis() < end) {
+            Thread.sleep(100);
+        }
+        history.stopBackfill();
+        Assert.assertEquals(3, store.size(IntegratedPowerHistory.EPC_NORMAL));
+        int frames = mMeter.getRequestCount();
+        Assert.assertEquals(3 * FRAMES_PER_DAY, frames);
+
+        Result result = request(history, 3, 0);
+        assertDays(result, 3, 0);
+        Assert.assertEquals(frames + FRAMES_PER_DAY, mMeter.getRequestCount());
+    }
+
+    /**
+     * 応答がない場合に失敗が通知されることを確認する.
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        IntegratedPowerHistory history = new IntegratedPowerHistory(mENLUtil, mExecutor, mMeter, null, 500) {
+            @Override
+            long currentTimeMillis() {
+                return NOW;
+            }
+        };
+        mMeter.setReceiver(createReceiver(history));
+        mMeter.setDropCount(1);
+
+        Result result = new Result();
+        history.request(IntegratedPowerHistory.EPC_NORMAL, 1, 1, result);
+        Assert.assertTrue(result.await());
+        Assert.assertTrue(result.mFailed);
+    }
+
+    private IntegratedPowerHistory createHistory(final IntegratedPowerStore store) {
+        IntegratedPowerHistory history = new IntegratedPowerHistory(mENLUtil, mExecutor, mMeter, null) {
+            @Override
+            long currentTimeMillis() {
+                return NOW;
+            }
+        };
+        history.setStore(store);
+        mMeter.setReceiver(createReceiver(history));
+        return history;
+    }
+
+    private static SimulatedSmartMeter.Receiver createReceiver(final IntegratedPowerHistory history) {
+        return new SimulatedSmartMeter.Receiver() {
+            @Override
+            public void onReceive(final byte[] packet) {
+                history.onReceive(packet);
+            }
+        };
+    }
+
+    private static Result request(final IntegratedPowerHistory history, final int from, final int to)
+            throws InterruptedException {
+        Result result = new Result();
+        history.request(IntegratedPowerHistory.EPC_NORMAL, from, to, result);
+        Assert.assertTrue(result.await());
+        Assert.assertFalse(result.mFailed);
+        return result;
+    }
+
+    private static void assertDays(final Result result, final int from, final int to) {
+        Assert.assertEquals(from - to + 1, result.mDays.length);
+        for (int i = 0; i < result.mDays.length; i++) {
+            Assert.assertArrayEquals(createValues(from - i), result.mDays[i].mValues);
+        }
+    }
+
+    /**
+     * 計測値を作成する. 何日前かとコマの位置で値を決める.
+     * @param daysAgo 何日前か.
+     * @return 計測値(48コマ).
+     */
+    private static int[] createValues(final int daysAgo) {
+        int[] values = new int[IntegratedPowerStore.SLOT_COUNT];
+        for (int n = 0; n < values.length; n++) {
+            values[n] = 100000 - daysAgo * 1000 + n;
+        }
+        return values;
+    }
+
+    /**
+     * 通知された結果を保持する.
+     */
+    private static class Result implements IntegratedPowerHistory.Callback {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private IntegratedPowerStore.Day[] mDays;
+        private boolean mFailed;
+
+        @Override
+        public void onResult(final IntegratedPowerStore.Day[] days) {
+            mDays = days;
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onFailure() {
+            mFailed = true;
+            mLatch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mLatch.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ IntegratedPowerStoreTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+/**
+ * {@link IntegratedPowerStore}クラスの単体テスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class IntegratedPowerStoreTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("integrated_power", ".dat");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * 保存した計測値がファイルから読み込めることを確認する.
+     */
+    @Test
+    public void testSaveAndLoad() {
+        IntegratedPowerStore store = new IntegratedPowerStore(mFile);
+        store.put(createDay(0xE2, 17000));
+        store.put(createDay(0xE4, 17000));
+
+        IntegratedPowerStore loaded = new IntegratedPowerStore(mFile);
+        IntegratedPowerStore.Day day = loaded.get(0xE2, 17000);
+        Assert.assertNotNull(day);
+        Assert.assertEquals(3, day.mCoeff);
+        Assert.assertEquals(0.1f, day.mUnitValue, 0);
+        Assert.assertArrayEquals(createDay(0xE2, 17000).mValues, day.mValues);
+        Assert.assertNotNull(loaded.get(0xE4, 17000));
+        Assert.assertNull(loaded.get(0xE2, 17001));
+        Assert.assertEquals(1 + 4 + 4 + 4 + 4 * 48, (mFile.length() - 12) / 2);
+    }
+
+    /**
+     * 保持する日数を超えた場合に古い日から破棄されることを確認する.
+     */
+    @Test
+    public void testEviction() {
+        IntegratedPowerStore store = new IntegratedPowerStore(mFile);
+        for (int i = 0; i < IntegratedPowerStore.MAX_DAYS + 5; i++) {
+            store.put(createDay(0xE2, 17000 + i));
+        }
+        Assert.assertEquals(IntegratedPowerStore.MAX_DAYS, store.size(0xE2));
+        Assert.assertNull(store.get(0xE2, 17004));
+        Assert.assertNotNull(store.get(0xE2, 17005));
+    }
+
+    /**
+     * 壊れたファイルは空として扱われることを確認する.
+     */
+    @Test
+    public void testBrokenFile() throws Exception {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[] {1, 2, 3});
+        out.close();
+
+        IntegratedPowerStore store = new IntegratedPowerStore(mFile);
+        Assert.assertEquals(0, store.size(0xE2));
+        store.put(createDay(0xE2, 17000));
+        Assert.assertEquals(1, new IntegratedPowerStore(mFile).size(0xE2));
+    }
+
+    private static IntegratedPowerStore.Day createDay(final int epc, final int epochDay) {
+        int[] values = new int[IntegratedPowerStore.SLOT_COUNT];
+        for (int n = 0; n < values.length; n++) {
+            values[n] = epochDay * 100 + n;
+        }
+        return new IntegratedPowerStore.Day(epc, epochDay, 3, 0.1f, values);
+    }
+}
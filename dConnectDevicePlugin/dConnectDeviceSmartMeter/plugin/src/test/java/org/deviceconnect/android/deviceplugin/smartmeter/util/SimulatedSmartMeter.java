@@ -0,0 +1,241 @@
+/*
+ SimulatedSmartMeter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * シリアル接続されたスマートメーターを模擬するクラス.
+ *
+ * <p>
+ * 受信したECHONET Lite パケットに対して、指定された遅延の後に応答を返す.
+ * 無線区間は1フレームずつしか処理できないものとし、前のフレームの応答が終わるまで次のフレームの処理を待つ.
+ * 積算電力量計測値履歴(0xE2/0xE4)は、積算履歴収集日1(0xE5)に設定された日の計測値を返す.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class SimulatedSmartMeter implements ENLRequestScheduler.Transport {
+
+    /**
+     * 応答の受信先.
+     */
+    interface Receiver {
+        /**
+         * 応答を受信する.
+         * @param packet ECHONET Lite 応答パケット.
+         */
+        void onReceive(byte[] packet);
+    }
+
+    /** 応答を返すスケジューラ. */
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /** プロパティ値. キーはEPC. */
+    private final Map<Integer, byte[]> mProperties = new HashMap<>();
+
+    /** 積算電力量計測値履歴. キーはEPCと何日前か. */
+    private final Map<Long, int[]> mHistory = new HashMap<>();
+
+    /** 受信したパケット. */
+    private final List<byte[]> mRequests = new ArrayList<>();
+
+    /** 応答の受信先. */
+    private Receiver mReceiver;
+
+    /** 1フレームの処理にかかる時間. 単位はミリ秒. */
+    private long mLatency;
+
+    /** 応答しないフレームの数. */
+    private int mDropCount;
+
+    /** 無線区間が空く時刻. 単位はミリ秒. */
+    private long mBusyUntil;
+
+    /**
+     * コンストラクタ.
+     * @param latency 1フレームの処理にかかる時間. 単位はミリ秒.
+     */
+    SimulatedSmartMeter(final long latency) {
+        mLatency = latency;
+    }
+
+    /**
+     * 応答の受信先を設定する.
+     * @param receiver 応答の受信先.
+     */
+    synchronized void setReceiver(final Receiver receiver) {
+        mReceiver = receiver;
+    }
+
+    /**
+     * 1フレームの処理にかかる時間を設定する.
+     * @param latency 処理時間. 単位はミリ秒.
+     */
+    synchronized void setLatency(final long latency) {
+        mLatency = latency;
+    }
+
+    /**
+     * 次に受信するフレームのうち、応答しないフレームの数を設定する.
+     * @param count フレーム数.
+     */
+    synchronized void setDropCount(final int count) {
+        mDropCount = count;
+    }
+
+    /**
+     * プロパティ値を設定する.
+     * @param epc EPC.
+     * @param edt プロパティ値.
+     */
+    synchronized void setProperty(final int epc, final byte[] edt) {
+        mProperties.put(epc, edt);
+    }
+
+    /**
+     * 積算電力量計測値履歴を設定する.
+     * @param epc EPC (0xE2 / 0xE4).
+     * @param daysAgo 何日前か.
+     * @param values 計測値(48コマ).
+     */
+    synchronized void setHistory(final int epc, final int daysAgo, final int[] values) {
+        mHistory.put(((long) epc << 32) | daysAgo, values);
+    }
+
+    /**
+     * 受信したフレームの数を取得する.
+     * @return フレーム数.
+     */
+    synchronized int getRequestCount() {
+        return mRequests.size();
+    }
+
+    /**
+     * 受信したフレームを取得する.
+     * @param index 受信順のインデックス.
+     * @return ECHONET Lite パケット.
+     */
+    synchronized byte[] getRequest(final int index) {
+        return mRequests.get(index);
+    }
+
+    /**
+     * 停止する.
+     */
+    void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Override
+    public synchronized void send(final byte[] packet) {
+        mRequests.add(packet);
+        if (mDropCount > 0) {
+            mDropCount--;
+            return;
+        }
+
+        final byte[] response = createResponse(packet);
+        long now = System.currentTimeMillis();
+        mBusyUntil = Math.max(now, mBusyUntil) + mLatency;
+        final Receiver receiver = mReceiver;
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                receiver.onReceive(response);
+            }
+        }, mBusyUntil - now, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * プロパティ値を取得する.
+     * @param epc EPC.
+     * @return プロパティ値. 取得できない場合はnull.
+     */
+    private byte[] getProperty(final int epc) {
+        if (epc != 0xE2 && epc != 0xE4) {
+            return mProperties.get(epc);
+        }
+        byte[] collectionDay = mProperties.get(0xE5);
+        int daysAgo = collectionDay != null ? collectionDay[0] & 0xFF : 0;
+        int[] values = mHistory.get(((long) epc << 32) | daysAgo);
+        if (values == null) {
+            return null;
+        }
+        ByteBuffer edt = ByteBuffer.allocate(2 + values.length * 4);
+        edt.putShort((short) daysAgo);
+        for (int value : values) {
+            edt.putInt(value);
+        }
+        return edt.array();
+    }
+
+    /**
+     * 要求パケットに対する応答パケットを作成する.
+     * @param packet ECHONET Lite 要求パケット.
+     * @return ECHONET Lite 応答パケット.
+     */
+    private byte[] createResponse(final byte[] packet) {
+        int esv = packet[ENLUtil.IDX_ESV] & 0xFF;
+        int opc = packet[ENLUtil.IDX_OPC] & 0xFF;
+        boolean success = true;
+        ByteArrayOutputStream properties = new ByteArrayOutputStream();
+        int pos = ENLUtil.IDX_OPC + 1;
+        for (int i = 0; i < opc; i++) {
+            int epc = packet[pos++] & 0xFF;
+            int pdc = packet[pos++] & 0xFF;
+            properties.write(epc);
+            if (esv == ENLUtil.ESV_GET) {
+                byte[] edt = getProperty(epc);
+                if (edt == null) {
+                    success = false;
+                    properties.write(0);
+                } else {
+                    properties.write(edt.length);
+                    properties.write(edt, 0, edt.length);
+                }
+            } else {
+                byte[] edt = new byte[pdc];
+                System.arraycopy(packet, pos, edt, 0, pdc);
+                mProperties.put(epc, edt);
+                properties.write(0);
+            }
+            pos += pdc;
+        }
+
+        int resultEsv;
+        if (esv == ENLUtil.ESV_GET) {
+            resultEsv = success ? ENLUtil.ESV_GET_RES : ENLUtil.ESV_GET_SNA;
+        } else {
+            resultEsv = ENLUtil.ESV_SET_RES;
+        }
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        response.write(ENLUtil.EHD1);
+        response.write(ENLUtil.EHD2);
+        response.write(packet[ENLUtil.IDX_TID1]);
+        response.write(packet[ENLUtil.IDX_TID2]);
+        response.write(ENLUtil.EOJ_SMC_1);
+        response.write(ENLUtil.EOJ_SMC_2);
+        response.write(ENLUtil.EOJ_SMC_3);
+        response.write(ENLUtil.EOJ_CNT_1);
+        response.write(ENLUtil.EOJ_CNT_2);
+        response.write(ENLUtil.EOJ_CNT_3);
+        response.write(resultEsv);
+        response.write(opc);
+        byte[] body = properties.toByteArray();
+        response.write(body, 0, body.length);
+        return response.toByteArray();
+    }
+}
@@ -34,6 +34,13 @@ public class UnitTestDeviceService extends DConnectMessageService {
     private static final String SERVICE_ID_SPECIAL_CHARACTERS = "!#$'()-~¥@[;+:*],._/=?&%^|`\"{}<>";
     private static final String DEVICE_NAME_SPECIAL_CHARACTERS = "Test Service ID Special Characters";
 
+    /** 範囲指定の読み込みを確認するためのテスト用データのファイル名. */
+    private static final String LARGE_TEST_FILE_NAME = "large.dat";
+    /** 範囲指定の読み込みを確認するためのテスト用データのサイズ. */
+    private static final long LARGE_TEST_FILE_SIZE = 16 * 1024 * 1024;
+    /** 範囲指定の読み込みを確認するためのテスト用データの各バイトの値の周期. */
+    private static final int LARGE_TEST_FILE_MODULUS = 251;
+
     /** ロガー. */
     private Logger mLogger = Logger.getLogger("dconnect.dplugin.test");
     private FileManager mFileManager;
@@ -46,6 +53,7 @@ public class UnitTestDeviceService extends DConnectMessageService {
 
         // テスト用データ作成
         createTestData();
+        createLargeTestData();
 
         getServiceProvider().addService(new UnitTestService(SERVICE_ID,
             DEVICE_NAME, getPluginSpec()));
@@ -57,6 +65,8 @@ public class UnitTestDeviceService extends DConnectMessageService {
     public void onDestroy() {
         File file = new File(mFileManager.getBasePath(), "test.dat");
         file.delete();
+        File largeFile = new File(mFileManager.getBasePath(), LARGE_TEST_FILE_NAME);
+        largeFile.delete();
         super.onDestroy();
     }
 
@@ -127,4 +137,44 @@ public class UnitTestDeviceService extends DConnectMessageService {
             }
         }
     }
+
+    /**
+     * 範囲指定の読み込みを確認するための大きなテスト用データを作成する.
+     * <p>
+     * 各バイトの値は、先頭からの位置を {@link #LARGE_TEST_FILE_MODULUS} で割った余りとする.
+     * </p>
+     */
+    private void createLargeTestData() {
+        File writeFile = new File(mFileManager.getBasePath(), LARGE_TEST_FILE_NAME);
+        if (writeFile.length() == LARGE_TEST_FILE_SIZE) {
+            return;
+        }
+
+        byte[] buf = new byte[LARGE_TEST_FILE_MODULUS * 1024];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = (byte) (i % LARGE_TEST_FILE_MODULUS);
+        }
+
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(writeFile);
+            long written = 0;
+            while (written < LARGE_TEST_FILE_SIZE) {
+                int len = (int) Math.min(buf.length, LARGE_TEST_FILE_SIZE - written);
+                fos.write(buf, 0, len);
+                written += len;
+            }
+            fos.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
 }
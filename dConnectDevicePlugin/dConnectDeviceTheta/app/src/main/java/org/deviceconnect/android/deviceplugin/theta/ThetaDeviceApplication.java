@@ -16,8 +16,10 @@ import org.deviceconnect.android.deviceplugin.theta.core.sensor.AbstractHeadTrac
 import org.deviceconnect.android.deviceplugin.theta.core.sensor.DefaultHeadTracker;
 import org.deviceconnect.android.deviceplugin.theta.core.sensor.HeadTracker;
 import org.deviceconnect.android.deviceplugin.theta.core.sensor.HeadTrackingListener;
+import org.deviceconnect.android.deviceplugin.theta.data.ThetaThumbnailCache;
 import org.deviceconnect.android.logger.AndroidHandler;
 
+import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -58,6 +60,24 @@ public class ThetaDeviceApplication extends Application {
         }
     };
 
+    /**
+     * Size of thumbnails cached in memory.
+     *
+     * About 200 thumbnails will be cached.
+     *
+     * Unit: byte.
+     */
+    private static final int THUMBNAIL_MEMORY_CACHE_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * Size of thumbnails cached on disk.
+     *
+     * Unit: byte.
+     */
+    private static final long THUMBNAIL_DISK_CACHE_SIZE = 32 * 1024 * 1024;
+
+    private ThetaThumbnailCache mThumbnailFileCache;
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -80,6 +100,16 @@ public class ThetaDeviceApplication extends Application {
         mDeviceMgr = new ThetaDeviceManager(context);
         mHeadTracker = new HeadTrackerWrapper(new DefaultHeadTracker(context));
         mSphericalViewApi = new SphericalViewApi(context);
+        mThumbnailFileCache = new ThetaThumbnailCache(new File(getCacheDir(), "thumbnails"),
+                THUMBNAIL_MEMORY_CACHE_SIZE, THUMBNAIL_DISK_CACHE_SIZE);
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            mThumbnailFileCache.trimMemory();
+        }
     }
 
     public ThetaDeviceManager getDeviceManager() {
@@ -98,6 +128,10 @@ public class ThetaDeviceApplication extends Application {
         return mThumbnailCache;
     }
 
+    public ThetaThumbnailCache getThumbnailCache() {
+        return mThumbnailFileCache;
+    }
+
     private static class HeadTrackerWrapper implements HeadTracker {
 
         private final AbstractHeadTracker mHeadTracker;
@@ -0,0 +1,501 @@
+/*
+ EquirectangularReprojector.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.theta.core;
+
+
+import org.deviceconnect.android.deviceplugin.theta.utils.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders perspective views of an equirectangular image on CPU.
+ *
+ * <p>
+ * The result is the same as {@link SphericalViewRenderer} draws the image on the inner surface of a sphere.
+ * For each view, the position of the source pixel for every output pixel is computed once and kept
+ * as a lookup table, which is reused until the view or the size of the source image is changed.
+ * Output pixels are sampled with bilinear interpolation, and rows are split across threads.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class EquirectangularReprojector {
+
+    /**
+     * Distance of left and right eye: {@value} m.
+     * <p>
+     * This must be the same as {@link SphericalViewRenderer}.
+     * </p>
+     */
+    private static final float DISTANCE_EYES = 10.0f / 100.0f;
+
+    /** Bits of fractional part of a sampling position. */
+    private static final int FRACTION_BITS = 8;
+
+    /** Scale of fractional part of a sampling position. */
+    private static final int FRACTION_SCALE = 1 << FRACTION_BITS;
+
+    /** Flag of sampling position whose right neighbor is at the left edge of the source image. */
+    private static final int FLAG_WRAP = 1 << 16;
+
+    /** Flag of sampling position which has no lower neighbor. */
+    private static final int FLAG_LAST_ROW = 1 << 17;
+
+    /** Number of rows processed by a task is at most (height / (threads * this)). */
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final ExecutorService mExecutor;
+
+    private final int mThreadCount;
+
+    private int[] mSource;
+
+    private int mSourceWidth;
+
+    private int mSourceHeight;
+
+    private View mView;
+
+    private LookupTable mTable;
+
+    /**
+     * Constructor.
+     * <p>
+     * The number of threads is the same as the number of available processors.
+     * </p>
+     */
+    public EquirectangularReprojector() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threadCount number of threads to render views
+     */
+    public EquirectangularReprojector(final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive.");
+        }
+        mThreadCount = threadCount;
+        mExecutor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+    }
+
+    /**
+     * Sets an equirectangular image.
+     *
+     * @param pixels pixels of the image in ARGB, row by row from the top
+     * @param width width of the image
+     * @param height height of the image
+     */
+    public synchronized void setSource(final int[] pixels, final int width, final int height) {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        if (width != mSourceWidth || height != mSourceHeight) {
+            mTable = null;
+        }
+        mSource = pixels;
+        mSourceWidth = width;
+        mSourceHeight = height;
+    }
+
+    /**
+     * Sets a view to be rendered.
+     *
+     * @param view view
+     */
+    public synchronized void setView(final View view) {
+        if (!view.equals(mView)) {
+            mTable = null;
+        }
+        mView = view;
+    }
+
+    /**
+     * Gets the current view.
+     *
+     * @return the current view, or <code>null</code> if not set
+     */
+    public synchronized View getView() {
+        return mView;
+    }
+
+    /**
+     * Renders the current view.
+     *
+     * @param output buffer of the output pixels. If <code>null</code> or too small, a new buffer is allocated.
+     * @return pixels of the view in ARGB, row by row from the top
+     * @throws IllegalStateException if source image or view is not set
+     */
+    public synchronized int[] render(final int[] output) {
+        if (mSource == null || mView == null) {
+            throw new IllegalStateException("Source image or view is not set.");
+        }
+        final int width = mView.getOutputWidth();
+        final int height = mView.getOutputHeight();
+        final int[] dst = output != null && output.length >= width * height ? output : new int[width * height];
+
+        if (mTable == null) {
+            mTable = new LookupTable(width, height);
+            runRows(height, new RowTask() {
+                @Override
+                public void run(final int startRow, final int endRow) {
+                    mTable.build(mView, mSourceWidth, mSourceHeight, startRow, endRow);
+                }
+            });
+        }
+        runRows(height, new RowTask() {
+            @Override
+            public void run(final int startRow, final int endRow) {
+                sample(mTable, mSource, mSourceWidth, dst, startRow * width, endRow * width);
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Stops the threads.
+     * <p>
+     * This instance can not be used after this method is called.
+     * </p>
+     */
+    public void destroy() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+        }
+    }
+
+    private void runRows(final int height, final RowTask task) {
+        int taskCount = mExecutor == null ? 1 : Math.min(height, mThreadCount * TASKS_PER_THREAD);
+        if (taskCount <= 1) {
+            task.run(0, height);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            final int startRow = height * i / taskCount;
+            final int endRow = height * (i + 1) / taskCount;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    task.run(startRow, endRow);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : mExecutor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rendering is interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to render.", e.getCause());
+        }
+    }
+
+    private static void sample(final LookupTable table, final int[] src, final int srcWidth,
+                               final int[] dst, final int start, final int end) {
+        final int[] offsets = table.mOffsets;
+        final int[] weights = table.mWeights;
+        for (int i = start; i < end; i++) {
+            int offset = offsets[i];
+            if (offset < 0) {
+                dst[i] = 0xFF000000;
+                continue;
+            }
+            int weight = weights[i];
+            int fx = (weight >> FRACTION_BITS) & (FRACTION_SCALE - 1);
+            int fy = weight & (FRACTION_SCALE - 1);
+            int dx = (weight & FLAG_WRAP) != 0 ? 1 - srcWidth : 1;
+            int dy = (weight & FLAG_LAST_ROW) != 0 ? 0 : srcWidth;
+
+            int p00 = src[offset];
+            int p01 = src[offset + dx];
+            int p10 = src[offset + dy];
+            int p11 = src[offset + dy + dx];
+
+            int w00 = (FRACTION_SCALE - fx) * (FRACTION_SCALE - fy);
+            int w01 = fx * (FRACTION_SCALE - fy);
+            int w10 = (FRACTION_SCALE - fx) * fy;
+            int w11 = fx * fy;
+
+            int r = (((p00 >> 16) & 0xFF) * w00 + ((p01 >> 16) & 0xFF) * w01
+                + ((p10 >> 16) & 0xFF) * w10 + ((p11 >> 16) & 0xFF) * w11 + 0x8000) >> 16;
+            int g = (((p00 >> 8) & 0xFF) * w00 + ((p01 >> 8) & 0xFF) * w01
+                + ((p10 >> 8) & 0xFF) * w10 + ((p11 >> 8) & 0xFF) * w11 + 0x8000) >> 16;
+            int b = ((p00 & 0xFF) * w00 + (p01 & 0xFF) * w01
+                + (p10 & 0xFF) * w10 + (p11 & 0xFF) * w11 + 0x8000) >> 16;
+            dst[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    private interface RowTask {
+        void run(int startRow, int endRow);
+    }
+
+    /**
+     * Positions of source pixels for each output pixel.
+     */
+    private static class LookupTable {
+
+        /** Index of the upper left source pixel, or -1 if nothing is visible. */
+        final int[] mOffsets;
+
+        /** Fractional part of the sampling position and flags. */
+        final int[] mWeights;
+
+        final int mWidth;
+
+        LookupTable(final int width, final int height) {
+            mWidth = width;
+            mOffsets = new int[width * height];
+            mWeights = new int[width * height];
+        }
+
+        void build(final View view, final int srcWidth, final int srcHeight,
+                   final int startRow, final int endRow) {
+            if (view.mIsStereo) {
+                float half = DISTANCE_EYES / 2.0f;
+                build(view, -half, 0, srcWidth, srcHeight, startRow, endRow);
+                build(view, half, view.mEyeWidth, srcWidth, srcHeight, startRow, endRow);
+            } else {
+                build(view, 0, 0, srcWidth, srcHeight, startRow, endRow);
+            }
+        }
+
+        /**
+         * Computes the positions in the same way as setLookAtM and perspectiveM of OpenGL.
+         */
+        private void build(final View view, final float slide, final int left,
+                           final int srcWidth, final int srcHeight,
+                           final int startRow, final int endRow) {
+            float[] p = view.mPosition;
+            float[] r = view.mRight;
+            double eyeX = p[0] + slide * r[0];
+            double eyeY = p[1] + slide * r[1];
+            double eyeZ = p[2] + slide * r[2];
+
+            // Forward, side and up vectors of the view.
+            float frontY = view.mFlipVertical ? -view.mFront[1] : view.mFront[1];
+            double[] f = normalize(view.mFront[0] - eyeX, frontY - eyeY, view.mFront[2] - eyeZ);
+            double[] s = normalize(f[1] * view.mUp[2] - f[2] * view.mUp[1],
+                f[2] * view.mUp[0] - f[0] * view.mUp[2],
+                f[0] * view.mUp[1] - f[1] * view.mUp[0]);
+            double[] u = {
+                s[1] * f[2] - s[2] * f[1],
+                s[2] * f[0] - s[0] * f[2],
+                s[0] * f[1] - s[1] * f[0]
+            };
+
+            int width = view.mEyeWidth;
+            int height = view.mHeight;
+            double focal = (height / 2.0) / Math.tan(Math.toRadians(view.mFovDegree) / 2.0);
+            double radius2 = view.mSphereRadius * view.mSphereRadius;
+            double eye2 = eyeX * eyeX + eyeY * eyeY + eyeZ * eyeZ;
+
+            for (int y = startRow; y < endRow; y++) {
+                double sy = height / 2.0 - (y + 0.5);
+                for (int x = 0; x < width; x++) {
+                    double sx = (x + 0.5) - width / 2.0;
+                    double dx = f[0] * focal + s[0] * sx + u[0] * sy;
+                    double dy = f[1] * focal + s[1] * sx + u[1] * sy;
+                    double dz = f[2] * focal + s[2] * sx + u[2] * sy;
+                    double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    dx /= len;
+                    dy /= len;
+                    dz /= len;
+
+                    int index = y * mWidth + left + x;
+
+                    // Intersection of the ray from the eye and the sphere.
+                    double b = eyeX * dx + eyeY * dy + eyeZ * dz;
+                    double d = b * b - (eye2 - radius2);
+                    double t = d < 0 ? -1 : -b + Math.sqrt(d);
+                    if (t <= 0) {
+                        mOffsets[index] = -1;
+                        mWeights[index] = 0;
+                        continue;
+                    }
+                    double qx = eyeX + t * dx;
+                    double qy = eyeY + t * dy;
+                    double qz = eyeZ + t * dz;
+
+                    // Texture coordinates of UVSphere.
+                    double azimuth = Math.atan2(qz, qx);
+                    double altitude = Math.atan2(qy, Math.sqrt(qx * qx + qz * qz));
+                    double tu = (Math.PI + azimuth) / (2.0 * Math.PI);
+                    double tv = (Math.PI / 2.0 - altitude) / Math.PI;
+                    setPosition(index, tu * srcWidth - 0.5, tv * srcHeight - 0.5, srcWidth, srcHeight);
+                }
+            }
+        }
+
+        private void setPosition(final int index, final double px, final double py,
+                                 final int srcWidth, final int srcHeight) {
+            double fx = Math.floor(px);
+            double fy = Math.floor(py);
+            int x0 = (int) fx;
+            int y0 = (int) fy;
+            int wx = (int) Math.round((px - fx) * FRACTION_SCALE);
+            int wy = (int) Math.round((py - fy) * FRACTION_SCALE);
+            if (wx == FRACTION_SCALE) {
+                wx = 0;
+                x0++;
+            }
+            if (wy == FRACTION_SCALE) {
+                wy = 0;
+                y0++;
+            }
+
+            // Wrap around horizontally, and clamp vertically.
+            x0 = ((x0 % srcWidth) + srcWidth) % srcWidth;
+            if (y0 < 0) {
+                y0 = 0;
+                wy = 0;
+            } else if (y0 >= srcHeight - 1) {
+                y0 = srcHeight - 1;
+                wy = 0;
+            }
+
+            int flags = 0;
+            if (x0 == srcWidth - 1) {
+                flags |= FLAG_WRAP;
+            }
+            if (y0 == srcHeight - 1) {
+                flags |= FLAG_LAST_ROW;
+            }
+            mOffsets[index] = y0 * srcWidth + x0;
+            mWeights[index] = flags | (wx << FRACTION_BITS) | wy;
+        }
+
+        private static double[] normalize(final double x, final double y, final double z) {
+            double len = Math.sqrt(x * x + y * y + z * z);
+            if (len == 0) {
+                return new double[] {0, 0, 0};
+            }
+            return new double[] {x / len, y / len, z / len};
+        }
+    }
+
+    /**
+     * Parameters of a view.
+     */
+    public static class View {
+
+        private final int mEyeWidth;
+
+        private final int mHeight;
+
+        private final float mFovDegree;
+
+        private final float mSphereRadius;
+
+        private final float[] mPosition;
+
+        private final float[] mFront;
+
+        private final float[] mUp;
+
+        private final float[] mRight;
+
+        private final boolean mIsStereo;
+
+        private final boolean mFlipVertical;
+
+        /**
+         * Constructor.
+         *
+         * @param eyeWidth width of the view for each eye
+         * @param height height of the view
+         * @param fovDegree vertical field of view in degree
+         * @param sphereRadius radius of the sphere
+         * @param position position of the camera
+         * @param front point at which the camera looks
+         * @param up upper direction of the camera
+         * @param right right direction of the camera, which is used to slide eyes in stereo mode
+         * @param isStereo <code>true</code> if the views for left and right eye are rendered side by side
+         * @param flipVertical <code>true</code> if the vertical direction of the camera is flipped,
+         *                     as {@link SphericalViewRenderer#setFlipVertical(boolean)}
+         */
+        public View(final int eyeWidth, final int height, final float fovDegree, final float sphereRadius,
+                    final Vector3D position, final Vector3D front, final Vector3D up, final Vector3D right,
+                    final boolean isStereo, final boolean flipVertical) {
+            if (eyeWidth <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Invalid view size: " + eyeWidth + "x" + height);
+            }
+            mEyeWidth = eyeWidth;
+            mHeight = height;
+            mFovDegree = fovDegree;
+            mSphereRadius = sphereRadius;
+            mPosition = toArray(position);
+            mFront = toArray(front);
+            mUp = toArray(up);
+            mRight = toArray(right);
+            mIsStereo = isStereo;
+            mFlipVertical = flipVertical;
+        }
+
+        public int getOutputWidth() {
+            return mIsStereo ? mEyeWidth * 2 : mEyeWidth;
+        }
+
+        public int getOutputHeight() {
+            return mHeight;
+        }
+
+        private static float[] toArray(final Vector3D v) {
+            return new float[] {v.x(), v.y(), v.z()};
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof View)) {
+                return false;
+            }
+            View that = (View) o;
+            return mEyeWidth == that.mEyeWidth
+                && mHeight == that.mHeight
+                && Float.compare(mFovDegree, that.mFovDegree) == 0
+                && Float.compare(mSphereRadius, that.mSphereRadius) == 0
+                && mIsStereo == that.mIsStereo
+                && mFlipVertical == that.mFlipVertical
+                && Arrays.equals(mPosition, that.mPosition)
+                && Arrays.equals(mFront, that.mFront)
+                && Arrays.equals(mUp, that.mUp)
+                && Arrays.equals(mRight, that.mRight);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mEyeWidth;
+            result = 31 * result + mHeight;
+            result = 31 * result + Float.floatToIntBits(mFovDegree);
+            result = 31 * result + Float.floatToIntBits(mSphereRadius);
+            result = 31 * result + Arrays.hashCode(mPosition);
+            result = 31 * result + Arrays.hashCode(mFront);
+            result = 31 * result + Arrays.hashCode(mUp);
+            result = 31 * result + Arrays.hashCode(mRight);
+            result = 31 * result + (mIsStereo ? 1 : 0);
+            result = 31 * result + (mFlipVertical ? 1 : 0);
+            return result;
+        }
+    }
+}
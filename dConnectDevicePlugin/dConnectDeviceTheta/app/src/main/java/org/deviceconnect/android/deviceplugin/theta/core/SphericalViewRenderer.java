@@ -112,10 +112,18 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
         mFlipVertical = isFlip;
     }
 
+    public boolean isFlipVertical() {
+        return mFlipVertical;
+    }
+
     public void setStereoImageType(final StereoImageType type) {
         mStereoType = type;
     }
 
+    public StereoImageType getStereoImageType() {
+        return mStereoType;
+    }
+
     public byte[] takeSnapshot() {
         synchronized (mLockObj) {
             mIsWaitingSnapshot = true;
@@ -390,6 +398,10 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
         return mIsScreenSizeMutable;
     }
 
+    public float getSphereRadius() {
+        return mShell.getRadius();
+    }
+
     public void setSphereRadius(final float radius) {
         if (radius != mShell.getRadius()) {
             mShell = new UVSphere(radius, SHELL_DIVIDES);
@@ -518,6 +530,10 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
                 Quaternion.quaternionFromAxisAndAngle(new Vector3D(1.0f, 0.0f, 0.0f), 0));
         }
 
+        public float getFovDegree() {
+            return mFovDegree;
+        }
+
         public Vector3D getPosition() {
             return mPosition;
         }
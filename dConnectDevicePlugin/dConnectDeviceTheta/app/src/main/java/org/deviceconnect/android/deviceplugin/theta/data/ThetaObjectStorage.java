@@ -30,7 +30,9 @@ import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -91,6 +93,14 @@ public class ThetaObjectStorage {
 
     /** Listener. */
     private Listener mListener;
+
+    /**
+     * Index of the gallery list by file name.
+     * <p>
+     * This is rebuilt after the gallery table is modified.
+     * </p>
+     */
+    private Map<String, Integer> mIndex;
     /**
      * Logger.
      */
@@ -147,6 +157,7 @@ public class ThetaObjectStorage {
             result = db.insert(THETA_GALLERY_TBL_NAME, null, values);
         } finally {
             db.close();
+            mIndex = null;
             if (mListener != null) {
                 mListener.onCompleted(DBMode.Add, result);
             }
@@ -170,6 +181,7 @@ public class ThetaObjectStorage {
             result = db.update(THETA_GALLERY_TBL_NAME, values, whereClause, whereArgs);
         } finally {
             db.close();
+            mIndex = null;
             if (mListener != null) {
                 mListener.onCompleted(DBMode.Update, result);
             }
@@ -203,6 +215,7 @@ public class ThetaObjectStorage {
             isDeleteCache = db.delete(THETA_GALLERY_TBL_NAME, whereClause, whereArgs);
         } finally {
             db.close();
+            mIndex = null;
             if (mListener != null) {
                 mListener.onCompleted(DBMode.Delete, isDeleteCache);
             }
@@ -249,17 +262,24 @@ public class ThetaObjectStorage {
 
     /**
      * THETA Data's index.
+     * <p>
+     * The index is the position in the list returned by {@link #geThetaObjectCaches(String)}
+     * with <code>null</code>.
+     * </p>
      * @param name search data name
      * @return index
      */
     public synchronized int getThetaObjectCachesIndex(final String name) {
-        List<ThetaObject> objects = geThetaObjectCaches(name);
-        for (int i = 0; i < objects.size(); i++) {
-            if (objects.get(i).getFileName().equals(name)) {
-                return i;
+        if (mIndex == null) {
+            List<ThetaObject> objects = geThetaObjectCaches(null);
+            Map<String, Integer> index = new HashMap<String, Integer>();
+            for (int i = 0; i < objects.size(); i++) {
+                index.put(objects.get(i).getFileName(), i);
             }
+            mIndex = index;
         }
-        return -1;
+        Integer i = mIndex.get(name);
+        return i != null ? i : -1;
     }
     /** Make Content Value. */
     private ContentValues makeContentValue(final ThetaObject object) {
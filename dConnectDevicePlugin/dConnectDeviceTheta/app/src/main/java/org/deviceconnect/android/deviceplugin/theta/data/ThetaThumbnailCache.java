@@ -0,0 +1,355 @@
+/*
+ ThetaThumbnailCache
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.theta.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Cache of thumbnails of THETA objects.
+ *
+ * <p>
+ * Thumbnails are indexed by file name, and kept both in memory and on disk.
+ * Each level is bounded by its total size and the least recently used thumbnail is evicted first.
+ * Thumbnails evicted from memory can be loaded from disk again without accessing a THETA device.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ThetaThumbnailCache {
+
+    /** Extension of thumbnail files. */
+    private static final String FILE_EXTENSION = ".thumb";
+
+    /** Logger. */
+    private static final Logger sLogger = Logger.getLogger("theta.sampleapp");
+
+    /** Thumbnails in memory in the access order. */
+    private final LinkedHashMap<String, byte[]> mMemory = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    /** Sizes of thumbnails on disk in the access order. */
+    private final LinkedHashMap<String, Long> mDisk = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    /** Max size of thumbnails in memory. Unit: byte. */
+    private final int mMaxMemorySize;
+
+    /** Max size of thumbnails on disk. Unit: byte. */
+    private final long mMaxDiskSize;
+
+    /** Directory to store thumbnails. */
+    private final File mDirectory;
+
+    /** Size of thumbnails in memory. Unit: byte. */
+    private int mMemorySize;
+
+    /** Size of thumbnails on disk. Unit: byte. */
+    private long mDiskSize;
+
+    /**
+     * Constructor.
+     *
+     * @param dir directory to store thumbnails. If <code>null</code>, thumbnails are kept only in memory.
+     * @param maxMemorySize max size of thumbnails in memory. Unit: byte.
+     * @param maxDiskSize max size of thumbnails on disk. Unit: byte.
+     */
+    public ThetaThumbnailCache(final File dir, final int maxMemorySize, final long maxDiskSize) {
+        mDirectory = dir;
+        mMaxMemorySize = maxMemorySize;
+        mMaxDiskSize = maxDiskSize;
+        loadIndex();
+    }
+
+    /**
+     * Gets the thumbnail of the specified file.
+     *
+     * @param fileName file name of a THETA object
+     * @return thumbnail, or <code>null</code> if not cached
+     */
+    public byte[] get(final String fileName) {
+        synchronized (this) {
+            byte[] data = mMemory.get(fileName);
+            if (data != null) {
+                return data;
+            }
+            if (mDisk.get(fileName) == null) {
+                return null;
+            }
+        }
+
+        byte[] data = readFile(getFile(fileName));
+        synchronized (this) {
+            if (data == null) {
+                removeFromDisk(fileName);
+            } else if (!mMemory.containsKey(fileName)) {
+                putToMemory(fileName, data);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Checks whether the thumbnail of the specified file is cached or not.
+     *
+     * @param fileName file name of a THETA object
+     * @return <code>true</code> if the thumbnail is cached, otherwise <code>false</code>
+     */
+    public synchronized boolean contains(final String fileName) {
+        return mMemory.containsKey(fileName) || mDisk.containsKey(fileName);
+    }
+
+    /**
+     * Puts the thumbnail of the specified file.
+     *
+     * @param fileName file name of a THETA object
+     * @param data thumbnail
+     */
+    public void put(final String fileName, final byte[] data) {
+        if (fileName == null || data == null) {
+            return;
+        }
+
+        boolean writeToDisk;
+        synchronized (this) {
+            putToMemory(fileName, data);
+            writeToDisk = mDirectory != null && data.length <= mMaxDiskSize && !mDisk.containsKey(fileName);
+        }
+
+        if (writeToDisk && writeFile(getFile(fileName), data)) {
+            synchronized (this) {
+                Long old = mDisk.put(fileName, (long) data.length);
+                if (old != null) {
+                    mDiskSize -= old;
+                }
+                mDiskSize += data.length;
+                trimDisk();
+            }
+        }
+    }
+
+    /**
+     * Removes the thumbnail of the specified file.
+     *
+     * @param fileName file name of a THETA object
+     */
+    public synchronized void remove(final String fileName) {
+        byte[] data = mMemory.remove(fileName);
+        if (data != null) {
+            mMemorySize -= data.length;
+        }
+        removeFromDisk(fileName);
+    }
+
+    /**
+     * Removes all thumbnails from memory.
+     * <p>
+     * Thumbnails on disk are kept.
+     * </p>
+     */
+    public synchronized void trimMemory() {
+        mMemory.clear();
+        mMemorySize = 0;
+    }
+
+    /**
+     * Gets the size of thumbnails in memory.
+     *
+     * @return size of thumbnails in memory. Unit: byte.
+     */
+    public synchronized int getMemorySize() {
+        return mMemorySize;
+    }
+
+    /**
+     * Gets the size of thumbnails on disk.
+     *
+     * @return size of thumbnails on disk. Unit: byte.
+     */
+    public synchronized long getDiskSize() {
+        return mDiskSize;
+    }
+
+    private void putToMemory(final String fileName, final byte[] data) {
+        if (data.length > mMaxMemorySize) {
+            return;
+        }
+        byte[] old = mMemory.put(fileName, data);
+        if (old != null) {
+            mMemorySize -= old.length;
+        }
+        mMemorySize += data.length;
+
+        Iterator<Map.Entry<String, byte[]>> it = mMemory.entrySet().iterator();
+        while (mMemorySize > mMaxMemorySize && it.hasNext()) {
+            mMemorySize -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    private void removeFromDisk(final String fileName) {
+        Long size = mDisk.remove(fileName);
+        if (size != null) {
+            mDiskSize -= size;
+            deleteFile(getFile(fileName));
+        }
+    }
+
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> it = mDisk.entrySet().iterator();
+        while (mDiskSize > mMaxDiskSize && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            mDiskSize -= entry.getValue();
+            deleteFile(getFile(entry.getKey()));
+            it.remove();
+        }
+    }
+
+    private void loadIndex() {
+        if (mDirectory == null) {
+            return;
+        }
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            sLogger.warning("Failed to create a directory: " + mDirectory.getAbsolutePath());
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Restore the access order from the last modified time of files.
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(FILE_EXTENSION)) {
+                continue;
+            }
+            String fileName = decodeFileName(name.substring(0, name.length() - FILE_EXTENSION.length()));
+            if (fileName == null) {
+                deleteFile(file);
+                continue;
+            }
+            mDisk.put(fileName, file.length());
+            mDiskSize += file.length();
+        }
+        trimDisk();
+    }
+
+    private File getFile(final String fileName) {
+        return new File(mDirectory, encodeFileName(fileName) + FILE_EXTENSION);
+    }
+
+    private static String encodeFileName(final String fileName) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : fileName.toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-') {
+                sb.append(c);
+            } else {
+                sb.append('_').append(String.format("%04x", (int) c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String decodeFileName(final String name) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '_') {
+                sb.append(c);
+                continue;
+            }
+            if (i + 5 > name.length()) {
+                return null;
+            }
+            try {
+                sb.append((char) Integer.parseInt(name.substring(i + 1, i + 5), 16));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            i += 4;
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readFile(final File file) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            int len;
+            while (offset < data.length && (len = in.read(data, offset, data.length - offset)) > 0) {
+                offset += len;
+            }
+            if (offset != data.length) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Nothing to do.
+                }
+            }
+        }
+    }
+
+    private static boolean writeFile(final File file, final byte[] data) {
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(data);
+            out.close();
+            out = null;
+            return tmp.renameTo(file);
+        } catch (IOException e) {
+            sLogger.warning("Failed to write a thumbnail: " + e.getMessage());
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Nothing to do.
+                }
+            }
+            if (tmp.exists()) {
+                deleteFile(tmp);
+            }
+        }
+    }
+
+    private static void deleteFile(final File file) {
+        if (!file.delete()) {
+            sLogger.warning("Failed to delete a file: " + file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ ThetaThumbnailPrefetcher
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.theta.data;
+
+import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceException;
+import org.deviceconnect.android.deviceplugin.theta.core.ThetaObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Fetcher of thumbnails of THETA objects.
+ *
+ * <p>
+ * Thumbnails requested by {@link #request(ThetaObject, Callback)} are fetched first,
+ * the most recently requested one first.
+ * Thumbnails passed to {@link #prefetch(List)} are fetched in order only while no request is waiting,
+ * so that they are ready in {@link ThetaThumbnailCache} before they are requested.
+ * The number of fetches running at the same time is limited
+ * by {@link #setMaxConcurrentFetches(int)}.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ThetaThumbnailPrefetcher {
+
+    /**
+     * Default number of fetches running at the same time.
+     * <p>
+     * THETA S handles a few OSC requests in parallel, but the Wi-Fi link is saturated with more.
+     * </p>
+     */
+    public static final int DEFAULT_CONCURRENT_FETCHES = 3;
+
+    /** Logger. */
+    private static final Logger sLogger = Logger.getLogger("theta.sampleapp");
+
+    /** Cache of thumbnails. */
+    private final ThetaThumbnailCache mCache;
+
+    /** Threads to fetch thumbnails. */
+    private final ExecutorService mExecutor;
+
+    /** Requested objects. The last one is fetched first. */
+    private final LinkedList<ThetaObject> mRequests = new LinkedList<ThetaObject>();
+
+    /** Objects to be prefetched. */
+    private final LinkedList<ThetaObject> mPrefetches = new LinkedList<ThetaObject>();
+
+    /** Callbacks of requested or fetching objects, by file name. */
+    private final Map<String, List<Callback>> mCallbacks = new HashMap<String, List<Callback>>();
+
+    /** File names of fetching objects. */
+    private final List<String> mFetching = new ArrayList<String>();
+
+    /** Max number of fetches running at the same time. */
+    private int mMaxConcurrentFetches;
+
+    /** Flag of shutdown. */
+    private boolean mShutdown;
+
+    /**
+     * Callback to receive a thumbnail.
+     */
+    public interface Callback {
+        /**
+         * Called when a thumbnail is fetched.
+         * <p>
+         * This is called on a thread of the fetcher.
+         * </p>
+         *
+         * @param object THETA object
+         * @param thumbnail thumbnail, or <code>null</code> if failed to fetch
+         */
+        void onFetched(ThetaObject object, byte[] thumbnail);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cache cache of thumbnails
+     * @param maxConcurrentFetches max number of fetches running at the same time
+     */
+    public ThetaThumbnailPrefetcher(final ThetaThumbnailCache cache, final int maxConcurrentFetches) {
+        if (maxConcurrentFetches < 1) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be positive.");
+        }
+        mCache = cache;
+        mMaxConcurrentFetches = maxConcurrentFetches;
+        mExecutor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Sets max number of fetches running at the same time.
+     * <p>
+     * Set 1 for a device which can not handle requests in parallel, such as THETA m15.
+     * </p>
+     *
+     * @param maxConcurrentFetches max number of fetches running at the same time
+     */
+    public void setMaxConcurrentFetches(final int maxConcurrentFetches) {
+        if (maxConcurrentFetches < 1) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be positive.");
+        }
+        synchronized (this) {
+            mMaxConcurrentFetches = maxConcurrentFetches;
+        }
+        schedule();
+    }
+
+    /**
+     * Requests a thumbnail of the specified object.
+     * <p>
+     * If the thumbnail is cached, the callback is called immediately on the caller thread.
+     * </p>
+     *
+     * @param object THETA object
+     * @param callback callback to receive the thumbnail
+     */
+    public void request(final ThetaObject object, final Callback callback) {
+        byte[] thumbnail = mCache.get(object.getFileName());
+        if (thumbnail != null) {
+            callback.onFetched(object, thumbnail);
+            return;
+        }
+
+        synchronized (this) {
+            if (mShutdown) {
+                return;
+            }
+            String fileName = object.getFileName();
+            List<Callback> callbacks = mCallbacks.get(fileName);
+            if (callbacks == null) {
+                callbacks = new ArrayList<Callback>();
+                mCallbacks.put(fileName, callbacks);
+            }
+            callbacks.add(callback);
+            if (!mFetching.contains(fileName)) {
+                removeObject(mRequests, fileName);
+                mRequests.addLast(object);
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Cancels the request of the specified object.
+     * <p>
+     * The callback is not called, even if the thumbnail is being fetched.
+     * </p>
+     *
+     * @param object THETA object
+     * @param callback callback passed to {@link #request(ThetaObject, Callback)}
+     */
+    public synchronized void cancel(final ThetaObject object, final Callback callback) {
+        String fileName = object.getFileName();
+        List<Callback> callbacks = mCallbacks.get(fileName);
+        if (callbacks == null) {
+            return;
+        }
+        callbacks.remove(callback);
+        if (callbacks.isEmpty()) {
+            mCallbacks.remove(fileName);
+            removeObject(mRequests, fileName);
+        }
+    }
+
+    /**
+     * Sets objects whose thumbnails will be requested soon.
+     * <p>
+     * The previous objects which have not been fetched yet are discarded.
+     * </p>
+     *
+     * @param objects THETA objects in the order of priority
+     */
+    public void prefetch(final List<ThetaObject> objects) {
+        synchronized (this) {
+            if (mShutdown) {
+                return;
+            }
+            mPrefetches.clear();
+            for (ThetaObject object : objects) {
+                if (object.isImage()) {
+                    mPrefetches.add(object);
+                }
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Gets the number of fetches running now.
+     *
+     * @return the number of fetches
+     */
+    public synchronized int getFetchingCount() {
+        return mFetching.size();
+    }
+
+    /**
+     * Stops fetching thumbnails.
+     * <p>
+     * This instance can not be used after this method is called.
+     * </p>
+     */
+    public void shutdown() {
+        synchronized (this) {
+            mShutdown = true;
+            mRequests.clear();
+            mPrefetches.clear();
+            mCallbacks.clear();
+        }
+        mExecutor.shutdownNow();
+    }
+
+    private void schedule() {
+        synchronized (this) {
+            while (!mShutdown && mFetching.size() < mMaxConcurrentFetches) {
+                final ThetaObject object = nextObject();
+                if (object == null) {
+                    return;
+                }
+                mFetching.add(object.getFileName());
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetch(object);
+                    }
+                });
+            }
+        }
+    }
+
+    private ThetaObject nextObject() {
+        if (!mRequests.isEmpty()) {
+            return mRequests.removeLast();
+        }
+        while (!mPrefetches.isEmpty()) {
+            ThetaObject object = mPrefetches.removeFirst();
+            String fileName = object.getFileName();
+            if (!mFetching.contains(fileName) && !mCache.contains(fileName)) {
+                return object;
+            }
+        }
+        return null;
+    }
+
+    private void fetch(final ThetaObject object) {
+        String fileName = object.getFileName();
+        byte[] thumbnail = mCache.get(fileName);
+        if (thumbnail == null) {
+            try {
+                thumbnail = fetchThumbnail(object);
+                mCache.put(fileName, thumbnail);
+            } catch (ThetaDeviceException e) {
+                sLogger.warning("Failed to fetch a thumbnail: " + fileName + ", reason=" + e.getReason());
+            }
+        }
+
+        List<Callback> callbacks;
+        synchronized (this) {
+            mFetching.remove(fileName);
+            callbacks = mCallbacks.remove(fileName);
+        }
+        if (callbacks != null) {
+            for (Callback callback : callbacks) {
+                callback.onFetched(object, thumbnail);
+            }
+        }
+        schedule();
+    }
+
+    private byte[] fetchThumbnail(final ThetaObject object) throws ThetaDeviceException {
+        // THETA object keeps fetched data, so that the same instance must not be fetched in parallel.
+        synchronized (object) {
+            byte[] thumbnail = object.getThumbnailData();
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+            object.fetch(ThetaObject.DataType.THUMBNAIL);
+            thumbnail = object.getThumbnailData();
+            object.clear(ThetaObject.DataType.THUMBNAIL);
+            return thumbnail;
+        }
+    }
+
+    private static void removeObject(final List<ThetaObject> objects, final String fileName) {
+        for (int i = objects.size() - 1; i >= 0; i--) {
+            if (objects.get(i).getFileName().equals(fileName)) {
+                objects.remove(i);
+            }
+        }
+    }
+}
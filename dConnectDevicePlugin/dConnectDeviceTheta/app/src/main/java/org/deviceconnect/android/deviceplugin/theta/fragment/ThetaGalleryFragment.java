@@ -18,8 +18,6 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.util.LruCache;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -44,8 +42,10 @@ import org.deviceconnect.android.deviceplugin.theta.core.ThetaDevice;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceEventListener;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceException;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceManager;
+import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceModel;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaObject;
 import org.deviceconnect.android.deviceplugin.theta.data.ThetaObjectStorage;
+import org.deviceconnect.android.deviceplugin.theta.data.ThetaThumbnailPrefetcher;
 import org.deviceconnect.android.deviceplugin.theta.utils.DownloadThetaDataTask;
 import org.deviceconnect.android.deviceplugin.theta.view.ThetaLoadingProgressView;
 import org.deviceconnect.android.provider.FileManager;
@@ -138,9 +138,14 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
     private ThetaDevice mDevice;
 
     /**
-     * Thumbnail cache.
+     * Number of thumbnails prefetched after the last shown item.
      */
-    private LruCache<String, byte[]> mThumbnailCache;
+    private static final int PREFETCH_COUNT = 12;
+
+    /**
+     * Fetcher of thumbnails.
+     */
+    private ThetaThumbnailPrefetcher mThumbnailFetcher;
 
     /** App/theta gallery mode flag. true:app false:theta*/
     private boolean mIsGalleryMode = true;
@@ -250,6 +255,9 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
         super.onCreate(savedInstanceState);
         setRetainInstance(true);
         setHasOptionsMenu(true);
+        ThetaDeviceApplication app = (ThetaDeviceApplication) getActivity().getApplication();
+        mThumbnailFetcher = new ThetaThumbnailPrefetcher(app.getThumbnailCache(),
+                ThetaThumbnailPrefetcher.DEFAULT_CONCURRENT_FETCHES);
         initThetaObjectManagers();
         mGalleryAdapter = new ThetaGalleryAdapter(getActivity(), new ArrayList<ThetaObject>());
     }
@@ -282,8 +290,6 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         mRootView = inflater.inflate(R.layout.theta_gallery, container, false);
         getActivity().getActionBar().setDisplayOptions(0, ActionBar.DISPLAY_SHOW_HOME);
-        ThetaDeviceApplication app = (ThetaDeviceApplication) getActivity().getApplication();
-        mThumbnailCache = app.getCache();
         int color = R.color.action_bar_background;
         Drawable backgroundDrawable = getResources().getDrawable(color);
         getActivity().getActionBar().setBackgroundDrawable(backgroundDrawable);
@@ -336,6 +342,10 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
             mDownloadTask.cancel(true);
             mDownloadTask = null;
         }
+        if (mThumbnailFetcher != null) {
+            mThumbnailFetcher.shutdown();
+            mThumbnailFetcher = null;
+        }
     }
 
     @Override
@@ -412,6 +422,14 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
         mStorage.setListener(mStorageListener);
 
         mDevice = deviceMgr.getConnectedDevice();
+        if (mDevice != null && mThumbnailFetcher != null) {
+            // THETA m15 can not handle PTP-IP requests in parallel.
+            if (mDevice.getModel() == ThetaDeviceModel.THETA_M15) {
+                mThumbnailFetcher.setMaxConcurrentFetches(1);
+            } else {
+                mThumbnailFetcher.setMaxConcurrentFetches(ThetaThumbnailPrefetcher.DEFAULT_CONCURRENT_FETCHES);
+            }
+        }
     }
 
     /** init  gallery mode change buttons. */
@@ -774,6 +792,10 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
             }
 
             ThetaObject data = getItem(position);
+            if (holder.mRequest != null) {
+                holder.mRequest.cancel();
+                holder.mRequest = null;
+            }
             holder.mThumbnail.setImageResource(R.drawable.theta_gallery_thumb);
             holder.mThumbnail.setTag(data.getFileName());
             holder.mLoading.setVisibility(View.VISIBLE);
@@ -781,16 +803,35 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
             holder.mDate.setText(dateString);
             if (data.isImage()) {
                 holder.mType.setImageResource(R.drawable.theta_data_img);
-                ThetaThumbTask thumbTask = new ThetaThumbTask(data, holder);
-                DownloadThetaDataTask downloader = new DownloadThetaDataTask();
-                downloader.execute(thumbTask);
+                if (mThumbnailFetcher != null) {
+                    holder.mRequest = new ThetaThumbRequest(data, holder);
+                    mThumbnailFetcher.request(data, holder.mRequest);
+                }
             } else {
                 holder.mType.setImageResource(R.drawable.theta_data_mv);
                 holder.mLoading.setVisibility(View.GONE);
             }
+            prefetchThumbnails(position + 1);
 
             return cv;
         }
+
+        /**
+         * Prefetches thumbnails of items which will be shown soon.
+         *
+         * @param start position of the first item to be prefetched
+         */
+        private void prefetchThumbnails(final int start) {
+            if (mThumbnailFetcher == null) {
+                return;
+            }
+            List<ThetaObject> objects = new ArrayList<ThetaObject>();
+            int end = Math.min(getCount(), start + PREFETCH_COUNT);
+            for (int i = start; i < end; i++) {
+                objects.add(getItem(i));
+            }
+            mThumbnailFetcher.prefetch(objects);
+        }
     }
 
     /**
@@ -806,6 +847,8 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
 
         ThetaLoadingProgressView mLoading;
 
+        ThetaThumbRequest mRequest;
+
         GalleryViewHolder(final View view) {
             mThumbnail = (ImageView) view.findViewById(R.id.theta_thumb_data);
             mType = (ImageView) view.findViewById(R.id.data_type);
@@ -891,9 +934,9 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
     }
 
     /**
-     * Donwload of thumb.
+     * Request of thumb.
      */
-    private class ThetaThumbTask implements DownloadThetaDataTask.ThetaDownloadListener {
+    private class ThetaThumbRequest implements ThetaThumbnailPrefetcher.Callback {
 
         /** THETA Object. */
         private final ThetaObject mObj;
@@ -904,60 +947,52 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
         /** Tag of thumbnail view. */
         private final String mTag;
 
-        /** Thumbnail. */
-        private byte[] mThumbnail;
-
         /**
          * Constructor.
          * @param obj THETA Object
          * @param holder view holder
          */
-        ThetaThumbTask(final ThetaObject obj, final GalleryViewHolder holder) {
+        ThetaThumbRequest(final ThetaObject obj, final GalleryViewHolder holder) {
             mObj = obj;
             mHolder = holder;
             mTag = holder.mThumbnail.getTag().toString();
         }
 
-        @Override
-        public synchronized void doInBackground() {
-            mThumbnail = mThumbnailCache.get(mObj.getFileName());
-            if (mThumbnail == null) {
-                try {
-                    Thread.sleep(100);
-                    cacheThumbnail(mObj);
-                } catch (ThetaDeviceException e) {
-                    if (BuildConfig.DEBUG) {
-                        Log.e("AAA", "error", e);
-                    }
-                } catch (InterruptedException e) {
-                    // Nothing to do.
-                }
+        /**
+         * Cancel this request.
+         */
+        void cancel() {
+            if (mThumbnailFetcher != null) {
+                mThumbnailFetcher.cancel(mObj, this);
             }
         }
 
-        private void cacheThumbnail(final ThetaObject obj) throws ThetaDeviceException {
-            obj.fetch(ThetaObject.DataType.THUMBNAIL);
-            mThumbnail = obj.getThumbnailData();
-            obj.clear(ThetaObject.DataType.THUMBNAIL);
+        @Override
+        public void onFetched(final ThetaObject object, final byte[] thumbnail) {
+            Activity activity = getActivity();
+            if (activity == null) {
+                return;
+            }
+            activity.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    showThumbnail(thumbnail);
+                }
+            });
         }
 
-        @Override
-        public synchronized void onPostExecute() {
+        private void showThumbnail(final byte[] thumbnail) {
             ImageView thumbView = mHolder.mThumbnail;
             ThetaLoadingProgressView loadingView = mHolder.mLoading;
             if (!mTag.equals(thumbView.getTag())) {
                 return;
             }
-            if (mThumbnail != null) {
-                mThumbnailCache.put(mObj.getFileName(), mThumbnail);
-                thumbView = mHolder.mThumbnail;
-                loadingView = mHolder.mLoading;
-                if (mTag.equals(thumbView.getTag())) {
-                    Bitmap data = BitmapFactory.decodeByteArray(mThumbnail, 0, mThumbnail.length);
-
-                    thumbView.setImageBitmap(data);
-                    loadingView.setVisibility(View.GONE);
-                }
+            if (mHolder.mRequest == this) {
+                mHolder.mRequest = null;
+            }
+            if (thumbnail != null) {
+                Bitmap data = BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length);
+                thumbView.setImageBitmap(data);
             }
             loadingView.setVisibility(View.GONE);
             if ((mUpdateThetaList.size() > 0 && !mIsGalleryMode)
@@ -966,7 +1001,6 @@ public class ThetaGalleryFragment extends Fragment implements ThetaDeviceEventLi
             } else {
                 mStatusView.setVisibility(View.VISIBLE);
             }
-
         }
     }
 
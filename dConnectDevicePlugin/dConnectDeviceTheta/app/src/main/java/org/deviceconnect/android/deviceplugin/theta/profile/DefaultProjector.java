@@ -3,16 +3,25 @@ package org.deviceconnect.android.deviceplugin.theta.profile;
 
 import android.graphics.Bitmap;
 
+import org.deviceconnect.android.deviceplugin.theta.core.EquirectangularReprojector;
 import org.deviceconnect.android.deviceplugin.theta.core.SphericalViewRenderer;
-import org.deviceconnect.android.deviceplugin.theta.opengl.PixelBuffer;
 
 import java.io.ByteArrayOutputStream;
-import java.nio.IntBuffer;
 
 
 class DefaultProjector extends AbstractProjector {
 
-    private PixelBuffer mPixelBuffer;
+    /**
+     * Interval of frames. Unit: millisecond.
+     */
+    private static final long FRAME_INTERVAL = 100;
+
+    /**
+     * Quality of JPEG frames.
+     */
+    private static final int JPEG_QUALITY = 90;
+
+    private EquirectangularReprojector mReprojector;
 
     private Thread mThread;
 
@@ -20,11 +29,11 @@ class DefaultProjector extends AbstractProjector {
 
     private byte[] mImageCache;
 
-    @Override
-    public void setRenderer(final SphericalViewRenderer renderer) {
-        super.setRenderer(renderer);
-        mRenderer.setSurfaceListener(this);
-    }
+    private Bitmap mTexture;
+
+    private int[] mPixels;
+
+    private Bitmap mFrame;
 
     @Override
     public boolean start() {
@@ -35,6 +44,7 @@ class DefaultProjector extends AbstractProjector {
             return false;
         }
 
+        mReprojector = new EquirectangularReprojector();
         mThread = new Thread(new Runnable() {
             @Override
             public void run() {
@@ -44,17 +54,14 @@ class DefaultProjector extends AbstractProjector {
                     while(!mIsRequestedToStop) {
                         long start = System.currentTimeMillis();
 
-                        if (mIsChangedImageSize) {
-                            disposeBuffer();
-                            prepareBuffer();
-                            mRenderer.requestToUpdateTexture();
-                            mIsChangedImageSize = false;
+                        // Frames are encoded again only if the image or the view is changed.
+                        if (prepareSource() | prepareView() || mImageCache == null) {
+                            mImageCache = draw();
                         }
-                        draw();
-                        readBuffer();
+                        mScreen.onProjected(DefaultProjector.this, mImageCache);
 
                         long end = System.currentTimeMillis();
-                        long interval = 100 - (end - start);
+                        long interval = FRAME_INTERVAL - (end - start);
                         if (interval > 0) {
                             Thread.sleep(interval);
                         }
@@ -91,51 +98,70 @@ class DefaultProjector extends AbstractProjector {
         return mImageCache;
     }
 
-    private void prepareBuffer() {
-        if (mPixelBuffer == null) {
-            int width = mRenderer.getScreenWidth();
-            int height = mRenderer.getScreenHeight();
-            boolean isStereo = mRenderer.isStereo();
-            mPixelBuffer = new PixelBuffer(width, height, isStereo);
-            mPixelBuffer.setRenderer(mRenderer);
+    private boolean prepareSource() {
+        Bitmap texture = mRenderer.getTexture();
+        if (texture == null) {
+            throw new IllegalStateException("Texture is not set.");
+        }
+        if (texture == mTexture) {
+            return false;
         }
+        int width = texture.getWidth();
+        int height = texture.getHeight();
+        int[] pixels = new int[width * height];
+        texture.getPixels(pixels, 0, width, 0, 0, width, height);
+        mReprojector.setSource(pixels, width, height);
+        mTexture = texture;
+        return true;
     }
 
-    private void disposeBuffer() {
-        if (mPixelBuffer != null) {
-            mPixelBuffer.destroy();
-            mPixelBuffer = null;
+    private boolean prepareView() {
+        SphericalViewRenderer.Camera camera = mRenderer.getCamera();
+        boolean isStereo = mRenderer.isStereo();
+        int width = mRenderer.getScreenWidth();
+        if (isStereo && mRenderer.getStereoImageType() == SphericalViewRenderer.StereoImageType.HALF) {
+            width /= 2;
         }
+        EquirectangularReprojector.View view = new EquirectangularReprojector.View(
+            width, mRenderer.getScreenHeight(),
+            camera.getFovDegree(), mRenderer.getSphereRadius(),
+            camera.getPosition(), camera.getFrontDirection(),
+            camera.getUpperDirection(), camera.getRightDirection(),
+            isStereo, mRenderer.isFlipVertical());
+        if (view.equals(mReprojector.getView())) {
+            return false;
+        }
+        mReprojector.setView(view);
+        return true;
     }
 
-    private void readBuffer() {
-        Bitmap b = mPixelBuffer.convertToBitmap();
-        reverse(b);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        b.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-        byte[] jpeg = baos.toByteArray();
-        mImageCache = jpeg;
-
-        mScreen.onProjected(this, jpeg);
+    private void disposeBuffer() {
+        if (mFrame != null) {
+            mFrame.recycle();
+            mFrame = null;
+        }
+        mPixels = null;
+        mTexture = null;
+        mReprojector.destroy();
     }
 
-    private void reverse(final Bitmap b) {
-        int width = b.getWidth();
-        int height = b.getHeight();
-        IntBuffer buf = IntBuffer.allocate(width * height);
-        IntBuffer tmp = IntBuffer.allocate(width * height);
-        b.copyPixelsToBuffer(buf);
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                tmp.put((height - i - 1) * width + j, buf.get(i * width + j));
+    private byte[] draw() {
+        EquirectangularReprojector.View view = mReprojector.getView();
+        int width = view.getOutputWidth();
+        int height = view.getOutputHeight();
+        mPixels = mReprojector.render(mPixels);
+
+        if (mFrame == null || mFrame.getWidth() != width || mFrame.getHeight() != height) {
+            if (mFrame != null) {
+                mFrame.recycle();
             }
+            mFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
         }
-        b.copyPixelsFromBuffer(tmp);
-        buf.clear();
-    }
+        mFrame.setPixels(mPixels, 0, width, 0, 0, width, height);
 
-    protected void draw() {
-        mPixelBuffer.render();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        mFrame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, baos);
+        return baos.toByteArray();
     }
 
 }
@@ -0,0 +1,249 @@
+package org.deviceconnect.android.deviceplugin.theta.core;
+
+import org.deviceconnect.android.deviceplugin.theta.utils.Vector3D;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Checks the CPU reprojection of equirectangular images.
+ * <p>
+ * Golden images are stored as binary PPM files. Run with <code>-Dtheta.golden.dir=&lt;dir&gt;</code>
+ * to write the current results to the directory.
+ * </p>
+ */
+public class EquirectangularReprojectorTest {
+
+    private static final int SOURCE_WIDTH = 2048;
+    private static final int SOURCE_HEIGHT = 1024;
+    private static final int BENCHMARK_FRAMES = 10;
+    private static final int THREAD_COUNT = 4;
+
+    private static final Vector3D ORIGIN = new Vector3D(0, 0, 0);
+    private static final Vector3D FRONT = new Vector3D(1, 0, 0);
+    private static final Vector3D UP = new Vector3D(0, 1, 0);
+    private static final Vector3D RIGHT = new Vector3D(0, 0, 1);
+
+    private int[] mSource;
+    private EquirectangularReprojector mReprojector;
+
+    @Before
+    public void setUp() {
+        mSource = createSource(SOURCE_WIDTH, SOURCE_HEIGHT);
+        mReprojector = new EquirectangularReprojector(THREAD_COUNT);
+        mReprojector.setSource(mSource, SOURCE_WIDTH, SOURCE_HEIGHT);
+    }
+
+    @After
+    public void tearDown() {
+        mReprojector.destroy();
+    }
+
+    @Test
+    public void testFrontView() {
+        mReprojector.setView(createView(64, 48, 90, FRONT, false));
+        int[] pixels = mReprojector.render(null);
+
+        // The center of the view is the center of the image.
+        assertPixel(sourceAt(0.5, 0.5), pixels[24 * 64 + 32], 8);
+        // The left and right edges are 45 degrees away from the center, horizontally.
+        double edge = Math.toDegrees(Math.atan((32 - 0.5) / 24.0 * Math.tan(Math.toRadians(45))));
+        assertPixel(sourceAt(0.5 - edge / 360.0, 0.5), pixels[24 * 64], 8);
+        assertPixel(sourceAt(0.5 + edge / 360.0, 0.5), pixels[24 * 64 + 63], 8);
+    }
+
+    @Test
+    public void testViewAcrossSeam() {
+        // Looking at -X, the seam of the image is at the center of the view.
+        mReprojector.setView(createView(64, 48, 60, new Vector3D(-1, 0, 0), false));
+        int[] pixels = mReprojector.render(null);
+        for (int pixel : pixels) {
+            Assert.assertTrue((pixel & 0xFF000000) == 0xFF000000);
+        }
+        assertPixel(sourceAt(0.0, 0.5), pixels[24 * 64 + 32], 16);
+    }
+
+    @Test
+    public void testGoldenImages() throws IOException {
+        assertGolden("front", createView(64, 48, 90, FRONT, false));
+        assertGolden("up_right", createView(64, 48, 60, new Vector3D(0.5f, 0.7f, 0.5f), false));
+        assertGolden("flip", createView(64, 48, 75, new Vector3D(0.7f, 0.3f, -0.6f), true));
+        assertGolden("stereo", new EquirectangularReprojector.View(32, 48, 90, 1.0f,
+            ORIGIN, FRONT, UP, RIGHT, true, false));
+    }
+
+    @Test
+    public void testThreadsProduceSameImage() {
+        EquirectangularReprojector.View view = createView(320, 240, 100, new Vector3D(0.3f, -0.4f, 0.8f), false);
+        EquirectangularReprojector single = new EquirectangularReprojector(1);
+        try {
+            single.setSource(mSource, SOURCE_WIDTH, SOURCE_HEIGHT);
+            single.setView(view);
+            mReprojector.setView(view);
+            Assert.assertArrayEquals(single.render(null), mReprojector.render(null));
+        } finally {
+            single.destroy();
+        }
+    }
+
+    @Test
+    public void testLookupTableFollowsView() {
+        mReprojector.setView(createView(64, 48, 90, FRONT, false));
+        int[] front = mReprojector.render(null).clone();
+        mReprojector.setView(createView(64, 48, 90, new Vector3D(0, 0, 1), false));
+        int[] right = mReprojector.render(null).clone();
+        mReprojector.setView(createView(64, 48, 90, FRONT, false));
+        Assert.assertArrayEquals(front, mReprojector.render(null));
+        Assert.assertFalse(Arrays.equals(front, right));
+    }
+
+    @Test
+    public void testBenchmark() {
+        benchmark(640, 480);
+        benchmark(1920, 1080);
+    }
+
+    private void benchmark(final int width, final int height) {
+        EquirectangularReprojector single = new EquirectangularReprojector(1);
+        try {
+            single.setSource(mSource, SOURCE_WIDTH, SOURCE_HEIGHT);
+            long[] singleTimes = measure(single, width, height);
+            long[] multiTimes = measure(mReprojector, width, height);
+            System.out.println(width + "x" + height + ": lookup table + first frame "
+                + singleTimes[0] + "ms / " + multiTimes[0] + "ms, cached frame "
+                + singleTimes[1] + "ms / " + multiTimes[1] + "ms (1 thread / " + THREAD_COUNT + " threads on "
+                + Runtime.getRuntime().availableProcessors() + " processors)");
+        } finally {
+            single.destroy();
+        }
+    }
+
+    private static long[] measure(final EquirectangularReprojector reprojector, final int width, final int height) {
+        reprojector.setView(createView(width, height, 90, new Vector3D(0.6f, 0.2f, 0.7f), false));
+        long start = System.nanoTime();
+        int[] pixels = reprojector.render(null);
+        long first = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_FRAMES; i++) {
+            pixels = reprojector.render(pixels);
+        }
+        long cached = (System.nanoTime() - start) / BENCHMARK_FRAMES;
+        Assert.assertEquals(width * height, pixels.length);
+        return new long[] {first / 1000000, cached / 1000000};
+    }
+
+    private void assertGolden(final String name, final EquirectangularReprojector.View view) throws IOException {
+        mReprojector.setView(view);
+        int width = view.getOutputWidth();
+        int height = view.getOutputHeight();
+        int[] pixels = mReprojector.render(null);
+
+        String dir = System.getProperty("theta.golden.dir");
+        if (dir != null) {
+            writePpm(new File(dir, name + ".ppm"), pixels, width, height);
+            return;
+        }
+
+        InputStream in = getClass().getResourceAsStream("golden/" + name + ".ppm");
+        Assert.assertNotNull("Golden image is not found: " + name, in);
+        int[] golden = readPpm(in, width, height);
+        for (int i = 0; i < pixels.length; i++) {
+            assertPixel(golden[i], pixels[i], 2);
+        }
+    }
+
+    private int sourceAt(final double u, final double v) {
+        int x = (int) Math.floor(u * SOURCE_WIDTH);
+        int y = (int) Math.floor(v * SOURCE_HEIGHT);
+        x = ((x % SOURCE_WIDTH) + SOURCE_WIDTH) % SOURCE_WIDTH;
+        y = Math.max(0, Math.min(SOURCE_HEIGHT - 1, y));
+        return mSource[y * SOURCE_WIDTH + x];
+    }
+
+    private static EquirectangularReprojector.View createView(final int width, final int height, final float fov,
+                                                              final Vector3D front, final boolean flip) {
+        return new EquirectangularReprojector.View(width, height, fov, 1.0f, ORIGIN, front, UP, RIGHT, false, flip);
+    }
+
+    /**
+     * Creates a smooth image whose color tells the position.
+     */
+    private static int[] createSource(final int width, final int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double u = (x + 0.5) / width;
+                double v = (y + 0.5) / height;
+                int r = (int) Math.round(127.5 + 127.5 * Math.sin(2 * Math.PI * u));
+                int g = (int) Math.round(127.5 + 127.5 * Math.cos(2 * Math.PI * u));
+                int b = (int) Math.round(255 * v);
+                pixels[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static void assertPixel(final int expected, final int actual, final int tolerance) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int e = (expected >> shift) & 0xFF;
+            int a = (actual >> shift) & 0xFF;
+            if (Math.abs(e - a) > tolerance) {
+                Assert.fail(String.format("expected:%08x but was:%08x", expected, actual));
+            }
+        }
+    }
+
+    private static void writePpm(final File file, final int[] pixels, final int width, final int height)
+            throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("P6\n" + width + " " + height + "\n255\n").getBytes("US-ASCII"));
+            byte[] rgb = new byte[width * height * 3];
+            for (int i = 0; i < width * height; i++) {
+                rgb[i * 3] = (byte) (pixels[i] >> 16);
+                rgb[i * 3 + 1] = (byte) (pixels[i] >> 8);
+                rgb[i * 3 + 2] = (byte) pixels[i];
+            }
+            out.write(rgb);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int[] readPpm(final InputStream in, final int width, final int height) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                data.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        byte[] bytes = data.toByteArray();
+        String header = "P6\n" + width + " " + height + "\n255\n";
+        Assert.assertEquals(header.length() + width * height * 3, bytes.length);
+        Assert.assertEquals(header, new String(bytes, 0, header.length(), "US-ASCII"));
+
+        int[] pixels = new int[width * height];
+        int offset = header.length();
+        for (int i = 0; i < pixels.length; i++) {
+            int r = bytes[offset + i * 3] & 0xFF;
+            int g = bytes[offset + i * 3 + 1] & 0xFF;
+            int b = bytes[offset + i * 3 + 2] & 0xFF;
+            pixels[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        return pixels;
+    }
+}
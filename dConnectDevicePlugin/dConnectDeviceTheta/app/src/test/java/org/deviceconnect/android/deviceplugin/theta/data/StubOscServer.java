@@ -0,0 +1,118 @@
+package org.deviceconnect.android.deviceplugin.theta.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in of OSC API of THETA S, which returns thumbnails with latency.
+ */
+class StubOscServer {
+
+    private static final String PATH_COMMANDS_EXECUTE = "/osc/commands/execute";
+    private static final Pattern FILE_URI = Pattern.compile("\"fileUri\"\\s*:\\s*\"([^\"]+)\"");
+
+    static final int THUMBNAIL_SIZE = 3 * 1024;
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    private final long mLatency;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mConcurrentCount = new AtomicInteger();
+    private final AtomicInteger mMaxConcurrentCount = new AtomicInteger();
+
+    StubOscServer(final long latency) throws IOException {
+        mLatency = latency;
+        mExecutor = Executors.newCachedThreadPool();
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext(PATH_COMMANDS_EXECUTE, new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                handleCommand(exchange);
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    String getHost() {
+        return "127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    int getMaxConcurrentCount() {
+        return mMaxConcurrentCount.get();
+    }
+
+    void close() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    static byte[] createThumbnail(final String fileUri) {
+        byte[] data = new byte[THUMBNAIL_SIZE];
+        byte[] name = fileUri.getBytes();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = name[i % name.length];
+        }
+        return data;
+    }
+
+    private void handleCommand(final HttpExchange exchange) throws IOException {
+        int concurrent = mConcurrentCount.incrementAndGet();
+        synchronized (mMaxConcurrentCount) {
+            if (concurrent > mMaxConcurrentCount.get()) {
+                mMaxConcurrentCount.set(concurrent);
+            }
+        }
+        mRequestCount.incrementAndGet();
+        try {
+            String body = readBody(exchange.getRequestBody());
+            Matcher m = FILE_URI.matcher(body);
+            if (!body.contains("camera.getImage") || !m.find()) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            try {
+                Thread.sleep(mLatency);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            byte[] thumbnail = createThumbnail(m.group(1));
+            exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+            exchange.sendResponseHeaders(200, thumbnail.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(thumbnail);
+            out.close();
+        } finally {
+            mConcurrentCount.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static String readBody(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int len;
+        while ((len = in.read(buf)) > 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toString("UTF-8");
+    }
+}
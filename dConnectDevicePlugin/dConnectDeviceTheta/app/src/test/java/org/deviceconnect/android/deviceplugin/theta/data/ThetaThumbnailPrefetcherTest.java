@@ -0,0 +1,317 @@
+package org.deviceconnect.android.deviceplugin.theta.data;
+
+import org.deviceconnect.android.deviceplugin.theta.core.ThetaObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the thumbnail cache and prefetcher against a stand-in of OSC API.
+ */
+public class ThetaThumbnailPrefetcherTest {
+
+    private static final long LATENCY = 40;
+    private static final int OBJECT_COUNT = 60;
+    private static final int VISIBLE_COUNT = 8;
+    private static final int FIRST_COUNT = 20;
+    private static final String FILE_URI_PREFIX = "100RICOH/";
+
+    private StubOscServer mServer;
+    private File mCacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new StubOscServer(LATENCY);
+        mCacheDir = File.createTempFile("thumbnails", "");
+        Assert.assertTrue(mCacheDir.delete());
+        Assert.assertTrue(mCacheDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        mServer.close();
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDir.delete();
+    }
+
+    @Test
+    public void testTimeToFirstThumbnails() throws Exception {
+        List<ThetaObject> objects = createObjects(OBJECT_COUNT);
+
+        // Fetches thumbnails one by one, as the gallery did before.
+        long start = System.nanoTime();
+        for (int i = 0; i < FIRST_COUNT; i++) {
+            ThetaObject object = objects.get(i);
+            object.fetch(ThetaObject.DataType.THUMBNAIL);
+            Assert.assertNotNull(object.getThumbnailData());
+            object.clear(ThetaObject.DataType.THUMBNAIL);
+        }
+        long sequential = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        ThetaThumbnailCache cache = new ThetaThumbnailCache(mCacheDir, 1024 * 1024, 4 * 1024 * 1024);
+        ThetaThumbnailPrefetcher prefetcher = new ThetaThumbnailPrefetcher(cache,
+                ThetaThumbnailPrefetcher.DEFAULT_CONCURRENT_FETCHES);
+        try {
+            final CountDownLatch latch = new CountDownLatch(VISIBLE_COUNT);
+            start = System.nanoTime();
+            for (int i = 0; i < VISIBLE_COUNT; i++) {
+                prefetcher.request(objects.get(i), new ThetaThumbnailPrefetcher.Callback() {
+                    @Override
+                    public void onFetched(final ThetaObject object, final byte[] thumbnail) {
+                        Assert.assertNotNull(thumbnail);
+                        latch.countDown();
+                    }
+                });
+            }
+            prefetcher.prefetch(objects.subList(VISIBLE_COUNT, FIRST_COUNT));
+
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            long visible = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            for (int i = 0; i < FIRST_COUNT; i++) {
+                waitForCache(cache, objects.get(i).getFileName());
+            }
+            long prefetched = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            System.out.println("First " + FIRST_COUNT + " thumbnails: one by one " + sequential
+                    + "ms, prefetched " + prefetched + "ms (first " + VISIBLE_COUNT + " in " + visible + "ms)");
+            Assert.assertTrue(mServer.getMaxConcurrentCount() <= ThetaThumbnailPrefetcher.DEFAULT_CONCURRENT_FETCHES);
+            Assert.assertTrue(prefetched < sequential);
+            for (int i = 0; i < FIRST_COUNT; i++) {
+                String fileName = objects.get(i).getFileName();
+                Assert.assertArrayEquals(StubOscServer.createThumbnail(FILE_URI_PREFIX + fileName), cache.get(fileName));
+            }
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testRequestIsDeduplicated() throws Exception {
+        ThetaThumbnailCache cache = new ThetaThumbnailCache(null, 1024 * 1024, 0);
+        ThetaThumbnailPrefetcher prefetcher = new ThetaThumbnailPrefetcher(cache, 2);
+        try {
+            ThetaObject object = createObjects(1).get(0);
+            final CountDownLatch latch = new CountDownLatch(3);
+            ThetaThumbnailPrefetcher.Callback callback = new ThetaThumbnailPrefetcher.Callback() {
+                @Override
+                public void onFetched(final ThetaObject object, final byte[] thumbnail) {
+                    Assert.assertNotNull(thumbnail);
+                    latch.countDown();
+                }
+            };
+            prefetcher.prefetch(createObjects(1));
+            prefetcher.request(object, callback);
+            prefetcher.request(object, callback);
+            prefetcher.request(object, callback);
+
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, mServer.getRequestCount());
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testDiskCacheSurvivesRestart() throws Exception {
+        List<ThetaObject> objects = createObjects(10);
+        ThetaThumbnailCache cache = new ThetaThumbnailCache(mCacheDir, 1024 * 1024, 4 * 1024 * 1024);
+        ThetaThumbnailPrefetcher prefetcher = new ThetaThumbnailPrefetcher(cache, 3);
+        try {
+            prefetcher.prefetch(objects);
+            for (ThetaObject object : objects) {
+                waitForCache(cache, object.getFileName());
+            }
+        } finally {
+            prefetcher.shutdown();
+        }
+        int requestCount = mServer.getRequestCount();
+
+        ThetaThumbnailCache restored = new ThetaThumbnailCache(mCacheDir, 1024 * 1024, 4 * 1024 * 1024);
+        Assert.assertEquals(0, restored.getMemorySize());
+        Assert.assertEquals(10L * StubOscServer.THUMBNAIL_SIZE, restored.getDiskSize());
+        for (ThetaObject object : objects) {
+            String fileName = object.getFileName();
+            Assert.assertArrayEquals(StubOscServer.createThumbnail(FILE_URI_PREFIX + fileName), restored.get(fileName));
+        }
+        Assert.assertEquals(requestCount, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        int size = StubOscServer.THUMBNAIL_SIZE;
+        ThetaThumbnailCache cache = new ThetaThumbnailCache(mCacheDir, size * 3, size * 5);
+        for (int i = 0; i < 10; i++) {
+            String fileName = "R00100" + i + ".JPG";
+            cache.put(fileName, StubOscServer.createThumbnail(fileName));
+        }
+        Assert.assertEquals(size * 3, cache.getMemorySize());
+        Assert.assertEquals(size * 5, cache.getDiskSize());
+        Assert.assertEquals(5, mCacheDir.listFiles().length);
+
+        // The least recently used thumbnails are evicted.
+        Assert.assertFalse(cache.contains("R001000.JPG"));
+        Assert.assertFalse(cache.contains("R001004.JPG"));
+        Assert.assertTrue(cache.contains("R001005.JPG"));
+        Assert.assertNotNull(cache.get("R001005.JPG"));
+        cache.put("R001010.JPG", StubOscServer.createThumbnail("R001010.JPG"));
+        Assert.assertTrue(cache.contains("R001005.JPG"));
+        Assert.assertFalse(cache.contains("R001006.JPG"));
+
+        cache.remove("R001005.JPG");
+        Assert.assertFalse(cache.contains("R001005.JPG"));
+        Assert.assertEquals(4, mCacheDir.listFiles().length);
+    }
+
+    private List<ThetaObject> createObjects(final int count) {
+        List<ThetaObject> objects = new ArrayList<ThetaObject>();
+        for (int i = 0; i < count; i++) {
+            objects.add(new OscThetaObject(mServer.getHost(), String.format("R0010%03d.JPG", i)));
+        }
+        return objects;
+    }
+
+    private static void waitForCache(final ThetaThumbnailCache cache, final String fileName)
+            throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (!cache.contains(fileName)) {
+            Assert.assertTrue(System.currentTimeMillis() < timeout);
+            Thread.sleep(2);
+        }
+    }
+
+    /**
+     * THETA object which fetches a thumbnail with OSC API, as THETA S does.
+     */
+    private static class OscThetaObject implements ThetaObject {
+
+        private final String mHost;
+        private final String mFileName;
+        private byte[] mThumbnail;
+
+        OscThetaObject(final String host, final String fileName) {
+            mHost = host;
+            mFileName = fileName;
+        }
+
+        @Override
+        public void fetch(final DataType type) {
+            if (type != DataType.THUMBNAIL) {
+                throw new IllegalArgumentException();
+            }
+            try {
+                mThumbnail = getImage(FILE_URI_PREFIX + mFileName);
+            } catch (IOException e) {
+                mThumbnail = null;
+            }
+        }
+
+        private byte[] getImage(final String fileUri) throws IOException {
+            String body = "{\"name\":\"camera.getImage\",\"parameters\":{\"fileUri\":\"" + fileUri
+                    + "\",\"_type\":\"thumb\"}}";
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://" + mHost + "/osc/commands/execute")
+                    .openConnection();
+            try {
+                conn.setRequestMethod("POST");
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                OutputStream out = conn.getOutputStream();
+                out.write(body.getBytes("UTF-8"));
+                out.close();
+                if (conn.getResponseCode() != 200) {
+                    throw new IOException("status=" + conn.getResponseCode());
+                }
+
+                InputStream in = conn.getInputStream();
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                byte[] buf = new byte[1024];
+                int len;
+                while ((len = in.read(buf)) > 0) {
+                    data.write(buf, 0, len);
+                }
+                in.close();
+                return data.toByteArray();
+            } finally {
+                conn.disconnect();
+            }
+        }
+
+        @Override
+        public boolean isFetched(final DataType type) {
+            return type == DataType.THUMBNAIL && mThumbnail != null;
+        }
+
+        @Override
+        public void remove() {
+        }
+
+        @Override
+        public void clear(final DataType type) {
+            if (type == DataType.THUMBNAIL) {
+                mThumbnail = null;
+            }
+        }
+
+        @Override
+        public String getMimeType() {
+            return "image/jpeg";
+        }
+
+        @Override
+        public Boolean isImage() {
+            return true;
+        }
+
+        @Override
+        public String getCreationTime() {
+            return "";
+        }
+
+        @Override
+        public long getCreationTimeWithUnixTime() {
+            return 0;
+        }
+
+        @Override
+        public String getFileName() {
+            return mFileName;
+        }
+
+        @Override
+        public Integer getWidth() {
+            return 5376;
+        }
+
+        @Override
+        public Integer getHeight() {
+            return 2688;
+        }
+
+        @Override
+        public byte[] getThumbnailData() {
+            return mThumbnail;
+        }
+
+        @Override
+        public byte[] getMainData() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ CommunicationHistoryTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.plugin;
+
+
+import android.content.Context;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link CommunicationHistory}クラスの永続化のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CommunicationHistoryTest {
+
+    /** テスト用のプラグインID. */
+    private static final String PLUGIN_ID = "communication_history_test";
+
+    private Context mContext;
+
+    private DevicePlugin mPlugin;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mPlugin = new DevicePlugin.Builder(mContext)
+            .setPluginId(PLUGIN_ID)
+            .build();
+        mPlugin.setConnection(new NullConnection());
+        mPlugin.getHistory().clear();
+    }
+
+    @After
+    public void tearDown() {
+        mPlugin.deleteData();
+    }
+
+    /**
+     * プラグインの破棄時に、永続化されていない統計データが書き込まれることを確認する.
+     */
+    @Test
+    public void testFlushOnDispose() {
+        CommunicationHistory history = mPlugin.getHistory();
+        history.setAverageBaudRate(100);
+        history.setWorstBaudRate(300);
+        history.setWorstBaudRateRequest("/gotapi/test");
+
+        // 最初の書き込み以降は、永続化の間隔が経過するまで書き込まれない
+        CommunicationHistory reloaded = new CommunicationHistory(mContext, PLUGIN_ID);
+        assertThat(reloaded.getAverageBaudRate(), is(100L));
+        assertThat(reloaded.getWorstBaudRate(), is(0L));
+
+        mPlugin.dispose();
+
+        reloaded = new CommunicationHistory(mContext, PLUGIN_ID);
+        assertThat(reloaded.getAverageBaudRate(), is(100L));
+        assertThat(reloaded.getWorstBaudRate(), is(300L));
+        assertThat(reloaded.getWorstBaudRateRequest(), is("/gotapi/test"));
+    }
+
+    /**
+     * プラグインのデータ削除時に、統計データが削除されることを確認する.
+     */
+    @Test
+    public void testDeleteData() {
+        mPlugin.getHistory().setAverageBaudRate(100);
+        mPlugin.dispose();
+        mPlugin.deleteData();
+
+        CommunicationHistory reloaded = new CommunicationHistory(mContext, PLUGIN_ID);
+        assertThat(reloaded.getAverageBaudRate(), is(0L));
+        assertThat(reloaded.getWorstBaudRateRequest(), is("None"));
+    }
+
+    /**
+     * 何もしない接続.
+     */
+    private static class NullConnection implements Connection {
+
+        @Override
+        public String getPluginId() {
+            return PLUGIN_ID;
+        }
+
+        @Override
+        public ConnectionType getType() {
+            return ConnectionType.BINDER;
+        }
+
+        @Override
+        public ConnectionState getState() {
+            return ConnectionState.DISCONNECTED;
+        }
+
+        @Override
+        public void connect() throws ConnectingException {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void addConnectionStateListener(final ConnectionStateListener listener) {
+        }
+
+        @Override
+        public void removeConnectionStateListener(final ConnectionStateListener listener) {
+        }
+
+        @Override
+        public void send(final Intent message) throws MessagingException {
+        }
+
+        @Override
+        public boolean ping() {
+            return true;
+        }
+
+        @Override
+        public ConnectionError getCurrentError() {
+            return null;
+        }
+    }
+}
@@ -12,12 +12,18 @@ import org.deviceconnect.android.test.http.HttpUtil;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -32,6 +38,24 @@ public class NormalFilesProfileTestCase extends RESTfulDConnectTestCase {
      */
     private static final String TEST_URI = "content://org.deviceconnect.android.deviceplugin.test.provider/test.dat";
 
+    /**
+     * テスト用デバイスプラグインの範囲指定用のファイルへのURIを定義.
+     */
+    private static final String LARGE_TEST_URI = "content://org.deviceconnect.android.deviceplugin.test.provider/large.dat";
+
+    /**
+     * 範囲指定用のファイルのサイズを定義.
+     */
+    private static final int LARGE_TEST_FILE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 範囲指定用のファイルの各バイトの値の周期を定義.
+     * <p>
+     * 各バイトの値は、先頭からの位置をこの値で割った余りとなる.
+     * </p>
+     */
+    private static final int LARGE_TEST_FILE_MODULUS = 251;
+
     @Override
     protected boolean isLocalOAuth() {
         return false;
@@ -63,4 +87,175 @@ public class NormalFilesProfileTestCase extends RESTfulDConnectTestCase {
         assertThat(response.getStatusCode(), is(200));
         assertThat((int) response.getBody().length(), is(1024 * 1024));
     }
+
+    /**
+     * ファイルのサイズと範囲指定への対応を取得するテスト.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /files?uri=LARGE_TEST_URI
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・HTTPステータスコードに200が返ってくること。
+     * ・Content-Lengthにファイルサイズが返ってくること。
+     * ・Accept-Rangesにbytesが返ってくること。
+     * </pre>
+     */
+    @Test
+    public void testFilesContentLength() throws Exception {
+        HttpUtil.Response response = HttpUtil.get(getLargeFileUri(), createHeaders());
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getHeader("Content-Length"), is(String.valueOf(LARGE_TEST_FILE_SIZE)));
+        assertThat(response.getHeader("Accept-Ranges"), is("bytes"));
+        assertThat(response.getHeader("ETag"), is(notNullValue()));
+        assertBody(response.getBody(), 0, LARGE_TEST_FILE_SIZE);
+    }
+
+    /**
+     * ファイルの任意の範囲を取得するテスト.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /files?uri=LARGE_TEST_URI
+     * Header: Range: bytes=start-end
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・HTTPステータスコードに206が返ってくること。
+     * ・Content-Rangeに指定した範囲が返ってくること。
+     * ・指定した範囲のデータが取得できること。
+     * </pre>
+     */
+    @Test
+    public void testFilesRandomRange() throws Exception {
+        Random random = new Random(0);
+        for (int i = 0; i < 20; i++) {
+            int start = random.nextInt(LARGE_TEST_FILE_SIZE);
+            int end = Math.min(LARGE_TEST_FILE_SIZE - 1, start + random.nextInt(1024 * 1024));
+
+            Map<String, String> headers = createHeaders();
+            headers.put("Range", "bytes=" + start + "-" + end);
+            HttpUtil.Response response = HttpUtil.get(getLargeFileUri(), headers);
+            assertThat(response, is(notNullValue()));
+            assertThat(response.getStatusCode(), is(206));
+            assertThat(response.getHeader("Content-Range"),
+                    is("bytes " + start + "-" + end + "/" + LARGE_TEST_FILE_SIZE));
+            assertBody(response.getBody(), start, end - start + 1);
+        }
+    }
+
+    /**
+     * ファイルの末尾の範囲を取得するテスト.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /files?uri=LARGE_TEST_URI
+     * Header: Range: bytes=-1000
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・HTTPステータスコードに206が返ってくること。
+     * ・ファイルの末尾のデータが取得できること。
+     * </pre>
+     */
+    @Test
+    public void testFilesSuffixRange() throws Exception {
+        Map<String, String> headers = createHeaders();
+        headers.put("Range", "bytes=-1000");
+        HttpUtil.Response response = HttpUtil.get(getLargeFileUri(), headers);
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getStatusCode(), is(206));
+        assertBody(response.getBody(), LARGE_TEST_FILE_SIZE - 1000, 1000);
+    }
+
+    /**
+     * ファイルサイズを超える範囲を取得するテスト.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /files?uri=LARGE_TEST_URI
+     * Header: Range: bytes=LARGE_TEST_FILE_SIZE-
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・HTTPステータスコードに416が返ってくること。
+     * </pre>
+     */
+    @Test
+    public void testFilesRangeNotSatisfiable() throws Exception {
+        Map<String, String> headers = createHeaders();
+        headers.put("Range", "bytes=" + LARGE_TEST_FILE_SIZE + "-");
+        HttpUtil.Response response = HttpUtil.get(getLargeFileUri(), headers);
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getStatusCode(), is(416));
+        assertThat(response.getHeader("Content-Range"), is("bytes */" + LARGE_TEST_FILE_SIZE));
+    }
+
+    /**
+     * 取得済みのETagを指定してファイルを取得するテスト.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /files?uri=LARGE_TEST_URI
+     * Header: If-None-Match: ETag
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・HTTPステータスコードに304が返ってくること。
+     * ・If-Rangeに異なるETagを指定した場合は、Rangeが無視されること。
+     * </pre>
+     */
+    @Test
+    public void testFilesConditional() throws Exception {
+        Map<String, String> headers = createHeaders();
+        headers.put("Range", "bytes=0-0");
+        HttpUtil.Response response = HttpUtil.get(getLargeFileUri(), headers);
+        String etag = response.getHeader("ETag");
+        assertThat(etag, is(notNullValue()));
+
+        headers = createHeaders();
+        headers.put("If-None-Match", etag);
+        response = HttpUtil.get(getLargeFileUri(), headers);
+        assertThat(response.getStatusCode(), is(304));
+
+        headers = createHeaders();
+        headers.put("Range", "bytes=0-99");
+        headers.put("If-Range", "\"other\"");
+        response = HttpUtil.get(getLargeFileUri(), headers);
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getHeader("Content-Range"), is(nullValue()));
+    }
+
+    private String getLargeFileUri() throws IOException {
+        return "http://localhost:4035/gotapi/files?uri=" + URLEncoder.encode(LARGE_TEST_URI, "UTF-8");
+    }
+
+    private Map<String, String> createHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Origin", getOrigin());
+        return headers;
+    }
+
+    private static void assertBody(final File body, final long offset, final int length) throws IOException {
+        assertThat(body, is(notNullValue()));
+        assertThat(body.length(), is((long) length));
+        InputStream in = new FileInputStream(body);
+        try {
+            byte[] buf = new byte[8192];
+            long pos = offset;
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                for (int i = 0; i < len; i++, pos++) {
+                    byte expected = (byte) (pos % LARGE_TEST_FILE_MODULUS);
+                    if (buf[i] != expected) {
+                        assertThat("position " + pos, buf[i], is(expected));
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
 }
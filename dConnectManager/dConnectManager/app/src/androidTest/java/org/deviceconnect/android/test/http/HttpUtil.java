@@ -29,6 +29,9 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 
@@ -340,6 +343,7 @@ public final class HttpUtil {
             }
             int statusCode = conn.getResponseCode();
             response.setStatusCode(statusCode);
+            response.setHeaders(conn.getHeaderFields());
 
             if (DEBUG) {
                 Log.d(TAG, "response code=" + statusCode);
@@ -537,6 +541,11 @@ public final class HttpUtil {
          */
         private File mBody;
 
+        /**
+         * レスポンスのヘッダー.
+         */
+        private final Map<String, String> mHeaders = new HashMap<>();
+
         /**
          * ステータスコードを取得する.
          * @return ステータスコード
@@ -569,6 +578,28 @@ public final class HttpUtil {
             mBody = body;
         }
 
+        /**
+         * レスポンスのヘッダーを取得する.
+         * @param name ヘッダー名. 大文字小文字は区別しない.
+         * @return ヘッダーの値. 存在しない場合はnull
+         */
+        public String getHeader(final String name) {
+            return mHeaders.get(name.toLowerCase(Locale.ENGLISH));
+        }
+
+        /**
+         * レスポンスのヘッダーを設定する.
+         * @param headers レスポンスのヘッダー
+         */
+        void setHeaders(final Map<String, List<String>> headers) {
+            mHeaders.clear();
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (entry.getKey() != null && !entry.getValue().isEmpty()) {
+                    mHeaders.put(entry.getKey().toLowerCase(Locale.ENGLISH), entry.getValue().get(0));
+                }
+            }
+        }
+
         public JSONObject getJSONObject() {
             if (mBody == null) {
                 return null;
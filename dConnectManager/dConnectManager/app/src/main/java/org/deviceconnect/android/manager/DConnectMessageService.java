@@ -29,6 +29,8 @@ import org.deviceconnect.android.localoauth.LocalOAuth2Main;
 import org.deviceconnect.android.manager.event.EventBroker;
 import org.deviceconnect.android.manager.event.EventSessionTable;
 import org.deviceconnect.android.manager.hmac.HmacManager;
+import org.deviceconnect.android.manager.metrics.Gauge;
+import org.deviceconnect.android.manager.metrics.MetricsRegistry;
 import org.deviceconnect.android.manager.plugin.BinderConnection;
 import org.deviceconnect.android.manager.plugin.BroadcastConnection;
 import org.deviceconnect.android.manager.plugin.Connection;
@@ -44,6 +46,7 @@ import org.deviceconnect.android.manager.policy.OriginValidator;
 import org.deviceconnect.android.manager.profile.AuthorizationProfile;
 import org.deviceconnect.android.manager.profile.DConnectAvailabilityProfile;
 import org.deviceconnect.android.manager.profile.DConnectDeliveryProfile;
+import org.deviceconnect.android.manager.profile.DConnectMetricsProfile;
 import org.deviceconnect.android.manager.profile.DConnectServiceDiscoveryProfile;
 import org.deviceconnect.android.manager.profile.DConnectSystemProfile;
 import org.deviceconnect.android.manager.request.DConnectRequest;
@@ -74,8 +77,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -173,7 +177,11 @@ public abstract class DConnectMessageService extends Service
     protected EventBroker mEventBroker;
 
     /** スレッドプール. */
-    private final ExecutorService mExecutor = Executors.newFixedThreadPool(10);
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(10, 10,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+
+    /** 計測値の管理クラス. */
+    private final MetricsRegistry mMetricsRegistry = new MetricsRegistry();
 
     /** プラグイン検索中フラグ. */
     private boolean mIsSearchingPlugins;
@@ -214,6 +222,7 @@ public abstract class DConnectMessageService extends Service
         // プラグイン管理クラスの初期化
         mPluginManager = new DevicePluginManager(this, LOCALHOST_DCONNECT);
         mPluginManager.addEventListener(this);
+        mPluginManager.setMetricsRegistry(mMetricsRegistry);
         mPluginManager.setConnectionFactory(new ConnectionFactory() {
             @Override
             public Connection createConnectionForPlugin(final DevicePlugin plugin) {
@@ -248,12 +257,36 @@ public abstract class DConnectMessageService extends Service
 
         // イベントハンドラーの初期化
         mEventBroker = new EventBroker(this, mEventSessionTable, mLocalOAuth, mPluginManager);
+        mEventBroker.setMetricsRegistry(mMetricsRegistry);
+
+        // スレッドプールの待ち行列の長さを計測する
+        registerQueueDepthGauge("message_service", new Gauge() {
+            @Override
+            public long getValue() {
+                return mExecutor.getQueue().size();
+            }
+        });
+        registerQueueDepthGauge("request", new Gauge() {
+            @Override
+            public long getValue() {
+                DConnectRequestManager requestManager = mRequestManager;
+                return requestManager != null ? requestManager.getQueueSize() : 0;
+            }
+        });
+        registerQueueDepthGauge("request_single", new Gauge() {
+            @Override
+            public long getValue() {
+                DConnectRequestManager requestManager = mRequestManager;
+                return requestManager != null ? requestManager.getSingleThreadQueueSize() : 0;
+            }
+        });
 
         // プロファイルの追加
         addProfile(new AuthorizationProfile());
         addProfile(new DConnectAvailabilityProfile());
         addProfile(new DConnectServiceDiscoveryProfile(null, mPluginManager));
         addProfile(new DConnectSystemProfile(this, mPluginManager));
+        addProfile(new DConnectMetricsProfile(mMetricsRegistry));
 
         // dConnect Managerで処理せず、登録されたデバイスプラグインに処理させるプロファイル
         setDeliveryProfile(new DConnectDeliveryProfile(mPluginManager, mLocalOAuth,
@@ -266,6 +299,9 @@ public abstract class DConnectMessageService extends Service
     @Override
     public void onDestroy() {
         mPluginManager.removeEventListener(this);
+        mPluginManager.stopConnectionSupervisor();
+        mPluginManager.flushCommunicationHistories();
+        mEventBroker.shutdown();
         stopDConnect();
         LocalOAuth2Main.destroy();
         super.onDestroy();
@@ -703,6 +739,20 @@ public abstract class DConnectMessageService extends Service
         sendLaunchedEvent();
     }
 
+    /**
+     * 計測値の管理クラスを取得する.
+     * @return {@link MetricsRegistry}のインスタンス
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return mMetricsRegistry;
+    }
+
+    private void registerQueueDepthGauge(final String poolName, final Gauge gauge) {
+        mMetricsRegistry.registerGauge(MetricsRegistry.THREAD_POOL_QUEUE_DEPTH,
+            "Number of tasks waiting in the thread pool.", gauge,
+            new String[] {MetricsRegistry.LABEL_POOL}, poolName);
+    }
+
     private synchronized void startPluginSearch() {
         if (mIsSearchingPlugins) {
             return;
@@ -11,10 +11,16 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.webkit.MimeTypeMap;
 
 import org.deviceconnect.android.localoauth.ClientPackageInfo;
 import org.deviceconnect.android.localoauth.LocalOAuth2Main;
 import org.deviceconnect.android.manager.event.EventBroker;
+import org.deviceconnect.android.manager.profile.DConnectMetricsProfile;
 import org.deviceconnect.android.manager.util.DConnectUtil;
 import org.deviceconnect.android.provider.FileManager;
 import org.deviceconnect.message.DConnectMessage;
@@ -22,6 +28,9 @@ import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 import org.deviceconnect.profile.FileProfileConstants;
 import org.deviceconnect.server.DConnectServerError;
 import org.deviceconnect.server.DConnectServerEventListener;
+import org.deviceconnect.server.http.HttpDate;
+import org.deviceconnect.server.http.HttpPrecondition;
+import org.deviceconnect.server.http.HttpRange;
 import org.deviceconnect.server.http.HttpRequest;
 import org.deviceconnect.server.http.HttpResponse;
 import org.deviceconnect.server.http.HttpResponse.StatusCode;
@@ -30,7 +39,12 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.ext.oauth.PackageInfoOAuth;
 
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -54,6 +68,12 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /** JSONレスポンス用のContent-Type. */
     private static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
 
+    /** バイナリデータ用のContent-Type. */
+    private static final String CONTENT_TYPE_OCTET_STREAM = "application/octet-stream";
+
+    /** Prometheusのテキスト形式用のContent-Type. */
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
     /** HTTPリクエストのセグメント数(APIのみ) {@value}.  */
     private static final int SEGMENT_API = 1;
     /** HTTPリクエストのセグメント数(Profileのみ) {@value}.  */
@@ -319,16 +339,7 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
         // files の時は、Device Connect Managerまでは渡さずに、ここで処理を行う
         if ("files".equalsIgnoreCase(profile)) {
             if (request.getMethod().equals(HttpRequest.Method.GET)) {
-                String uri = parameters.get("uri");
-                try {
-                    ContentResolver r = mContext.getContentResolver();
-                    response.setBody(r.openInputStream(Uri.parse(uri)));
-                    response.setContentLength(-1);
-                    response.setCode(StatusCode.OK);
-                } catch (Exception e) {
-                    response.setCode(StatusCode.NOT_FOUND);
-                    setErrorResponse(response, 1, "Not found a resource.");
-                }
+                sendContentFile(request, response, parameters.get("uri"));
             } else {
                 response.setCode(StatusCode.BAD_REQUEST);
                 setErrorResponse(response, 1, "Not implements a method.");
@@ -381,6 +392,9 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
             if (resp == null) {
                 // ここのエラーはタイムアウトの場合のみ
                 setTimeoutResponse(response);
+            } else if (isPrometheusResponse(profile, interfaces, attribute, resp)) {
+                // metrics/prometheus の時は、Prometheusのテキスト形式で計測値を返却する
+                setPrometheusResponse(response, resp);
             } else {
                 convertResponse(response, resp);
             }
@@ -397,6 +411,41 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
         return true;
     }
 
+    /**
+     * Prometheusのテキスト形式で返却するレスポンスか確認します.
+     * <p>
+     * エラーの場合は、他のAPIと同じくJSONで返却する。
+     * </p>
+     * @param profile プロファイル名
+     * @param interfaces インターフェース名
+     * @param attribute アトリビュート名
+     * @param resp レスポンス用のIntent
+     * @return Prometheusのテキスト形式で返却する場合はtrue、それ以外はfalse
+     */
+    private boolean isPrometheusResponse(final String profile, final String interfaces,
+                                         final String attribute, final Intent resp) {
+        return DConnectMetricsProfile.PROFILE_NAME.equalsIgnoreCase(profile)
+                && interfaces == null
+                && DConnectMetricsProfile.ATTRIBUTE_PROMETHEUS.equalsIgnoreCase(attribute)
+                && resp.getIntExtra(DConnectMessage.EXTRA_RESULT, DConnectMessage.RESULT_ERROR)
+                    == DConnectMessage.RESULT_OK
+                && resp.getStringExtra(DConnectMetricsProfile.PARAM_TEXT) != null;
+    }
+
+    /**
+     * Prometheusのテキスト形式の計測値をレスポンスに設定します.
+     * @param response HTTPレスポンス
+     * @param resp レスポンス用のIntent
+     */
+    private void setPrometheusResponse(final HttpResponse response, final Intent resp) {
+        String text = resp.getStringExtra(DConnectMetricsProfile.PARAM_TEXT);
+        byte[] body = text.getBytes(Charset.forName("UTF-8"));
+        response.setContentType(PROMETHEUS_CONTENT_TYPE);
+        response.setBody(body);
+        response.setContentLength(body.length);
+        response.setCode(StatusCode.OK);
+    }
+
     /**
      * レスポンスが返ってくるまで待ちます.
      * <p>
@@ -552,6 +601,142 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
         setErrorResponse(response, errorCode.getCode(), errorCode.toString());
     }
 
+    /**
+     * ContentProviderのファイルをレスポンスに設定する.
+     * <p>
+     * ファイルのサイズを取得できる場合は、Content-Lengthを設定した上で、
+     * Range(If-Range)と条件付きGET(If-None-Match, If-Modified-Since)に対応する.
+     * 範囲の指定は、ParcelFileDescriptorの読み込み位置を移動して実現するため、範囲より前のデータは読み込まない.
+     * </p>
+     * @param request HTTPリクエスト
+     * @param response HTTPレスポンス
+     * @param uri ファイルへのURI
+     */
+    private void sendContentFile(final HttpRequest request, final HttpResponse response, final String uri) {
+        ContentResolver r = mContext.getContentResolver();
+        Uri contentUri;
+        ParcelFileDescriptor pfd;
+        try {
+            contentUri = Uri.parse(uri);
+            pfd = r.openFileDescriptor(contentUri, "r");
+        } catch (Exception e) {
+            pfd = null;
+            contentUri = null;
+        }
+        if (pfd == null) {
+            response.setCode(StatusCode.NOT_FOUND);
+            setErrorResponse(response, 1, "Not found a resource.");
+            return;
+        }
+
+        response.setContentType(getContentMimeType(r, contentUri));
+
+        long size = pfd.getStatSize();
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            // パイプなどでサイズが取得できない場合は、範囲指定に対応せずにそのまま転送する
+            response.setBody(new ParcelFileDescriptor.AutoCloseInputStream(pfd));
+            response.setContentLength(-1);
+            response.setCode(StatusCode.OK);
+            return;
+        }
+
+        long lastModified = getLastModified(pfd);
+        String etag = "\"" + Integer.toHexString(uri.hashCode()) + "-" + Long.toHexString(size)
+                + "-" + Long.toHexString(lastModified) + "\"";
+        response.addHeader("Accept-Ranges", "bytes");
+        response.addHeader("ETag", etag);
+        response.addHeader("Cache-Control", "no-cache");
+        if (lastModified > 0) {
+            response.addHeader("Last-Modified", HttpDate.format(lastModified));
+        }
+
+        Map<String, String> headers = request.getHeaders();
+        if (HttpPrecondition.isNotModified(headers, etag, lastModified)) {
+            closeQuietly(pfd);
+            response.setCode(StatusCode.NOT_MODIFIED);
+            return;
+        }
+
+        List<HttpRange> ranges = null;
+        if (HttpPrecondition.isRangeApplicable(headers.get("if-range"), etag, lastModified)) {
+            ranges = HttpRange.parse(headers.get("range"), size);
+        }
+        if (ranges != null && ranges.isEmpty()) {
+            closeQuietly(pfd);
+            response.addHeader("Content-Range", "bytes */" + size);
+            response.setCode(StatusCode.REQUEST_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        long offset = 0;
+        long length = size;
+        StatusCode code = StatusCode.OK;
+        // 複数の範囲が指定された場合は、Rangeを無視してファイル全体を返却する
+        if (ranges != null && ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            offset = range.getStart();
+            length = range.getLength();
+            code = StatusCode.PARTIAL_CONTENT;
+            response.addHeader("Content-Range", range.toContentRange(size));
+        }
+
+        FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+        try {
+            if (offset > 0) {
+                in.getChannel().position(offset);
+            }
+        } catch (IOException e) {
+            closeQuietly(in);
+            response.setCode(StatusCode.INTERNAL_SERVER_ERROR);
+            setErrorResponse(response, 1, "Failed to read a resource.");
+            return;
+        }
+        response.setBody(in);
+        response.setContentLength((int) length);
+        response.setCode(code);
+    }
+
+    /**
+     * ContentProviderのファイルのMIMEタイプを取得する.
+     * @param resolver ContentResolver
+     * @param uri ファイルへのURI
+     * @return MIMEタイプ
+     */
+    private static String getContentMimeType(final ContentResolver resolver, final Uri uri) {
+        String mimeType = resolver.getType(uri);
+        if (mimeType == null) {
+            String extension = MimeTypeMap.getFileExtensionFromUrl(uri.toString());
+            if (extension != null) {
+                mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return mimeType != null ? mimeType : CONTENT_TYPE_OCTET_STREAM;
+    }
+
+    /**
+     * ファイルの更新日時を取得する.
+     * @param pfd ファイルディスクリプタ
+     * @return 更新日時. 取得できない場合は0
+     */
+    private static long getLastModified(final ParcelFileDescriptor pfd) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return 0;
+        }
+        try {
+            return Os.fstat(pfd.getFileDescriptor()).st_mtime * 1000;
+        } catch (ErrnoException e) {
+            return 0;
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+    }
+
     /**
      * レスポンスにエラーを設定する.
      *
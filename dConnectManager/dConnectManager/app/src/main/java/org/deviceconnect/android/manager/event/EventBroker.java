@@ -14,6 +14,7 @@ import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventManager;
 import org.deviceconnect.android.manager.DConnectLocalOAuth;
 import org.deviceconnect.android.manager.DConnectMessageService;
+import org.deviceconnect.android.manager.metrics.MetricsRegistry;
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.plugin.DevicePluginManager;
 import org.deviceconnect.android.manager.request.DiscoveryDeviceRequest;
@@ -25,6 +26,8 @@ import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Logger;
 
 /**
@@ -46,6 +49,16 @@ public class EventBroker {
 
     private RegistrationListener mListener;
 
+    /** イベントの計測値のラベル名. */
+    private static final String[] EVENT_LABELS = {
+        MetricsRegistry.LABEL_PROFILE, MetricsRegistry.LABEL_INTERFACE, MetricsRegistry.LABEL_ATTRIBUTE
+    };
+
+    private MetricsRegistry mMetrics;
+
+    /** イベントの送信間隔を制限する場合に使用するスケジューラ. */
+    private final ScheduledExecutorService mEventScheduler = Executors.newSingleThreadScheduledExecutor();
+
     public EventBroker(final DConnectMessageService context,
                        final EventSessionTable table,
                        final DConnectLocalOAuth localOAuth,
@@ -60,6 +73,21 @@ public class EventBroker {
         mListener = listener;
     }
 
+    /**
+     * イベントの発生頻度を記録するクラスを設定する.
+     * @param metrics {@link MetricsRegistry}のインスタンス
+     */
+    public void setMetricsRegistry(final MetricsRegistry metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 送信待ちのイベントを破棄し、スケジューラを停止する.
+     */
+    public void shutdown() {
+        mEventScheduler.shutdownNow();
+    }
+
     public void removeEventSession(final String receiverId) {
         mTable.removeForReceiverId(receiverId);
     }
@@ -90,7 +118,7 @@ public class EventBroker {
             mLogger.warning("Failed to identify a event receiver.");
             return;
         }
-        protocol.addSession(mTable, request, dest);
+        protocol.addSession(mTable, request, dest, mEventScheduler);
 
         if (mListener != null) {
             mListener.onPutEventSession(request, dest);
@@ -138,6 +166,12 @@ public class EventBroker {
         String interfaceName = DConnectProfile.getInterface(event);
         String attributeName = DConnectProfile.getAttribute(event);
 
+        MetricsRegistry metrics = mMetrics;
+        if (metrics != null) {
+            metrics.meter(MetricsRegistry.EVENTS, "Events received from plug-ins.",
+                EVENT_LABELS, profileName, interfaceName, attributeName).mark();
+        }
+
         EventSession targetSession = null;
         if (pluginAccessToken != null) {
             for (EventSession session : mTable.getAll()) {
@@ -176,7 +210,7 @@ public class EventBroker {
                 if (plugin != null) {
                     event.putExtra(IntentDConnectMessage.EXTRA_SESSION_KEY, targetSession.getReceiverId());
                     event.putExtra(DConnectMessage.EXTRA_SERVICE_ID, mPluginManager.appendServiceId(plugin, serviceId));
-                    targetSession.sendEvent(event);
+                    targetSession.postEvent(event);
                 } else {
                     mLogger.warning("onEvent: Plugin is not found: id = " + targetSession.getPluginId());
                 }
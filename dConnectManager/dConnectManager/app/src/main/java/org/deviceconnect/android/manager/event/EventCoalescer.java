@@ -0,0 +1,192 @@
+/*
+ EventCoalescer.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.event;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * イベントの送信間隔を制限するクラス.
+ *
+ * <p>
+ * 前回の送信から指定された間隔が経過していればイベントをそのまま送信する.
+ * 経過していない場合はイベントを保持しておき、間隔が経過した時点でまとめて送信する.
+ * 保持するイベントの数は maxBatchSize までとし、超えた場合は古いものから破棄する.
+ * maxBatchSize が1の場合は、最新のイベントのみが送信されることになる.
+ * </p>
+ *
+ * @param <T> イベントの型
+ * @author NTT DOCOMO, INC.
+ */
+class EventCoalescer<T> {
+
+    /**
+     * イベントの送信先.
+     *
+     * @param <T> イベントの型
+     */
+    interface Sender<T> {
+        /**
+         * イベントを送信する.
+         *
+         * @param events 送信するイベントのリスト. 古い順に並ぶ. 空の場合は無い.
+         */
+        void send(List<T> events);
+    }
+
+    /** 送信時刻の管理に使用するスケジューラ. */
+    private final ScheduledExecutorService mScheduler;
+
+    /** 送信間隔. 単位はナノ秒. */
+    private final long mIntervalNanos;
+
+    /** 1回の送信でまとめるイベントの最大数. */
+    private final int mMaxBatchSize;
+
+    /** イベントの送信先. */
+    private final Sender<T> mSender;
+
+    /** 送信待ちのイベント. */
+    private final ArrayDeque<T> mPending = new ArrayDeque<>();
+
+    /** 送信待ちのイベントを送信するタスク. 予約されていない場合はnull. */
+    private ScheduledFuture<?> mFlushTask;
+
+    /** 前回イベントを送信した時刻. 単位はナノ秒. */
+    private long mLastSentTime;
+
+    /** 一度でもイベントを送信したかどうか. */
+    private boolean mSent;
+
+    /** キャンセルされたかどうか. */
+    private boolean mCancelled;
+
+    /** 保持しているイベントを送信するタスク. */
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * コンストラクタ.
+     *
+     * @param scheduler 送信時刻の管理に使用するスケジューラ
+     * @param intervalMillis 送信間隔. 単位はミリ秒.
+     * @param maxBatchSize 1回の送信でまとめるイベントの最大数
+     * @param sender イベントの送信先
+     */
+    EventCoalescer(final ScheduledExecutorService scheduler,
+                   final long intervalMillis,
+                   final int maxBatchSize,
+                   final Sender<T> sender) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("intervalMillis is negative.");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize is less than 1.");
+        }
+        mScheduler = scheduler;
+        mIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        mMaxBatchSize = maxBatchSize;
+        mSender = sender;
+    }
+
+    /**
+     * 送信間隔を取得する.
+     *
+     * @return 送信間隔. 単位はミリ秒.
+     */
+    long getInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(mIntervalNanos);
+    }
+
+    /**
+     * 1回の送信でまとめるイベントの最大数を取得する.
+     *
+     * @return イベントの最大数
+     */
+    int getMaxBatchSize() {
+        return mMaxBatchSize;
+    }
+
+    /**
+     * イベントを送信する.
+     * <p>
+     * 前回の送信から送信間隔が経過していない場合は、経過した時点で送信する.
+     * </p>
+     *
+     * @param event イベント
+     */
+    void offer(final T event) {
+        List<T> events;
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (mFlushTask == null && (!mSent || now - mLastSentTime >= mIntervalNanos)) {
+                mLastSentTime = now;
+                mSent = true;
+                events = new ArrayList<>(1);
+                events.add(event);
+            } else {
+                if (mPending.size() >= mMaxBatchSize) {
+                    mPending.poll();
+                }
+                mPending.add(event);
+                if (mFlushTask == null) {
+                    long delay = mIntervalNanos - (now - mLastSentTime);
+                    try {
+                        mFlushTask = mScheduler.schedule(mFlush, delay, TimeUnit.NANOSECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // スケジューラが停止済み
+                        mPending.clear();
+                    }
+                }
+                return;
+            }
+        }
+        mSender.send(events);
+    }
+
+    /**
+     * 保持しているイベントを送信する.
+     */
+    private void flush() {
+        List<T> events;
+        synchronized (this) {
+            mFlushTask = null;
+            if (mCancelled || mPending.isEmpty()) {
+                return;
+            }
+            mLastSentTime = System.nanoTime();
+            events = new ArrayList<>(mPending);
+            mPending.clear();
+        }
+        mSender.send(events);
+    }
+
+    /**
+     * 保持しているイベントを破棄し、以降のイベントを送信しないようにする.
+     */
+    synchronized void cancel() {
+        mCancelled = true;
+        mPending.clear();
+        if (mFlushTask != null) {
+            mFlushTask.cancel(false);
+            mFlushTask = null;
+        }
+    }
+}
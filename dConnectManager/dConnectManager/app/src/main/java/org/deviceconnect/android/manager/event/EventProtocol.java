@@ -23,6 +23,7 @@ import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * イベント登録手順.
@@ -35,6 +36,25 @@ public abstract class EventProtocol {
 
     private static final VersionName V110 = VersionName.parse("1.1.0");
 
+    /**
+     * イベントの送信間隔を指定するパラメータ名. 単位はミリ秒.
+     * <p>
+     * プロファイルによっては interval がプラグインのイベント発生間隔を指定するパラメータとして
+     * 定義されているため、Managerで処理するパラメータには別の名前を使用する.
+     * </p>
+     */
+    public static final String PARAM_EVENT_INTERVAL = "eventInterval";
+
+    /**
+     * 1秒あたりのイベントの最大送信数を指定するパラメータ名.
+     */
+    public static final String PARAM_EVENT_MAX_RATE = "eventMaxRate";
+
+    /**
+     * 送信間隔内に発生したイベントをまとめて送信するかどうかを指定するパラメータ名.
+     */
+    public static final String PARAM_EVENT_BATCH = "eventBatch";
+
     static EventProtocol getInstance(final DConnectMessageService context,
                                      final Intent request) {
         final String appType = request.getStringExtra(DConnectService.EXTRA_INNER_TYPE);
@@ -117,7 +137,8 @@ public abstract class EventProtocol {
         return false;
     }
 
-    boolean addSession(final EventSessionTable table, final Intent request, final DevicePlugin plugin) {
+    boolean addSession(final EventSessionTable table, final Intent request, final DevicePlugin plugin,
+                       final ScheduledExecutorService scheduler) {
         String accessToken = request.getStringExtra(DConnectMessage.EXTRA_ACCESS_TOKEN);
         if (accessToken == null) {
             DConnectProfile.setAccessToken(request, plugin.getPluginId());
@@ -129,6 +150,11 @@ public abstract class EventProtocol {
             return false;
         }
         EventSession session = createSession(request, serviceId, receiverId, plugin.getPluginId());
+        long interval = getEventInterval(request);
+        if (interval > 0) {
+            Boolean batch = DConnectProfile.parseBoolean(request, PARAM_EVENT_BATCH);
+            session.setEventInterval(scheduler, interval, batch != null && batch);
+        }
         table.add(session);
 
         if (plugin.getPluginSdkVersionName().compareTo(V100) == 0) {
@@ -137,6 +163,28 @@ public abstract class EventProtocol {
         return true;
     }
 
+    /**
+     * イベント登録リクエストからイベントの送信間隔を取得する.
+     * <p>
+     * {@link #PARAM_EVENT_INTERVAL} と {@link #PARAM_EVENT_MAX_RATE} の両方が指定された場合は、
+     * 長い方の間隔を使用する.
+     * </p>
+     * @param request イベント登録リクエスト
+     * @return 送信間隔. 単位はミリ秒. 指定されていない場合は0.
+     */
+    static long getEventInterval(final Intent request) {
+        long interval = 0;
+        Long eventInterval = DConnectProfile.parseLong(request, PARAM_EVENT_INTERVAL);
+        if (eventInterval != null && eventInterval > 0) {
+            interval = eventInterval;
+        }
+        Double maxRate = DConnectProfile.parseDouble(request, PARAM_EVENT_MAX_RATE);
+        if (maxRate != null && maxRate > 0) {
+            interval = Math.max(interval, (long) Math.ceil(1000 / maxRate));
+        }
+        return interval;
+    }
+
     public static String createSessionKeyForPlugin(final EventSession session) {
         StringBuilder result = new StringBuilder();
         result.append(session.getReceiverId())
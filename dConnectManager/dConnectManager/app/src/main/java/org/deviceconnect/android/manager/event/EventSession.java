@@ -9,8 +9,12 @@ package org.deviceconnect.android.manager.event;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.Bundle;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Logger;
 
 /**
  * イベントセッション.
@@ -19,6 +23,16 @@ import java.io.IOException;
  */
 abstract class EventSession {
 
+    /**
+     * 間隔内に受信したイベントをまとめて送信する場合に、各イベントを格納するパラメータ名.
+     */
+    static final String EXTRA_EVENTS = "events";
+
+    /**
+     * 1回の送信でまとめるイベントの最大数.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
     private Context mContext;
     private String mReceiverId;
     private String mServiceId;
@@ -27,6 +41,7 @@ abstract class EventSession {
     private String mInterfaceName;
     private String mAttributeName;
     private String mAccessToken;
+    private EventCoalescer<Intent> mCoalescer;
 
     public Context getContext() {
         return mContext;
@@ -92,6 +107,91 @@ abstract class EventSession {
         mAccessToken = accessToken;
     }
 
+    /**
+     * イベントの送信間隔を制限する.
+     * <p>
+     * batch に true を指定した場合は、間隔内に受信したイベントを {@link #EXTRA_EVENTS} にまとめて送信する.
+     * false の場合は、最新のイベントのみを送信する.
+     * </p>
+     * @param scheduler 送信時刻の管理に使用するスケジューラ
+     * @param intervalMillis 送信間隔. 単位はミリ秒.
+     * @param batch 間隔内に受信したイベントをまとめて送信する場合はtrue、それ以外はfalse
+     */
+    void setEventInterval(final ScheduledExecutorService scheduler, final long intervalMillis, final boolean batch) {
+        if (mCoalescer != null) {
+            mCoalescer.cancel();
+        }
+        mCoalescer = new EventCoalescer<>(scheduler, intervalMillis, batch ? MAX_BATCH_SIZE : 1,
+            new EventCoalescer.Sender<Intent>() {
+                @Override
+                public void send(final List<Intent> events) {
+                    try {
+                        sendEvent(mergeEvents(events));
+                    } catch (IOException e) {
+                        Logger.getLogger("dconnect.manager").severe("Failed to send event.");
+                    }
+                }
+            });
+    }
+
+    /**
+     * イベントの送信間隔を取得する.
+     * @return 送信間隔. 単位はミリ秒. 制限していない場合は0.
+     */
+    long getEventInterval() {
+        return mCoalescer != null ? mCoalescer.getInterval() : 0;
+    }
+
+    /**
+     * プラグインから受信したイベントを送信する.
+     * <p>
+     * 送信間隔が指定されている場合は、その間隔で送信する.
+     * </p>
+     * @param event イベント
+     * @throws IOException イベントの送信に失敗した場合
+     */
+    void postEvent(final Intent event) throws IOException {
+        EventCoalescer<Intent> coalescer = mCoalescer;
+        if (coalescer != null) {
+            coalescer.offer(event);
+        } else {
+            sendEvent(event);
+        }
+    }
+
+    /**
+     * 送信待ちのイベントを破棄する.
+     * <p>
+     * セッションの削除時に呼び出す.
+     * </p>
+     */
+    void release() {
+        if (mCoalescer != null) {
+            mCoalescer.cancel();
+        }
+    }
+
+    /**
+     * 複数のイベントを1つのイベントにまとめる.
+     * <p>
+     * 最新のイベントに、すべてのイベントのパラメータを {@link #EXTRA_EVENTS} として格納する.
+     * </p>
+     * @param events イベントのリスト. 古い順に並ぶ.
+     * @return まとめたイベント
+     */
+    private Intent mergeEvents(final List<Intent> events) {
+        Intent latest = events.get(events.size() - 1);
+        if (mCoalescer.getMaxBatchSize() == 1) {
+            return latest;
+        }
+        Bundle[] samples = new Bundle[events.size()];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = events.get(i).getExtras();
+        }
+        latest.putExtra(EXTRA_EVENTS, samples);
+        return latest;
+    }
+
     public abstract void sendEvent(final Intent event) throws IOException;
 
 }
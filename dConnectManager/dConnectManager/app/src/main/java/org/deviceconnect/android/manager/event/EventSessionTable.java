@@ -39,6 +39,7 @@ public class EventSessionTable {
         synchronized (mEventSessions) {
             mEventSessions.remove(session);
         }
+        session.release();
     }
 
     void updateAccessTokenForPlugin(final String pluginId, final String newAccessToken) {
@@ -57,6 +58,7 @@ public class EventSessionTable {
                 EventSession session = it.next();
                 if (session.getPluginId().equals(pluginId)) {
                     it.remove();
+                    session.release();
                 }
             }
         }
@@ -65,8 +67,10 @@ public class EventSessionTable {
     void removeForReceiverId(final String receiverId) {
         synchronized (mEventSessions) {
             for (Iterator<EventSession> it = mEventSessions.iterator(); it.hasNext(); ) {
-                if (it.next().getReceiverId().equals(receiverId)) {
+                EventSession session = it.next();
+                if (session.getReceiverId().equals(receiverId)) {
                     it.remove();
+                    session.release();
                 }
             }
         }
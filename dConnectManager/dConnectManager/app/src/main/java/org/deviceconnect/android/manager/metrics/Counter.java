@@ -0,0 +1,55 @@
+/*
+ Counter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 増減可能なカウンター.
+ *
+ * 単調増加のカウンターとしても、実行中のリクエスト数のような増減する値としても使用する.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class Counter {
+
+    /** 現在の値. */
+    private final AtomicLong mValue = new AtomicLong();
+
+    /**
+     * 値を1増やす.
+     */
+    public void increment() {
+        mValue.incrementAndGet();
+    }
+
+    /**
+     * 値を1減らす.
+     */
+    public void decrement() {
+        mValue.decrementAndGet();
+    }
+
+    /**
+     * 値を指定された量だけ増やす.
+     *
+     * @param delta 増分
+     */
+    public void add(final long delta) {
+        mValue.addAndGet(delta);
+    }
+
+    /**
+     * 現在の値を取得する.
+     *
+     * @return 現在の値
+     */
+    public long getValue() {
+        return mValue.get();
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ Gauge.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.metrics;
+
+
+/**
+ * 読み出し時に値を計算する計測値.
+ *
+ * スレッドプールの待ち行列の長さなど、他のオブジェクトが保持している値を公開するために使用する.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public interface Gauge {
+
+    /**
+     * 現在の値を取得する.
+     *
+     * @return 現在の値
+     */
+    long getValue();
+}
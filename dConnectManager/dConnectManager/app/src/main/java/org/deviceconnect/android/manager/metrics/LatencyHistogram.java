@@ -0,0 +1,193 @@
+/*
+ LatencyHistogram.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 応答時間の分布を記録するヒストグラム.
+ *
+ * <p>
+ * HdrHistogram と同様に、2のべき乗ごとの区間をさらに {@value #SUB_BUCKET_COUNT} 個に等分した
+ * 対数線形のバケットに値を記録する. そのため、記録した値の相対誤差は約3%以内に収まる.
+ * </p>
+ * <p>
+ * 記録はロックを使用せずに行うため、複数スレッドから同時に呼び出すことができる.
+ * 値の単位はマイクロ秒とする.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class LatencyHistogram {
+
+    /** 2のべき乗ごとの区間を等分する数のビット数. */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** 2のべき乗ごとの区間を等分する数. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** 記録できる最大値のビット数. 2^40 マイクロ秒は約12日. */
+    private static final int MAX_VALUE_BITS = 40;
+
+    /** 記録できる最大値. これより大きい値は最大値として記録する. */
+    static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    /** バケットの数. */
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    /** バケットごとの記録数. */
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+
+    /** 記録数の合計. */
+    private final AtomicLong mTotalCount = new AtomicLong();
+
+    /** 記録した値の合計. */
+    private final AtomicLong mSum = new AtomicLong();
+
+    /** 記録した値の最大値. */
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * 値を記録する.
+     *
+     * @param value 値. 単位はマイクロ秒.
+     */
+    public void record(final long value) {
+        long v = value < 0 ? 0 : Math.min(value, MAX_VALUE);
+        mCounts.incrementAndGet(indexOf(v));
+        mTotalCount.incrementAndGet();
+        mSum.addAndGet(v);
+        long max;
+        do {
+            max = mMax.get();
+            if (v <= max) {
+                break;
+            }
+        } while (!mMax.compareAndSet(max, v));
+    }
+
+    /**
+     * 記録数を取得する.
+     *
+     * @return 記録数
+     */
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    /**
+     * 記録した値の合計を取得する.
+     *
+     * @return 値の合計. 単位はマイクロ秒.
+     */
+    public long getSum() {
+        return mSum.get();
+    }
+
+    /**
+     * 記録した値の最大値を取得する.
+     *
+     * @return 最大値. 単位はマイクロ秒.
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * 記録した値の平均値を取得する.
+     *
+     * @return 平均値. 単位はマイクロ秒. 記録がない場合は0
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * 指定されたパーセンタイルの値を取得する.
+     *
+     * 該当するバケットに含まれる最大の値を返す. ただし、記録した最大値を超えることはない.
+     *
+     * @param percentile パーセンタイル. 0から100の範囲で指定する.
+     * @return パーセンタイルの値. 単位はマイクロ秒. 記録がない場合は0
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile is out of range: " + percentile);
+        }
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += mCounts.get(i);
+            if (accumulated >= target) {
+                return Math.min(highestValueAt(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 記録をすべて破棄する.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * 値を格納するバケットのインデックスを取得する.
+     *
+     * @param value 値
+     * @return バケットのインデックス
+     */
+    static int indexOf(final long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * バケットに含まれる最小の値を取得する.
+     *
+     * @param index バケットのインデックス
+     * @return 最小の値
+     */
+    static long lowestValueAt(final int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return mantissa << shift;
+    }
+
+    /**
+     * バケットに含まれる最大の値を取得する.
+     *
+     * @param index バケットのインデックス
+     * @return 最大の値
+     */
+    static long highestValueAt(final int index) {
+        if (index + 1 >= BUCKET_COUNT) {
+            return MAX_VALUE;
+        }
+        return lowestValueAt(index + 1) - 1;
+    }
+}
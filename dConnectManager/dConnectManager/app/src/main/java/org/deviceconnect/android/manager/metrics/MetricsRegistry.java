@@ -0,0 +1,446 @@
+/*
+ MetricsRegistry.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Device Connect Managerの計測値を管理するクラス.
+ *
+ * <p>
+ * 計測値は名前とラベルの組で識別する. 同じ名前の計測値は1つの {@link MetricFamily} にまとめられ、
+ * ラベルの値ごとに個別の計測値を持つ.
+ * </p>
+ * <p>
+ * 計測値の取得と記録はロックを使用せずに行うため、リクエスト処理のスレッドから直接呼び出すことができる.
+ * また、計測値はメモリ上にのみ保持し、永続化は行わない.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class MetricsRegistry {
+
+    /** プラグインへのリクエストの応答時間. */
+    public static final String PLUGIN_REQUEST_LATENCY = "dconnect_plugin_request_latency_seconds";
+
+    /** プラグインへのリクエストのタイムアウト回数. */
+    public static final String PLUGIN_REQUEST_TIMEOUTS = "dconnect_plugin_request_timeouts_total";
+
+    /** プラグインへのリクエストのエラー回数. */
+    public static final String PLUGIN_REQUEST_ERRORS = "dconnect_plugin_request_errors_total";
+
+    /** プラグインで処理中のリクエスト数. */
+    public static final String PLUGIN_REQUESTS_IN_FLIGHT = "dconnect_plugin_requests_in_flight";
+
+    /** プラグインから受信したイベント. */
+    public static final String EVENTS = "dconnect_events";
+
+    /** スレッドプールの待ち行列の長さ. */
+    public static final String THREAD_POOL_QUEUE_DEPTH = "dconnect_thread_pool_queue_depth";
+
+    /** ラベル名: プラグイン. */
+    public static final String LABEL_PLUGIN = "plugin";
+
+    /** ラベル名: プロファイル. */
+    public static final String LABEL_PROFILE = "profile";
+
+    /** ラベル名: インターフェース. */
+    public static final String LABEL_INTERFACE = "interface";
+
+    /** ラベル名: アトリビュート. */
+    public static final String LABEL_ATTRIBUTE = "attribute";
+
+    /** ラベル名: API. */
+    public static final String LABEL_API = "api";
+
+    /** ラベル名: エラーの原因. */
+    public static final String LABEL_REASON = "reason";
+
+    /** ラベル名: スレッドプール. */
+    public static final String LABEL_POOL = "pool";
+
+    /** Prometheus形式で出力するパーセンタイル. */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /** マイクロ秒を秒に換算する係数. */
+    private static final double MICROS_PER_SECOND = 1000 * 1000;
+
+    /** 計測値の一覧. キーは計測値の名前. */
+    private final ConcurrentMap<String, MetricFamily> mFamilies = new ConcurrentHashMap<>();
+
+    /**
+     * 応答時間のヒストグラムを取得する.
+     *
+     * 存在しない場合は新規に作成する.
+     *
+     * @param name 計測値の名前
+     * @param help 計測値の説明
+     * @param labelNames ラベル名の一覧
+     * @param labelValues ラベルの値の一覧
+     * @return ヒストグラム
+     */
+    public LatencyHistogram histogram(final String name, final String help,
+                                      final String[] labelNames, final String... labelValues) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY, labelNames).get(labelValues);
+    }
+
+    /**
+     * カウンターを取得する.
+     *
+     * 存在しない場合は新規に作成する.
+     *
+     * @param name 計測値の名前
+     * @param help 計測値の説明
+     * @param labelNames ラベル名の一覧
+     * @param labelValues ラベルの値の一覧
+     * @return カウンター
+     */
+    public Counter counter(final String name, final String help,
+                           final String[] labelNames, final String... labelValues) {
+        return (Counter) family(name, help, Type.COUNTER, labelNames).get(labelValues);
+    }
+
+    /**
+     * 増減する値を保持するカウンターを取得する.
+     *
+     * 存在しない場合は新規に作成する.
+     *
+     * @param name 計測値の名前
+     * @param help 計測値の説明
+     * @param labelNames ラベル名の一覧
+     * @param labelValues ラベルの値の一覧
+     * @return カウンター
+     */
+    public Counter upDownCounter(final String name, final String help,
+                                 final String[] labelNames, final String... labelValues) {
+        return (Counter) family(name, help, Type.GAUGE, labelNames).get(labelValues);
+    }
+
+    /**
+     * 発生頻度の計測器を取得する.
+     *
+     * 存在しない場合は新規に作成する.
+     *
+     * @param name 計測値の名前
+     * @param help 計測値の説明
+     * @param labelNames ラベル名の一覧
+     * @param labelValues ラベルの値の一覧
+     * @return 発生頻度の計測器
+     */
+    public RateMeter meter(final String name, final String help,
+                           final String[] labelNames, final String... labelValues) {
+        return (RateMeter) family(name, help, Type.METER, labelNames).get(labelValues);
+    }
+
+    /**
+     * 読み出し時に値を計算する計測値を登録する.
+     *
+     * 同じラベルの値で登録済みの場合は上書きする.
+     *
+     * @param name 計測値の名前
+     * @param help 計測値の説明
+     * @param gauge 計測値
+     * @param labelNames ラベル名の一覧
+     * @param labelValues ラベルの値の一覧
+     */
+    public void registerGauge(final String name, final String help, final Gauge gauge,
+                              final String[] labelNames, final String... labelValues) {
+        family(name, help, Type.GAUGE, labelNames).put(labelValues, gauge);
+    }
+
+    /**
+     * 指定されたラベルの値を持つ計測値をすべて削除する.
+     *
+     * プラグインがアンインストールされた場合などに使用する.
+     *
+     * @param labelName ラベル名
+     * @param labelValue ラベルの値
+     */
+    public void removeByLabel(final String labelName, final String labelValue) {
+        for (MetricFamily family : mFamilies.values()) {
+            int index = Arrays.asList(family.mLabelNames).indexOf(labelName);
+            if (index < 0) {
+                continue;
+            }
+            for (List<String> key : family.mMetrics.keySet()) {
+                if (labelValue.equals(key.get(index))) {
+                    family.mMetrics.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 計測値の一覧を取得する.
+     *
+     * @return 計測値の一覧. 名前の昇順に並べる.
+     */
+    public List<MetricFamily> getFamilies() {
+        List<MetricFamily> families = new ArrayList<>(mFamilies.values());
+        Collections.sort(families, new Comparator<MetricFamily>() {
+            @Override
+            public int compare(final MetricFamily f1, final MetricFamily f2) {
+                return f1.mName.compareTo(f2.mName);
+            }
+        });
+        return families;
+    }
+
+    /**
+     * 計測値をPrometheusのテキスト形式で出力する.
+     *
+     * @return Prometheusのテキスト形式 (バージョン 0.0.4) の文字列
+     */
+    public String toPrometheusText() {
+        StringBuilder sb = new StringBuilder();
+        for (MetricFamily family : getFamilies()) {
+            switch (family.mType) {
+                case SUMMARY:
+                    writeHeader(sb, family.mName, family.mHelp, "summary");
+                    for (Map.Entry<List<String>, Object> e : family.mMetrics.entrySet()) {
+                        LatencyHistogram h = (LatencyHistogram) e.getValue();
+                        for (double q : QUANTILES) {
+                            writeSample(sb, family.mName, family.mLabelNames, e.getKey(),
+                                "quantile", String.valueOf(q), toSeconds(h.getValueAtPercentile(q * 100)));
+                        }
+                        writeSample(sb, family.mName + "_sum", family.mLabelNames, e.getKey(),
+                            null, null, toSeconds(h.getSum()));
+                        writeSample(sb, family.mName + "_count", family.mLabelNames, e.getKey(),
+                            null, null, h.getCount());
+                    }
+                    break;
+                case METER:
+                    writeHeader(sb, family.mName + "_total", family.mHelp, "counter");
+                    for (Map.Entry<List<String>, Object> e : family.mMetrics.entrySet()) {
+                        writeSample(sb, family.mName + "_total", family.mLabelNames, e.getKey(),
+                            null, null, ((RateMeter) e.getValue()).getCount());
+                    }
+                    writeHeader(sb, family.mName + "_per_second", family.mHelp + " (1 minute moving average)", "gauge");
+                    for (Map.Entry<List<String>, Object> e : family.mMetrics.entrySet()) {
+                        writeSample(sb, family.mName + "_per_second", family.mLabelNames, e.getKey(),
+                            null, null, ((RateMeter) e.getValue()).getRate());
+                    }
+                    break;
+                default:
+                    writeHeader(sb, family.mName, family.mHelp, family.mType == Type.COUNTER ? "counter" : "gauge");
+                    for (Map.Entry<List<String>, Object> e : family.mMetrics.entrySet()) {
+                        writeSample(sb, family.mName, family.mLabelNames, e.getKey(),
+                            null, null, family.getValue(e.getValue()));
+                    }
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private MetricFamily family(final String name, final String help,
+                                final Type type, final String[] labelNames) {
+        MetricFamily family = mFamilies.get(name);
+        if (family == null) {
+            MetricFamily newFamily = new MetricFamily(name, help, type, labelNames);
+            family = mFamilies.putIfAbsent(name, newFamily);
+            if (family == null) {
+                family = newFamily;
+            }
+        }
+        if (family.mType != type || family.mLabelNames.length != labelNames.length) {
+            throw new IllegalArgumentException("metric " + name + " is already registered with another type.");
+        }
+        return family;
+    }
+
+    private static double toSeconds(final long micros) {
+        return micros / MICROS_PER_SECOND;
+    }
+
+    private static void writeHeader(final StringBuilder sb, final String name,
+                                     final String help, final String type) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(final StringBuilder sb, final String name,
+                                    final String[] labelNames, final List<String> labelValues,
+                                    final String extraName, final String extraValue,
+                                    final double value) {
+        sb.append(name);
+        if (labelNames.length > 0 || extraName != null) {
+            sb.append('{');
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendLabel(sb, labelNames[i], labelValues.get(i));
+            }
+            if (extraName != null) {
+                if (labelNames.length > 0) {
+                    sb.append(',');
+                }
+                appendLabel(sb, extraName, extraValue);
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            sb.append((long) value);
+        } else {
+            sb.append(String.format(Locale.US, "%.6f", value));
+        }
+        sb.append('\n');
+    }
+
+    private static void appendLabel(final StringBuilder sb, final String name, final String value) {
+        sb.append(name).append("=\"");
+        String v = value == null ? "" : value;
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 計測値の種類.
+     */
+    public enum Type {
+        /** 単調増加するカウンター. */
+        COUNTER,
+        /** 増減する値. */
+        GAUGE,
+        /** 応答時間の分布. */
+        SUMMARY,
+        /** 発生頻度. */
+        METER
+    }
+
+    /**
+     * 同じ名前を持つ計測値の集合.
+     */
+    public static class MetricFamily {
+
+        /** 計測値の名前. */
+        private final String mName;
+
+        /** 計測値の説明. */
+        private final String mHelp;
+
+        /** 計測値の種類. */
+        private final Type mType;
+
+        /** ラベル名の一覧. */
+        private final String[] mLabelNames;
+
+        /** ラベルの値ごとの計測値. */
+        private final ConcurrentMap<List<String>, Object> mMetrics = new ConcurrentHashMap<>();
+
+        MetricFamily(final String name, final String help, final Type type, final String[] labelNames) {
+            mName = name;
+            mHelp = help;
+            mType = type;
+            mLabelNames = labelNames.clone();
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public String getHelp() {
+            return mHelp;
+        }
+
+        public Type getType() {
+            return mType;
+        }
+
+        public String[] getLabelNames() {
+            return mLabelNames.clone();
+        }
+
+        /**
+         * ラベルの値ごとの計測値を取得する.
+         *
+         * 値の型は、{@link Type} に応じて {@link Counter}、{@link Gauge}、{@link LatencyHistogram}
+         * または {@link RateMeter} となる.
+         *
+         * @return ラベルの値ごとの計測値
+         */
+        public Map<List<String>, Object> getMetrics() {
+            return Collections.unmodifiableMap(mMetrics);
+        }
+
+        /**
+         * カウンターまたは増減する値の現在値を取得する.
+         *
+         * @param metric 計測値
+         * @return 現在値
+         */
+        public long getValue(final Object metric) {
+            if (metric instanceof Counter) {
+                return ((Counter) metric).getValue();
+            } else if (metric instanceof Gauge) {
+                return ((Gauge) metric).getValue();
+            }
+            throw new IllegalArgumentException("metric is not a counter or gauge.");
+        }
+
+        private Object get(final String[] labelValues) {
+            List<String> key = toKey(labelValues);
+            Object metric = mMetrics.get(key);
+            if (metric == null) {
+                Object newMetric = create();
+                metric = mMetrics.putIfAbsent(key, newMetric);
+                if (metric == null) {
+                    metric = newMetric;
+                }
+            }
+            return metric;
+        }
+
+        private void put(final String[] labelValues, final Object metric) {
+            mMetrics.put(toKey(labelValues), metric);
+        }
+
+        private List<String> toKey(final String[] labelValues) {
+            if (labelValues.length != mLabelNames.length) {
+                throw new IllegalArgumentException("the number of label values is different: " + mName);
+            }
+            return Collections.unmodifiableList(Arrays.asList(labelValues.clone()));
+        }
+
+        private Object create() {
+            switch (mType) {
+                case SUMMARY:
+                    return new LatencyHistogram();
+                case METER:
+                    return new RateMeter();
+                default:
+                    return new Counter();
+            }
+        }
+    }
+}
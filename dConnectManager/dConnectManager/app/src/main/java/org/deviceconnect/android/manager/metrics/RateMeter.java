@@ -0,0 +1,145 @@
+/*
+ RateMeter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.metrics;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 単位時間当たりの発生頻度を計測するクラス.
+ *
+ * <p>
+ * 直近1分間の指数移動平均で発生頻度を計算する. 平均値の更新は {@value #TICK_INTERVAL_SEC} 秒ごとに、
+ * {@link #mark()} または {@link #getRate()} の呼び出し時にまとめて行うため、タイマーのスレッドは使用しない.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class RateMeter {
+
+    /** 平均値を更新する間隔. 単位は秒. */
+    private static final int TICK_INTERVAL_SEC = 5;
+
+    /** 平均値を更新する間隔. 単位はナノ秒. */
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(TICK_INTERVAL_SEC);
+
+    /** 1分間の指数移動平均の係数. */
+    private static final double ALPHA = 1 - Math.exp(-TICK_INTERVAL_SEC / 60.0);
+
+    /** 時刻の取得元. */
+    private final Clock mClock;
+
+    /** 発生回数の合計. */
+    private final AtomicLong mCount = new AtomicLong();
+
+    /** 前回の平均値の更新以降の発生回数. */
+    private final AtomicLong mUncounted = new AtomicLong();
+
+    /** 前回の平均値の更新時刻. */
+    private final AtomicLong mLastTick;
+
+    /** 1秒当たりの発生頻度. */
+    private volatile double mRate;
+
+    /** 平均値の初期化フラグ. */
+    private volatile boolean mInitialized;
+
+    /**
+     * コンストラクタ.
+     */
+    public RateMeter() {
+        this(Clock.SYSTEM);
+    }
+
+    /**
+     * コンストラクタ.
+     *
+     * @param clock 時刻の取得元
+     */
+    RateMeter(final Clock clock) {
+        mClock = clock;
+        mLastTick = new AtomicLong(clock.nanoTime());
+    }
+
+    /**
+     * 1回の発生を記録する.
+     */
+    public void mark() {
+        tickIfNecessary();
+        mCount.incrementAndGet();
+        mUncounted.incrementAndGet();
+    }
+
+    /**
+     * 発生回数の合計を取得する.
+     *
+     * @return 発生回数の合計
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * 直近1分間の1秒当たりの発生頻度を取得する.
+     *
+     * @return 1秒当たりの発生頻度
+     */
+    public double getRate() {
+        tickIfNecessary();
+        return mRate;
+    }
+
+    private void tickIfNecessary() {
+        long oldTick = mLastTick.get();
+        long now = mClock.nanoTime();
+        long age = now - oldTick;
+        if (age < TICK_INTERVAL) {
+            return;
+        }
+        long newTick = now - age % TICK_INTERVAL;
+        if (!mLastTick.compareAndSet(oldTick, newTick)) {
+            // 他のスレッドが更新した
+            return;
+        }
+        long ticks = age / TICK_INTERVAL;
+        for (long i = 0; i < ticks; i++) {
+            tick();
+        }
+    }
+
+    private void tick() {
+        double instantRate = (double) mUncounted.getAndSet(0) / TICK_INTERVAL_SEC;
+        if (mInitialized) {
+            mRate += ALPHA * (instantRate - mRate);
+        } else {
+            mRate = instantRate;
+            mInitialized = true;
+        }
+    }
+
+    /**
+     * 時刻の取得元.
+     */
+    interface Clock {
+
+        /** システムの時刻. */
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+        };
+
+        /**
+         * 現在時刻を取得する.
+         *
+         * @return 現在時刻. 単位はナノ秒.
+         */
+        long nanoTime();
+    }
+}
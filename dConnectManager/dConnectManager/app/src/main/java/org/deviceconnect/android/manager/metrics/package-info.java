@@ -0,0 +1,10 @@
+/*
+ org.deviceconnect.android.manager.metrics
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+/**
+ * Device Connect Managerの性能計測を行うクラス群.
+ */
+package org.deviceconnect.android.manager.metrics;
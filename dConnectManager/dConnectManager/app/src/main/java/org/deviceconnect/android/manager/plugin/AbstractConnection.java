@@ -37,7 +37,7 @@ abstract class AbstractConnection implements Connection {
     private final List<ConnectionStateListener> mConnectionStateListeners = new ArrayList<>();
 
     /** 接続状態. */
-    private ConnectionState mState = ConnectionState.DISCONNECTED;
+    private volatile ConnectionState mState = ConnectionState.DISCONNECTED;
 
     /**
      * 連携停止の原因となったエラー.
@@ -16,11 +16,8 @@ import android.os.RemoteException;
 import org.deviceconnect.android.IDConnectCallback;
 import org.deviceconnect.android.IDConnectPlugin;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -30,6 +27,9 @@ import java.util.logging.Logger;
  */
 public class BinderConnection extends AbstractConnection {
 
+    /** バインド完了を待つ時間のデフォルト値. 単位はミリ秒. */
+    private static final long DEFAULT_CONNECTING_TIMEOUT = 2000;
+
     private final ComponentName mPluginName;
 
     private final IDConnectCallback mCallback;
@@ -38,9 +38,8 @@ public class BinderConnection extends AbstractConnection {
 
     private IDConnectPlugin mPlugin;
 
-    private Future<ConnectingResult> mRunningTask;
-
-    private ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    /** バインド完了を待つ時間. 単位はミリ秒. */
+    private long mConnectingTimeout = DEFAULT_CONNECTING_TIMEOUT;
 
     private Logger mLogger = Logger.getLogger("dconnect.manager");
 
@@ -58,42 +57,92 @@ public class BinderConnection extends AbstractConnection {
         return ConnectionType.BINDER;
     }
 
+    /**
+     * バインド完了を待つ時間を設定する.
+     * @param timeout タイムアウト時間. 単位はミリ秒.
+     */
+    public void setConnectingTimeout(final long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive.");
+        }
+        mConnectingTimeout = timeout;
+    }
+
+    /**
+     * プラグインとの接続を確立する.
+     *
+     * バインド完了の待機中はロックを保持しないため、待機中であってもメインスレッドへの
+     * 接続状態の通知や {@link #disconnect()} の呼び出しはブロックされない.
+     *
+     * @throws ConnectingException 接続に失敗した場合
+     */
     @Override
-    public synchronized void connect() throws ConnectingException {
+    public void connect() throws ConnectingException {
         mLogger.info("BinderConnection.connect: " + mPluginName.getPackageName());
-        if (!(ConnectionState.DISCONNECTED == getState() || ConnectionState.SUSPENDED == getState())) {
-            return;
+
+        final ConnectingResult result = new ConnectingResult();
+        final ServiceConnection serviceConnection = createServiceConnection(result);
+        synchronized (this) {
+            if (!(ConnectionState.DISCONNECTED == getState() || ConnectionState.SUSPENDED == getState())) {
+                return;
+            }
+            // 前回の接続でバインドが残っている場合は解除しておく
+            if (mServiceConnection != null) {
+                unbindQuietly(mServiceConnection);
+                mServiceConnection = null;
+                mPlugin = null;
+            }
+            setConnectingState();
         }
-        setConnectingState();
 
-        ConnectingResult result;
+        Intent intent = new Intent();
+        intent.setComponent(mPluginName);
+        boolean canBind;
         try {
-            mRunningTask = mExecutor.submit(new ConnectingTask());
-            result = mRunningTask.get();
-            mRunningTask = null;
+            canBind = mContext.bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
+        } catch (SecurityException e) {
+            canBind = false;
+        }
+        if (!canBind) {
+            synchronized (this) {
+                setSuspendedState(ConnectionError.NOT_PERMITTED);
+            }
+            throw new ConnectingException("Failed to bind with plugin: " + mPluginName);
+        }
+
+        boolean isComplete;
+        try {
+            isComplete = result.mLatch.await(mConnectingTimeout, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
-            setSuspendedState(ConnectionError.CANCELED);
+            unbindQuietly(serviceConnection);
+            synchronized (this) {
+                setSuspendedState(ConnectionError.CANCELED);
+            }
             throw new ConnectingException("Connection procedure was canceled.");
-        } catch (ExecutionException e) {
-            setSuspendedState(ConnectionError.INTERNAL_ERROR);
-            throw new ConnectingException(e);
         }
 
-        if (result.mError == null) {
+        synchronized (this) {
+            if (ConnectionState.CONNECTING != getState()) {
+                // 待機中に切断された
+                unbindQuietly(serviceConnection);
+                throw new ConnectingException("Connection procedure was canceled.");
+            }
+            if (!isComplete || result.mError != null) {
+                unbindQuietly(serviceConnection);
+                setSuspendedState(isComplete ? result.mError : ConnectionError.NOT_RESPONDED);
+                throw new ConnectingException("Failed to bind with plugin: " + mPluginName);
+            }
             mPlugin = result.mPlugin;
-            mServiceConnection = result.mServiceConnection;
+            mServiceConnection = serviceConnection;
             setConnectedState();
-        } else {
-            setSuspendedState(result.mError);
-            throw new ConnectingException("Failed to bind with plugin: " + mPluginName);
         }
     }
 
     @Override
     public void disconnect() {
         synchronized (this) {
-            if (ConnectionState.CONNECTED == getState()) {
-                mContext.unbindService(mServiceConnection);
+            if (mServiceConnection != null) {
+                unbindQuietly(mServiceConnection);
                 mServiceConnection = null;
                 mPlugin = null;
             }
@@ -104,6 +153,7 @@ public class BinderConnection extends AbstractConnection {
     @Override
     public void send(final Intent message) throws MessagingException {
         mLogger.info("BinderConnection.send: sending: target = " + mPluginName.getPackageName());
+        IDConnectPlugin plugin;
         synchronized (this) {
             if (ConnectionState.SUSPENDED == getState()) {
                 throw new MessagingException(MessagingException.Reason.CONNECTION_SUSPENDED);
@@ -111,77 +161,83 @@ public class BinderConnection extends AbstractConnection {
             if (ConnectionState.CONNECTED != getState()) {
                 throw new MessagingException(MessagingException.Reason.NOT_CONNECTED);
             }
+            plugin = mPlugin;
         }
         try {
-            mPlugin.sendMessage(message);
+            plugin.sendMessage(message);
             mLogger.info("BinderConnection.send: sent: target = " + mPluginName.getPackageName());
         } catch (RemoteException e) {
             throw new MessagingException(e, MessagingException.Reason.NOT_CONNECTED);
         }
     }
 
-    private class ConnectingTask implements Callable<ConnectingResult> {
-
-        @Override
-        public ConnectingResult call() throws Exception {
-            mLogger.info("ConnectingTask.call: " + mPluginName);
-
-            final Object lockObj = new Object();
-            final ConnectingResult result = new ConnectingResult();
-
-            Intent intent = new Intent();
-            intent.setComponent(mPluginName);
-            final ServiceConnection serviceConnection = new ServiceConnection() {
-                @Override
-                public void onServiceConnected(final ComponentName componentName, final IBinder binder) {
-                    mLogger.info("onServiceConnected: componentName = " + componentName + ", binder = " + binder);
-                    try {
-                        IDConnectPlugin plugin = IDConnectPlugin.Stub.asInterface(binder);
-                        plugin.registerCallback(mCallback);
-
-                        synchronized (lockObj) {
-                            result.mIsComplete = true;
-                            result.mPlugin = plugin;
-                            result.mServiceConnection = this;
-                            lockObj.notifyAll();
-                        }
-
-                    } catch (RemoteException e) {
-                        e.printStackTrace(); // TODO エラーハンドリング
+    @Override
+    public boolean ping() {
+        IDConnectPlugin plugin;
+        synchronized (this) {
+            if (ConnectionState.CONNECTED != getState()) {
+                return false;
+            }
+            plugin = mPlugin;
+        }
+        return plugin != null && plugin.asBinder().pingBinder();
+    }
+
+    private void unbindQuietly(final ServiceConnection serviceConnection) {
+        try {
+            mContext.unbindService(serviceConnection);
+        } catch (IllegalArgumentException e) {
+            // バインドされていない場合は無視する
+        }
+    }
+
+    private ServiceConnection createServiceConnection(final ConnectingResult result) {
+        return new ServiceConnection() {
+            @Override
+            public void onServiceConnected(final ComponentName componentName, final IBinder binder) {
+                mLogger.info("onServiceConnected: componentName = " + componentName + ", binder = " + binder);
+
+                IDConnectPlugin plugin = IDConnectPlugin.Stub.asInterface(binder);
+                ConnectionError error = null;
+                try {
+                    plugin.registerCallback(mCallback);
+                } catch (RemoteException e) {
+                    mLogger.warning("Failed to register callback: " + componentName);
+                    error = ConnectionError.INTERNAL_ERROR;
+                }
+
+                if (result.mLatch.getCount() > 0) {
+                    result.mPlugin = plugin;
+                    result.mError = error;
+                    result.mLatch.countDown();
+                    return;
+                }
+
+                // プラグインのプロセスが再起動されて、OSによって再接続された場合
+                synchronized (BinderConnection.this) {
+                    if (mServiceConnection == this && ConnectionState.SUSPENDED == getState() && error == null) {
+                        mPlugin = plugin;
+                        setConnectedState();
                     }
                 }
+            }
 
-                @Override
-                public void onServiceDisconnected(final ComponentName componentName) {
-                    mLogger.info("onServiceDisconnected: componentName = " + componentName);
-                    synchronized (BinderConnection.this) {
-                        mServiceConnection = null;
+            @Override
+            public void onServiceDisconnected(final ComponentName componentName) {
+                mLogger.info("onServiceDisconnected: componentName = " + componentName);
+                synchronized (BinderConnection.this) {
+                    if (mServiceConnection == this) {
                         mPlugin = null;
                         setSuspendedState(ConnectionError.TERMINATED);
                     }
                 }
-            };
-            boolean canBind = mContext.bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
-            if (!canBind) {
-                result.mError = ConnectionError.NOT_PERMITTED;
-                return result;
             }
-
-            synchronized (lockObj) {
-                lockObj.wait(2000);
-            }
-
-            if (!result.mIsComplete) {
-                result.mError = ConnectionError.NOT_RESPONDED;
-            }
-            return result;
-        }
+        };
     }
 
-    private class ConnectingResult {
-        boolean mIsComplete;
-        IDConnectPlugin mPlugin;
-        ServiceConnection mServiceConnection;
-        ConnectionError mError;
+    private static class ConnectingResult {
+        final CountDownLatch mLatch = new CountDownLatch(1);
+        volatile IDConnectPlugin mPlugin;
+        volatile ConnectionError mError;
     }
 }
@@ -41,4 +41,10 @@ public class BroadcastConnection extends AbstractConnection {
     public void send(final Intent message) throws MessagingException {
         mContext.sendBroadcast(message);
     }
+
+    @Override
+    public boolean ping() {
+        // ブロードキャストでは生存確認できないため、常に応答ありとする.
+        return true;
+    }
 }
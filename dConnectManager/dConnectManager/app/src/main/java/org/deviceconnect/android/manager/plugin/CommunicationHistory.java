@@ -42,6 +42,11 @@ public class CommunicationHistory {
      */
     private static final String KEY_WORST_REQUEST = "worst_request";
 
+    /**
+     * 統計データを永続化する最小間隔. 単位はミリ秒.
+     */
+    private static final long PERSIST_INTERVAL = 60 * 1000;
+
     /**
      * データを永続化するオブジェクト.
      */
@@ -62,63 +67,126 @@ public class CommunicationHistory {
      */
     private int mHistoryMaxSize = DEFAULT_HISTORY_MAX_SIZE;
 
+    /**
+     * 平均通信時間.
+     */
+    private long mAverageBaudRate;
+
+    /**
+     * 最遅通信時間.
+     */
+    private long mWorstBaudRate;
+
+    /**
+     * 最遅通信時間のリクエスト.
+     */
+    private String mWorstBaudRateRequest;
+
+    /**
+     * 統計データを最後に永続化した時刻.
+     */
+    private long mLastPersistedTime;
+
+    /**
+     * 統計データに永続化されていない変更があるかどうかのフラグ.
+     */
+    private boolean mIsDirty;
+
     /**
      * コンストラクタ.
      *
+     * 統計データは生成時に一度だけ読み込み、以降はメモリ上で更新する.
+     *
      * @param context コンテキスト
      * @param pluginId プラグインID
      */
     CommunicationHistory(final Context context, final String pluginId) {
         String prefName = PREFIX_PREFERENCES + pluginId;
         mPreferences = context.getSharedPreferences(prefName, Context.MODE_PRIVATE);
+        mAverageBaudRate = mPreferences.getLong(KEY_AVERAGE_BAUD_RATE, 0);
+        mWorstBaudRate = mPreferences.getLong(KEY_WORST_BAUD_RATE, 0);
+        mWorstBaudRateRequest = mPreferences.getString(KEY_WORST_REQUEST, "None");
     }
 
     /**
      * 平均通信時間を保存します.
      * @param baudRate 保存する平均通信時間
      */
-    void setAverageBaudRate(final long baudRate) {
-        mPreferences.edit().putLong(KEY_AVERAGE_BAUD_RATE, baudRate).apply();
+    synchronized void setAverageBaudRate(final long baudRate) {
+        mAverageBaudRate = baudRate;
+        persistIfNeeded();
     }
 
     /**
      * 平均通信時間を取得します.
      * @return 平均通信時間
      */
-    public long getAverageBaudRate() {
-        return mPreferences.getLong(KEY_AVERAGE_BAUD_RATE, 0);
+    public synchronized long getAverageBaudRate() {
+        return mAverageBaudRate;
     }
 
     /**
      * 最遅通信時間を保存します.
      * @param baudRate 最遅通信時間
      */
-    void setWorstBaudRate(final long baudRate) {
-        mPreferences.edit().putLong(KEY_WORST_BAUD_RATE, baudRate).apply();
+    synchronized void setWorstBaudRate(final long baudRate) {
+        mWorstBaudRate = baudRate;
+        persistIfNeeded();
     }
 
     /**
      * 最遅通信時間を取得します.
      * @return 最遅通信時間
      */
-    public long getWorstBaudRate() {
-        return mPreferences.getLong(KEY_WORST_BAUD_RATE, 0);
+    public synchronized long getWorstBaudRate() {
+        return mWorstBaudRate;
     }
 
     /**
      * 最遅通信時間のリクエストを保存します.
      * @param request 最遅通信時間のリクエスト
      */
-    void setWorstBaudRateRequest(final String request) {
-        mPreferences.edit().putString(KEY_WORST_REQUEST, request).apply();
+    synchronized void setWorstBaudRateRequest(final String request) {
+        mWorstBaudRateRequest = request;
+        persistIfNeeded();
     }
 
     /**
      * 最遅通信時間のリクエストを取得します.
      * @return 最遅通信時間のリクエスト
      */
-    public String getWorstBaudRateRequest() {
-        return mPreferences.getString(KEY_WORST_REQUEST, "None");
+    public synchronized String getWorstBaudRateRequest() {
+        return mWorstBaudRateRequest;
+    }
+
+    /**
+     * 統計データを永続化する.
+     *
+     * リクエストごとの書き込みを避けるため、前回の永続化から {@link #PERSIST_INTERVAL} 以上
+     * 経過している場合のみ書き込む.
+     */
+    private void persistIfNeeded() {
+        mIsDirty = true;
+        long now = System.currentTimeMillis();
+        if (now - mLastPersistedTime >= PERSIST_INTERVAL) {
+            flush();
+            mLastPersistedTime = now;
+        }
+    }
+
+    /**
+     * 永続化されていない統計データを書き込む.
+     */
+    synchronized void flush() {
+        if (!mIsDirty) {
+            return;
+        }
+        mPreferences.edit()
+            .putLong(KEY_AVERAGE_BAUD_RATE, mAverageBaudRate)
+            .putLong(KEY_WORST_BAUD_RATE, mWorstBaudRate)
+            .putString(KEY_WORST_REQUEST, mWorstBaudRateRequest)
+            .apply();
+        mIsDirty = false;
     }
 
     public void add(final Info info) {
@@ -160,6 +228,10 @@ public class CommunicationHistory {
     void clear() {
         synchronized (this) {
             mPreferences.edit().clear().apply();
+            mAverageBaudRate = 0;
+            mWorstBaudRate = 0;
+            mWorstBaudRateRequest = "None";
+            mIsDirty = false;
             mRespondedList.clear();
             mNotRespondedList.clear();
         }
@@ -95,6 +95,15 @@ public interface Connection {
      */
     void send(Intent message) throws MessagingException;
 
+    /**
+     * プラグインの生存確認を行う.
+     *
+     * 接続確立済みの場合のみ確認を行う. なお、本メソッドは同期的に処理される.
+     *
+     * @return プラグインが応答した場合は<code>true</code>、そうでない場合は<code>false</code>
+     */
+    boolean ping();
+
 
     /**
      * 現在発生しているエラーがある場合はそれを返す.
@@ -0,0 +1,479 @@
+/*
+ ConnectionSupervisor.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.plugin;
+
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * プラグインとの接続を監視するクラス.
+ *
+ * <p>
+ * 監視対象の接続は、以下のように管理される.
+ * <ul>
+ *     <li>監視開始時に、他の接続とは並列に接続処理を開始する.</li>
+ *     <li>接続確立済みの接続に対して定期的に {@link Connection#ping()} を実行し、応答時間を計測する.</li>
+ *     <li>ping が失敗またはタイムアウトした場合は、その接続を利用不可とし、切断する.</li>
+ *     <li>切断された接続に対しては、指数関数的に間隔を広げながら再接続を試みる.</li>
+ * </ul>
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ConnectionSupervisor {
+
+    /** ping の実行間隔のデフォルト値. 単位はミリ秒. */
+    private static final long DEFAULT_PING_INTERVAL = 30 * 1000;
+
+    /** ping の応答を待つ時間のデフォルト値. 単位はミリ秒. */
+    private static final long DEFAULT_PING_TIMEOUT = 3 * 1000;
+
+    /** 再接続間隔の最小値のデフォルト値. 単位はミリ秒. */
+    private static final long DEFAULT_MIN_RETRY_DELAY = 1000;
+
+    /** 再接続間隔の最大値のデフォルト値. 単位はミリ秒. */
+    private static final long DEFAULT_MAX_RETRY_DELAY = 60 * 1000;
+
+    /** 接続処理を実行するスレッドの数. */
+    private static final int WORKER_THREAD_COUNT = 8;
+
+    /** ping の実行間隔. 単位はミリ秒. */
+    private final long mPingInterval;
+
+    /** ping の応答を待つ時間. 単位はミリ秒. */
+    private final long mPingTimeout;
+
+    /** 再接続間隔の最小値. 単位はミリ秒. */
+    private final long mMinRetryDelay;
+
+    /** 再接続間隔の最大値. 単位はミリ秒. */
+    private final long mMaxRetryDelay;
+
+    /** 監視対象の接続一覧. キーはプラグインID. */
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /** ping と再接続のタイミングを管理するタイマー. */
+    private final ScheduledExecutorService mTimer = Executors.newSingleThreadScheduledExecutor();
+
+    /** 接続処理を実行するスレッドプール. */
+    private final ExecutorService mWorkers = Executors.newFixedThreadPool(WORKER_THREAD_COUNT);
+
+    /**
+     * ping を実行するスレッドプール.
+     *
+     * 接続処理の待ち行列によって ping がタイムアウトしないように、接続処理とは別のスレッドで実行する.
+     */
+    private final ExecutorService mPingWorkers = Executors.newCachedThreadPool();
+
+    /** 定期 ping のタスク. */
+    private ScheduledFuture<?> mPingTask;
+
+    /** ロガー. */
+    private final Logger mLogger = Logger.getLogger("dconnect.manager");
+
+    /**
+     * コンストラクタ.
+     */
+    public ConnectionSupervisor() {
+        this(DEFAULT_PING_INTERVAL, DEFAULT_PING_TIMEOUT, DEFAULT_MIN_RETRY_DELAY, DEFAULT_MAX_RETRY_DELAY);
+    }
+
+    /**
+     * コンストラクタ.
+     *
+     * @param pingInterval ping の実行間隔. 単位はミリ秒.
+     * @param pingTimeout ping の応答を待つ時間. 単位はミリ秒.
+     * @param minRetryDelay 再接続間隔の最小値. 単位はミリ秒.
+     * @param maxRetryDelay 再接続間隔の最大値. 単位はミリ秒.
+     */
+    ConnectionSupervisor(final long pingInterval, final long pingTimeout,
+                         final long minRetryDelay, final long maxRetryDelay) {
+        if (pingInterval <= 0 || pingTimeout <= 0 || minRetryDelay <= 0 || maxRetryDelay < minRetryDelay) {
+            throw new IllegalArgumentException("invalid interval.");
+        }
+        mPingInterval = pingInterval;
+        mPingTimeout = pingTimeout;
+        mMinRetryDelay = minRetryDelay;
+        mMaxRetryDelay = maxRetryDelay;
+    }
+
+    /**
+     * 定期 ping を開始する.
+     */
+    public synchronized void start() {
+        if (mPingTask != null) {
+            return;
+        }
+        mPingTask = mTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (Entry entry : mEntries.values()) {
+                    entry.ping();
+                }
+            }
+        }, mPingInterval, mPingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 監視を終了する.
+     *
+     * 終了後は本インスタンスを再利用できない.
+     */
+    public synchronized void shutdown() {
+        if (mPingTask != null) {
+            mPingTask.cancel(false);
+            mPingTask = null;
+        }
+        for (Entry entry : mEntries.values()) {
+            entry.stop();
+        }
+        mEntries.clear();
+        mTimer.shutdownNow();
+        mWorkers.shutdownNow();
+        mPingWorkers.shutdownNow();
+    }
+
+    /**
+     * 接続の監視を開始する.
+     *
+     * 接続が確立されていない場合は、非同期に接続処理を開始する.
+     *
+     * @param connection 監視対象の接続
+     */
+    public void watch(final Connection connection) {
+        if (connection == null) {
+            throw new IllegalArgumentException("connection is null.");
+        }
+        Entry entry;
+        synchronized (mEntries) {
+            entry = mEntries.get(connection.getPluginId());
+            if (entry != null && entry.mConnection != connection) {
+                unwatch(entry.mConnection);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(connection);
+                mEntries.put(connection.getPluginId(), entry);
+                connection.addConnectionStateListener(entry);
+            }
+        }
+        if (connection.getState() != ConnectionState.CONNECTED) {
+            entry.connect();
+        }
+    }
+
+    /**
+     * 接続の監視を終了する.
+     *
+     * 本メソッドは接続の切断は行わない.
+     *
+     * @param connection 監視対象の接続
+     */
+    public void unwatch(final Connection connection) {
+        if (connection == null) {
+            throw new IllegalArgumentException("connection is null.");
+        }
+        Entry entry;
+        synchronized (mEntries) {
+            entry = mEntries.get(connection.getPluginId());
+            if (entry == null || entry.mConnection != connection) {
+                return;
+            }
+            mEntries.remove(connection.getPluginId());
+        }
+        connection.removeConnectionStateListener(entry);
+        entry.stop();
+    }
+
+    /**
+     * 指定された接続が監視対象であるかどうかを確認する.
+     *
+     * @param connection 接続
+     * @return 監視対象である場合は<code>true</code>、そうでない場合は<code>false</code>
+     */
+    public boolean isWatching(final Connection connection) {
+        Entry entry = mEntries.get(connection.getPluginId());
+        return entry != null && entry.mConnection == connection;
+    }
+
+    /**
+     * 実行中の接続処理の完了を待つ.
+     *
+     * 接続処理が実行されていない場合は、待たずに結果を返す.
+     * 再接続の待機中に呼び出された場合も、待たずに<code>false</code>を返す.
+     *
+     * @param connection 接続
+     * @param timeout タイムアウト時間. 単位はミリ秒.
+     * @return 接続確立済みの場合は<code>true</code>、そうでない場合は<code>false</code>
+     */
+    public boolean awaitConnection(final Connection connection, final long timeout) {
+        Entry entry = mEntries.get(connection.getPluginId());
+        if (entry != null && entry.mConnection == connection) {
+            Future<?> task = entry.getConnectingTask();
+            if (task != null) {
+                try {
+                    task.get(timeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | TimeoutException e) {
+                    // NOP.
+                }
+            }
+        }
+        return connection.getState() == ConnectionState.CONNECTED;
+    }
+
+    /**
+     * 指定されたプラグインが利用可能であるかどうかを取得する.
+     *
+     * @param pluginId プラグインID
+     * @return 利用可能である場合は<code>true</code>、そうでない場合は<code>false</code>
+     */
+    public boolean isAvailable(final String pluginId) {
+        Entry entry = mEntries.get(pluginId);
+        return entry != null && entry.mAvailable;
+    }
+
+    /**
+     * 指定されたプラグインに対する直近の ping の応答時間を取得する.
+     *
+     * @param pluginId プラグインID
+     * @return 応答時間. 単位はミリ秒. 計測されていない場合は-1
+     */
+    public long getRoundTripTime(final String pluginId) {
+        Entry entry = mEntries.get(pluginId);
+        return entry != null ? entry.mRoundTripTime : -1;
+    }
+
+    /**
+     * 指定されたプラグインに対する連続した接続失敗の回数を取得する.
+     *
+     * @param pluginId プラグインID
+     * @return 接続失敗の回数
+     */
+    public int getFailureCount(final String pluginId) {
+        Entry entry = mEntries.get(pluginId);
+        return entry != null ? entry.getFailureCount() : 0;
+    }
+
+    /**
+     * 接続失敗の回数に応じた再接続までの待ち時間を計算する.
+     *
+     * @param failureCount 連続した接続失敗の回数
+     * @return 待ち時間. 単位はミリ秒.
+     */
+    long computeRetryDelay(final int failureCount) {
+        int shift = Math.min(Math.max(failureCount - 1, 0), 30);
+        long delay = mMinRetryDelay << shift;
+        if (delay <= 0 || delay > mMaxRetryDelay) {
+            delay = mMaxRetryDelay;
+        }
+        return delay;
+    }
+
+    /**
+     * 1つの接続についての監視状態.
+     */
+    private class Entry implements ConnectionStateListener {
+
+        /** 監視対象の接続. */
+        private final Connection mConnection;
+
+        /** 利用可能フラグ. */
+        private volatile boolean mAvailable;
+
+        /** 直近の ping の応答時間. 単位はミリ秒. */
+        private volatile long mRoundTripTime = -1;
+
+        /** 連続した接続失敗の回数. */
+        private int mFailureCount;
+
+        /** 実行中の接続処理. */
+        private Future<?> mConnectingTask;
+
+        /** 再接続の予約. */
+        private ScheduledFuture<?> mRetryTask;
+
+        /** 実行中の ping. */
+        private Future<?> mPingTask;
+
+        /** 監視中フラグ. */
+        private boolean mWatching = true;
+
+        Entry(final Connection connection) {
+            mConnection = connection;
+            mAvailable = connection.getState() == ConnectionState.CONNECTED;
+        }
+
+        synchronized Future<?> getConnectingTask() {
+            return mConnectingTask;
+        }
+
+        synchronized int getFailureCount() {
+            return mFailureCount;
+        }
+
+        synchronized void stop() {
+            mWatching = false;
+            mAvailable = false;
+            if (mRetryTask != null) {
+                mRetryTask.cancel(false);
+                mRetryTask = null;
+            }
+            if (mPingTask != null) {
+                mPingTask.cancel(true);
+                mPingTask = null;
+            }
+        }
+
+        /**
+         * 接続処理を非同期に開始する.
+         */
+        synchronized void connect() {
+            if (!mWatching || isRunning(mConnectingTask)) {
+                return;
+            }
+            if (mRetryTask != null) {
+                mRetryTask.cancel(false);
+                mRetryTask = null;
+            }
+            mConnectingTask = mWorkers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mConnection.connect();
+                    } catch (ConnectingException e) {
+                        mLogger.warning("ConnectionSupervisor: failed to connect: " + mConnection.getPluginId());
+                    }
+                    if (mConnection.getState() == ConnectionState.CONNECTED) {
+                        onConnected();
+                    } else {
+                        onFailed();
+                    }
+                }
+            });
+        }
+
+        /**
+         * ping を非同期に実行する.
+         *
+         * 制限時間内に応答がない場合は、接続を切断して再接続を予約する.
+         */
+        synchronized void ping() {
+            if (!mWatching || mConnection.getState() != ConnectionState.CONNECTED || isRunning(mPingTask)) {
+                return;
+            }
+            final Future<?> task = mPingWorkers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    if (mConnection.ping()) {
+                        mRoundTripTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    } else {
+                        onNotResponded();
+                    }
+                }
+            });
+            mPingTask = task;
+            mTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!task.isDone()) {
+                        task.cancel(true);
+                        onNotResponded();
+                    }
+                }
+            }, mPingTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        private boolean isRunning(final Future<?> task) {
+            return task != null && !task.isDone();
+        }
+
+        private synchronized void onConnected() {
+            mAvailable = true;
+            mFailureCount = 0;
+        }
+
+        private synchronized void onFailed() {
+            mAvailable = false;
+            mFailureCount++;
+            scheduleRetry();
+        }
+
+        private void onNotResponded() {
+            synchronized (this) {
+                // タイムアウト後に ping が失敗した場合などに、重複して切断しないようにする
+                if (!mWatching || !mAvailable) {
+                    return;
+                }
+                mAvailable = false;
+                mRoundTripTime = -1;
+            }
+            mLogger.warning("ConnectionSupervisor: plugin not responded: " + mConnection.getPluginId());
+            mConnection.disconnect();
+            synchronized (this) {
+                mFailureCount++;
+                scheduleRetry();
+            }
+        }
+
+        private void scheduleRetry() {
+            if (!mWatching || isRunning(mRetryTask)) {
+                return;
+            }
+            long delay = computeRetryDelay(mFailureCount);
+            mLogger.info("ConnectionSupervisor: retry connecting after " + delay + " msec: " + mConnection.getPluginId());
+            mRetryTask = mTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    connect();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onConnectionStateChanged(final String pluginId, final ConnectionState state) {
+            synchronized (this) {
+                if (!mWatching) {
+                    return;
+                }
+                switch (state) {
+                    case CONNECTED:
+                        mAvailable = true;
+                        mFailureCount = 0;
+                        if (mRetryTask != null) {
+                            mRetryTask.cancel(false);
+                            mRetryTask = null;
+                        }
+                        break;
+                    case SUSPENDED:
+                        mAvailable = false;
+                        // 接続処理中の失敗は接続処理のタスクで扱う
+                        // 再接続を予約済みの場合も、重複して数えないようにする
+                        if (!isRunning(mConnectingTask) && !isRunning(mRetryTask)) {
+                            mFailureCount++;
+                            scheduleRetry();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -16,8 +16,11 @@ import android.os.Parcelable;
 import org.deviceconnect.android.localoauth.DevicePluginXml;
 import org.deviceconnect.android.localoauth.DevicePluginXmlProfile;
 import org.deviceconnect.android.manager.BuildConfig;
+import org.deviceconnect.android.manager.metrics.Counter;
+import org.deviceconnect.android.manager.metrics.MetricsRegistry;
 import org.deviceconnect.android.manager.util.DConnectUtil;
 import org.deviceconnect.android.manager.util.VersionName;
+import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
@@ -35,6 +38,24 @@ public class DevicePlugin {
     /** 接続リトライ回数. */
     private static final int MAX_CONNECTION_TRY = 5;
 
+    /** 接続処理の完了を待つ時間. 単位はミリ秒. */
+    private static final long CONNECTION_WAIT_TIMEOUT = 3000;
+
+    /** 応答時間の計測値のラベル名. */
+    private static final String[] LATENCY_LABELS = {
+        MetricsRegistry.LABEL_PLUGIN, MetricsRegistry.LABEL_PROFILE, MetricsRegistry.LABEL_API
+    };
+
+    /** プラグイン単位の計測値のラベル名. */
+    private static final String[] PLUGIN_LABELS = {
+        MetricsRegistry.LABEL_PLUGIN
+    };
+
+    /** エラー回数の計測値のラベル名. */
+    private static final String[] ERROR_LABELS = {
+        MetricsRegistry.LABEL_PLUGIN, MetricsRegistry.LABEL_REASON
+    };
+
     /** デバイスプラグイン情報. */
     private final Info mInfo;
     /** デバイスプラグイン設定. */
@@ -43,6 +64,10 @@ public class DevicePlugin {
     private final CommunicationHistory mHistory;
     /** 接続管理クラス. */
     private Connection mConnection;
+    /** 接続監視クラス. */
+    private ConnectionSupervisor mSupervisor;
+    /** 計測値の管理クラス. */
+    private MetricsRegistry mMetrics;
     /** ロガー. */
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
 
@@ -56,9 +81,23 @@ public class DevicePlugin {
 
     /**
      * リソースを破棄する.
+     *
+     * 永続化されていない統計データはここで書き込む.
      */
     synchronized void dispose() {
+        if (mSupervisor != null) {
+            mSupervisor.unwatch(mConnection);
+        }
         mConnection.disconnect();
+        mHistory.flush();
+    }
+
+    /**
+     * 永続化されている設定と統計データを削除する.
+     *
+     * プラグインがアンインストールされた場合に呼び出すこと.
+     */
+    synchronized void deleteData() {
         mSetting.clear();
         mHistory.clear();
     }
@@ -156,6 +195,14 @@ public class DevicePlugin {
         CommunicationHistory.Info info = new CommunicationHistory.Info(serviceId, path, start, end);
         mHistory.add(info);
 
+        MetricsRegistry metrics = mMetrics;
+        if (metrics != null) {
+            metrics.histogram(MetricsRegistry.PLUGIN_REQUEST_LATENCY,
+                "Round trip time of requests to the plug-in.",
+                LATENCY_LABELS, getPackageName(), DConnectProfile.getProfile(request), path)
+                .record((end - start) * 1000);
+        }
+
         // 統計を取る.
         if (calculatesStats()) {
             mLogger.info("Plug-in PackageName: " + getPackageName());
@@ -185,6 +232,57 @@ public class DevicePlugin {
         String serviceId = getServiceId(request);
         String path = DConnectUtil.convertRequestToString(request);
         mHistory.add(new CommunicationHistory.Info(serviceId, path, start));
+
+        MetricsRegistry metrics = mMetrics;
+        if (metrics != null) {
+            metrics.counter(MetricsRegistry.PLUGIN_REQUEST_TIMEOUTS,
+                "Number of requests to the plug-in which were timed out.",
+                PLUGIN_LABELS, getPackageName()).increment();
+        }
+    }
+
+    /**
+     * プラグインへのリクエストの送信開始を記録する.
+     *
+     * {@link #reportRequestFinished()} と対で呼び出すこと.
+     */
+    public void reportRequestStarted() {
+        MetricsRegistry metrics = mMetrics;
+        if (metrics != null) {
+            getInFlightCounter(metrics).increment();
+        }
+    }
+
+    /**
+     * プラグインへのリクエストの完了を記録する.
+     *
+     * レスポンスの受信に失敗した場合も呼び出すこと.
+     */
+    public void reportRequestFinished() {
+        MetricsRegistry metrics = mMetrics;
+        if (metrics != null) {
+            getInFlightCounter(metrics).decrement();
+        }
+    }
+
+    /**
+     * プラグインへのリクエストのエラーを記録する.
+     *
+     * @param reason エラーの原因
+     */
+    public void reportError(final String reason) {
+        MetricsRegistry metrics = mMetrics;
+        if (metrics != null) {
+            metrics.counter(MetricsRegistry.PLUGIN_REQUEST_ERRORS,
+                "Number of requests to the plug-in which were failed.",
+                ERROR_LABELS, getPackageName(), reason).increment();
+        }
+    }
+
+    private Counter getInFlightCounter(final MetricsRegistry metrics) {
+        return metrics.upDownCounter(MetricsRegistry.PLUGIN_REQUESTS_IN_FLIGHT,
+            "Number of requests waiting for the response from the plug-in.",
+            PLUGIN_LABELS, getPackageName());
     }
 
     private static String getServiceId(final Intent request) {
@@ -295,6 +393,25 @@ public class DevicePlugin {
         mConnection = connection;
     }
 
+    /**
+     * プラグインとの接続を監視するオブジェクトを設定する.
+     *
+     * 設定された場合、接続処理は監視オブジェクトによって非同期に実行される.
+     *
+     * @param supervisor {@link ConnectionSupervisor}オブジェクト
+     */
+    void setConnectionSupervisor(final ConnectionSupervisor supervisor) {
+        mSupervisor = supervisor;
+    }
+
+    /**
+     * 計測値を記録するオブジェクトを設定する.
+     * @param metrics {@link MetricsRegistry}オブジェクト
+     */
+    void setMetricsRegistry(final MetricsRegistry metrics) {
+        mMetrics = metrics;
+    }
+
     /**
      * プラグインが有効であるかどうかを取得する.
      * @return 有効である場合は<code>true</code>、そうでない場合は<code>false</code>
@@ -339,10 +456,15 @@ public class DevicePlugin {
 
     public synchronized void apply() {
         if (isEnabled()) {
-            if (mConnection.getState() == ConnectionState.DISCONNECTED) {
+            if (mSupervisor != null) {
+                mSupervisor.watch(mConnection);
+            } else if (mConnection.getState() == ConnectionState.DISCONNECTED) {
                 tryConnection();
             }
         } else {
+            if (mSupervisor != null) {
+                mSupervisor.unwatch(mConnection);
+            }
             if (mConnection.getState() == ConnectionState.CONNECTED ||
                 mConnection.getState() == ConnectionState.SUSPENDED) {
                 mConnection.disconnect();
@@ -399,10 +521,20 @@ public class DevicePlugin {
             }
             switch (mConnection.getState()) {
                 case SUSPENDED:
+                    if (mSupervisor != null && mSupervisor.isWatching(mConnection)) {
+                        // 再接続は監視オブジェクトが行うため、ここでは待たずに失敗とする
+                        throw new MessagingException(MessagingException.Reason.CONNECTION_SUSPENDED);
+                    }
                     if (!tryConnection()) {
                         throw new MessagingException(MessagingException.Reason.CONNECTION_SUSPENDED);
                     }
                     break;
+                case CONNECTING:
+                case DISCONNECTED:
+                    if (mSupervisor != null && !mSupervisor.awaitConnection(mConnection, CONNECTION_WAIT_TIMEOUT)) {
+                        throw new MessagingException(MessagingException.Reason.CONNECTION_SUSPENDED);
+                    }
+                    break;
                 default:
                     break;
             }
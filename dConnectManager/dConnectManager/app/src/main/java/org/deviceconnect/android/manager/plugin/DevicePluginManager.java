@@ -25,6 +25,7 @@ import android.util.SparseArray;
 import org.deviceconnect.android.localoauth.DevicePluginXml;
 import org.deviceconnect.android.localoauth.DevicePluginXmlUtil;
 import org.deviceconnect.android.manager.DConnectMessageService;
+import org.deviceconnect.android.manager.metrics.MetricsRegistry;
 import org.deviceconnect.android.manager.util.DConnectUtil;
 import org.deviceconnect.android.manager.util.VersionName;
 import org.deviceconnect.message.DConnectMessage;
@@ -77,6 +78,10 @@ public class DevicePluginManager {
     private final Context mContext;
     /** 接続管理用インスタンスのファクトリー. */
     private ConnectionFactory mConnectionFactory;
+    /** プラグインとの接続を監視するクラス. */
+    private final ConnectionSupervisor mConnectionSupervisor = new ConnectionSupervisor();
+    /** 計測値の管理クラス. */
+    private MetricsRegistry mMetrics;
     /** 接続管理用インスタンスのイベントリスナー. */
     private ConnectionStateListener mStateListener = new ConnectionStateListener() {
         @Override
@@ -96,12 +101,48 @@ public class DevicePluginManager {
     public DevicePluginManager(final Context context, final String domain) {
         setDConnectDomain(domain);
         mContext = context;
+        mConnectionSupervisor.start();
     }
 
     public void setConnectionFactory(final ConnectionFactory factory) {
         mConnectionFactory = factory;
     }
 
+    /**
+     * プラグインとの通信の計測値を記録するクラスを設定する.
+     *
+     * 設定後に検出されたプラグインに対して有効となる.
+     *
+     * @param metrics {@link MetricsRegistry}のインスタンス
+     */
+    public void setMetricsRegistry(final MetricsRegistry metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * プラグインとの接続を監視するクラスを取得する.
+     * @return {@link ConnectionSupervisor}のインスタンス
+     */
+    public ConnectionSupervisor getConnectionSupervisor() {
+        return mConnectionSupervisor;
+    }
+
+    /**
+     * プラグインとの接続の監視を停止する.
+     */
+    public void stopConnectionSupervisor() {
+        mConnectionSupervisor.shutdown();
+    }
+
+    /**
+     * 全プラグインの永続化されていない統計データを書き込む.
+     */
+    public void flushCommunicationHistories() {
+        for (DevicePlugin plugin : mPlugins.values()) {
+            plugin.getHistory().flush();
+        }
+    }
+
     /**
      * dConnect Managerのドメイン名を設定する.
      * @param domain ドメイン名
@@ -379,9 +420,14 @@ public class DevicePluginManager {
             .setPluginIconId(iconId)
             .setConnectionType(type)
             .build();
+        plugin.setMetricsRegistry(mMetrics);
         if (mConnectionFactory != null) {
-            plugin.setConnection(mConnectionFactory.createConnectionForPlugin(plugin));
+            Connection connection = mConnectionFactory.createConnectionForPlugin(plugin);
+            plugin.setConnection(connection);
             plugin.addConnectionStateListener(mStateListener);
+            if (connection != null && connection.getType() != ConnectionType.BROADCAST) {
+                plugin.setConnectionSupervisor(mConnectionSupervisor);
+            }
         }
         return plugin;
     }
@@ -411,6 +457,10 @@ public class DevicePluginManager {
         if (plugin != null) {
             plugin.removeConnectionStateListener(mStateListener);
             plugin.dispose();
+            plugin.deleteData();
+            if (mMetrics != null) {
+                mMetrics.removeByLabel(MetricsRegistry.LABEL_PLUGIN, plugin.getPackageName());
+            }
             notifyLost(plugin);
         }
     }
@@ -0,0 +1,183 @@
+/*
+ DConnectMetricsProfile.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.profile;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.deviceconnect.android.manager.metrics.LatencyHistogram;
+import org.deviceconnect.android.manager.metrics.MetricsRegistry;
+import org.deviceconnect.android.manager.metrics.MetricsRegistry.MetricFamily;
+import org.deviceconnect.android.manager.metrics.RateMeter;
+import org.deviceconnect.android.profile.DConnectProfile;
+import org.deviceconnect.android.profile.api.DConnectApi;
+import org.deviceconnect.android.profile.api.GetApi;
+import org.deviceconnect.message.DConnectMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Metrics プロファイル.
+ *
+ * <p>
+ * Device Connect Managerが計測したプラグインの応答時間やイベントの発生頻度などを返却する.
+ * Prometheusのテキスト形式が必要な場合は、/gotapi/metrics/prometheus を使用すること.
+ * HTTPサーバはこのAPIの結果をJSONではなくテキストのまま返却する.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class DConnectMetricsProfile extends DConnectProfile {
+
+    /** プロファイル名. */
+    public static final String PROFILE_NAME = "metrics";
+
+    /** アトリビュート: prometheus. */
+    public static final String ATTRIBUTE_PROMETHEUS = "prometheus";
+
+    /** パラメータ: text. Prometheusのテキスト形式の計測値. */
+    public static final String PARAM_TEXT = "text";
+
+    /** パラメータ: metrics. */
+    public static final String PARAM_METRICS = "metrics";
+
+    /** パラメータ: name. */
+    public static final String PARAM_NAME = "name";
+
+    /** パラメータ: help. */
+    public static final String PARAM_HELP = "help";
+
+    /** パラメータ: type. */
+    public static final String PARAM_TYPE = "type";
+
+    /** パラメータ: values. */
+    public static final String PARAM_VALUES = "values";
+
+    /** パラメータ: labels. */
+    public static final String PARAM_LABELS = "labels";
+
+    /** パラメータ: value. */
+    public static final String PARAM_VALUE = "value";
+
+    /** パラメータ: count. */
+    public static final String PARAM_COUNT = "count";
+
+    /** パラメータ: rate. */
+    public static final String PARAM_RATE = "rate";
+
+    /** パラメータ: mean. */
+    public static final String PARAM_MEAN = "mean";
+
+    /** パラメータ: max. */
+    public static final String PARAM_MAX = "max";
+
+    /** 返却するパーセンタイル. */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /** 計測値の管理クラス. */
+    private final MetricsRegistry mRegistry;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param registry 計測値の管理クラス
+     */
+    public DConnectMetricsProfile(final MetricsRegistry registry) {
+        mRegistry = registry;
+        addApi(mGetRequest);
+        addApi(mGetPrometheusRequest);
+    }
+
+    @Override
+    public String getProfileName() {
+        return PROFILE_NAME;
+    }
+
+    private final DConnectApi mGetRequest = new GetApi() {
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            List<Bundle> families = new ArrayList<>();
+            for (MetricFamily family : mRegistry.getFamilies()) {
+                families.add(createFamily(family));
+            }
+            response.putExtra(PARAM_METRICS, families.toArray(new Bundle[families.size()]));
+            setResult(response, DConnectMessage.RESULT_OK);
+            return true;
+        }
+    };
+
+    private final DConnectApi mGetPrometheusRequest = new GetApi() {
+        @Override
+        public String getAttribute() {
+            return ATTRIBUTE_PROMETHEUS;
+        }
+
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            response.putExtra(PARAM_TEXT, mRegistry.toPrometheusText());
+            setResult(response, DConnectMessage.RESULT_OK);
+            return true;
+        }
+    };
+
+    private static Bundle createFamily(final MetricFamily family) {
+        Bundle bundle = new Bundle();
+        bundle.putString(PARAM_NAME, family.getName());
+        bundle.putString(PARAM_HELP, family.getHelp());
+        bundle.putString(PARAM_TYPE, family.getType().name().toLowerCase(Locale.US));
+
+        String[] labelNames = family.getLabelNames();
+        List<Bundle> values = new ArrayList<>();
+        for (Map.Entry<List<String>, Object> e : family.getMetrics().entrySet()) {
+            Bundle value = new Bundle();
+            Bundle labels = new Bundle();
+            for (int i = 0; i < labelNames.length; i++) {
+                labels.putString(labelNames[i], e.getKey().get(i));
+            }
+            value.putBundle(PARAM_LABELS, labels);
+
+            Object metric = e.getValue();
+            switch (family.getType()) {
+                case SUMMARY: {
+                    // 時間の単位はミリ秒で返却する
+                    LatencyHistogram h = (LatencyHistogram) metric;
+                    value.putLong(PARAM_COUNT, h.getCount());
+                    value.putDouble(PARAM_MEAN, h.getMean() / 1000.0);
+                    value.putDouble(PARAM_MAX, h.getMax() / 1000.0);
+                    for (double p : PERCENTILES) {
+                        value.putDouble(percentileKey(p), h.getValueAtPercentile(p) / 1000.0);
+                    }
+                    break;
+                }
+                case METER: {
+                    RateMeter meter = (RateMeter) metric;
+                    value.putLong(PARAM_COUNT, meter.getCount());
+                    value.putDouble(PARAM_RATE, meter.getRate());
+                    break;
+                }
+                default:
+                    value.putLong(PARAM_VALUE, family.getValue(metric));
+                    break;
+            }
+            values.add(value);
+        }
+        bundle.putParcelableArray(PARAM_VALUES, values.toArray(new Bundle[values.size()]));
+        return bundle;
+    }
+
+    private static String percentileKey(final double percentile) {
+        // 例: 99.9 -> p999
+        String s = String.valueOf(percentile);
+        if (s.endsWith(".0")) {
+            s = s.substring(0, s.length() - 2);
+        }
+        return "p" + s.replace(".", "");
+    }
+}
@@ -11,6 +11,7 @@ import android.content.Intent;
 
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.plugin.MessagingException;
+import org.deviceconnect.message.DConnectMessage;
 
 /**
  * プラグインへ送信するリクエスト.
@@ -19,6 +20,9 @@ import org.deviceconnect.android.manager.plugin.MessagingException;
  */
 public abstract class DConnectPluginRequest extends DConnectRequest {
 
+    /** 計測値に記録するエラーの原因: プラグインがエラーレスポンスを返却した. */
+    private static final String REASON_ERROR_RESPONSE = "ERROR_RESPONSE";
+
     /**
      * リクエスト先のプラグイン.
      */
@@ -76,6 +80,7 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
             mDevicePlugin.send(request);
             return true;
         } catch (MessagingException e) {
+            mDevicePlugin.reportError(e.getReason().name());
             onMessagingError(e);
             return false;
         }
@@ -88,8 +93,12 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
      * @return レスポンスの受信に成功した場合は<code>true</code>、そうでない場合は<code>false</code>
      */
     boolean sendRequest(final Intent request) {
+        if (mDevicePlugin == null) {
+            throw new IllegalStateException("destination is not set.");
+        }
         boolean forwarded = false;
         boolean responded = false;
+        mDevicePlugin.reportRequestStarted();
         try {
             mStartDateTime = getCurrentDateTime();
             forwarded = forwardRequest(request);
@@ -103,6 +112,9 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
             final Intent response = mResponse;
             responded = response != null;
             if (responded) {
+                if (isErrorResponse(response)) {
+                    mDevicePlugin.reportError(REASON_ERROR_RESPONSE);
+                }
                 onResponseReceived(request, response);
                 return true;
             } else {
@@ -111,12 +123,18 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
             }
         } finally {
             mEndDateTime = getCurrentDateTime();
+            mDevicePlugin.reportRequestFinished();
             if (forwarded) {
                 reportHistory(request, responded);
             }
         }
     }
 
+    private static boolean isErrorResponse(final Intent response) {
+        return response.getIntExtra(DConnectMessage.EXTRA_RESULT, DConnectMessage.RESULT_OK)
+            == DConnectMessage.RESULT_ERROR;
+    }
+
     private void reportHistory(final Intent request, final boolean responded) {
         long start = mStartDateTime;
         long end = mEndDateTime;
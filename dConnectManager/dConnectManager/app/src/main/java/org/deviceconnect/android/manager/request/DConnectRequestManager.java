@@ -15,8 +15,9 @@ import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * dConnect Managerで処理されるリクエストを管理するクラス.
@@ -30,10 +31,12 @@ public class DConnectRequestManager {
     private static final int MAX_THREAD_SIZE = 4;
 
     /** リクエストを実行するためのスレッドを管理するExecutor. */
-    private final ExecutorService mExecutor = Executors.newFixedThreadPool(MAX_THREAD_SIZE);
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(MAX_THREAD_SIZE, MAX_THREAD_SIZE,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
 
     /** シングルスレッドでリクエストを実行するためのスレッドを管理するExecutor. */
-    private final ExecutorService mSingleExecutor = Executors.newSingleThreadExecutor();
+    private final ThreadPoolExecutor mSingleExecutor = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
 
     /** リクエスト一覧. */
     private final List<DConnectRequest> mRequestList = Collections.synchronizedList(new ArrayList<DConnectRequest>());
@@ -46,6 +49,22 @@ public class DConnectRequestManager {
         mSingleExecutor.shutdown();
     }
 
+    /**
+     * 実行待ちのリクエスト数を取得する.
+     * @return 実行待ちのリクエスト数
+     */
+    public int getQueueSize() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * シングルスレッドで実行待ちのリクエスト数を取得する.
+     * @return 実行待ちのリクエスト数
+     */
+    public int getSingleThreadQueueSize() {
+        return mSingleExecutor.getQueue().size();
+    }
+
     /**
      * 実行するリクエストを追加する.
      * @param request 追加するリクエスト
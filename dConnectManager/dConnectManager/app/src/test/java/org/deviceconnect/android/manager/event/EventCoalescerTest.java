@@ -0,0 +1,183 @@
+/*
+ EventCoalescerTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.event;
+
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * {@link EventCoalescer}クラスの単体テスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class EventCoalescerTest {
+
+    /** イベントの発生間隔. 単位はミリ秒. */
+    private static final long SOURCE_INTERVAL = 2;
+
+    /** イベントを発生させる時間. 単位はミリ秒. */
+    private static final long SOURCE_DURATION = 500;
+
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdownNow();
+    }
+
+    /**
+     * 最初のイベントは即座に送信され、間隔内のイベントは最新のものだけが間隔の経過後に送信されることを確認する.
+     */
+    @Test
+    public void testLatestOnly() throws Exception {
+        Recorder recorder = new Recorder();
+        EventCoalescer<Integer> coalescer = new EventCoalescer<>(mScheduler, 100, 1, recorder);
+
+        coalescer.offer(1);
+        coalescer.offer(2);
+        coalescer.offer(3);
+        Assert.assertEquals(1, recorder.getMessageCount());
+
+        Thread.sleep(200);
+        Assert.assertEquals(2, recorder.getMessageCount());
+        Assert.assertEquals(listOf(1), recorder.mMessages.get(0));
+        Assert.assertEquals(listOf(3), recorder.mMessages.get(1));
+    }
+
+    /**
+     * 間隔内のイベントがまとめて送信されることを確認する.
+     */
+    @Test
+    public void testBatch() throws Exception {
+        Recorder recorder = new Recorder();
+        EventCoalescer<Integer> coalescer = new EventCoalescer<>(mScheduler, 100, 2, recorder);
+
+        coalescer.offer(1);
+        coalescer.offer(2);
+        coalescer.offer(3);
+        coalescer.offer(4);
+
+        Thread.sleep(200);
+        Assert.assertEquals(2, recorder.getMessageCount());
+        Assert.assertEquals(listOf(1), recorder.mMessages.get(0));
+        // 最大数を超えた古いイベントは破棄される
+        Assert.assertEquals(listOf(3, 4), recorder.mMessages.get(1));
+    }
+
+    /**
+     * キャンセル後は送信待ちのイベントが送信されないことを確認する.
+     */
+    @Test
+    public void testCancel() throws Exception {
+        Recorder recorder = new Recorder();
+        EventCoalescer<Integer> coalescer = new EventCoalescer<>(mScheduler, 100, 1, recorder);
+
+        coalescer.offer(1);
+        coalescer.offer(2);
+        coalescer.cancel();
+        coalescer.offer(3);
+
+        Thread.sleep(200);
+        Assert.assertEquals(1, recorder.getMessageCount());
+    }
+
+    /**
+     * 同じイベントに対して送信間隔の異なる購読者が存在する場合に、
+     * それぞれの間隔で送信されることを確認する.
+     */
+    @Test
+    public void testMixedRateSubscribers() throws Exception {
+        Recorder unlimited = new Recorder();
+        Recorder slow = new Recorder();
+        Recorder batch = new Recorder();
+        List<EventCoalescer<Integer>> subscribers = new ArrayList<>();
+        subscribers.add(new EventCoalescer<>(mScheduler, 0, 1, unlimited));
+        subscribers.add(new EventCoalescer<>(mScheduler, 100, 1, slow));
+        subscribers.add(new EventCoalescer<>(mScheduler, 50, 1000, batch));
+
+        int count = 0;
+        long end = System.currentTimeMillis() + SOURCE_DURATION;
+        while (System.currentTimeMillis() < end) {
+            for (EventCoalescer<Integer> subscriber : subscribers) {
+                subscriber.offer(count);
+            }
+            count++;
+            Thread.sleep(SOURCE_INTERVAL);
+        }
+        Thread.sleep(300);
+
+        // 制限のない購読者にはすべてのイベントが送信される
+        Assert.assertEquals(count, unlimited.getMessageCount());
+        Assert.assertEquals(count, unlimited.getEventCount());
+
+        // 100ms間隔の購読者には最新のイベントのみが間隔ごとに送信される
+        int expected = (int) (SOURCE_DURATION / 100);
+        Assert.assertTrue("messages = " + slow.getMessageCount(),
+            slow.getMessageCount() <= expected + 2);
+        Assert.assertTrue("messages = " + slow.getMessageCount(),
+            slow.getMessageCount() >= expected / 2);
+        Assert.assertEquals(Integer.valueOf(count - 1), slow.getLastEvent());
+
+        // まとめて送信する購読者にはすべてのイベントが間隔ごとに送信される
+        expected = (int) (SOURCE_DURATION / 50);
+        Assert.assertTrue("messages = " + batch.getMessageCount(),
+            batch.getMessageCount() <= expected + 2);
+        Assert.assertEquals(count, batch.getEventCount());
+        Assert.assertEquals(Integer.valueOf(count - 1), batch.getLastEvent());
+        int next = 0;
+        for (List<Integer> message : batch.mMessages) {
+            for (Integer event : message) {
+                Assert.assertEquals(Integer.valueOf(next++), event);
+            }
+        }
+    }
+
+    private static List<Integer> listOf(final Integer... values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * 送信されたイベントを記録する.
+     */
+    private static class Recorder implements EventCoalescer.Sender<Integer> {
+        private final List<List<Integer>> mMessages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(final List<Integer> events) {
+            mMessages.add(events);
+        }
+
+        int getMessageCount() {
+            return mMessages.size();
+        }
+
+        int getEventCount() {
+            int count = 0;
+            for (List<Integer> message : mMessages) {
+                count += message.size();
+            }
+            return count;
+        }
+
+        Integer getLastEvent() {
+            List<Integer> last = mMessages.get(mMessages.size() - 1);
+            return last.get(last.size() - 1);
+        }
+    }
+}
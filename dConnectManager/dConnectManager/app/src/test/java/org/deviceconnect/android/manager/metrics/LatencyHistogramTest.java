@@ -0,0 +1,118 @@
+/*
+ LatencyHistogramTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LatencyHistogramのテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class LatencyHistogramTest {
+
+    /** パーセンタイルの値の許容誤差. バケットの幅は値の 1/32 以下となる. */
+    private static final double TOLERANCE = 1.0 / 32;
+
+    /**
+     * 各値がそれぞれの値を含むバケットに格納されることを確認する.
+     */
+    @Test
+    public void testBucketBoundaries() {
+        int prevIndex = -1;
+        for (long v = 0; v < (1L << 20); v++) {
+            int index = LatencyHistogram.indexOf(v);
+            assertTrue(index == prevIndex || index == prevIndex + 1);
+            assertTrue(LatencyHistogram.lowestValueAt(index) <= v);
+            assertTrue(v <= LatencyHistogram.highestValueAt(index));
+            prevIndex = index;
+        }
+        int last = LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestValueAt(last));
+    }
+
+    /**
+     * 既知の分布を記録して、パーセンタイルの値が許容誤差内に収まることを確認する.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1234);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // 1ms から 1s 程度に分布する対数正規分布
+            values[i] = (long) Math.exp(9 + 1.5 * random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double p : new double[] {50, 90, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(p);
+            assertTrue("p" + p + ": expected=" + expected + ", actual=" + actual,
+                expected <= actual && actual <= expected * (1 + TOLERANCE) + 1);
+        }
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * 記録範囲外の値が範囲内に丸められることを確認する.
+     */
+    @Test
+    public void testOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * 記録がない場合とリセット後に0を返すことを確認する.
+     */
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        histogram.record(1000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    /**
+     * Prometheusのテキスト形式で出力されることを確認する.
+     */
+    @Test
+    public void testPrometheusText() {
+        MetricsRegistry registry = new MetricsRegistry();
+        String[] labels = {MetricsRegistry.LABEL_PLUGIN, MetricsRegistry.LABEL_API};
+        registry.histogram(MetricsRegistry.PLUGIN_REQUEST_LATENCY, "latency", labels, "p\"1", "/a").record(1500);
+        registry.counter(MetricsRegistry.PLUGIN_REQUEST_TIMEOUTS, "timeouts", labels, "p\"1", "/a").increment();
+
+        String text = registry.toPrometheusText();
+        assertTrue(text, text.contains("# TYPE dconnect_plugin_request_latency_seconds summary\n"));
+        assertTrue(text, text.contains(
+            "dconnect_plugin_request_latency_seconds{plugin=\"p\\\"1\",api=\"/a\",quantile=\"0.5\"} 0.0015"));
+        assertTrue(text, text.contains(
+            "dconnect_plugin_request_latency_seconds_count{plugin=\"p\\\"1\",api=\"/a\"} 1\n"));
+        assertTrue(text, text.contains("dconnect_plugin_request_timeouts_total{plugin=\"p\\\"1\",api=\"/a\"} 1\n"));
+
+        registry.removeByLabel(MetricsRegistry.LABEL_PLUGIN, "p\"1");
+        assertTrue(registry.toPrometheusText(), !registry.toPrometheusText().contains("api="));
+    }
+}
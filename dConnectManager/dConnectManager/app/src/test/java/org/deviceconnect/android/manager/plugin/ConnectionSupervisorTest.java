@@ -0,0 +1,393 @@
+/*
+ ConnectionSupervisorTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.plugin;
+
+
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ConnectionSupervisor}クラスの単体テスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ConnectionSupervisorTest {
+
+    /** テスト用の ping 実行間隔. 単位はミリ秒. */
+    private static final long PING_INTERVAL = 50;
+
+    /** テスト用の ping 応答待ち時間. 単位はミリ秒. */
+    private static final long PING_TIMEOUT = 100;
+
+    /** テスト用の再接続間隔の最小値. 単位はミリ秒. */
+    private static final long MIN_RETRY_DELAY = 20;
+
+    /** テスト用の再接続間隔の最大値. 単位はミリ秒. */
+    private static final long MAX_RETRY_DELAY = 200;
+
+    private final ConnectionSupervisor mSupervisor =
+        new ConnectionSupervisor(PING_INTERVAL, PING_TIMEOUT, MIN_RETRY_DELAY, MAX_RETRY_DELAY);
+
+    @After
+    public void tearDown() {
+        mSupervisor.shutdown();
+    }
+
+    /**
+     * 複数のプラグインへの接続処理が並列に実行されることを確認する.
+     */
+    @Test
+    public void testConnectConcurrently() throws Exception {
+        final int count = 16;
+        final long bindDelay = 300;
+        List<FakePluginConnection> connections = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            connections.add(new FakePluginConnection("plugin" + i, new Random(i), bindDelay, bindDelay, 0));
+        }
+
+        mSupervisor.start();
+        long start = System.currentTimeMillis();
+        for (FakePluginConnection connection : connections) {
+            mSupervisor.watch(connection);
+        }
+        for (FakePluginConnection connection : connections) {
+            Assert.assertTrue(mSupervisor.awaitConnection(connection, 5000));
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        // 直列に接続した場合は count * bindDelay かかる
+        Assert.assertTrue("elapsed = " + elapsed, elapsed < count * bindDelay / 2);
+        for (FakePluginConnection connection : connections) {
+            Assert.assertTrue(mSupervisor.isAvailable(connection.getPluginId()));
+        }
+    }
+
+    /**
+     * ping により応答時間が計測されることを確認する.
+     */
+    @Test
+    public void testRoundTripTime() throws Exception {
+        FakePluginConnection connection = new FakePluginConnection("plugin", new Random(0), 0, 0, 0);
+        connection.setPingDelay(10);
+
+        mSupervisor.start();
+        mSupervisor.watch(connection);
+        Assert.assertTrue(mSupervisor.awaitConnection(connection, 1000));
+
+        waitUntil(new Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return mSupervisor.getRoundTripTime("plugin") >= 0;
+            }
+        }, 1000);
+        Assert.assertTrue(mSupervisor.getRoundTripTime("plugin") >= 10);
+    }
+
+    /**
+     * 応答しなくなったプラグインが、ping のタイムアウトにより利用不可とされることを確認する.
+     */
+    @Test
+    public void testHungPluginIsMarkedUnavailable() throws Exception {
+        final FakePluginConnection connection = new FakePluginConnection("plugin", new Random(0), 0, 0, 0);
+
+        mSupervisor.start();
+        mSupervisor.watch(connection);
+        Assert.assertTrue(mSupervisor.awaitConnection(connection, 1000));
+        Assert.assertTrue(mSupervisor.isAvailable("plugin"));
+
+        connection.setHung(true);
+        long start = System.currentTimeMillis();
+        waitUntil(new Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return !mSupervisor.isAvailable("plugin")
+                    && connection.getState() != ConnectionState.CONNECTED;
+            }
+        }, 2000);
+        long elapsed = System.currentTimeMillis() - start;
+
+        // ping 間隔と ping タイムアウトの合計程度で利用不可と判定され、切断される
+        Assert.assertTrue("elapsed = " + elapsed, elapsed <= PING_INTERVAL + PING_TIMEOUT + 200);
+        Assert.assertFalse(mSupervisor.awaitConnection(connection, 0));
+    }
+
+    /**
+     * 強制終了したプラグインに対して再接続が行われることを確認する.
+     */
+    @Test
+    public void testReconnectAfterTermination() throws Exception {
+        final FakePluginConnection connection = new FakePluginConnection("plugin", new Random(0), 0, 10, 0);
+
+        mSupervisor.start();
+        mSupervisor.watch(connection);
+        Assert.assertTrue(mSupervisor.awaitConnection(connection, 1000));
+
+        connection.kill();
+        Assert.assertFalse(mSupervisor.awaitConnection(connection, 0));
+        connection.revive();
+
+        waitUntil(new Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return connection.getState() == ConnectionState.CONNECTED && mSupervisor.isAvailable("plugin");
+            }
+        }, 2000);
+        Assert.assertEquals(2, connection.getConnectCount());
+    }
+
+    /**
+     * 接続に失敗し続けるプラグインに対して、再接続の間隔が広がっていくことを確認する.
+     */
+    @Test
+    public void testExponentialBackoff() throws Exception {
+        Assert.assertEquals(MIN_RETRY_DELAY, mSupervisor.computeRetryDelay(1));
+        Assert.assertEquals(MIN_RETRY_DELAY * 2, mSupervisor.computeRetryDelay(2));
+        Assert.assertEquals(MIN_RETRY_DELAY * 4, mSupervisor.computeRetryDelay(3));
+        Assert.assertEquals(MAX_RETRY_DELAY, mSupervisor.computeRetryDelay(10));
+        Assert.assertEquals(MAX_RETRY_DELAY, mSupervisor.computeRetryDelay(Integer.MAX_VALUE));
+
+        FakePluginConnection connection = new FakePluginConnection("plugin", new Random(0), 0, 0, 0);
+        connection.kill();
+
+        mSupervisor.watch(connection);
+        Thread.sleep(1000);
+
+        // 20 + 40 + 80 + 160 + 200 + 200 + 200 ... のため、1秒間では高々8回程度しか試行されない
+        int attempts = connection.getConnectCount();
+        Assert.assertTrue("attempts = " + attempts, attempts >= 4 && attempts <= 9);
+        Assert.assertFalse(mSupervisor.isAvailable("plugin"));
+    }
+
+    /**
+     * ランダムに強制終了し、バインドが遅延するプラグイン群が、最終的にすべて利用可能になることを確認する.
+     */
+    @Test
+    public void testRandomlyDyingPlugins() throws Exception {
+        final int count = 10;
+        final Random random = new Random(1234);
+        final List<FakePluginConnection> connections = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            connections.add(new FakePluginConnection("plugin" + i, new Random(i), 0, 80, 0.3));
+        }
+
+        mSupervisor.start();
+        for (FakePluginConnection connection : connections) {
+            mSupervisor.watch(connection);
+        }
+
+        long end = System.currentTimeMillis() + 2000;
+        while (System.currentTimeMillis() < end) {
+            FakePluginConnection target = connections.get(random.nextInt(count));
+            switch (random.nextInt(3)) {
+                case 0:
+                    target.kill();
+                    break;
+                case 1:
+                    target.setHung(true);
+                    break;
+                default:
+                    target.revive();
+                    break;
+            }
+            Thread.sleep(random.nextInt(50));
+        }
+        for (FakePluginConnection connection : connections) {
+            connection.revive();
+        }
+
+        waitUntil(new Condition() {
+            @Override
+            public boolean isSatisfied() {
+                for (FakePluginConnection connection : connections) {
+                    if (connection.getState() != ConnectionState.CONNECTED
+                        || !mSupervisor.isAvailable(connection.getPluginId())) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }, 5000);
+    }
+
+    private interface Condition {
+        boolean isSatisfied();
+    }
+
+    private static void waitUntil(final Condition condition, final long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (!condition.isSatisfied()) {
+            if (System.currentTimeMillis() > end) {
+                Assert.fail("timeout");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * テスト用のプラグインとの接続.
+     *
+     * バインドの遅延、バインドの失敗、プロセスの強制終了、応答停止を模擬する.
+     */
+    private static class FakePluginConnection implements Connection {
+
+        private final String mPluginId;
+        private final Random mRandom;
+        private final long mMinBindDelay;
+        private final long mMaxBindDelay;
+        private final double mFailureRate;
+        private final List<ConnectionStateListener> mListeners = new CopyOnWriteArrayList<>();
+        private final AtomicInteger mConnectCount = new AtomicInteger();
+        private volatile ConnectionState mState = ConnectionState.DISCONNECTED;
+        private volatile ConnectionError mError;
+        private volatile boolean mAlive = true;
+        private volatile boolean mHung;
+        private volatile long mPingDelay;
+
+        FakePluginConnection(final String pluginId, final Random random,
+                             final long minBindDelay, final long maxBindDelay,
+                             final double failureRate) {
+            mPluginId = pluginId;
+            mRandom = random;
+            mMinBindDelay = minBindDelay;
+            mMaxBindDelay = maxBindDelay;
+            mFailureRate = failureRate;
+        }
+
+        int getConnectCount() {
+            return mConnectCount.get();
+        }
+
+        void setPingDelay(final long delay) {
+            mPingDelay = delay;
+        }
+
+        synchronized void setHung(final boolean hung) {
+            mHung = hung;
+        }
+
+        synchronized void kill() {
+            mAlive = false;
+            mHung = false;
+            if (mState == ConnectionState.CONNECTED) {
+                setState(ConnectionState.SUSPENDED, ConnectionError.TERMINATED);
+            }
+        }
+
+        synchronized void revive() {
+            mAlive = true;
+            mHung = false;
+        }
+
+        private void setState(final ConnectionState state, final ConnectionError error) {
+            mState = state;
+            mError = error;
+            for (ConnectionStateListener l : mListeners) {
+                l.onConnectionStateChanged(mPluginId, state);
+            }
+        }
+
+        @Override
+        public String getPluginId() {
+            return mPluginId;
+        }
+
+        @Override
+        public ConnectionType getType() {
+            return ConnectionType.BINDER;
+        }
+
+        @Override
+        public ConnectionState getState() {
+            return mState;
+        }
+
+        @Override
+        public void connect() throws ConnectingException {
+            long delay;
+            boolean fail;
+            synchronized (this) {
+                if (!(mState == ConnectionState.DISCONNECTED || mState == ConnectionState.SUSPENDED)) {
+                    return;
+                }
+                mConnectCount.incrementAndGet();
+                setState(ConnectionState.CONNECTING, null);
+                delay = mMinBindDelay + (long) (mRandom.nextDouble() * (mMaxBindDelay - mMinBindDelay));
+                fail = mRandom.nextDouble() < mFailureRate;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new ConnectingException("Connection procedure was canceled.");
+            }
+            synchronized (this) {
+                if (mState != ConnectionState.CONNECTING) {
+                    throw new ConnectingException("Connection procedure was canceled.");
+                }
+                // 応答停止中のプロセスはバインドにも応答しない
+                if (fail || !mAlive || mHung) {
+                    setState(ConnectionState.SUSPENDED, ConnectionError.NOT_RESPONDED);
+                    throw new ConnectingException("Failed to bind with plugin: " + mPluginId);
+                }
+                setState(ConnectionState.CONNECTED, null);
+            }
+        }
+
+        @Override
+        public synchronized void disconnect() {
+            setState(ConnectionState.DISCONNECTED, null);
+        }
+
+        @Override
+        public void addConnectionStateListener(final ConnectionStateListener listener) {
+            mListeners.add(listener);
+        }
+
+        @Override
+        public void removeConnectionStateListener(final ConnectionStateListener listener) {
+            mListeners.remove(listener);
+        }
+
+        @Override
+        public void send(final Intent message) throws MessagingException {
+            if (mState != ConnectionState.CONNECTED) {
+                throw new MessagingException(MessagingException.Reason.NOT_CONNECTED);
+            }
+        }
+
+        @Override
+        public boolean ping() {
+            if (mState != ConnectionState.CONNECTED) {
+                return false;
+            }
+            try {
+                while (mHung) {
+                    Thread.sleep(10);
+                }
+                if (mPingDelay > 0) {
+                    Thread.sleep(mPingDelay);
+                }
+            } catch (InterruptedException e) {
+                return false;
+            }
+            return mAlive;
+        }
+
+        @Override
+        public ConnectionError getCurrentError() {
+            return mError;
+        }
+    }
+}
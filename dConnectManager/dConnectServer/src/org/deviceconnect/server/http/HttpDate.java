@@ -0,0 +1,81 @@
+/*
+ HttpDate.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.http;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * HTTPヘッダーで使用する日付形式(RFC 7231 IMF-fixdate)を扱うユーティリティクラス.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class HttpDate {
+
+    /**
+     * 日付の形式.
+     */
+    private static final String PATTERN = "EEE, dd MMM yyyy HH:mm:ss 'GMT'";
+
+    /**
+     * コンストラクタ.
+     * ユーティリティクラスなので、インスタンスは作成させない。
+     */
+    private HttpDate() {
+    }
+
+    /**
+     * 時刻をHTTPの日付形式に変換する.
+     *
+     * @param time 時刻. 単位はミリ秒.
+     * @return HTTPの日付形式の文字列
+     */
+    public static String format(final long time) {
+        return createFormat().format(new Date(time));
+    }
+
+    /**
+     * HTTPの日付形式の文字列を解析する.
+     *
+     * @param text HTTPの日付形式の文字列
+     * @return 時刻. 単位はミリ秒. 解析できない場合は-1
+     */
+    public static long parse(final String text) {
+        if (text == null) {
+            return -1;
+        }
+        try {
+            return createFormat().parse(text.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 時刻1が時刻2以前であるかを秒単位で確認する.
+     * <p>
+     * HTTPの日付形式は秒未満を表現できないため、比較は秒単位で行う.
+     * </p>
+     *
+     * @param time1 時刻
+     * @param time2 時刻
+     * @return time1がtime2以前の場合はtrue、それ以外はfalse
+     */
+    public static boolean isNotAfter(final long time1, final long time2) {
+        return time1 / 1000 <= time2 / 1000;
+    }
+
+    private static SimpleDateFormat createFormat() {
+        // SimpleDateFormatはスレッドセーフではないため、呼び出しごとに作成する
+        SimpleDateFormat format = new SimpleDateFormat(PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+}
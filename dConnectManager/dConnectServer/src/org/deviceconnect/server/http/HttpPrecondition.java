@@ -0,0 +1,74 @@
+/*
+ HttpPrecondition.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.http;
+
+import java.util.Map;
+
+/**
+ * 条件付きリクエスト(RFC 7232)の条件を評価するユーティリティクラス.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class HttpPrecondition {
+
+    /**
+     * コンストラクタ.
+     * ユーティリティクラスなので、インスタンスは作成させない。
+     */
+    private HttpPrecondition() {
+    }
+
+    /**
+     * 条件付きGETの条件により、304 Not Modifiedを返却するか確認する.
+     * <p>
+     * If-None-Matchが指定されている場合は、If-Modified-Sinceを無視する.
+     * </p>
+     *
+     * @param headers リクエストヘッダー. キーは小文字であること.
+     * @param etag コンテンツのETag
+     * @param lastModified コンテンツの更新日時. 不明な場合は0
+     * @return 304 Not Modifiedを返却する場合はtrue、それ以外はfalse
+     */
+    public static boolean isNotModified(final Map<String, String> headers, final String etag,
+                                        final long lastModified) {
+        String ifNoneMatch = headers.get("if-none-match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = HttpDate.parse(headers.get("if-modified-since"));
+        return lastModified > 0 && ifModifiedSince >= 0 && HttpDate.isNotAfter(lastModified, ifModifiedSince);
+    }
+
+    /**
+     * If-Rangeの条件により、Rangeを適用するか確認する.
+     *
+     * @param ifRange If-Rangeヘッダーの値
+     * @param etag コンテンツのETag
+     * @param lastModified コンテンツの更新日時. 不明な場合は0
+     * @return Rangeを適用する場合はtrue、それ以外はfalse
+     */
+    public static boolean isRangeApplicable(final String ifRange, final String etag, final long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"")) {
+            return value.equals(etag);
+        }
+        long date = HttpDate.parse(value);
+        return lastModified > 0 && date >= 0 && lastModified / 1000 == date / 1000;
+    }
+}
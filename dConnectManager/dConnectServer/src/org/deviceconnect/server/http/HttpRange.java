@@ -0,0 +1,197 @@
+/*
+ HttpRange.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * HTTPのRangeヘッダーで指定されたバイト範囲.
+ *
+ * <p>
+ * RFC 7233 のbytes単位の範囲指定のみに対応する.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class HttpRange {
+
+    /**
+     * 範囲指定の単位.
+     */
+    private static final String BYTES_UNIT = "bytes=";
+
+    /**
+     * 1つのリクエストで受け付ける範囲の最大数.
+     * <p>
+     * これを超える範囲が指定された場合は、範囲指定を無視してファイル全体を返却する.
+     * </p>
+     */
+    public static final int MAX_RANGES = 16;
+
+    /**
+     * 範囲の開始位置.
+     */
+    private final long mStart;
+
+    /**
+     * 範囲の終了位置. この位置を含む.
+     */
+    private final long mEnd;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param start 開始位置
+     * @param end   終了位置. この位置を含む.
+     */
+    public HttpRange(final long start, final long end) {
+        mStart = start;
+        mEnd = end;
+    }
+
+    /**
+     * 範囲の開始位置を取得する.
+     *
+     * @return 開始位置
+     */
+    public long getStart() {
+        return mStart;
+    }
+
+    /**
+     * 範囲の終了位置を取得する.
+     *
+     * @return 終了位置. この位置を含む.
+     */
+    public long getEnd() {
+        return mEnd;
+    }
+
+    /**
+     * 範囲のバイト数を取得する.
+     *
+     * @return バイト数
+     */
+    public long getLength() {
+        return mEnd - mStart + 1;
+    }
+
+    /**
+     * Content-Rangeヘッダーの値を作成する.
+     *
+     * @param totalLength コンテンツ全体のサイズ
+     * @return Content-Rangeヘッダーの値
+     */
+    public String toContentRange(final long totalLength) {
+        return "bytes " + mStart + "-" + mEnd + "/" + totalLength;
+    }
+
+    /**
+     * Rangeヘッダーを解析する.
+     * <p>
+     * 重複または隣接する範囲は1つにまとめて、開始位置の昇順に並べる.
+     * </p>
+     *
+     * @param header      Rangeヘッダーの値
+     * @param totalLength コンテンツ全体のサイズ
+     * @return 範囲の一覧. 満たせる範囲が1つもない場合は空のリスト. 範囲指定を無視する場合はnull.
+     */
+    public static List<HttpRange> parse(final String header, final long totalLength) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<HttpRange> ranges = new ArrayList<HttpRange>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            try {
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    // bytes=-500 のように末尾からのバイト数が指定された場合
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, totalLength - suffix);
+                    end = totalLength - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    if (last.isEmpty()) {
+                        end = totalLength - 1;
+                    } else {
+                        long lastPos = Long.parseLong(last);
+                        if (lastPos < start) {
+                            // 終了位置が開始位置よりも前にある場合は構文エラー
+                            return null;
+                        }
+                        end = Math.min(lastPos, totalLength - 1);
+                    }
+                }
+                if (start < 0) {
+                    return null;
+                }
+                if (start >= totalLength || start > end) {
+                    // 満たせない範囲は読み飛ばす
+                    continue;
+                }
+                ranges.add(new HttpRange(start, end));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    /**
+     * 重複または隣接する範囲を1つにまとめる.
+     *
+     * @param ranges 範囲の一覧
+     * @return まとめた範囲の一覧
+     */
+    private static List<HttpRange> coalesce(final List<HttpRange> ranges) {
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        Collections.sort(ranges, new Comparator<HttpRange>() {
+            @Override
+            public int compare(final HttpRange r1, final HttpRange r2) {
+                return r1.mStart < r2.mStart ? -1 : (r1.mStart == r2.mStart ? 0 : 1);
+            }
+        });
+        List<HttpRange> result = new ArrayList<HttpRange>();
+        HttpRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            HttpRange next = ranges.get(i);
+            if (next.mStart <= current.mEnd + 1) {
+                current = new HttpRange(current.mStart, Math.max(current.mEnd, next.mEnd));
+            } else {
+                result.add(current);
+                current = next;
+            }
+        }
+        result.add(current);
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ HttpPreconditionTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.http;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link HttpPrecondition}クラスの単体テスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class HttpPreconditionTest {
+
+    /** テスト用のETag. */
+    private static final String ETAG = "\"abc\"";
+
+    /** テスト用の更新日時. Sun, 06 Nov 1994 08:49:37 GMT. */
+    private static final long LAST_MODIFIED = 784111777000L;
+
+    private static Map<String, String> headers(final String name, final String value) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(name, value);
+        return headers;
+    }
+
+    /**
+     * If-None-Matchに一致するETagが含まれる場合に304となることを確認する.
+     */
+    @Test
+    public void testIfNoneMatch() {
+        assertTrue(HttpPrecondition.isNotModified(headers("if-none-match", "\"x\", W/\"abc\""), ETAG, LAST_MODIFIED));
+        assertTrue(HttpPrecondition.isNotModified(headers("if-none-match", "*"), ETAG, LAST_MODIFIED));
+        assertFalse(HttpPrecondition.isNotModified(headers("if-none-match", "\"x\""), ETAG, LAST_MODIFIED));
+    }
+
+    /**
+     * If-None-Matchが指定されている場合はIf-Modified-Sinceを無視することを確認する.
+     */
+    @Test
+    public void testIfNoneMatchOverridesIfModifiedSince() {
+        Map<String, String> headers = headers("if-none-match", "\"x\"");
+        headers.put("if-modified-since", HttpDate.format(LAST_MODIFIED));
+        assertFalse(HttpPrecondition.isNotModified(headers, ETAG, LAST_MODIFIED));
+    }
+
+    /**
+     * If-Modified-Sinceを秒単位で比較することを確認する.
+     */
+    @Test
+    public void testIfModifiedSince() {
+        Map<String, String> headers = headers("if-modified-since", "Sun, 06 Nov 1994 08:49:37 GMT");
+        assertTrue(HttpPrecondition.isNotModified(headers, ETAG, LAST_MODIFIED + 999));
+        assertFalse(HttpPrecondition.isNotModified(headers, ETAG, LAST_MODIFIED + 1000));
+        // 更新日時が不明な場合
+        assertFalse(HttpPrecondition.isNotModified(headers, ETAG, 0));
+        // 解析できない日付
+        assertFalse(HttpPrecondition.isNotModified(headers("if-modified-since", "yesterday"), ETAG, LAST_MODIFIED));
+        assertFalse(HttpPrecondition.isNotModified(new HashMap<String, String>(), ETAG, LAST_MODIFIED));
+    }
+
+    /**
+     * If-Rangeの条件を確認する.
+     */
+    @Test
+    public void testIfRange() {
+        assertTrue(HttpPrecondition.isRangeApplicable(null, ETAG, LAST_MODIFIED));
+        assertTrue(HttpPrecondition.isRangeApplicable(" \"abc\" ", ETAG, LAST_MODIFIED));
+        assertFalse(HttpPrecondition.isRangeApplicable("\"x\"", ETAG, LAST_MODIFIED));
+        assertTrue(HttpPrecondition.isRangeApplicable("Sun, 06 Nov 1994 08:49:37 GMT", ETAG, LAST_MODIFIED + 500));
+        assertFalse(HttpPrecondition.isRangeApplicable("Sun, 06 Nov 1994 08:49:36 GMT", ETAG, LAST_MODIFIED));
+        assertFalse(HttpPrecondition.isRangeApplicable("Sun, 06 Nov 1994 08:49:37 GMT", ETAG, 0));
+        assertFalse(HttpPrecondition.isRangeApplicable("yesterday", ETAG, LAST_MODIFIED));
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ DConnectServerNanoHttpdStaticFileBenchmark.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.deviceconnect.server.DConnectServer;
+import org.deviceconnect.server.DConnectServerConfig;
+import org.deviceconnect.server.DConnectServerError;
+import org.deviceconnect.server.DConnectServerEventListener;
+import org.deviceconnect.server.http.HttpRequest;
+import org.deviceconnect.server.http.HttpResponse;
+import org.deviceconnect.server.websocket.DConnectWebSocket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * DConnectServerNanoHttpdの静的コンテンツ配信のスループットを計測する.
+ * <p>
+ * 計測結果はログに出力する.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DConnectServerNanoHttpdStaticFileBenchmark {
+
+    /**
+     * ログ用タグ.
+     */
+    private static final String TAG = "StaticFileBenchmark";
+
+    /**
+     * HTTP通信用URIを定義.
+     */
+    private static final String HTTP_LOCALHOST_PORT = "http://localhost:9999";
+
+    /**
+     * ポート番号.
+     */
+    private static final int PORT = 9999;
+
+    /**
+     * メモリ上にキャッシュされるファイルのサイズ.
+     */
+    private static final int SMALL_FILE_SIZE = 16 * 1024;
+
+    /**
+     * メモリ上にキャッシュされないファイルのサイズ.
+     */
+    private static final int LARGE_FILE_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * ドキュメントルート.
+     */
+    private File mDocumentRoot;
+
+    /**
+     * テスト対象のサーバ.
+     */
+    private DConnectServer mServer;
+
+    private Context getContext() {
+        return InstrumentationRegistry.getTargetContext();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mDocumentRoot = new File(getContext().getFilesDir(), "benchmark");
+        mDocumentRoot.mkdirs();
+        writeFile(new File(mDocumentRoot, "small.js"), SMALL_FILE_SIZE);
+        writeFile(new File(mDocumentRoot, "large.mp4"), LARGE_FILE_SIZE);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        DConnectServerConfig config = new DConnectServerConfig.Builder().port(PORT)
+                .documentRootPath(mDocumentRoot.getPath()).build();
+        mServer = new DConnectServerNanoHttpd(config, getContext());
+        mServer.setServerEventListener(new DConnectServerEventListener() {
+            @Override
+            public boolean onReceivedHttpRequest(final HttpRequest req, final HttpResponse res) {
+                res.setCode(HttpResponse.StatusCode.NOT_FOUND);
+                return true;
+            }
+
+            @Override
+            public void onError(final DConnectServerError errorCode) {
+            }
+
+            @Override
+            public void onServerLaunched() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onWebSocketConnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketDisconnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketMessage(final DConnectWebSocket webSocket, final String message) {
+            }
+        });
+        mServer.start();
+        latch.await(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+        File[] files = mDocumentRoot.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * メモリ上にキャッシュされる小さいファイルの取得を繰り返す.
+     */
+    @Test
+    public void benchmark_small_file() {
+        measure("small file", "/small.js", null, 200, SMALL_FILE_SIZE, 200);
+    }
+
+    /**
+     * 取得済みのファイルに対して条件付きGETを繰り返す.
+     */
+    @Test
+    public void benchmark_not_modified() {
+        String etag = HttpUtils.get(HTTP_LOCALHOST_PORT + "/small.js").getHeader("ETag");
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", etag);
+        measure("not modified", "/small.js", headers, 200, 0, 304);
+    }
+
+    /**
+     * 大きいファイルの取得を繰り返す.
+     */
+    @Test
+    public void benchmark_large_file() {
+        measure("large file", "/large.mp4", null, 10, LARGE_FILE_SIZE, 200);
+    }
+
+    /**
+     * 大きいファイルの末尾の範囲の取得を繰り返す.
+     */
+    @Test
+    public void benchmark_large_file_range() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=-1048576");
+        measure("large file range", "/large.mp4", headers, 50, 1024 * 1024, 206);
+    }
+
+    private void measure(final String name, final String path, final Map<String, String> headers,
+                         final int count, final long size, final int expectedStatus) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + path, headers, null);
+            assertThat(response.getStatusCode(), is(expectedStatus));
+            if (response.getBody() != null) {
+                response.getBody().delete();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1000000000.0;
+        Log.i(TAG, String.format(Locale.ENGLISH, "%s: %d requests in %.3f s, %.1f req/s, %.2f MB/s",
+                name, count, seconds, count / seconds, size * count / seconds / (1024 * 1024)));
+    }
+
+    private static void writeFile(final File file, final int size) throws IOException {
+        byte[] buf = new byte[8192];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = (byte) i;
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            for (int written = 0; written < size; written += buf.length) {
+                out.write(buf, 0, Math.min(buf.length, size - written));
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ DConnectServerNanoHttpdStaticFileTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.deviceconnect.server.DConnectServer;
+import org.deviceconnect.server.DConnectServerConfig;
+import org.deviceconnect.server.DConnectServerError;
+import org.deviceconnect.server.DConnectServerEventListener;
+import org.deviceconnect.server.http.HttpRequest;
+import org.deviceconnect.server.http.HttpResponse;
+import org.deviceconnect.server.websocket.DConnectWebSocket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * DConnectServerNanoHttpdの静的コンテンツ配信のテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DConnectServerNanoHttpdStaticFileTest {
+
+    /**
+     * HTTP通信用URIを定義.
+     */
+    private static final String HTTP_LOCALHOST_PORT = "http://localhost:9999";
+
+    /**
+     * ポート番号.
+     */
+    private static final int PORT = 9999;
+
+    /**
+     * テスト用のファイルのサイズ.
+     * <p>
+     * メモリ上にキャッシュされないサイズとする.
+     * </p>
+     */
+    private static final int FILE_SIZE = 256 * 1024;
+
+    /**
+     * ドキュメントルート.
+     */
+    private File mDocumentRoot;
+
+    /**
+     * テスト用のファイル.
+     */
+    private File mFile;
+
+    /**
+     * テスト用のファイルの内容.
+     */
+    private byte[] mData;
+
+    /**
+     * テスト対象のサーバ.
+     */
+    private DConnectServer mServer;
+
+    private Context getContext() {
+        return InstrumentationRegistry.getTargetContext();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mDocumentRoot = new File(getContext().getFilesDir(), "static");
+        mDocumentRoot.mkdirs();
+
+        mData = new byte[FILE_SIZE];
+        for (int i = 0; i < mData.length; i++) {
+            mData[i] = (byte) i;
+        }
+        mFile = new File(mDocumentRoot, "test.txt");
+        writeFile(mFile, mData);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        DConnectServerConfig config = new DConnectServerConfig.Builder().port(PORT)
+                .documentRootPath(mDocumentRoot.getPath()).build();
+        mServer = new DConnectServerNanoHttpd(config, getContext());
+        mServer.setServerEventListener(new DConnectServerEventListener() {
+            @Override
+            public boolean onReceivedHttpRequest(final HttpRequest req, final HttpResponse res) {
+                res.setCode(HttpResponse.StatusCode.NOT_FOUND);
+                return true;
+            }
+
+            @Override
+            public void onError(final DConnectServerError errorCode) {
+            }
+
+            @Override
+            public void onServerLaunched() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onWebSocketConnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketDisconnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketMessage(final DConnectWebSocket webSocket, final String message) {
+            }
+        });
+        mServer.start();
+        latch.await(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+        File[] files = mDocumentRoot.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * 静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに200が返却されること。
+     * ・ETag、Last-Modified、Accept-Ranges: bytesが返却されること。
+     * ・ファイルの内容がすべて返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_get() throws IOException {
+        HttpUtils.Response response = HttpUtils.get(HTTP_LOCALHOST_PORT + "/test.txt");
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getHeader("ETag"), is(notNullValue()));
+        assertThat(response.getHeader("Last-Modified"), is(notNullValue()));
+        assertThat(response.getHeader("Accept-Ranges"), is("bytes"));
+        assertBody(response, 0, FILE_SIZE);
+    }
+
+    /**
+     * If-None-Matchに取得済みのETagを指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに304が返却されること。
+     * ・同じETagが返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_if_none_match() {
+        String etag = HttpUtils.get(HTTP_LOCALHOST_PORT + "/test.txt").getHeader("ETag");
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", "\"other\", " + etag);
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(304));
+        assertThat(response.getHeader("ETag"), is(etag));
+    }
+
+    /**
+     * If-None-Matchに異なるETagを指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに200が返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_if_none_match_modified() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", "\"other\"");
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(200));
+    }
+
+    /**
+     * If-Modified-Sinceに取得済みのLast-Modifiedを指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに304が返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_if_modified_since() {
+        String lastModified = HttpUtils.get(HTTP_LOCALHOST_PORT + "/test.txt").getHeader("Last-Modified");
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-Modified-Since", lastModified);
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(304));
+    }
+
+    /**
+     * ファイルの更新後に、更新前のETagをIf-None-Matchに指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに200が返却されること。
+     * ・更新前と異なるETagが返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_if_none_match_after_update() throws IOException {
+        String etag = HttpUtils.get(HTTP_LOCALHOST_PORT + "/test.txt").getHeader("ETag");
+
+        writeFile(mFile, new byte[100]);
+        mFile.setLastModified(System.currentTimeMillis() + 2000);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", etag);
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getHeader("ETag").equals(etag), is(false));
+        assertThat(response.getBody().length(), is(100L));
+    }
+
+    /**
+     * Rangeに1つの範囲を指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに206が返却されること。
+     * ・Content-Rangeに指定した範囲が返却されること。
+     * ・指定した範囲のデータが返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_range() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=1000-1999");
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(206));
+        assertThat(response.getHeader("Content-Range"), is("bytes 1000-1999/" + FILE_SIZE));
+        assertBody(response, 1000, 1000);
+    }
+
+    /**
+     * Rangeに末尾からのバイト数を指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに206が返却されること。
+     * ・ファイルの末尾のデータが返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_range_suffix() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=-500");
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(206));
+        assertThat(response.getHeader("Content-Range"),
+                is("bytes " + (FILE_SIZE - 500) + "-" + (FILE_SIZE - 1) + "/" + FILE_SIZE));
+        assertBody(response, FILE_SIZE - 500, 500);
+    }
+
+    /**
+     * Rangeに複数の範囲を指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに206が返却されること。
+     * ・Content-Typeにmultipart/byterangesが返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_multi_range() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=0-99,1000-1099");
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(206));
+        assertThat(response.getHeader("Content-Type").startsWith("multipart/byteranges; boundary="), is(true));
+        assertThat(response.getHeader("Content-Range"), is(nullValue()));
+
+        String body = new String(readFile(response.getBody()), "ISO-8859-1");
+        assertThat(body.contains("Content-Range: bytes 0-99/" + FILE_SIZE), is(true));
+        assertThat(body.contains("Content-Range: bytes 1000-1099/" + FILE_SIZE), is(true));
+    }
+
+    /**
+     * Rangeにファイルサイズを超える範囲を指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに416が返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_range_not_satisfiable() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=" + FILE_SIZE + "-");
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(416));
+        assertThat(response.getHeader("Content-Range"), is("bytes */" + FILE_SIZE));
+    }
+
+    /**
+     * If-Rangeに異なるETagを指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・Rangeが無視されて、ステータスコードに200が返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_if_range_mismatch() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=0-99");
+        headers.put("If-Range", "\"other\"");
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(200));
+        assertBody(response, 0, FILE_SIZE);
+    }
+
+    /**
+     * gzip圧縮済みのファイルが存在する場合に、Accept-Encoding: gzipを指定して静的コンテンツを取得する.
+     * <pre>
+     * 【期待する動作】
+     * ・ステータスコードに200が返却されること。
+     * ・Content-Encoding: gzipが返却されること。
+     * ・gzip圧縮済みのファイルの内容が返却されること。
+     * </pre>
+     */
+    @Test
+    public void staticFile_gzip() throws IOException {
+        File gzipFile = new File(mDocumentRoot, "test.txt.gz");
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(gzipFile));
+        try {
+            out.write(mData);
+        } finally {
+            out.close();
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip");
+        HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getHeader("Content-Encoding"), is("gzip"));
+        assertThat(response.getHeader("Vary"), is("Accept-Encoding"));
+        assertThat(response.getBody().length(), is(gzipFile.length()));
+
+        headers.put("Accept-Encoding", "gzip;q=0");
+        response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/test.txt", headers, null);
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getHeader("Content-Encoding"), is(nullValue()));
+    }
+
+    private void assertBody(final HttpUtils.Response response, final int offset, final int length) throws IOException {
+        byte[] body = readFile(response.getBody());
+        assertThat(body.length, is(length));
+        for (int i = 0; i < length; i++) {
+            if (body[i] != mData[offset + i]) {
+                assertThat("position " + (offset + i), body[i], is(mData[offset + i]));
+            }
+        }
+    }
+
+    private static void writeFile(final File file, final byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFile(final File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int len;
+            while (offset < data.length && (len = in.read(data, offset, data.length - offset)) > 0) {
+                offset += len;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
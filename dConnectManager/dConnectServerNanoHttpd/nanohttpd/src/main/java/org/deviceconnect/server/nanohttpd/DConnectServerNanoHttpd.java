@@ -12,6 +12,8 @@ import android.util.Log;
 import org.deviceconnect.server.DConnectServer;
 import org.deviceconnect.server.DConnectServerConfig;
 import org.deviceconnect.server.DConnectServerError;
+import org.deviceconnect.server.http.HttpPrecondition;
+import org.deviceconnect.server.http.HttpRange;
 import org.deviceconnect.server.http.HttpRequest;
 import org.deviceconnect.server.http.HttpResponse;
 import org.deviceconnect.server.nanohttpd.logger.AndroidHandler;
@@ -33,6 +35,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.lang.reflect.Field;
 import java.net.Socket;
 import java.nio.ByteBuffer;
@@ -41,6 +44,7 @@ import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -148,6 +152,27 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private static final String MIME_APPLICATION_JSON = "application/json; charset=UTF-8";
 
+    /**
+     * gzip圧縮済みの静的コンテンツの拡張子を定義.
+     */
+    private static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * 内容をメモリ上にキャッシュする静的コンテンツのサイズの上限を定義.
+     */
+    private static final int STATIC_FILE_CACHE_ENTRY_LIMIT = 64 * 1024;
+
+    /**
+     * メモリ上にキャッシュする静的コンテンツの合計サイズの上限を定義.
+     */
+    private static final long STATIC_FILE_CACHE_TOTAL_LIMIT = 4 * 1024 * 1024;
+
+    /**
+     * 静的コンテンツのキャッシュ.
+     */
+    private final StaticFileCache mStaticFileCache = new StaticFileCache(STATIC_FILE_CACHE_ENTRY_LIMIT,
+            STATIC_FILE_CACHE_TOTAL_LIMIT);
+
     /**
      * サーバーオブジェクト.
      */
@@ -277,6 +302,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         mServer.stop();
         mServer = null;
+        mStaticFileCache.clear();
     }
 
     @Override
@@ -502,6 +528,15 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             }
         }
 
+        @Override
+        protected boolean useGzipWhenAccepted(final Response r) {
+            // 部分的なレスポンスや圧縮済みのレスポンスは、NanoHTTPDで圧縮しない
+            if (r.getStatus() != Status.OK || r.getHeader("Content-Encoding") != null) {
+                return false;
+            }
+            return super.useGzipWhenAccepted(r);
+        }
+
         @Override
         protected WebSocket openWebSocket(final IHTTPSession handshake) {
             return new NanoWebSocket(handshake);
@@ -1037,28 +1072,136 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                     break;
                 }
 
-                // If-None-Match対応
-                String etag = Integer.toHexString((file.getAbsolutePath() + file.lastModified() + "" + file.length())
-                        .hashCode());
-                if (etag.equals(session.getHeaders().get("if-none-match"))) {
-                    retValue = newFixedLengthResponse(Status.NOT_MODIFIED, mime, "");
+                retValue = createStaticFileResponse(session, file, mime);
+
+            } while (false);
+            return retValue;
+        }
+
+        /**
+         * 静的コンテンツのレスポンスを作成する.
+         * <p>
+         * gzip圧縮済みのファイル(ファイル名.gz)が存在し、クライアントが対応している場合はそちらを返却する.
+         * また、条件付きGET(If-None-Match, If-Modified-Since)とRange(If-Range)に対応する.
+         * </p>
+         * @param session HTTPリクエストデータ
+         * @param file 静的コンテンツのファイル
+         * @param mime MIMEタイプ
+         * @return レスポンス
+         */
+        private Response createStaticFileResponse(final IHTTPSession session, final File file, final String mime) {
+            Map<String, String> headers = session.getHeaders();
+
+            StaticFileCache.Entry entry = mStaticFileCache.get(file);
+            String etag = entry.getETag();
+
+            // 圧縮済みのファイルは元のファイルよりも新しい場合のみ使用する
+            File gzipFile = new File(file.getPath() + GZIP_EXTENSION);
+            boolean hasVariant = gzipFile.isFile()
+                    && gzipFile.lastModified() >= entry.getLastModified() && isReadableFile(gzipFile);
+            boolean useGzip = hasVariant && acceptsGzip(headers.get("accept-encoding"));
+            if (useGzip) {
+                entry = mStaticFileCache.get(gzipFile);
+                etag = entry.getETag();
+                etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+            }
+
+            Response response;
+            if (HttpPrecondition.isNotModified(headers, etag, entry.getLastModified())) {
+                response = newFixedLengthResponse(Status.NOT_MODIFIED, mime, "");
+            } else {
+                List<HttpRange> ranges = null;
+                if (HttpPrecondition.isRangeApplicable(headers.get("if-range"), etag, entry.getLastModified())) {
+                    ranges = HttpRange.parse(headers.get("range"), entry.getLength());
+                }
+
+                long length = entry.getLength();
+                if (ranges == null) {
+                    response = newFixedLengthResponse(Status.OK, mime, entry.open(0, length), length);
+                } else if (ranges.isEmpty()) {
+                    response = newFixedLengthResponse(Status.RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, "");
+                    response.addHeader("Content-Range", "bytes */" + length);
+                } else if (ranges.size() == 1) {
+                    HttpRange range = ranges.get(0);
+                    response = newFixedLengthResponse(Status.PARTIAL_CONTENT, mime,
+                            entry.open(range.getStart(), range.getLength()), range.getLength());
+                    response.addHeader("Content-Range", range.toContentRange(length));
                 } else {
-                    try {
-                        retValue = newFixedLengthResponse(Status.OK, mime, new FileInputStream(file), file.length());
-                        retValue.addHeader("Content-Length", "" + file.length());
-                        retValue.addHeader("ETag", etag);
-                    } catch (FileNotFoundException e) {
-                        retValue = newFixedLengthResponse(Status.NOT_FOUND, MIME_PLAINTEXT, Status.NOT_FOUND.getDescription());
-                        break;
-                    }
+                    response = createMultipartRangeResponse(entry, mime, ranges);
                 }
+            }
 
-                // ByteRangeへの対応は必須ではないため、noneを指定して対応しないことを伝える。
-                // 対応が必要な場合はbyteを設定して実装すること。
-                retValue.addHeader("Accept-Ranges", "none");
+            response.addHeader("ETag", etag);
+            response.addHeader("Last-Modified", entry.getLastModifiedText());
+            response.addHeader("Accept-Ranges", "bytes");
+            if (useGzip && response.getStatus() != Status.RANGE_NOT_SATISFIABLE) {
+                response.addHeader("Content-Encoding", "gzip");
+            }
+            if (hasVariant) {
+                response.addHeader("Vary", "Accept-Encoding");
+            }
+            return response;
+        }
 
-            } while (false);
-            return retValue;
+        /**
+         * multipart/byterangesのレスポンスを作成する.
+         *
+         * @param entry 静的コンテンツのキャッシュ
+         * @param mime MIMEタイプ
+         * @param ranges 範囲の一覧
+         * @return レスポンス
+         */
+        private Response createMultipartRangeResponse(final StaticFileCache.Entry entry, final String mime,
+                                                      final List<HttpRange> ranges) {
+            String boundary = UUID.randomUUID().toString();
+            Charset charset = Charset.forName("ISO-8859-1");
+            List<InputStream> parts = new ArrayList<>();
+            long contentLength = 0;
+            for (HttpRange range : ranges) {
+                byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                        + "Content-Type: " + mime + "\r\n"
+                        + "Content-Range: " + range.toContentRange(entry.getLength()) + "\r\n"
+                        + "\r\n").getBytes(charset);
+                parts.add(new ByteArrayInputStream(partHeader));
+                parts.add(entry.open(range.getStart(), range.getLength()));
+                contentLength += partHeader.length + range.getLength();
+            }
+            byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(charset);
+            parts.add(new ByteArrayInputStream(end));
+            contentLength += end.length;
+
+            return newFixedLengthResponse(Status.PARTIAL_CONTENT, "multipart/byteranges; boundary=" + boundary,
+                    new SequenceInputStream(Collections.enumeration(parts)), contentLength);
+        }
+
+        /**
+         * クライアントがgzipに対応しているか確認する.
+         *
+         * @param acceptEncoding Accept-Encodingヘッダーの値
+         * @return gzipに対応している場合はtrue、それ以外はfalse
+         */
+        private boolean acceptsGzip(final String acceptEncoding) {
+            if (acceptEncoding == null) {
+                return false;
+            }
+            for (String coding : acceptEncoding.split(",")) {
+                String[] params = coding.split(";");
+                if (!"gzip".equalsIgnoreCase(params[0].trim())) {
+                    continue;
+                }
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+            return false;
         }
 
         /**
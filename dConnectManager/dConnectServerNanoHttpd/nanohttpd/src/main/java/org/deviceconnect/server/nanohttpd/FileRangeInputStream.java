@@ -0,0 +1,127 @@
+/*
+ FileRangeInputStream.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * ファイルの指定範囲を読み込むストリーム.
+ *
+ * <p>
+ * ファイルは最初の読み込み時に開き、範囲の終端に達した時点で閉じる.
+ * multipart/byteranges のように複数の範囲を連結する場合でも、同時に開くファイルは1つだけとなる.
+ * 開始位置へはFileChannelの位置を移動するため、範囲より前のデータを読み込むことはない.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class FileRangeInputStream extends InputStream {
+
+    /**
+     * 読み込むファイル.
+     */
+    private final File mFile;
+
+    /**
+     * ファイルを開いた時に読み込みを開始する位置.
+     */
+    private long mOffset;
+
+    /**
+     * 残りのバイト数.
+     */
+    private long mRemaining;
+
+    /**
+     * 読み込みに使用するチャンネル.
+     */
+    private FileChannel mChannel;
+
+    /**
+     * 1バイト読み込み用のバッファ.
+     */
+    private ByteBuffer mSingleByte;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param file   読み込むファイル
+     * @param offset 読み込みを開始する位置
+     * @param length 読み込むバイト数
+     */
+    FileRangeInputStream(final File file, final long offset, final long length) {
+        mFile = file;
+        mOffset = offset;
+        mRemaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (mSingleByte == null) {
+            mSingleByte = ByteBuffer.allocate(1);
+        }
+        mSingleByte.clear();
+        int len = read(mSingleByte);
+        return len <= 0 ? -1 : (mSingleByte.get(0) & 0xFF);
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        return read(ByteBuffer.wrap(buffer, offset, length));
+    }
+
+    private int read(final ByteBuffer buffer) throws IOException {
+        if (mRemaining <= 0) {
+            close();
+            return -1;
+        }
+        if (mChannel == null) {
+            mChannel = new RandomAccessFile(mFile, "r").getChannel();
+            mChannel.position(mOffset);
+        }
+        if (buffer.remaining() > mRemaining) {
+            buffer.limit(buffer.position() + (int) mRemaining);
+        }
+        int len = mChannel.read(buffer);
+        if (len < 0) {
+            // 読み込み中にファイルが短くなった
+            mRemaining = 0;
+            close();
+            return -1;
+        }
+        mRemaining -= len;
+        return len;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, mRemaining));
+        if (mChannel != null) {
+            mChannel.position(mChannel.position() + skipped);
+        } else {
+            mOffset += skipped;
+        }
+        mRemaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mChannel != null) {
+            mChannel.close();
+            mChannel = null;
+        }
+    }
+}
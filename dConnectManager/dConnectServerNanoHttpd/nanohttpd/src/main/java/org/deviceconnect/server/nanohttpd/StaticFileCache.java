@@ -0,0 +1,311 @@
+/*
+ StaticFileCache.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import org.deviceconnect.server.http.HttpDate;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 静的コンテンツのメタデータと小さいファイルの内容を保持するキャッシュ.
+ *
+ * <p>
+ * ETagやLast-Modifiedはファイルのサイズと更新日時から作成し、ファイルが更新されるまで再計算しない.
+ * また、{@link #getMaxEntrySize()} 以下のファイルは内容をメモリ上に保持し、
+ * 合計が {@link #getMaxTotalSize()} を超えた場合は最も長く参照されていないものから破棄する.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class StaticFileCache {
+
+    /**
+     * メタデータを保持するファイル数の上限.
+     */
+    private static final int MAX_ENTRIES = 256;
+
+    /**
+     * 内容をメモリ上に保持するファイルのサイズの上限.
+     */
+    private final int mMaxEntrySize;
+
+    /**
+     * メモリ上に保持する内容の合計サイズの上限.
+     */
+    private final long mMaxTotalSize;
+
+    /**
+     * メモリ上に保持している内容の合計サイズ.
+     */
+    private long mTotalSize;
+
+    /**
+     * キャッシュ. 参照順に並べる.
+     */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * コンストラクタ.
+     *
+     * @param maxEntrySize 内容をメモリ上に保持するファイルのサイズの上限
+     * @param maxTotalSize メモリ上に保持する内容の合計サイズの上限
+     */
+    StaticFileCache(final int maxEntrySize, final long maxTotalSize) {
+        mMaxEntrySize = maxEntrySize;
+        mMaxTotalSize = maxTotalSize;
+    }
+
+    /**
+     * 内容をメモリ上に保持するファイルのサイズの上限を取得する.
+     *
+     * @return サイズの上限
+     */
+    int getMaxEntrySize() {
+        return mMaxEntrySize;
+    }
+
+    /**
+     * メモリ上に保持する内容の合計サイズの上限を取得する.
+     *
+     * @return 合計サイズの上限
+     */
+    long getMaxTotalSize() {
+        return mMaxTotalSize;
+    }
+
+    /**
+     * メモリ上に保持している内容の合計サイズを取得する.
+     *
+     * @return 合計サイズ
+     */
+    synchronized long getTotalSize() {
+        return mTotalSize;
+    }
+
+    /**
+     * ファイルのキャッシュを取得する.
+     * <p>
+     * キャッシュが存在しない場合、またはファイルが更新されている場合は新しく作成する.
+     * 読み込み中にファイルが更新された場合は、キャッシュに追加せずに更新後のメタデータを返却する.
+     * </p>
+     *
+     * @param file ファイル
+     * @return キャッシュ
+     */
+    Entry get(final File file) {
+        String key = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry != null && entry.isSameFile(length, lastModified)) {
+                return entry;
+            }
+        }
+
+        // ファイルの読み込みはロックの外で行う
+        Entry entry = new Entry(file, length, lastModified);
+        if (length <= mMaxEntrySize) {
+            entry.mData = readFully(file, length);
+        }
+
+        synchronized (this) {
+            // 読み込み中に更新された場合は、内容がETagと一致しない可能性があるので保持しない.
+            // ロックの中で確認して、古い内容で新しいキャッシュを上書きしないようにする.
+            long newLength = file.length();
+            long newLastModified = file.lastModified();
+            if (!entry.isSameFile(newLength, newLastModified)) {
+                return new Entry(file, newLength, newLastModified);
+            }
+
+            // 他のスレッドが同じファイルのキャッシュを作成していれば、それを使用する
+            Entry old = mEntries.get(key);
+            if (old != null && old.isSameFile(length, lastModified)) {
+                return old;
+            }
+
+            mEntries.put(key, entry);
+            if (old != null && old.mData != null) {
+                mTotalSize -= old.mData.length;
+            }
+            if (entry.mData != null) {
+                mTotalSize += entry.mData.length;
+            }
+            trim();
+        }
+        return entry;
+    }
+
+    /**
+     * キャッシュをすべて破棄する.
+     */
+    synchronized void clear() {
+        mEntries.clear();
+        mTotalSize = 0;
+    }
+
+    /**
+     * 上限を超えたキャッシュを参照されていない順に破棄する.
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (it.hasNext() && (mTotalSize > mMaxTotalSize || mEntries.size() > MAX_ENTRIES)) {
+            Entry entry = it.next().getValue();
+            if (entry.mData != null) {
+                mTotalSize -= entry.mData.length;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * ファイルの内容を読み込む.
+     *
+     * @param file   ファイル
+     * @param length ファイルのサイズ
+     * @return ファイルの内容. 読み込みに失敗した場合やサイズが変わっていた場合はnull
+     */
+    private static byte[] readFully(final File file, final long length) {
+        byte[] data = new byte[(int) length];
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            int offset = 0;
+            while (offset < data.length) {
+                int len = in.read(data, offset, data.length - offset);
+                if (len < 0) {
+                    return null;
+                }
+                offset += len;
+            }
+            return in.read() < 0 ? data : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore.
+                }
+            }
+        }
+    }
+
+    /**
+     * 静的コンテンツのキャッシュ.
+     */
+    static class Entry {
+        /**
+         * ファイル.
+         */
+        private final File mFile;
+
+        /**
+         * ファイルのサイズ.
+         */
+        private final long mLength;
+
+        /**
+         * ファイルの更新日時.
+         */
+        private final long mLastModified;
+
+        /**
+         * ETag.
+         */
+        private final String mETag;
+
+        /**
+         * Last-Modifiedヘッダーの値.
+         */
+        private final String mLastModifiedText;
+
+        /**
+         * ファイルの内容. メモリ上に保持しない場合はnull.
+         */
+        private byte[] mData;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param file         ファイル
+         * @param length       ファイルのサイズ
+         * @param lastModified ファイルの更新日時
+         */
+        Entry(final File file, final long length, final long lastModified) {
+            mFile = file;
+            mLength = length;
+            mLastModified = lastModified;
+            mETag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+            mLastModifiedText = HttpDate.format(lastModified);
+        }
+
+        /**
+         * 指定されたサイズと更新日時のファイルのキャッシュか確認する.
+         *
+         * @param length       ファイルのサイズ
+         * @param lastModified ファイルの更新日時
+         * @return 同じファイルの場合はtrue、それ以外はfalse
+         */
+        boolean isSameFile(final long length, final long lastModified) {
+            return mLength == length && mLastModified == lastModified;
+        }
+
+        File getFile() {
+            return mFile;
+        }
+
+        long getLength() {
+            return mLength;
+        }
+
+        long getLastModified() {
+            return mLastModified;
+        }
+
+        String getETag() {
+            return mETag;
+        }
+
+        String getLastModifiedText() {
+            return mLastModifiedText;
+        }
+
+        /**
+         * 内容をメモリ上に保持しているか確認する.
+         *
+         * @return 保持している場合はtrue、それ以外はfalse
+         */
+        boolean isCached() {
+            return mData != null;
+        }
+
+        /**
+         * 指定範囲の内容を読み込むストリームを開く.
+         *
+         * @param offset 開始位置
+         * @param length バイト数
+         * @return ストリーム
+         */
+        InputStream open(final long offset, final long length) {
+            byte[] data = mData;
+            if (data != null) {
+                return new ByteArrayInputStream(data, (int) offset, (int) length);
+            }
+            return new FileRangeInputStream(mFile, offset, length);
+        }
+    }
+}